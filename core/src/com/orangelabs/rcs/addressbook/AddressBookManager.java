@@ -190,6 +190,9 @@ public class AddressBookManager {
 		public void onChange(boolean selfChange) {
 			super.onChange(selfChange);
 			
+			// Cached contact infos may be outdated
+			ContactsManager.getInstance().invalidateContactInfoCache();
+
 			// Something changed in the address book
 			if (!checkHandler.hasMessages(CHECK_MESSAGE)){
 				// If we do not have a check already scheduled, schedule a new one
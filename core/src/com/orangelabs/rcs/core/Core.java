@@ -28,9 +28,12 @@ import com.orangelabs.rcs.core.ims.service.richcall.RichcallService;
 import com.orangelabs.rcs.core.ims.service.sip.SipService;
 import com.orangelabs.rcs.core.ims.service.terms.TermsConditionsService;
 import com.orangelabs.rcs.platform.AndroidFactory;
+import com.orangelabs.rcs.platform.network.HttpClientPool;
+import com.orangelabs.rcs.provider.messaging.RichMessaging;
 import com.orangelabs.rcs.utils.DeviceUtils;
 import com.orangelabs.rcs.utils.PhoneUtils;
 import com.orangelabs.rcs.utils.logger.Logger;
+import com.orangelabs.rcs.utils.metrics.Metrics;
 
 /**
  * Core (singleton pattern)
@@ -43,6 +46,11 @@ public class Core {
 	 */
 	private static Core instance = null;
 	
+	/**
+	 * Period of the dump of the metrics in the traces, in milliseconds
+	 */
+	private static final long METRICS_DUMP_PERIOD = 60000;
+
     /**
      * Core listener
      */
@@ -190,6 +198,9 @@ public class Core {
 
     	// Start the address book monitoring
     	addressBookManager.startAddressBookMonitoring();
+
+    	// Start the periodic dump of the metrics
+    	Metrics.startDump(METRICS_DUMP_PERIOD);
     	
     	// Notify event listener
 		listener.handleCoreLayerStarted();
@@ -225,6 +236,17 @@ public class Core {
     		}
     	}
     	
+    	// Write the pending messages and delivery reports in the history
+    	if (RichMessaging.getInstance() != null) {
+    		RichMessaging.getInstance().stop();
+    	}
+
+    	// Close the pooled HTTP connections
+    	HttpClientPool.getInstance().closeIdleConnections();
+
+    	// Stop the periodic dump of the metrics
+    	Metrics.stopDump();
+    	
     	// Notify event listener
 		listener.handleCoreLayerStopped();
 
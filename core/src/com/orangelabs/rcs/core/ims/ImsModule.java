@@ -27,6 +27,7 @@ import com.orangelabs.rcs.core.ims.network.ImsConnectionManager;
 import com.orangelabs.rcs.core.ims.network.ImsNetworkInterface;
 import com.orangelabs.rcs.core.ims.network.gsm.CallManager;
 import com.orangelabs.rcs.core.ims.network.sip.SipManager;
+import com.orangelabs.rcs.core.ims.protocol.capture.MessageCapture;
 import com.orangelabs.rcs.core.ims.protocol.msrp.MsrpConnection;
 import com.orangelabs.rcs.core.ims.protocol.rtp.core.RtpSource;
 import com.orangelabs.rcs.core.ims.protocol.sip.SipEventListener;
@@ -123,6 +124,11 @@ public class ImsModule implements SipEventListener {
 		MsrpConnection.MSRP_TRACE_ENABLED = RcsSettings.getInstance().isMediaTraceActivated();
 		HttpTransferManager.HTTP_TRACE_ENABLED = RcsSettings.getInstance().isMediaTraceActivated();
 
+		// Start the capture of the SIP and MSRP messages
+		if (RcsSettings.getInstance().isSipTraceActivated() || MsrpConnection.MSRP_TRACE_ENABLED) {
+			MessageCapture.start(MessageCapture.getCaptureFileName(RcsSettings.getInstance().getSipTraceFile()));
+		}
+
 		// Load keystore for certificates
 		try {
 			KeyStoreManager.loadKeyStore();
@@ -250,6 +256,9 @@ public class ImsModule implements SipEventListener {
 
     	// Terminate the service dispatcher
     	serviceDispatcher.terminate();
+
+    	// Stop the capture of the messages
+    	MessageCapture.stop();
 
     	if (logger.isActivated()) {
     		logger.info("IMS module has been stopped");
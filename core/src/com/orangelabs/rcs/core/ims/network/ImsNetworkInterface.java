@@ -20,20 +20,8 @@ package com.orangelabs.rcs.core.ims.network;
 
 
 
-import java.net.InetAddress;
-import java.net.UnknownHostException;
-
 import javax2.sip.ListeningPoint;
 
-import org.xbill.DNS.ExtendedResolver;
-import org.xbill.DNS.Lookup;
-import org.xbill.DNS.NAPTRRecord;
-import org.xbill.DNS.Record;
-import org.xbill.DNS.ResolverConfig;
-import org.xbill.DNS.SRVRecord;
-import org.xbill.DNS.TextParseException;
-import org.xbill.DNS.Type;
-
 import com.orangelabs.rcs.core.CoreException;
 import com.orangelabs.rcs.core.access.NetworkAccess;
 import com.orangelabs.rcs.core.ims.ImsModule;
@@ -42,7 +30,6 @@ import com.orangelabs.rcs.core.ims.network.registration.HttpDigestRegistrationPr
 import com.orangelabs.rcs.core.ims.network.registration.RegistrationManager;
 import com.orangelabs.rcs.core.ims.network.registration.RegistrationProcedure;
 import com.orangelabs.rcs.core.ims.network.sip.SipManager;
-import com.orangelabs.rcs.core.ims.protocol.sip.SipException;
 import com.orangelabs.rcs.core.ims.userprofile.GibaUserProfileInterface;
 import com.orangelabs.rcs.core.ims.userprofile.SettingsUserProfileInterface;
 import com.orangelabs.rcs.core.ims.userprofile.UserProfile;
@@ -353,99 +340,6 @@ public abstract class ImsNetworkInterface {
         return registration.isRegistered();
     }
 
-    /**
-     * Get DNS records
-     * 
-     * @param domain Domain
-     * @param resolver Resolver
-     * @param type (Type.SRV or Type.NAPTR)
-     * @return SRV records or null if no record
-     */
-    private Record[] getDnsRequest(String domain, ExtendedResolver resolver, int type) {
-        try {
-            if (logger.isActivated()) {
-                if (type == Type.SRV) {
-                    logger.debug("DNS SRV lookup for " + domain);
-                } else if (type == Type.NAPTR) {
-                    logger.debug("DNS NAPTR lookup for " + domain);
-                }
-            }
-            Lookup lookup = new Lookup(domain, type);
-            lookup.setResolver(resolver);
-            Record[] result = lookup.run();
-            int code = lookup.getResult();
-            if (code != Lookup.SUCCESSFUL) {
-                if (logger.isActivated()) {
-                    logger.warn("Lookup error: " + code + "/" + lookup.getErrorString());
-                }
-            }
-            return result;
-        } catch(TextParseException e) {
-            if (logger.isActivated()) {
-                logger.debug("Not a valid DNS name");
-            }
-            return null;
-        } catch(IllegalArgumentException e) {
-            if (logger.isActivated()) {
-                logger.debug("Not a valid DNS type");
-            }
-            return null;
-        }
-    }
-
-    /**
-     * Get DNS A record
-     * 
-     * @param domain Domain
-     * @return IP address or null if no record
-     */
-    private String getDnsA(String domain) {
-		try {
-			if (logger.isActivated()) {
-				logger.debug("DNS A lookup for " + domain);
-			}
-			return InetAddress.getByName(domain).getHostAddress();
-        } catch(UnknownHostException e) {
-			if (logger.isActivated()) {
-				logger.debug("Unknown host for " + domain);
-			}
-			return null;
-        }
-    }
-    
-    /**
-     * Get best DNS SRV record
-     * 
-     * @param records SRV records
-     * @return IP address
-     */
-	private SRVRecord getBestDnsSRV(Record[] records) {
-		SRVRecord result = null;
-        for (int i = 0; i < records.length; i++) {
-        	SRVRecord srv = (SRVRecord)records[i];
-			if (logger.isActivated()) {
-				logger.debug("SRV record: " + srv.toString());
-			}
-			if (result == null) {
-				// First record
-				result = srv;
-			} else {
-				// Next record
-				if (srv.getPriority() < result.getPriority()) {
-					// Lowest priority
-					result = srv;
-				} else
-				if (srv.getPriority() == result.getPriority()) {
-					// Highest weight
-					if (srv.getWeight() > result.getWeight()) {
-						result = srv;
-					}
-				}
-			}
-        }
-        return result;
-	}
-	
 	// Changed by Deutsche Telekom
 	/**
 	 * Get the DNS resolved fields.
@@ -455,110 +349,17 @@ public abstract class ImsNetworkInterface {
 	protected DnsResolvedFields getDnsResolvedFields() throws Exception {
         // Changed by Deutsche Telekom
 		DnsResolvedFields dnsResolvedFields;
-		boolean useDns = true;
 		if (imsProxyAddr.matches(REGEX_IPV4)) {
-        	useDns = false;
         	dnsResolvedFields = new DnsResolvedFields(imsProxyAddr, imsProxyPort);
         
         	  if (logger.isActivated()) {
                   logger.warn("IP address found instead of FQDN!");
               }
-        }
-		else {
-			dnsResolvedFields = new DnsResolvedFields(null, imsProxyPort);
-		}
-          
-        if (useDns) {
-            // Set DNS resolver
-            ResolverConfig.refresh();
-            ExtendedResolver resolver = new ExtendedResolver(); 
-
-            // Resolve the IMS proxy configuration: first try to resolve via
-            // a NAPTR query, then a SRV query and finally via A query
-            if (logger.isActivated()) {
-                logger.debug("Resolve IMS proxy address " + imsProxyAddr);
-            }
-            
-            // DNS NAPTR lookup
-            String service;
-            if (imsProxyProtocol.equalsIgnoreCase(ListeningPoint.UDP)) {
-                service = "SIP+D2U";
-            } else
-            if (imsProxyProtocol.equalsIgnoreCase(ListeningPoint.TCP)) {
-                service = "SIP+D2T";
-            } else
-            if (imsProxyProtocol.equalsIgnoreCase(ListeningPoint.TLS)) {
-                service = "SIPS+D2T";
-            } else {
-                throw new SipException("Unkown SIP protocol");
-            }
-
-            boolean resolved = false;
-            Record[] naptrRecords = getDnsRequest(imsProxyAddr, resolver, Type.NAPTR);
-            if ((naptrRecords != null) && (naptrRecords.length > 0)) {
-                // First try with NAPTR
-                if (logger.isActivated()) {
-                    logger.debug("NAPTR records found: " + naptrRecords.length);
-                }
-                for (int i = 0; i < naptrRecords.length; i++) {
-                    NAPTRRecord naptr = (NAPTRRecord)naptrRecords[i];
-                    if (logger.isActivated()) {
-                        logger.debug("NAPTR record: " + naptr.toString());
-                    }
-                    if ((naptr != null) && naptr.getService().equalsIgnoreCase(service)) {
-                        // DNS SRV lookup
-						Record[] srvRecords = getDnsRequest(naptr.getReplacement().toString(), resolver, Type.SRV);
-                        if ((srvRecords != null) && (srvRecords.length > 0)) {
-                            SRVRecord srvRecord = getBestDnsSRV(srvRecords);
-                            dnsResolvedFields.ipAddress = getDnsA(srvRecord.getTarget().toString());
-                            dnsResolvedFields.port = srvRecord.getPort();
-                        } else {
-                            // Direct DNS A lookup
-                            dnsResolvedFields.ipAddress = getDnsA(imsProxyAddr);
-                        }
-                        resolved = true;
-                    }
-                }
-            }
-
-            if (!resolved) {
-                // If no NAPTR: direct DNS SRV lookup
-                if (logger.isActivated()) {
-                    logger.debug("No NAPTR record found: use DNS SRV instead");
-                }
-                String query;
-                if (imsProxyAddr.startsWith("_sip.")) {
-                    query = imsProxyAddr;
-                } else {
-                    query = "_sip._" + imsProxyProtocol.toLowerCase() + "." + imsProxyAddr;
-                }
-				Record[] srvRecords = getDnsRequest(query, resolver, Type.SRV);
-                if ((srvRecords != null) && (srvRecords.length > 0)) {
-                    SRVRecord srvRecord = getBestDnsSRV(srvRecords);
-                    dnsResolvedFields.ipAddress = getDnsA(srvRecord.getTarget().toString());
-                    dnsResolvedFields.port = srvRecord.getPort();
-                    resolved = true;
-                }
-
-                if (!resolved) {
-                    // If not resolved: direct DNS A lookup
-                    if (logger.isActivated()) {
-                        logger.debug("No SRV record found: use DNS A instead");
-                    }
-                    dnsResolvedFields.ipAddress = getDnsA(imsProxyAddr);
-                }
-            }       
-        }
-        
-        if (dnsResolvedFields.ipAddress == null) {
-            // Changed by Deutsche Telekom
-            // Try to use IMS proxy address as a fallback
-            String imsProxyAddrResolved = getDnsA(imsProxyAddr);
-            if (imsProxyAddrResolved != null){
-                dnsResolvedFields = new DnsResolvedFields(imsProxyAddrResolved, imsProxyPort);
-            } else {
-                throw new SipException("Proxy IP address not found");
-            }
+        } else {
+            // Resolve the IMS proxy configuration via NAPTR, SRV and A queries,
+            // a cached answer is returned when available
+            ImsProxyResolver.Answer answer = ImsProxyResolver.getInstance().resolve(imsProxyAddr, imsProxyPort, imsProxyProtocol);
+            dnsResolvedFields = new DnsResolvedFields(answer.ipAddress, answer.port);
         }
         
         if (logger.isActivated()) {
@@ -613,6 +414,11 @@ public abstract class ImsNetworkInterface {
 			if (logger.isActivated()) {
 				logger.debug("IMS registration has failed");
 			}
+
+			// The proxy may have moved: resolve it again at the next attempt
+			if (!imsProxyAddr.matches(REGEX_IPV4)) {
+				ImsProxyResolver.getInstance().invalidate(imsProxyAddr, imsProxyPort, imsProxyProtocol);
+			}
 		}
 
     	return registered;
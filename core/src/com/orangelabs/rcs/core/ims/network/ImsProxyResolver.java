@@ -0,0 +1,834 @@
+/*******************************************************************************
+ * Software Name : RCS IMS Stack
+ *
+ * Copyright (C) 2010 France Telecom S.A.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.orangelabs.rcs.core.ims.network;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.HashSet;
+import java.util.Hashtable;
+import java.util.Iterator;
+import java.util.Vector;
+
+import javax2.sip.ListeningPoint;
+
+import org.xbill.DNS.ARecord;
+import org.xbill.DNS.AsyncResolver;
+import org.xbill.DNS.Cache;
+import org.xbill.DNS.Credibility;
+import org.xbill.DNS.DClass;
+import org.xbill.DNS.Message;
+import org.xbill.DNS.NAPTRRecord;
+import org.xbill.DNS.Name;
+import org.xbill.DNS.RRset;
+import org.xbill.DNS.Record;
+import org.xbill.DNS.Resolver;
+import org.xbill.DNS.ResolverConfig;
+import org.xbill.DNS.ResolverListener;
+import org.xbill.DNS.SRVRecord;
+import org.xbill.DNS.SetResponse;
+import org.xbill.DNS.TextParseException;
+import org.xbill.DNS.Type;
+
+import com.orangelabs.rcs.core.ims.protocol.sip.SipException;
+import com.orangelabs.rcs.platform.registry.RegistryFactory;
+import com.orangelabs.rcs.utils.logger.Logger;
+
+/**
+ * Resolver of the IMS proxy address (P-CSCF discovery)
+ * <br>The NAPTR, SRV and A queries are sent in parallel and their answers are
+ * kept in a DNS cache honouring the record TTLs. The last good answer is
+ * persisted in the registry: when it has expired it is still returned, so
+ * that the registration can start immediately, while a new resolution is
+ * done in background (stale-while-revalidate).
+ */
+public class ImsProxyResolver {
+	/**
+	 * Answer of a resolution
+	 */
+	public static class Answer {
+		/**
+		 * IP address of the proxy
+		 */
+		public final String ipAddress;
+
+		/**
+		 * Port of the proxy
+		 */
+		public final int port;
+
+		/**
+		 * Expiration date in milliseconds
+		 */
+		public final long expiration;
+
+		/**
+		 * Constructor
+		 *
+		 * @param ipAddress IP address
+		 * @param port Port
+		 * @param expiration Expiration date
+		 */
+		public Answer(String ipAddress, int port, long expiration) {
+			this.ipAddress = ipAddress;
+			this.port = port;
+			this.expiration = expiration;
+		}
+
+		/**
+		 * Is the answer expired
+		 *
+		 * @return Boolean
+		 */
+		public boolean isExpired() {
+			return System.currentTimeMillis() >= expiration;
+		}
+	}
+
+	/**
+	 * Registry key of the last good answer
+	 */
+	private static final String REGISTRY_PROXY_ANSWER = "ImsProxyDnsAnswer";
+
+	/**
+	 * Max period in milliseconds during which an expired answer is returned
+	 */
+	public static final long MAX_STALE_PERIOD = 24 * 3600 * 1000L;
+
+	/**
+	 * TTL in seconds of an answer given by the platform resolver
+	 */
+	private static final long DEFAULT_TTL = 300L;
+
+	/**
+	 * Max time in milliseconds to wait for a DNS answer
+	 */
+	private static final long QUERY_TIMEOUT = 10000L;
+
+	/**
+	 * Max number of CNAME to be followed
+	 */
+	private static final int MAX_CNAME = 4;
+
+	/**
+	 * Shared instance
+	 */
+	private static ImsProxyResolver instance = null;
+
+	/**
+	 * DNS cache
+	 */
+	private Cache cache = new Cache(DClass.IN);
+
+	/**
+	 * Fixed DNS resolver, or null to use the resolver of the system
+	 */
+	private Resolver resolver;
+
+	/**
+	 * Persistence of the last good answer
+	 */
+	private boolean persistent;
+
+	/**
+	 * Answers indexed by proxy
+	 */
+	private Hashtable<String, Answer> answers = new Hashtable<String, Answer>();
+
+	/**
+	 * Proxies being resolved in background
+	 */
+	private HashSet<String> refreshing = new HashSet<String>();
+
+	/**
+	 * Number of fresh answers returned
+	 */
+	private int freshCount = 0;
+
+	/**
+	 * Number of stale answers returned
+	 */
+	private int staleCount = 0;
+
+	/**
+	 * Number of resolutions
+	 */
+	private int resolutionCount = 0;
+
+	/**
+	 * The logger
+	 */
+	private Logger logger = Logger.getLogger(this.getClass().getName());
+
+	/**
+	 * Returns the shared instance, using the resolver of the system
+	 *
+	 * @return Resolver
+	 */
+	public static synchronized ImsProxyResolver getInstance() {
+		if (instance == null) {
+			instance = new ImsProxyResolver(null, true);
+		}
+		return instance;
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param resolver DNS resolver, or null to use the resolver of the system
+	 * @param persistent Persist the last good answer in the registry
+	 */
+	public ImsProxyResolver(Resolver resolver, boolean persistent) {
+		this.resolver = resolver;
+		this.persistent = persistent;
+	}
+
+	/**
+	 * Resolve the IMS proxy address
+	 *
+	 * @param address Proxy address (FQDN)
+	 * @param port Default proxy port
+	 * @param protocol SIP protocol
+	 * @return Answer
+	 * @throws SipException if the proxy can't be resolved
+	 */
+	public Answer resolve(String address, int port, String protocol) throws SipException {
+		String key = getKey(address, port, protocol);
+		Answer answer = getAnswer(key);
+		if (answer != null) {
+			if (!answer.isExpired()) {
+				synchronized(this) {
+					freshCount++;
+				}
+				return answer;
+			}
+			if (System.currentTimeMillis() - answer.expiration < MAX_STALE_PERIOD) {
+				if (logger.isActivated()) {
+					logger.debug("Stale DNS answer for " + address + ": resolve in background");
+				}
+				synchronized(this) {
+					staleCount++;
+				}
+				refresh(key, address, port, protocol);
+				return answer;
+			}
+		}
+
+		answer = resolveNow(address, port, protocol);
+		setAnswer(key, answer);
+		return answer;
+	}
+
+	/**
+	 * Invalidate the answer of a proxy, for example when it can't be reached
+	 *
+	 * @param address Proxy address
+	 * @param port Default proxy port
+	 * @param protocol SIP protocol
+	 */
+	public void invalidate(String address, int port, String protocol) {
+		String key = getKey(address, port, protocol);
+		if (answers.remove(key) != null) {
+			if (logger.isActivated()) {
+				logger.debug("DNS answer invalidated for " + address);
+			}
+		}
+		cache.clearCache();
+		if (persistent && (RegistryFactory.getFactory() != null)) {
+			RegistryFactory.getFactory().removeParameter(REGISTRY_PROXY_ANSWER);
+		}
+	}
+
+	/**
+	 * Returns the number of fresh answers returned
+	 *
+	 * @return Number
+	 */
+	public synchronized int getFreshCount() {
+		return freshCount;
+	}
+
+	/**
+	 * Returns the number of stale answers returned
+	 *
+	 * @return Number
+	 */
+	public synchronized int getStaleCount() {
+		return staleCount;
+	}
+
+	/**
+	 * Returns the number of resolutions
+	 *
+	 * @return Number
+	 */
+	public synchronized int getResolutionCount() {
+		return resolutionCount;
+	}
+
+	/**
+	 * Returns a string representation of the metrics
+	 *
+	 * @return String
+	 */
+	public synchronized String toString() {
+		return "ImsProxyResolver[fresh=" + freshCount + ", stale=" + staleCount +
+				", resolutions=" + resolutionCount + ", cached=" + cache.getSize() + "]";
+	}
+
+	/**
+	 * Resolve a proxy in background
+	 *
+	 * @param key Key of the proxy
+	 * @param address Proxy address
+	 * @param port Default proxy port
+	 * @param protocol SIP protocol
+	 */
+	private void refresh(final String key, final String address, final int port, final String protocol) {
+		synchronized(refreshing) {
+			if (!refreshing.add(key)) {
+				// Already in progress
+				return;
+			}
+		}
+		Thread t = new Thread("ImsProxyResolver") {
+			public void run() {
+				try {
+					setAnswer(key, resolveNow(address, port, protocol));
+				} catch(SipException e) {
+					if (logger.isActivated()) {
+						logger.warn("Background DNS resolution has failed: keep the stale answer");
+					}
+				} finally {
+					synchronized(refreshing) {
+						refreshing.remove(key);
+					}
+				}
+			}
+		};
+		t.setDaemon(true);
+		t.start();
+	}
+
+	/**
+	 * Resolve the proxy: first via a NAPTR query, then a SRV query and finally
+	 * via an A query. The three queries are sent at the same time and the A
+	 * query of the SRV target is sent as soon as the SRV answer is received.
+	 *
+	 * @param address Proxy address
+	 * @param port Default proxy port
+	 * @param protocol SIP protocol
+	 * @return Answer
+	 * @throws SipException if the proxy can't be resolved
+	 */
+	private Answer resolveNow(String address, int port, String protocol) throws SipException {
+		String service;
+		if (protocol.equalsIgnoreCase(ListeningPoint.UDP)) {
+			service = "SIP+D2U";
+		} else
+		if (protocol.equalsIgnoreCase(ListeningPoint.TCP)) {
+			service = "SIP+D2T";
+		} else
+		if (protocol.equalsIgnoreCase(ListeningPoint.TLS)) {
+			service = "SIPS+D2T";
+		} else {
+			throw new SipException("Unkown SIP protocol");
+		}
+		if (logger.isActivated()) {
+			logger.debug("Resolve IMS proxy address " + address);
+		}
+		synchronized(this) {
+			resolutionCount++;
+		}
+
+		Resolver res = getResolver();
+		String srvQuery;
+		if (address.startsWith("_sip.")) {
+			srvQuery = address;
+		} else {
+			srvQuery = "_sip._" + protocol.toLowerCase() + "." + address;
+		}
+		Query naptrQuery = new Query(res, address, Type.NAPTR);
+		Query srvDirectQuery = new Query(res, srvQuery, Type.SRV);
+		Query aQuery = new Query(res, address, Type.A);
+
+		// Start the A query of the direct SRV target before waiting for the NAPTR
+		Record[] srvDirectRecords = srvDirectQuery.getRecords();
+		SRVRecord srvDirect = getBestDnsSRV(srvDirectRecords);
+		Query srvDirectTargetQuery = null;
+		if (srvDirect != null) {
+			srvDirectTargetQuery = new Query(res, srvDirect.getTarget().toString(), Type.A);
+		}
+
+		String ipAddress = null;
+		long ttl = Long.MAX_VALUE;
+		boolean resolved = false;
+		boolean proxyAddressTried = false;
+		int defaultPort = port;
+
+		// First try with NAPTR
+		NAPTRRecord naptr = getBestDnsNAPTR(naptrQuery.getRecords(), service);
+		if (naptr != null) {
+			if (logger.isActivated()) {
+				logger.debug("NAPTR record: " + naptr.toString());
+			}
+			ttl = Math.min(ttl, naptrQuery.getTtl());
+			SRVRecord srv;
+			Query targetQuery;
+			if (naptr.getReplacement().toString().equalsIgnoreCase(srvDirectQuery.getName())) {
+				srv = srvDirect;
+				targetQuery = srvDirectTargetQuery;
+				ttl = Math.min(ttl, srvDirectQuery.getTtl());
+			} else {
+				Query srvQueryFromNaptr = new Query(res, naptr.getReplacement().toString(), Type.SRV);
+				srv = getBestDnsSRV(srvQueryFromNaptr.getRecords());
+				targetQuery = null;
+				if (srv != null) {
+					targetQuery = new Query(res, srv.getTarget().toString(), Type.A);
+					ttl = Math.min(ttl, srvQueryFromNaptr.getTtl());
+				}
+			}
+			if (srv != null) {
+				ipAddress = getAddress(targetQuery, srv.getTarget().toString());
+				ttl = Math.min(ttl, targetQuery.getTtl());
+				port = srv.getPort();
+			} else {
+				// Direct DNS A lookup
+				ipAddress = getAddress(aQuery, address);
+				ttl = Math.min(ttl, aQuery.getTtl());
+				proxyAddressTried = true;
+			}
+			resolved = true;
+		}
+
+		if (!resolved) {
+			// If no NAPTR: direct DNS SRV lookup
+			if (logger.isActivated()) {
+				logger.debug("No NAPTR record found: use DNS SRV instead");
+			}
+			if (srvDirect != null) {
+				ipAddress = getAddress(srvDirectTargetQuery, srvDirect.getTarget().toString());
+				ttl = Math.min(ttl, Math.min(srvDirectQuery.getTtl(), srvDirectTargetQuery.getTtl()));
+				port = srvDirect.getPort();
+			} else {
+				// If not resolved: direct DNS A lookup
+				if (logger.isActivated()) {
+					logger.debug("No SRV record found: use DNS A instead");
+				}
+				ipAddress = getAddress(aQuery, address);
+				ttl = Math.min(ttl, aQuery.getTtl());
+				proxyAddressTried = true;
+			}
+		}
+
+		if ((ipAddress == null) && !proxyAddressTried) {
+			// The SRV target is not resolved: try the proxy address with the default port
+			if (logger.isActivated()) {
+				logger.debug("SRV target not resolved: use DNS A of " + address + " instead");
+			}
+			ipAddress = getAddress(aQuery, address);
+			ttl = Math.min(ttl, aQuery.getTtl());
+			port = defaultPort;
+		}
+		if (ipAddress == null) {
+			throw new SipException("Proxy IP address not found");
+		}
+		if (ttl == Long.MAX_VALUE) {
+			ttl = DEFAULT_TTL;
+		}
+		if (logger.isActivated()) {
+			logger.debug("IMS proxy resolved: " + ipAddress + ":" + port + " (TTL " + ttl + "s)");
+		}
+		return new Answer(ipAddress, port, System.currentTimeMillis() + ttl * 1000L);
+	}
+
+	/**
+	 * Returns the DNS resolver
+	 *
+	 * @return Resolver
+	 * @throws SipException
+	 */
+	private Resolver getResolver() throws SipException {
+		if (resolver != null) {
+			return resolver;
+		}
+		try {
+			// The DNS servers may have changed with the network access. The
+			// queries of all the servers are multiplexed on a single channel
+			ResolverConfig.refresh();
+			return AsyncResolver.newExtendedResolver();
+		} catch(UnknownHostException e) {
+			throw new SipException("No DNS server");
+		}
+	}
+
+	/**
+	 * Returns the IP address answered by an A query, or by the platform
+	 * resolver as a fallback
+	 *
+	 * @param query A query
+	 * @param domain Domain
+	 * @return IP address or null if no record
+	 */
+	private String getAddress(Query query, String domain) {
+		Record[] records = query.getRecords();
+		if ((records != null) && (records.length > 0)) {
+			return ((ARecord)records[0]).getAddress().getHostAddress();
+		}
+		try {
+			if (logger.isActivated()) {
+				logger.debug("DNS A lookup for " + domain + " via the platform");
+			}
+			String ipAddress = InetAddress.getByName(domain).getHostAddress();
+			query.setTtl(DEFAULT_TTL);
+			return ipAddress;
+		} catch(UnknownHostException e) {
+			if (logger.isActivated()) {
+				logger.debug("Unknown host for " + domain);
+			}
+			return null;
+		}
+	}
+
+	/**
+	 * Get best DNS NAPTR record for a service
+	 *
+	 * @param records NAPTR records
+	 * @param service Service
+	 * @return Record or null
+	 */
+	private NAPTRRecord getBestDnsNAPTR(Record[] records, String service) {
+		NAPTRRecord result = null;
+		if (records == null) {
+			return null;
+		}
+		for (int i = 0; i < records.length; i++) {
+			NAPTRRecord naptr = (NAPTRRecord)records[i];
+			if (!naptr.getService().equalsIgnoreCase(service)) {
+				continue;
+			}
+			if ((result == null) ||
+					(naptr.getOrder() < result.getOrder()) ||
+					((naptr.getOrder() == result.getOrder()) && (naptr.getPreference() < result.getPreference()))) {
+				result = naptr;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Get best DNS SRV record
+	 *
+	 * @param records SRV records
+	 * @return Record or null
+	 */
+	private SRVRecord getBestDnsSRV(Record[] records) {
+		SRVRecord result = null;
+		if (records == null) {
+			return null;
+		}
+		for (int i = 0; i < records.length; i++) {
+			SRVRecord srv = (SRVRecord)records[i];
+			if (logger.isActivated()) {
+				logger.debug("SRV record: " + srv.toString());
+			}
+			if (result == null) {
+				// First record
+				result = srv;
+			} else {
+				// Next record
+				if (srv.getPriority() < result.getPriority()) {
+					// Lowest priority
+					result = srv;
+				} else
+				if (srv.getPriority() == result.getPriority()) {
+					// Highest weight
+					if (srv.getWeight() > result.getWeight()) {
+						result = srv;
+					}
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the key of a proxy
+	 *
+	 * @param address Proxy address
+	 * @param port Default proxy port
+	 * @param protocol SIP protocol
+	 * @return Key
+	 */
+	private String getKey(String address, int port, String protocol) {
+		return protocol.toUpperCase() + ":" + address.toLowerCase() + ":" + port;
+	}
+
+	/**
+	 * Returns the answer of a proxy, loading it from the registry if needed
+	 *
+	 * @param key Key of the proxy
+	 * @return Answer or null
+	 */
+	private Answer getAnswer(String key) {
+		Answer answer = answers.get(key);
+		if ((answer != null) || !persistent || (RegistryFactory.getFactory() == null)) {
+			return answer;
+		}
+
+		// Format: key|ip|port|expiration
+		String value = RegistryFactory.getFactory().readString(REGISTRY_PROXY_ANSWER, null);
+		if (value == null) {
+			return null;
+		}
+		String[] fields = value.split("\\|");
+		if ((fields.length != 4) || !fields[0].equals(key)) {
+			return null;
+		}
+		try {
+			answer = new Answer(fields[1], Integer.parseInt(fields[2]), Long.parseLong(fields[3]));
+			answers.put(key, answer);
+			if (logger.isActivated()) {
+				logger.debug("DNS answer loaded from the registry: " + answer.ipAddress + ":" + answer.port);
+			}
+			return answer;
+		} catch(NumberFormatException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Set the answer of a proxy and persist it in the registry
+	 *
+	 * @param key Key of the proxy
+	 * @param answer Answer
+	 */
+	private void setAnswer(String key, Answer answer) {
+		answers.put(key, answer);
+		if (persistent && (RegistryFactory.getFactory() != null)) {
+			RegistryFactory.getFactory().writeString(REGISTRY_PROXY_ANSWER,
+					key + "|" + answer.ipAddress + "|" + answer.port + "|" + answer.expiration);
+		}
+	}
+
+	/**
+	 * DNS query sent asynchronously, answered from the cache when possible
+	 */
+	private class Query implements ResolverListener {
+		/**
+		 * Resolver
+		 */
+		private Resolver resolver;
+
+		/**
+		 * Queried name
+		 */
+		private Name name = null;
+
+		/**
+		 * Queried type
+		 */
+		private int type;
+
+		/**
+		 * Answered records, or null if no answer
+		 */
+		private Record[] records = null;
+
+		/**
+		 * TTL of the answer in seconds
+		 */
+		private long ttl = Long.MAX_VALUE;
+
+		/**
+		 * Number of CNAME followed
+		 */
+		private int cnames = 0;
+
+		/**
+		 * Done flag
+		 */
+		private boolean done = false;
+
+		/**
+		 * Constructor, the query is sent immediately
+		 *
+		 * @param resolver Resolver
+		 * @param domain Domain
+		 * @param type Type
+		 */
+		public Query(Resolver resolver, String domain, int type) {
+			this.resolver = resolver;
+			this.type = type;
+			try {
+				name = Name.fromString(domain, Name.root);
+				lookup(name);
+			} catch(TextParseException e) {
+				if (logger.isActivated()) {
+					logger.debug("Not a valid DNS name: " + domain);
+				}
+				done = true;
+			}
+		}
+
+		/**
+		 * Returns the queried name
+		 *
+		 * @return Name
+		 */
+		public String getName() {
+			if (name == null) {
+				return "";
+			}
+			return name.toString();
+		}
+
+		/**
+		 * Wait for the answer and returns its records
+		 *
+		 * @return Records or null if no answer
+		 */
+		public synchronized Record[] getRecords() {
+			long deadline = System.currentTimeMillis() + QUERY_TIMEOUT;
+			while (!done) {
+				long delay = deadline - System.currentTimeMillis();
+				if (delay <= 0) {
+					if (logger.isActivated()) {
+						logger.warn("DNS query timeout for " + name);
+					}
+					done = true;
+					break;
+				}
+				try {
+					wait(delay);
+				} catch(InterruptedException e) {
+					break;
+				}
+			}
+			return records;
+		}
+
+		/**
+		 * Returns the TTL of the answer, once received
+		 *
+		 * @return TTL in seconds
+		 */
+		public synchronized long getTtl() {
+			return ttl;
+		}
+
+		/**
+		 * Set the TTL of the answer
+		 *
+		 * @param ttl TTL in seconds
+		 */
+		public synchronized void setTtl(long ttl) {
+			this.ttl = ttl;
+		}
+
+		/**
+		 * Look up a name in the cache, then in the DNS
+		 *
+		 * @param domain Name
+		 */
+		private void lookup(Name domain) {
+			if (!checkCache(domain)) {
+				if (logger.isActivated()) {
+					logger.debug("DNS " + Type.string(type) + " query for " + domain);
+				}
+				Record question = Record.newRecord(domain, type, DClass.IN);
+				resolver.sendAsync(Message.newQuery(question), this);
+			}
+		}
+
+		/**
+		 * Check the cache for a name
+		 *
+		 * @param domain Name
+		 * @return Returns true if the query is done or sent again for a CNAME
+		 */
+		private synchronized boolean checkCache(Name domain) {
+			SetResponse response = cache.lookupRecords(domain, type, Credibility.NORMAL);
+			if (response.isSuccessful()) {
+				Vector<Record> result = new Vector<Record>();
+				long minTtl = Long.MAX_VALUE;
+				RRset[] rrsets = response.answers();
+				for (int i = 0; i < rrsets.length; i++) {
+					minTtl = Math.min(minTtl, rrsets[i].getTTL());
+					Iterator<?> it = rrsets[i].rrs();
+					while (it.hasNext()) {
+						result.add((Record)it.next());
+					}
+				}
+				setResult(result.toArray(new Record[result.size()]), minTtl);
+				return true;
+			}
+			if (response.isNXDOMAIN() || response.isNXRRSET()) {
+				setResult(null, Long.MAX_VALUE);
+				return true;
+			}
+			if (response.isCNAME() && (cnames < MAX_CNAME)) {
+				cnames++;
+				ttl = Math.min(ttl, response.getCNAME().getTTL());
+				lookup(response.getCNAME().getTarget());
+				return true;
+			}
+			return false;
+		}
+
+		/**
+		 * Set the result of the query
+		 *
+		 * @param result Records
+		 * @param resultTtl TTL
+		 */
+		private synchronized void setResult(Record[] result, long resultTtl) {
+			records = result;
+			ttl = Math.min(ttl, resultTtl);
+			done = true;
+			notifyAll();
+		}
+
+		/**
+		 * Answer received
+		 *
+		 * @param id Query ID
+		 * @param m Answer
+		 */
+		public void receiveMessage(Object id, Message m) {
+			cache.addMessage(m);
+			Record question = m.getQuestion();
+			if ((question == null) || !checkCache(question.getName())) {
+				setResult(null, Long.MAX_VALUE);
+			}
+		}
+
+		/**
+		 * Query has failed
+		 *
+		 * @param id Query ID
+		 * @param e Exception
+		 */
+		public void handleException(Object id, Exception e) {
+			if (logger.isActivated()) {
+				logger.debug("DNS query has failed for " + name + ": " + e.getMessage());
+			}
+			setResult(null, Long.MAX_VALUE);
+		}
+	}
+}
@@ -43,6 +43,9 @@ import com.orangelabs.rcs.provider.settings.RcsSettings;
 import com.orangelabs.rcs.utils.DeviceUtils;
 import com.orangelabs.rcs.utils.PeriodicRefresher;
 import com.orangelabs.rcs.utils.logger.Logger;
+import com.orangelabs.rcs.utils.metrics.Counter;
+import com.orangelabs.rcs.utils.metrics.Histogram;
+import com.orangelabs.rcs.utils.metrics.Metrics;
 
 /**
  * Registration manager (register, re-register, un-register)
@@ -99,6 +102,16 @@ public class RegistrationManager extends PeriodicRefresher {
 	 * Number of 401 failures
 	 */
 	private int nb401Failures = 0;
+
+	/**
+	 * Duration of the successful registrations, including the authentication
+	 */
+	private static final Histogram REGISTRATION_TIME = Metrics.histogram("ims.registration.time", "ms");
+
+	/**
+	 * Number of failed registrations
+	 */
+	private static final Counter REGISTRATION_FAILURES = Metrics.counter("ims.registration.failures", "registrations");
 	
     /**
      * The logger
@@ -172,6 +185,7 @@ public class RegistrationManager extends PeriodicRefresher {
      */
     public synchronized boolean registration() {
         registering = true;
+        long startTime = System.nanoTime();
         try {
             // Create a dialog path if necessary
             if (dialogPath == null) {
@@ -226,6 +240,11 @@ public class RegistrationManager extends PeriodicRefresher {
         	handleError(new ImsError(ImsError.UNEXPECTED_EXCEPTION, e.getMessage()));
         }
         registering = false;
+        if (registered) {
+        	REGISTRATION_TIME.recordMillisSince(startTime);
+        } else {
+        	REGISTRATION_FAILURES.inc();
+        }
         return registered;
     }
     
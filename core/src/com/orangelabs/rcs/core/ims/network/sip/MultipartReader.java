@@ -0,0 +1,301 @@
+/*******************************************************************************
+ * Software Name : RCS IMS Stack
+ *
+ * Copyright (C) 2010 France Telecom S.A.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.orangelabs.rcs.core.ims.network.sip;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.util.Hashtable;
+
+import com.orangelabs.rcs.utils.StringUtils;
+
+/**
+ * Sequential reader of a multipart content
+ * <br>Contrary to {@link Multipart}, the content is not converted to a string
+ * and each part is returned in turn, so several parts with the same MIME type
+ * (e.g. the PIDF documents of a resource list notification) can be read. The
+ * content of a part is exposed as a stream on the original byte array.
+ */
+public class MultipartReader {
+	/**
+	 * Content
+	 */
+	private byte[] content;
+
+	/**
+	 * Boundary delimiter line
+	 */
+	private byte[] delimiter;
+
+	/**
+	 * Current position in the content
+	 */
+	private int position = 0;
+
+	/**
+	 * End of content flag
+	 */
+	private boolean closed = false;
+
+	/**
+	 * Headers of the current part, indexed by lowercase name
+	 */
+	private Hashtable<String, String> headers = new Hashtable<String, String>();
+
+	/**
+	 * Start of the current part content
+	 */
+	private int partStart = 0;
+
+	/**
+	 * End of the current part content
+	 */
+	private int partEnd = 0;
+
+	/**
+	 * Constructor
+	 *
+	 * @param content Multipart content
+	 * @param boundary Boundary delimiter
+	 */
+	public MultipartReader(byte[] content, String boundary) {
+		this.content = content;
+		try {
+			this.delimiter = (Multipart.BOUNDARY_DELIMITER + boundary).getBytes("UTF-8");
+		} catch(UnsupportedEncodingException e) {
+			this.delimiter = (Multipart.BOUNDARY_DELIMITER + boundary).getBytes();
+		}
+
+		// Skip the preamble
+		int index = indexOf(delimiter, 0);
+		if (index == -1) {
+			closed = true;
+		} else {
+			position = index;
+		}
+	}
+
+	/**
+	 * Move to the next part
+	 *
+	 * @return Returns false if there is no more part
+	 */
+	public boolean next() {
+		headers.clear();
+		if (closed) {
+			return false;
+		}
+
+		// The current position is at the beginning of a delimiter line
+		int index = position + delimiter.length;
+		if ((index + 1 < content.length) && (content[index] == '-') && (content[index+1] == '-')) {
+			// Close delimiter
+			closed = true;
+			return false;
+		}
+
+		// Skip the end of the delimiter line
+		index = indexOfLineEnd(index);
+		if (index == -1) {
+			closed = true;
+			return false;
+		}
+
+		// Read the part headers
+		index = readHeaders(index);
+		if (index == -1) {
+			closed = true;
+			return false;
+		}
+
+		// Search the next delimiter
+		int next = indexOf(delimiter, index);
+		if (next == -1) {
+			// Missing close delimiter: keep the remaining content
+			next = content.length;
+			closed = true;
+		}
+		position = next;
+
+		// The line break preceding the delimiter belongs to the delimiter
+		int end = next;
+		if ((end > index) && (content[end-1] == '\n')) {
+			end--;
+			if ((end > index) && (content[end-1] == '\r')) {
+				end--;
+			}
+		}
+		partStart = index;
+		partEnd = end;
+		return true;
+	}
+
+	/**
+	 * Returns a header of the current part
+	 *
+	 * @param name Header name
+	 * @return Value or null
+	 */
+	public String getHeader(String name) {
+		return headers.get(name.toLowerCase());
+	}
+
+	/**
+	 * Returns the MIME type of the current part, without parameter
+	 *
+	 * @return MIME type in lowercase or null
+	 */
+	public String getContentType() {
+		String value = getHeader("Content-Type");
+		if (value == null) {
+			return null;
+		}
+		int index = value.indexOf(';');
+		if (index != -1) {
+			value = value.substring(0, index);
+		}
+		return value.trim().toLowerCase();
+	}
+
+	/**
+	 * Returns a parameter of the Content-Type header of the current part
+	 *
+	 * @param name Parameter name
+	 * @return Value or null
+	 */
+	public String getContentTypeParameter(String name) {
+		String value = getHeader("Content-Type");
+		if (value == null) {
+			return null;
+		}
+		String[] params = value.split(";");
+		for(int i=1; i < params.length; i++) {
+			String param = params[i].trim();
+			int index = param.indexOf('=');
+			if ((index != -1) && param.substring(0, index).trim().equalsIgnoreCase(name)) {
+				return StringUtils.removeQuotes(param.substring(index+1).trim());
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Returns the content length of the current part
+	 *
+	 * @return Length in bytes
+	 */
+	public int getContentLength() {
+		return partEnd - partStart;
+	}
+
+	/**
+	 * Returns the content of the current part as a stream
+	 *
+	 * @return Input stream
+	 */
+	public InputStream getContentStream() {
+		return new ByteArrayInputStream(content, partStart, partEnd - partStart);
+	}
+
+	/**
+	 * Returns a copy of the content of the current part
+	 *
+	 * @return Byte array
+	 */
+	public byte[] getContent() {
+		byte[] result = new byte[partEnd - partStart];
+		System.arraycopy(content, partStart, result, 0, result.length);
+		return result;
+	}
+
+	/**
+	 * Read the headers of a part
+	 *
+	 * @param index Position of the first header line
+	 * @return Position of the part content or -1 if malformed
+	 */
+	private int readHeaders(int index) {
+		while (index < content.length) {
+			int end = indexOfLineEnd(index);
+			if (end == -1) {
+				return -1;
+			}
+			int lineEnd = end - 1;
+			if ((lineEnd > index) && (content[lineEnd-1] == '\r')) {
+				lineEnd--;
+			}
+			if (lineEnd == index) {
+				// Empty line: end of headers
+				return end;
+			}
+			String line;
+			try {
+				line = new String(content, index, lineEnd - index, "UTF-8");
+			} catch(UnsupportedEncodingException e) {
+				line = new String(content, index, lineEnd - index);
+			}
+			int sep = line.indexOf(':');
+			if (sep != -1) {
+				headers.put(line.substring(0, sep).trim().toLowerCase(), line.substring(sep+1).trim());
+			}
+			index = end;
+		}
+		return -1;
+	}
+
+	/**
+	 * Returns the position following the end of the current line
+	 *
+	 * @param index Position in the line
+	 * @return Position or -1 if no line end
+	 */
+	private int indexOfLineEnd(int index) {
+		for(int i=index; i < content.length; i++) {
+			if (content[i] == '\n') {
+				return i + 1;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Search a pattern in the content
+	 *
+	 * @param pattern Pattern
+	 * @param from Start position
+	 * @return Position or -1 if not found
+	 */
+	private int indexOf(byte[] pattern, int from) {
+		int last = content.length - pattern.length;
+		byte first = pattern[0];
+		for(int i=from; i <= last; i++) {
+			if (content[i] != first) {
+				continue;
+			}
+			int j = 1;
+			while ((j < pattern.length) && (content[i+j] == pattern[j])) {
+				j++;
+			}
+			if (j == pattern.length) {
+				return i;
+			}
+		}
+		return -1;
+	}
+}
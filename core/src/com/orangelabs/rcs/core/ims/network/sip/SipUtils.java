@@ -20,7 +20,6 @@ package com.orangelabs.rcs.core.ims.network.sip;
 
 import gov2.nist.javax2.sip.header.ims.PPreferredServiceHeader;
 
-import java.util.ArrayList;
 import java.util.ListIterator;
 import java.util.Vector;
 
@@ -392,15 +391,7 @@ public class SipUtils {
      * @return Boolean
      */
     public static boolean isFeatureTagPresent(SipMessage msg, String featureTag) {
-    	boolean result = false;
-    	ArrayList<String> tags = msg.getFeatureTags();
-    	for(int i=0; i < tags.size(); i++) {
-    		if (tags.get(i).contains(featureTag)) {
-        		result = true;
-        		break;
-        	}
-    	}
-    	return result;
+    	return msg.isFeatureTagPresent(featureTag);
     }	
 
     /**
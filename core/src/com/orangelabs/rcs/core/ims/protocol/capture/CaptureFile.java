@@ -0,0 +1,328 @@
+/*******************************************************************************
+ * Software Name : RCS IMS Stack
+ *
+ * Copyright (C) 2010 France Telecom S.A.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.orangelabs.rcs.core.ims.protocol.capture;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Rotating binary capture file
+ * <br>The file is memory-mapped, so that a message is captured by a copy in
+ * memory. The file starts with a header (magic, version, creation time) and
+ * contains a record per message: length of the data, timestamp in
+ * milliseconds, protocol, direction and the raw bytes of the message. A
+ * record length of zero marks the end of the records. When a file is full,
+ * the previous files are renamed with a suffix ".1", ".2"... and a new file
+ * is started.
+ */
+public class CaptureFile {
+	/**
+	 * Magic number of the file header
+	 */
+	public static final int MAGIC = 0x52435343;
+
+	/**
+	 * Version of the format
+	 */
+	public static final short VERSION = 1;
+
+	/**
+	 * Size of the file header
+	 */
+	public static final int FILE_HEADER_SIZE = 16;
+
+	/**
+	 * Size of a record header
+	 */
+	public static final int RECORD_HEADER_SIZE = 14;
+
+	/**
+	 * SIP protocol
+	 */
+	public static final byte PROTOCOL_SIP = 1;
+
+	/**
+	 * MSRP protocol
+	 */
+	public static final byte PROTOCOL_MSRP = 2;
+
+	/**
+	 * Received message
+	 */
+	public static final byte DIRECTION_RECEIVED = 0;
+
+	/**
+	 * Sent message
+	 */
+	public static final byte DIRECTION_SENT = 1;
+
+	/**
+	 * Default size of a file
+	 */
+	public static final int DEFAULT_FILE_SIZE = 4 * 1024 * 1024;
+
+	/**
+	 * Default number of files
+	 */
+	public static final int DEFAULT_MAX_FILES = 4;
+
+	/**
+	 * Path of the current file
+	 */
+	private String path;
+
+	/**
+	 * Size of a file
+	 */
+	private int fileSize;
+
+	/**
+	 * Number of files kept, including the current one
+	 */
+	private int maxFiles;
+
+	/**
+	 * Current file
+	 */
+	private RandomAccessFile file = null;
+
+	/**
+	 * Mapping of the current file
+	 */
+	private MappedByteBuffer buffer = null;
+
+	/**
+	 * Number of records written
+	 */
+	private long recordCount = 0;
+
+	/**
+	 * Constructor. The files of a previous capture are rotated.
+	 *
+	 * @param path Path of the current file
+	 * @param fileSize Size of a file
+	 * @param maxFiles Number of files kept, including the current one
+	 * @throws IOException
+	 */
+	public CaptureFile(String path, int fileSize, int maxFiles) throws IOException {
+		this.path = path;
+		this.fileSize = fileSize;
+		this.maxFiles = maxFiles;
+		rotate();
+	}
+
+	/**
+	 * Returns the name of a file of the capture
+	 *
+	 * @param path Path of the current file
+	 * @param index Index of the file, 0 for the current file
+	 * @return File name
+	 */
+	public static String getFileName(String path, int index) {
+		if (index == 0) {
+			return path;
+		} else {
+			return path + "." + index;
+		}
+	}
+
+	/**
+	 * Write a message
+	 *
+	 * @param protocol Protocol
+	 * @param direction Direction
+	 * @param timestamp Timestamp in milliseconds
+	 * @param data Data
+	 * @param offset Offset of the message in the data
+	 * @param length Length of the message, it is truncated to the size of a file
+	 * @throws IOException
+	 */
+	public synchronized void write(byte protocol, byte direction, long timestamp, byte[] data, int offset, int length) throws IOException {
+		if (buffer == null) {
+			throw new IOException("Capture file is closed");
+		}
+		length = Math.min(length, fileSize - FILE_HEADER_SIZE - RECORD_HEADER_SIZE - 4);
+		if (buffer.remaining() < RECORD_HEADER_SIZE + length + 4) {
+			rotate();
+		}
+
+		// The length is written last, so that a reader never sees a partial record
+		int start = buffer.position();
+		buffer.position(start + 4);
+		buffer.putLong(timestamp);
+		buffer.put(protocol);
+		buffer.put(direction);
+		buffer.put(data, offset, length);
+		buffer.putInt(start, length);
+		recordCount++;
+	}
+
+	/**
+	 * Returns the number of records written
+	 *
+	 * @return Number of records
+	 */
+	public synchronized long getRecordCount() {
+		return recordCount;
+	}
+
+	/**
+	 * Close the capture
+	 */
+	public synchronized void close() {
+		closeFile();
+	}
+
+	/**
+	 * Close the current file and start a new one
+	 *
+	 * @throws IOException
+	 */
+	private void rotate() throws IOException {
+		closeFile();
+
+		// Shift the previous files, the records of a file which is not shifted
+		// would be read again after the new ones
+		File last = new File(getFileName(path, maxFiles - 1));
+		if (last.exists() && !last.delete()) {
+			throw new IOException("Can't delete capture file " + last);
+		}
+		for (int i = maxFiles - 2; i >= 0; i--) {
+			File previous = new File(getFileName(path, i));
+			File next = new File(getFileName(path, i + 1));
+			if (previous.exists() && !previous.renameTo(next)) {
+				throw new IOException("Can't rename capture file " + previous + " to " + next);
+			}
+		}
+
+		// The new file is filled with zeros, i.e. with an end of records
+		file = new RandomAccessFile(path, "rw");
+		file.setLength(0);
+		file.setLength(fileSize);
+		buffer = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, fileSize);
+		buffer.putInt(MAGIC);
+		buffer.putShort(VERSION);
+		buffer.putShort((short)0);
+		buffer.putLong(System.currentTimeMillis());
+	}
+
+	/**
+	 * Close the current file
+	 */
+	private void closeFile() {
+		if (buffer != null) {
+			buffer.force();
+			buffer = null;
+		}
+		if (file != null) {
+			try {
+				file.close();
+			} catch (IOException e) {
+				// Nothing to do
+			}
+			file = null;
+		}
+	}
+
+	/**
+	 * Captured message
+	 */
+	public static class Record {
+		/**
+		 * Timestamp in milliseconds
+		 */
+		public long timestamp;
+
+		/**
+		 * Protocol
+		 */
+		public byte protocol;
+
+		/**
+		 * Direction
+		 */
+		public byte direction;
+
+		/**
+		 * Raw message
+		 */
+		public byte[] data;
+	}
+
+	/**
+	 * Read the records of capture files, sorted by timestamp
+	 *
+	 * @param paths Capture files
+	 * @return Records
+	 * @throws IOException
+	 */
+	public static List<Record> read(String[] paths) throws IOException {
+		List<Record> records = new ArrayList<Record>();
+		for (int i = 0; i < paths.length; i++) {
+			DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(paths[i])));
+			try {
+				if (input.readInt() != MAGIC) {
+					throw new IOException(paths[i] + " is not a capture file");
+				}
+				if (input.readShort() != VERSION) {
+					throw new IOException("Unsupported version of capture file " + paths[i]);
+				}
+				input.readShort();
+				input.readLong();
+				while (true) {
+					int length = input.readInt();
+					if (length <= 0) {
+						// End of records
+						break;
+					}
+					Record record = new Record();
+					record.timestamp = input.readLong();
+					record.protocol = input.readByte();
+					record.direction = input.readByte();
+					record.data = new byte[length];
+					input.readFully(record.data);
+					records.add(record);
+				}
+			} catch (EOFException e) {
+				// End of file
+			} finally {
+				input.close();
+			}
+		}
+
+		// The sort is stable, the order of the messages of a same millisecond is kept
+		Collections.sort(records, new Comparator<Record>() {
+			public int compare(Record r1, Record r2) {
+				return (r1.timestamp < r2.timestamp) ? -1 : ((r1.timestamp == r2.timestamp) ? 0 : 1);
+			}
+		});
+		return records;
+	}
+}
@@ -0,0 +1,151 @@
+/*******************************************************************************
+ * Software Name : RCS IMS Stack
+ *
+ * Copyright (C) 2010 France Telecom S.A.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.orangelabs.rcs.core.ims.protocol.capture;
+
+import java.io.IOException;
+
+import com.orangelabs.rcs.utils.logger.Logger;
+
+/**
+ * Capture of the SIP and MSRP messages into a binary capture file
+ * <br>The capture replaces the text traces of the messages: a message is
+ * copied with its timestamp and direction, and the capture file is converted
+ * offline by the CaptureConverter tool of siplog.
+ */
+public class MessageCapture {
+	/**
+	 * Extension of the capture file
+	 */
+	public static final String FILE_EXTENSION = ".cap";
+
+	/**
+	 * Current capture file
+	 */
+	private static volatile CaptureFile captureFile = null;
+
+	/**
+	 * The logger
+	 */
+	private static final Logger logger = Logger.getLogger(MessageCapture.class.getSimpleName());
+
+	/**
+	 * Start the capture
+	 *
+	 * @param path Path of the capture file
+	 */
+	public static synchronized void start(String path) {
+		start(path, CaptureFile.DEFAULT_FILE_SIZE, CaptureFile.DEFAULT_MAX_FILES);
+	}
+
+	/**
+	 * Start the capture
+	 *
+	 * @param path Path of the capture file
+	 * @param fileSize Size of a file
+	 * @param maxFiles Number of files kept
+	 */
+	public static synchronized void start(String path, int fileSize, int maxFiles) {
+		if (captureFile != null) {
+			return;
+		}
+		try {
+			captureFile = new CaptureFile(path, fileSize, maxFiles);
+			if (logger.isActivated()) {
+				logger.info("Message capture started in " + path);
+			}
+		} catch (IOException e) {
+			if (logger.isActivated()) {
+				logger.error("Can't start the message capture in " + path, e);
+			}
+		}
+	}
+
+	/**
+	 * Stop the capture
+	 */
+	public static synchronized void stop() {
+		if (captureFile == null) {
+			return;
+		}
+		captureFile.close();
+		captureFile = null;
+		if (logger.isActivated()) {
+			logger.info("Message capture stopped");
+		}
+	}
+
+	/**
+	 * Is capture started
+	 *
+	 * @return Boolean
+	 */
+	public static boolean isStarted() {
+		return captureFile != null;
+	}
+
+	/**
+	 * Capture a message
+	 *
+	 * @param protocol Protocol, see {@link CaptureFile}
+	 * @param direction Direction, see {@link CaptureFile}
+	 * @param data Raw message
+	 */
+	public static void capture(byte protocol, byte direction, byte[] data) {
+		capture(protocol, direction, data, 0, data.length);
+	}
+
+	/**
+	 * Capture a message
+	 *
+	 * @param protocol Protocol, see {@link CaptureFile}
+	 * @param direction Direction, see {@link CaptureFile}
+	 * @param data Data
+	 * @param offset Offset of the message in the data
+	 * @param length Length of the message
+	 */
+	public static void capture(byte protocol, byte direction, byte[] data, int offset, int length) {
+		CaptureFile file = captureFile;
+		if (file == null) {
+			return;
+		}
+		try {
+			file.write(protocol, direction, System.currentTimeMillis(), data, offset, length);
+		} catch (IOException e) {
+			if (logger.isActivated()) {
+				logger.error("Can't capture message", e);
+			}
+			stop();
+		}
+	}
+
+	/**
+	 * Returns the capture file name associated to a trace file name, e.g.
+	 * "sip.cap" for "sip.txt"
+	 *
+	 * @param traceFile Trace file name
+	 * @return Capture file name
+	 */
+	public static String getCaptureFileName(String traceFile) {
+		int index = traceFile.lastIndexOf('.');
+		if ((index != -1) && (index > traceFile.lastIndexOf('/'))) {
+			traceFile = traceFile.substring(0, index);
+		}
+		return traceFile + FILE_EXTENSION;
+	}
+}
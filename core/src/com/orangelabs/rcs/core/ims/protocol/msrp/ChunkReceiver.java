@@ -18,10 +18,13 @@
 
 package com.orangelabs.rcs.core.ims.protocol.msrp;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.Hashtable;
 
+import com.orangelabs.rcs.core.ims.protocol.capture.CaptureFile;
+import com.orangelabs.rcs.core.ims.protocol.capture.MessageCapture;
 import com.orangelabs.rcs.core.ims.protocol.msrp.MsrpSession.TypeMsrpChunk;
 import com.orangelabs.rcs.utils.logger.Logger;
 
@@ -51,6 +54,11 @@ public class ChunkReceiver extends Thread {
      */
     private int buffer_length = MsrpConstants.CHUNK_MAX_SIZE;
 
+	/**
+	 * Raw bytes of the message being received, kept for the capture
+	 */
+	private CaptureBuffer captureBuffer = new CaptureBuffer();
+
 	/**
 	 * The logger
 	 */
@@ -84,7 +92,7 @@ public class ChunkReceiver extends Thread {
 		try {
 			interrupt();
 		} catch(Exception e) {}
-		if (logger.isActivated()) {
+		if (logger.isDebugActivated()) {
 			logger.debug("Receiver is terminated");
 		}
 	}
@@ -94,13 +102,13 @@ public class ChunkReceiver extends Thread {
 	 */
 	public void run() {
 		try {
-			if (logger.isActivated()) {
+			if (logger.isDebugActivated()) {
 				logger.debug("Receiver is started");
 			}
 
 			// Background processing
 			while(!terminated) {
-				StringBuffer trace = new StringBuffer();
+				captureBuffer.reset();
 
 				// Read first line of a new data chunk
 				StringBuffer line = readLine();
@@ -110,25 +118,20 @@ public class ChunkReceiver extends Thread {
                 
                 try {
     				if (line.length() == 0) {
-    					if (logger.isActivated()) {
+    					if (logger.isDebugActivated()) {
     						logger.debug("End of stream");
     					}					
     					return;
     				}
 
-    				if (MsrpConnection.MSRP_TRACE_ENABLED) {
-    					trace.append(line);
-    					trace.append(MsrpConstants.NEW_LINE);
-    				}
-    
-    				if (logger.isActivated()) {
+    				if (logger.isDebugActivated()) {
     					logger.debug("Read a new chunk");
     				}
     				
     				// Check the MSRP tag
     				String[] firstLineTags = line.toString().split(" ");
     				if ((firstLineTags.length < 3) || !firstLineTags[0].equals(MsrpConstants.MSRP_HEADER)) {
-    					if (logger.isActivated()) {
+    					if (logger.isDebugActivated()) {
     						logger.debug("Not a MSRP message");
     					}
     					return;
@@ -136,8 +139,8 @@ public class ChunkReceiver extends Thread {
     
     				// Get the transaction ID from the first line
     				String txId = firstLineTags[1];
-    				if (logger.isActivated()) {
-    					logger.debug("Transaction-ID: " + txId);
+    				if (logger.isDebugActivated()) {
+    					logger.debug("Transaction-ID: {}", txId);
     				}	
     				String end = MsrpConstants.END_MSRP_MSG + txId;
     
@@ -146,13 +149,13 @@ public class ChunkReceiver extends Thread {
     				String method = null;
     				try {
     					responseCode = Integer.parseInt(firstLineTags[2]);
-    					if (logger.isActivated()) {
-    						logger.debug("Response: " + responseCode);
+    					if (logger.isDebugActivated()) {
+    						logger.debug("Response: {}", responseCode);
     					}	
     				} catch(NumberFormatException e) {
     					method = firstLineTags[2];
-    					if (logger.isActivated()) {
-    						logger.debug("Method: " + method);
+    					if (logger.isDebugActivated()) {
+    						logger.debug("Method: {}", method);
     					}	
     				}
     
@@ -165,10 +168,6 @@ public class ChunkReceiver extends Thread {
     				int totalSize = 0;
     				while(continuationFlag == '\0' && !terminated) {
     					line = readLine();
-    					if (MsrpConnection.MSRP_TRACE_ENABLED) {
-    						trace.append(line);
-    						trace.append(MsrpConstants.NEW_LINE);
-    					}
     					
     					// Test if there is a new line separating headers from the data
     					if (line.length() == 0) {
@@ -185,8 +184,8 @@ public class ChunkReceiver extends Thread {
     							}
     						}
     							
-    						if (logger.isActivated()) {
-    							logger.debug("Read data (" + chunkSize + ")");
+    						if (logger.isDebugActivated()) {
+    							logger.debug("Read data ({})", chunkSize);
     						}	
     						
     						if (chunkSize >= 0) {
@@ -201,15 +200,10 @@ public class ChunkReceiver extends Thread {
                                     data = new byte[buffer.length - 1];
                                     System.arraycopy(buffer, 0, data, 0, buffer.length - 1);
                                     continuationFlag = (char) buffer[buffer.length - 1];
-                                    if (logger.isActivated()) {
-                                        logger.debug("Continuous flag: " + continuationFlag);
+                                    if (logger.isDebugActivated()) {
+                                        logger.debug("Continuous flag: {}", continuationFlag);
                                     }
                                 }
-    
-    							if (MsrpConnection.MSRP_TRACE_ENABLED) {
-    								trace.append(new String(data));
-    								trace.append(MsrpConstants.NEW_LINE);
-    							}
     						} else {
     							// Read until terminating header is found
     							StringBuffer buffer = new StringBuffer();
@@ -219,8 +213,8 @@ public class ChunkReceiver extends Thread {
     								dataline = readLine();
     								if ((dataline.length()-1 == end.length()) && (dataline.toString().startsWith(end))) {
     									continuationFlag = dataline.charAt(dataline.length()-1);
-    									if (logger.isActivated()) {
-    										logger.debug("Continuous flag: " + continuationFlag);
+    									if (logger.isDebugActivated()) {
+    										logger.debug("Continuous flag: {}", continuationFlag);
     									}
     									endchunk = true;
     								} else {
@@ -232,22 +226,15 @@ public class ChunkReceiver extends Thread {
     							}
 							data = buffer.toString().getBytes();
 							totalSize = data.length;
-							
-    							if (MsrpConnection.MSRP_TRACE_ENABLED) {
-    								trace.append(new String(data));
-    								trace.append(MsrpConstants.NEW_LINE);
-    								trace.append(end);
-    								trace.append(continuationFlag);
-    							}
     						}
-    						if (logger.isActivated()) {
-    							logger.debug("Data: " + data.length);
+    						if (logger.isDebugActivated()) {
+    							logger.debug("Data: {}", data.length);
 						}
     					} else
     					if (line.toString().startsWith(end)) {
     						continuationFlag = line.charAt(line.length()-1);
-    						if (logger.isActivated()) {
-    							logger.debug("Continuous flag: " + continuationFlag);
+    						if (logger.isDebugActivated()) {
+    							logger.debug("Continuous flag: {}", continuationFlag);
     						}						
     					} else {
     						// It's an header
@@ -257,9 +244,9 @@ public class ChunkReceiver extends Thread {
     						
     						// Add the header in the list
     						headers.put(headerName, headerValue);
-    						if (logger.isActivated()) {
+    						if (logger.isDebugActivated()) {
                                 // Changed by Deutsche Telekom
-    							logger.debug("Header: " + headerName + " - Value: " + headerValue);
+    							logger.debug("Header: {} - Value: {}", headerName, headerValue);
     						}						
     					}
     				}
@@ -268,7 +255,7 @@ public class ChunkReceiver extends Thread {
     				if (responseCode != -1) {
     					// Process MSRP response
     					if (MsrpConnection.MSRP_TRACE_ENABLED) {
-    						System.out.println("<<< Receive MSRP response:\n" +  trace);
+    						captureBuffer.capture();
     					}
     					connection.getSession().receiveMsrpResponse(responseCode, txId, headers);
     				} else {
@@ -276,20 +263,20 @@ public class ChunkReceiver extends Thread {
     					if (method.toString().equals(MsrpConstants.METHOD_SEND)) {
     						// Process a SEND request
     						if (MsrpConnection.MSRP_TRACE_ENABLED) {
-    							System.out.println("<<< Receive MSRP SEND request:\n" +  trace);
+    							captureBuffer.capture();
     						}
     						connection.getSession().receiveMsrpSend(txId, headers, continuationFlag, data, totalSize);
     					} else 
     					if (method.toString().equals(MsrpConstants.METHOD_REPORT)) {
     						// Process a REPORT request
     						if (MsrpConnection.MSRP_TRACE_ENABLED) {
-    							System.out.println("<<< Receive MSRP REPORT request:\n" +  trace);
+    							captureBuffer.capture();
     						}
     						connection.getSession().receiveMsrpReport(txId, headers);					
     					} else {
     						// Unknown request
-    						if (logger.isActivated()) {
-    							logger.debug("Unknown request received: " + method);
+    						if (logger.isDebugActivated()) {
+    							logger.debug("Unknown request received: {}", method);
     						}
     			              
     		                // Remove transaction info from list 
@@ -308,7 +295,7 @@ public class ChunkReceiver extends Thread {
 			}
 		} catch(Exception e) {
 			if (terminated) { 
-				if (logger.isActivated()) {
+				if (logger.isDebugActivated()) {
 					logger.debug("Chunk receiver thread terminated");
 				}
 			} else {
@@ -328,6 +315,37 @@ public class ChunkReceiver extends Thread {
 		}
 	}
 
+	/**
+	 * Read a byte, which is kept for the capture
+	 *
+	 * @return Byte or -1 at the end of the stream
+	 * @throws IOException
+	 */
+	private int read() throws IOException {
+		int b = stream.read();
+		if ((b != -1) && MsrpConnection.MSRP_TRACE_ENABLED) {
+			captureBuffer.write(b);
+		}
+		return b;
+	}
+
+	/**
+	 * Read bytes, which are kept for the capture
+	 *
+	 * @param buffer Buffer
+	 * @param offset Offset in the buffer
+	 * @param length Maximum number of bytes
+	 * @return Number of bytes read or -1 at the end of the stream
+	 * @throws IOException
+	 */
+	private int read(byte[] buffer, int offset, int length) throws IOException {
+		int n = stream.read(buffer, offset, length);
+		if ((n > 0) && MsrpConnection.MSRP_TRACE_ENABLED) {
+			captureBuffer.write(buffer, offset, n);
+		}
+		return n;
+	}
+
 	/**
 	 * Read line
 	 * 
@@ -338,7 +356,7 @@ public class ChunkReceiver extends Thread {
 		StringBuffer line = new StringBuffer();
 		int previous = -1;
 		int current = -1;
-		while((current = stream.read()) != -1) {
+		while((current = read()) != -1) {
 			line.append((char)current);			
 			if ((previous == MsrpConstants.CHAR_LF) && (current == MsrpConstants.CHAR_CR)) {
 				return line.delete(line.length()-2, line.length());
@@ -365,7 +383,7 @@ public class ChunkReceiver extends Thread {
                 result = new byte[chunkSize];
                 int nbRead = 0;
                 int nbData = -1;
-                while ((nbRead < chunkSize) && ((nbData = stream.read(result, nbRead, chunkSize - nbRead)) != -1)) {
+                while ((nbRead < chunkSize) && ((nbData = read(result, nbRead, chunkSize - nbRead)) != -1)) {
                     nbRead += nbData;
                 }
             } else {
@@ -381,7 +399,7 @@ public class ChunkReceiver extends Thread {
                 }
     
                 // Read stream byte by byte
-                for (int j = 0; (b = stream.read()) != -1; j++) {
+                for (int j = 0; (b = read()) != -1; j++) {
                     // Sliding window over last received bytes
                     System.arraycopy(tail, 0, tail, 1, tagLength - 1);
                     tail[0] = b;
@@ -405,18 +423,31 @@ public class ChunkReceiver extends Thread {
                             System.arraycopy(buffer, 0, result, 0, j - tagLength - 1); // remove tag and CR/LF
     
                             // read continuation flag
-                            result[j - tagLength - 1] = (byte) stream.read();
+                            result[j - tagLength - 1] = (byte) read();
                             break;
                         }
                     }
                 }
             }
-    		stream.read(); // Read LF
-    		stream.read(); // Read CR
+    		read(); // Read LF
+    		read(); // Read CR
     		return result;
         } finally {
             // Changed by Deutsche Telekom
             //CpuManager.releaseTempLock();
         }
 	}
+
+	/**
+	 * Buffer of the raw bytes of a received message, reused from one message
+	 * to the next
+	 */
+	private static class CaptureBuffer extends ByteArrayOutputStream {
+		/**
+		 * Capture the bytes of the message
+		 */
+		public synchronized void capture() {
+			MessageCapture.capture(CaptureFile.PROTOCOL_MSRP, CaptureFile.DIRECTION_RECEIVED, buf, 0, count);
+		}
+	}
 }
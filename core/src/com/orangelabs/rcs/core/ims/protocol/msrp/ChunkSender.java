@@ -21,6 +21,8 @@ package com.orangelabs.rcs.core.ims.protocol.msrp;
 import java.io.IOException;
 import java.io.OutputStream;
 
+import com.orangelabs.rcs.core.ims.protocol.capture.CaptureFile;
+import com.orangelabs.rcs.core.ims.protocol.capture.MessageCapture;
 import com.orangelabs.rcs.core.ims.protocol.msrp.MsrpSession.TypeMsrpChunk;
 import com.orangelabs.rcs.utils.logger.Logger;
 
@@ -84,7 +86,7 @@ public class ChunkSender extends Thread {
 		try {
 			interrupt();
 		} catch(Exception e) {}
-		if (logger.isActivated()) {
+		if (logger.isDebugActivated()) {
 			logger.debug("Sender is terminated");
 		}
 	}
@@ -94,7 +96,7 @@ public class ChunkSender extends Thread {
 	 */
 	public void run() {
 		try {
-			if (logger.isActivated()) {
+			if (logger.isDebugActivated()) {
 				logger.debug("Sender is started");
 			}
 
@@ -103,13 +105,13 @@ public class ChunkSender extends Thread {
 			while ((chunk = (byte[])buffer.getMessage()) != null) {
 				// Write chunk to the output stream
 				if (MsrpConnection.MSRP_TRACE_ENABLED) {
-					System.out.println(">>> Send MSRP message:\n" + new String(chunk));
+					MessageCapture.capture(CaptureFile.PROTOCOL_MSRP, CaptureFile.DIRECTION_SENT, chunk);
 				}
 				writeData(chunk);
 			}
 		} catch (Exception e) {
 			if (terminated) { 
-				if (logger.isActivated()) {
+				if (logger.isDebugActivated()) {
 					logger.debug("Chunk sender thread terminated");
 				}
 			} else {
@@ -156,7 +158,7 @@ public class ChunkSender extends Thread {
 	    //CpuManager.setTempLock();
 	    try {
     		if (MsrpConnection.MSRP_TRACE_ENABLED) {
-    			System.out.println(">>> Send MSRP message:\n" + new String(chunk));
+    			MessageCapture.capture(CaptureFile.PROTOCOL_MSRP, CaptureFile.DIRECTION_SENT, chunk);
     		}
     		writeData(chunk);
 	    } finally {
@@ -110,7 +110,7 @@ public abstract class MsrpConnection {
 		sender = new ChunkSender(this, outputStream);
 		sender.start();
 
-		if (logger.isActivated()) {
+		if (logger.isDebugActivated()) {
 			logger.debug("Connection has been openned");
 		}
 	}
@@ -140,7 +140,7 @@ public abstract class MsrpConnection {
 		sender = new ChunkSender(this, outputStream);
 		sender.start();
 
-		if (logger.isActivated()) {
+		if (logger.isDebugActivated()) {
 			logger.debug("Connection has been openned");
 		}
 	}
@@ -161,7 +161,7 @@ public abstract class MsrpConnection {
 
 		// Close socket connection
 		try {
-			if (logger.isActivated()) {
+			if (logger.isDebugActivated()) {
 				logger.debug("Close the socket connection");
 			}
 			if (inputStream != null) {
@@ -179,7 +179,7 @@ public abstract class MsrpConnection {
 			}
 		}
 		
-		if (logger.isActivated()) {
+		if (logger.isDebugActivated()) {
 			logger.debug("Connection has been closed");
 		}
 	}
@@ -24,13 +24,17 @@ import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Hashtable;
 import java.util.List;
-import java.util.Random;
 import java.util.Vector;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import com.orangelabs.rcs.utils.CloseableUtils;
 import com.orangelabs.rcs.utils.IdGenerator;
 import com.orangelabs.rcs.utils.logger.Logger;
+import com.orangelabs.rcs.utils.metrics.Counter;
+import com.orangelabs.rcs.utils.metrics.Gauge;
+import com.orangelabs.rcs.utils.metrics.Histogram;
+import com.orangelabs.rcs.utils.metrics.Metrics;
 
 /**
  * MSRP session
@@ -150,11 +154,6 @@ public class MsrpSession {
      */
     private MsrpEventListener msrpEventListener = null;
 
-    /**
-     * Random generator
-     */
-	private static Random random = new Random(System.currentTimeMillis());
-
 	/**
 	 * Report transaction
 	 */
@@ -174,6 +173,46 @@ public class MsrpSession {
      * File transfer progress
      */
     private long totalSize;
+
+    /**
+     * Number of sessions created, numbering the metrics of a session
+     */
+    private static final AtomicInteger sessionCount = new AtomicInteger(0);
+
+    /**
+     * Number of bytes sent in the session, exported as msrp.session.<number>.bytes.sent
+     */
+    private final Gauge bytesSent;
+
+    /**
+     * Number of bytes received in the session, exported as msrp.session.<number>.bytes.received
+     */
+    private final Gauge bytesReceived;
+
+    /**
+     * Metrics of the session removed flag
+     */
+    private boolean metricsRemoved = false;
+
+    /**
+     * Number of open sessions
+     */
+    private static final Gauge OPEN_SESSIONS = Metrics.gauge("msrp.sessions", "sessions");
+
+    /**
+     * Number of bytes sent in all the sessions
+     */
+    private static final Counter BYTES_SENT = Metrics.counter("msrp.bytes.sent", "bytes");
+
+    /**
+     * Number of bytes received in all the sessions
+     */
+    private static final Counter BYTES_RECEIVED = Metrics.counter("msrp.bytes.received", "bytes");
+
+    /**
+     * Throughput of the contents sent in several chunks
+     */
+    private static final Histogram SEND_THROUGHPUT = Metrics.histogram("msrp.send.throughput", "kbit/s");
     
     /**
 	 * The logger
@@ -210,6 +249,12 @@ public class MsrpSession {
 	public MsrpSession() {
 	    // Changed by Deutsche Telekom
 	    setMapMsgIdFromTransationId(true);
+
+	    // The bytes of the session are exported while it is open
+	    int number = sessionCount.incrementAndGet();
+	    bytesSent = Metrics.gauge("msrp.session." + number + ".bytes.sent", "bytes");
+	    bytesReceived = Metrics.gauge("msrp.session." + number + ".bytes.received", "bytes");
+	    OPEN_SESSIONS.add(1);
 	}
 	
 	// Changed by Deutsche Telekom
@@ -219,6 +264,7 @@ public class MsrpSession {
     @Override
     protected void finalize() throws Throwable {
         setMapMsgIdFromTransationId(false);
+        removeMetrics();
 
         super.finalize();
     }
@@ -228,8 +274,8 @@ public class MsrpSession {
 	 * 
 	 * @return ID
 	 */
-	private static synchronized String generateTransactionId() {
-		return Long.toHexString(random.nextLong());		
+	private static String generateTransactionId() {
+		return IdGenerator.generateTransactionId();
 	}
 	
 	/**
@@ -340,11 +386,43 @@ public class MsrpSession {
 		this.to = to;
 	}
 
+	/**
+	 * Returns the number of bytes sent in the session
+	 * 
+	 * @return Number of bytes
+	 */
+	public long getBytesSent() {
+		return bytesSent.get();
+	}
+
+	/**
+	 * Returns the number of bytes received in the session
+	 * 
+	 * @return Number of bytes
+	 */
+	public long getBytesReceived() {
+		return bytesReceived.get();
+	}
+
+	/**
+	 * Remove the metrics of the session, the bytes of the closed sessions
+	 * remain counted in msrp.bytes.sent and msrp.bytes.received
+	 */
+	private synchronized void removeMetrics() {
+		if (metricsRemoved) {
+			return;
+		}
+		metricsRemoved = true;
+		Metrics.remove(bytesSent);
+		Metrics.remove(bytesReceived);
+		OPEN_SESSIONS.add(-1);
+	}
+
 	/**
 	 * Close the session
 	 */
 	public void close() {
-		if (logger.isActivated()) {
+		if (logger.isDebugActivated()) {
 			logger.debug("Close session");
 		}
 
@@ -370,6 +448,9 @@ public class MsrpSession {
         if (msrpTransaction != null) {
             msrpTransaction.terminate();
         }
+
+        // Stop exporting the metrics of the session
+        removeMetrics();
 	}
 
 	// Changed by Deutsche Telekom
@@ -384,8 +465,8 @@ public class MsrpSession {
 	 * @throws MsrpException
 	 */
 	public void sendChunks(InputStream inputStream, String msgId, String contentType, final long totalSize, TypeMsrpChunk typeMsrpChunk) throws MsrpException {
-		if (logger.isActivated()) {
-			logger.info("Send content (" + contentType + " - MSRP chunk type: " + typeMsrpChunk + ")");
+		if (logger.isInfoActivated()) {
+			logger.info("Send content ({} - MSRP chunk type: {})", contentType, typeMsrpChunk);
 		}
 
 		if (from == null) {
@@ -465,6 +546,7 @@ public class MsrpSession {
     		String msrpMsgId = IdGenerator.generateMessageID();
 
             // Send data chunk by chunk
+            long startTime = System.nanoTime();
 			for (int i = inputStream.read(data); (!cancelTransfer) & (i>-1); i=inputStream.read(data)) {
 				// Update upper byte range
 				lastByte += i;
@@ -476,6 +558,8 @@ public class MsrpSession {
 				// Send a chunk
 				// Changed by Deutsche Telekom
 				sendMsrpSendRequest(newTransactionId, to, from, msrpMsgId, contentType, i, data, firstByte, lastByte, totalSize);
+				bytesSent.add(i);
+				BYTES_SENT.add(i);
 
 				// Update lower byte range
 				firstByte += i;
@@ -497,6 +581,12 @@ public class MsrpSession {
 				return;
 			}
 
+			// Bytes per millisecond multiplied by 8 gives kbit/s
+			long duration = (System.nanoTime() - startTime) / 1000000;
+			if ((totalChunks > 1) && (duration > 0)) {
+				SEND_THROUGHPUT.record(lastByte * 8 / duration);
+			}
+
             // Waiting msrpTransaction
             if (msrpTransaction != null) {
                 // Wait until all data have been reported
@@ -884,8 +974,8 @@ public class MsrpSession {
 	    //CpuManager.setTempLock();
 	    try {
     		// Receive a SEND request
-    		if (logger.isActivated()) {
-			logger.debug("SEND request received (flag=" + flag + ", transaction=" + txId + ", totalSize="+totalSize+")");
+    		if (logger.isDebugActivated()) {
+			logger.debug("SEND request received (flag={}, transaction={}, totalSize={})", flag, txId, totalSize);
     		}
     
     		// Read message-ID
@@ -905,7 +995,7 @@ public class MsrpSession {
     		
     		// Test if it's an empty chunk
     		if (data == null) { 
-    			if (logger.isActivated()) {
+    			if (logger.isDebugActivated()) {
     				logger.debug("Empty chunk");
     			}
     			return;
@@ -913,6 +1003,8 @@ public class MsrpSession {
     		
     		// Save received data chunk if there is some
     		receivedChunks.addChunk(data);
+    		bytesReceived.add(data.length);
+    		BYTES_RECEIVED.add(data.length);
     		
     		// Check the continuation flag
     		if (flag == MsrpConstants.FLAG_LAST_CHUNK) {
@@ -963,7 +1055,7 @@ public class MsrpSession {
     		} else
     		if (flag == MsrpConstants.FLAG_MORE_CHUNK) {
     			// Transfer in progress
-    			if (logger.isActivated()) {
+    			if (logger.isDebugActivated()) {
     				logger.debug("Transfer in progress...");
     			}
                 byte[] dataContent = receivedChunks.getReceivedData();
@@ -995,8 +1087,8 @@ public class MsrpSession {
 	    // Changed by Deutsche Telekom
 	    //CpuManager.setTempLock();
 	    try {
-    		if (logger.isActivated()) {
-    			logger.info("Response received (code=" + code + ", transaction=" + txId + ")");
+    		if (logger.isInfoActivated()) {
+    			logger.info("Response received (code={}, transaction={})", code, txId);
     		}
     		
             if (failureReportOption) {
@@ -1087,8 +1179,8 @@ public class MsrpSession {
 	    
 	    //CpuManager.setTempLock();
 	    try {
-    		if (logger.isActivated()) {
-    			logger.info("REPORT request received (transaction=" + txId + ")");
+    		if (logger.isInfoActivated()) {
+    			logger.info("REPORT request received (transaction={})", txId);
     		}
     		
             // Changed by Deutsche Telekom
@@ -1102,7 +1194,7 @@ public class MsrpSession {
                 typeMsrpChunk = msrpTransactionInfo.typeMsrpChunk;
                 originalTransactionId = msrpTransactionInfo.transactionId;
                 cpimMsgId = msrpTransactionInfo.cpimMsgId;
-                if (logger.isActivated()) {
+                if (logger.isDebugActivated()) {
                     logger.debug("REPORT request details; originalTransactionId="
                             + originalTransactionId + "; cpimMsgId=" + cpimMsgId + "; typeMsrpChunk="
                             + typeMsrpChunk);
@@ -1261,7 +1353,7 @@ public class MsrpSession {
                         for (MsrpTransactionInfo msrpTransactionInfo : msrpTransactionInfos) {
                             long delta = (System.currentTimeMillis() - msrpTransactionInfo.timestamp) / 1000;
                             if ((delta >= TRANSACTION_INFO_EXPIRY_PERIOD) || (delta < 0)) {
-                                if (logger.isActivated()) {
+                                if (logger.isDebugActivated()) {
                                     logger.debug("Transaction info have expired (transactionId: "
                                             + msrpTransactionInfo.transactionId + ", msgId: " + msrpTransactionInfo.msrpMsgId + ")");
                                 }
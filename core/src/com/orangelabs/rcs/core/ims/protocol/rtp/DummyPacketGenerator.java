@@ -70,21 +70,21 @@ public class DummyPacketGenerator {
     		// Create the input stream
             inputStream = new DummyPacketSourceStream();
     		inputStream.open();
-			if (logger.isActivated()) {
+			if (logger.isDebugActivated()) {
 				logger.debug("Input stream: " + inputStream.getClass().getName());
 			}
 
             // Create the output stream
             outputStream = new RtpOutputStream(remoteAddress, remotePort, rtpStream);
     		outputStream.open();
-			if (logger.isActivated()) {
+			if (logger.isDebugActivated()) {
 				logger.debug("Output stream: " + outputStream.getClass().getName());
 			}
 
             // Create the media processor
     		processor = new Processor(inputStream, outputStream, new Codec[0]);
 
-        	if (logger.isActivated()) {
+        	if (logger.isDebugActivated()) {
         		logger.debug("Session has been prepared with success");
             }
 
@@ -100,7 +100,7 @@ public class DummyPacketGenerator {
      * Start the RTP session
      */
     public void startSession() {
-    	if (logger.isActivated()) {
+    	if (logger.isDebugActivated()) {
     		logger.debug("Start the session");
     	}
 
@@ -114,7 +114,7 @@ public class DummyPacketGenerator {
      * Stop the RTP session
      */
     public void stopSession() {
-    	if (logger.isActivated()) {
+    	if (logger.isDebugActivated()) {
     		logger.debug("Stop the session");
     	}
 
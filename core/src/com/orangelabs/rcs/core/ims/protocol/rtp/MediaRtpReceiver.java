@@ -77,14 +77,14 @@ public class MediaRtpReceiver {
             inputStream = new RtpInputStream(remoteAddress, remotePort, localPort, format);
             inputStream.addRtpStreamListener(rtpStreamListener);
     		inputStream.open();
-			if (logger.isActivated()) {
+			if (logger.isDebugActivated()) {
 				logger.debug("Input stream: " + inputStream.getClass().getName());
 			}
 
             // Create the output stream
         	MediaRendererStream outputStream = new MediaRendererStream(renderer);
     		outputStream.open();
-			if (logger.isActivated()) {
+			if (logger.isDebugActivated()) {
 				logger.debug("Output stream: " + outputStream.getClass().getName());
 			}
 
@@ -94,7 +94,7 @@ public class MediaRtpReceiver {
             // Create the media processor
     		processor = new Processor(inputStream, outputStream, codecChain);
 
-        	if (logger.isActivated()) {
+        	if (logger.isDebugActivated()) {
         		logger.debug("Session has been prepared with success");
             }
         } catch(Exception e) {
@@ -72,7 +72,7 @@ public class Processor extends Thread {
 		// Create the codec chain
 		codecChain = new CodecChain(codecs, outputStream);
 
-    	if (logger.isActivated()) {
+    	if (logger.isDebugActivated()) {
     		logger.debug("Media processor created");
         }
 	}
@@ -81,7 +81,7 @@ public class Processor extends Thread {
 	 * Start processing
 	 */
 	public void startProcessing() {
-		if (logger.isActivated()) {
+		if (logger.isDebugActivated()) {
 			logger.debug("Start media processor");
 		}
 		interrupted = false;
@@ -92,7 +92,7 @@ public class Processor extends Thread {
 	 * Stop processing
 	 */
 	public void stopProcessing() {
-		if (logger.isActivated()) {
+		if (logger.isDebugActivated()) {
 			logger.debug("Stop media processor");
 		}
 		interrupted = true;
@@ -107,7 +107,7 @@ public class Processor extends Thread {
 	 */
 	public void run() {
 		try {
-			if (logger.isActivated()) {
+			if (logger.isDebugActivated()) {
 				logger.debug("Processor processing is started");
 			}
 
@@ -117,7 +117,7 @@ public class Processor extends Thread {
 				Buffer inBuffer = inputStream.read();
 				if (inBuffer == null) {
 					interrupted = true;
-					if (logger.isActivated()) {
+					if (logger.isDebugActivated()) {
 						logger.debug("Processing terminated: null data received");
 					}
 					break;
@@ -140,7 +140,7 @@ public class Processor extends Thread {
 					logger.error("Processor error", e);
 				}
 			} else {
-				if (logger.isActivated()) {
+				if (logger.isDebugActivated()) {
 					logger.debug("Processor processing has been terminated");
 				}
 			}
@@ -89,7 +89,7 @@ public class RtcpPacketReceiver extends Thread {
         datagramConnection = NetworkFactory.getFactory().createDatagramConnection(socketTimeout);
 		datagramConnection.open(port);
 
-		if (logger.isActivated()) {
+		if (logger.isDebugActivated()) {
 			logger.debug("RTCP receiver created at port " + port);
         }
 	}
@@ -483,7 +483,7 @@ public class RtcpPacketReceiver extends Thread {
      * @param listener Listener
      */
 	public void addRtcpListener(RtcpEventListener listener) {
-		if (logger.isActivated()) {
+		if (logger.isDebugActivated()) {
 			logger.debug("Add a RTCP event listener");
 		}
 		listeners.addElement(listener);
@@ -495,7 +495,7 @@ public class RtcpPacketReceiver extends Thread {
      * @param listener Listener
      */
 	public void removeRtcpListener(RtcpEventListener listener) {
-		if (logger.isActivated()) {
+		if (logger.isDebugActivated()) {
 			logger.debug("Remove a RTCP event listener");
 		}
 		listeners.removeElement(listener);
@@ -518,7 +518,7 @@ public class RtcpPacketReceiver extends Thread {
      */
     private void notifyRtcpListenersOfTimeout() {
         for (RtcpEventListener listener : listeners) {
-            if (logger.isActivated()) {
+            if (logger.isDebugActivated()) {
                 logger.debug("RTCP connection timeout");
             }
             listener.connectionTimeout();
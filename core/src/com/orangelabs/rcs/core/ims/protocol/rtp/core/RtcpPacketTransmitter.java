@@ -97,7 +97,7 @@ public class RtcpPacketTransmitter extends Thread {
         datagramConnection = NetworkFactory.getFactory().createDatagramConnection();
         datagramConnection.open();
 
-        if (logger.isActivated()) {
+        if (logger.isDebugActivated()) {
             logger.debug("RTCP transmitter connected to " + remoteAddress + ":" + remotePort);
         }
     }
@@ -127,7 +127,7 @@ public class RtcpPacketTransmitter extends Thread {
             this.datagramConnection.open();
         }
 
-        if (logger.isActivated()) {
+        if (logger.isDebugActivated()) {
             logger.debug("RTCP transmitter connected to " + remoteAddress + ":" + remotePort);
         }
     }
@@ -149,7 +149,7 @@ public class RtcpPacketTransmitter extends Thread {
 		if (datagramConnection != null) {
 			datagramConnection.close();
 		}
-		if (logger.isActivated()) {
+		if (logger.isDebugActivated()) {
             logger.debug("RTCP transmitter closed");
 		}
         // If the method start() was never invoked this Thread will be on NEW
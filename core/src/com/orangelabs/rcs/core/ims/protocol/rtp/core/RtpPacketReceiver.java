@@ -26,6 +26,9 @@ import com.orangelabs.rcs.platform.network.DatagramConnection;
 import com.orangelabs.rcs.platform.network.NetworkFactory;
 import com.orangelabs.rcs.utils.FifoBuffer;
 import com.orangelabs.rcs.utils.logger.Logger;
+import com.orangelabs.rcs.utils.metrics.Counter;
+import com.orangelabs.rcs.utils.metrics.Histogram;
+import com.orangelabs.rcs.utils.metrics.Metrics;
 
 /**
  * RTP packet receiver
@@ -68,6 +71,22 @@ public class RtpPacketReceiver extends Thread {
      */
     private static final int FIFO_CLEAN_NUMBER = 20; 
 
+    /**
+     * Reception times of the packets in the fifo, in the same order, guarded
+     * by the fifo
+     */
+    private long[] receptionTimes = new long[FIFO_MAX_NUMBER];
+
+    /**
+     * Index of the reception time of the first packet of the fifo
+     */
+    private int receptionTimesHead = 0;
+
+    /**
+     * Number of reception times
+     */
+    private int receptionTimesCount = 0;
+
     /**
      * Signals that thread is interrupted
      */
@@ -83,6 +102,47 @@ public class RtpPacketReceiver extends Thread {
      */
     private int timeout = 0;
 
+    /**
+     * Clock rate of the RTP timestamps, 0 if unknown
+     */
+    private int clockRate = 0;
+
+    /**
+     * Highest extended sequence number read
+     */
+    private int highestSeqnum = 0;
+
+    /**
+     * Packets read below the highest sequence number, bit i is set when the
+     * packet highestSeqnum - i has been read
+     */
+    private long receivedSeqnums = 0L;
+
+    /**
+     * Relative transit time of the last packet read, in timestamp units
+     */
+    private int lastTransit = 0;
+
+    /**
+     * Jitter estimate in timestamp units
+     */
+    private double jitterEstimate = 0;
+
+    /**
+     * Number of RTP packets received by all the receivers
+     */
+    private static final Counter PACKETS_RECEIVED = Metrics.counter("rtp.packets.received", "packets");
+
+    /**
+     * Number of RTP packets lost by all the receivers
+     */
+    private static final Counter PACKETS_LOST = Metrics.counter("rtp.packets.lost", "packets");
+
+    /**
+     * Interarrival jitter of the packets received
+     */
+    private static final Histogram JITTER = Metrics.histogram("rtp.jitter", "ms");
+
 	/**
 	 * The logger
 	 */
@@ -104,7 +164,7 @@ public class RtpPacketReceiver extends Thread {
         // Create the UDP server
         datagramConnection = NetworkFactory.getFactory().createDatagramConnection(socketTimeout);
         datagramConnection.open(port);
-		if (logger.isActivated()) {
+		if (logger.isDebugActivated()) {
             logger.debug("RTP receiver created on port " + port);
 		}
 	}
@@ -119,6 +179,15 @@ public class RtpPacketReceiver extends Thread {
     public RtpPacketReceiver(int port, RtcpSession rtcpSession) throws IOException {
         this(port, rtcpSession, 0);
     }
+
+    /**
+     * Set the clock rate of the RTP timestamps, needed to compute the jitter
+     *
+     * @param clockRate Clock rate in Hz
+     */
+    public void setClockRate(int clockRate) {
+        this.clockRate = clockRate;
+    }
 
 	/**
 	 * Close the receiver
@@ -150,7 +219,7 @@ public class RtpPacketReceiver extends Thread {
      * Background processing
      */
     public void run() {
-        if (logger.isActivated()) {
+        if (logger.isDebugActivated()) {
             logger.debug("RTP Receiver processing is started");
         }
         try {
@@ -165,11 +234,19 @@ public class RtpPacketReceiver extends Thread {
                         // Drop too old packet
                         int seqnum = (char)((data[2] << 8) | (data[3] & 0xff));
                         if (seqnum > lastSeqnum - 10) {
-                            // Clean the FIFO if full
-                            if (fifo.size() >= FIFO_MAX_NUMBER) {
-                                fifo.clean(FIFO_CLEAN_NUMBER);
+                            // Timestamped at the reception, the jitter is not delayed by the FIFO
+                            long receivedAt = System.nanoTime() / 1000000L;
+                            synchronized(fifo) {
+                                // Clean the FIFO if full
+                                if (fifo.size() >= FIFO_MAX_NUMBER) {
+                                    fifo.clean(FIFO_CLEAN_NUMBER);
+                                    receptionTimesHead = (receptionTimesHead + FIFO_CLEAN_NUMBER) % receptionTimes.length;
+                                    receptionTimesCount -= FIFO_CLEAN_NUMBER;
+                                }
+                                receptionTimes[(receptionTimesHead + receptionTimesCount) % receptionTimes.length] = receivedAt;
+                                receptionTimesCount++;
+                                fifo.addObject(data);
                             }
-                            fifo.addObject(data);
                             lastSeqnum = seqnum;
                         } else {
                             stats.numBadRtpPkts++;
@@ -195,25 +272,34 @@ public class RtpPacketReceiver extends Thread {
      */
     public RtpPacket readRtpPacket() throws TimeoutException {
 		try {
-            // Get a new packet in FIFO
-            byte[] data = (byte[]) fifo.getObject(timeout);
-            if (data == null) {
-                throw new TimeoutException();
-            }
+            // Get a new packet in FIFO, with its reception time
+            byte[] data;
+            long receivedAt;
+            synchronized(fifo) {
+                // The FIFO is released while waiting
+                data = (byte[]) fifo.getObject(timeout);
+                if (data == null) {
+                    throw new TimeoutException();
+                }
+                receivedAt = receptionTimes[receptionTimesHead];
+                receptionTimesHead = (receptionTimesHead + 1) % receptionTimes.length;
+                receptionTimesCount--;
+            }
 
 			// Parse the RTP packet
-			RtpPacket pkt = parseRtpPacket(data);
-
-			if (pkt != null) {
+			RtpPacket pkt = parseRtpPacket(data, receivedAt);
+
+			if (pkt != null) {
 				// Update statistics
 				stats.numPackets++;
-                stats.numBytes += data.length;
+                stats.numBytes += data.length;
 
                 RtpSource s = rtcpSession.getMySource();
                 s.setSsrc(pkt.ssrc);
                 s.activeSender = true;
                 s.receiveRtpPacket(pkt);
                 pkt.seqnum = s.generateExtendedSequenceNumber(pkt.seqnum);
+                updateStatistics(pkt);
 
 				return pkt;
 			} else {
@@ -231,20 +317,68 @@ public class RtpPacketReceiver extends Thread {
 		}
 	}
 
+    /**
+     * Update the loss and jitter statistics with a packet read
+     *
+     * @param pkt RTP packet with an extended sequence number
+     */
+    private void updateStatistics(RtpPacket pkt) {
+        PACKETS_RECEIVED.inc();
+
+        // Packets missing in the sequence are lost, unless they arrive later
+        if (stats.numPackets == 1) {
+            highestSeqnum = pkt.seqnum;
+            receivedSeqnums = 1L;
+        } else
+        if (pkt.seqnum > highestSeqnum) {
+            int lost = pkt.seqnum - highestSeqnum - 1;
+            if (lost > 0) {
+                stats.numLostPackets += lost;
+                PACKETS_LOST.add(lost);
+            }
+            int shift = pkt.seqnum - highestSeqnum;
+            receivedSeqnums = (shift < 64) ? (receivedSeqnums << shift) | 1L : 1L;
+            highestSeqnum = pkt.seqnum;
+        } else {
+            // Only a late packet filling a gap is no longer lost, not a duplicate
+            int offset = highestSeqnum - pkt.seqnum;
+            if ((offset < 64) && ((receivedSeqnums & (1L << offset)) == 0)) {
+                receivedSeqnums |= 1L << offset;
+                if (stats.numLostPackets > 0) {
+                    stats.numLostPackets--;
+                    PACKETS_LOST.add(-1);
+                }
+            }
+        }
+
+        // RFC 3550, section 6.4.1: J += (|D(i-1,i)| - J) / 16
+        if (clockRate > 0) {
+            int transit = (int)(pkt.receivedAt * clockRate / 1000) - (int)pkt.timestamp;
+            if (stats.numPackets > 1) {
+                int d = Math.abs(transit - lastTransit);
+                jitterEstimate += (d - jitterEstimate) / 16.0;
+                stats.jitter = (int)(jitterEstimate * 1000 / clockRate);
+                JITTER.record(stats.jitter);
+            }
+            lastTransit = transit;
+        }
+    }
+
     /**
      * Parse the RTP packet
      *
      * @param data RTP packet not yet parsed
+     * @param receivedAt Reception time in milliseconds on the monotonic clock
      * @return RTP packet
      */
-	private RtpPacket parseRtpPacket(byte[] data) {
+	private RtpPacket parseRtpPacket(byte[] data, long receivedAt) {
 		RtpPacket packet = new RtpPacket();
 		try {
 			// Read RTP packet length
             packet.length = data.length;
 
             // Set received timestamp
-            packet.receivedAt = System.currentTimeMillis();
+            packet.receivedAt = receivedAt;
 
             // Read extension bit
             packet.extension = (data[0] & 0x10) > 0;
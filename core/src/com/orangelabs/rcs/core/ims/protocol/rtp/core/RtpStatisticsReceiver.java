@@ -38,4 +38,14 @@ public class RtpStatisticsReceiver {
 	 * Number of bad RTP packet received
 	 */
 	public int numBadRtpPkts = 0;
+
+	/**
+	 * Number of RTP packets lost
+	 */
+	public int numLostPackets = 0;
+
+	/**
+	 * Interarrival jitter in milliseconds (see RFC 3550)
+	 */
+	public int jitter = 0;
 }
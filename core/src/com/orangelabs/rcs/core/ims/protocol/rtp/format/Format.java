@@ -67,4 +67,13 @@ public abstract class Format {
     public int getPayload() {
     	return payload;
     }
+
+    /**
+     * Get the clock rate of the RTP timestamps
+     * 
+     * @return Clock rate in Hz or 0 if unknown
+     */
+    public int getClockRate() {
+    	return 0;
+    }
 }
@@ -41,4 +41,13 @@ public class AmrWbAudioFormat extends AudioFormat {
 	public AmrWbAudioFormat() {
 		super(ENCODING, PAYLOAD);
 	}
+
+	/**
+	 * Get the clock rate of the RTP timestamps
+	 * 
+	 * @return Clock rate in Hz
+	 */
+	public int getClockRate() {
+		return 16000;
+	}
 }
@@ -33,4 +33,14 @@ public class AudioFormat extends Format {
     public AudioFormat(String codec, int payload) {
     	super(codec, payload);
     }
+
+    /**
+     * Get the clock rate of the RTP timestamps
+     * 
+     * @return Clock rate in Hz
+     */
+    public int getClockRate() {
+    	// Narrowband audio is sampled at 8 kHz
+    	return 8000;
+    }
 }
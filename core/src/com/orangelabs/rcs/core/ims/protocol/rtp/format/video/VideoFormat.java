@@ -33,4 +33,14 @@ public class VideoFormat extends Format {
     public VideoFormat(String codec, int payload) {
     	super(codec, payload);
     }
+
+    /**
+     * Get the clock rate of the RTP timestamps
+     * 
+     * @return Clock rate in Hz
+     */
+    public int getClockRate() {
+    	// Video payload formats use a 90 kHz clock
+    	return 90000;
+    }
 }
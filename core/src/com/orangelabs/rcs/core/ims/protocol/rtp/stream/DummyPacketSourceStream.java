@@ -88,7 +88,7 @@ public class DummyPacketSourceStream extends Thread implements ProcessorInputStr
 	 */	
     public void open() {
     	start();
-		if (logger.isActivated()) {
+		if (logger.isDebugActivated()) {
 			logger.debug("Dummy source stream openned");
 		}
 	}    	
@@ -103,7 +103,7 @@ public class DummyPacketSourceStream extends Thread implements ProcessorInputStr
     	} catch(Exception e) {
             // Intentionally blank
     	}
-		if (logger.isActivated()) {
+		if (logger.isDebugActivated()) {
 			logger.debug("Dummy source stream closed");
 		}
     }
@@ -75,7 +75,7 @@ public class MediaCaptureStream implements ProcessorInputStream {
     public void open() throws Exception {
     	try {
 	    	player.open();
-			if (logger.isActivated()) {
+			if (logger.isDebugActivated()) {
 				logger.debug("Media capture stream openned");
 			}
     	} catch(Exception e) {
@@ -91,7 +91,7 @@ public class MediaCaptureStream implements ProcessorInputStream {
      */
     public void close() {
 		player.close();
-		if (logger.isActivated()) {
+		if (logger.isDebugActivated()) {
 			logger.debug("Media capture stream closed");
 		}
     }
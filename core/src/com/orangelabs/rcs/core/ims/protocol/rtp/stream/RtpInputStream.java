@@ -152,6 +152,7 @@ public class RtpInputStream implements ProcessorInputStream {
     public void open() throws Exception {
     	// Create the RTP receiver
         rtpReceiver = new RtpPacketReceiver(localPort, rtcpSession, RTP_SOCKET_TIMEOUT);
+        rtpReceiver.setClockRate(inputFormat.getClockRate());
         rtpReceiver.start();
 
     	// Create the RTCP receiver
@@ -55,7 +55,7 @@ public class KeepAliveManager extends PeriodicRefresher {
 	 * Start
 	 */
 	public void start() {
-		if (logger.isActivated()) {
+		if (logger.isDebugActivated()) {
 			logger.debug("Start keep-alive");
 		}
 		startTimer(period, 1);
@@ -65,7 +65,7 @@ public class KeepAliveManager extends PeriodicRefresher {
 	 * Start
 	 */
 	public void stop() {
-		if (logger.isActivated()) {
+		if (logger.isDebugActivated()) {
 			logger.debug("Stop keep-alive");
 		}
 		stopTimer();
@@ -76,7 +76,7 @@ public class KeepAliveManager extends PeriodicRefresher {
      */
     public void periodicProcessing() {
         try {
-    		if (logger.isActivated()) {
+    		if (logger.isDebugActivated()) {
     			logger.debug("Send keep-alive");
     		}
 
@@ -97,7 +97,7 @@ public class KeepAliveManager extends PeriodicRefresher {
 	 */
 	public void setPeriod(int period) {
 		this.period = period;
-		if (logger.isActivated()) {
+		if (logger.isDebugActivated()) {
 			logger.debug("Set keep-alive period \"" + period + "\"");
 		}
 	}
@@ -20,7 +20,6 @@ package com.orangelabs.rcs.core.ims.protocol.sip;
 
 import gov2.nist.javax2.sip.address.AddressImpl;
 import gov2.nist.javax2.sip.message.SIPMessage;
-import java.io.File;
 import java.text.ParseException;
 import java.util.ArrayList;
 import java.util.ListIterator;
@@ -48,17 +47,24 @@ import javax2.sip.header.ExtensionHeader;
 import javax2.sip.header.Header;
 import javax2.sip.header.RouteHeader;
 import javax2.sip.header.ViaHeader;
+import javax2.sip.message.Message;
+import javax2.sip.message.Request;
 
 import android.net.ConnectivityManager;
 
 import com.orangelabs.rcs.core.ims.network.sip.SipMessageFactory;
 import com.orangelabs.rcs.core.ims.network.sip.SipUtils;
+import com.orangelabs.rcs.core.ims.protocol.capture.CaptureFile;
+import com.orangelabs.rcs.core.ims.protocol.capture.MessageCapture;
 import com.orangelabs.rcs.core.ims.security.cert.KeyStoreManager;
 import com.orangelabs.rcs.provider.settings.RcsSettings;
 import com.orangelabs.rcs.utils.IdGenerator;
 import com.orangelabs.rcs.utils.IpAddressUtils;
 import com.orangelabs.rcs.utils.NetworkRessourceManager;
 import com.orangelabs.rcs.utils.logger.Logger;
+import com.orangelabs.rcs.utils.metrics.Counter;
+import com.orangelabs.rcs.utils.metrics.Histogram;
+import com.orangelabs.rcs.utils.metrics.Metrics;
 
 /**
  * SIP interface which manage the SIP stack. The NIST stack is used
@@ -69,11 +75,6 @@ import com.orangelabs.rcs.utils.logger.Logger;
  * @author JM. Auffret
  */
 public class SipInterface implements SipListener {
-    /**
-     * Trace separator
-     */
-    private final static String TRACE_SEPARATOR = "-----------------------------------------------------------------------------";
-
     /**
      * Default SIP port
      */
@@ -84,10 +85,6 @@ public class SipInterface implements SipListener {
      */
     private boolean sipTraceEnabled = RcsSettings.getInstance().isSipTraceActivated();
 
-    /**
-     * SIP traces filename
-     */
-    private String sipTraceFile = RcsSettings.getInstance().getSipTraceFile();
         
     /**
      * Local IP address
@@ -189,6 +186,26 @@ public class SipInterface implements SipListener {
      */
     private int timerT4 = 5000;
 
+    /**
+     * Latency of the client transactions other than INVITE, from the request to the final response
+     */
+    private static final Histogram TRANSACTION_LATENCY = Metrics.histogram("sip.transaction.latency", "ms");
+
+    /**
+     * Number of client transactions other than INVITE without response
+     */
+    private static final Counter TRANSACTION_TIMEOUTS = Metrics.counter("sip.transaction.timeouts", "transactions");
+
+    /**
+     * Time from an INVITE to its final response, which includes the time taken by the callee to answer
+     */
+    private static final Histogram INVITE_ANSWER_TIME = Metrics.histogram("sip.invite.answer.time", "ms");
+
+    /**
+     * Number of INVITE without final response
+     */
+    private static final Counter INVITE_TIMEOUTS = Metrics.counter("sip.invite.timeouts", "transactions");
+
     /**
      * The logger
      */
@@ -240,22 +257,6 @@ public class SipInterface implements SipListener {
             Properties properties = new Properties();
             properties.setProperty("javax2.sip.STACK_NAME", localIpAddress);
             properties.setProperty("gov2.nist.javax2.sip.THREAD_POOL_SIZE", "1");
-            if (sipTraceEnabled) {
-                // Activate SIP stack traces
-            	boolean cleanLog = true;
-            	
-            	// Remove previous log file
-                File fs = new File(sipTraceFile);
-                if (fs.exists()) {
-                	cleanLog = fs.delete();
-                }
-                if (cleanLog) {
-                	properties.setProperty("gov2.nist.javax2.sip.TRACE_LEVEL", "DEBUG");
-                    properties.setProperty("gov2.nist.javax2.sip.SERVER_LOG", sipTraceFile);
-                    properties.setProperty("gov2.nist.javax2.sip.LOG_MESSAGE_CONTENT", "true");
-                    properties.setProperty("gov2.nist.javax2.sip.LOG_STACK_TRACE_ON_MESSAGE_SEND", "true");
-                }
-            }
             if (defaultProtocol.equals(ListeningPoint.TLS)) {
                 // Set SSL properties
                 properties.setProperty("gov2.nist.javax2.sip.TLS_CLIENT_PROTOCOLS", "SSLv3, TLSv1");
@@ -314,11 +315,11 @@ public class SipInterface implements SipListener {
 				}
             }
 
-            if (logger.isActivated()) {
+            if (logger.isDebugActivated()) {
             	if (defaultProtocol.equals(ListeningPoint.UDP))
-            		logger.debug("Default SIP provider is UDP (TCP fallback=" + this.tcpFallback+")");
+            		logger.debug("Default SIP provider is UDP (TCP fallback={})", this.tcpFallback);
             	else
-            		logger.debug("Default SIP provider is " + defaultProtocol);
+            		logger.debug("Default SIP provider is {}", defaultProtocol);
             }
 
             // Start the stack
@@ -331,8 +332,8 @@ public class SipInterface implements SipListener {
             throw new SipException("Can't create the SIP stack");
         }
 
-        if (logger.isActivated()) {
-            logger.debug("SIP stack started at " + localIpAddress + ":" + listeningPort);
+        if (logger.isDebugActivated()) {
+            logger.debug("SIP stack started at {}:{}", localIpAddress, listeningPort);
         }
     }
 
@@ -395,7 +396,7 @@ public class SipInterface implements SipListener {
         //      changed.
         if (ListeningPoint.UDP.equals(defaultProtocol) && this.tcpFallback
                 && (request.getStackMessage().toString().length() > (sipStack.getMtuSize() - 200))) {
-            if (logger.isActivated()) {
+            if (logger.isDebugActivated()) {
                 logger.debug("Transaction falls back to TCP as request size is "
                         + request.getStackMessage().toString().length() + " and MTU size is "
                         + sipStack.getMtuSize());
@@ -562,6 +563,25 @@ public class SipInterface implements SipListener {
         return viaHeaders;
     }
 
+    /**
+     * Capture a SIP message, see {@link MessageCapture}
+     *
+     * @param message SIP message
+     * @param direction Direction
+     */
+    private void captureMessage(Message message, byte direction) {
+        if (!MessageCapture.isStarted()) {
+            return;
+        }
+
+        // Bytes encoded by the stack for the transport of the top Via, as sent on the wire
+        ViaHeader via = (ViaHeader)message.getHeader(ViaHeader.NAME);
+        if (via != null) {
+            MessageCapture.capture(CaptureFile.PROTOCOL_SIP, direction,
+                    ((SIPMessage)message).encodeAsBytes(via.getTransport()));
+        }
+    }
+
     /**
      * Generate a unique call-ID
      *
@@ -683,7 +703,7 @@ public class SipInterface implements SipListener {
      * @param listener Listener
      */
     public void addSipEventListener(SipEventListener listener) {
-        if (logger.isActivated()) {
+        if (logger.isDebugActivated()) {
             logger.debug("Add a SIP listener");
         }
         listeners.addElement(listener);
@@ -695,7 +715,7 @@ public class SipInterface implements SipListener {
      * @param listener Listener
      */
     public void removeSipEventListener(SipEventListener listener) {
-        if (logger.isActivated()) {
+        if (logger.isDebugActivated()) {
             logger.debug("Remove a SIP listener");
         }
         listeners.removeElement(listener);
@@ -719,10 +739,26 @@ public class SipInterface implements SipListener {
     public void notifyTransactionContext(String transactionId, SipMessage msg) {
         SipTransactionContext ctx = (SipTransactionContext)transactions.get(transactionId);
         if (ctx != null) {
-            if (logger.isActivated()) {
-                logger.debug("Callback object found for transaction " + transactionId);
+            if (logger.isDebugActivated()) {
+                logger.debug("Callback object found for transaction {}", transactionId);
             }
             removeTransactionContext(transactionId);
+            if (ctx.getTransaction() instanceof ClientTransaction) {
+                // An INVITE waits for the user, not only for the network
+                boolean invite = Request.INVITE.equals(((ClientTransaction)ctx.getTransaction()).getRequest().getMethod());
+                if (msg == null) {
+                    if (invite) {
+                        INVITE_TIMEOUTS.inc();
+                    } else {
+                        TRANSACTION_TIMEOUTS.inc();
+                    }
+                } else
+                if (invite) {
+                    INVITE_ANSWER_TIME.recordMillisSince(ctx.getCreationTime());
+                } else {
+                    TRANSACTION_LATENCY.recordMillisSince(ctx.getCreationTime());
+                }
+            }
             ctx.responseReceived(msg);
         }
    }
@@ -753,17 +789,16 @@ public class SipInterface implements SipListener {
                 SipTransactionContext ctx = new SipTransactionContext(transaction);
                 String id = SipTransactionContext.getTransactionContextId(req);
                 transactions.put(id, ctx);
-                if (logger.isActivated()) {
-                    logger.debug("Create a transaction context " + id);
+                if (logger.isDebugActivated()) {
+                    logger.debug("Create a transaction context {}", id);
                 }
 
                 // Send the SIP message to the network
-                if (logger.isActivated()) {
-                    logger.debug(">>> Send SIP " + req.getMethod());
+                if (logger.isDebugActivated()) {
+                    logger.debug(">>> Send SIP {}", req.getMethod());
                 }
                 if (sipTraceEnabled) {
-                    System.out.println(">>> " + req.getStackMessage().toString());
-                    System.out.println(TRACE_SEPARATOR);
+                    captureMessage(req.getStackMessage(), CaptureFile.DIRECTION_SENT);
                 }
                 transaction.sendRequest();
 
@@ -778,7 +813,7 @@ public class SipInterface implements SipListener {
                 if (transaction == null) {
                     // No transaction exist
                     if (logger.isActivated()) {
-                        logger.warn("No transaction exist for " + resp.getCallId() + ": the response can't be sent");
+                        logger.warn("No transaction exist for {}: the response can't be sent", resp.getCallId());
                     }
                     return null;
                 }
@@ -787,17 +822,16 @@ public class SipInterface implements SipListener {
                 SipTransactionContext ctx = new SipTransactionContext(transaction);
                 String id = SipTransactionContext.getTransactionContextId(resp);
                 transactions.put(id, ctx);
-                if (logger.isActivated()) {
-                    logger.debug("Create a transaction context " + id);
+                if (logger.isDebugActivated()) {
+                    logger.debug("Create a transaction context {}", id);
                 }
 
                 // Send the SIP message to the network
-                if (logger.isActivated()) {
-                    logger.debug(">>> Send SIP " + resp.getStatusCode() + " response");
+                if (logger.isDebugActivated()) {
+                    logger.debug(">>> Send SIP {} response", resp.getStatusCode());
                 }
                 if (sipTraceEnabled) {
-                    System.out.println(">>> " + resp.getStackMessage().toString());
-                    System.out.println(TRACE_SEPARATOR);
+                    captureMessage(resp.getStackMessage(), CaptureFile.DIRECTION_SENT);
                 }
                 transaction.sendResponse(resp.getStackMessage());
 
@@ -825,18 +859,17 @@ public class SipInterface implements SipListener {
             if (transaction == null) {
                 // No transaction exist
                 if (logger.isActivated()) {
-                    logger.warn("No transaction exist for " + response.getCallId() + ": the response can't be sent");
+                    logger.warn("No transaction exist for {}: the response can't be sent", response.getCallId());
                 }
                 throw new SipException("No transaction found");
             }
 
             // Send the SIP message to the network
-            if (logger.isActivated()) {
-                logger.debug(">>> Send SIP " + response.getStatusCode() + " response");
+            if (logger.isDebugActivated()) {
+                logger.debug(">>> Send SIP {} response", response.getStatusCode());
             }
             if (sipTraceEnabled) {
-                System.out.println(">>> " + response.getStackMessage().toString());
-                System.out.println(TRACE_SEPARATOR);
+                captureMessage(response.getStackMessage(), CaptureFile.DIRECTION_SENT);
             }
             transaction.sendResponse(response.getStackMessage());
         } catch(Exception e) {
@@ -859,12 +892,11 @@ public class SipInterface implements SipListener {
             SipRequest ack = SipMessageFactory.createAck(dialog);
 
             // Send the SIP message to the network
-            if (logger.isActivated()) {
+            if (logger.isDebugActivated()) {
                 logger.debug(">>> Send SIP ACK");
             }
             if (sipTraceEnabled) {
-                System.out.println(">>> " + ack.getStackMessage().toString());
-                System.out.println(TRACE_SEPARATOR);
+                captureMessage(ack.getStackMessage(), CaptureFile.DIRECTION_SENT);
             }
 
             // Re-use INVITE transaction
@@ -903,12 +935,11 @@ public class SipInterface implements SipListener {
             ClientTransaction transaction = createNewTransaction(cancel);
             
             // Send the SIP message to the network
-            if (logger.isActivated()) {
+            if (logger.isDebugActivated()) {
                 logger.debug(">>> Send SIP CANCEL");
             }
             if (sipTraceEnabled) {
-                System.out.println(">>> " + cancel.getStackMessage().toString());
-                System.out.println(TRACE_SEPARATOR);
+                captureMessage(cancel.getStackMessage(), CaptureFile.DIRECTION_SENT);
             }
             transaction.sendRequest();
         } catch(Exception e) {
@@ -940,12 +971,11 @@ public class SipInterface implements SipListener {
             ClientTransaction transaction = createNewTransaction(bye);
 
             // Send the SIP message to the network
-            if (logger.isActivated()) {
+            if (logger.isDebugActivated()) {
                 logger.debug(">>> Send SIP BYE");
             }
             if (sipTraceEnabled) {
-                System.out.println(">>> " + bye.getStackMessage().toString());
-                System.out.println(TRACE_SEPARATOR);
+                captureMessage(bye.getStackMessage(), CaptureFile.DIRECTION_SENT);
             }
         	dialog.getStackDialog().sendRequest(transaction);        	
         } catch(Exception e) {
@@ -981,17 +1011,16 @@ public class SipInterface implements SipListener {
             SipTransactionContext ctx = new SipTransactionContext(transaction);
             String id = SipTransactionContext.getTransactionContextId(update);
             transactions.put(id, ctx);
-            if (logger.isActivated()) {
-                logger.debug("Create a transaction context " + id);
+            if (logger.isDebugActivated()) {
+                logger.debug("Create a transaction context {}", id);
             }
 
             // Send the SIP message to the network
-            if (logger.isActivated()) {
+            if (logger.isDebugActivated()) {
                 logger.debug(">>> Send SIP UPDATE");
             }
             if (sipTraceEnabled) {
-                System.out.println(">>> " + update.getStackMessage().toString());
-                System.out.println(TRACE_SEPARATOR);
+                captureMessage(update.getStackMessage(), CaptureFile.DIRECTION_SENT);
             }
             transaction.sendRequest();
 
@@ -1024,12 +1053,11 @@ public class SipInterface implements SipListener {
             ClientTransaction transaction = createNewTransaction(request);
 
             // Send the SIP message to the network
-            if (logger.isActivated()) {
-                logger.debug(">>> Send SIP " + request.getMethod().toUpperCase());
+            if (logger.isDebugActivated()) {
+                logger.debug(">>> Send SIP {}", request.getMethod().toUpperCase());
             }
             if (sipTraceEnabled) {
-                System.out.println(">>> " + request.getStackMessage().toString());
-                System.out.println(TRACE_SEPARATOR);
+                captureMessage(request.getStackMessage(), CaptureFile.DIRECTION_SENT);
             }
         	dialog.getStackDialog().sendRequest(transaction);        	
             
@@ -1054,7 +1082,7 @@ public class SipInterface implements SipListener {
      * @param dialogTerminatedEvent Event
      */
     public void processDialogTerminated(DialogTerminatedEvent dialogTerminatedEvent) {
-        if (logger.isActivated()) {
+        if (logger.isDebugActivated()) {
             logger.debug("Dialog terminated");
         }
     }
@@ -1065,8 +1093,8 @@ public class SipInterface implements SipListener {
      * @param exceptionEvent Event
      */
     public void processIOException(IOExceptionEvent exceptionEvent) {
-        if (logger.isActivated()) {
-            logger.debug("IO Exception on " + exceptionEvent.getTransport() + " transport");
+        if (logger.isDebugActivated()) {
+            logger.debug("IO Exception on {} transport", exceptionEvent.getTransport());
         }
     }
 
@@ -1077,12 +1105,11 @@ public class SipInterface implements SipListener {
      * @param requestEvent Event
      */
     public void processRequest(RequestEvent requestEvent) {
-        if (logger.isActivated()) {
-            logger.debug("<<< Receive SIP " + requestEvent.getRequest().getMethod());
+        if (logger.isDebugActivated()) {
+            logger.debug("<<< Receive SIP {}", requestEvent.getRequest().getMethod());
         }
         if (sipTraceEnabled) {
-            System.out.println("<<< " + requestEvent.getRequest().toString());
-            System.out.println(TRACE_SEPARATOR);
+            captureMessage(requestEvent.getRequest(), CaptureFile.DIRECTION_RECEIVED);
         }
 
         // Get transaction
@@ -1113,7 +1140,7 @@ public class SipInterface implements SipListener {
 
         // Notify event listeners
         for(int i=0; i < listeners.size(); i++) {
-            if (logger.isActivated()) {
+            if (logger.isDebugActivated()) {
                 logger.debug("Notify a SIP listener");
             }
             SipEventListener listener = (SipEventListener)listeners.elementAt(i);
@@ -1128,18 +1155,17 @@ public class SipInterface implements SipListener {
      * @param responseEvent Event
      */
     public void processResponse(ResponseEvent responseEvent) {
-        if (logger.isActivated()) {
-            logger.debug("<<< Receive SIP " + responseEvent.getResponse().getStatusCode() + " response");
+        if (logger.isDebugActivated()) {
+            logger.debug("<<< Receive SIP {} response", responseEvent.getResponse().getStatusCode());
         }
         if (sipTraceEnabled) {
-            System.out.println("<<< " + responseEvent.getResponse().toString());
-            System.out.println(TRACE_SEPARATOR);
+            captureMessage(responseEvent.getResponse(), CaptureFile.DIRECTION_RECEIVED);
         }
 
         // Search transaction
         ClientTransaction transaction = responseEvent.getClientTransaction();
         if (transaction == null) {
-            if (logger.isActivated()) {
+            if (logger.isDebugActivated()) {
                 logger.debug("No transaction exist for this response: by-pass it");
             }
             return;
@@ -1154,7 +1180,7 @@ public class SipInterface implements SipListener {
             String transactionId = SipTransactionContext.getTransactionContextId(resp);
             notifyTransactionContext(transactionId, resp);
         } else {
-            if (logger.isActivated()) {
+            if (logger.isDebugActivated()) {
                 logger.debug("By pass provisional response");
             }
         }
@@ -1167,8 +1193,8 @@ public class SipInterface implements SipListener {
      * @param timeoutEvent Event
      */
     public void processTimeout(TimeoutEvent timeoutEvent) {
-        if (logger.isActivated()) {
-            logger.debug("Transaction timeout " + timeoutEvent.getTimeout().toString());
+        if (logger.isDebugActivated()) {
+            logger.debug("Transaction timeout {}", timeoutEvent.getTimeout());
         }
 
         if (timeoutEvent.isServerTransaction()) {
@@ -1180,7 +1206,7 @@ public class SipInterface implements SipListener {
 
         ClientTransaction transaction = (ClientTransaction)timeoutEvent.getClientTransaction();
         if (transaction == null) {
-            if (logger.isActivated()) {
+            if (logger.isDebugActivated()) {
                 logger.debug("No transaction exist for this transaction: by-pass it");
             }
             return;
@@ -1197,7 +1223,7 @@ public class SipInterface implements SipListener {
      * @param transactionTerminatedEvent Event
      */
     public void processTransactionTerminated(TransactionTerminatedEvent transactionTerminatedEvent) {
-        if (logger.isActivated()) {
+        if (logger.isDebugActivated()) {
             logger.debug("Transaction terminated");
         }
     }
@@ -62,6 +62,41 @@ public abstract class SipMessage {
 	 * SIP stack transaction
 	 */
 	private Transaction stackTransaction = null;
+
+	/**
+	 * Cached feature tags
+	 */
+	private ArrayList<String> featureTags = null;
+
+	/**
+	 * Contact header from which the cached feature tags have been extracted
+	 */
+	private Header featureTagsContactHeader = null;
+
+	/**
+	 * Accept-Contact header from which the cached feature tags have been extracted
+	 */
+	private Header featureTagsAcceptContactHeader = null;
+
+	/**
+	 * Raw content from which the cached content has been decoded
+	 */
+	private byte[] rawContent = null;
+
+	/**
+	 * Cached content
+	 */
+	private String content = null;
+
+	/**
+	 * Cached SDP content part
+	 */
+	private String sdpContent = null;
+
+	/**
+	 * SDP content part extracted flag
+	 */
+	private boolean sdpContentExtracted = false;
 	
 	/**
 	 * Constructor
@@ -107,10 +142,26 @@ public abstract class SipMessage {
 		try {
 			Header header = SipUtils.HEADER_FACTORY.createHeader(name, value);
 			stackMessage.setHeader(header);
+			invalidateCache();
 		} catch(ParseException e) {
 			e.printStackTrace();
 		}
-	}	
+	}	
+
+	/**
+	 * Invalidate the values cached from the stack message. A header or a content
+	 * replaced in the stack message is detected, this method is only required
+	 * when a header object is modified in place.
+	 */
+	public synchronized void invalidateCache() {
+		featureTags = null;
+		featureTagsContactHeader = null;
+		featureTagsAcceptContactHeader = null;
+		rawContent = null;
+		content = null;
+		sdpContent = null;
+		sdpContentExtracted = false;
+	}
 	
 	/**
 	 * Return a header value
@@ -230,13 +281,19 @@ public abstract class SipMessage {
 	 * 
 	 * @return String or null
 	 */
-	public String getContent() {
-		byte[] content = stackMessage.getRawContent();
-		if (content != null) {
-			return new String(content);
-		} else {
+	public synchronized String getContent() {
+		byte[] raw = stackMessage.getRawContent();
+		if (raw == null) {
 			return null;
 		}
+		if (raw != rawContent) {
+			// The stack returns a new array when the content is modified
+			rawContent = raw;
+			content = new String(raw);
+			sdpContent = null;
+			sdpContentExtracted = false;
+		}
+		return content;
 	}
 	
 	/**
@@ -244,11 +301,14 @@ public abstract class SipMessage {
 	 * 
 	 * @return String or null
 	 */
-	public String getSdpContent() {
+	public synchronized String getSdpContent() {
 		String content = getContent();
 		if (content == null) {
 			return null;
 		}
+		if (sdpContentExtracted) {
+			return sdpContent;
+		}
 		
 		String contentType = getContentType();
 		if (contentType == null) {
@@ -258,13 +318,15 @@ public abstract class SipMessage {
 		if (contentType.startsWith("multipart")) {
 			String boundary = getBoundaryContentType();
 			Multipart multi = new Multipart(content, boundary);
-			return multi.getPart("application/sdp"); 
+			sdpContent = multi.getPart("application/sdp"); 
 		} else
 		if (contentType.equals("application/sdp")) {
-			return content;
+			sdpContent = content;
 		} else {
-			return null;
-		}
+			sdpContent = null;
+		}
+		sdpContentExtracted = true;
+		return sdpContent;
 	}
 	
 	/**
@@ -357,11 +419,59 @@ public abstract class SipMessage {
 	 * @return Array of strings
 	 */
 	public ArrayList<String> getFeatureTags() {
+		return new ArrayList<String>(getCachedFeatureTags());
+	}
+
+	/**
+	 * Is a feature tag present in the Contact or Accept-Contact header
+	 * 
+	 * @param featureTag Feature tag
+	 * @return Boolean
+	 */
+	public boolean isFeatureTagPresent(String featureTag) {
+		ArrayList<String> tags = getCachedFeatureTags();
+		for(int i=0; i < tags.size(); i++) {
+			if (tags.get(i).contains(featureTag)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Get the cached features tags, they are extracted again only if the
+	 * Contact or Accept-Contact header has been replaced
+	 * 
+	 * @return Array of strings, not to be modified
+	 */
+	private synchronized ArrayList<String> getCachedFeatureTags() {
+		Header contactHeader = stackMessage.getHeader(ContactHeader.NAME);
+		Header acceptHeader = stackMessage.getHeader(SipUtils.HEADER_ACCEPT_CONTACT);
+		if (acceptHeader == null) {
+			// Check contracted form
+			acceptHeader = stackMessage.getHeader(SipUtils.HEADER_ACCEPT_CONTACT_C);
+		}
+		if ((featureTags == null) || (contactHeader != featureTagsContactHeader)
+				|| (acceptHeader != featureTagsAcceptContactHeader)) {
+			featureTags = extractFeatureTags((ContactHeader)contactHeader, (ExtensionHeader)acceptHeader);
+			featureTagsContactHeader = contactHeader;
+			featureTagsAcceptContactHeader = acceptHeader;
+		}
+		return featureTags;
+	}
+
+	/**
+	 * Extract the features tags from Contact and Accept-Contact headers
+	 * 
+	 * @param contactHeader Contact header or null
+	 * @param acceptHeader Accept-Contact header or null
+	 * @return Array of strings
+	 */
+	private static ArrayList<String> extractFeatureTags(ContactHeader contactHeader, ExtensionHeader acceptHeader) {
 		ArrayList<String> tags = new ArrayList<String>();
 		ArrayList<String> temp = new ArrayList<String>();
 		
 		// Read Contact header
-		ContactHeader contactHeader = (ContactHeader)stackMessage.getHeader(ContactHeader.NAME);
 		if (contactHeader != null) {
 			// Extract header parameters
 	        for(Iterator<?> i = contactHeader.getParameterNames(); i.hasNext();) {
@@ -383,12 +493,6 @@ public abstract class SipMessage {
 		}
 
         // Read Accept-Contact header
-        ExtensionHeader acceptHeader = (ExtensionHeader)stackMessage.getHeader(SipUtils.HEADER_ACCEPT_CONTACT);
-        if (acceptHeader == null) {
-            // Check contracted form
-            acceptHeader = (ExtensionHeader)stackMessage.getHeader(SipUtils.HEADER_ACCEPT_CONTACT_C);
-        }
-
         if (acceptHeader != null) {
 			// Extract header parameters
             String acceptHeaderValue = acceptHeader.getValue();
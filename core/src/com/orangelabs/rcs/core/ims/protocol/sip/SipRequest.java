@@ -18,6 +18,7 @@
 
 package com.orangelabs.rcs.core.ims.protocol.sip;
 
+import javax2.sip.address.URI;
 import javax2.sip.header.ExpiresHeader;
 import javax2.sip.message.Request;
 
@@ -27,6 +28,15 @@ import javax2.sip.message.Request;
  * @author jexa7410
  */
 public class SipRequest extends SipMessage {
+	/**
+	 * Request URI from which the cached request URI string has been encoded
+	 */
+	private URI requestURI = null;
+
+	/**
+	 * Cached request URI string
+	 */
+	private String requestURIString = null;
 	
 	/**
 	 * Constructor
@@ -45,6 +55,15 @@ public class SipRequest extends SipMessage {
 	public Request getStackMessage() {
 		return (Request)stackMessage;
 	}
+
+	/**
+	 * Invalidate the values cached from the stack message
+	 */
+	public synchronized void invalidateCache() {
+		super.invalidateCache();
+		requestURI = null;
+		requestURIString = null;
+	}
 	
 	/**
 	 * Returns the method value
@@ -60,8 +79,13 @@ public class SipRequest extends SipMessage {
 	 * 
 	 * @return String
 	 */
-	public String getRequestURI() {
-		return getStackMessage().getRequestURI().toString();
+	public synchronized String getRequestURI() {
+		URI uri = getStackMessage().getRequestURI();
+		if (uri != requestURI) {
+			requestURI = uri;
+			requestURIString = uri.toString();
+		}
+		return requestURIString;
 	}
 	
 	/**
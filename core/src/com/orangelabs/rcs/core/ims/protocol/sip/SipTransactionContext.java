@@ -41,6 +41,11 @@ public class SipTransactionContext extends Object {
 	 */
 	private SipMessage recvMsg = null;
 
+	/**
+	 * Creation time given by System.nanoTime()
+	 */
+	private long creationTime = System.nanoTime();
+
 	/**
 	 * Constructor
 	 * 
@@ -59,6 +64,15 @@ public class SipTransactionContext extends Object {
 		return transaction;
 	}
 
+	/**
+	 * Get the creation time of the context
+	 * 
+	 * @return Time given by System.nanoTime()
+	 */
+	public long getCreationTime() {
+		return creationTime;
+	}
+
 	/**
 	 * Get the SIP message that has been received
 	 * 
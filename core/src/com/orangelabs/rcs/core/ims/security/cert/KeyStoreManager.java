@@ -350,6 +350,9 @@ public class KeyStoreManager {
 			// Save the keystore to file
 			KeyStoreManager.saveKeyStoreToFile(ks);
 
+			// The TLS contexts have to present the new certificate
+			TlsContextProvider.getInstance().reset();
+
 			if (logger.isActivated()) {
                 logger.debug("Client certificate " + CLIENT_CERT_ALIAS + " for IP address "
                         + ipAddress + " with fingerprint "
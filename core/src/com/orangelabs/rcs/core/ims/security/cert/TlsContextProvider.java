@@ -0,0 +1,470 @@
+/*******************************************************************************
+ * Software Name : RCS IMS Stack
+ *
+ * Copyright (C) 2010 France Telecom S.A.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.orangelabs.rcs.core.ims.security.cert;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.security.KeyStore;
+import java.security.SecureRandom;
+import java.security.cert.CertificateException;
+import java.security.cert.X509Certificate;
+
+import javax.net.ssl.HandshakeCompletedEvent;
+import javax.net.ssl.HandshakeCompletedListener;
+import javax.net.ssl.KeyManager;
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSessionContext;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.SSLSocketFactory;
+import javax.net.ssl.TrustManager;
+import javax.net.ssl.TrustManagerFactory;
+import javax.net.ssl.X509TrustManager;
+
+import com.orangelabs.rcs.provider.settings.RcsSettings;
+import com.orangelabs.rcs.provisioning.https.EasyX509TrustManager;
+import com.orangelabs.rcs.utils.CloseableUtils;
+import com.orangelabs.rcs.utils.logger.Logger;
+
+/**
+ * Provider of the TLS contexts shared by SIP, MSRP and HTTP
+ * <br>A context is created once for each kind of certificate check and kept,
+ * so that its session cache lets the connections to a same server resume the
+ * previous TLS session instead of doing a full handshake. The size and the
+ * timeout of the session caches come from the settings. The handshakes done
+ * with the socket factories of the provider are counted.
+ */
+public class TlsContextProvider {
+	/**
+	 * Server certificate checked against the keystore or the built-in root
+	 * certificates, own certificate presented when configured (SIP, MSRP)
+	 */
+	public static final int TRUSTED = 0;
+
+	/**
+	 * Self-signed server certificate accepted, own certificate presented (MSRP
+	 * with fingerprint)
+	 */
+	public static final int SELF_SIGNED = 1;
+
+	/**
+	 * Self-signed server certificate accepted, no own certificate (HTTPS
+	 * provisioning, HTTP client of the file transfer)
+	 */
+	public static final int EASY = 2;
+
+	/**
+	 * Any server certificate accepted (file transfer over HTTP)
+	 */
+	public static final int TRUST_ALL = 3;
+
+	/**
+	 * Number of context types
+	 */
+	private static final int CONTEXT_TYPES = 4;
+
+	/**
+	 * Shared instance
+	 */
+	private static TlsContextProvider instance = null;
+
+	/**
+	 * Contexts indexed by type
+	 */
+	private SSLContext[] contexts = new SSLContext[CONTEXT_TYPES];
+
+	/**
+	 * Socket factories indexed by type
+	 */
+	private MeteredSocketFactory[] factories = new MeteredSocketFactory[CONTEXT_TYPES];
+
+	/**
+	 * Max number of sessions in a cache, or -1 to use the settings
+	 */
+	private int sessionCacheSize = -1;
+
+	/**
+	 * Session timeout in seconds, or -1 to use the settings
+	 */
+	private int sessionTimeout = -1;
+
+	/**
+	 * Number of handshakes
+	 */
+	private int handshakeCount = 0;
+
+	/**
+	 * Number of handshakes resuming a session
+	 */
+	private int resumedCount = 0;
+
+	/**
+	 * Total duration of the handshakes in milliseconds
+	 */
+	private long handshakeDuration = 0L;
+
+	/**
+	 * The logger
+	 */
+	private Logger logger = Logger.getLogger(this.getClass().getName());
+
+	/**
+	 * Returns the shared instance
+	 *
+	 * @return Provider
+	 */
+	public static synchronized TlsContextProvider getInstance() {
+		if (instance == null) {
+			instance = new TlsContextProvider();
+		}
+		return instance;
+	}
+
+	/**
+	 * Constructor
+	 */
+	public TlsContextProvider() {
+	}
+
+	/**
+	 * Returns the context of a type, created at the first call
+	 *
+	 * @param type Context type
+	 * @return Context
+	 * @throws IOException
+	 */
+	public synchronized SSLContext getContext(int type) throws IOException {
+		if (contexts[type] == null) {
+			setContext(type, createContext(type));
+		}
+		return contexts[type];
+	}
+
+	/**
+	 * Returns the socket factory of a type, counting the handshakes
+	 *
+	 * @param type Context type
+	 * @return Socket factory
+	 * @throws IOException
+	 */
+	public synchronized SSLSocketFactory getSocketFactory(int type) throws IOException {
+		getContext(type);
+		return factories[type];
+	}
+
+	/**
+	 * Set the context of a type, its session caches are configured
+	 *
+	 * @param type Context type
+	 * @param context Context
+	 */
+	public synchronized void setContext(int type, SSLContext context) {
+		contexts[type] = context;
+		factories[type] = new MeteredSocketFactory(context.getSocketFactory());
+		configureSessionCache(context);
+	}
+
+	/**
+	 * Set the size and the timeout of the session caches, instead of the values
+	 * of the settings
+	 *
+	 * @param size Max number of sessions, 0 for no limit
+	 * @param timeout Timeout in seconds, 0 for no limit
+	 */
+	public synchronized void setSessionCache(int size, int timeout) {
+		sessionCacheSize = size;
+		sessionTimeout = timeout;
+		for(int i=0; i < CONTEXT_TYPES; i++) {
+			if (contexts[i] != null) {
+				configureSessionCache(contexts[i]);
+			}
+		}
+	}
+
+	/**
+	 * Drop the contexts, for example when the own certificate has changed. The
+	 * next connections will do a full handshake.
+	 */
+	public synchronized void reset() {
+		if (logger.isActivated()) {
+			logger.debug("Reset the TLS contexts");
+		}
+		for(int i=0; i < CONTEXT_TYPES; i++) {
+			contexts[i] = null;
+			factories[i] = null;
+		}
+	}
+
+	/**
+	 * Returns the number of handshakes
+	 *
+	 * @return Number
+	 */
+	public synchronized int getHandshakeCount() {
+		return handshakeCount;
+	}
+
+	/**
+	 * Returns the number of handshakes which resumed a session
+	 *
+	 * @return Number
+	 */
+	public synchronized int getResumedHandshakeCount() {
+		return resumedCount;
+	}
+
+	/**
+	 * Returns the total duration of the handshakes, measured from the creation
+	 * of the sockets
+	 *
+	 * @return Duration in milliseconds
+	 */
+	public synchronized long getHandshakeDuration() {
+		return handshakeDuration;
+	}
+
+	/**
+	 * Returns a string representation of the metrics
+	 *
+	 * @return String
+	 */
+	public synchronized String toString() {
+		long average = (handshakeCount > 0) ? (handshakeDuration / handshakeCount) : 0;
+		return "TlsContextProvider[handshakes=" + handshakeCount + ", resumed=" + resumedCount +
+				", averageDuration=" + average + "ms]";
+	}
+
+	/**
+	 * Configure the session caches of a context
+	 *
+	 * @param context Context
+	 */
+	private void configureSessionCache(SSLContext context) {
+		int size = sessionCacheSize;
+		int timeout = sessionTimeout;
+		RcsSettings settings = RcsSettings.getInstance();
+		if ((size < 0) && (settings != null)) {
+			size = settings.getTlsSessionCacheSize();
+		}
+		if ((timeout < 0) && (settings != null)) {
+			timeout = settings.getTlsSessionTimeout();
+		}
+		configureSessionCache(context.getClientSessionContext(), size, timeout);
+		configureSessionCache(context.getServerSessionContext(), size, timeout);
+	}
+
+	/**
+	 * Configure a session cache
+	 *
+	 * @param sessions Session context
+	 * @param size Max number of sessions, or -1 to keep the default
+	 * @param timeout Timeout in seconds, or -1 to keep the default
+	 */
+	private void configureSessionCache(SSLSessionContext sessions, int size, int timeout) {
+		if (sessions == null) {
+			return;
+		}
+		if (size >= 0) {
+			sessions.setSessionCacheSize(size);
+		}
+		if (timeout >= 0) {
+			sessions.setSessionTimeout(timeout);
+		}
+	}
+
+	/**
+	 * Handshake completed on a socket
+	 *
+	 * @param event Event
+	 * @param startTime Creation time of the socket
+	 */
+	private void handshakeCompleted(HandshakeCompletedEvent event, long startTime) {
+		long duration = System.currentTimeMillis() - startTime;
+		// A resumed session has been created before the socket
+		boolean resumed = event.getSession().getCreationTime() < startTime;
+		synchronized(this) {
+			handshakeCount++;
+			handshakeDuration += duration;
+			if (resumed) {
+				resumedCount++;
+			}
+		}
+		if (logger.isActivated()) {
+			logger.debug("TLS handshake with " + event.getSession().getPeerHost() + " in " + duration +
+					"ms" + (resumed ? " (resumed)" : ""));
+		}
+	}
+
+	/**
+	 * Create the context of a type from the keystore
+	 *
+	 * @param type Context type
+	 * @return Context
+	 * @throws IOException
+	 */
+	private SSLContext createContext(int type) throws IOException {
+		if (logger.isActivated()) {
+			logger.debug("Create TLS context " + type);
+		}
+		FileInputStream ksFileInputStream = null;
+		FileInputStream tsFileInputStream = null;
+		try {
+			KeyManager[] kms = null;
+			TrustManager[] tms = null;
+			String algorithm = KeyManagerFactory.getDefaultAlgorithm();
+			if (type == TRUSTED) {
+				// Only use trusted certificates terminating on a well-known root CA
+				TrustManagerFactory tmFactory = TrustManagerFactory.getInstance(algorithm);
+				if (KeyStoreManager.isOwnCertificateUsed()) {
+					String keyStoreType = KeyStoreManager.getKeystoreType();
+					char[] keyStorePassword = KeyStoreManager.getKeystorePassword().toCharArray();
+					KeyStore trustStore = KeyStore.getInstance(keyStoreType);
+					tsFileInputStream = new FileInputStream(KeyStoreManager.getKeystorePath());
+					trustStore.load(tsFileInputStream, keyStorePassword);
+					tmFactory.init(trustStore);
+
+					KeyStore keyStore = KeyStore.getInstance(keyStoreType);
+					ksFileInputStream = new FileInputStream(KeyStoreManager.getKeystorePath());
+					keyStore.load(ksFileInputStream, keyStorePassword);
+					KeyManagerFactory kmFactory = KeyManagerFactory.getInstance(algorithm);
+					kmFactory.init(keyStore, keyStorePassword);
+					kms = kmFactory.getKeyManagers();
+				} else {
+					tmFactory.init((KeyStore)null);
+				}
+				tms = tmFactory.getTrustManagers();
+			} else
+			if (type == SELF_SIGNED) {
+				// Own trust manager to allow the usage of self-signed certificates
+				char[] keyStorePassword = KeyStoreManager.getKeystorePassword().toCharArray();
+				KeyStore keyStore = KeyStore.getInstance(KeyStoreManager.getKeystoreType());
+				ksFileInputStream = new FileInputStream(KeyStoreManager.getKeystorePath());
+				keyStore.load(ksFileInputStream, keyStorePassword);
+				KeyManagerFactory kmFactory = KeyManagerFactory.getInstance(algorithm);
+				kmFactory.init(keyStore, keyStorePassword);
+				kms = kmFactory.getKeyManagers();
+
+				// Overwrite 1st key manager with own wrapper to work around
+				// certificate request for unknown issuers
+				kms[0] = new X509KeyManagerWrapper(kms);
+				tms = new TrustManager[] { new EasyX509TrustManager(null) };
+			} else
+			if (type == EASY) {
+				tms = new TrustManager[] { new EasyX509TrustManager(null) };
+			} else {
+				tms = new TrustManager[] { new AllTrustManager() };
+			}
+
+			SecureRandom secureRandom = new SecureRandom();
+			secureRandom.nextInt();
+			SSLContext context = SSLContext.getInstance("TLS");
+			context.init(kms, tms, secureRandom);
+			return context;
+		} catch(Exception e) {
+			throw new IOException("Certificate exception: " + e.getMessage());
+		} finally {
+			CloseableUtils.close(ksFileInputStream);
+			CloseableUtils.close(tsFileInputStream);
+		}
+	}
+
+	/**
+	 * Trust manager accepting any certificate
+	 */
+	public static class AllTrustManager implements X509TrustManager {
+		public void checkClientTrusted(X509Certificate[] chain, String authType) throws CertificateException {
+		}
+
+		public void checkServerTrusted(X509Certificate[] chain, String authType) throws CertificateException {
+		}
+
+		public X509Certificate[] getAcceptedIssuers() {
+			return new X509Certificate[0];
+		}
+	}
+
+	/**
+	 * Socket factory counting the handshakes of its sockets
+	 */
+	private class MeteredSocketFactory extends SSLSocketFactory {
+		/**
+		 * Factory of the context
+		 */
+		private SSLSocketFactory factory;
+
+		/**
+		 * Constructor
+		 *
+		 * @param factory Factory of the context
+		 */
+		public MeteredSocketFactory(SSLSocketFactory factory) {
+			this.factory = factory;
+		}
+
+		/**
+		 * Listen to the handshake of a new socket
+		 *
+		 * @param socket Socket
+		 * @return Socket
+		 */
+		private Socket listen(Socket socket) {
+			final long startTime = System.currentTimeMillis();
+			((SSLSocket)socket).addHandshakeCompletedListener(new HandshakeCompletedListener() {
+				public void handshakeCompleted(HandshakeCompletedEvent event) {
+					TlsContextProvider.this.handshakeCompleted(event, startTime);
+				}
+			});
+			return socket;
+		}
+
+		public String[] getDefaultCipherSuites() {
+			return factory.getDefaultCipherSuites();
+		}
+
+		public String[] getSupportedCipherSuites() {
+			return factory.getSupportedCipherSuites();
+		}
+
+		public Socket createSocket() throws IOException {
+			return listen(factory.createSocket());
+		}
+
+		public Socket createSocket(Socket s, String host, int port, boolean autoClose) throws IOException {
+			return listen(factory.createSocket(s, host, port, autoClose));
+		}
+
+		public Socket createSocket(String host, int port) throws IOException {
+			return listen(factory.createSocket(host, port));
+		}
+
+		public Socket createSocket(String host, int port, InetAddress localHost, int localPort) throws IOException {
+			return listen(factory.createSocket(host, port, localHost, localPort));
+		}
+
+		public Socket createSocket(InetAddress host, int port) throws IOException {
+			return listen(factory.createSocket(host, port));
+		}
+
+		public Socket createSocket(InetAddress address, int port, InetAddress localAddress, int localPort) throws IOException {
+			return listen(factory.createSocket(address, port, localAddress, localPort));
+		}
+	}
+}
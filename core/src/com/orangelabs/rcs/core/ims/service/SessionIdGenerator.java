@@ -17,6 +17,8 @@
  ******************************************************************************/
 package com.orangelabs.rcs.core.ims.service;
 
+import java.util.concurrent.atomic.AtomicLong;
+
 /**
  * Session ID generator
  * 
@@ -26,15 +28,14 @@ public class SessionIdGenerator {
 	/**
 	 * Counter
 	 */
-	private static long current = System.currentTimeMillis();
+	private static final AtomicLong current = new AtomicLong(System.currentTimeMillis());
 	
 	/**
 	 * Returns a unique integer ID 
 	 * 
 	 * @return ID
 	 */
-	public static synchronized String getNewId() {
-		current++;
-		return ""+current;
+	public static String getNewId() {
+		return String.valueOf(current.incrementAndGet());
 	}	
 }
@@ -0,0 +1,258 @@
+/*******************************************************************************
+ * Software Name : RCS IMS Stack
+ *
+ * Copyright (C) 2010 France Telecom S.A.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.orangelabs.rcs.core.ims.service.capability;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import android.content.ContentResolver;
+import android.database.Cursor;
+import android.os.Build;
+import android.provider.ContactsContract.CommonDataKinds.Phone;
+
+import com.orangelabs.rcs.provider.eab.ContactsManager;
+import com.orangelabs.rcs.service.api.client.contacts.ContactInfo;
+import com.orangelabs.rcs.utils.PhoneUtils;
+import com.orangelabs.rcs.utils.logger.Logger;
+
+/**
+ * Incremental synchronization between the native address book and the EAB.
+ * <br>A hash of each row of the phone table is kept between two scans, so
+ * that only new or modified rows are processed. The RCS association state of
+ * the numbers found in those rows is then resolved with batched queries.
+ */
+public class AddressBookSyncEngine {
+	/**
+	 * Phone table projection
+	 */
+	private static final String[] PROJECTION = {
+		Phone._ID, Phone.NUMBER, Phone.RAW_CONTACT_ID, Phone.DATA_VERSION
+	};
+
+	/**
+	 * Content resolver
+	 */
+	private ContentResolver contentResolver;
+
+	/**
+	 * Hash of each phone row seen during the last scan, indexed by row id
+	 */
+	private HashMap<Long, Integer> rowHashes = new HashMap<Long, Integer>();
+
+	/**
+	 * International number of each phone row seen during the last scan, indexed by row id
+	 */
+	private HashMap<Long, String> rowNumbers = new HashMap<Long, String>();
+
+	/**
+	 * Numbers which have been queried but still have no entry in the EAB
+	 */
+	private Set<String> pendingNumbers = new HashSet<String>();
+
+	/**
+	 * Number of new or modified rows holding a valid number found by the last scan
+	 */
+	private int changedRows = 0;
+
+	/**
+	 * The logger
+	 */
+	private Logger logger = Logger.getLogger(this.getClass().getName());
+
+	/**
+	 * Constructor
+	 *
+	 * @param contentResolver Content resolver
+	 */
+	public AddressBookSyncEngine(ContentResolver contentResolver) {
+		this.contentResolver = contentResolver;
+	}
+
+	/**
+	 * Forget the state of the previous scans, the next one will process all rows
+	 */
+	public synchronized void reset() {
+		rowHashes.clear();
+		rowNumbers.clear();
+		pendingNumbers.clear();
+		changedRows = 0;
+	}
+
+	/**
+	 * Returns the number of new or modified rows holding a valid number found by the last scan
+	 *
+	 * @return Number of rows
+	 */
+	public synchronized int getChangedRows() {
+		return changedRows;
+	}
+
+	/**
+	 * Scan the phone table, create the missing associations for RCS numbers and
+	 * return the numbers whose capabilities have to be requested
+	 *
+	 * @param myNumber My number, excluded from the result
+	 * @return List of numbers in international format
+	 */
+	public synchronized List<String> synchronize(String myNumber) {
+		Cursor cursor = contentResolver.query(Phone.CONTENT_URI, PROJECTION, null, null, null);
+		if (cursor == null) {
+			return new ArrayList<String>();
+		}
+
+		// Compute the delta with the previous scan
+		HashMap<Long, Integer> newRowHashes = new HashMap<Long, Integer>(Math.max(16, cursor.getCount() * 2));
+		HashMap<Long, String> newRowNumbers = new HashMap<Long, String>(Math.max(16, cursor.getCount() * 2));
+		HashMap<String, String> formattedNumbers = new HashMap<String, String>();
+		List<Long> changedRawContactIds = new ArrayList<Long>();
+		List<String> changedNumbers = new ArrayList<String>();
+		try {
+			while (cursor.moveToNext()) {
+				long rowId = cursor.getLong(0);
+				String number = cursor.getString(1);
+				long rawContactId = cursor.getLong(2);
+				int hash = computeRowHash(number, rawContactId, cursor.getInt(3));
+				newRowHashes.put(rowId, hash);
+
+				Integer oldHash = rowHashes.get(rowId);
+				if ((oldHash != null) && (oldHash.intValue() == hash)) {
+					// Row not modified since the last scan
+					String phoneNumber = rowNumbers.get(rowId);
+					if (phoneNumber != null) {
+						newRowNumbers.put(rowId, phoneNumber);
+					}
+					continue;
+				}
+				if (number == null) {
+					continue;
+				}
+
+				// Format each distinct number once
+				String phoneNumber = formattedNumbers.get(number);
+				if (phoneNumber == null) {
+					phoneNumber = PhoneUtils.formatNumberToInternational(number);
+					formattedNumbers.put(number, phoneNumber);
+				}
+				newRowNumbers.put(rowId, phoneNumber);
+				if (PhoneUtils.isGlobalPhoneNumber(phoneNumber) && !phoneNumber.equals(myNumber)) {
+					changedRawContactIds.add(rawContactId);
+					changedNumbers.add(phoneNumber);
+				}
+			}
+		} finally {
+			cursor.close();
+		}
+		if (logger.isActivated()) {
+			logger.debug("Address book scan: " + newRowHashes.size() + " rows, " + changedNumbers.size() + " new or modified");
+		}
+
+		// Resolve the RCS association of all the candidate numbers at once. The pending
+		// numbers whose rows have been deleted since the last scan are dropped
+		Set<String> candidates = new LinkedHashSet<String>(changedNumbers);
+		if (!pendingNumbers.isEmpty()) {
+			Set<String> currentNumbers = new HashSet<String>(newRowNumbers.values());
+			for (Iterator<String> it = pendingNumbers.iterator(); it.hasNext();) {
+				String phoneNumber = it.next();
+				if (currentNumbers.contains(phoneNumber) && !phoneNumber.equals(myNumber)) {
+					candidates.add(phoneNumber);
+				}
+			}
+		}
+		ContactsManager contactsManager = ContactsManager.getInstance();
+		Set<String> rcsNumbers = contactsManager.getRcsAssociatedNumbers(candidates);
+
+		// Numbers without RCS entry have to be queried. We exclude the numbers that come
+		// from SIM only contacts, as those cannot be aggregated to RCS raw contacts if the
+		// OS version is gingerbread or fewer
+		boolean isLegacyOs = (Build.VERSION.SDK_INT <= 10);
+		Set<String> toBeTreatedNumbers = new LinkedHashSet<String>();
+		for (Iterator<String> it = candidates.iterator(); it.hasNext();) {
+			String phoneNumber = it.next();
+			if (!rcsNumbers.contains(phoneNumber)
+					&& (!isLegacyOs || !contactsManager.isOnlySimAssociated(phoneNumber))) {
+				toBeTreatedNumbers.add(phoneNumber);
+			}
+		}
+
+		// New raw contacts holding a RCS number have to be associated with a RCS raw contact
+		if (!rcsNumbers.isEmpty()) {
+			Set<Long> rcsRawContactIds = new HashSet<Long>();
+			for (int i = 0; i < changedNumbers.size(); i++) {
+				if (rcsNumbers.contains(changedNumbers.get(i))) {
+					rcsRawContactIds.add(changedRawContactIds.get(i));
+				}
+			}
+			Map<Long, Set<String>> associations = contactsManager.getAssociatedRcsNumbers(rcsRawContactIds);
+			Set<Long> simRawContactIds;
+			if (isLegacyOs) {
+				simRawContactIds = contactsManager.getSimAccountRawContactIds(rcsRawContactIds);
+			} else {
+				simRawContactIds = new HashSet<Long>();
+			}
+			for (int i = 0; i < changedNumbers.size(); i++) {
+				String phoneNumber = changedNumbers.get(i);
+				Long rawContactId = changedRawContactIds.get(i);
+				if (!rcsNumbers.contains(phoneNumber) || simRawContactIds.contains(rawContactId)) {
+					continue;
+				}
+				Set<String> associatedNumbers = associations.get(rawContactId);
+				if ((associatedNumbers == null) || !associatedNumbers.contains(phoneNumber)) {
+					ContactInfo currentInfo = contactsManager.getContactInfo(phoneNumber);
+					if (currentInfo != null && currentInfo.isRcsContact()) {
+						contactsManager.createRcsContact(currentInfo, rawContactId);
+					}
+					// Do not associate the same raw contact twice if it holds the number several times
+					if (associatedNumbers == null) {
+						associatedNumbers = new HashSet<String>();
+						associations.put(rawContactId, associatedNumbers);
+					}
+					associatedNumbers.add(phoneNumber);
+				}
+			}
+		}
+
+		// Keep the state for the next scan
+		rowHashes = newRowHashes;
+		rowNumbers = newRowNumbers;
+		changedRows = changedNumbers.size();
+		pendingNumbers = toBeTreatedNumbers;
+		return new ArrayList<String>(toBeTreatedNumbers);
+	}
+
+	/**
+	 * Compute the hash of a phone row
+	 *
+	 * @param number Phone number as stored in the address book
+	 * @param rawContactId Raw contact id
+	 * @param version Data version of the row
+	 * @return Hash
+	 */
+	private static int computeRowHash(String number, long rawContactId, int version) {
+		int hash = (number != null) ? number.hashCode() : 0;
+		hash = 31 * hash + (int)(rawContactId ^ (rawContactId >>> 32));
+		hash = 31 * hash + version;
+		return hash;
+	}
+}
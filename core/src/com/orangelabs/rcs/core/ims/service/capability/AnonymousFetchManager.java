@@ -19,18 +19,28 @@
 package com.orangelabs.rcs.core.ims.service.capability;
 
 import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 import java.util.Vector;
 
 import org.xml.sax.InputSource;
 
 import com.orangelabs.rcs.core.ims.ImsModule;
+import com.orangelabs.rcs.core.ims.network.sip.MultipartReader;
 import com.orangelabs.rcs.core.ims.network.sip.SipUtils;
 import com.orangelabs.rcs.core.ims.protocol.sip.SipRequest;
 import com.orangelabs.rcs.core.ims.service.presence.PresenceUtils;
 import com.orangelabs.rcs.core.ims.service.presence.pidf.PidfDocument;
 import com.orangelabs.rcs.core.ims.service.presence.pidf.PidfParser;
 import com.orangelabs.rcs.core.ims.service.presence.pidf.Tuple;
+import com.orangelabs.rcs.core.ims.service.presence.rlmi.ResourceInstance;
+import com.orangelabs.rcs.core.ims.service.presence.rlmi.RlmiDocument;
+import com.orangelabs.rcs.core.ims.service.presence.rlmi.RlmiParser;
 import com.orangelabs.rcs.provider.eab.ContactsManager;
+import com.orangelabs.rcs.provider.settings.RcsSettings;
 import com.orangelabs.rcs.service.api.client.capability.Capabilities;
 import com.orangelabs.rcs.service.api.client.contacts.ContactInfo;
 import com.orangelabs.rcs.utils.PhoneUtils;
@@ -42,6 +52,11 @@ import com.orangelabs.rcs.utils.logger.Logger;
  * @author jexa7410
  */
 public class AnonymousFetchManager implements DiscoveryManager {
+	/**
+	 * Max number of contacts in a resource list subscribe
+	 */
+	private final static int MAX_LIST_SIZE = 100;
+
 	   /**
      * IMS module
      */
@@ -72,7 +87,35 @@ public class AnonymousFetchManager implements DiscoveryManager {
     		logger.debug("Request capabilities in background for " + contact);
     	}
 		AnonymousFetchRequestTask task = new AnonymousFetchRequestTask(imsModule, contact);
-		task.start();
+		task.start();
+		return true;
+	}
+
+	/**
+     * Request the capabilities of a list of contacts. If a resource list server
+     * is configured, a single subscribe is sent for the whole list, else each
+     * contact is requested separately.
+     * 
+     * @param contacts List of remote contacts
+     * @return Returns true if success
+     */
+    public boolean requestCapabilities(List<String> contacts) {
+    	String listUri = RcsSettings.getInstance().getCapabilityAnonymousFetchListUri();
+    	if ((listUri == null) || (listUri.length() == 0) || (contacts.size() < 2)) {
+    		for(int i=0; i < contacts.size(); i++) {
+    			requestCapabilities(contacts.get(i));
+    		}
+    		return true;
+    	}
+
+    	if (logger.isActivated()) {
+    		logger.debug("Request capabilities in background for " + contacts.size() + " contacts");
+    	}
+    	for(int i=0; i < contacts.size(); i += MAX_LIST_SIZE) {
+    		List<String> list = new ArrayList<String>(contacts.subList(i, Math.min(i + MAX_LIST_SIZE, contacts.size())));
+    		AnonymousFetchListRequestTask task = new AnonymousFetchListRequestTask(imsModule, listUri, list);
+    		task.start();
+    	}
 		return true;
 	}
 	
@@ -88,6 +131,13 @@ public class AnonymousFetchManager implements DiscoveryManager {
     	
 		// Parse XML part
 	    byte[] content = notify.getContentBytes();
+	    String contentType = notify.getContentType();
+	    if ((content != null) && (contentType != null) && contentType.startsWith("multipart")) {
+	    	if (logger.isActivated()) {
+	    		logger.debug("Anonymous fetch notification with resource list");
+	    	}
+	    	receiveListNotification(content, notify.getBoundaryContentType());
+	    } else
 	    if (content != null) {
 	    	if (logger.isActivated()) {
 	    		logger.debug("Anonymous fetch notification with PIDF document");
@@ -96,39 +146,11 @@ public class AnonymousFetchManager implements DiscoveryManager {
 		    	InputSource pidfInput = new InputSource(new ByteArrayInputStream(content));
 		    	PidfParser pidfParser = new PidfParser(pidfInput);
 		    	PidfDocument presence = pidfParser.getPresence();
-		    	if (presence != null) {
+		    	if (presence != null) {
 		    		// Extract capabilities
-			    	Capabilities capabilities =  new Capabilities();
-			    	
-			    	// We queried via anonymous fetch procedure, so set presence discovery to true
-			    	capabilities.setPresenceDiscoverySupport(true);
-			    	
 		    		String contact = presence.getEntity();
-		    		Vector<Tuple> tuples = presence.getTuplesList();
-		    		for(int i=0; i < tuples.size(); i++) {
-		    			Tuple tuple = (Tuple)tuples.elementAt(i);
-		    			boolean state = false; 
-		    			if (tuple.getStatus().getBasic().getValue().equals("open")) {
-		    				state = true;
-		    			}
-		    			String id = tuple.getService().getId();
-		    			if (id.equalsIgnoreCase(PresenceUtils.FEATURE_RCS2_VIDEO_SHARE)) {
-		    				capabilities.setVideoSharingSupport(state);
-		    			} else
-	    				if (id.equalsIgnoreCase(PresenceUtils.FEATURE_RCS2_IMAGE_SHARE)) {
-	    					capabilities.setImageSharingSupport(state);
-	    				} else
-    					if (id.equalsIgnoreCase(PresenceUtils.FEATURE_RCS2_FT)) {
-    						capabilities.setFileTransferSupport(state);
-    					} else
-						if (id.equalsIgnoreCase(PresenceUtils.FEATURE_RCS2_CS_VIDEO)) {
-							capabilities.setCsVideoSupport(state);
-						} else
-						if (id.equalsIgnoreCase(PresenceUtils.FEATURE_RCS2_CHAT)) {
-							capabilities.setImSessionSupport(state);
-						}
-		    		}
-
+			    	Capabilities capabilities = getCapabilities(presence);
+
 		    		// Update capabilities in database
 		    		ContactsManager.getInstance().setContactCapabilities(contact, capabilities, ContactInfo.RCS_CAPABLE, ContactInfo.REGISTRATION_STATUS_UNKNOWN);
 
@@ -156,4 +178,140 @@ public class AnonymousFetchManager implements DiscoveryManager {
 	    	imsModule.getCore().getListener().handleCapabilitiesNotification(contact, capabilities);
 	    }
     }	
+
+    /**
+     * Receive a resource list notification
+     * 
+     * @param content Multipart content
+     * @param boundary Boundary delimiter
+     */
+    private void receiveListNotification(byte[] content, String boundary) {
+    	Map<String, Capabilities> result = parseListNotification(content, boundary);
+
+    	// Contacts of the list without PIDF document have no capability, as
+    	// for an empty notification
+    	Map<String, Capabilities> capableContacts = new HashMap<String, Capabilities>();
+    	Map<String, Capabilities> unknownContacts = new HashMap<String, Capabilities>();
+    	for (Iterator<Map.Entry<String, Capabilities>> it = result.entrySet().iterator(); it.hasNext();) {
+    		Map.Entry<String, Capabilities> entry = it.next();
+    		if (entry.getValue() != null) {
+    			capableContacts.put(entry.getKey(), entry.getValue());
+    		} else {
+    			Capabilities capabilities = new Capabilities();
+    			entry.setValue(capabilities);
+    			unknownContacts.put(entry.getKey(), capabilities);
+    		}
+    	}
+    	if (logger.isActivated()) {
+    		logger.debug("Resource list notification with " + capableContacts.size() + " PIDF documents and "
+    				+ unknownContacts.size() + " contacts without PIDF document");
+    	}
+
+    	// Update capabilities in database
+    	ContactsManager contactsManager = ContactsManager.getInstance();
+    	if (!capableContacts.isEmpty()) {
+    		contactsManager.setContactsCapabilities(capableContacts, ContactInfo.RCS_CAPABLE, ContactInfo.REGISTRATION_STATUS_UNKNOWN);
+    	}
+    	if (!unknownContacts.isEmpty()) {
+    		contactsManager.setContactsCapabilities(unknownContacts, ContactInfo.NO_INFO, ContactInfo.REGISTRATION_STATUS_UNKNOWN);
+    	}
+
+    	// Notify listener
+    	for (Iterator<Map.Entry<String, Capabilities>> it = result.entrySet().iterator(); it.hasNext();) {
+    		Map.Entry<String, Capabilities> entry = it.next();
+    		imsModule.getCore().getListener().handleCapabilitiesNotification(entry.getKey(), entry.getValue());
+    	}
+    }
+
+    /**
+     * Parse a resource list notification
+     * 
+     * @param content Multipart content
+     * @param boundary Boundary delimiter
+     * @return Capabilities indexed by contact, the contacts of the RLMI part
+     * without PIDF document are mapped to null
+     */
+    public Map<String, Capabilities> parseListNotification(byte[] content, String boundary) {
+    	Map<String, Capabilities> result = new HashMap<String, Capabilities>();
+    	List<String> resources = new ArrayList<String>();
+    	MultipartReader reader = new MultipartReader(content, boundary);
+    	while (reader.next()) {
+    		String contentType = reader.getContentType();
+    		try {
+    			if ("application/pidf+xml".equals(contentType)) {
+    				// Extract the capabilities of each PIDF part
+    				PidfParser pidfParser = new PidfParser(new InputSource(reader.getContentStream()));
+    				PidfDocument presence = pidfParser.getPresence();
+    				if ((presence != null) && (presence.getEntity() != null)) {
+    					result.put(PhoneUtils.extractNumberFromUri(presence.getEntity()), getCapabilities(presence));
+    				}
+    			} else
+    			if ("application/rlmi+xml".equals(contentType)) {
+    				// Extract the contacts of the list
+    				RlmiParser rlmiParser = new RlmiParser(new InputSource(reader.getContentStream()));
+    				RlmiDocument rlmiInfo = rlmiParser.getResourceInfo();
+    				if (rlmiInfo != null) {
+    					Vector<ResourceInstance> list = rlmiInfo.getResourceList();
+    					for(int i=0; i < list.size(); i++) {
+    						String uri = list.elementAt(i).getUri();
+    						if (uri != null) {
+    							resources.add(PhoneUtils.extractNumberFromUri(uri));
+    						}
+    					}
+    				}
+    			}
+    		} catch(Exception e) {
+    			if (logger.isActivated()) {
+    				logger.error("Can't parse " + contentType + " part", e);
+    			}
+    		}
+    	}
+
+    	for(int i=0; i < resources.size(); i++) {
+    		String contact = resources.get(i);
+    		if ((contact != null) && !result.containsKey(contact)) {
+    			result.put(contact, null);
+    		}
+    	}
+    	return result;
+    }
+
+    /**
+     * Extract the capabilities from a PIDF document
+     * 
+     * @param presence PIDF document
+     * @return Capabilities
+     */
+    private Capabilities getCapabilities(PidfDocument presence) {
+    	Capabilities capabilities = new Capabilities();
+
+    	// We queried via anonymous fetch procedure, so set presence discovery to true
+    	capabilities.setPresenceDiscoverySupport(true);
+
+    	Vector<Tuple> tuples = presence.getTuplesList();
+    	for(int i=0; i < tuples.size(); i++) {
+    		Tuple tuple = (Tuple)tuples.elementAt(i);
+    		boolean state = false; 
+    		if (tuple.getStatus().getBasic().getValue().equals("open")) {
+    			state = true;
+    		}
+    		String id = tuple.getService().getId();
+    		if (id.equalsIgnoreCase(PresenceUtils.FEATURE_RCS2_VIDEO_SHARE)) {
+    			capabilities.setVideoSharingSupport(state);
+    		} else
+    		if (id.equalsIgnoreCase(PresenceUtils.FEATURE_RCS2_IMAGE_SHARE)) {
+    			capabilities.setImageSharingSupport(state);
+    		} else
+    		if (id.equalsIgnoreCase(PresenceUtils.FEATURE_RCS2_FT)) {
+    			capabilities.setFileTransferSupport(state);
+    		} else
+    		if (id.equalsIgnoreCase(PresenceUtils.FEATURE_RCS2_CS_VIDEO)) {
+    			capabilities.setCsVideoSupport(state);
+    		} else
+    		if (id.equalsIgnoreCase(PresenceUtils.FEATURE_RCS2_CHAT)) {
+    			capabilities.setImSessionSupport(state);
+    		}
+    	}
+    	return capabilities;
+    }
 }
@@ -0,0 +1,401 @@
+/*******************************************************************************
+ * Software Name : RCS IMS Stack
+ *
+ * Copyright (C) 2010 France Telecom S.A.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.orangelabs.rcs.core.ims.service.capability;
+
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import com.orangelabs.rcs.utils.TokenBucket;
+import com.orangelabs.rcs.utils.logger.Logger;
+
+/**
+ * Scheduler of the capability requests sent to the network
+ * <br>Requests are queued in two lanes: the requests triggered by the user
+ * are always dispatched before the background refreshes. A request for a
+ * contact which is already queued or in progress is coalesced with it, and
+ * the dispatch rate toward the network is limited by a token bucket.
+ */
+public class CapabilityRequestScheduler {
+	/**
+	 * Max number of requests in progress
+	 */
+	private final static int MAX_PROCESSING_THREADS = 15;
+
+	/**
+	 * Max number of queued background requests
+	 */
+	private final static int MAX_BACKGROUND_QUEUE_SIZE = 5000;
+
+	/**
+	 * Max number of requests sent in a burst
+	 */
+	private final static int MAX_BURST_SIZE = 10;
+
+	/**
+	 * Max number of requests per second in steady state
+	 */
+	private final static int MAX_REQUESTS_PER_SECOND = 5;
+
+	/**
+	 * Request factory
+	 */
+	public interface RequestFactory {
+		/**
+		 * Create the task requesting the capabilities of a contact
+		 *
+		 * @param contact Contact
+		 * @return Task or null if the request can't be done
+		 */
+		public Runnable createRequestTask(String contact);
+	}
+
+	/**
+	 * Request factory
+	 */
+	private RequestFactory factory;
+
+	/**
+	 * Requests triggered by the user
+	 */
+	private LinkedHashSet<String> userQueue = new LinkedHashSet<String>();
+
+	/**
+	 * Background requests
+	 */
+	private LinkedHashSet<String> backgroundQueue = new LinkedHashSet<String>();
+
+	/**
+	 * Contacts for which a request is in progress
+	 */
+	private HashSet<String> inProgress = new HashSet<String>();
+
+	/**
+	 * Max number of requests in progress
+	 */
+	private final int maxThreads;
+
+	/**
+	 * Rate limiter
+	 */
+	private final TokenBucket rateLimiter;
+
+	/**
+	 * Thread pool executing the requests
+	 */
+	private ExecutorService threadPool;
+
+	/**
+	 * Dispatcher thread
+	 */
+	private Thread dispatcher;
+
+	/**
+	 * Started flag
+	 */
+	private boolean started = false;
+
+	/**
+	 * Number of scheduled requests
+	 */
+	private long scheduledCount = 0L;
+
+	/**
+	 * Number of requests coalesced with a queued or in progress one
+	 */
+	private long coalescedCount = 0L;
+
+	/**
+	 * Number of completed requests
+	 */
+	private long completedCount = 0L;
+
+	/**
+	 * Number of dropped requests
+	 */
+	private long droppedCount = 0L;
+
+	/**
+	 * The logger
+	 */
+	private Logger logger = Logger.getLogger(this.getClass().getName());
+
+	/**
+	 * Constructor
+	 *
+	 * @param factory Request factory
+	 */
+	public CapabilityRequestScheduler(RequestFactory factory) {
+		this(factory, MAX_PROCESSING_THREADS, new TokenBucket(MAX_BURST_SIZE, MAX_REQUESTS_PER_SECOND));
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param factory Request factory
+	 * @param maxThreads Max number of requests in progress
+	 * @param rateLimiter Rate limiter
+	 */
+	public CapabilityRequestScheduler(RequestFactory factory, int maxThreads, TokenBucket rateLimiter) {
+		this.factory = factory;
+		this.maxThreads = maxThreads;
+		this.rateLimiter = rateLimiter;
+	}
+
+	/**
+	 * Start the scheduler
+	 */
+	public synchronized void start() {
+		if (started) {
+			return;
+		}
+		started = true;
+		threadPool = Executors.newFixedThreadPool(maxThreads);
+		dispatcher = new Thread("CapabilityRequestDispatcher") {
+			public void run() {
+				dispatch();
+			}
+		};
+		dispatcher.start();
+	}
+
+	/**
+	 * Stop the scheduler, the queued requests are dropped
+	 */
+	public synchronized void stop() {
+		if (!started) {
+			return;
+		}
+		started = false;
+		droppedCount += userQueue.size() + backgroundQueue.size();
+		userQueue.clear();
+		backgroundQueue.clear();
+		dispatcher.interrupt();
+		notifyAll();
+		try {
+			threadPool.shutdown();
+		} catch (SecurityException e) {
+			if (logger.isActivated()) {
+				logger.error("Could not stop all threads");
+			}
+		}
+		if (logger.isActivated()) {
+			logger.info("Capability request scheduler stopped: " + toString());
+		}
+	}
+
+	/**
+	 * Schedule a capability request
+	 *
+	 * @param contact Contact
+	 * @param userTriggered True if the request has been triggered by the user
+	 * @return Returns false if the request has been dropped
+	 */
+	public synchronized boolean schedule(String contact, boolean userTriggered) {
+		if (!started) {
+			droppedCount++;
+			return false;
+		}
+
+		if (inProgress.contains(contact) || userQueue.contains(contact)) {
+			coalescedCount++;
+			return true;
+		}
+
+		if (backgroundQueue.contains(contact)) {
+			coalescedCount++;
+			if (userTriggered) {
+				// Promote the request to the user lane
+				backgroundQueue.remove(contact);
+				userQueue.add(contact);
+			}
+			return true;
+		}
+
+		if (userTriggered) {
+			userQueue.add(contact);
+		} else {
+			if (backgroundQueue.size() >= MAX_BACKGROUND_QUEUE_SIZE) {
+				droppedCount++;
+				return false;
+			}
+			backgroundQueue.add(contact);
+		}
+		scheduledCount++;
+		notifyAll();
+		return true;
+	}
+
+	/**
+	 * Dispatch the queued requests
+	 */
+	private void dispatch() {
+		while (true) {
+			String contact;
+			synchronized(this) {
+				while (isDispatcher() && ((inProgress.size() >= maxThreads) ||
+						(userQueue.isEmpty() && backgroundQueue.isEmpty()))) {
+					try {
+						wait();
+					} catch (InterruptedException e) {
+						// Nothing to do
+					}
+				}
+				if (!isDispatcher()) {
+					return;
+				}
+				contact = pollNext();
+				inProgress.add(contact);
+			}
+
+			try {
+				rateLimiter.acquire();
+				submit(contact);
+			} catch (InterruptedException e) {
+				complete(contact, false);
+			}
+		}
+	}
+
+	/**
+	 * Check if the current thread is the dispatcher of the running scheduler
+	 *
+	 * @return Boolean
+	 */
+	private boolean isDispatcher() {
+		return started && (dispatcher == Thread.currentThread());
+	}
+
+	/**
+	 * Submit a request to the thread pool
+	 *
+	 * @param contact Contact
+	 */
+	private void submit(final String contact) {
+		try {
+			final Runnable task = factory.createRequestTask(contact);
+			if (task == null) {
+				complete(contact, false);
+				return;
+			}
+			threadPool.execute(new Runnable() {
+				public void run() {
+					try {
+						task.run();
+					} finally {
+						complete(contact, true);
+					}
+				}
+			});
+		} catch(Exception e) {
+			if (logger.isActivated()) {
+				logger.error("Can't submit capability request for " + contact, e);
+			}
+			complete(contact, false);
+		}
+	}
+
+	/**
+	 * Get the next contact to be requested, user requests first
+	 *
+	 * @return Contact
+	 */
+	private String pollNext() {
+		LinkedHashSet<String> queue = userQueue.isEmpty() ? backgroundQueue : userQueue;
+		Iterator<String> it = queue.iterator();
+		String contact = it.next();
+		it.remove();
+		return contact;
+	}
+
+	/**
+	 * A request is terminated
+	 *
+	 * @param contact Contact
+	 * @param done True if the request has been executed
+	 */
+	private synchronized void complete(String contact, boolean done) {
+		inProgress.remove(contact);
+		if (done) {
+			completedCount++;
+		} else {
+			droppedCount++;
+		}
+		notifyAll();
+	}
+
+	/**
+	 * Returns the number of scheduled requests
+	 *
+	 * @return Count
+	 */
+	public synchronized long getScheduledCount() {
+		return scheduledCount;
+	}
+
+	/**
+	 * Returns the number of requests coalesced with a queued or in progress one
+	 *
+	 * @return Count
+	 */
+	public synchronized long getCoalescedCount() {
+		return coalescedCount;
+	}
+
+	/**
+	 * Returns the number of completed requests
+	 *
+	 * @return Count
+	 */
+	public synchronized long getCompletedCount() {
+		return completedCount;
+	}
+
+	/**
+	 * Returns the number of dropped requests
+	 *
+	 * @return Count
+	 */
+	public synchronized long getDroppedCount() {
+		return droppedCount;
+	}
+
+	/**
+	 * Returns the number of pending requests
+	 *
+	 * @return Count
+	 */
+	public synchronized int getPendingCount() {
+		return userQueue.size() + backgroundQueue.size();
+	}
+
+	/**
+	 * Returns a description of the scheduler metrics
+	 *
+	 * @return String
+	 */
+	public synchronized String toString() {
+		return "CapabilityRequestScheduler[pending=" + (userQueue.size() + backgroundQueue.size())
+				+ ", inProgress=" + inProgress.size() + ", scheduled=" + scheduledCount
+				+ ", coalesced=" + coalescedCount + ", completed=" + completedCount
+				+ ", dropped=" + droppedCount + "]";
+	}
+}
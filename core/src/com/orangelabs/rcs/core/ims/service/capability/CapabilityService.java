@@ -18,13 +18,8 @@
 
 package com.orangelabs.rcs.core.ims.service.capability;
 
-import java.util.ArrayList;
 import java.util.List;
 
-import android.database.Cursor;
-import android.os.Build;
-import android.provider.ContactsContract.CommonDataKinds.Phone;
-
 import com.orangelabs.rcs.addressbook.AddressBookEventListener;
 import com.orangelabs.rcs.core.CoreException;
 import com.orangelabs.rcs.core.ims.ImsModule;
@@ -34,7 +29,6 @@ import com.orangelabs.rcs.platform.AndroidFactory;
 import com.orangelabs.rcs.provider.eab.ContactsManager;
 import com.orangelabs.rcs.provider.settings.RcsSettings;
 import com.orangelabs.rcs.service.api.client.capability.Capabilities;
-import com.orangelabs.rcs.service.api.client.contacts.ContactInfo;
 import com.orangelabs.rcs.utils.PhoneUtils;
 import com.orangelabs.rcs.utils.logger.Logger;
 
@@ -64,6 +58,11 @@ public class CapabilityService extends ImsService implements AddressBookEventLis
 	 */
 	private PollingManager pollingManager;
 
+	/**
+	 * Address book synchronization engine
+	 */
+	private AddressBookSyncEngine addressBookSyncEngine;
+
 	/**
      * Flag: set during the address book changed procedure, if we are notified
      * of a change
@@ -98,6 +97,9 @@ public class CapabilityService extends ImsService implements AddressBookEventLis
     	// Instanciate the anonymous fetch manager
     	anonymousFetchManager = new AnonymousFetchManager(parent);
 
+    	// Instanciate the address book synchronization engine
+    	addressBookSyncEngine = new AddressBookSyncEngine(AndroidFactory.getApplicationContext().getContentResolver());
+
     	// Get capability extensions
     	CapabilityUtils.updateExternalSupportedFeatures(AndroidFactory.getApplicationContext());
 	}
@@ -121,7 +123,8 @@ public class CapabilityService extends ImsService implements AddressBookEventLis
 		// Start polling
 		pollingManager.start();
 
-		// Force a first capability check
+		// Force a first capability check on the whole address book
+		addressBookSyncEngine.reset();
 		Thread t = new Thread() {
 			public void run() {
 				handleAddressBookHasChanged();
@@ -275,62 +278,8 @@ public class CapabilityService extends ImsService implements AddressBookEventLis
 		// Reset recheck flag
 		isRecheckNeeded = false;
 
-		// Check all phone numbers and query only the new ones
-        String[] projection = {
-                Phone._ID, Phone.NUMBER, Phone.RAW_CONTACT_ID 
-                };
-        Cursor phonesCursor = AndroidFactory.getApplicationContext().getContentResolver().query(
-                Phone.CONTENT_URI,
-                projection,
-                null,
-                null,
-                null);
-
-		// List of unique number that will have to be queried for capabilities
-		ArrayList<String> toBeTreatedNumbers = new ArrayList<String>();
-
-		// List of unique number that have already been queried
-		ArrayList<String> alreadyInEabOrInvalidNumbers = new ArrayList<String>();
-
-		// We add "My number" to the numbers that are already RCS, so we don't query it if it is present in the address book
-        alreadyInEabOrInvalidNumbers.add(ImsModule.IMS_USER_PROFILE.getUsername());
-
-		while(phonesCursor.moveToNext()) {
-			// Keep a trace of already treated row. Key is (phone number in international format)
-			String phoneNumber = PhoneUtils.formatNumberToInternational(phonesCursor.getString(1));
-			if (!alreadyInEabOrInvalidNumbers.contains(phoneNumber)) {
-				// If this number is not considered RCS valid or has already an entry with RCS, skip it
-                if (PhoneUtils.isGlobalPhoneNumber(phoneNumber)
-						&& !ContactsManager.getInstance().isRcsAssociated(phoneNumber)
-						&& ( !ContactsManager.getInstance().isOnlySimAssociated(phoneNumber) || (Build.VERSION.SDK_INT > 10))) {
-					// This entry is valid and not already has a RCS raw contact, it can be treated
-                    // We exclude the number that comes from SIM only contacts, as those cannot be
-                    // aggregated to RCS raw contacts only if OS version if gingebread or fewer
-					toBeTreatedNumbers.add(phoneNumber);
-				} else {
-					// This entry is either not valid or already RCS, this number is already done
-					alreadyInEabOrInvalidNumbers.add(phoneNumber);
-					
-					// Remove the number from the treated list, if it is in it
-					toBeTreatedNumbers.remove(phoneNumber);
-				}
-			} else {
-				// Remove the number from the treated list, it was already queried for another raw contact on the same number
-				toBeTreatedNumbers.remove(phoneNumber);
-
-                // If it is a RCS contact and the raw contact is not associated with a RCS raw contact,
-                // then we have to create a new association for it
-                long rawContactId = phonesCursor.getLong(2);
-                if ((!ContactsManager.getInstance().isSimAccount(rawContactId) || (Build.VERSION.SDK_INT > 10))
-                        && (ContactsManager.getInstance().getAssociatedRcsRawContact(rawContactId, phoneNumber) == -1)) {
-                    ContactInfo currentInfo = ContactsManager.getInstance().getContactInfo(phoneNumber);
-                    if (currentInfo != null && currentInfo.isRcsContact()) {
-                        ContactsManager.getInstance().createRcsContact(currentInfo, rawContactId);
-                    }
-				}
-			}
-		}
-		phonesCursor.close();
+		// Check the new or modified phone numbers and query only the new ones
+		List<String> toBeTreatedNumbers = addressBookSyncEngine.synchronize(ImsModule.IMS_USER_PROFILE.getUsername());
 
 		// Get the capabilities for the numbers that haven't got a RCS associated contact
 		requestContactCapabilities(toBeTreatedNumbers);
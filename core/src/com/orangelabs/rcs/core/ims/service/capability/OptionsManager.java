@@ -19,8 +19,6 @@ package com.orangelabs.rcs.core.ims.service.capability;
 
 import java.util.HashSet;
 import java.util.List;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 
 import com.orangelabs.rcs.core.ims.ImsModule;
 import com.orangelabs.rcs.core.ims.network.sip.SipMessageFactory;
@@ -37,21 +35,16 @@ import com.orangelabs.rcs.utils.logger.Logger;
  *  
  * @author jexa7410
  */
-public class OptionsManager implements DiscoveryManager {
-	/**
-	 * Max number of threads for background processing
-	 */
-	private final static int MAX_PROCESSING_THREADS = 15;
-	
+public class OptionsManager implements DiscoveryManager, CapabilityRequestScheduler.RequestFactory {
     /**
      * IMS module
      */
     private ImsModule imsModule;
     
     /**
-     * Thread pool to request capabilities in background
+     * Scheduler of the capability requests
      */
-    private ExecutorService threadPool;
+    private CapabilityRequestScheduler scheduler;
 
     /**
      * The logger
@@ -65,26 +58,30 @@ public class OptionsManager implements DiscoveryManager {
      */
     public OptionsManager(ImsModule parent) {
         this.imsModule = parent;
+        this.scheduler = new CapabilityRequestScheduler(this);
     }
 
     /**
      * Start the manager
      */
     public void start() {
-    	threadPool = Executors.newFixedThreadPool(MAX_PROCESSING_THREADS);
+    	scheduler.start();
     }
 
     /**
      * Stop the manager
      */
     public void stop() {
-        try {
-        	threadPool.shutdown();
-        } catch (SecurityException e) {
-            if (logger.isActivated()) {
-            	logger.error("Could not stop all threads");
-            }
-        }
+    	scheduler.stop();
+    }
+
+    /**
+     * Get the scheduler of the capability requests
+     * 
+     * @return Scheduler
+     */
+    public CapabilityRequestScheduler getScheduler() {
+    	return scheduler;
     }
     
 	/**
@@ -94,26 +91,36 @@ public class OptionsManager implements DiscoveryManager {
      * @return Returns true if success
      */
     public boolean requestCapabilities(String contact) {
+    	return requestCapabilities(contact, true);
+    }
+
+	/**
+     * Request contact capabilities
+     * 
+     * @param contact Remote contact
+     * @param userTriggered True if the request is triggered by the user, false for a background refresh
+     * @return Returns true if success
+     */
+    public boolean requestCapabilities(String contact, boolean userTriggered) {
     	if (logger.isActivated()) {
     		logger.debug("Request capabilities in background for " + contact);
     	}
-    	
+    	return scheduler.schedule(contact, userTriggered);
+    }
+
+    /**
+     * Create the task requesting the capabilities of a contact
+     * 
+     * @param contact Contact
+     * @return Task
+     */
+    public Runnable createRequestTask(String contact) {
     	// Update capability timestamp
     	ContactsManager.getInstance().setContactCapabilitiesTimestamp(contact, System.currentTimeMillis());
-    	
-    	// Start request in background
-		try {
-			boolean richcall = imsModule.getCallManager().isRichcallSupportedWith(contact);
-			boolean ipcall = imsModule.getIPCallService().isCallConnectedWith(contact);
-	    	OptionsRequestTask task = new OptionsRequestTask(imsModule, contact, CapabilityUtils.getSupportedFeatureTags(richcall, ipcall));
-	    	threadPool.submit(task);
-	    	return true;
-		} catch(Exception e) {
-	    	if (logger.isActivated()) {
-	    		logger.error("Can't submit task", e);
-	    	}
-	    	return false;
-		}
+
+		boolean richcall = imsModule.getCallManager().isRichcallSupportedWith(contact);
+		boolean ipcall = imsModule.getIPCallService().isCallConnectedWith(contact);
+    	return new OptionsRequestTask(imsModule, contact, CapabilityUtils.getSupportedFeatureTags(richcall, ipcall));
     }
 
     /**
@@ -129,7 +136,7 @@ public class OptionsManager implements DiscoveryManager {
         }
 
         for (String contact : setContacts) {
-			if (!requestCapabilities(contact)) {
+			if (!requestCapabilities(contact, false)) {
 		    	if (logger.isActivated()) {
 		    		logger.debug("Processing has been stopped");
 		    	}
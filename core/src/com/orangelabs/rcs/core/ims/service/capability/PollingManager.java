@@ -17,7 +17,10 @@
  ******************************************************************************/
 package com.orangelabs.rcs.core.ims.service.capability;
 
+import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 
 import com.orangelabs.rcs.provider.eab.ContactsManager;
 import com.orangelabs.rcs.provider.settings.RcsSettings;
@@ -36,6 +39,11 @@ public class PollingManager extends PeriodicRefresher {
 	 */
 	private static final int CAPABILITY_EXPIRY_PERIOD = RcsSettings.getInstance().getCapabilityExpiryTimeout();
 
+	/**
+	 * Min delay between two updates in seconds
+	 */
+	private static final int MIN_POLLING_PERIOD = 60;
+
 	/**
      * Capability service
      */
@@ -87,55 +95,71 @@ public class PollingManager extends PeriodicRefresher {
     		logger.info("Execute new capabilities update");
     	}
     	
-    	// Update all contacts capabilities if refresh timeout has not expired
-		List<String> contactList = ContactsManager.getInstance().getAllContacts();
-		for (int i=0; i < contactList.size(); i++) {
-			String contact = contactList.get(i);
-			requestContactCapabilities(contact);
+    	// Update only the contacts whose capabilities have expired, the timestamps
+    	// of all contacts are read at once
+    	long now = System.currentTimeMillis();
+    	long nextExpiry = Long.MAX_VALUE;
+    	int nbExpired = 0;
+    	List<String> presenceContacts = new ArrayList<String>();
+    	Map<String, Long> timestamps = ContactsManager.getInstance().getCapabilityTimestamps();
+    	for (Iterator<Map.Entry<String, Long>> it = timestamps.entrySet().iterator(); it.hasNext();) {
+    		Map.Entry<String, Long> entry = it.next();
+    		long timestamp = entry.getValue();
+			long delta = (now - timestamp)/1000;
+			if ((timestamp == 0L) || (delta >= CAPABILITY_EXPIRY_PERIOD) || (delta < 0)) {
+				requestContactCapabilities(entry.getKey(), timestamp == 0L, presenceContacts);
+				nbExpired++;
+			} else {
+				nextExpiry = Math.min(nextExpiry, CAPABILITY_EXPIRY_PERIOD - delta);
+			}
+		}
+    	if (logger.isActivated()) {
+    		logger.debug(nbExpired + " expired capabilities on " + timestamps.size() + " contacts");
+    	}
+
+    	// Contacts supporting capability discovery via presence are requested together
+    	if (!presenceContacts.isEmpty()) {
+    		imsService.getAnonymousFetchManager().requestCapabilities(presenceContacts);
+    	}
+
+		// Restart timer, earlier than the polling period if some capabilities expire before
+		int period = pollingPeriod;
+		if (nextExpiry < period) {
+			period = (int)Math.max(nextExpiry, MIN_POLLING_PERIOD);
 		}
-		
-		// Restart timer
-		startTimer(pollingPeriod, 1);		
+		startTimer(period, 1);
     }
     
 	/**
 	 * Request contact capabilities 
 	 * 
 	 * @param contact Contact
+	 * @param isNew True if the contact has never been enriched with capabilities
+	 * @param presenceContacts Contacts to be requested via presence, completed by this method
 	 */
-	private void requestContactCapabilities(String contact) {
-    	if (logger.isActivated()) {
-    		logger.debug("Request capabilities for " + contact);
-    	}
-
-		// Read capabilities from the database
-		Capabilities capabilities = ContactsManager.getInstance().getContactCapabilities(contact);
-		if (capabilities == null) {
+	private void requestContactCapabilities(String contact, boolean isNew, List<String> presenceContacts) {
+		if (isNew) {
 	    	if (logger.isActivated()) {
 	    		logger.debug("No capability exist for " + contact);
 	    	}
 
             // New contact: request capabilities from the network
-    		imsService.getOptionsManager().requestCapabilities(contact);
-		} else {
-	    	if (logger.isActivated()) {
-	    		logger.debug("Capabilities exist for " + contact);
-	    	}
-			long delta = (System.currentTimeMillis()-capabilities.getTimestamp())/1000;
-			if ((delta >= CAPABILITY_EXPIRY_PERIOD) || (delta < 0)) {
-		    	if (logger.isActivated()) {
-		    		logger.debug("Capabilities have expired for " + contact);
-		    	}
-
-		    	// Capabilities are too old: request capabilities from the network
-		    	if (capabilities.isPresenceDiscoverySupported()) {
-			    	// If contact supports capability discovery via presence, use the selected discoveryManager
-		    		imsService.getAnonymousFetchManager().requestCapabilities(contact);
-		    	} else {
-		    		// The contact only supports OPTIONS requests
-		    		imsService.getOptionsManager().requestCapabilities(contact);
-		    	}
-			}
+    		imsService.getOptionsManager().requestCapabilities(contact, false);
+    		return;
 		}
+
+    	if (logger.isActivated()) {
+    		logger.debug("Capabilities have expired for " + contact);
+    	}
+
+    	// Capabilities are too old: request capabilities from the network
+		Capabilities capabilities = ContactsManager.getInstance().getContactCapabilities(contact);
+    	if ((capabilities != null) && capabilities.isPresenceDiscoverySupported()) {
+	    	// If contact supports capability discovery via presence, use the selected discoveryManager
+    		presenceContacts.add(contact);
+    	} else {
+    		// The contact only supports OPTIONS requests
+    		imsService.getOptionsManager().requestCapabilities(contact, false);
+    	}
 	}	    
 }
@@ -164,7 +164,6 @@ public class InstantMessagingService extends ImsService {
 		
 		// Stop IMDN manager
 		imdnMgr.terminate();
-        imdnMgr.interrupt();
         if (resumeManager != null)
         	resumeManager.terminate();
 	}
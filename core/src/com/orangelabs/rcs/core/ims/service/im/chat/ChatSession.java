@@ -289,6 +289,15 @@ public abstract class ChatSession extends ImsServiceSession implements MsrpEvent
 	public ChatActivityManager getActivityManager() {
 		return activityMgr;
 	}
+
+	/**
+	 * Returns the is-composing manager
+	 * 
+	 * @return Is-composing manager
+	 */
+	public IsComposingManager getIsComposingManager() {
+		return isComposingMgr;
+	}
 	
 	/**
 	 * Return the contribution ID
@@ -546,8 +555,7 @@ public abstract class ChatSession extends ImsServiceSession implements MsrpEvent
                     if (isFToHTTP) {
 						// File transfer over HTTP message
 						// Parse HTTP document
-						FileTransferHttpInfoDocument fileInfo = ChatUtils.parseFileTransferHttpDocument(cpimMsg.getMessageContent()
-								.getBytes());
+						FileTransferHttpInfoDocument fileInfo = ChatUtils.parseFileTransferHttpDocument(cpimMsg.getMessageContentBytes());
 						if (fileInfo != null) {
 							receiveHttpFileTransfer(remoteUri, fileInfo, cpimMsgId);
 						} else {
@@ -567,7 +575,7 @@ public abstract class ChatSession extends ImsServiceSession implements MsrpEvent
 			    	} else
 		    		if (ChatUtils.isApplicationIsComposingType(contentType)) {
 					    // Is composing event
-		    			receiveIsComposing(number, cpimMsg.getMessageContent().getBytes());
+		    			receiveIsComposing(number, cpimMsg.getMessageContentBytes());
 			    	} else
 			    	if (ChatUtils.isMessageImdnType(contentType)) {
 						// Delivery report
@@ -643,14 +651,14 @@ public abstract class ChatSession extends ImsServiceSession implements MsrpEvent
             }
             
             // Send the delivered notification by SIP
-            getImdnManager().sendMessageDeliveryStatus(getRemoteContact(), msgId, ImdnDocument.DELIVERY_STATUS_DELIVERED);
+            getImdnManager().sendSipMessageDeliveryStatus(getRemoteContact(), msgId, ImdnDocument.DELIVERY_STATUS_DELIVERED);
         } else if (TypeMsrpChunk.MessageDisplayedReport.equals(typeMsrpChunk)) {
             if (logger.isActivated()) {
                 logger.info("Failed to send displayed message via MSRP, so try to send via SIP message to " + getRemoteContact() + ". (msgId = " + msgId + ")");
             }
             
             // Send the displayed notification by SIP
-            getImdnManager().sendMessageDeliveryStatus(getRemoteContact(), msgId, ImdnDocument.DELIVERY_STATUS_DISPLAYED);
+            getImdnManager().sendSipMessageDeliveryStatus(getRemoteContact(), msgId, ImdnDocument.DELIVERY_STATUS_DISPLAYED);
         } else if ((msgId != null) && TypeMsrpChunk.TextMessage.equals(typeMsrpChunk)) {
             // Notify listeners
 	        for(int i=0; i < getListeners().size(); i++) {
@@ -832,9 +840,26 @@ public abstract class ChatSession extends ImsServiceSession implements MsrpEvent
 	 * @return Boolean result
 	 */
 	public boolean sendDataChunks(String msgId, String data, String mime, TypeMsrpChunk typeMsrpChunk) {
+		return sendDataChunks(msgId, data.getBytes(), mime, typeMsrpChunk);
+	}
+
+	/**
+	 * Send encoded data chunks
+	 * 
+	 * @param msgId Message ID
+	 * @param data Data
+	 * @param mime MIME type
+	 * @param typeMsrpChunk Type of MSRP chunk
+	 * @return Boolean result
+	 */
+	public boolean sendDataChunks(String msgId, byte[] data, String mime, TypeMsrpChunk typeMsrpChunk) {
 		try {
-			ByteArrayInputStream stream = new ByteArrayInputStream(data.getBytes()); 
-			msrpMgr.sendChunks(stream, msgId, mime, data.getBytes().length, typeMsrpChunk);
+			ByteArrayInputStream stream = new ByteArrayInputStream(data); 
+			msrpMgr.sendChunks(stream, msgId, mime, data.length, typeMsrpChunk);
+			if (TypeMsrpChunk.TextMessage.equals(typeMsrpChunk) || TypeMsrpChunk.GeoLocation.equals(typeMsrpChunk)) {
+				// The sent message ends the composing state
+				isComposingMgr.resetOutgoingState();
+			}
 			return true;
 		} catch(Exception e) {
 			// Error
@@ -934,7 +959,7 @@ public abstract class ChatSession extends ImsServiceSession implements MsrpEvent
 	            logger.debug("Send delivery status " + status + " for message " + msgId );
 	        }
 	        // Changed by Deutsche Telekom
-	        String content = ChatUtils.buildCpimDeliveryReport(from, to, imdn);
+	        byte[] content = ChatUtils.encodeCpimDeliveryReport(from, to, imdn);
 	        
 	        // Changed by Deutsche Telekom
 	        TypeMsrpChunk typeMsrpChunk = TypeMsrpChunk.OtherMessageDeliveredReportStatus; 
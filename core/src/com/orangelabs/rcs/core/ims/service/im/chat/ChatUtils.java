@@ -43,6 +43,7 @@ import com.orangelabs.rcs.core.ims.network.sip.SipUtils;
 import com.orangelabs.rcs.core.ims.protocol.sip.SipRequest;
 import com.orangelabs.rcs.core.ims.service.im.chat.cpim.CpimMessage;
 import com.orangelabs.rcs.core.ims.service.im.chat.cpim.CpimParser;
+import com.orangelabs.rcs.core.ims.service.im.chat.cpim.CpimWriter;
 import com.orangelabs.rcs.core.ims.service.im.chat.geoloc.GeolocInfoDocument;
 import com.orangelabs.rcs.core.ims.service.im.chat.geoloc.GeolocInfoParser;
 import com.orangelabs.rcs.core.ims.service.im.chat.imdn.ImdnDocument;
@@ -467,16 +468,15 @@ public class ChatUtils {
 	 * @return String
 	 */
 	public static String buildCpimMessage(String from, String to, String content, String contentType) {
-		String cpim =
-			CpimMessage.HEADER_FROM + ": " + ChatUtils.formatCpimSipUri(from) + CRLF + 
-			CpimMessage.HEADER_TO + ": " + ChatUtils.formatCpimSipUri(to) + CRLF + 
-			CpimMessage.HEADER_DATETIME + ": " + DateUtils.encodeDate(System.currentTimeMillis()) + CRLF + 
-			CRLF +  
-			CpimMessage.HEADER_CONTENT_TYPE + ": " + contentType + ";charset=utf-8" + CRLF + 
-			CRLF + 
-			content;	
-		   
-		return cpim;
+		return CpimWriter.getInstance()
+			.writeHeader(CpimMessage.HEADER_FROM, ChatUtils.formatCpimSipUri(from))
+			.writeHeader(CpimMessage.HEADER_TO, ChatUtils.formatCpimSipUri(to))
+			.writeHeader(CpimMessage.HEADER_DATETIME, DateUtils.encodeDate(System.currentTimeMillis()))
+			.writeEndOfLine()
+			.writeHeader(CpimMessage.HEADER_CONTENT_TYPE, contentType + ";charset=utf-8")
+			.writeEndOfLine()
+			.writeContent(CpimWriter.encode(content))
+			.toString();
 	}
 	
 	/**
@@ -490,19 +490,8 @@ public class ChatUtils {
 	 * @return String
 	 */
 	public static String buildCpimMessageWithImdn(String from, String to, String messageId, String content, String contentType) {
-		String cpim =
-			CpimMessage.HEADER_FROM + ": " + ChatUtils.formatCpimSipUri(from) + CRLF + 
-			CpimMessage.HEADER_TO + ": " + ChatUtils.formatCpimSipUri(to) + CRLF + 
-			CpimMessage.HEADER_NS + ": " + ImdnDocument.IMDN_NAMESPACE + CRLF +
-			ImdnUtils.HEADER_IMDN_MSG_ID + ": " + messageId + CRLF +
-			CpimMessage.HEADER_DATETIME + ": " + DateUtils.encodeDate(System.currentTimeMillis()) + CRLF + 
-			ImdnUtils.HEADER_IMDN_DISPO_NOTIF + ": " + ImdnDocument.POSITIVE_DELIVERY + ", " + ImdnDocument.DISPLAY + CRLF +
-			CRLF +  
-			CpimMessage.HEADER_CONTENT_TYPE + ": " + contentType + ";charset=utf-8" + CRLF +
-			CpimMessage.HEADER_CONTENT_LENGTH + ": " + content.getBytes().length + CRLF + 
-			CRLF + 
-			content;	
-		return cpim;
+		return buildCpimMessageWithImdn(from, to, messageId, content, contentType,
+				ImdnDocument.POSITIVE_DELIVERY + ", " + ImdnDocument.DISPLAY);
 	}
 	
 	/**
@@ -516,19 +505,36 @@ public class ChatUtils {
 	 * @return String
 	 */
 	public static String buildCpimMessageWithDeliveredImdn(String from, String to, String messageId, String content, String contentType) {
-		String cpim =
-			CpimMessage.HEADER_FROM + ": " + ChatUtils.formatCpimSipUri(from) + CRLF + 
-			CpimMessage.HEADER_TO + ": " + ChatUtils.formatCpimSipUri(to) + CRLF + 
-			CpimMessage.HEADER_NS + ": " + ImdnDocument.IMDN_NAMESPACE + CRLF +
-			ImdnUtils.HEADER_IMDN_MSG_ID + ": " + messageId + CRLF +
-			CpimMessage.HEADER_DATETIME + ": " + DateUtils.encodeDate(System.currentTimeMillis()) + CRLF + 
-			ImdnUtils.HEADER_IMDN_DISPO_NOTIF + ": " + ImdnDocument.POSITIVE_DELIVERY + CRLF +
-			CRLF +  
-			CpimMessage.HEADER_CONTENT_TYPE + ": " + contentType + ";charset=utf-8" + CRLF +
-			CpimMessage.HEADER_CONTENT_LENGTH + ": " + content.getBytes().length + CRLF + 
-			CRLF + 
-			content;
-		return cpim;
+		return buildCpimMessageWithImdn(from, to, messageId, content, contentType, ImdnDocument.POSITIVE_DELIVERY);
+	}
+	
+	/**
+	 * Build a CPIM message with IMDN headers
+	 * 
+	 * @param from From URI
+	 * @param to To URI
+	 * @param messageId Message ID
+	 * @param content Content
+	 * @param contentType Content type
+	 * @param dispositionNotification Requested notifications
+	 * @return String
+	 */
+	private static String buildCpimMessageWithImdn(String from, String to, String messageId, String content,
+			String contentType, String dispositionNotification) {
+		byte[] body = CpimWriter.encode(content);
+		return CpimWriter.getInstance()
+			.writeHeader(CpimMessage.HEADER_FROM, ChatUtils.formatCpimSipUri(from))
+			.writeHeader(CpimMessage.HEADER_TO, ChatUtils.formatCpimSipUri(to))
+			.writeHeader(CpimMessage.HEADER_NS, ImdnDocument.IMDN_NAMESPACE)
+			.writeHeader(ImdnUtils.HEADER_IMDN_MSG_ID, messageId)
+			.writeHeader(CpimMessage.HEADER_DATETIME, DateUtils.encodeDate(System.currentTimeMillis()))
+			.writeHeader(ImdnUtils.HEADER_IMDN_DISPO_NOTIF, dispositionNotification)
+			.writeEndOfLine()
+			.writeHeader(CpimMessage.HEADER_CONTENT_TYPE, contentType + ";charset=utf-8")
+			.writeContentLength(body.length)
+			.writeEndOfLine()
+			.writeContent(body)
+			.toString();
 	}
 	
 	/**
@@ -540,21 +546,43 @@ public class ChatUtils {
 	 * @return String
 	 */
 	public static String buildCpimDeliveryReport(String from, String to, String imdn) {
-		// @formatter:off
-		String cpim =
-			CpimMessage.HEADER_FROM + ": " + ChatUtils.formatCpimSipUri(from) + CRLF + 
-			CpimMessage.HEADER_TO + ": " + ChatUtils.formatCpimSipUri(to) + CRLF + 
-			CpimMessage.HEADER_NS + ": " + ImdnDocument.IMDN_NAMESPACE + CRLF +
-			ImdnUtils.HEADER_IMDN_MSG_ID + ": " + IdGenerator.generateMessageID() + CRLF +
-			CpimMessage.HEADER_DATETIME + ": " + DateUtils.encodeDate(System.currentTimeMillis()) + CRLF + 
-			CRLF + 			
-			CpimMessage.HEADER_CONTENT_TYPE + ": " + ImdnDocument.MIME_TYPE + CRLF +
-			CpimMessage.HEADER_CONTENT_DISPOSITION + ": " + ImdnDocument.NOTIFICATION + CRLF +
-			CpimMessage.HEADER_CONTENT_LENGTH + ": " + imdn.getBytes().length + CRLF + 
-			CRLF + 
-			imdn;	
-		return cpim;
-		// @formatter:on
+		return writeCpimDeliveryReport(from, to, imdn).toString();
+	}
+	
+	/**
+	 * Encode a CPIM delivery report
+	 * 
+	 * @param from From
+	 * @param to To
+	 * @param imdn IMDN report
+	 * @return UTF-8 bytes
+	 */
+	public static byte[] encodeCpimDeliveryReport(String from, String to, String imdn) {
+		return writeCpimDeliveryReport(from, to, imdn).toByteArray();
+	}
+	
+	/**
+	 * Write a CPIM delivery report in the writer of the current thread
+	 * 
+	 * @param from From
+	 * @param to To
+	 * @param imdn IMDN report
+	 * @return Writer
+	 */
+	private static CpimWriter writeCpimDeliveryReport(String from, String to, String imdn) {
+		byte[] body = CpimWriter.encode(imdn);
+		return CpimWriter.getInstance()
+			.writeHeader(CpimMessage.HEADER_FROM, ChatUtils.formatCpimSipUri(from))
+			.writeHeader(CpimMessage.HEADER_TO, ChatUtils.formatCpimSipUri(to))
+			.writeHeader(CpimMessage.HEADER_NS, ImdnDocument.IMDN_NAMESPACE)
+			.writeHeader(ImdnUtils.HEADER_IMDN_MSG_ID, IdGenerator.generateMessageID())
+			.writeHeader(CpimMessage.HEADER_DATETIME, DateUtils.encodeDate(System.currentTimeMillis()))
+			.writeEndOfLine()
+			.writeHeader(CpimMessage.HEADER_CONTENT_TYPE, ImdnDocument.MIME_TYPE)
+			.writeHeader(CpimMessage.HEADER_CONTENT_DISPOSITION, ImdnDocument.NOTIFICATION)
+			.writeContentLength(body.length)
+			.writeEndOfLine()
+			.writeContent(body);
 	}
 	
 	/**
@@ -591,9 +619,7 @@ public class ChatUtils {
 	 */
 	public static ImdnDocument parseDeliveryReport(String xml) {
 		try {
-			InputSource input = new InputSource(new ByteArrayInputStream(xml.getBytes()));
-			ImdnParser parser = new ImdnParser(input);
-			return parser.getImdnDocument();
+			return ImdnParser.parse(xml.getBytes());
     	} catch(Exception e) {
     		return null;
     	}		
@@ -24,6 +24,7 @@ import javax.crypto.spec.SecretKeySpec;
 
 import com.orangelabs.rcs.platform.AndroidFactory;
 import com.orangelabs.rcs.utils.DeviceUtils;
+import com.orangelabs.rcs.utils.IdGenerator;
 
 /**
  * Contribution ID generator based on RFC draft-kaplan-dispatch-session-id-03
@@ -62,34 +63,38 @@ public class ContributionIdGenerator {
         return secretKey;
     }
 
+    /**
+     * HMAC-SHA1 of each thread, initialized with the secret key
+     */
+    private static ThreadLocal<Mac> macs = new ThreadLocal<Mac>() {
+    	protected Mac initialValue() {
+    		try {
+    			SecretKeySpec sks = new SecretKeySpec(secretKey, "HmacSHA1");
+    			Mac mac = Mac.getInstance("HmacSHA1");
+    			mac.init(sks);
+    			return mac;
+    		} catch(Exception e) {
+    			return null;
+    		}
+    	}
+    };
+
     /**
      * Returns the Contribution ID
      *
      * @param callId Call-ID header value
      * @return the Contribution ID
      */
-    public synchronized static String getContributionId(String callId) {
-    	try {
-            // HMAC-SHA1 operation
-            SecretKeySpec sks = new SecretKeySpec(secretKey, "HmacSHA1");
-            Mac mac = Mac.getInstance("HmacSHA1");
-            mac.init(sks);
-            byte[] contributionId = mac.doFinal(callId.getBytes());
+    public static String getContributionId(String callId) {
+    	Mac mac = macs.get();
+    	if ((mac == null) || (callId == null)) {
+    		return null;
+    	}
 
-            // Convert to Hexa and keep only 128 bits
-            StringBuffer hexString = new StringBuffer(32);
-            for (int i = 0; i < 16 && i < contributionId.length; i++) {
-                String hex = Integer.toHexString(0xFF & contributionId[i]);
-                if (hex.length() == 1) {
-                    hexString.append('0');
-                }
-                hexString.append(hex);
-            }
-            
-            String id = hexString.toString();
-            return id;
-        } catch(Exception e) {
-            return null;
-        }
+    	// HMAC-SHA1 operation
+    	byte[] contributionId = mac.doFinal(callId.getBytes());
+
+    	// Convert to Hexa and keep only 128 bits
+    	return IdGenerator.toHexString(contributionId, 16);
     }
 }
@@ -294,6 +294,11 @@ public abstract class GroupChatSession extends ChatSession {
 	 * @param status Status
 	 */
 	public void sendIsComposingStatus(boolean status) {
+		if (!getIsComposingManager().isOutgoingStateAllowed(status)) {
+			// Already sent or too many events
+			return;
+		}
+
 		String from = ImsModule.IMS_USER_PROFILE.getPublicUri();
 		String to = ChatUtils.ANOMYNOUS_URI;
 		String msgId = IdGenerator.generateMessageID();
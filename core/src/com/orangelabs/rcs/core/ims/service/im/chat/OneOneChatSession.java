@@ -229,6 +229,11 @@ public abstract class OneOneChatSession extends ChatSession {
 	 */
 	@Override
 	public void sendIsComposingStatus(boolean status) {
+		if (!getIsComposingManager().isOutgoingStateAllowed(status)) {
+			// Already sent or too many events
+			return;
+		}
+
 		String content = IsComposingInfo.buildIsComposingInfo(status);
 		String msgId = IdGenerator.generateMessageID();
 		sendDataChunks(msgId, content, IsComposingInfo.MIME_TYPE, MsrpSession.TypeMsrpChunk.IsComposing);
@@ -17,6 +17,7 @@
  ******************************************************************************/
 package com.orangelabs.rcs.core.ims.service.im.chat.cpim;
 
+import java.io.UnsupportedEncodingException;
 import java.util.Date;
 import java.util.Hashtable;
 
@@ -88,6 +89,21 @@ public class CpimMessage {
 	 * Message content
 	 */
 	private String msgContent = null;
+
+	/**
+	 * Raw data containing the message content, or null if the content is a string
+	 */
+	private byte[] data = null;
+
+	/**
+	 * Offset of the message content in the raw data
+	 */
+	private int contentOffset = 0;
+
+	/**
+	 * Length of the message content in the raw data
+	 */
+	private int contentLength = 0;
 	
 	/**
 	 * MIME headers
@@ -111,6 +127,24 @@ public class CpimMessage {
 		this.contentHeaders = contentHeaders;
 		this.msgContent = msgContent;
 	}
+
+	/**
+	 * Constructor
+	 * <br>The content is kept as a slice of the raw data and decoded when requested.
+	 * 
+	 * @param headers MIME headers
+	 * @param contentHeaders MIME content headers
+	 * @param data Raw data
+	 * @param offset Offset of the content in the raw data
+	 * @param length Length of the content
+	 */
+	public CpimMessage(Hashtable<String, String> headers, Hashtable<String, String> contentHeaders, byte[] data, int offset, int length) {
+		this.headers = headers;
+		this.contentHeaders = contentHeaders;
+		this.data = data;
+		this.contentOffset = offset;
+		this.contentLength = length;
+	}
 	
     /**
      * Returns content type
@@ -151,10 +185,38 @@ public class CpimMessage {
      * 
      * @return Content
      */
-    public String getMessageContent() {
+    public synchronized String getMessageContent() {
+    	if ((msgContent == null) && (data != null)) {
+    		try {
+    			msgContent = new String(data, contentOffset, contentLength, "UTF-8");
+    		} catch(UnsupportedEncodingException e) {
+    			msgContent = new String(data, contentOffset, contentLength);
+    		}
+    	}
 		return msgContent;
 	}
 
+    /**
+     * Returns message content as UTF-8 bytes, without decoding it
+     * 
+     * @return Content
+     */
+    public byte[] getMessageContentBytes() {
+    	if (data != null) {
+    		byte[] result = new byte[contentLength];
+    		System.arraycopy(data, contentOffset, result, 0, contentLength);
+    		return result;
+    	}
+    	if (msgContent == null) {
+    		return null;
+    	}
+    	try {
+    		return msgContent.getBytes("UTF-8");
+    	} catch(UnsupportedEncodingException e) {
+    		return msgContent.getBytes();
+    	}
+	}
+
     /**
      * Returns message date
      * 
@@ -18,112 +18,211 @@
 
 package com.orangelabs.rcs.core.ims.service.im.chat.cpim;
 
+import java.io.UnsupportedEncodingException;
 import java.util.Hashtable;
-import java.util.StringTokenizer;
 
-import com.orangelabs.rcs.utils.StringUtils;
+import com.orangelabs.rcs.core.ims.service.im.chat.imdn.ImdnUtils;
 
 /**
  * CPIM parser (see RFC3862)
- * 
+ * <br>The message is parsed from the received bytes: the headers are decoded
+ * one by one and the content is kept as a slice of the input data until its
+ * text is requested.
+ *
  * @author jexa7410
  */
 public class CpimParser {
 	/**
-	 * CRLF constant
-	 */
-	private static final String CRLF = "\r\n";
-
-	/**
-	 * Double CRLF constant
+	 * Header names known by the stack, used instead of a new string for each
+	 * parsed header
 	 */
-	private static final String DOUBLE_CRLF = CRLF + CRLF;
+	private static final String[] KNOWN_HEADERS = {
+		CpimMessage.HEADER_FROM,
+		CpimMessage.HEADER_TO,
+		CpimMessage.HEADER_CC,
+		CpimMessage.HEADER_DATETIME,
+		CpimMessage.HEADER_SUBJECT,
+		CpimMessage.HEADER_NS,
+		CpimMessage.HEADER_REQUIRE,
+		CpimMessage.HEADER_CONTENT_TYPE,
+		CpimMessage.HEADER_CONTENT_TYPE2,
+		CpimMessage.HEADER_CONTENT_LENGTH,
+		CpimMessage.HEADER_CONTENT_DISPOSITION,
+		ImdnUtils.HEADER_IMDN_MSG_ID,
+		ImdnUtils.HEADER_IMDN_DISPO_NOTIF
+	};
 
 	/**
 	 * CPIM message
 	 */
 	private CpimMessage cpim = null;
-	
+
 	/**
 	 * Constructor
-	 * 
+	 * <br>The content of the message refers to the input data, which must not
+	 * be modified afterwards.
+	 *
 	 * @param data Input data
 	 * @throws Exception
 	 */
     public CpimParser(byte data[]) throws Exception {
-        parse(new String(data));
+        parse(data);
 	}
 
 	/**
 	 * Constructor
-	 * 
+	 *
 	 * @param data Input data
 	 * @throws Exception
 	 */
     public CpimParser(String data) throws Exception {
-        parse(data);
+        parse(data.getBytes("UTF-8"));
 	}
 
     /***
      * Returns the CPIM message
-     * 
+     *
      * @return CPIM message
      */
     public CpimMessage getCpimMessage() {
     	return cpim;
     }
-    
+
     /**
      * Parse message/CPIM document
-     * 
+     *
      * @param data Input data
      * @throws Exception
      */
-	private void parse(String data) throws Exception {
+	private void parse(byte[] data) throws Exception {
 		/* CPIM sample:
 	    From: MR SANDERS <im:piglet@100akerwood.com>
 	    To: Depressed Donkey <im:eeyore@100akerwood.com>
 	    DateTime: 2000-12-13T13:40:00-08:00
 	    Subject: the weather will be fine today
-	    
+
 	    Content-type: text/plain
 	    Content-ID: <1234567890@foo.com>
-	    
+
 	    Here is the text of my message.
 	    */
 		try {
 			// Read message headers
-			int begin = 0;
-			int end = data.indexOf(DOUBLE_CRLF, begin);
-			String block2 = data.substring(begin, end);
-			StringTokenizer lines = new StringTokenizer(block2, CRLF); 
 			Hashtable<String, String> headers = new Hashtable<String, String>();
-			while(lines.hasMoreTokens()) {
-				String token = lines.nextToken();
-				CpimHeader hd = CpimHeader.parseHeader(token);
-				headers.put(hd.getName(), hd.getValue());
-			}
-			
+			int index = parseHeaders(data, 0, headers);
+
 			// Read the MIME-encapsulated content header
-			begin = end+4;
-			end = data.indexOf(DOUBLE_CRLF, begin);
-			String block3 = data.substring(begin, end);
-			lines = new StringTokenizer(block3, CRLF); 
 			Hashtable<String, String> contentHeaders = new Hashtable<String, String>();
-			while(lines.hasMoreTokens()) {
-				String token = lines.nextToken();
-				CpimHeader hd = CpimHeader.parseHeader(token);
-				contentHeaders.put(hd.getName(), hd.getValue());
-			}
+			index = parseHeaders(data, index, contentHeaders);
 
-			// Read the message content
-			begin = end+4;
-			String content = data.substring(begin);
-			
-			// Create the CPIM message
-			cpim = new CpimMessage(headers, contentHeaders, StringUtils.decodeUTF8(content));
+			// Create the CPIM message, the content is decoded on demand
+			cpim = new CpimMessage(headers, contentHeaders, data, index, data.length - index);
 		} catch(Exception e) {
 			throw new Exception("Bad CPIM message format");
 		}
 	}
+
+	/**
+	 * Parse a block of headers terminated by an empty line
+	 *
+	 * @param data Input data
+	 * @param index Position of the first header line
+	 * @param headers Parsed headers
+	 * @return Position following the empty line
+	 * @throws Exception
+	 */
+	private static int parseHeaders(byte[] data, int index, Hashtable<String, String> headers) throws Exception {
+		while (true) {
+			int end = indexOf(data, (byte)'\n', index, data.length);
+			if (end == -1) {
+				throw new Exception("Missing end of headers");
+			}
+			int lineEnd = end;
+			if ((lineEnd > index) && (data[lineEnd-1] == '\r')) {
+				lineEnd--;
+			}
+			if (lineEnd == index) {
+				// Empty line: end of the block
+				return end + 1;
+			}
+			int sep = indexOf(data, (byte)':', index, lineEnd);
+			if (sep == -1) {
+				throw new Exception("Bad header " + decode(data, index, lineEnd));
+			}
+			headers.put(getHeaderName(data, index, sep), decode(data, sep + 1, lineEnd));
+			index = end + 1;
+		}
+	}
+
+	/**
+	 * Returns a header name, known names are returned as the constant string
+	 *
+	 * @param data Input data
+	 * @param start Start position
+	 * @param end End position
+	 * @return Trimmed name
+	 */
+	private static String getHeaderName(byte[] data, int start, int end) {
+		while ((start < end) && ((data[start] & 0xff) <= ' ')) {
+			start++;
+		}
+		while ((end > start) && ((data[end-1] & 0xff) <= ' ')) {
+			end--;
+		}
+		int length = end - start;
+		for(int i=0; i < KNOWN_HEADERS.length; i++) {
+			String name = KNOWN_HEADERS[i];
+			if (name.length() != length) {
+				continue;
+			}
+			int j = 0;
+			while ((j < length) && (data[start+j] == name.charAt(j))) {
+				j++;
+			}
+			if (j == length) {
+				return name;
+			}
+		}
+		return decode(data, start, end);
+	}
+
+	/**
+	 * Decode a trimmed UTF-8 string
+	 *
+	 * @param data Input data
+	 * @param start Start position
+	 * @param end End position
+	 * @return String
+	 */
+	private static String decode(byte[] data, int start, int end) {
+		while ((start < end) && ((data[start] & 0xff) <= ' ')) {
+			start++;
+		}
+		while ((end > start) && ((data[end-1] & 0xff) <= ' ')) {
+			end--;
+		}
+		try {
+			return new String(data, start, end - start, "UTF-8");
+		} catch(UnsupportedEncodingException e) {
+			return new String(data, start, end - start);
+		}
+	}
+
+	/**
+	 * Search a byte in the data
+	 *
+	 * @param data Input data
+	 * @param b Searched byte
+	 * @param start Start position
+	 * @param end End position
+	 * @return Position or -1 if not found
+	 */
+	private static int indexOf(byte[] data, byte b, int start, int end) {
+		for(int i=start; i < end; i++) {
+			if (data[i] == b) {
+				return i;
+			}
+		}
+		return -1;
+	}
 }
@@ -0,0 +1,208 @@
+/*******************************************************************************
+ * Software Name : RCS IMS Stack
+ *
+ * Copyright (C) 2010 France Telecom S.A.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.orangelabs.rcs.core.ims.service.im.chat.cpim;
+
+import java.io.UnsupportedEncodingException;
+
+/**
+ * CPIM writer (see RFC3862)
+ * <br>The headers and the content of a CPIM message are encoded in UTF-8 in
+ * a buffer which is reused by the next message built by the same thread.
+ */
+public class CpimWriter {
+	/**
+	 * Initial size of the buffer
+	 */
+	private static final int INITIAL_SIZE = 1024;
+
+	/**
+	 * Max size of the buffer kept between two messages
+	 */
+	private static final int MAX_RETAINED_SIZE = 16 * 1024;
+
+	/**
+	 * Writer of each thread
+	 */
+	private static final ThreadLocal<CpimWriter> writers = new ThreadLocal<CpimWriter>() {
+		protected CpimWriter initialValue() {
+			return new CpimWriter();
+		}
+	};
+
+	/**
+	 * Buffer
+	 */
+	private byte[] buffer = new byte[INITIAL_SIZE];
+
+	/**
+	 * Number of bytes written in the buffer
+	 */
+	private int count = 0;
+
+	/**
+	 * Returns the writer of the current thread, ready for a new message
+	 *
+	 * @return Writer
+	 */
+	public static CpimWriter getInstance() {
+		CpimWriter writer = writers.get();
+		writer.reset();
+		return writer;
+	}
+
+	/**
+	 * Clear the buffer
+	 */
+	public void reset() {
+		if (buffer.length > MAX_RETAINED_SIZE) {
+			buffer = new byte[INITIAL_SIZE];
+		}
+		count = 0;
+	}
+
+	/**
+	 * Write a header line
+	 *
+	 * @param name Header name
+	 * @param value Header value
+	 * @return Writer
+	 */
+	public CpimWriter writeHeader(String name, String value) {
+		writeString(name);
+		ensureCapacity(2);
+		buffer[count++] = ':';
+		buffer[count++] = ' ';
+		writeString(value);
+		return writeEndOfLine();
+	}
+
+	/**
+	 * Write a Content-length header
+	 *
+	 * @param length Content length
+	 * @return Writer
+	 */
+	public CpimWriter writeContentLength(int length) {
+		return writeHeader(CpimMessage.HEADER_CONTENT_LENGTH, Integer.toString(length));
+	}
+
+	/**
+	 * Write a line break, an empty line ends a block of headers
+	 *
+	 * @return Writer
+	 */
+	public CpimWriter writeEndOfLine() {
+		ensureCapacity(2);
+		buffer[count++] = '\r';
+		buffer[count++] = '\n';
+		return this;
+	}
+
+	/**
+	 * Write the message content
+	 *
+	 * @param content Content in UTF-8
+	 * @return Writer
+	 */
+	public CpimWriter writeContent(byte[] content) {
+		ensureCapacity(content.length);
+		System.arraycopy(content, 0, buffer, count, content.length);
+		count += content.length;
+		return this;
+	}
+
+	/**
+	 * Returns the size of the message
+	 *
+	 * @return Size in bytes
+	 */
+	public int size() {
+		return count;
+	}
+
+	/**
+	 * Returns a copy of the message
+	 *
+	 * @return UTF-8 bytes
+	 */
+	public byte[] toByteArray() {
+		byte[] result = new byte[count];
+		System.arraycopy(buffer, 0, result, 0, count);
+		return result;
+	}
+
+	/**
+	 * Returns the message as a string
+	 *
+	 * @return String
+	 */
+	public String toString() {
+		try {
+			return new String(buffer, 0, count, "UTF-8");
+		} catch(UnsupportedEncodingException e) {
+			return new String(buffer, 0, count);
+		}
+	}
+
+	/**
+	 * Encode a string in UTF-8
+	 *
+	 * @param str String
+	 * @return Bytes
+	 */
+	public static byte[] encode(String str) {
+		try {
+			return str.getBytes("UTF-8");
+		} catch(UnsupportedEncodingException e) {
+			return str.getBytes();
+		}
+	}
+
+	/**
+	 * Write a string in UTF-8, ASCII characters are copied directly
+	 *
+	 * @param str String
+	 */
+	private void writeString(String str) {
+		int length = str.length();
+		ensureCapacity(length);
+		for(int i=0; i < length; i++) {
+			char c = str.charAt(i);
+			if (c >= 0x80) {
+				// Non ASCII string: encode the remaining characters
+				writeContent(encode(str.substring(i)));
+				return;
+			}
+			buffer[count++] = (byte)c;
+		}
+	}
+
+	/**
+	 * Grow the buffer if needed
+	 *
+	 * @param length Number of bytes to be written
+	 */
+	private void ensureCapacity(int length) {
+		if (count + length > buffer.length) {
+			byte[] newBuffer = new byte[Math.max(buffer.length * 2, count + length)];
+			System.arraycopy(buffer, 0, newBuffer, 0, count);
+			buffer = newBuffer;
+		}
+	}
+}
@@ -17,13 +17,11 @@
  ******************************************************************************/
 package com.orangelabs.rcs.core.ims.service.im.chat.event;
 
-import javax.xml.parsers.SAXParser;
-import javax.xml.parsers.SAXParserFactory;
-
 import org.xml.sax.Attributes;
 import org.xml.sax.InputSource;
 import org.xml.sax.helpers.DefaultHandler;
 
+import com.orangelabs.rcs.utils.SaxParserPool;
 import com.orangelabs.rcs.utils.logger.Logger;
 
 /**
@@ -120,9 +118,7 @@ public class ConferenceInfoParser extends DefaultHandler {
      * @throws Exception
      */
     public ConferenceInfoParser(InputSource inputSource) throws Exception {
-    	SAXParserFactory factory = SAXParserFactory.newInstance();
-        SAXParser parser = factory.newSAXParser();
-        parser.parse(inputSource, this);
+    	SaxParserPool.parse(inputSource, this);
 	}
 
 	public ConferenceInfoDocument getConferenceInfo() {
@@ -19,14 +19,12 @@ package com.orangelabs.rcs.core.ims.service.im.chat.geoloc;
 
 import java.util.StringTokenizer;
 
-import javax.xml.parsers.SAXParser;
-import javax.xml.parsers.SAXParserFactory;
-
 import org.xml.sax.Attributes;
 import org.xml.sax.InputSource;
 import org.xml.sax.helpers.DefaultHandler;
 
 import com.orangelabs.rcs.utils.DateUtils;
+import com.orangelabs.rcs.utils.SaxParserPool;
 import com.orangelabs.rcs.utils.logger.Logger;
 
 /**
@@ -74,9 +72,7 @@ public class GeolocInfoParser extends DefaultHandler {
      * @throws Exception
      */
     public GeolocInfoParser(InputSource inputSource) throws Exception {
-    	SAXParserFactory factory = SAXParserFactory.newInstance();
-        SAXParser parser = factory.newSAXParser();
-        parser.parse(inputSource, this);
+    	SaxParserPool.parse(inputSource, this);
 	}
 
 	public GeolocInfoDocument getGeoLocInfo() {
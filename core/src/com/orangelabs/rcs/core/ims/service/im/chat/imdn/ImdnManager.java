@@ -17,6 +17,17 @@
  ******************************************************************************/
 package com.orangelabs.rcs.core.ims.service.im.chat.imdn;
 
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Vector;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
 import com.orangelabs.rcs.core.ims.ImsModule;
 import com.orangelabs.rcs.core.ims.network.sip.FeatureTags;
 import com.orangelabs.rcs.core.ims.network.sip.SipMessageFactory;
@@ -25,141 +36,497 @@ import com.orangelabs.rcs.core.ims.protocol.sip.SipRequest;
 import com.orangelabs.rcs.core.ims.protocol.sip.SipTransactionContext;
 import com.orangelabs.rcs.core.ims.service.ImsService;
 import com.orangelabs.rcs.core.ims.service.SessionAuthenticationAgent;
+import com.orangelabs.rcs.core.ims.service.im.InstantMessagingService;
+import com.orangelabs.rcs.core.ims.service.im.chat.ChatSession;
 import com.orangelabs.rcs.core.ims.service.im.chat.ChatUtils;
 import com.orangelabs.rcs.core.ims.service.im.chat.cpim.CpimMessage;
 import com.orangelabs.rcs.provider.messaging.RichMessaging;
 import com.orangelabs.rcs.provider.settings.RcsSettings;
-import com.orangelabs.rcs.utils.FifoBuffer;
 import com.orangelabs.rcs.utils.PhoneUtils;
 import com.orangelabs.rcs.utils.logger.Logger;
 
 /**
  * IMDN manager (see RFC5438)
- * 
+ * <br>The delivery notifications are queued per remote contact and sent
+ * together at the end of a short window: a notification superseded by a
+ * later one for the same message is not sent. A batch is sent in the MSRP
+ * session of an established chat with the contact if any, otherwise the
+ * MESSAGE requests of the batch share the same call ID and authentication.
+ * Batches are sent by a thread pool with a bounded queue: when it is full the
+ * dispatcher waits for a free slot, the callers are never blocked.
+ *
  * @author jexa7410
  */
-public class ImdnManager extends Thread {
+public class ImdnManager {
+	/**
+	 * Max delay in milliseconds before the notifications of a contact are sent
+	 */
+	public final static long BATCH_WINDOW = 300L;
+
+	/**
+	 * Number of pending notifications triggering an immediate dispatch
+	 */
+	private final static int MAX_PENDING_SIZE = 200;
+
+	/**
+	 * Number of threads sending the batches
+	 */
+	private final static int MAX_PROCESSING_THREADS = 2;
+
+	/**
+	 * Max number of batches waiting for a thread
+	 */
+	private final static int MAX_QUEUED_BATCHES = 50;
+
     /**
      * IMS service
      */
-    private ImsService imsService;	
-	
-	/**
-	 * Buffer
-	 */
-	private FifoBuffer buffer = new FifoBuffer();
-    
+    private ImsService imsService;
+
 	/**
 	 * Activation flag
 	 */
 	private boolean activated;
 
+	/**
+	 * Pending batches indexed by contact number
+	 */
+	private LinkedHashMap<String, Batch> pending = new LinkedHashMap<String, Batch>();
+
+	/**
+	 * Number of pending notifications
+	 */
+	private int pendingSize = 0;
+
+	/**
+	 * Batches to be sent without waiting for a window
+	 */
+	private ArrayList<Batch> immediateBatches = new ArrayList<Batch>();
+
+	/**
+	 * Thread pool sending the batches
+	 */
+	private ThreadPoolExecutor threadPool = null;
+
+	/**
+	 * Dispatcher thread
+	 */
+	private Thread dispatcher = null;
+
+	/**
+	 * Started flag
+	 */
+	private boolean started = false;
+
+	/**
+	 * Number of queued notifications
+	 */
+	private long queuedCount = 0L;
+
+	/**
+	 * Number of notifications coalesced with a pending one
+	 */
+	private long coalescedCount = 0L;
+
+	/**
+	 * Number of sent notifications
+	 */
+	private long sentCount = 0L;
+
+	/**
+	 * Number of dropped notifications
+	 */
+	private long droppedCount = 0L;
+
     /**
      * The logger
      */
     private Logger logger = Logger.getLogger(this.getClass().getName());
-    
+
     /**
      * Constructor
-     * 
+     *
      * @param imsService IMS service
-     */    
+     */
     public ImdnManager(ImsService imsService) {
     	this.imsService = imsService;
     	this.activated = RcsSettings.getInstance().isImReportsActivated();
-    }    
-    
+    }
+
     /**
-     * Terminate manager
+     * Start manager
      */
-    public void terminate() {
-    	if (logger.isActivated()) {
-    		logger.info("Terminate the IMDN manager");
+    public synchronized void start() {
+    	if (started) {
+    		return;
     	}
-        buffer.close();
+		if (logger.isActivated()) {
+			logger.info("Start the IMDN manager");
+		}
+    	started = true;
+    	threadPool = new ThreadPoolExecutor(MAX_PROCESSING_THREADS, MAX_PROCESSING_THREADS,
+    			60L, TimeUnit.SECONDS, new ArrayBlockingQueue<Runnable>(MAX_QUEUED_BATCHES),
+    			new RejectedExecutionHandler() {
+    				public void rejectedExecution(Runnable r, ThreadPoolExecutor executor) {
+    					// Only the dispatcher submits the batches: it waits for a free slot
+    					if (executor.isShutdown()) {
+    						throw new RejectedExecutionException("IMDN manager is terminated");
+    					}
+    					try {
+    						executor.getQueue().put(r);
+    					} catch (InterruptedException e) {
+    						Thread.currentThread().interrupt();
+    						throw new RejectedExecutionException("IMDN manager is terminated");
+    					}
+    				}
+    			});
+    	dispatcher = new Thread("ImdnDispatcher") {
+    		public void run() {
+    			dispatch();
+    		}
+    	};
+    	dispatcher.start();
     }
-    
+
+    /**
+     * Terminate manager, the pending notifications are dropped
+     */
+    public synchronized void terminate() {
+    	if (!started) {
+    		return;
+    	}
+    	if (logger.isInfoActivated()) {
+    		logger.info("Terminate the IMDN manager: {}", this);
+    	}
+    	started = false;
+    	droppedCount += pendingSize + immediateBatches.size();
+    	pending.clear();
+    	pendingSize = 0;
+    	immediateBatches.clear();
+    	dispatcher.interrupt();
+    	notifyAll();
+    	try {
+    		threadPool.shutdown();
+    	} catch (SecurityException e) {
+    		if (logger.isActivated()) {
+    			logger.error("Could not stop all threads");
+    		}
+    	}
+    }
+
     /**
      * Is IMDN activated
-     * 
+     *
      * @return Boolean
      */
     public boolean isImdnActivated() {
     	return activated;
     }
-    
-    /**
-     * Background processing
-     */
-    public void run() {
-		if (logger.isActivated()) {
-			logger.info("Start background processing");
-		}
-		DeliveryStatus delivery = null; 
-		while((delivery = (DeliveryStatus)buffer.getObject()) != null) {
-			try {
-				// Send SIP MESSAGE
-				sendSipMessageDeliveryStatus(delivery, null); // TODO: add sip.instance
-
-				// Update rich messaging history
-				RichMessaging.getInstance().setChatMessageDeliveryStatus(delivery.getMsgId(), delivery.getStatus(),delivery.getContact());
-			} catch(Exception e) {
-				if (logger.isActivated()) {
-					logger.error("Unexpected exception", e);
-				}
-			}
-		}
-		if (logger.isActivated()) {
-			logger.info("End of background processing");
-		}
-    }
-       
+
 	/**
 	 * Send a message delivery status
-	 * 
+	 *
 	 * @param contact Contact
 	 * @param msgId Message ID
 	 * @param status Delivery status
 	 */
 	public void sendMessageDeliveryStatus(String contact, String msgId, String status) {
-		// Add request in the buffer for background processing
-		DeliveryStatus delivery = new DeliveryStatus(contact, msgId, status);
-		buffer.addObject(delivery);
+		queue(new DeliveryStatus(contact, msgId, status, false));
+	}
+
+	/**
+	 * Send a message delivery status via SIP, even if a chat session is
+	 * established with the contact
+	 *
+	 * @param contact Contact
+	 * @param msgId Message ID
+	 * @param status Delivery status
+	 */
+	public void sendSipMessageDeliveryStatus(String contact, String msgId, String status) {
+		queue(new DeliveryStatus(contact, msgId, status, true));
 	}
 
     /**
-     * Send a message delivery status immediately
-     * 
+     * Send a message delivery status immediately via SIP, without waiting
+     * for the window of the contact. The notification is sent by the
+     * dispatcher, the caller is not blocked.
+     *
      * @param contact Contact
      * @param msgId Message ID
      * @param status Delivery status
+     * @param remoteInstanceId Remote SIP instance
+     */
+    public void sendMessageDeliveryStatusImmediately(String contact, String msgId, String status, String remoteInstanceId) {
+    	Batch batch = new Batch(contact);
+    	batch.remoteInstanceId = remoteInstanceId;
+    	batch.updateHistory = false;
+    	batch.add(new DeliveryStatus(contact, msgId, status, true));
+    	synchronized(this) {
+    		if (!started) {
+    			droppedCount++;
+    			return;
+    		}
+    		queuedCount++;
+    		immediateBatches.add(batch);
+    		notifyAll();
+    	}
+    }
+
+    /**
+     * Queue a delivery status
+     *
+     * @param delivery Delivery status
+     */
+    private synchronized void queue(DeliveryStatus delivery) {
+    	if (!started) {
+    		droppedCount++;
+    		return;
+    	}
+    	queuedCount++;
+
+    	String key = PhoneUtils.extractNumberFromUri(delivery.getContact());
+    	Batch batch = pending.get(key);
+    	if (batch == null) {
+    		batch = new Batch(delivery.getContact());
+    		batch.deadline = System.currentTimeMillis() + BATCH_WINDOW;
+    		pending.put(key, batch);
+    	}
+    	if (batch.add(delivery)) {
+    		pendingSize++;
+    	} else {
+    		coalescedCount++;
+    	}
+    	notifyAll();
+    }
+
+    /**
+     * Dispatch the batches at the end of their window
+     */
+    private void dispatch() {
+		if (logger.isActivated()) {
+			logger.info("Start background processing");
+		}
+    	while (true) {
+    		List<Batch> ready = new ArrayList<Batch>();
+    		synchronized(this) {
+    			try {
+    				while (isDispatcher() && !takeReadyBatches(ready)) {
+    					long delay = getNextDeadline() - System.currentTimeMillis();
+    					if (delay > 0) {
+    						wait(delay);
+    					}
+    				}
+    			} catch (InterruptedException e) {
+    				// Nothing to do
+    			}
+    			if (!isDispatcher()) {
+    				break;
+    			}
+    		}
+    		for(int i=0; i < ready.size(); i++) {
+    			submit(ready.get(i));
+    		}
+    	}
+		if (logger.isActivated()) {
+			logger.info("End of background processing");
+		}
+    }
+
+    /**
+     * Check if the current thread is the dispatcher of the running manager
+     *
+     * @return Boolean
+     */
+    private boolean isDispatcher() {
+    	return started && (dispatcher == Thread.currentThread());
+    }
+
+    /**
+     * Take the immediate batches and the batches whose window is over, or
+     * all the batches when too many notifications are pending
+     *
+     * @param ready List receiving the batches
+     * @return Returns true if at least one batch is ready
+     */
+    private boolean takeReadyBatches(List<Batch> ready) {
+    	ready.addAll(immediateBatches);
+    	immediateBatches.clear();
+    	long now = System.currentTimeMillis();
+    	boolean all = (pendingSize >= MAX_PENDING_SIZE);
+    	for (Iterator<Batch> it = pending.values().iterator(); it.hasNext();) {
+    		Batch batch = it.next();
+    		if (all || (batch.deadline <= now)) {
+    			it.remove();
+    			pendingSize -= batch.statuses.size();
+    			ready.add(batch);
+    		}
+    	}
+    	return !ready.isEmpty();
+    }
+
+    /**
+     * Returns the end of the next window
+     *
+     * @return Time in milliseconds or Long.MAX_VALUE if no batch is pending
+     */
+    private long getNextDeadline() {
+    	if (pending.isEmpty()) {
+    		// Wait until a notification is queued
+    		return Long.MAX_VALUE;
+    	}
+    	long deadline = Long.MAX_VALUE;
+    	for (Iterator<Batch> it = pending.values().iterator(); it.hasNext();) {
+    		deadline = Math.min(deadline, it.next().deadline);
+    	}
+    	return deadline;
+    }
+
+    /**
+     * Submit a batch to the thread pool
+     *
+     * @param batch Batch
+     */
+    private void submit(final Batch batch) {
+    	try {
+    		threadPool.execute(new Runnable() {
+    			public void run() {
+    				send(batch);
+    			}
+    		});
+    	} catch(Exception e) {
+    		if (logger.isActivated()) {
+    			logger.error("Can't submit the delivery notifications for " + batch.contact, e);
+    		}
+    		synchronized(this) {
+    			droppedCount += batch.statuses.size();
+    		}
+    	}
+    }
+
+    /**
+     * Send a batch of notifications
+     *
+     * @param batch Batch
      */
-    public void sendMessageDeliveryStatusImmediately(String contact, String msgId, String status, final String remoteInstanceId) {
-        // Execute request in background
-        final DeliveryStatus delivery = new DeliveryStatus(contact, msgId, status);
-        Thread thread = new Thread(){
-            public void run() {
-                // Send SIP MESSAGE
-                sendSipMessageDeliveryStatus(delivery, remoteInstanceId);
+    private void send(Batch batch) {
+    	ArrayList<DeliveryStatus> sipStatuses = new ArrayList<DeliveryStatus>();
+    	for (Iterator<DeliveryStatus> it = batch.statuses.values().iterator(); it.hasNext();) {
+    		DeliveryStatus delivery = it.next();
+            if (!RcsSettings.getInstance().isImDisplayedNotificationActivated() &&
+            		ImdnDocument.DELIVERY_STATUS_DISPLAYED.equals(delivery.getStatus())) {
+            	// Displayed notifications are not sent
+            	if (batch.updateHistory) {
+            		RichMessaging.getInstance().setChatMessageDeliveryStatus(delivery.getMsgId(), delivery.getStatus(), delivery.getContact());
+            	}
+            	continue;
             }
-        };
-        thread.start();
+
+    		if (delivery.isSipOnly() || !sendMsrpMessageDeliveryStatus(batch.contact, delivery)) {
+    			sipStatuses.add(delivery);
+    		}
+    	}
+    	if (sipStatuses.isEmpty()) {
+    		return;
+    	}
+
+    	sendSipMessageDeliveryStatus(batch.contact, sipStatuses, batch.remoteInstanceId);
+    	if (batch.updateHistory) {
+    		for(int i=0; i < sipStatuses.size(); i++) {
+    			DeliveryStatus delivery = sipStatuses.get(i);
+    			RichMessaging.getInstance().setChatMessageDeliveryStatus(delivery.getMsgId(), delivery.getStatus(), delivery.getContact());
+    		}
+    	}
+    }
+
+    /**
+     * Send a message delivery status in the established chat session with
+     * a contact, the history is updated by the session
+     *
+     * @param contact Contact
+     * @param delivery Delivery status
+     * @return Returns false if no chat session is established with the contact
+     */
+    protected boolean sendMsrpMessageDeliveryStatus(String contact, DeliveryStatus delivery) {
+    	ChatSession session = getEstablishedChatSession(contact);
+    	if (session == null) {
+    		return false;
+    	}
+    	session.sendMsrpMessageDeliveryStatus(delivery.getContact(), delivery.getMsgId(), delivery.getStatus());
+    	incrementSentCount();
+    	return true;
+    }
+
+    /**
+     * Returns an established one-to-one chat session with a contact
+     *
+     * @param contact Contact
+     * @return Chat session or null
+     */
+    private ChatSession getEstablishedChatSession(String contact) {
+    	if (!(imsService instanceof InstantMessagingService)) {
+    		return null;
+    	}
+    	Vector<ChatSession> sessions = ((InstantMessagingService)imsService).getImSessionsWith(contact);
+    	for(int i=0; i < sessions.size(); i++) {
+    		ChatSession session = sessions.get(i);
+    		if (!session.isSessionInterrupted() && (session.getDialogPath() != null) &&
+    				session.getDialogPath().isSessionEstablished()) {
+    			return session;
+    		}
+    	}
+    	return null;
     }
 
 	/**
-	 * Send message delivery status via SIP MESSAGE
+	 * Send message delivery statuses via SIP MESSAGE, the requests share the
+	 * same call ID and authentication
 	 *
-	 * @param deliveryStatus Delivery status
+	 * @param contact Contact
+	 * @param statuses Delivery statuses
 	 * @param remoteInstanceId Remote SIP instance
 	 */
-	private void sendSipMessageDeliveryStatus(DeliveryStatus deliveryStatus, String remoteInstanceId) {
+	protected void sendSipMessageDeliveryStatus(String contact, List<DeliveryStatus> statuses, String remoteInstanceId) {
 		try {
-            if (!RcsSettings.getInstance().isImDisplayedNotificationActivated() && ImdnDocument.DELIVERY_STATUS_DISPLAYED.equals(deliveryStatus.getStatus())) {
-                return;
+		    // Create authentication agent
+       		SessionAuthenticationAgent authenticationAgent = new SessionAuthenticationAgent(imsService.getImsModule());
+
+       		// Create a dialog path
+        	SipDialogPath dialogPath = new SipDialogPath(
+        			imsService.getImsModule().getSipManager().getSipStack(),
+        			imsService.getImsModule().getSipManager().getSipStack().generateCallId(),
+    				1,
+    				contact,
+    				ImsModule.IMS_USER_PROFILE.getPublicUri(),
+    				contact,
+    				imsService.getImsModule().getSipManager().getSipStack().getServiceRoutePath());
+            dialogPath.setRemoteSipInstance(remoteInstanceId);
+
+            for(int i=0; i < statuses.size(); i++) {
+            	DeliveryStatus deliveryStatus = statuses.get(i);
+            	if (i > 0) {
+            		dialogPath.incrementCseq();
+            	}
+            	sendSipMessageDeliveryStatus(deliveryStatus, dialogPath, authenticationAgent);
             }
+        } catch(Exception e) {
+        	if (logger.isActivated()) {
+        		logger.error("Delivery report has failed", e);
+        	}
+        }
+	}
 
-			if (logger.isActivated()) {
-       			logger.debug("Send delivery status " + deliveryStatus.getStatus() + " for message " + deliveryStatus.getMsgId());
+	/**
+	 * Send a message delivery status via SIP MESSAGE
+	 *
+	 * @param deliveryStatus Delivery status
+	 * @param dialogPath Dialog path
+	 * @param authenticationAgent Authentication agent
+	 */
+	private void sendSipMessageDeliveryStatus(DeliveryStatus deliveryStatus, SipDialogPath dialogPath,
+			SessionAuthenticationAgent authenticationAgent) {
+		try {
+			if (logger.isDebugActivated()) {
+       			logger.debug("Send delivery status {} for message {}", deliveryStatus.getStatus(), deliveryStatus.getMsgId());
        		}
 
 	   		// Create CPIM/IDMN document
@@ -167,28 +534,15 @@ public class ImdnManager extends Thread {
 			String to = ChatUtils.ANOMYNOUS_URI;
 			String imdn = ChatUtils.buildDeliveryReport(deliveryStatus.getMsgId(), deliveryStatus.getStatus());
 			String cpim = ChatUtils.buildCpimDeliveryReport(from, to, imdn);
-			
-		    // Create authentication agent 
-       		SessionAuthenticationAgent authenticationAgent = new SessionAuthenticationAgent(imsService.getImsModule());
-       		
-       		// Create a dialog path
-        	SipDialogPath dialogPath = new SipDialogPath(
-        			imsService.getImsModule().getSipManager().getSipStack(),
-        			imsService.getImsModule().getSipManager().getSipStack().generateCallId(),
-    				1,
-    				deliveryStatus.getContact(),
-    				ImsModule.IMS_USER_PROFILE.getPublicUri(),
-    				deliveryStatus.getContact(),
-    				imsService.getImsModule().getSipManager().getSipStack().getServiceRoutePath());        	
-            dialogPath.setRemoteSipInstance(remoteInstanceId);
 
-	        // Create MESSAGE request
+	        // Create MESSAGE request, authorized if a previous request of the batch has been challenged
         	if (logger.isActivated()) {
         		logger.info("Send first MESSAGE");
         	}
 	        SipRequest msg = SipMessageFactory.createMessage(dialogPath,
 	        		FeatureTags.FEATURE_OMA_IM, CpimMessage.MIME_TYPE, cpim);
-	        
+	        authenticationAgent.setProxyAuthorizationHeader(msg);
+
 	        // Send MESSAGE request
 	        SipTransactionContext ctx = imsService.getImsModule().getSipManager().sendSipMessageAndWait(msg);
 
@@ -211,10 +565,10 @@ public class ImdnManager extends Thread {
                 }
     	        msg = SipMessageFactory.createMessage(dialogPath,
     	        		FeatureTags.FEATURE_OMA_IM, CpimMessage.MIME_TYPE, cpim);
-    	        
+
     	        // Set the Authorization header
     	        authenticationAgent.setProxyAuthorizationHeader(msg);
-                
+
                 // Send MESSAGE request
     	        ctx = imsService.getImsModule().getSipManager().sendSipMessageAndWait(msg);
 
@@ -224,11 +578,11 @@ public class ImdnManager extends Thread {
                 	if (logger.isActivated()) {
                 		logger.info("20x OK response received");
                 	}
+                	incrementSentCount();
                 } else {
                     // Error
-                	if (logger.isActivated()) {
-                		logger.info("Delivery report has failed: " + ctx.getStatusCode()
-    	                    + " response received");
+                	if (logger.isInfoActivated()) {
+                		logger.info("Delivery report has failed: {} response received", ctx.getStatusCode());
                 	}
                 }
             } else
@@ -237,11 +591,11 @@ public class ImdnManager extends Thread {
             	if (logger.isActivated()) {
             		logger.info("20x OK response received");
             	}
+            	incrementSentCount();
 	        } else {
 	            // Error responses
-            	if (logger.isActivated()) {
-            		logger.info("Delivery report has failed: " + ctx.getStatusCode()
-	                    + " response received");
+            	if (logger.isInfoActivated()) {
+            		logger.info("Delivery report has failed: {} response received", ctx.getStatusCode());
             	}
 	        }
         } catch(Exception e) {
@@ -250,21 +604,146 @@ public class ImdnManager extends Thread {
         	}
         }
 	}
-	
+
+	/**
+	 * Increment the number of sent notifications
+	 */
+	private synchronized void incrementSentCount() {
+		sentCount++;
+	}
+
+	/**
+	 * Returns the number of queued notifications
+	 *
+	 * @return Count
+	 */
+	public synchronized long getQueuedCount() {
+		return queuedCount;
+	}
+
+	/**
+	 * Returns the number of notifications coalesced with a pending one
+	 *
+	 * @return Count
+	 */
+	public synchronized long getCoalescedCount() {
+		return coalescedCount;
+	}
+
+	/**
+	 * Returns the number of sent notifications
+	 *
+	 * @return Count
+	 */
+	public synchronized long getSentCount() {
+		return sentCount;
+	}
+
+	/**
+	 * Returns the number of dropped notifications
+	 *
+	 * @return Count
+	 */
+	public synchronized long getDroppedCount() {
+		return droppedCount;
+	}
+
+	/**
+	 * Returns the number of pending notifications
+	 *
+	 * @return Count
+	 */
+	public synchronized int getPendingCount() {
+		return pendingSize;
+	}
+
+	/**
+	 * Returns a description of the manager metrics
+	 *
+	 * @return String
+	 */
+	public synchronized String toString() {
+		return "ImdnManager[pending=" + pendingSize + ", queued=" + queuedCount
+				+ ", coalesced=" + coalescedCount + ", sent=" + sentCount
+				+ ", dropped=" + droppedCount + "]";
+	}
+
+	/**
+	 * Notifications to be sent to a contact
+	 */
+	private static class Batch {
+		/**
+		 * Contact
+		 */
+		String contact;
+
+		/**
+		 * Remote SIP instance
+		 */
+		String remoteInstanceId = null;
+
+		/**
+		 * Update the messaging history once sent
+		 */
+		boolean updateHistory = true;
+
+		/**
+		 * End of the window
+		 */
+		long deadline = 0L;
+
+		/**
+		 * Notifications indexed by message ID
+		 */
+		LinkedHashMap<String, DeliveryStatus> statuses = new LinkedHashMap<String, DeliveryStatus>();
+
+		/**
+		 * Constructor
+		 *
+		 * @param contact Contact
+		 */
+		Batch(String contact) {
+			this.contact = contact;
+		}
+
+		/**
+		 * Add a notification, a notification for the same message replaces
+		 * the previous one unless it is a delivered notification following
+		 * a displayed one
+		 *
+		 * @param delivery Delivery status
+		 * @return Returns false if the notification has been coalesced
+		 */
+		boolean add(DeliveryStatus delivery) {
+			DeliveryStatus previous = statuses.get(delivery.getMsgId());
+			if (previous == null) {
+				statuses.put(delivery.getMsgId(), delivery);
+				return true;
+			}
+			if (!(ImdnDocument.DELIVERY_STATUS_DISPLAYED.equals(previous.getStatus()) &&
+					ImdnDocument.DELIVERY_STATUS_DELIVERED.equals(delivery.getStatus()))) {
+				statuses.put(delivery.getMsgId(), delivery);
+			}
+			return false;
+		}
+	}
+
 	/**
 	 * Delivery status
 	 */
-	private static class DeliveryStatus {
+	public static class DeliveryStatus {
 		private String contact;
 		private String msgId;
 		private String status;
-		
-		public DeliveryStatus(String contact, String msgId, String status) {
+		private boolean sipOnly;
+
+		public DeliveryStatus(String contact, String msgId, String status, boolean sipOnly) {
 			this.contact = contact;
 			this.msgId = msgId;
 			this.status = status;
+			this.sipOnly = sipOnly;
 		}
-		
+
 		public String getContact() {
 			return contact;
 		}
@@ -276,5 +755,9 @@ public class ImdnManager extends Thread {
 		public String getStatus() {
 			return status;
 		}
-	}	
+
+		public boolean isSipOnly() {
+			return sipOnly;
+		}
+	}
 }
@@ -17,15 +17,14 @@
  ******************************************************************************/
 package com.orangelabs.rcs.core.ims.service.im.chat.imdn;
 
-import javax.xml.parsers.SAXParser;
-import javax.xml.parsers.SAXParserFactory;
-
 import org.xml.sax.Attributes;
 import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
 import org.xml.sax.SAXParseException;
 import org.xml.sax.helpers.DefaultHandler;
 
+import com.orangelabs.rcs.utils.SaxParserPool;
+import com.orangelabs.rcs.utils.XmlScanner;
 import com.orangelabs.rcs.utils.logger.Logger;
 
 /**
@@ -60,11 +59,79 @@ public class ImdnParser extends DefaultHandler {
      * @throws Exception
      */
     public ImdnParser(InputSource inputSource) throws Exception {
-    	SAXParserFactory factory = SAXParserFactory.newInstance();
-        SAXParser parser = factory.newSAXParser();
-        parser.parse(inputSource, this);
+    	SaxParserPool.parse(inputSource, this);
 	}
 
+    /**
+     * Constructor
+     * 
+     * @param data XML document
+     * @throws Exception
+     */
+    public ImdnParser(byte[] data) throws Exception {
+    	SaxParserPool.parse(data, this);
+	}
+
+    /**
+     * Parse an IMDN document: the usual documents are read by a scanner
+     * and the other ones by the SAX parser
+     * 
+     * @param data XML document
+     * @return IMDN document or null
+     * @throws Exception
+     */
+    public static ImdnDocument parse(byte[] data) throws Exception {
+    	ImdnDocument imdn = scan(data);
+    	if (imdn == null) {
+    		imdn = new ImdnParser(data).getImdnDocument();
+    	}
+    	return imdn;
+    }
+
+    /**
+     * Scan an IMDN document
+     * 
+     * @param data XML document
+     * @return IMDN document or null if the document can't be scanned
+     */
+    private static ImdnDocument scan(byte[] data) {
+    	try {
+	    	XmlScanner scanner = new XmlScanner(data);
+	    	ImdnDocument imdn = null;
+	    	int event;
+	    	while ((event = scanner.next()) != XmlScanner.END_DOCUMENT) {
+	    		if (event == XmlScanner.START_TAG) {
+	    			if (scanner.isName("imdn")) {
+	    				imdn = new ImdnDocument();
+	    			}
+	    		} else
+	    		if (imdn != null) {
+	    			if (scanner.isName("message-id")) {
+	    				imdn.setMsgId(scanner.getText());
+	    			} else
+	    			if (scanner.isName(ImdnDocument.DELIVERY_STATUS_DELIVERED)) {
+	    				imdn.setStatus(ImdnDocument.DELIVERY_STATUS_DELIVERED);
+	    			} else
+	    			if (scanner.isName(ImdnDocument.DELIVERY_STATUS_DISPLAYED)) {
+	    				imdn.setStatus(ImdnDocument.DELIVERY_STATUS_DISPLAYED);
+	    			} else
+	    			if (scanner.isName(ImdnDocument.DELIVERY_STATUS_FAILED)) {
+	    				imdn.setStatus(ImdnDocument.DELIVERY_STATUS_FAILED);
+	    			} else
+	    			if (scanner.isName(ImdnDocument.DELIVERY_STATUS_ERROR)) {
+	    				imdn.setStatus(ImdnDocument.DELIVERY_STATUS_ERROR);
+	    			} else
+	    			if (scanner.isName(ImdnDocument.DELIVERY_STATUS_FORBIDDEN)) {
+	    				imdn.setStatus(ImdnDocument.DELIVERY_STATUS_FORBIDDEN);
+	    			}
+	    		}
+	    	}
+	    	return imdn;
+    	} catch(Exception e) {
+    		return null;
+    	}
+    }
+
 	public void startDocument() {
 		if (logger.isActivated()) {
 			logger.debug("Start document");
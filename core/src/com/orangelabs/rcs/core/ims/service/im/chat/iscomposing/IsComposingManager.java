@@ -20,28 +20,45 @@ package com.orangelabs.rcs.core.ims.service.im.chat.iscomposing;
 
 import com.orangelabs.rcs.core.ims.service.im.chat.ChatSession;
 import com.orangelabs.rcs.core.ims.service.im.chat.ChatSessionListener;
+import com.orangelabs.rcs.utils.TimerWheel;
+import com.orangelabs.rcs.utils.TokenBucket;
 import com.orangelabs.rcs.utils.logger.Logger;
 
-import org.xml.sax.InputSource;
-
-import java.io.ByteArrayInputStream;
-import java.util.Timer;
-import java.util.TimerTask;
+import java.util.Hashtable;
 
 /**
  * Is Composing manager which manages "is composing" events as per RFC3994. It handles the
  * status (idle or active) of contact according to received messages and timers.
+ * <br>The expiration timers of all the chat sessions share the same timer wheel, and the
+ * outgoing events are throttled so that repeated "active" states are not sent before the
+ * refresh period.
  */
 public class IsComposingManager {
     /**
-     * Timer for expiration timeout
+     * Timer wheel shared by the expiration timers of all the sessions
      */
-    private Timer timer = new Timer();
-    
+    private static final TimerWheel expirations = new TimerWheel("IsComposingTimer", 500, 256);
+
+    /**
+     * Period in milliseconds during which an "active" state is not sent again, shorter than
+     * the refresh time announced in the event
+     */
+    private static final long ACTIVE_REFRESH_PERIOD = 50000;
+
     /**
-     * Expiration timer task
+     * Max number of "active" states sent in a burst
      */
-    private ExpirationTimer timerTask = null;
+    private static final int MAX_ACTIVE_BURST = 3;
+
+    /**
+     * Max number of "active" states sent per second after a burst
+     */
+    private static final int MAX_ACTIVE_PER_SECOND = 1;
+
+    /**
+     * Expiration timers indexed by contact
+     */
+    private Hashtable<String, ExpirationTimer> timers = new Hashtable<String, ExpirationTimer>();
 
     /**
      * Is-composing timeout (in seconds)
@@ -52,6 +69,26 @@ public class IsComposingManager {
      * IM session
      */
     private ChatSession session;
+
+    /**
+     * Rate limiter of the outgoing "active" states
+     */
+    private TokenBucket activeRateLimiter = new TokenBucket(MAX_ACTIVE_BURST, MAX_ACTIVE_PER_SECOND);
+
+    /**
+     * Last outgoing state
+     */
+    private boolean lastSentActive = false;
+
+    /**
+     * Time of the last outgoing "active" state
+     */
+    private long lastSentActiveTime = 0L;
+
+    /**
+     * Number of outgoing events not sent
+     */
+    private long throttledCount = 0L;
     
     /**
      * The logger
@@ -76,14 +113,10 @@ public class IsComposingManager {
     public void receiveIsComposingEvent(String contact, byte[] event) {
     	try {
         	// Parse received event
-			InputSource input = new InputSource(new ByteArrayInputStream(event));
-			IsComposingParser parser = new IsComposingParser(input);
-			IsComposingInfo isComposingInfo = parser.getIsComposingInfo();
+			IsComposingInfo isComposingInfo = IsComposingParser.parse(event);
 			if ((isComposingInfo != null) && isComposingInfo.isStateActive()) {
 				// Send status message to "active"
-    	    	for(int j=0; j < session.getListeners().size(); j++) {
-    	    		((ChatSessionListener)session.getListeners().get(j)).handleIsComposingEvent(contact, true);
-				}
+				notifyIsComposingEvent(contact, true);
 				
 				// Start the expiration timer
 				if (isComposingInfo.getRefreshTime() != 0) {
@@ -93,9 +126,7 @@ public class IsComposingManager {
 				}
 			} else {
 				// Send status message to "idle"
-    	    	for(int j=0; j < session.getListeners().size(); j++) {
-    	    		((ChatSessionListener)session.getListeners().get(j)).handleIsComposingEvent(contact, false);
-				}
+				notifyIsComposingEvent(contact, false);
 
 				// Stop the expiration timer
 				stopExpirationTimer(contact);
@@ -116,13 +147,23 @@ public class IsComposingManager {
 	public void receiveIsComposingEvent(String contact, boolean state) {
     	// We just received an instant message, so if composing info was active, it must
 		// be changed to idle. If it was already idle, no need to notify listener again
+		notifyIsComposingEvent(contact, state);
+				
+		// Stop the expiration timer
+		stopExpirationTimer(contact);
+    }
+
+	/**
+	 * Notify the listeners of the session
+	 * 
+	 * @param contact Contact
+	 * @param state State
+	 */
+	protected void notifyIsComposingEvent(String contact, boolean state) {
     	for(int j=0; j < session.getListeners().size(); j++) {
     		((ChatSessionListener)session.getListeners().get(j)).handleIsComposingEvent(contact, state);
 		}
-				
-		// Stop the expiration timer
-		stopExpirationTimer(contact);
-    }
+	}
    
     /**
      * Start the expiration timer for a given contact
@@ -130,20 +171,19 @@ public class IsComposingManager {
      * @param duration Timer period
      * @param contact Contact
      */
-    public synchronized void startExpirationTimer(long duration, String contact) {
-    	// Remove old timer
-		if (timerTask != null) {
-			timerTask.cancel();
-			timerTask = null;
-		}
-
-    	// Start timer
+    public void startExpirationTimer(long duration, String contact) {
+    	// Start timer, an existing timer of the contact is rescheduled
     	if (logger.isActivated()) {
     		logger.debug("Start is-composing timer for " + duration +  "s");
     	}
-    	timerTask = new ExpirationTimer(contact);
-    	timer = new Timer();
-    	timer.schedule(timerTask, duration*1000);
+    	synchronized(timers) {
+    		ExpirationTimer timer = timers.get(contact);
+    		if (timer == null) {
+    			timer = new ExpirationTimer(contact);
+    			timers.put(contact, timer);
+    		}
+    		expirations.schedule(timer, duration*1000);
+    	}
     }
 
     /**
@@ -151,23 +191,81 @@ public class IsComposingManager {
      * 
      * @param contact Contact
      */
-    public synchronized void stopExpirationTimer(String contact) {
+    public void stopExpirationTimer(String contact) {
     	// Stop timer
     	if (logger.isActivated()) {
     		logger.debug("Stop is-composing timer");
     	}
     	
-        // TODO : stop timer for a given contact
-		if (timerTask != null) {
-			timerTask.cancel();
-			timerTask = null;
-		}
+    	synchronized(timers) {
+    		ExpirationTimer timer = timers.remove(contact);
+    		if (timer != null) {
+    			expirations.cancel(timer);
+    		}
+    	}
+    }
+
+    /**
+     * Returns the number of running expiration timers
+     * 
+     * @return Number of timers
+     */
+    public int getExpirationTimerCount() {
+    	return timers.size();
+    }
+
+    /**
+     * Check if an outgoing is-composing state has to be sent. An "active" state is not sent
+     * if it has already been sent during the refresh period or if too many states have been
+     * sent, an "idle" state is sent only after an "active" state.
+     * 
+     * @param status Status
+     * @return Returns true if the state has to be sent
+     */
+    public synchronized boolean isOutgoingStateAllowed(boolean status) {
+    	long now = System.currentTimeMillis();
+    	if (status) {
+    		if ((lastSentActive && (now - lastSentActiveTime < ACTIVE_REFRESH_PERIOD)) ||
+    				!activeRateLimiter.tryAcquire()) {
+    			throttledCount++;
+    			return false;
+    		}
+    		lastSentActive = true;
+    		lastSentActiveTime = now;
+    		return true;
+    	} else {
+    		if (!lastSentActive) {
+    			throttledCount++;
+    			return false;
+    		}
+    		lastSentActive = false;
+    		return true;
+    	}
+    }
+
+    /**
+     * Reset the outgoing state when a message is sent: the remote considers
+     * the composing state as idle, so the next "active" state is sent even
+     * during the refresh period and no "idle" state is sent before it. A
+     * received message does not change what the remote knows of our state.
+     */
+    public synchronized void resetOutgoingState() {
+    	lastSentActive = false;
+    }
+
+    /**
+     * Returns the number of outgoing states not sent
+     * 
+     * @return Count
+     */
+    public synchronized long getThrottledCount() {
+    	return throttledCount;
     }
     
     /**
      * Internal expiration timer
      */
-    private class ExpirationTimer extends TimerTask {
+    private class ExpirationTimer extends TimerWheel.Timeout {
     	
     	private String contact;
     	
@@ -175,15 +273,21 @@ public class IsComposingManager {
     		this.contact = contact;
     	}
     	
-        public void run() {
+        public void expire() {
+        	synchronized(timers) {
+        		if ((timers.get(contact) != this) || expirations.isScheduled(this)) {
+        			// Timer stopped or refreshed in the meantime
+        			return;
+        		}
+        		timers.remove(contact);
+        	}
+
         	if (logger.isActivated()){
         		logger.debug("Is-composing timer has expired: " + contact + " is now considered idle");
         	}
         	
 			// Send status message to "idle"
-	    	for(int j=0; j < session.getListeners().size(); j++) {
-	    		((ChatSessionListener)session.getListeners().get(j)).handleIsComposingEvent(contact, false);
-			}
+			notifyIsComposingEvent(contact, false);
         }
     }    
 }
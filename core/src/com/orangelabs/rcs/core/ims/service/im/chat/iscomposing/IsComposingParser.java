@@ -18,15 +18,14 @@
 
 package com.orangelabs.rcs.core.ims.service.im.chat.iscomposing;
 
-import javax.xml.parsers.SAXParser;
-import javax.xml.parsers.SAXParserFactory;
-
 import org.xml.sax.Attributes;
 import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
 import org.xml.sax.SAXParseException;
 import org.xml.sax.helpers.DefaultHandler;
 
+import com.orangelabs.rcs.utils.SaxParserPool;
+import com.orangelabs.rcs.utils.XmlScanner;
 import com.orangelabs.rcs.utils.logger.Logger;
 
 /**
@@ -59,11 +58,73 @@ public class IsComposingParser extends DefaultHandler {
      * @throws Exception
      */
     public IsComposingParser(InputSource inputSource) throws Exception {
-    	SAXParserFactory factory = SAXParserFactory.newInstance();
-        SAXParser parser = factory.newSAXParser();
-        parser.parse(inputSource, this);
+    	SaxParserPool.parse(inputSource, this);
 	}
 
+    /**
+     * Constructor
+     * 
+     * @param data XML document
+     * @throws Exception
+     */
+    public IsComposingParser(byte[] data) throws Exception {
+    	SaxParserPool.parse(data, this);
+	}
+
+    /**
+     * Parse an is-composing document: the usual documents are read by a
+     * scanner and the other ones by the SAX parser
+     * 
+     * @param data XML document
+     * @return Is-composing info or null
+     * @throws Exception
+     */
+    public static IsComposingInfo parse(byte[] data) throws Exception {
+    	IsComposingInfo info = scan(data);
+    	if (info == null) {
+    		info = new IsComposingParser(data).getIsComposingInfo();
+    	}
+    	return info;
+    }
+
+    /**
+     * Scan an is-composing document
+     * 
+     * @param data XML document
+     * @return Is-composing info or null if the document can't be scanned
+     */
+    private static IsComposingInfo scan(byte[] data) {
+    	try {
+	    	XmlScanner scanner = new XmlScanner(data);
+	    	IsComposingInfo info = null;
+	    	int event;
+	    	while ((event = scanner.next()) != XmlScanner.END_DOCUMENT) {
+	    		if (event == XmlScanner.START_TAG) {
+	    			if (scanner.isName("isComposing")) {
+	    				info = new IsComposingInfo();
+	    			}
+	    		} else
+	    		if (info != null) {
+	    			if (scanner.isName("state")) {
+	    				info.setState(scanner.getText());
+	    			} else
+	    			if (scanner.isName("lastactive")) {
+	    				info.setLastActiveDate(scanner.getText());
+	    			} else
+	    			if (scanner.isName("contenttype")) {
+	    				info.setContentType(scanner.getText());
+	    			} else
+	    			if (scanner.isName("refresh")) {
+	    				info.setRefreshTime(scanner.getText());
+	    			}
+	    		}
+	    	}
+	    	return info;
+    	} catch(Exception e) {
+    		return null;
+    	}
+    }
+
 	public void startDocument() {
 		if (logger.isActivated()) {
 			logger.debug("Start document");
@@ -17,13 +17,11 @@
  ******************************************************************************/
 package com.orangelabs.rcs.core.ims.service.im.chat.resourcelist;
 
-import javax.xml.parsers.SAXParser;
-import javax.xml.parsers.SAXParserFactory;
-
 import org.xml.sax.Attributes;
 import org.xml.sax.InputSource;
 import org.xml.sax.helpers.DefaultHandler;
 
+import com.orangelabs.rcs.utils.SaxParserPool;
 import com.orangelabs.rcs.utils.logger.Logger;
 
 /**
@@ -60,9 +58,7 @@ public class ResourceListParser extends DefaultHandler {
      * @throws Exception
      */
     public ResourceListParser(InputSource inputSource) throws Exception {
-    	SAXParserFactory factory = SAXParserFactory.newInstance();
-        SAXParser parser = factory.newSAXParser();
-        parser.parse(inputSource, this);
+    	SaxParserPool.parse(inputSource, this);
 	}
 
 	public ResourceListDocument getResourceList() {
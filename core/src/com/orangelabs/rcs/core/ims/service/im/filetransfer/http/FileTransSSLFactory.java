@@ -1,14 +1,11 @@
 package com.orangelabs.rcs.core.ims.service.im.filetransfer.http;
 
-import java.security.KeyManagementException;
-import java.security.NoSuchAlgorithmException;
-import java.security.SecureRandom;
-import java.security.cert.CertificateException;
-import java.security.cert.X509Certificate;
+import java.io.IOException;
 
 import javax.net.ssl.SSLContext;
-import javax.net.ssl.TrustManager;
-import javax.net.ssl.X509TrustManager;
+import javax.net.ssl.SSLSocketFactory;
+
+import com.orangelabs.rcs.core.ims.security.cert.TlsContextProvider;
 
 /**
  * SSL Factory created for file tranfer
@@ -16,55 +13,34 @@ import javax.net.ssl.X509TrustManager;
  * @author hhff3235
  */
 public class FileTransSSLFactory {
-
-    static private SSLContext sslcontext = null;
     
-    
-    static
+    /**
+     * Get the shared SSL context with a trust all manager
+     *
+     * @return SSLContext or null if fails
+     */
+    static public SSLContext getFileTransferSSLContext()
     {
     	try {
-    		sslcontext = SSLContext.getInstance("TLS");
-		} catch (NoSuchAlgorithmException e) {
-			sslcontext = null;
-		}
+    		return TlsContextProvider.getInstance().getContext(TlsContextProvider.TRUST_ALL);
+    	} catch (IOException e) {
+    		return null;
+    	}
     }
     
     /**
-     * Get a SSL context generated with a trust all manager
+     * Get the socket factory of the shared SSL context with a trust all manager,
+     * the TLS sessions are resumed between the connections
      *
-     * @return SSLContext
-     * @return XML result or null if fails
+     * @return SSLSocketFactory or null if fails
      */
-    static public SSLContext getFileTransferSSLContext()
+    static public SSLSocketFactory getFileTransferSocketFactory()
     {
     	try {
-			sslcontext.init(null, new TrustManager[]{ new AllTrustManager()}, new SecureRandom());
-		} catch (KeyManagementException e) {
-			return null;
-		} catch (NullPointerException e) {
-			return null;
-		}
-	
-		return sslcontext;
-    }
-    
-    public static class AllTrustManager implements X509TrustManager {
-
-        @Override
-        public void checkClientTrusted(X509Certificate[] chain, String authType)
-                throws CertificateException {
-        }
-
-        @Override
-        public void checkServerTrusted(X509Certificate[] chain, String authType)
-                throws CertificateException {
-        }
-
-        @Override
-        public X509Certificate[] getAcceptedIssuers() {
-            return new X509Certificate[0];
-        }
-
+    		return TlsContextProvider.getInstance().getSocketFactory(TlsContextProvider.TRUST_ALL);
+    	} catch (IOException e) {
+    		return null;
+    	}
     }
     
 }
@@ -21,9 +21,6 @@ package com.orangelabs.rcs.core.ims.service.im.filetransfer.http;
 import java.io.UnsupportedEncodingException;
 import java.net.URLDecoder;
 
-import javax.xml.parsers.SAXParser;
-import javax.xml.parsers.SAXParserFactory;
-
 import org.xml.sax.Attributes;
 import org.xml.sax.InputSource;
 import org.xml.sax.helpers.DefaultHandler;
@@ -31,6 +28,7 @@ import org.xml.sax.helpers.DefaultHandler;
 import android.util.TimeFormatException;
 
 import com.orangelabs.rcs.utils.DateUtils;
+import com.orangelabs.rcs.utils.SaxParserPool;
 import com.orangelabs.rcs.utils.logger.Logger;
 
 /**
@@ -83,9 +81,7 @@ public class FileTransferHttpInfoParser extends DefaultHandler {
      * @throws Exception
      */
     public FileTransferHttpInfoParser(InputSource inputSource) throws Exception {
-    	SAXParserFactory factory = SAXParserFactory.newInstance();
-        SAXParser parser = factory.newSAXParser();
-        parser.parse(inputSource, this);
+    	SaxParserPool.parse(inputSource, this);
 	}
 
     /**
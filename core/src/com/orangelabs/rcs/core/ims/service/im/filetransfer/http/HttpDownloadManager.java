@@ -13,6 +13,9 @@ import org.apache.http.client.methods.HttpGet;
 
 import com.orangelabs.rcs.core.content.MmContent;
 import com.orangelabs.rcs.core.ims.network.sip.SipUtils;
+import com.orangelabs.rcs.platform.network.HttpClientPool;
+import com.orangelabs.rcs.provider.fthttp.FtHttpResumeDaoImpl;
+import com.orangelabs.rcs.utils.CloseableUtils;
 import com.orangelabs.rcs.utils.logger.Logger;
 
 /**
@@ -58,6 +61,16 @@ public class HttpDownloadManager extends HttpTransferManager {
 	 */
 	private int retryCount = 0;
 
+	/**
+	 * Downloader of the file segments
+	 */
+	private HttpRangeDownloader rangeDownloader = null;
+
+	/**
+	 * Segments of an interrupted download
+	 */
+	private String segments = null;
+
 	/**
 	 * The logger
 	 */
@@ -112,12 +125,25 @@ public class HttpDownloadManager extends HttpTransferManager {
 		return localUrl;
 	}
 
+	/**
+	 * Set the segments of an interrupted download
+	 * 
+	 * @param segments
+	 *            Segments saved in the FT HTTP table
+	 */
+	public void setSegments(String segments) {
+		this.segments = segments;
+	}
+
 	/**
 	 * Download file
 	 * 
 	 * @return Returns true if successful. Data are saved during the transfer in the content object.
 	 */
 	public boolean downloadFile() {
+		if (content.getSize() > 0) {
+			return downloadSegments();
+		}
 		try {
 			if (logger.isActivated()) {
 				logger.debug("Download file " + content.getUrl());
@@ -187,12 +213,14 @@ public class HttpDownloadManager extends HttpTransferManager {
 			} else if (statusCode == 206) {
 				calclength = Long.valueOf(file.length()).intValue();
 			} else {
+				HttpClientPool.consume(response);
 				return false;
 			}
         } catch (Exception e) {
                 if (logger.isActivated()) {
                     logger.error("Download file exception", e);
                 }
+                request.abort();
                 return false;
         }
 
@@ -207,10 +235,15 @@ public class HttpDownloadManager extends HttpTransferManager {
 				getListener().httpTransferProgress(calclength, content.getSize());
 				streamForFile.write(buffer, 0, num);
 			}
+			if (isCancelled() || isPaused()) {
+				// Drop the connection rather than reading the rest of the file
+				request.abort();
+			}
         } catch (Exception e) {
             if (logger.isActivated()) {
                 logger.error("Download file exception. Set in paused", e);
             }
+            request.abort();
             pauseTransfer();
             return false;
         }
@@ -311,17 +344,20 @@ public class HttpDownloadManager extends HttpTransferManager {
 				bOutputStream.close();
 
 				if (isCancelled()) {
+					request.abort();
 					return null;
 				} else {
 					return bOutputStream;
 				}
 			} else {
+				HttpClientPool.consume(response);
 				return null;
 			}
 		} catch (Exception e) {
 			if (logger.isActivated()) {
 				logger.error("Download thumbnail exception", e);
 			}
+			request.abort();
 			return null;
 		}
 	}
@@ -331,6 +367,10 @@ public class HttpDownloadManager extends HttpTransferManager {
 	 * @return True if successful
 	 */
 	public boolean resumeDownload() {
+		if (content.getSize() > 0) {
+			resetParamForResume();
+			return downloadSegments();
+		}
 		if (streamForFile == null) {
 			streamForFile = openStremForFile(file);
 			if (streamForFile == null)
@@ -381,4 +421,78 @@ public class HttpDownloadManager extends HttpTransferManager {
 			return false;
 		}
 	}
+
+	/**
+	 * Download the file with concurrent range requests, or the remaining segments of an
+	 * interrupted download
+	 * 
+	 * @return True if successful
+	 */
+	private boolean downloadSegments() {
+		// The segments are written at their position in the file
+		CloseableUtils.close(streamForFile);
+		streamForFile = null;
+
+		if (rangeDownloader == null) {
+			rangeDownloader = new HttpRangeDownloader(content.getUrl(), file, content.getSize(),
+					SipUtils.userAgentString(), new HttpRangeDownloader.Listener() {
+						public boolean isCancelled() {
+							return HttpDownloadManager.this.isCancelled() || isPaused();
+						}
+
+						public void onProgress(long currentSize, long totalSize) {
+							getListener().httpTransferProgress(currentSize, totalSize);
+						}
+
+						public void onSegmentsUpdated(String value) {
+							segments = value;
+							if (FtHttpResumeDaoImpl.getInstance() != null) {
+								FtHttpResumeDaoImpl.getInstance().updateSegments(content.getUrl(), value);
+							}
+						}
+					});
+			if (segments != null) {
+				rangeDownloader.setSegments(segments);
+			} else
+			if ((file.length() > 0) && (file.length() < content.getSize())) {
+				// Data received by a previous download with a single request
+				rangeDownloader.setSegments("0-" + (content.getSize() - 1) + "-" + file.length());
+			}
+		}
+
+		if (logger.isActivated()) {
+			logger.debug("Download file " + content.getUrl() + " from segments " + rangeDownloader.getSegments());
+		}
+		while (!rangeDownloader.download()) {
+			if (isCancelled()) {
+				if (logger.isActivated()) {
+					logger.debug("Download file cancelled");
+				}
+				file.delete();
+				return false;
+			}
+			if (isPaused()) {
+				if (logger.isActivated()) {
+					logger.debug("Download file paused");
+				}
+				return false;
+			}
+			if (retryCount >= RETRY_MAX) {
+				if (rangeDownloader.getDownloadedSize() > 0) {
+					// The received segments are kept for a resume
+					if (logger.isActivated()) {
+						logger.debug("Failed to download file. Set in paused");
+					}
+					pauseTransfer();
+				} else {
+					if (logger.isActivated()) {
+						logger.debug("Failed to download file");
+					}
+				}
+				return false;
+			}
+			retryCount++;
+		}
+		return true;
+	}
 }
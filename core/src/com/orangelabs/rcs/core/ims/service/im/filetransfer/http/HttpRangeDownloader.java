@@ -0,0 +1,563 @@
+/*******************************************************************************
+ * Software Name : RCS IMS Stack
+ *
+ * Copyright (C) 2010 France Telecom S.A.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.orangelabs.rcs.core.ims.service.im.filetransfer.http;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+
+import javax.net.ssl.HttpsURLConnection;
+import javax.net.ssl.SSLSocketFactory;
+
+import com.orangelabs.rcs.utils.logger.Logger;
+
+/**
+ * Download of a file with concurrent range requests
+ * <br>The file is split into segments downloaded in parallel and written at
+ * their position in a file allocated to its final size. The progress of each
+ * segment is reported as a string (see {@link #getSegments()}) so that an
+ * interrupted download can be resumed where each segment stopped. If the
+ * server does not support range requests, or answers with another range than
+ * the requested one, the file is downloaded with a single request.
+ */
+public class HttpRangeDownloader {
+	/**
+	 * Default max number of segments
+	 */
+	public static final int DEFAULT_MAX_SEGMENTS = 4;
+
+	/**
+	 * Min size of a segment
+	 */
+	public static final long MIN_SEGMENT_SIZE = 256 * 1024;
+
+	/**
+	 * Size of the read buffer of a segment
+	 */
+	private static final int BUFFER_SIZE = 32 * 1024;
+
+	/**
+	 * Min delay in milliseconds between two progress notifications
+	 */
+	private static final long PROGRESS_PERIOD = 250;
+
+	/**
+	 * Min delay in milliseconds between two saves of the segments
+	 */
+	private static final long SAVE_PERIOD = 1000;
+
+	/**
+	 * Connection timeout in milliseconds
+	 */
+	private static final int TIMEOUT = 10000;
+
+	/**
+	 * Download listener
+	 */
+	public interface Listener {
+		/**
+		 * Is the download cancelled or paused
+		 *
+		 * @return Boolean
+		 */
+		public boolean isCancelled();
+
+		/**
+		 * Download progress
+		 *
+		 * @param currentSize Number of bytes downloaded
+		 * @param totalSize Size of the file
+		 */
+		public void onProgress(long currentSize, long totalSize);
+
+		/**
+		 * Segments to be saved for a later resume
+		 *
+		 * @param segments Segments
+		 */
+		public void onSegmentsUpdated(String segments);
+	}
+
+	/**
+	 * Segment of the file
+	 */
+	private static class Segment {
+		/**
+		 * First byte
+		 */
+		final long start;
+
+		/**
+		 * Last byte
+		 */
+		final long end;
+
+		/**
+		 * Next byte to be downloaded
+		 */
+		long position;
+
+		Segment(long start, long end, long position) {
+			this.start = start;
+			this.end = end;
+			this.position = position;
+		}
+
+		boolean isComplete() {
+			return position > end;
+		}
+	}
+
+	/**
+	 * URL of the file
+	 */
+	private String url;
+
+	/**
+	 * File
+	 */
+	private File file;
+
+	/**
+	 * Size of the file
+	 */
+	private long size;
+
+	/**
+	 * User agent
+	 */
+	private String userAgent;
+
+	/**
+	 * Listener
+	 */
+	private Listener listener;
+
+	/**
+	 * Max number of segments
+	 */
+	private int maxSegments = DEFAULT_MAX_SEGMENTS;
+
+	/**
+	 * Segments
+	 */
+	private ArrayList<Segment> segments = null;
+
+	/**
+	 * Server does not support the range requests
+	 */
+	private boolean rangeNotSupported = false;
+
+	/**
+	 * Time of the last progress notification
+	 */
+	private long lastProgress = 0;
+
+	/**
+	 * Time of the last save of the segments
+	 */
+	private long lastSave = 0;
+
+	/**
+	 * The logger
+	 */
+	private static final Logger logger = Logger.getLogger(HttpRangeDownloader.class.getSimpleName());
+
+	/**
+	 * Constructor
+	 *
+	 * @param url URL of the file
+	 * @param file File to be written
+	 * @param size Size of the file
+	 * @param userAgent User agent or null
+	 * @param listener Listener
+	 */
+	public HttpRangeDownloader(String url, File file, long size, String userAgent, Listener listener) {
+		this.url = url;
+		this.file = file;
+		this.size = size;
+		this.userAgent = userAgent;
+		this.listener = listener;
+	}
+
+	/**
+	 * Set the max number of segments of a new download
+	 *
+	 * @param maxSegments Max number of segments
+	 */
+	public void setMaxSegments(int maxSegments) {
+		this.maxSegments = Math.max(1, maxSegments);
+	}
+
+	/**
+	 * Restore the segments of an interrupted download
+	 *
+	 * @param value Segments returned by {@link #getSegments()}, ignored if invalid
+	 */
+	public synchronized void setSegments(String value) {
+		segments = parseSegments(value, size);
+	}
+
+	/**
+	 * Returns the segments, formatted as "start-end-position" items separated by ";"
+	 *
+	 * @return Segments or null if the download has not started
+	 */
+	public synchronized String getSegments() {
+		if (segments == null) {
+			return null;
+		}
+		StringBuilder result = new StringBuilder();
+		for(int i=0; i < segments.size(); i++) {
+			Segment segment = segments.get(i);
+			if (i > 0) {
+				result.append(';');
+			}
+			result.append(segment.start).append('-').append(segment.end).append('-').append(segment.position);
+		}
+		return result.toString();
+	}
+
+	/**
+	 * Returns the number of downloaded bytes
+	 *
+	 * @return Size
+	 */
+	public synchronized long getDownloadedSize() {
+		if (segments == null) {
+			return 0;
+		}
+		long downloaded = 0;
+		for(int i=0; i < segments.size(); i++) {
+			Segment segment = segments.get(i);
+			downloaded += segment.position - segment.start;
+		}
+		return downloaded;
+	}
+
+	/**
+	 * Download the file or the remaining segments
+	 *
+	 * @return Returns true if the file is complete
+	 */
+	public boolean download() {
+		synchronized(this) {
+			if (segments == null) {
+				segments = createSegments(size, maxSegments);
+			}
+		}
+
+		RandomAccessFile raf = null;
+		try {
+			raf = new RandomAccessFile(file, "rw");
+			if (raf.length() != size) {
+				raf.setLength(size);
+			}
+			FileChannel channel = raf.getChannel();
+
+			boolean complete = downloadSegments(channel);
+			if (!complete && rangeNotSupported && !listener.isCancelled()) {
+				// Restart with a single request
+				if (logger.isActivated()) {
+					logger.debug("Range requests not supported, download " + url + " with one request");
+				}
+				synchronized(this) {
+					segments = createSegments(size, 1);
+				}
+				complete = downloadSegments(channel);
+			}
+			return complete;
+		} catch(IOException e) {
+			if (logger.isActivated()) {
+				logger.error("Download of " + url + " has failed", e);
+			}
+			return false;
+		} finally {
+			if (raf != null) {
+				try {
+					raf.close();
+				} catch(IOException e) {
+					// Nothing to do
+				}
+			}
+			listener.onSegmentsUpdated(getSegments());
+		}
+	}
+
+	/**
+	 * Download the incomplete segments in parallel
+	 *
+	 * @param channel File channel
+	 * @return Returns true if all the segments are complete
+	 */
+	private boolean downloadSegments(final FileChannel channel) {
+		ArrayList<Thread> threads = new ArrayList<Thread>();
+		final boolean single;
+		synchronized(this) {
+			single = (segments.size() == 1);
+			for(int i=0; i < segments.size(); i++) {
+				final Segment segment = segments.get(i);
+				if (segment.isComplete()) {
+					continue;
+				}
+				Thread thread = new Thread("FtHttpSegment") {
+					public void run() {
+						try {
+							downloadSegment(segment, channel, single);
+						} catch(IOException e) {
+							if (logger.isActivated()) {
+								logger.warn("Download of segment " + segment.start + "-" + segment.end
+										+ " has failed: " + e.getMessage());
+							}
+						}
+					}
+				};
+				threads.add(thread);
+				thread.start();
+			}
+		}
+
+		for(int i=0; i < threads.size(); i++) {
+			try {
+				threads.get(i).join();
+			} catch(InterruptedException e) {
+				// Nothing to do
+			}
+		}
+
+		synchronized(this) {
+			for(int i=0; i < segments.size(); i++) {
+				if (!segments.get(i).isComplete()) {
+					return false;
+				}
+			}
+		}
+		listener.onProgress(size, size);
+		return true;
+	}
+
+	/**
+	 * Download a segment
+	 *
+	 * @param segment Segment
+	 * @param channel File channel
+	 * @param single Single segment download
+	 * @throws IOException
+	 */
+	private void downloadSegment(Segment segment, FileChannel channel, boolean single) throws IOException {
+		long position;
+		synchronized(this) {
+			position = segment.position;
+		}
+
+		HttpURLConnection connection = openConnection();
+		InputStream input = null;
+		try {
+			boolean whole = single && (position == 0);
+			if (!whole) {
+				connection.setRequestProperty("Range", "bytes=" + position + "-" + segment.end);
+			}
+			int code = connection.getResponseCode();
+			if ((code == 200) && !whole) {
+				if (!single) {
+					rangeNotSupported = true;
+					throw new IOException("Range request not supported");
+				}
+
+				// The whole file is sent again
+				position = 0;
+				updateSegment(segment, position);
+			} else
+			if (code == 206) {
+				String range = connection.getHeaderField("Content-Range");
+				if (!isContentRangeValid(range, position, segment.end, size)) {
+					// The body is not the requested part of the file
+					rangeNotSupported = true;
+					throw new IOException("Unexpected Content-Range " + range);
+				}
+			} else
+			if (code != 200) {
+				throw new IOException("Received " + code + " from server");
+			}
+
+			input = connection.getInputStream();
+			ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+			byte[] data = buffer.array();
+			int num;
+			while ((position <= segment.end) && !listener.isCancelled()) {
+				num = input.read(data, 0, (int)Math.min(data.length, segment.end - position + 1));
+				if (num == -1) {
+					break;
+				}
+				buffer.clear();
+				buffer.limit(num);
+				while (buffer.hasRemaining()) {
+					position += channel.write(buffer, position);
+				}
+				updateSegment(segment, position);
+			}
+			if ((position <= segment.end) && !listener.isCancelled()) {
+				throw new IOException("Connection closed before the end of the segment");
+			}
+		} finally {
+			// Only the response is closed: when read to its end, the connection
+			// is kept alive for the next segment, else the stream closes it
+			HttpTransferManager.closeResponse(connection, input);
+		}
+	}
+
+	/**
+	 * Update the position of a segment and notify the listener at a bounded frequency
+	 *
+	 * @param segment Segment
+	 * @param position New position
+	 */
+	private void updateSegment(Segment segment, long position) {
+		long now = System.currentTimeMillis();
+		boolean progress = false;
+		String save = null;
+		synchronized(this) {
+			segment.position = position;
+			if (now - lastProgress >= PROGRESS_PERIOD) {
+				lastProgress = now;
+				progress = true;
+			}
+			if (now - lastSave >= SAVE_PERIOD) {
+				lastSave = now;
+				save = getSegments();
+			}
+		}
+		if (progress) {
+			listener.onProgress(getDownloadedSize(), size);
+		}
+		if (save != null) {
+			listener.onSegmentsUpdated(save);
+		}
+	}
+
+	/**
+	 * Open a connection to the file
+	 *
+	 * @return Connection
+	 * @throws IOException
+	 */
+	private HttpURLConnection openConnection() throws IOException {
+		HttpURLConnection connection = (HttpURLConnection)new URL(url).openConnection();
+		if (connection instanceof HttpsURLConnection) {
+			HttpsURLConnection https = (HttpsURLConnection)connection;
+			SSLSocketFactory factory = FileTransSSLFactory.getFileTransferSocketFactory();
+			if (factory != null) {
+				https.setSSLSocketFactory(factory);
+			}
+			https.setHostnameVerifier(new NullHostNameVerifier());
+		}
+		connection.setConnectTimeout(TIMEOUT);
+		connection.setReadTimeout(TIMEOUT);
+		if (userAgent != null) {
+			connection.setRequestProperty("User-Agent", userAgent);
+		}
+		return connection;
+	}
+
+	/**
+	 * Check that the Content-Range of a partial response is the requested range
+	 *
+	 * @param value Content-Range header value
+	 * @param start First requested byte
+	 * @param end Last requested byte
+	 * @param size Size of the file
+	 * @return Boolean
+	 */
+	private static boolean isContentRangeValid(String value, long start, long end, long size) {
+		if ((value == null) || !value.trim().toLowerCase().startsWith("bytes ")) {
+			return false;
+		}
+		try {
+			String range = value.trim().substring(6).trim();
+			int dash = range.indexOf('-');
+			int slash = range.indexOf('/');
+			if ((dash == -1) || (slash < dash)) {
+				return false;
+			}
+			String total = range.substring(slash + 1).trim();
+			return (Long.parseLong(range.substring(0, dash).trim()) == start) &&
+					(Long.parseLong(range.substring(dash + 1, slash).trim()) == end) &&
+					(total.equals("*") || (Long.parseLong(total) == size));
+		} catch(NumberFormatException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Split a file into segments
+	 *
+	 * @param size Size of the file
+	 * @param maxSegments Max number of segments
+	 * @return Segments
+	 */
+	private static ArrayList<Segment> createSegments(long size, int maxSegments) {
+		int count = (int)Math.max(1, Math.min(maxSegments, size / MIN_SEGMENT_SIZE));
+		ArrayList<Segment> result = new ArrayList<Segment>(count);
+		long segmentSize = size / count;
+		long start = 0;
+		for(int i=0; i < count; i++) {
+			long end = (i == count - 1) ? size - 1 : start + segmentSize - 1;
+			result.add(new Segment(start, end, start));
+			start = end + 1;
+		}
+		return result;
+	}
+
+	/**
+	 * Parse segments, they must cover the whole file
+	 *
+	 * @param value Segments
+	 * @param size Size of the file
+	 * @return Segments or null if invalid
+	 */
+	private static ArrayList<Segment> parseSegments(String value, long size) {
+		if (value == null) {
+			return null;
+		}
+		try {
+			ArrayList<Segment> result = new ArrayList<Segment>();
+			long next = 0;
+			String[] items = value.split(";");
+			for(int i=0; i < items.length; i++) {
+				String[] fields = items[i].split("-");
+				long start = Long.parseLong(fields[0]);
+				long end = Long.parseLong(fields[1]);
+				long position = Long.parseLong(fields[2]);
+				if ((start != next) || (end < start) || (position < start) || (position > end + 1)) {
+					return null;
+				}
+				result.add(new Segment(start, end, position));
+				next = end + 1;
+			}
+			return (next == size) ? result : null;
+		} catch(RuntimeException e) {
+			return null;
+		}
+	}
+}
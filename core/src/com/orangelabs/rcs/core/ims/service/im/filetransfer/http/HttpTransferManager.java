@@ -18,31 +18,21 @@
 
 package com.orangelabs.rcs.core.ims.service.im.filetransfer.http;
 
-import java.io.IOException;
-import java.net.MalformedURLException;
-import java.net.URL;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
 
 import org.apache.http.Header;
 import org.apache.http.HttpHost;
 import org.apache.http.HttpResponse;
-import org.apache.http.HttpVersion;
 import org.apache.http.client.ClientProtocolException;
 import org.apache.http.client.CookieStore;
 import org.apache.http.client.methods.HttpRequestBase;
 import org.apache.http.client.protocol.ClientContext;
-import org.apache.http.conn.ClientConnectionManager;
-import org.apache.http.conn.params.ConnManagerPNames;
-import org.apache.http.conn.params.ConnPerRouteBean;
 import org.apache.http.conn.params.ConnRoutePNames;
-import org.apache.http.conn.scheme.PlainSocketFactory;
-import org.apache.http.conn.scheme.Scheme;
-import org.apache.http.conn.scheme.SchemeRegistry;
 import org.apache.http.impl.client.BasicCookieStore;
 import org.apache.http.impl.client.DefaultHttpClient;
-import org.apache.http.impl.conn.SingleClientConnManager;
-import org.apache.http.params.BasicHttpParams;
 import org.apache.http.params.HttpParams;
-import org.apache.http.params.HttpProtocolParams;
 import org.apache.http.protocol.BasicHttpContext;
 import org.apache.http.protocol.HttpContext;
 
@@ -52,6 +42,7 @@ import android.net.NetworkInfo;
 import android.net.Proxy;
 
 import com.orangelabs.rcs.platform.AndroidFactory;
+import com.orangelabs.rcs.platform.network.HttpClientPool;
 import com.orangelabs.rcs.provider.settings.RcsSettings;
 import com.orangelabs.rcs.utils.logger.Logger;
 
@@ -152,52 +143,24 @@ public abstract class HttpTransferManager {
      * @param address server address
      */
     private void initServerAddress(String address) {
-        try {
-            // Extract protocol and port
-            URL url = new URL(address);
-            String protocol = url.getProtocol();
-            int port = url.getPort();
-            if (port == -1) {
-                // Set default port
-                if (protocol.equals("https")) {
-                    port = 443;
-                } else {
-                    port = 80;
-                }
-            }
-    
-            // Format HTTP request
-            ConnectivityManager connMgr = (ConnectivityManager) AndroidFactory.getApplicationContext().getSystemService(Context.CONNECTIVITY_SERVICE);
-            SchemeRegistry schemeRegistry = new SchemeRegistry();
-            if (protocol.equals("https")) {
-                schemeRegistry.register(new Scheme("https", new com.orangelabs.rcs.provisioning.https.EasySSLSocketFactory(), port));
-            } else {
-                schemeRegistry.register(new Scheme("http", PlainSocketFactory.getSocketFactory(), port));
-            }
-            HttpParams params = new BasicHttpParams();
-            params.setParameter(ConnManagerPNames.MAX_TOTAL_CONNECTIONS, 30);
-            params.setParameter(ConnManagerPNames.MAX_CONNECTIONS_PER_ROUTE, new ConnPerRouteBean(30));
-            params.setParameter(HttpProtocolParams.USE_EXPECT_CONTINUE, false);
-            NetworkInfo networkInfo = connMgr.getActiveNetworkInfo();
-            if (networkInfo != null && networkInfo.getType() == ConnectivityManager.TYPE_MOBILE) {
-                String proxyHost = Proxy.getDefaultHost();
-                if (proxyHost != null && proxyHost.length() > 1) {
-                    int proxyPort = Proxy.getDefaultPort();
-                    params.setParameter(ConnRoutePNames.DEFAULT_PROXY, new HttpHost(proxyHost, proxyPort));
-                }
+        // Create a client on the shared connection pool, so that the
+        // connections to the content server are reused between transfers
+        HttpParams params = HttpClientPool.createParams();
+        ConnectivityManager connMgr = (ConnectivityManager) AndroidFactory.getApplicationContext().getSystemService(Context.CONNECTIVITY_SERVICE);
+        NetworkInfo networkInfo = connMgr.getActiveNetworkInfo();
+        if (networkInfo != null && networkInfo.getType() == ConnectivityManager.TYPE_MOBILE) {
+            String proxyHost = Proxy.getDefaultHost();
+            if (proxyHost != null && proxyHost.length() > 1) {
+                int proxyPort = Proxy.getDefaultPort();
+                params.setParameter(ConnRoutePNames.DEFAULT_PROXY, new HttpHost(proxyHost, proxyPort));
             }
-            HttpProtocolParams.setVersion(params, HttpVersion.HTTP_1_1);
-            ClientConnectionManager cm = new SingleClientConnManager(params, schemeRegistry);
-            httpClient = new DefaultHttpClient(cm, params);
-            
-            
-            // Create local HTTP context
-            CookieStore cookieStore = (CookieStore) new BasicCookieStore();
-            httpContext = new BasicHttpContext();
-            httpContext.setAttribute(ClientContext.COOKIE_STORE, cookieStore);
-        } catch (MalformedURLException e) {
-            // Nothing to do
         }
+        httpClient = HttpClientPool.getInstance().createHttpClient(params);
+
+        // Create local HTTP context
+        CookieStore cookieStore = (CookieStore) new BasicCookieStore();
+        httpContext = new BasicHttpContext();
+        httpContext.setAttribute(ClientContext.COOKIE_STORE, cookieStore);
     }
 
     /**
@@ -245,10 +208,7 @@ public abstract class HttpTransferManager {
      * @throws ClientProtocolException 
      */
     public HttpResponse executeRequest(HttpRequestBase request) throws ClientProtocolException, IOException {
-    	if(response != null)
-    	{
-			response.getEntity().consumeContent();
-    	}
+    	releaseResponse();
         if (httpClient != null) {
         	response = httpClient.execute(request, httpContext);
             if (HTTP_TRACE_ENABLED) {
@@ -266,6 +226,49 @@ public abstract class HttpTransferManager {
         }
     }
     
+    /**
+     * Release the last HTTP response, so that its connection goes back to the pool
+     */
+    public void releaseResponse() {
+    	HttpClientPool.consume(response);
+    	response = null;
+    }
+
+    /**
+     * Close the response of a URL connection without disconnecting it, so that
+     * its socket is kept alive for the next request. The body of an error
+     * response is read to its end first; a response stream closed before its
+     * end closes the socket.
+     * 
+     * @param connection URL connection
+     * @param input Response stream or null if not opened
+     */
+    static void closeResponse(HttpURLConnection connection, InputStream input) {
+    	boolean error = (input == null);
+    	if (error) {
+    		input = connection.getErrorStream();
+    	}
+    	if (input == null) {
+    		return;
+    	}
+    	try {
+    		if (error) {
+    			byte[] buffer = new byte[1024];
+    			while (input.read(buffer) != -1) {
+    				// Nothing to do
+    			}
+    		}
+    	} catch(IOException e) {
+    		// Nothing to do
+    	} finally {
+    		try {
+    			input.close();
+    		} catch(IOException e) {
+    			// Nothing to do
+    		}
+    	}
+    }
+
     /**
      * Get HTTP client
      * 
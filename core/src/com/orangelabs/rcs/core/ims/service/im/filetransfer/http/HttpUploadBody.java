@@ -0,0 +1,280 @@
+/*******************************************************************************
+ * Software Name : RCS IMS Stack
+ *
+ * Copyright (C) 2010 France Telecom S.A.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.orangelabs.rcs.core.ims.service.im.filetransfer.http;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+
+/**
+ * Body of an HTTP upload request
+ * <br>The body is made of memory parts and of a file part whose framing is
+ * built before sending, so that the content length is known and the request
+ * can be streamed in fixed-length mode. The file is copied with a single
+ * buffer and the progress is reported at a bounded frequency.
+ */
+public class HttpUploadBody {
+	/**
+	 * Size of the copy buffer
+	 */
+	public static final int BUFFER_SIZE = 64 * 1024;
+
+	/**
+	 * Min delay in milliseconds between two progress notifications
+	 */
+	public static final long PROGRESS_PERIOD = 250;
+
+	/**
+	 * Two hyphens
+	 */
+	private final static String twoHyphens = "--";
+
+	/**
+	 * End of line
+	 */
+	private final static String lineEnd = "\r\n";
+
+	/**
+	 * Upload listener
+	 */
+	public interface Listener {
+		/**
+		 * Is the upload cancelled
+		 *
+		 * @return Boolean
+		 */
+		public boolean isCancelled();
+
+		/**
+		 * Upload progress
+		 *
+		 * @param currentSize Number of bytes of the file sent
+		 * @param totalSize Size of the file
+		 */
+		public void onProgress(long currentSize, long totalSize);
+	}
+
+	/**
+	 * Boundary, or null if the body is not a multipart
+	 */
+	private String boundary;
+
+	/**
+	 * Memory parts written before the file
+	 */
+	private ArrayList<byte[]> head = new ArrayList<byte[]>();
+
+	/**
+	 * Memory parts written after the file
+	 */
+	private ArrayList<byte[]> tail = new ArrayList<byte[]>();
+
+	/**
+	 * File
+	 */
+	private File file = null;
+
+	/**
+	 * Offset of the data to be sent in the file
+	 */
+	private long fileOffset = 0;
+
+	/**
+	 * Content length
+	 */
+	private long length = 0;
+
+	/**
+	 * Constructor
+	 *
+	 * @param boundary Multipart boundary or null
+	 */
+	public HttpUploadBody(String boundary) {
+		this.boundary = boundary;
+	}
+
+	/**
+	 * Add a form data part from memory
+	 *
+	 * @param name Name
+	 * @param filename Filename or null
+	 * @param contentType Content type
+	 * @param data Data
+	 * @throws UnsupportedEncodingException
+	 */
+	public void addPart(String name, String filename, String contentType, byte[] data) throws UnsupportedEncodingException {
+		add(getPartHeader(name, filename, contentType, data.length));
+		add(data);
+		add(lineEnd.getBytes("UTF-8"));
+	}
+
+	/**
+	 * Add a form data part from a file, only one file part may be added
+	 *
+	 * @param name Name
+	 * @param filename Filename
+	 * @param contentType Content type
+	 * @param file File
+	 * @throws UnsupportedEncodingException
+	 */
+	public void addFilePart(String name, String filename, String contentType, File file) throws UnsupportedEncodingException {
+		add(getPartHeader(name, filename, contentType, file.length()));
+		setFile(file, 0);
+		add(lineEnd.getBytes("UTF-8"));
+	}
+
+	/**
+	 * Add the data of a file without framing, only one file may be added
+	 *
+	 * @param file File
+	 * @param offset Offset of the data in the file
+	 */
+	public void addFile(File file, long offset) {
+		setFile(file, offset);
+	}
+
+	/**
+	 * Add the closing boundary of a multipart
+	 *
+	 * @throws UnsupportedEncodingException
+	 */
+	public void addClosingBoundary() throws UnsupportedEncodingException {
+		add((twoHyphens + boundary + twoHyphens).getBytes("UTF-8"));
+	}
+
+	/**
+	 * Returns the content length
+	 *
+	 * @return Length in bytes
+	 */
+	public long getContentLength() {
+		return length;
+	}
+
+	/**
+	 * Write the body
+	 *
+	 * @param out Output stream
+	 * @param listener Listener
+	 * @return Returns false if the upload has been cancelled, the body is then incomplete
+	 * @throws IOException
+	 */
+	public boolean writeTo(OutputStream out, Listener listener) throws IOException {
+		for(int i=0; i < head.size(); i++) {
+			out.write(head.get(i));
+		}
+
+		if (file != null) {
+			byte[] buffer = new byte[BUFFER_SIZE];
+			long total = file.length();
+			long progress = fileOffset;
+			long lastNotification = 0;
+			FileInputStream fileInputStream = new FileInputStream(file);
+			try {
+				long skipped = 0;
+				while (skipped < fileOffset) {
+					long n = fileInputStream.skip(fileOffset - skipped);
+					if (n <= 0) {
+						throw new IOException("File is shorter than the offset");
+					}
+					skipped += n;
+				}
+
+				int bytesRead;
+				while ((bytesRead = fileInputStream.read(buffer)) > 0) {
+					if (listener.isCancelled()) {
+						return false;
+					}
+					out.write(buffer, 0, bytesRead);
+					progress += bytesRead;
+
+					long now = System.currentTimeMillis();
+					if ((now - lastNotification >= PROGRESS_PERIOD) || (progress == total)) {
+						lastNotification = now;
+						listener.onProgress(progress, total);
+					}
+				}
+			} finally {
+				fileInputStream.close();
+			}
+			if (listener.isCancelled()) {
+				return false;
+			}
+		}
+
+		for(int i=0; i < tail.size(); i++) {
+			out.write(tail.get(i));
+		}
+		return true;
+	}
+
+	/**
+	 * Add a memory part
+	 *
+	 * @param data Data
+	 */
+	private void add(byte[] data) {
+		if (file == null) {
+			head.add(data);
+		} else {
+			tail.add(data);
+		}
+		length += data.length;
+	}
+
+	/**
+	 * Set the file
+	 *
+	 * @param file File
+	 * @param offset Offset of the data in the file
+	 */
+	private void setFile(File file, long offset) {
+		if (this.file != null) {
+			throw new IllegalStateException("File already added");
+		}
+		this.file = file;
+		this.fileOffset = offset;
+		length += file.length() - offset;
+	}
+
+	/**
+	 * Build the header of a form data part
+	 *
+	 * @param name Name
+	 * @param filename Filename or null
+	 * @param contentType Content type
+	 * @param contentLength Content length
+	 * @return Header
+	 * @throws UnsupportedEncodingException
+	 */
+	private byte[] getPartHeader(String name, String filename, String contentType, long contentLength) throws UnsupportedEncodingException {
+		StringBuilder header = new StringBuilder(256);
+		header.append(twoHyphens).append(boundary).append(lineEnd);
+		header.append("Content-Disposition: form-data; name=\"").append(name).append("\"");
+		if (filename != null) {
+			header.append("; filename=\"").append(filename).append("\"");
+		}
+		header.append(lineEnd);
+		header.append("Content-Type: ").append(contentType).append(lineEnd);
+		header.append("Content-Length: ").append(contentLength).append(lineEnd).append(lineEnd);
+		return header.toString().getBytes("UTF-8");
+	}
+}
@@ -2,12 +2,11 @@ package com.orangelabs.rcs.core.ims.service.im.filetransfer.http;
 
 import java.io.BufferedReader;
 import java.io.ByteArrayOutputStream;
-import java.io.DataOutputStream;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.OutputStream;
 import java.io.UnsupportedEncodingException;
 import java.net.MalformedURLException;
 import java.net.URI;
@@ -18,9 +17,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 
-import javax.net.ssl.HostnameVerifier;
 import javax.net.ssl.HttpsURLConnection;
-import javax.net.ssl.SSLSession;
 
 import org.apache.http.Header;
 import org.apache.http.HttpResponse;
@@ -115,6 +112,20 @@ public class HttpUploadManager extends HttpTransferManager {
 	 * Http Authentication Agent
 	 */
 	private HttpAuthenticationAgent auth;
+
+	/**
+	 * Listener of the body upload
+	 */
+	private HttpUploadBody.Listener bodyListener = new HttpUploadBody.Listener() {
+		public boolean isCancelled() {
+			return HttpUploadManager.this.isCancelled();
+		}
+
+		public void onProgress(long currentSize, long totalSize) {
+			getListener().httpTransferProgress(currentSize, totalSize);
+		}
+	};
+
 	/**
 	 * The logger
 	 */
@@ -196,6 +207,9 @@ public class HttpUploadManager extends HttpTransferManager {
 				}
 			}
 
+			// Only the headers of the first response are needed
+			releaseResponse();
+
 			// Notify listener
 			getListener().httpTransferStarted();
 
@@ -247,7 +261,7 @@ public class HttpUploadManager extends HttpTransferManager {
 	 * @throws Exception
 	 */
 	private byte[] sendMultipartPost(HttpResponse resp) throws CoreException, IOException, Exception {
-		DataOutputStream outputStream = null;
+		OutputStream outputStream = null;
 		String filepath = content.getUrl();
 
 		// Get the connection
@@ -256,7 +270,7 @@ public class HttpUploadManager extends HttpTransferManager {
 		connection = (HttpsURLConnection) url.openConnection();
 
 		try {
-			connection.setSSLSocketFactory(FileTransSSLFactory.getFileTransferSSLContext().getSocketFactory());
+			connection.setSSLSocketFactory(FileTransSSLFactory.getFileTransferSocketFactory());
 		} catch (Exception e) {
 			if (logger.isActivated()) {
 				logger.error("Failed to initiate SSL for connection:", e);
@@ -308,22 +322,16 @@ public class HttpUploadManager extends HttpTransferManager {
 			System.out.println(trace);
 		}
 
-		// Create the DataOutputStream and start writing its body
-		outputStream = new DataOutputStream(connection.getOutputStream());
-		outputStream.writeBytes(body);
+		// Build the body, the request is streamed with the computed length
+		HttpUploadBody uploadBody = generateMultipartBody(filepath);
+		setStreamingMode(connection, uploadBody);
+		outputStream = connection.getOutputStream();
 
-		// Add thumbnail
-		if (thumbnail != null) {
-			writeThumbnailMultipart(outputStream, filepath);
-		}
 		// From this point, resuming is possible
 		((HttpUploadTransferEventListener)getListener()).uploadStarted();
 		try {
-			// Add File
-			writeFileMultipart(outputStream, filepath);
-			if (!isCancelled()) {
-				// if the upload is cancelled, we don't send the last boundary to get bad request
-				outputStream.writeBytes(twoHyphens + BOUNDARY_TAG + twoHyphens); 
+			// Send the parts, if the upload is cancelled the body is incomplete
+			if (uploadBody.writeTo(outputStream, bodyListener)) {
 				// Check response status code
 				int responseCode = connection.getResponseCode();
 				if (logger.isActivated()) {
@@ -376,10 +384,12 @@ public class HttpUploadManager extends HttpTransferManager {
 					break; // no success, no retry
 				}
 
-				// Close streams
+				// Close streams, the connection is kept alive for the next request
 				outputStream.flush();
 				outputStream.close();
-				connection.disconnect();
+				if (!success) {
+					closeResponse(connection, null);
+				}
 
 				if (success) {
 					return result;
@@ -393,23 +403,15 @@ public class HttpUploadManager extends HttpTransferManager {
                     return null;
 				}
 			} else {
-				if (isPaused()) {
-					if (logger.isActivated()) {
+				if (logger.isActivated()) {
+					if (isPaused()) {
 						logger.debug("File transfer paused by user");
-					}
-					// Sent data are bufferized. Must wait for response to enable sending to server.
-					int responseCode = connection.getResponseCode();
-					if (logger.isActivated()) {
-						logger.debug("Second POST response " + responseCode + " " + connection.getResponseMessage());
-					}
-				} else {
-					if (logger.isActivated()) {
+					} else {
 						logger.debug("File transfer cancelled by user");
 					}
 				}
-				// Close streams
-				outputStream.flush();
-				outputStream.close();
+				// The body is incomplete, so no response is expected and the
+				// connection can't be reused
 				connection.disconnect();
 				return null;
 			}
@@ -423,26 +425,43 @@ public class HttpUploadManager extends HttpTransferManager {
 	}
 
 	/**
-	 * Write the thumbnail multipart
+	 * Generate the body of the multipart POST
 	 * 
-	 * @param outputStream
-	 *            DataOutputStream to write to
 	 * @param filepath
 	 *            File path
+	 * @return Body
+	 * @throws IOException
 	 */
-	private void writeThumbnailMultipart(DataOutputStream outputStream, String filepath) throws IOException {
-		if (thumbnail.length > 0) {
-			String[] splittedPath = content.getUrl().split("/");
-			String filename = splittedPath[splittedPath.length - 1];
-
-			outputStream.writeBytes(twoHyphens + BOUNDARY_TAG + lineEnd);
-			outputStream.writeBytes("Content-Disposition: form-data; name=\"Thumbnail\"; filename=\"thumb_" + filename + "\""
-					+ lineEnd);
-			outputStream.writeBytes("Content-Type: image/jpeg" + lineEnd);
-			outputStream.writeBytes("Content-Length: " + thumbnail.length);
-			outputStream.writeBytes(lineEnd + lineEnd);
-			outputStream.write(thumbnail);
-			outputStream.writeBytes(lineEnd);
+	private HttpUploadBody generateMultipartBody(String filepath) throws IOException {
+		String[] splittedPath = content.getUrl().split("/");
+		String filename = splittedPath[splittedPath.length - 1];
+
+		HttpUploadBody uploadBody = new HttpUploadBody(BOUNDARY_TAG);
+		if (tidFlag) {
+			uploadBody.addPart("tid", null, "text/plain", tid.getBytes("UTF-8"));
+		}
+		if ((thumbnail != null) && (thumbnail.length > 0)) {
+			uploadBody.addPart("Thumbnail", "thumb_" + filename, "image/jpeg", thumbnail);
+		}
+		uploadBody.addFilePart("File", URLEncoder.encode(filename, "UTF-8"), content.getEncoding(), new File(filepath));
+		uploadBody.addClosingBoundary();
+		return uploadBody;
+	}
+
+	/**
+	 * Set the streaming mode of a connection from the length of the body
+	 * 
+	 * @param connection
+	 *            Connection
+	 * @param uploadBody
+	 *            Body
+	 */
+	private static void setStreamingMode(HttpsURLConnection connection, HttpUploadBody uploadBody) {
+		long length = uploadBody.getContentLength();
+		if (length <= Integer.MAX_VALUE) {
+			connection.setFixedLengthStreamingMode((int)length);
+		} else {
+			connection.setChunkedStreamingMode(HttpUploadBody.BUFFER_SIZE);
 		}
 	}
 
@@ -460,53 +479,6 @@ public class HttpUploadManager extends HttpTransferManager {
 		return tidPartHeader + lineEnd + lineEnd + tid + lineEnd;
 	}
 
-	/**
-	 * Write the file multipart
-	 * 
-	 * @param outputStream
-	 *            DataOutputStream to write to
-	 * @param filepath
-	 *            File path
-	 * @throws IOException
-	 */
-	private void writeFileMultipart(DataOutputStream outputStream, String filepath)
-			throws IOException {
-		// Check file path
-		String[] splittedPath = content.getUrl().split("/");
-		String filename = splittedPath[splittedPath.length - 1];
-
-		// Build and write headers
-		String filePartHeader = twoHyphens + BOUNDARY_TAG + lineEnd;
-		filePartHeader += "Content-Disposition: form-data; name=\"File\"; filename=\"" + URLEncoder.encode(filename, "UTF-8")
-				+ "\"" + lineEnd;
-		filePartHeader += "Content-Type: " + content.getEncoding() + lineEnd;
-		File file = new File(filepath);
-		filePartHeader += "Content-Length: " + file.length() + lineEnd + lineEnd;
-
-		outputStream.writeBytes(filePartHeader);
-
-		// Write file content
-		FileInputStream fileInputStream = new FileInputStream(file);
-		int bytesAvailable = fileInputStream.available();
-		int bufferSize = Math.min(bytesAvailable, CHUNK_MAX_SIZE);
-		byte[] buffer = new byte[bufferSize];
-		int bytesRead = fileInputStream.read(buffer, 0, bufferSize);
-		int progress = 0;
-		
-		while (bytesRead > 0 && !isCancelled()) {
-			progress += bytesRead;
-			outputStream.write(buffer, 0, bytesRead);
-			bytesAvailable = fileInputStream.available();
-			getListener().httpTransferProgress(progress, file.length());
-			bufferSize = Math.min(bytesAvailable, CHUNK_MAX_SIZE);
-			buffer = new byte[bufferSize];
-			bytesRead = fileInputStream.read(buffer, 0, bufferSize);
-		}
-		if (!isCancelled())
-			outputStream.writeBytes(lineEnd);
-		fileInputStream.close();
-	}
-
 	/**
 	 * Stream conversion
 	 * 
@@ -531,24 +503,6 @@ public class HttpUploadManager extends HttpTransferManager {
 		return sb.toString().getBytes();
 	}
 
-	/**
-	 * Blank host verifier
-	 */
-	private class NullHostNameVerifier implements HostnameVerifier {
-		/**
-		 * Verifies that the specified hostname is allowed within the specified SSL session.
-		 * 
-		 * @param hostname
-		 *            Hostname to check
-		 * @param session
-		 *            Current SSL session
-		 * @return Always returns true
-		 */
-		public boolean verify(String hostname, SSLSession session) {
-			return true;
-		}
-	}
-
 	/**
 	 * Resume the upload
 	 * 
@@ -620,7 +574,7 @@ public class HttpUploadManager extends HttpTransferManager {
 		if (logger.isActivated()) {
 			logger.debug("sendPutForResumingUpload. Already sent from "+resumeInfo.getStart()+" to "+resumeInfo.getEnd());
 		}
-		DataOutputStream outputStream = null;
+		OutputStream outputStream = null;
 		String filepath = content.getUrl();
 
 		// Get the connection
@@ -629,7 +583,7 @@ public class HttpUploadManager extends HttpTransferManager {
 		connection = (HttpsURLConnection) new URL(resumeInfo.getUrl()).openConnection();
 
 		try {
-			connection.setSSLSocketFactory(FileTransSSLFactory.getFileTransferSSLContext().getSocketFactory());
+			connection.setSSLSocketFactory(FileTransSSLFactory.getFileTransferSocketFactory());
 		} catch (Exception e) {
 			if (logger.isActivated()) {
 				logger.error("Failed to initiate SSL for connection:", e);
@@ -645,7 +599,6 @@ public class HttpUploadManager extends HttpTransferManager {
 		connection.setRequestProperty("Connection", "Keep-Alive");
 		connection.setRequestProperty("User-Agent", SipUtils.userAgentString());
 		connection.setRequestProperty("Content-Type", this.content.getEncoding());
-		connection.setRequestProperty("Content-Length", String.valueOf(content.getSize() - (resumeInfo.getEnd()+1)));
 		connection.setRequestProperty("Content-Range", (resumeInfo.getEnd()+1) + "-" + (content.getSize()-1) + "/"
 				+ content.getSize());
 
@@ -672,14 +625,18 @@ public class HttpUploadManager extends HttpTransferManager {
 			System.out.println(trace);
 		}
 
-		// Create the DataOutputStream and start writing its body
-		outputStream = new DataOutputStream(connection.getOutputStream());
-		outputStream.writeBytes(body);
+		// The body is the remaining file data, streamed with its length
+		HttpUploadBody uploadBody = new HttpUploadBody(null);
+		uploadBody.addFile(new File(filepath), resumeInfo.getEnd() + 1);
+		setStreamingMode(connection, uploadBody);
+		outputStream = connection.getOutputStream();
+		if (logger.isActivated()) {
+			logger.debug("Send " + uploadBody.getContentLength() + " remaining bytes starting from " + (resumeInfo.getEnd() + 1));
+		}
 
 		try {
 			// Add File
-			writeRemainingFileData(outputStream, filepath, resumeInfo.getEnd());
-			if (!isCancelled()) {
+			if (uploadBody.writeTo(outputStream, bodyListener)) {
 				// Check response status code
 				int responseCode = connection.getResponseCode();
 				if (logger.isActivated()) {
@@ -703,10 +660,12 @@ public class HttpUploadManager extends HttpTransferManager {
 					break; // no success, no retry
 				}
 
-				// Close streams
+				// Close streams, the connection is kept alive for the next request
 				outputStream.flush();
 				outputStream.close();
-				connection.disconnect();
+				if (!success) {
+					closeResponse(connection, null);
+				}
 
 				if (success) {
 					return result;
@@ -716,23 +675,15 @@ public class HttpUploadManager extends HttpTransferManager {
 					throw new IOException("Received " + responseCode + " from server");
 				}
 			} else {
-				if (isPaused()) {
-					if (logger.isActivated()) {
+				if (logger.isActivated()) {
+					if (isPaused()) {
 						logger.warn("File transfer paused by user");
-					}
-					// Sent data are bufferized. Must wait for response to enable sending to server.
-					int responseCode = connection.getResponseCode();
-					if (logger.isActivated()) {
-						logger.debug("PUT response " + responseCode + " " + connection.getResponseMessage());
-					}
-				} else {
-					if (logger.isActivated()) {
+					} else {
 						logger.warn("File transfer cancelled by user");
 					}
 				}
-				// Close streams
-				outputStream.flush();
-				outputStream.close();
+				// The body is incomplete, so no response is expected and the
+				// connection can't be reused
 				connection.disconnect();
 				return null;
 			}
@@ -745,45 +696,6 @@ public class HttpUploadManager extends HttpTransferManager {
 		}
 	}
 
-	/**
-	 * write remaining file data
-	 * 
-	 * @param outputStream
-	 *            the output stream
-	 * @param filepath
-	 *            the file to be uploaded
-	 * @param endingByte
-	 *            the offset in bytes
-	 * @throws IOException
-	 */
-	private void writeRemainingFileData(DataOutputStream outputStream, String filepath, int offset) throws IOException {
-		// Write file content
-		File file = new File(filepath);
-		FileInputStream fileInputStream = new FileInputStream(file);
-		// Skip bytes already received
-		int bytesRead = (int) fileInputStream.skip(offset+1);
-		int bytesAvailable = fileInputStream.available();
-		int bufferSize = Math.min(bytesAvailable, CHUNK_MAX_SIZE);
-		byte[] buffer = new byte[bufferSize];
-		int progress = bytesRead;
-		bytesRead = fileInputStream.read(buffer, 0, bufferSize);
-		if (logger.isActivated()) {
-			logger.debug("Send "+bytesAvailable+" remaining bytes starting from " + progress);
-		}
-		// Send remaining bytes 
-		while (bytesRead > 0 && !isCancelled()) {
-			progress += bytesRead;
-			outputStream.write(buffer, 0, bytesRead);
-			bytesAvailable = fileInputStream.available();
-			getListener().httpTransferProgress(progress, file.length());
-			bufferSize = Math.min(bytesAvailable, CHUNK_MAX_SIZE);
-			buffer = new byte[bufferSize];
-			bytesRead = fileInputStream.read(buffer, 0, bufferSize);
-			
-		}
-		fileInputStream.close();
-	}
-
 	/**
 	 * Send a get for info on the upload
 	 * 
@@ -853,6 +765,7 @@ public class HttpUploadManager extends HttpTransferManager {
 		case 200:
 			return resp;
 		default:
+			releaseResponse();
 			return null;
 		}
 	}
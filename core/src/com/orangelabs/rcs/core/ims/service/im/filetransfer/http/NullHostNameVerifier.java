@@ -0,0 +1,39 @@
+/*******************************************************************************
+ * Software Name : RCS IMS Stack
+ *
+ * Copyright (C) 2010 France Telecom S.A.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.orangelabs.rcs.core.ims.service.im.filetransfer.http;
+
+import javax.net.ssl.HostnameVerifier;
+import javax.net.ssl.SSLSession;
+
+/**
+ * Blank host verifier of the file transfer connections
+ */
+public class NullHostNameVerifier implements HostnameVerifier {
+	/**
+	 * Verifies that the specified hostname is allowed within the specified SSL session.
+	 * 
+	 * @param hostname
+	 *            Hostname to check
+	 * @param session
+	 *            Current SSL session
+	 * @return Always returns true
+	 */
+	public boolean verify(String hostname, SSLSession session) {
+		return true;
+	}
+}
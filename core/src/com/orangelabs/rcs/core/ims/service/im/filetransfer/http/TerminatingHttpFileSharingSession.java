@@ -138,6 +138,7 @@ public class TerminatingHttpFileSharingSession extends HttpFileTransferSession i
 		setSessionID(resume.getSessionId());
 		// Instantiate the download manager
 		downloadManager = new HttpDownloadManager(getContent(), this, resumeFT.getFilename());
+		downloadManager.setSegments(resumeFT.getSegments());
 	}
 
 	/**
@@ -20,14 +20,12 @@ package com.orangelabs.rcs.core.ims.service.presence.directory;
 
 import java.util.Hashtable;
 
-import javax.xml.parsers.SAXParser;
-import javax.xml.parsers.SAXParserFactory;
-
 import org.xml.sax.Attributes;
 import org.xml.sax.InputSource;
 import org.xml.sax.helpers.DefaultHandler;
 
 import com.orangelabs.rcs.utils.DateUtils;
+import com.orangelabs.rcs.utils.SaxParserPool;
 import com.orangelabs.rcs.utils.logger.Logger;
 
 /**
@@ -55,9 +53,7 @@ public class XcapDirectoryParser extends DefaultHandler {
      * @throws Exception
      */
     public XcapDirectoryParser(InputSource inputSource) throws Exception {
-    	SAXParserFactory factory = SAXParserFactory.newInstance();
-        SAXParser parser = factory.newSAXParser();
-        parser.parse(inputSource, this);
+    	SaxParserPool.parse(inputSource, this);
 	}
 
 	public void startDocument() {
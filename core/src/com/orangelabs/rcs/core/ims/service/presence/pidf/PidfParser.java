@@ -20,15 +20,13 @@ package com.orangelabs.rcs.core.ims.service.presence.pidf;
 
 import java.util.StringTokenizer;
 
-import javax.xml.parsers.SAXParser;
-import javax.xml.parsers.SAXParserFactory;
-
 import org.xml.sax.Attributes;
 import org.xml.sax.InputSource;
 import org.xml.sax.helpers.DefaultHandler;
 
 import com.orangelabs.rcs.core.ims.service.presence.pidf.geoloc.Geopriv;
 import com.orangelabs.rcs.utils.DateUtils;
+import com.orangelabs.rcs.utils.SaxParserPool;
 import com.orangelabs.rcs.utils.StringUtils;
 import com.orangelabs.rcs.utils.logger.Logger;
 
@@ -114,9 +112,7 @@ public class PidfParser extends DefaultHandler {
      * @throws Exception
      */
     public PidfParser(InputSource inputSource) throws Exception {
-    	SAXParserFactory factory = SAXParserFactory.newInstance();
-        SAXParser parser = factory.newSAXParser();
-        parser.parse(inputSource, this);
+    	SaxParserPool.parse(inputSource, this);
 	}
 
 	public PidfDocument getPresence() {
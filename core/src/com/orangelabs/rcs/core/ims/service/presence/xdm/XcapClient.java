@@ -0,0 +1,576 @@
+/*******************************************************************************
+ * Software Name : RCS IMS Stack
+ *
+ * Copyright (C) 2010 France Telecom S.A.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.orangelabs.rcs.core.ims.service.presence.xdm;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import com.orangelabs.rcs.core.CoreException;
+import com.orangelabs.rcs.core.TerminalInfo;
+import com.orangelabs.rcs.core.ims.protocol.http.HttpAuthenticationAgent;
+import com.orangelabs.rcs.core.ims.protocol.http.HttpGetRequest;
+import com.orangelabs.rcs.core.ims.protocol.http.HttpRequest;
+import com.orangelabs.rcs.core.ims.protocol.http.HttpResponse;
+import com.orangelabs.rcs.platform.network.NetworkFactory;
+import com.orangelabs.rcs.platform.network.SocketConnection;
+import com.orangelabs.rcs.utils.HttpUtils;
+import com.orangelabs.rcs.utils.logger.Logger;
+
+/**
+ * XCAP client keeping a persistent HTTP/1.1 connection with the XDM server.
+ * The authentication agent is kept between the requests, so that only the
+ * first request is challenged, and several requests may be pipelined on the
+ * connection to fetch a set of documents in one round trip.
+ */
+public class XcapClient {
+	/**
+	 * Socket timeout in milliseconds
+	 */
+	public static final int SO_TIMEOUT = 30000;
+
+	/**
+	 * Idle time after which the connection is not reused, in milliseconds
+	 */
+	public static final long IDLE_TIMEOUT = 30000;
+
+	/**
+	 * Buffer size
+	 */
+	private static final int BUFFER_SIZE = 8192;
+
+	/**
+	 * XDM server host
+	 */
+	private String host;
+
+	/**
+	 * XDM server port
+	 */
+	private int port;
+
+	/**
+	 * Service root
+	 */
+	private String serviceRoot = "";
+
+	/**
+	 * Intended identity
+	 */
+	private String intendedIdentity;
+
+	/**
+	 * Authentication agent
+	 */
+	private HttpAuthenticationAgent authenticationAgent;
+
+	/**
+	 * Cookie set by the server
+	 */
+	private String cookie = null;
+
+	/**
+	 * Current connection
+	 */
+	private SocketConnection connection = null;
+
+	/**
+	 * Buffered input stream of the connection
+	 */
+	private InputStream input = null;
+
+	/**
+	 * Buffered output stream of the connection
+	 */
+	private OutputStream output = null;
+
+	/**
+	 * Time of the last response received on the connection
+	 */
+	private long lastUsed = 0L;
+
+	/**
+	 * Number of connections opened
+	 */
+	private int connectionCount = 0;
+
+	/**
+	 * Number of requests sent
+	 */
+	private int requestCount = 0;
+
+	/**
+	 * Number of round trips, a pipelined set of requests counting once
+	 */
+	private int roundTripCount = 0;
+
+	/**
+	 * The logger
+	 */
+	private Logger logger = Logger.getLogger(this.getClass().getName());
+
+	/**
+	 * Constructor
+	 *
+	 * @param serverAddr XDM server address (e.g. http://host:port/root)
+	 * @param login Login
+	 * @param pwd Password
+	 * @param intendedIdentity Intended identity
+	 */
+	public XcapClient(String serverAddr, String login, String pwd, String intendedIdentity) {
+		String[] parts = serverAddr.substring(7).split(":|/");
+		this.host = parts[0];
+		this.port = Integer.parseInt(parts[1]);
+		if (parts.length > 2) {
+			this.serviceRoot = "/" + parts[2];
+		}
+		this.intendedIdentity = intendedIdentity;
+		this.authenticationAgent = new HttpAuthenticationAgent(login, pwd);
+	}
+
+	/**
+	 * Send a request and wait for its response. A 401 response is answered
+	 * once with the credentials.
+	 *
+	 * @param request HTTP request
+	 * @param etag Etag of the document, sent in If-None-Match for a GET and in If-Match otherwise, or null
+	 * @return HTTP response
+	 * @throws CoreException
+	 */
+	public synchronized HttpResponse send(HttpRequest request, String etag) throws CoreException {
+		return send(new HttpRequest[] { request }, new String[] { etag })[0];
+	}
+
+	/**
+	 * Send a set of requests pipelined on the connection, and wait for their
+	 * responses. The requests which could not be answered on the connection
+	 * are sent again one by one.
+	 *
+	 * @param requests HTTP requests
+	 * @param etags Etags of the documents, or null values
+	 * @return HTTP responses, in the order of the requests
+	 * @throws CoreException
+	 */
+	public synchronized HttpResponse[] send(HttpRequest[] requests, String[] etags) throws CoreException {
+		HttpResponse[] responses = new HttpResponse[requests.length];
+		try {
+			exchange(requests, etags, responses, 0, true);
+		} catch(IOException e) {
+			if (logger.isActivated()) {
+				logger.debug("Pipelined XCAP requests failed: " + e.getMessage());
+			}
+			closeConnection();
+		}
+
+		try {
+			for (int i = 0; i < requests.length; i++) {
+				if (responses[i] == null) {
+					// Not answered on the pipelined connection
+					exchange(requests, etags, responses, i, false);
+				}
+				if (responses[i].getResponseCode() == 401) {
+					// Answer the challenge
+					authenticationAgent.readWwwAuthenticateHeader(responses[i].getHeader("www-authenticate"));
+					String setCookie = responses[i].getHeader("set-cookie");
+					if (setCookie != null) {
+						cookie = setCookie;
+					}
+					responses[i] = null;
+					exchange(requests, etags, responses, i, false);
+				}
+			}
+		} catch(IOException e) {
+			closeConnection();
+			throw new CoreException("Can't send XCAP request: " + e.getMessage());
+		}
+		return responses;
+	}
+
+	/**
+	 * Close the connection
+	 */
+	public synchronized void close() {
+		closeConnection();
+	}
+
+	/**
+	 * Returns the number of connections opened
+	 *
+	 * @return Number
+	 */
+	public synchronized int getConnectionCount() {
+		return connectionCount;
+	}
+
+	/**
+	 * Returns the number of requests sent
+	 *
+	 * @return Number
+	 */
+	public synchronized int getRequestCount() {
+		return requestCount;
+	}
+
+	/**
+	 * Returns the number of round trips with the server
+	 *
+	 * @return Number
+	 */
+	public synchronized int getRoundTripCount() {
+		return roundTripCount;
+	}
+
+	/**
+	 * Returns a string representation of the client
+	 *
+	 * @return String
+	 */
+	public synchronized String toString() {
+		return "XcapClient[connections=" + connectionCount + ", requests=" + requestCount +
+				", roundTrips=" + roundTripCount + "]";
+	}
+
+	/**
+	 * Write requests and read their responses. A request failing on a
+	 * reused connection is retried once on a new connection, as the server
+	 * may have closed it meanwhile.
+	 *
+	 * @param requests HTTP requests
+	 * @param etags Etags
+	 * @param responses Responses to be completed
+	 * @param index Index of the request to send
+	 * @param pipeline True to send all the requests from the index, else only one
+	 * @return Number of responses received
+	 * @throws IOException
+	 * @throws CoreException
+	 */
+	private int exchange(HttpRequest[] requests, String[] etags, HttpResponse[] responses,
+			int index, boolean pipeline) throws IOException, CoreException {
+		int end = pipeline ? requests.length : index + 1;
+		boolean reused = isConnectionReusable();
+		if (!reused) {
+			openConnection();
+		}
+		int received = 0;
+		try {
+			for (int i = index; i < end; i++) {
+				writeRequest(requests[i], etags[i]);
+			}
+			output.flush();
+			roundTripCount++;
+
+			for (int i = index; i < end; i++) {
+				responses[i] = readResponse(requests[i]);
+				received++;
+				if (!isKeepAlive(responses[i])) {
+					// The following requests are lost
+					closeConnection();
+					break;
+				}
+			}
+			lastUsed = System.currentTimeMillis();
+			return received;
+		} catch(CoreException e) {
+			closeConnection();
+			throw e;
+		} catch(IOException e) {
+			closeConnection();
+			if (reused && (received == 0)) {
+				if (logger.isActivated()) {
+					logger.debug("Persistent XCAP connection closed by the server, open a new one");
+				}
+				return exchange(requests, etags, responses, index, pipeline);
+			}
+			throw e;
+		}
+	}
+
+	/**
+	 * Write a request on the connection
+	 *
+	 * @param request HTTP request
+	 * @param etag Etag or null
+	 * @throws IOException
+	 * @throws CoreException
+	 */
+	private void writeRequest(HttpRequest request, String etag) throws IOException, CoreException {
+		String requestUri = serviceRoot + request.getUrl();
+		byte[] content = null;
+		if (request.getContent() != null) {
+			content = request.getContent().getBytes("UTF-8");
+		}
+
+		StringBuilder headers = new StringBuilder(512);
+		headers.append(request.getMethod()).append(' ').append(requestUri).append(" HTTP/1.1").append(HttpUtils.CRLF);
+		headers.append("Host: ").append(host).append(':').append(port).append(HttpUtils.CRLF);
+		headers.append("User-Agent: ").append(TerminalInfo.getProductName()).append(' ')
+				.append(TerminalInfo.getProductVersion()).append(HttpUtils.CRLF);
+		headers.append(authenticationAgent.generateAuthorizationHeader(
+				request.getMethod(), requestUri, request.getContent())).append(HttpUtils.CRLF);
+		String requestCookie = (request.getCookie() != null) ? request.getCookie() : cookie;
+		if (requestCookie != null) {
+			headers.append("Cookie: ").append(requestCookie).append(HttpUtils.CRLF);
+		}
+		headers.append("X-3GPP-Intended-Identity: \"").append(intendedIdentity).append('"').append(HttpUtils.CRLF);
+		if (etag != null) {
+			if (request instanceof HttpGetRequest) {
+				headers.append("If-None-Match: \"").append(etag).append('"').append(HttpUtils.CRLF);
+			} else {
+				headers.append("If-Match: \"").append(etag).append('"').append(HttpUtils.CRLF);
+			}
+		}
+		if (content != null) {
+			headers.append("Content-Type: ").append(request.getContentType()).append(HttpUtils.CRLF);
+			headers.append("Content-Length: ").append(content.length).append(HttpUtils.CRLF);
+		} else {
+			headers.append("Content-Length: 0").append(HttpUtils.CRLF);
+		}
+		headers.append(HttpUtils.CRLF);
+
+		output.write(headers.toString().getBytes("UTF-8"));
+		if (content != null) {
+			output.write(content);
+		}
+		requestCount++;
+
+		if (logger.isActivated()) {
+			if (request.getContent() != null) {
+				logger.debug("Send HTTP request:\n" + headers + request.getContent());
+			} else {
+				logger.debug("Send HTTP request:\n" + headers);
+			}
+		}
+	}
+
+	/**
+	 * Read a response from the connection
+	 *
+	 * @param request HTTP request
+	 * @return HTTP response
+	 * @throws IOException
+	 */
+	private HttpResponse readResponse(HttpRequest request) throws IOException {
+		HttpResponse response = new HttpResponse();
+		String line = readLine();
+		while (line.length() == 0) {
+			// Skip the empty lines before the status line
+			line = readLine();
+		}
+		response.setStatusLine(line);
+		StringBuilder trace = null;
+		if (logger.isActivated()) {
+			trace = new StringBuilder(line).append(HttpUtils.CRLF);
+		}
+		while ((line = readLine()).length() > 0) {
+			int index = line.indexOf(':');
+			if (index > 0) {
+				response.addHeader(line.substring(0, index).trim().toLowerCase(), line.substring(index + 1).trim());
+			}
+			if (trace != null) {
+				trace.append(line).append(HttpUtils.CRLF);
+			}
+		}
+
+		int code = response.getResponseCode();
+		boolean noContent = (code == 204) || (code == 304) || ((code >= 100) && (code < 200)) ||
+				"HEAD".equals(request.getMethod());
+		if (!noContent) {
+			String encoding = response.getHeader("transfer-encoding");
+			String length = response.getHeader("content-length");
+			byte[] content = null;
+			if ((encoding != null) && encoding.toLowerCase().contains("chunked")) {
+				content = readChunkedContent();
+			} else
+			if (length != null) {
+				content = readContent(Integer.parseInt(length.trim()));
+			} else {
+				content = readContentUntilClose();
+				response.addHeader("connection", "close");
+			}
+			if (content.length > 0) {
+				response.setContent(content);
+			}
+		}
+
+		if (trace != null) {
+			if (response.getContent() != null) {
+				trace.append(HttpUtils.CRLF).append(new String(response.getContent(), "UTF-8"));
+			}
+			logger.debug("Receive HTTP response:\n" + trace);
+		}
+		return response;
+	}
+
+	/**
+	 * Read a line, without its CRLF
+	 *
+	 * @return Line
+	 * @throws IOException
+	 */
+	private String readLine() throws IOException {
+		StringBuilder line = new StringBuilder(80);
+		int ch;
+		while ((ch = input.read()) != -1) {
+			if (ch == '\n') {
+				int len = line.length();
+				if ((len > 0) && (line.charAt(len - 1) == '\r')) {
+					line.setLength(len - 1);
+				}
+				return line.toString();
+			}
+			line.append((char)ch);
+		}
+		throw new EOFException("Connection closed by the server");
+	}
+
+	/**
+	 * Read a content of a given length
+	 *
+	 * @param length Length
+	 * @return Content
+	 * @throws IOException
+	 */
+	private byte[] readContent(int length) throws IOException {
+		byte[] content = new byte[length];
+		int pos = 0;
+		while (pos < length) {
+			int nb = input.read(content, pos, length - pos);
+			if (nb == -1) {
+				throw new EOFException("Connection closed by the server");
+			}
+			pos += nb;
+		}
+		return content;
+	}
+
+	/**
+	 * Read a chunked content
+	 *
+	 * @return Content
+	 * @throws IOException
+	 */
+	private byte[] readChunkedContent() throws IOException {
+		ByteArrayOutputStream content = new ByteArrayOutputStream();
+		while (true) {
+			String line = readLine();
+			int index = line.indexOf(';');
+			if (index != -1) {
+				line = line.substring(0, index);
+			}
+			int size = Integer.parseInt(line.trim(), 16);
+			if (size == 0) {
+				// Skip the trailers
+				while (readLine().length() > 0);
+				return content.toByteArray();
+			}
+			content.write(readContent(size));
+			readLine();
+		}
+	}
+
+	/**
+	 * Read a content delimited by the end of the connection
+	 *
+	 * @return Content
+	 * @throws IOException
+	 */
+	private byte[] readContentUntilClose() throws IOException {
+		ByteArrayOutputStream content = new ByteArrayOutputStream();
+		byte[] buffer = new byte[BUFFER_SIZE];
+		int nb;
+		while ((nb = input.read(buffer)) != -1) {
+			content.write(buffer, 0, nb);
+		}
+		return content.toByteArray();
+	}
+
+	/**
+	 * Check if the connection is kept alive after a response
+	 *
+	 * @param response HTTP response
+	 * @return Boolean
+	 */
+	private boolean isKeepAlive(HttpResponse response) {
+		String value = response.getHeader("connection");
+		if ((value != null) && value.equalsIgnoreCase("close")) {
+			return false;
+		}
+		String status = response.getStatusLine();
+		if ((status != null) && status.startsWith("HTTP/1.0")) {
+			return (value != null) && value.equalsIgnoreCase("keep-alive");
+		}
+		return true;
+	}
+
+	/**
+	 * Check if the current connection may be reused
+	 *
+	 * @return Boolean
+	 */
+	private boolean isConnectionReusable() {
+		if (connection == null) {
+			return false;
+		}
+		if ((System.currentTimeMillis() - lastUsed) > IDLE_TIMEOUT) {
+			closeConnection();
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Open a new connection with the XDM server
+	 *
+	 * @throws IOException
+	 */
+	private void openConnection() throws IOException {
+		closeConnection();
+		connection = NetworkFactory.getFactory().createSocketClientConnection();
+		connection.open(host, port);
+		connection.setSoTimeout(SO_TIMEOUT);
+		input = new BufferedInputStream(connection.getInputStream(), BUFFER_SIZE);
+		output = new BufferedOutputStream(connection.getOutputStream(), BUFFER_SIZE);
+		lastUsed = System.currentTimeMillis();
+		connectionCount++;
+		if (logger.isActivated()) {
+			logger.debug("Open XCAP connection with " + host + ":" + port);
+		}
+	}
+
+	/**
+	 * Close the current connection
+	 */
+	private void closeConnection() {
+		if (connection == null) {
+			return;
+		}
+		try {
+			connection.close();
+		} catch(IOException e) {
+			// Nothing to do
+		}
+		connection = null;
+		input = null;
+		output = null;
+	}
+}
@@ -19,9 +19,6 @@
 package com.orangelabs.rcs.core.ims.service.presence.xdm;
 
 import java.io.ByteArrayInputStream;
-import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.Hashtable;
 import java.util.List;
@@ -32,9 +29,7 @@ import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
 
 import com.orangelabs.rcs.core.CoreException;
-import com.orangelabs.rcs.core.TerminalInfo;
 import com.orangelabs.rcs.core.ims.ImsModule;
-import com.orangelabs.rcs.core.ims.protocol.http.HttpAuthenticationAgent;
 import com.orangelabs.rcs.core.ims.protocol.http.HttpDeleteRequest;
 import com.orangelabs.rcs.core.ims.protocol.http.HttpGetRequest;
 import com.orangelabs.rcs.core.ims.protocol.http.HttpPutRequest;
@@ -42,8 +37,6 @@ import com.orangelabs.rcs.core.ims.protocol.http.HttpRequest;
 import com.orangelabs.rcs.core.ims.protocol.http.HttpResponse;
 import com.orangelabs.rcs.core.ims.service.presence.directory.Folder;
 import com.orangelabs.rcs.core.ims.service.presence.directory.XcapDirectoryParser;
-import com.orangelabs.rcs.platform.network.NetworkFactory;
-import com.orangelabs.rcs.platform.network.SocketConnection;
 import com.orangelabs.rcs.service.api.client.presence.PhotoIcon;
 import com.orangelabs.rcs.utils.Base64;
 import com.orangelabs.rcs.utils.HttpUtils;
@@ -55,6 +48,11 @@ import com.orangelabs.rcs.utils.logger.Logger;
  * @author JM. Auffret
  */
 public class XdmManager {
+	/**
+	 * Delay in milliseconds after which the prefetched documents not read yet are dropped
+	 */
+	private final static long PREFETCH_TTL = 10000L;
+
 	/**
 	 * XDM server address
 	 */
@@ -74,6 +72,26 @@ public class XdmManager {
 	 * Managed documents
 	 */
 	private Hashtable<String, Folder> documents = new Hashtable<String, Folder>();
+
+	/**
+	 * Last content of the documents read, by URL
+	 */
+	private Hashtable<String, HttpResponse> cachedDocuments = new Hashtable<String, HttpResponse>();
+
+	/**
+	 * Documents prefetched and not read yet, by URL
+	 */
+	private Hashtable<String, HttpResponse> prefetchedDocuments = new Hashtable<String, HttpResponse>();
+
+	/**
+	 * Time of the last prefetch
+	 */
+	private long prefetchTime = 0L;
+
+	/**
+	 * XCAP client
+	 */
+	private XcapClient xcapClient;
 	
 	/**
 	 * The logger
@@ -89,238 +107,156 @@ public class XdmManager {
 		xdmServerAddr = ImsModule.IMS_USER_PROFILE.getXdmServerAddr();
 		xdmServerLogin = ImsModule.IMS_USER_PROFILE.getXdmServerLogin();
 		xdmServerPwd = ImsModule.IMS_USER_PROFILE.getXdmServerPassword();
+		xcapClient = new XcapClient(xdmServerAddr, xdmServerLogin, xdmServerPwd,
+				ImsModule.IMS_USER_PROFILE.getXdmServerLogin());
 	}
 	
 	/**
-	 * Send HTTP PUT request
+	 * Send HTTP request
 	 * 
 	 * @param request HTTP request
 	 * @return HTTP response
 	 * @throws CoreException
 	 */
 	private HttpResponse sendRequestToXDMS(HttpRequest request) throws CoreException {
-		return sendRequestToXDMS(request, new HttpAuthenticationAgent(xdmServerLogin, xdmServerPwd));
-	}
-	
-	/**
-	 * Send HTTP PUT request with authentication
-	 * 
-	 * @param request HTTP request
-	 * @param authenticationAgent Authentication agent
-	 * @return HTTP response
-	 * @throws CoreException
-	 */
-	private HttpResponse sendRequestToXDMS(HttpRequest request, HttpAuthenticationAgent authenticationAgent) throws CoreException {
-		try {
-			// Send first request
-			HttpResponse response = sendHttpRequest(request, authenticationAgent);
-			
-			// Analyze the response
-			if (response.getResponseCode() == 401) {
-				// 401 response received
-				if (logger.isActivated()) {
-					logger.debug("401 Unauthorized response received");
-				}
-	
-				if (authenticationAgent != null) {
-					// Update the authentication agent
-					authenticationAgent.readWwwAuthenticateHeader(response.getHeader("www-authenticate"));
-				}
-	
-				// Set the cookie from the received response
-				String cookie = response.getHeader("set-cookie");
-				request.setCookie(cookie);
-				
-				// Send second request with authentification header
-				response = sendRequestToXDMS(request, authenticationAgent);
-			} else
-			if (response.getResponseCode() == 412) {
-				// 412 response received
-				if (logger.isActivated()) {
-					logger.debug("412 Precondition failed");
-				}
-	
-				// Reset the etag
-				documents.remove(request.getAUID());
-				
-				// Send second request with authentification header
-				response = sendRequestToXDMS(request);
-			} else {		
-				// Other response received
+		if ((System.currentTimeMillis() - prefetchTime) > PREFETCH_TTL) {
+			// The prefetched documents are only used by the reads following the prefetch
+			prefetchedDocuments.clear();
+		}
+		if (request instanceof HttpGetRequest) {
+			// A prefetched document is used once without a new request
+			HttpResponse prefetched = prefetchedDocuments.remove(request.getUrl());
+			if (prefetched != null) {
 				if (logger.isActivated()) {
-					logger.debug(response.getResponseCode() + " response received");
+					logger.debug("Use the prefetched document " + request.getUrl());
 				}
+				return prefetched;
 			}
-			return response;
-		} catch(CoreException e) {
-			throw e;
-		} catch(Exception e) {
-			throw new CoreException("Can't send HTTP request: " + e.getMessage());
+		} else {
+			// The prefetched documents may be modified
+			prefetchedDocuments.clear();
+		}
+
+		HttpResponse response = processResponse(request, xcapClient.send(request, getEtag(request)));
+		if (response.getResponseCode() == 412) {
+			// 412 response received
+			if (logger.isActivated()) {
+				logger.debug("412 Precondition failed");
+			}
+
+			// Reset the etag
+			documents.remove(request.getAUID());
+			cachedDocuments.remove(request.getUrl());
+
+			// Send second request without etag
+			response = processResponse(request, xcapClient.send(request, null));
 		}
+		if (logger.isActivated()) {
+			logger.debug(response.getResponseCode() + " response received");
+		}
+		return response;
 	}
 
 	/**
-	 * Send HTTP PUT request
+	 * Returns the etag to be sent with a request: the etag of the cached
+	 * content for a conditional GET, else the etag of the document
 	 * 
 	 * @param request HTTP request
-	 * @param authenticationAgent Authentication agent
-	 * @return HTTP response
-	 * @throws IOException
-	 * @throws CoreException
+	 * @return Etag or null
 	 */
-	private HttpResponse sendHttpRequest(HttpRequest request, HttpAuthenticationAgent authenticationAgent) throws IOException, CoreException {
-		// Extract host & port
-		String[] parts = xdmServerAddr.substring(7).split(":|/");
-		String host = parts[0];		
-		int port = Integer.parseInt(parts[1]);
-		String serviceRoot = "";
-		if (parts.length > 2) {
-			serviceRoot = "/" + parts[2];
-		}
-		
-		// Open connection with the XCAP server
-		SocketConnection conn = NetworkFactory.getFactory().createSocketClientConnection();
-		conn.open(host, port);
-		InputStream is = conn.getInputStream();
-		OutputStream os = conn.getOutputStream();
-
-		// Create the HTTP request
-		String requestUri = serviceRoot + request.getUrl();
-		String httpRequest = request.getMethod() + " " + requestUri + " HTTP/1.1" + HttpUtils.CRLF +
-				"Host: " + host + ":" + port + HttpUtils.CRLF +
-				"User-Agent: " + TerminalInfo.getProductName() + " " + TerminalInfo.getProductVersion() + HttpUtils.CRLF;
-		
-		if (authenticationAgent != null) {
-			// Set the Authorization header
-			String authorizationHeader = authenticationAgent.generateAuthorizationHeader(
-					request.getMethod(), requestUri, request.getContent());
-			httpRequest += authorizationHeader + HttpUtils.CRLF;
+	private String getEtag(HttpRequest request) {
+		if (request instanceof HttpGetRequest) {
+			HttpResponse cached = cachedDocuments.get(request.getUrl());
+			if (cached != null) {
+				return unquote(cached.getHeader("etag"));
+			}
+			return null;
 		}
-		
-		String cookie = request.getCookie();
-		if (cookie != null){
-			// Set the cookie header
-			httpRequest += "Cookie: " + cookie + HttpUtils.CRLF;
+		Folder folder = documents.get(request.getAUID());
+		if ((folder != null) && (folder.getEntry() != null)) {
+			return folder.getEntry().getEtag();
 		}
+		return null;
+	}
 
-		httpRequest += "X-3GPP-Intended-Identity: \"" + ImsModule.IMS_USER_PROFILE.getXdmServerLogin() + "\"" + HttpUtils.CRLF;
-
-		// Set the If-match header
-		Folder folder = (Folder)documents.get(request.getAUID());
-		if ((folder != null) && (folder.getEntry() != null) && (folder.getEntry().getEtag() != null)) {
-			httpRequest += "If-match: \"" + folder.getEntry().getEtag() + "\"" + HttpUtils.CRLF;
-		}
-		
-		if (request.getContent() != null) {
-			// Set the content type
-			httpRequest += "Content-type: " + request.getContentType() + HttpUtils.CRLF;
-			httpRequest += "Content-Length:" + request.getContentLength() + HttpUtils.CRLF + HttpUtils.CRLF;
-		} else {
-			httpRequest += "Content-Length: 0" + HttpUtils.CRLF + HttpUtils.CRLF;
-		}
-		
-		// Write HTTP request headers
-		os.write(httpRequest.getBytes());
-		os.flush();
-
-		// Write HTTP content
-		if (request.getContent() != null) {
-			os.write(request.getContent().getBytes("UTF-8"));
-			os.flush();
+	/**
+	 * Process a response: save the etag of the document and cache the
+	 * content of a GET
+	 * 
+	 * @param request HTTP request
+	 * @param response HTTP response
+	 * @return Response, or the cached response if not modified
+	 */
+	private HttpResponse processResponse(HttpRequest request, HttpResponse response) {
+		String etag = unquote(response.getHeader("etag"));
+		Folder folder = documents.get(request.getAUID());
+		if ((etag != null) && (folder != null) && (folder.getEntry() != null)) {
+			folder.getEntry().setEtag(etag);
 		}
 
-		if (logger.isActivated()){
-			if (request.getContent() != null) {
-				logger.debug("Send HTTP request:\n" + httpRequest + request.getContent());
-			} else {
-				logger.debug("Send HTTP request:\n" + httpRequest);
+		if (request instanceof HttpGetRequest) {
+			if (response.getResponseCode() == 304) {
+				HttpResponse cached = cachedDocuments.get(request.getUrl());
+				if (cached != null) {
+					if (logger.isActivated()) {
+						logger.debug("Document not modified " + request.getUrl());
+					}
+					return cached;
+				}
+			} else
+			if (response.isSuccessfullResponse() && (etag != null)) {
+				cachedDocuments.put(request.getUrl(), response);
 			}
 		}
+		return response;
+	}
 
-		// Read HTTP headers response
-		StringBuffer respTrace = new StringBuffer();
-		HttpResponse response = new HttpResponse();
-		int ch = -1;
-		String line = "";
-		while((ch = is.read()) != -1) {
-			line += (char)ch;
-			
-			if (line.endsWith(HttpUtils.CRLF)) {
-				if (line.equals(HttpUtils.CRLF)) {
-					// All headers has been read
-					break;
-				}
-
-				if (logger.isActivated()) {
-					respTrace.append(line);
-				}
-
-				// Remove CRLF
-				line = line.substring(0, line.length()-2);
-				
-				if (line.startsWith("HTTP/")) {
-					// Status line
-					response.setStatusLine(line);
-				} else {
-					// Header
-					int index = line.indexOf(":");
-					String name = line.substring(0, index).trim().toLowerCase();
-					String value = line.substring(index+1).trim();
-					response.addHeader(name, value);
-				}
-				
-				line = "";
-			}
+	/**
+	 * Remove the quotes of an etag
+	 * 
+	 * @param etag Etag
+	 * @return Etag without quotes
+	 */
+	private static String unquote(String etag) {
+		if ((etag != null) && (etag.length() >= 2) && etag.startsWith("\"") && etag.endsWith("\"")) {
+			return etag.substring(1, etag.length() - 1);
 		}
-		
-		// Extract content length
-		int length = -1;
+		return etag;
+	}
+
+	/**
+	 * Fetch a set of documents with requests pipelined on the XCAP connection.
+	 * Each document is then returned once by the next GET of its URL, if done
+	 * within {@link #PREFETCH_TTL} ms.
+	 * 
+	 * @param urls URLs of the documents
+	 */
+	private void prefetchDocuments(String[] urls) {
 		try {
-			String value = response.getHeader("content-length");
-			length = Integer.parseInt(value);
-		} catch(Exception e) {
-			length = -1;
-		}
-		
-		// Read HTTP content response
-		if (length > 0) {
-			byte[] content = new byte[length];
-			int nb = -1;
-			int pos = 0;
-			byte[] buffer = new byte[1024];
-			while((nb = is.read(buffer)) != -1) {
-				System.arraycopy(buffer, 0, content, pos, nb);
-				pos += nb;
-				
-				if (pos >= length) {
-					// End of content
-					break;
+			HttpRequest[] requests = new HttpRequest[urls.length];
+			String[] etags = new String[urls.length];
+			for (int i = 0; i < urls.length; i++) {
+				requests[i] = new HttpGetRequest(urls[i]);
+				etags[i] = getEtag(requests[i]);
+			}
+			HttpResponse[] responses = xcapClient.send(requests, etags);
+			prefetchTime = System.currentTimeMillis();
+			for (int i = 0; i < urls.length; i++) {
+				HttpResponse response = processResponse(requests[i], responses[i]);
+				if (response.isSuccessfullResponse()) {
+					prefetchedDocuments.put(urls[i], response);
 				}
 			}
 			if (logger.isActivated()) {
-				respTrace.append(HttpUtils.CRLF + new String(content));
+				logger.debug("Documents prefetched: " + xcapClient);
+			}
+		} catch(CoreException e) {
+			if (logger.isActivated()) {
+				logger.error("Can't prefetch the XCAP documents", e);
 			}
-			response.setContent(content);
-		}
-
-		if (logger.isActivated()){
-			logger.debug("Receive HTTP response:\n" + respTrace.toString());
 		}
+	}
 
-		// Close the connection
-		is.close();
-		os.close();
-		conn.close();
-
-		// Save the Etag from the received response
-		String etag = response.getHeader("etag");
-		if ((etag != null) && (folder != null) && (folder.getEntry() != null)) {
-			folder.getEntry().setEtag(etag);
-		}
-		
-		return response;
-	}	
-	
 	/**
 	 * Initialize the XDM interface
 	 */
@@ -378,6 +314,16 @@ public class XdmManager {
 						logger.debug("The org.openmobilealliance.pres-rules document already exists");
 					}
 				}
+
+				// Fetch the lists read by the presence service at startup in one
+				// round trip: the granted list, and the blocked list on a new account
+				String lists = "/resource-lists/users/" +
+						HttpUtils.encodeURL(ImsModule.IMS_USER_PROFILE.getPublicUri()) +
+						"/index/~~/resource-lists/list%5B@name=%22";
+				prefetchDocuments(new String[] {
+						lists + "rcs%22%5D",
+						lists + "rcs_blockedcontacts%22%5D"
+				});
 			}
 		} catch(Exception e) {
         	if (logger.isActivated()) {
@@ -17,13 +17,11 @@
  ******************************************************************************/
 package com.orangelabs.rcs.core.ims.service.terms;
 
-import javax.xml.parsers.SAXParser;
-import javax.xml.parsers.SAXParserFactory;
-
 import org.xml.sax.Attributes;
 import org.xml.sax.InputSource;
 import org.xml.sax.helpers.DefaultHandler;
 
+import com.orangelabs.rcs.utils.SaxParserPool;
 import com.orangelabs.rcs.utils.logger.Logger;
 
 /**
@@ -58,9 +56,7 @@ public class TermsAckParser extends DefaultHandler {
 	 * @throws Exception
 	 */
 	public TermsAckParser(InputSource inputSource) throws Exception {
-		SAXParserFactory factory = SAXParserFactory.newInstance();
-	    SAXParser parser = factory.newSAXParser();
-	    parser.parse(inputSource, this);
+		SaxParserPool.parse(inputSource, this);
 	}
 	
 	public String getId() {
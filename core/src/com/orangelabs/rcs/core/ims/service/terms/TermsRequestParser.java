@@ -19,14 +19,12 @@ package com.orangelabs.rcs.core.ims.service.terms;
 
 import java.util.HashMap;
 
-import javax.xml.parsers.SAXParser;
-import javax.xml.parsers.SAXParserFactory;
-
 import org.xml.sax.Attributes;
 import org.xml.sax.InputSource;
 import org.xml.sax.helpers.DefaultHandler;
 
 import com.orangelabs.rcs.provider.settings.RcsSettings;
+import com.orangelabs.rcs.utils.SaxParserPool;
 import com.orangelabs.rcs.utils.logger.Logger;
 
 /**
@@ -125,9 +123,7 @@ public class TermsRequestParser extends DefaultHandler {
 	 */
 	public TermsRequestParser(InputSource inputSource, String requestedLanguage) throws Exception {
         this.requestedLanguage = requestedLanguage;
-		SAXParserFactory factory = SAXParserFactory.newInstance();
-	    SAXParser parser = factory.newSAXParser();
-	    parser.parse(inputSource, this);
+		SaxParserPool.parse(inputSource, this);
 	}
 
 	public String getId() {
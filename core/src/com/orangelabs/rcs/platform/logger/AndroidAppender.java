@@ -61,4 +61,16 @@ public class AndroidAppender extends Appender {
 			Log.v(classname, trace);
 		}
 	 }
+
+	/**
+	 * Print a trace with an exception
+	 *
+	 * @param classname Classname
+	 * @param level Trace level
+	 * @param trace Trace
+	 * @param e Exception
+	 */
+	public void printException(String classname, int level, String trace, Throwable e) {
+		printTrace(classname, level, trace + '\n' + Log.getStackTraceString(e));
+	}
 }
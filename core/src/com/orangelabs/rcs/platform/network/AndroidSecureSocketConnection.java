@@ -1,23 +1,13 @@
 package com.orangelabs.rcs.platform.network;
 
-import java.io.FileInputStream;
 import java.io.IOException;
-import java.security.KeyStore;
-import java.security.SecureRandom;
 import java.security.cert.Certificate;
 
-import javax.net.ssl.KeyManagerFactory;
-import javax.net.ssl.SSLContext;
 import javax.net.ssl.SSLSocket;
 import javax.net.ssl.SSLSocketFactory;
-import javax.net.ssl.TrustManager;
-import javax.net.ssl.TrustManagerFactory;
-import javax.net.ssl.KeyManager;
 
 import com.orangelabs.rcs.core.ims.security.cert.KeyStoreManager;
-import com.orangelabs.rcs.core.ims.security.cert.X509KeyManagerWrapper;
-import com.orangelabs.rcs.provisioning.https.EasyX509TrustManager;
-import com.orangelabs.rcs.utils.CloseableUtils;
+import com.orangelabs.rcs.core.ims.security.cert.TlsContextProvider;
 import com.orangelabs.rcs.utils.logger.Logger;
 
 /**
@@ -32,13 +22,6 @@ public class AndroidSecureSocketConnection extends AndroidSocketConnection {
      */
     private Logger logger = Logger.getLogger(this.getClass().getName());
 
-    /**
-     * SSL factory
-     */
-	// Changed by Deutsche Telekom
-    // TODO: check why this was static before
-	private SSLSocketFactory mSslSocketFactory = null;
-
 	// Changed by Deutsche Telekom
 	/**
      * usage of certificate checks
@@ -172,90 +155,17 @@ public class AndroidSecureSocketConnection extends AndroidSocketConnection {
 	/**
 	 * Returns the SSL factory instance
 	 * 
-	 * @param checkCertificate flag to indicate whether the remote certificate will be checked
-	 * 
-	 * @return SSL factory
+	 * @return SSL factory of the shared TLS context, so that the TLS sessions are resumed
 	 * @throws IOException
 	 */
-	// Changed by Deutsche Telekom
-    // TODO: check why this was static before
-	private synchronized SSLSocketFactory getSslFactory() throws IOException {
-        // Changed by Deutsche Telekom
-	    FileInputStream ksFileInputStream = null;
-        FileInputStream tsFileInputStream = null;
-		if (mSslSocketFactory == null) {
-			try {
-				// Changed by Deutsche Telekom
-				if (logger.isActivated()) {
-					logger.debug("Create SSLSocketFactory");
-				}
-				String keyStoreType = KeyStoreManager.getKeystoreType();
-				String keyStoreFile = KeyStoreManager.getKeystorePath();
-				String trustStoreFile = KeyStoreManager.getKeystorePath();
-				char[] keyStorePassword = KeyStoreManager.getKeystorePassword().toCharArray();
-
-				SSLContext sslContext = SSLContext.getInstance("TLS");
-
-				// Changed by Deutsche Telekom
-				TrustManager[] tms = null;
-		        KeyManager[] kms = null;
-		        
-		        KeyStore keyStore = KeyStore.getInstance(keyStoreType);
-                // Changed by Deutsche Telekom
-		        ksFileInputStream = new FileInputStream(keyStoreFile);
-		        keyStore.load(ksFileInputStream, keyStorePassword);
-
-		        String algorithm = KeyManagerFactory.getDefaultAlgorithm();
-		        
-		        if (mCheckCertificate) {
-			        // only use trusted certificates terminating on a well-known root CA
-			        TrustManagerFactory tmFactory = TrustManagerFactory.getInstance(algorithm);
-			        
-			        if(KeyStoreManager.isOwnCertificateUsed()){
-			        	KeyStore trustStore = KeyStore.getInstance(keyStoreType);
-			        	// Changed by Deutsche Telekom
-			        	tsFileInputStream = new FileInputStream(trustStoreFile);
-				        trustStore.load(tsFileInputStream, keyStorePassword);
-				        tmFactory.init(trustStore);		        	
-		
-				        KeyManagerFactory kmFactory = KeyManagerFactory.getInstance(algorithm);
-				        kmFactory.init(keyStore, keyStorePassword);			        
-				        kms = kmFactory.getKeyManagers();
-			        } else {
-				        tmFactory.init((KeyStore)null);		        			        	
-			        }
-			        tms = tmFactory.getTrustManagers();
-		        } else {
-		        	// use an own TrustManager to allow the usage of self-signed certificates
-					// Changed by Deutsche Telekom
-					if (logger.isActivated()) {
-						logger.debug("Use self-signed certificates");
-					}
-			        KeyManagerFactory kmFactory = KeyManagerFactory.getInstance(algorithm);
-			        kmFactory.init(keyStore, keyStorePassword);			        
-			        kms = kmFactory.getKeyManagers();
-			        
-					// overwrite 1st key manager with own wrapper to work around
-					// certificate request for unknown issuers
-			        KeyManager km = new X509KeyManagerWrapper(kms);
-			        kms[0] = km;
-		        	
-		        	tms = new TrustManager[] { new EasyX509TrustManager(null) };
-		        }
-		        SecureRandom secureRandom = new SecureRandom();
-		        secureRandom.nextInt();
-
-		        sslContext.init(kms, tms, secureRandom);
-
-		        mSslSocketFactory = sslContext.getSocketFactory();
-			} catch(Exception e) {
-				throw new IOException("Certificate exception: " + e.getMessage());
-			} finally {
-			    CloseableUtils.close(ksFileInputStream);
-			    CloseableUtils.close(tsFileInputStream);
-			}
+	private SSLSocketFactory getSslFactory() throws IOException {
+		if (mCheckCertificate) {
+			// Only use trusted certificates terminating on a well-known root CA
+			return TlsContextProvider.getInstance().getSocketFactory(TlsContextProvider.TRUSTED);
+		} else {
+			// Use an own TrustManager to allow the usage of self-signed certificates
+			return TlsContextProvider.getInstance().getSocketFactory(TlsContextProvider.SELF_SIGNED);
 		}
-		return mSslSocketFactory;
 	}
 
 }
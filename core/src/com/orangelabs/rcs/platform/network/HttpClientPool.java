@@ -0,0 +1,340 @@
+/*******************************************************************************
+ * Software Name : RCS IMS Stack
+ *
+ * Copyright (C) 2010 France Telecom S.A.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.orangelabs.rcs.platform.network;
+
+import java.io.IOException;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.HeaderElement;
+import org.apache.http.HeaderElementIterator;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpVersion;
+import org.apache.http.conn.ClientConnectionRequest;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
+import org.apache.http.conn.ConnectionPoolTimeoutException;
+import org.apache.http.conn.ManagedClientConnection;
+import org.apache.http.conn.params.ConnManagerParams;
+import org.apache.http.conn.params.ConnPerRouteBean;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.conn.scheme.PlainSocketFactory;
+import org.apache.http.conn.scheme.Scheme;
+import org.apache.http.conn.scheme.SchemeRegistry;
+import org.apache.http.impl.client.DefaultHttpClient;
+import org.apache.http.impl.conn.tsccm.ThreadSafeClientConnManager;
+import org.apache.http.message.BasicHeaderElementIterator;
+import org.apache.http.params.BasicHttpParams;
+import org.apache.http.params.HttpConnectionParams;
+import org.apache.http.params.HttpParams;
+import org.apache.http.params.HttpProtocolParams;
+import org.apache.http.protocol.HTTP;
+import org.apache.http.protocol.HttpContext;
+
+import com.orangelabs.rcs.provisioning.https.EasySSLSocketFactory;
+import com.orangelabs.rcs.utils.logger.Logger;
+
+/**
+ * Pool of persistent HTTP connections shared by the HTTP clients of the
+ * file transfer and of the provisioning. The clients are cheap objects
+ * holding their own parameters (proxy, cookie policy), while the connections
+ * are kept alive in one thread-safe pool so that consecutive requests to the
+ * same server reuse a warm connection and its TLS session.
+ */
+public class HttpClientPool {
+	/**
+	 * Max number of connections per route
+	 */
+	public static final int MAX_CONNECTIONS_PER_ROUTE = 4;
+
+	/**
+	 * Max number of connections
+	 */
+	public static final int MAX_CONNECTIONS = 16;
+
+	/**
+	 * Max time to wait for a connection of the pool, in milliseconds
+	 */
+	public static final long CONNECTION_WAIT_TIMEOUT = 30000;
+
+	/**
+	 * Keep-alive duration when the server does not give one, in milliseconds
+	 */
+	public static final long DEFAULT_KEEP_ALIVE = 30000;
+
+	/**
+	 * Idle time after which a pooled connection is closed, in milliseconds
+	 */
+	public static final long IDLE_TIMEOUT = 60000;
+
+	/**
+	 * Shared pool
+	 */
+	private static HttpClientPool instance = null;
+
+	/**
+	 * Connection manager
+	 */
+	private PoolingConnManager connManager;
+
+	/**
+	 * Keep-alive strategy
+	 */
+	private ConnectionKeepAliveStrategy keepAliveStrategy = new KeepAliveStrategy();
+
+	/**
+	 * Idle connections eviction timer
+	 */
+	private Timer evictionTimer = null;
+
+	/**
+	 * Number of connections opened
+	 */
+	private int connectionCount = 0;
+
+	/**
+	 * Number of requests served by a pooled connection
+	 */
+	private int reuseCount = 0;
+
+	/**
+	 * The logger
+	 */
+	private static final Logger logger = Logger.getLogger(HttpClientPool.class.getSimpleName());
+
+	/**
+	 * Returns the shared pool
+	 *
+	 * @return Pool
+	 */
+	public static synchronized HttpClientPool getInstance() {
+		if (instance == null) {
+			instance = new HttpClientPool();
+		}
+		return instance;
+	}
+
+	/**
+	 * Constructor
+	 */
+	public HttpClientPool() {
+		SchemeRegistry schemeRegistry = new SchemeRegistry();
+		schemeRegistry.register(new Scheme("http", PlainSocketFactory.getSocketFactory(), 80));
+		schemeRegistry.register(new Scheme("https", new EasySSLSocketFactory(), 443));
+
+		HttpParams params = new BasicHttpParams();
+		ConnManagerParams.setMaxTotalConnections(params, MAX_CONNECTIONS);
+		ConnManagerParams.setMaxConnectionsPerRoute(params, new ConnPerRouteBean(MAX_CONNECTIONS_PER_ROUTE));
+		ConnManagerParams.setTimeout(params, CONNECTION_WAIT_TIMEOUT);
+		connManager = new PoolingConnManager(params, schemeRegistry);
+	}
+
+	/**
+	 * Create the default parameters of a client
+	 *
+	 * @return Parameters
+	 */
+	public static HttpParams createParams() {
+		HttpParams params = new BasicHttpParams();
+		HttpProtocolParams.setVersion(params, HttpVersion.HTTP_1_1);
+		HttpProtocolParams.setUseExpectContinue(params, false);
+		HttpConnectionParams.setStaleCheckingEnabled(params, true);
+		return params;
+	}
+
+	/**
+	 * Create a client using the pooled connections
+	 *
+	 * @param params Client parameters
+	 * @return Client
+	 */
+	public DefaultHttpClient createHttpClient(HttpParams params) {
+		DefaultHttpClient client = new DefaultHttpClient(connManager, params);
+		client.setKeepAliveStrategy(keepAliveStrategy);
+		return client;
+	}
+
+	/**
+	 * Consume the content of a response, so that its connection goes back
+	 * to the pool
+	 *
+	 * @param response HTTP response
+	 */
+	public static void consume(HttpResponse response) {
+		if (response == null) {
+			return;
+		}
+		HttpEntity entity = response.getEntity();
+		if (entity != null) {
+			try {
+				entity.consumeContent();
+			} catch (IOException e) {
+				// The connection is closed
+			}
+		}
+	}
+
+	/**
+	 * Close the idle connections, e.g. when the network changes
+	 */
+	public void closeIdleConnections() {
+		connManager.closeIdleConnections(0, TimeUnit.MILLISECONDS);
+		synchronized(this) {
+			if (evictionTimer != null) {
+				evictionTimer.cancel();
+				evictionTimer = null;
+			}
+		}
+	}
+
+	/**
+	 * Returns the number of connections opened
+	 *
+	 * @return Number
+	 */
+	public synchronized int getConnectionCount() {
+		return connectionCount;
+	}
+
+	/**
+	 * Returns the number of requests served by a pooled connection
+	 *
+	 * @return Number
+	 */
+	public synchronized int getReuseCount() {
+		return reuseCount;
+	}
+
+	/**
+	 * Returns the number of connections in the pool, idle or in use
+	 *
+	 * @return Number
+	 */
+	public int getPoolSize() {
+		return connManager.getConnectionsInPool();
+	}
+
+	/**
+	 * Returns a string representation of the pool
+	 *
+	 * @return String
+	 */
+	public synchronized String toString() {
+		return "HttpClientPool[pool=" + getPoolSize() + ", opened=" + connectionCount +
+				", reused=" + reuseCount + "]";
+	}
+
+	/**
+	 * Schedule the eviction of the idle connections. The timer is only
+	 * running while connections are pooled.
+	 */
+	private synchronized void scheduleEviction() {
+		if (evictionTimer != null) {
+			return;
+		}
+		evictionTimer = new Timer("HttpClientPool", true);
+		evictionTimer.schedule(new TimerTask() {
+			public void run() {
+				evictIdleConnections();
+			}
+		}, IDLE_TIMEOUT);
+	}
+
+	/**
+	 * Close the expired and idle connections
+	 */
+	private void evictIdleConnections() {
+		connManager.closeExpiredConnections();
+		connManager.closeIdleConnections(IDLE_TIMEOUT, TimeUnit.MILLISECONDS);
+		int remaining = connManager.getConnectionsInPool();
+		if (logger.isActivated()) {
+			logger.debug("Idle HTTP connections closed, " + remaining + " remaining");
+		}
+		synchronized(this) {
+			if (evictionTimer != null) {
+				evictionTimer.cancel();
+				evictionTimer = null;
+			}
+		}
+		if (remaining > 0) {
+			scheduleEviction();
+		}
+	}
+
+	/**
+	 * Connection manager counting the opened and reused connections
+	 */
+	private class PoolingConnManager extends ThreadSafeClientConnManager {
+		public PoolingConnManager(HttpParams params, SchemeRegistry schemeRegistry) {
+			super(params, schemeRegistry);
+		}
+
+		public ClientConnectionRequest requestConnection(HttpRoute route, Object state) {
+			final ClientConnectionRequest request = super.requestConnection(route, state);
+			return new ClientConnectionRequest() {
+				public ManagedClientConnection getConnection(long timeout, TimeUnit timeUnit)
+						throws InterruptedException, ConnectionPoolTimeoutException {
+					ManagedClientConnection conn = request.getConnection(timeout, timeUnit);
+					synchronized(HttpClientPool.this) {
+						if (conn.isOpen()) {
+							reuseCount++;
+						} else {
+							connectionCount++;
+						}
+					}
+					return conn;
+				}
+
+				public void abortRequest() {
+					request.abortRequest();
+				}
+			};
+		}
+
+		public void releaseConnection(ManagedClientConnection conn, long validDuration, TimeUnit timeUnit) {
+			boolean reusable = conn.isMarkedReusable();
+			super.releaseConnection(conn, validDuration, timeUnit);
+			if (reusable) {
+				scheduleEviction();
+			}
+		}
+	}
+
+	/**
+	 * Keep-alive strategy following the Keep-Alive header of the server,
+	 * with a default duration otherwise
+	 */
+	private class KeepAliveStrategy implements ConnectionKeepAliveStrategy {
+		public long getKeepAliveDuration(HttpResponse response, HttpContext context) {
+			HeaderElementIterator it = new BasicHeaderElementIterator(response.headerIterator(HTTP.CONN_KEEP_ALIVE));
+			while (it.hasNext()) {
+				HeaderElement element = it.nextElement();
+				if ("timeout".equalsIgnoreCase(element.getName()) && (element.getValue() != null)) {
+					try {
+						return Long.parseLong(element.getValue()) * 1000;
+					} catch (NumberFormatException e) {
+						// Use the default duration
+					}
+				}
+			}
+			return DEFAULT_KEEP_ALIVE;
+		}
+	}
+}
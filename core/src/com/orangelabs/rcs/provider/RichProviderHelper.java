@@ -33,7 +33,22 @@ import com.orangelabs.rcs.utils.logger.Logger;
 
 public class RichProviderHelper extends SQLiteOpenHelper{
 	private static final String DATABASE_NAME = "eventlog.db";
-	private static final int DATABASE_VERSION = 18;
+	private static final int DATABASE_VERSION = 21;
+
+	/**
+	 * First database version having the indexes
+	 */
+	private static final int INDEXES_DATABASE_VERSION = 19;
+
+	/**
+	 * First database version having the FT HTTP download segments
+	 */
+	private static final int SEGMENTS_DATABASE_VERSION = 20;
+
+	/**
+	 * First database version having the date indexes of the event log pages
+	 */
+	private static final int DATE_INDEXES_DATABASE_VERSION = 21;
 	/**
 	 * The logger
 	 */
@@ -119,14 +134,61 @@ public class RichProviderHelper extends SQLiteOpenHelper{
 	            + FtHttpColumns.THUMBNAIL + " BLOB,"
 	            + FtHttpColumns.MESSAGE_ID + " TEXT,"
 	            + FtHttpColumns.IS_GROUP + " INTEGER,"
-	            + FtHttpColumns.CHAT_SESSION_ID + " TEXT"
+	            + FtHttpColumns.CHAT_SESSION_ID + " TEXT,"
+	            + FtHttpColumns.SEGMENTS + " TEXT"
 	            +");"
 	            );
 	    // @formatter:on
+		
+		createIndexes(db);
+	}
+	
+	/**
+	 * Create the indexes used by the history lookups
+	 * 
+	 * @param db Database
+	 */
+	public static void createIndexes(SQLiteDatabase db) {
+		// IMDN reports and duplicate detection
+		db.execSQL("CREATE INDEX IF NOT EXISTS " + RichMessagingProvider.TABLE + "_message_id_idx ON "
+				+ RichMessagingProvider.TABLE + " (" + RichMessagingData.KEY_MESSAGE_ID + ", "
+				+ RichMessagingData.KEY_TIMESTAMP + ");");
+		// Chat sessions and file transfers
+		db.execSQL("CREATE INDEX IF NOT EXISTS " + RichMessagingProvider.TABLE + "_session_id_idx ON "
+				+ RichMessagingProvider.TABLE + " (" + RichMessagingData.KEY_CHAT_SESSION_ID + ", "
+				+ RichMessagingData.KEY_TIMESTAMP + ");");
+		// Group chats
+		db.execSQL("CREATE INDEX IF NOT EXISTS " + RichMessagingProvider.TABLE + "_chat_id_idx ON "
+				+ RichMessagingProvider.TABLE + " (" + RichMessagingData.KEY_CHAT_ID + ", "
+				+ RichMessagingData.KEY_TYPE + ", " + RichMessagingData.KEY_TIMESTAMP + ");");
+		// Conversation of a contact and recycling
+		db.execSQL("CREATE INDEX IF NOT EXISTS " + RichMessagingProvider.TABLE + "_contact_idx ON "
+				+ RichMessagingProvider.TABLE + " (" + RichMessagingData.KEY_CONTACT + ", "
+				+ RichMessagingData.KEY_TIMESTAMP + ");");
+		db.execSQL("CREATE INDEX IF NOT EXISTS " + RichCallProvider.TABLE + "_session_id_idx ON "
+				+ RichCallProvider.TABLE + " (" + RichCallData.KEY_SESSION_ID + ");");
+		db.execSQL("CREATE INDEX IF NOT EXISTS " + IPCallProvider.TABLE + "_session_id_idx ON "
+				+ IPCallProvider.TABLE + " (" + IPCallData.KEY_SESSION_ID + ");");
+		// Pages of the event log
+		db.execSQL("CREATE INDEX IF NOT EXISTS " + RichMessagingProvider.TABLE + "_date_idx ON "
+				+ RichMessagingProvider.TABLE + " (" + RichMessagingData.KEY_TIMESTAMP + ", "
+				+ RichMessagingData.KEY_ID + ");");
+		db.execSQL("CREATE INDEX IF NOT EXISTS " + RichCallProvider.TABLE + "_date_idx ON "
+				+ RichCallProvider.TABLE + " (" + RichCallData.KEY_TIMESTAMP + ", " + RichCallData.KEY_ID + ");");
+		db.execSQL("CREATE INDEX IF NOT EXISTS " + IPCallProvider.TABLE + "_date_idx ON "
+				+ IPCallProvider.TABLE + " (" + IPCallData.KEY_TIMESTAMP + ", " + IPCallData.KEY_ID + ");");
 	}
 	
 	@Override
 	public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion){
+		if ((oldVersion >= INDEXES_DATABASE_VERSION - 1) && (newVersion <= DATE_INDEXES_DATABASE_VERSION)) {
+			// Same tables: only add the indexes and the new columns, and keep the history
+			createIndexes(db);
+			if (oldVersion < SEGMENTS_DATABASE_VERSION) {
+				db.execSQL("ALTER TABLE " + FtHttpColumns.TABLE + " ADD COLUMN " + FtHttpColumns.SEGMENTS + " TEXT");
+			}
+			return;
+		}
 		db.execSQL("DROP TABLE IF EXISTS " + RichMessagingProvider.TABLE);
 		db.execSQL("DROP TABLE IF EXISTS " + RichCallProvider.TABLE);
 		db.execSQL("DROP TABLE IF EXISTS " + IPCallProvider.TABLE);
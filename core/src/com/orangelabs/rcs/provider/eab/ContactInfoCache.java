@@ -0,0 +1,305 @@
+/*******************************************************************************
+ * Software Name : RCS IMS Stack
+ *
+ * Copyright (C) 2010 France Telecom S.A.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.orangelabs.rcs.provider.eab;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import android.os.Parcel;
+
+import com.orangelabs.rcs.service.api.client.capability.Capabilities;
+import com.orangelabs.rcs.service.api.client.contacts.ContactInfo;
+import com.orangelabs.rcs.service.api.client.presence.PresenceInfo;
+
+/**
+ * Bounded LRU cache of contact info read from the rich address book.
+ * <br>Entries are keyed by the normalized contact number and are always
+ * stored and returned as private copies, so callers may freely modify
+ * the returned objects.
+ * <br>A reader takes the version of a contact before reading it from the
+ * database, and the result is cached only if the contact has not been
+ * invalidated in the meantime.
+ */
+public class ContactInfoCache {
+	/**
+	 * Default max number of cached contacts
+	 */
+	public final static int DEFAULT_MAX_SIZE = 256;
+
+	/**
+	 * Cached entries, in access order
+	 */
+	private final LinkedHashMap<String, Entry> entries;
+
+	/**
+	 * Version of the contacts invalidated since the last global invalidation
+	 */
+	private final HashMap<String, Long> versions = new HashMap<String, Long>();
+
+	/**
+	 * Version of the last global invalidation
+	 */
+	private long epoch = 0L;
+
+	/**
+	 * Last assigned version
+	 */
+	private long clock = 0L;
+
+	/**
+	 * Max number of cached contacts
+	 */
+	private final int maxSize;
+
+	/**
+	 * Number of cache hits
+	 */
+	private long hitCount = 0L;
+
+	/**
+	 * Number of cache misses
+	 */
+	private long missCount = 0L;
+
+	/**
+	 * Number of evicted entries
+	 */
+	private long evictionCount = 0L;
+
+	/**
+	 * Constructor
+	 *
+	 * @param maxSize Max number of cached contacts
+	 */
+	public ContactInfoCache(int maxSize) {
+		this.maxSize = maxSize;
+		this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+				if (size() > ContactInfoCache.this.maxSize) {
+					evictionCount++;
+					return true;
+				}
+				return false;
+			}
+		};
+	}
+
+	/**
+	 * Get a copy of the cached info of a contact
+	 *
+	 * @param contact Normalized contact number
+	 * @return Contact info or null if not cached
+	 */
+	public synchronized ContactInfo get(String contact) {
+		Entry entry = entries.get(contact);
+		if (entry == null) {
+			missCount++;
+			return null;
+		}
+		hitCount++;
+		ContactInfo result = copy(entry.info);
+		if (!entry.stored) {
+			// The contact is not in the database: the default info is as
+			// recent as the request, like when it is read again
+			result.setRcsStatusTimestamp(System.currentTimeMillis());
+		}
+		return result;
+	}
+
+	/**
+	 * Cache the info of a contact
+	 *
+	 * @param contact Normalized contact number
+	 * @param info Contact info
+	 */
+	public synchronized void put(String contact, ContactInfo info) {
+		entries.put(contact, new Entry(copy(info), true));
+	}
+
+	/**
+	 * Cache the info of a contact read from the database, unless the
+	 * contact has been invalidated since the read started
+	 *
+	 * @param contact Normalized contact number
+	 * @param info Contact info
+	 * @param stored True if the contact is in the database, false if the info is the default one
+	 * @param version Version of the contact taken before the read
+	 * @return True if the info has been cached
+	 */
+	public synchronized boolean put(String contact, ContactInfo info, boolean stored, long version) {
+		if (getVersion(contact) != version) {
+			return false;
+		}
+		entries.put(contact, new Entry(copy(info), stored));
+		return true;
+	}
+
+	/**
+	 * Returns the version of a contact, to be taken before reading it
+	 * from the database
+	 *
+	 * @param contact Normalized contact number
+	 * @return Version
+	 */
+	public synchronized long getVersion(String contact) {
+		Long version = versions.get(contact);
+		if (version != null) {
+			return version.longValue();
+		}
+		return epoch;
+	}
+
+	/**
+	 * Invalidate the cached info of a contact
+	 *
+	 * @param contact Normalized contact number
+	 */
+	public synchronized void invalidate(String contact) {
+		entries.remove(contact);
+		if (versions.size() >= maxSize) {
+			// Too many versions: fall back to a global invalidation of the
+			// pending reads, the cached entries remain valid
+			versions.clear();
+			epoch = ++clock;
+		} else {
+			versions.put(contact, Long.valueOf(++clock));
+		}
+	}
+
+	/**
+	 * Invalidate all cached entries
+	 */
+	public synchronized void invalidateAll() {
+		entries.clear();
+		versions.clear();
+		epoch = ++clock;
+	}
+
+	/**
+	 * Returns the number of cached contacts
+	 *
+	 * @return Size
+	 */
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	/**
+	 * Returns the number of cache hits
+	 *
+	 * @return Hit count
+	 */
+	public synchronized long getHitCount() {
+		return hitCount;
+	}
+
+	/**
+	 * Returns the number of cache misses
+	 *
+	 * @return Miss count
+	 */
+	public synchronized long getMissCount() {
+		return missCount;
+	}
+
+	/**
+	 * Returns the number of evicted entries
+	 *
+	 * @return Eviction count
+	 */
+	public synchronized long getEvictionCount() {
+		return evictionCount;
+	}
+
+	/**
+	 * Returns a description of the cache metrics
+	 *
+	 * @return String
+	 */
+	public synchronized String toString() {
+		return "ContactInfoCache[size=" + entries.size() + "/" + maxSize
+				+ ", hits=" + hitCount + ", misses=" + missCount
+				+ ", evictions=" + evictionCount + "]";
+	}
+
+	/**
+	 * Cached entry
+	 */
+	private static class Entry {
+		/**
+		 * Contact info
+		 */
+		private final ContactInfo info;
+
+		/**
+		 * True if the contact is in the database
+		 */
+		private final boolean stored;
+
+		/**
+		 * Constructor
+		 *
+		 * @param info Contact info
+		 * @param stored True if the contact is in the database
+		 */
+		private Entry(ContactInfo info, boolean stored) {
+			this.info = info;
+			this.stored = stored;
+		}
+	}
+
+	/**
+	 * Deep copy a contact info. The copy constructor of ContactInfo shares
+	 * the capabilities and presence info, so they are duplicated here
+	 * through their parcelable form.
+	 *
+	 * @param info Contact info
+	 * @return Copy
+	 */
+	private static ContactInfo copy(ContactInfo info) {
+		ContactInfo result = new ContactInfo(info);
+		Capabilities capabilities = info.getCapabilities();
+		if (capabilities != null) {
+			Parcel parcel = Parcel.obtain();
+			try {
+				capabilities.writeToParcel(parcel, 0);
+				parcel.setDataPosition(0);
+				result.setCapabilities(Capabilities.CREATOR.createFromParcel(parcel));
+			} finally {
+				parcel.recycle();
+			}
+		}
+		PresenceInfo presenceInfo = info.getPresenceInfo();
+		if (presenceInfo != null) {
+			Parcel parcel = Parcel.obtain();
+			try {
+				presenceInfo.writeToParcel(parcel, 0);
+				parcel.setDataPosition(0);
+				result.setPresenceInfo(PresenceInfo.CREATOR.createFromParcel(parcel));
+			} finally {
+				parcel.recycle();
+			}
+		}
+		return result;
+	}
+}
@@ -27,7 +27,13 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import android.accounts.AccountManager;
 import android.content.ContentProviderOperation;
@@ -67,6 +73,8 @@ import com.orangelabs.rcs.service.api.client.presence.PresenceInfo;
 import com.orangelabs.rcs.utils.CloseableUtils;
 import com.orangelabs.rcs.utils.PhoneUtils;
 import com.orangelabs.rcs.utils.logger.Logger;
+import com.orangelabs.rcs.utils.metrics.Histogram;
+import com.orangelabs.rcs.utils.metrics.Metrics;
 
 /**
  * Contains utility methods for interfacing with the Android SDK ContactsProvider.
@@ -279,11 +287,31 @@ public final class ContactsManager {
      * Contact for "Me"
      */
     private static final String MYSELF = "myself";
+
+    /**
+     * Max number of arguments in a single "IN" selection, below the SQLite limit
+     */
+    private static final int MAX_SELECTION_ARGS = 500;
     
 	/**
 	 * The logger
 	 */
 	private Logger logger = Logger.getLogger(getClass().getName());
+
+	/**
+	 * Cache of the contact infos read from the rich address book
+	 */
+	private ContactInfoCache contactInfoCache = new ContactInfoCache(ContactInfoCache.DEFAULT_MAX_SIZE);
+
+	/**
+	 * Latency of the reads of a contact info which is not in the cache
+	 */
+	private static final Histogram READ_LATENCY = Metrics.histogram("db.contacts.read", "us");
+
+	/**
+	 * Latency of the batches of modifications
+	 */
+	private static final Histogram WRITE_LATENCY = Metrics.histogram("db.contacts.write", "us");
     
 	/**
 	 * Create instance
@@ -499,9 +527,29 @@ public final class ContactsManager {
 			logger.info("Set contact info for " + newInfo.getContact());
 		}
 
+		ArrayList<ContentProviderOperation> ops = new ArrayList<ContentProviderOperation>();
+		prepareContactInfo(newInfo, oldInfo, null, ops);
+		applyBatch(ContactsContract.AUTHORITY, ops);
+	}
+
+	/**
+	 * Update the rich address book with the info of a contact and prepare the
+	 * modifications of the native address book
+	 * 
+	 * @param newInfo New contact info
+	 * @param oldInfo Old contact info
+	 * @param richOps If not null, the rich address book update is added to this list instead of being
+	 * applied, and the photo content is not saved
+	 * @param ops List where the native address book modifications are added
+	 */
+	private void prepareContactInfo(ContactInfo newInfo, ContactInfo oldInfo,
+			ArrayList<ContentProviderOperation> richOps, ArrayList<ContentProviderOperation> ops) {
 		// May be called from outside the core, so be sure the number format is international before doing the queries
 		String contact = PhoneUtils.extractNumberFromUri(newInfo.getContact());
 
+		// The cached info is not valid anymore
+		contactInfoCache.invalidate(contact);
+
 		// Check if we have an entry for the contact
 		boolean hasEntryInRichAddressBook = false;
 		Cursor cur = ctx.getContentResolver().query(RichAddressBookData.CONTENT_URI,
@@ -599,6 +647,19 @@ public final class ContactsManager {
 		// Save registration state
 		values.put(RichAddressBookData.KEY_REGISTRATION_STATE, newInfo.getRegistrationState());
 
+        if (richOps != null) {
+            // Deferred update
+            if (hasEntryInRichAddressBook) {
+                richOps.add(ContentProviderOperation.newUpdate(RichAddressBookData.CONTENT_URI)
+                        .withValues(values)
+                        .withSelection(RichAddressBookData.KEY_CONTACT_NUMBER + "=?", new String[] { contact })
+                        .build());
+            } else {
+                richOps.add(ContentProviderOperation.newInsert(RichAddressBookData.CONTENT_URI)
+                        .withValues(values)
+                        .build());
+            }
+        } else
         if (hasEntryInRichAddressBook) {
             // Update
             ctx.getContentResolver().update(RichAddressBookData.CONTENT_URI,
@@ -610,7 +671,7 @@ public final class ContactsManager {
         }
 
         // Save presence photo content
-        if (photoIcon != null) {
+        if ((photoIcon != null) && (richOps == null)) {
             byte photoContent[] = photoIcon.getContent();
             if (photoContent != null) {
                 int rowId = getProfileRowId(contact);
@@ -634,6 +695,9 @@ public final class ContactsManager {
             }
         }
 
+        // Drop any info cached by a concurrent read during the update
+        contactInfoCache.invalidate(contact);
+
         // Get all the Ids from raw contacts that have this phone number
         List<Long> rawContactIds = getRawContactIdsFromPhoneNumber(contact);
         if (rawContactIds.isEmpty()) {
@@ -642,7 +706,6 @@ public final class ContactsManager {
         }
 
         // For each, prepare the modifications
-        ArrayList<ContentProviderOperation> ops = new ArrayList<ContentProviderOperation>();
         for (int i = 0; i < rawContactIds.size(); i++) {
             long rawContactId = rawContactIds.get(i);
             // Get the associated RCS raw contact id
@@ -796,11 +859,22 @@ public final class ContactsManager {
     			}
 			}
 		}
-		
+	}
+
+	/**
+	 * Apply modifications in batch to a provider
+	 * 
+	 * @param authority Authority of the provider
+	 * @param ops Modifications
+	 * @throws ContactsManagerException
+	 */
+	private void applyBatch(String authority, ArrayList<ContentProviderOperation> ops) throws ContactsManagerException {
 		if (!ops.isEmpty()){
 			// Do the actual database modifications
 			try {
-				ctx.getContentResolver().applyBatch(ContactsContract.AUTHORITY, ops);
+				long startTime = System.nanoTime();
+				ctx.getContentResolver().applyBatch(authority, ops);
+				WRITE_LATENCY.recordMicrosSince(startTime);
 			} catch (RemoteException e) {
 				if (logger.isActivated()){
 					logger.error("Something went wrong when updating the database with the contact info",e);
@@ -878,15 +952,54 @@ public final class ContactsManager {
 	public ContactInfo getContactInfo(String contact) {
 		// May be called from outside the core, so be sure the number format is international before doing the queries 
 		contact = PhoneUtils.extractNumberFromUri(contact);
-		
+
+		// Check the cache first
+		ContactInfo infos = contactInfoCache.get(contact);
+		if (infos != null) {
+			return infos;
+		}
+
+		// Take the version before the read, so that a concurrent invalidation
+		// prevents the result from being cached
+		long version = contactInfoCache.getVersion(contact);
+		long startTime = System.nanoTime();
+		infos = readContactInfo(contact);
+		READ_LATENCY.recordMicrosSince(startTime);
+		boolean stored = (infos != null);
+		if (!stored) {
+			infos = createContactInfo(contact);
+		}
+		contactInfoCache.put(contact, infos, stored, version);
+		return infos;
+	}
+
+	/**
+	 * Create the default infos of a contact which is not in the EAB
+	 * 
+	 * @param contact Contact
+	 * @return Contact info
+	 */
+	private ContactInfo createContactInfo(String contact) {
 		ContactInfo infos = new ContactInfo();
 		infos.setRcsStatus(ContactInfo.NO_INFO);
 		infos.setRcsStatusTimestamp(System.currentTimeMillis());
 		infos.setContact(contact);		
+		infos.setRegistrationState(ContactInfo.REGISTRATION_STATUS_UNKNOWN);
+		infos.setPresenceInfo(new PresenceInfo());
+		infos.setCapabilities(new Capabilities());
+		return infos;
+	}
+
+	/**
+	 * Read the infos of a contact from the EAB
+	 * 
+	 * @param contact Contact
+	 * @return Contact info or null if the contact is not in the EAB
+	 */
+	private ContactInfo readContactInfo(String contact) {
+		ContactInfo infos = null;
 		Capabilities capabilities = new Capabilities();
 		PresenceInfo presenceInfo = new PresenceInfo();
-		
-		infos.setRegistrationState(ContactInfo.REGISTRATION_STATUS_UNKNOWN);
 
 		Cursor cur = ctx.getContentResolver().query(RichAddressBookData.CONTENT_URI,
 				null,
@@ -895,6 +1008,8 @@ public final class ContactsManager {
 				null);
 		if (cur != null) {
 			if (cur.moveToFirst()) {
+				infos = createContactInfo(contact);
+
                 // Get RCS Status
                 infos.setRcsStatus(cur.getInt(cur.getColumnIndex(RichAddressBookData.KEY_RCS_STATUS)));
                 infos.setRcsStatusTimestamp(cur.getLong(cur.getColumnIndex(RichAddressBookData.KEY_RCS_STATUS_TIMESTAMP)));
@@ -979,9 +1094,10 @@ public final class ContactsManager {
 			cur.close();
 		}
 		
-		infos.setPresenceInfo(presenceInfo);
-		infos.setCapabilities(capabilities);
-
+		if (infos != null) {
+			infos.setPresenceInfo(presenceInfo);
+			infos.setCapabilities(capabilities);
+		}
 		return infos;
 	}
 
@@ -1329,6 +1445,7 @@ public final class ContactsManager {
 	public void flushContactProvider(){
 		String where = RichAddressBookData.KEY_CONTACT_NUMBER +"<> NULL";
 		ctx.getContentResolver().delete(RichAddressBookData.CONTENT_URI, where, null);
+		contactInfoCache.invalidateAll();
 	}
 	
 	/**
@@ -1338,7 +1455,8 @@ public final class ContactsManager {
 	 * @param RCS status
 	 */
 	public void modifyRcsContactInProvider(String contact, int rcsStatus){
-		
+		contactInfoCache.invalidate(contact);
+
 		// Check if an add or a modify must be done
 		Cursor cursor = ctx.getContentResolver().query(RichAddressBookData.CONTENT_URI, 
 				new String[]{RichAddressBookData.KEY_ID}, 
@@ -1466,6 +1584,38 @@ public final class ContactsManager {
 		return numbers;
 	}
 
+	/**
+	 * Get the capability timestamp of all the contacts in the rich address book provider
+	 * <br>Contacts which have never been enriched with capabilities have a timestamp equal to 0
+	 * 
+	 * @return Map of contact to capability timestamp
+	 */
+	public Map<String, Long> getCapabilityTimestamps(){
+		Map<String, Long> timestamps = new HashMap<String, Long>();
+		String[] projection = {
+                RichAddressBookData.KEY_CONTACT_NUMBER,
+                RichAddressBookData.KEY_RCS_STATUS,
+                RichAddressBookData.KEY_CAPABILITY_TIMESTAMP
+        };
+
+        Cursor cur = ctx.getContentResolver().query(RichAddressBookData.CONTENT_URI, 
+        		projection, 
+        		null, 
+        		null, 
+        		null);
+		if (cur != null) {
+			while (cur.moveToNext()) {
+				long timestamp = 0L;
+				if (cur.getInt(1) != ContactInfo.NO_INFO) {
+					timestamp = cur.getLong(2);
+				}
+				timestamps.put(cur.getString(0), timestamp);
+			}
+			cur.close();
+		}
+		return timestamps;
+	}
+
     /**
 	 * Get blocked RCS contacts in the rich address book provider
 	 * 
@@ -1560,6 +1710,8 @@ public final class ContactsManager {
 	 * @param contact
 	 */
 	public void removeCancelledPresenceInvitation(String contact){
+		contactInfoCache.invalidate(contact);
+
         // Remove entry from rich address book provider
 		ctx.getContentResolver().delete(RichAddressBookData.CONTENT_URI, 
 				RichAddressBookData.KEY_CONTACT_NUMBER +"=?" + " AND " + RichAddressBookData.KEY_PRESENCE_SHARING_STATUS + "=?",
@@ -2523,6 +2675,71 @@ public final class ContactsManager {
 
 		// Get the current information on this contact 
 		ContactInfo oldInfo = getContactInfo(contact);
+		ContactInfo newInfo = buildContactInfo(oldInfo, capabilities, contactType, registrationState);
+
+		// Save the modifications
+		try {
+			setContactInfo(newInfo, oldInfo);
+		} catch (ContactsManagerException e) {
+			if (logger.isActivated()){
+				logger.error("Could not save the contact modifications",e);
+			}
+		}
+	}
+
+	/**
+	 * Set the capabilities of several contacts
+	 * <br>All the modifications are applied in a single batch on each provider.
+	 * 
+	 * @param capabilities Capabilities indexed by contact
+	 * @param contactType Contact type
+	 * @param registrationState Three possible values : online/offline/unknown
+	 */
+	public void setContactsCapabilities(Map<String, Capabilities> capabilities, int contactType, int registrationState) {
+		if (logger.isActivated()) {
+			logger.info("Set capabilities for " + capabilities.size() + " contacts");
+		}
+
+		ArrayList<ContentProviderOperation> richOps = new ArrayList<ContentProviderOperation>();
+		ArrayList<ContentProviderOperation> ops = new ArrayList<ContentProviderOperation>();
+		Set<String> contacts = new HashSet<String>();
+		for (Iterator<Map.Entry<String, Capabilities>> it = capabilities.entrySet().iterator(); it.hasNext();) {
+			Map.Entry<String, Capabilities> entry = it.next();
+			String contact = PhoneUtils.extractNumberFromUri(entry.getKey());
+			if (!contacts.add(contact)) {
+				// Already treated
+				continue;
+			}
+			ContactInfo oldInfo = getContactInfo(contact);
+			ContactInfo newInfo = buildContactInfo(oldInfo, entry.getValue(), contactType, registrationState);
+			prepareContactInfo(newInfo, oldInfo, richOps, ops);
+		}
+
+		// Save the modifications
+		try {
+			applyBatch(RichAddressBookData.CONTENT_URI.getAuthority(), richOps);
+			applyBatch(ContactsContract.AUTHORITY, ops);
+		} catch (ContactsManagerException e) {
+			if (logger.isActivated()){
+				logger.error("Could not save the contacts modifications",e);
+			}
+		} finally {
+			for (Iterator<String> it = contacts.iterator(); it.hasNext();) {
+				contactInfoCache.invalidate(it.next());
+			}
+		}
+	}
+
+	/**
+	 * Build the new info of a contact from its new capabilities
+	 * 
+	 * @param oldInfo Current contact info
+	 * @param capabilities Capabilities
+	 * @param contactType Contact type
+	 * @param registrationState Three possible values : online/offline/unknown
+	 * @return New contact info
+	 */
+	private ContactInfo buildContactInfo(ContactInfo oldInfo, Capabilities capabilities, int contactType, int registrationState) {
 		ContactInfo newInfo = new ContactInfo(oldInfo);
 		
 		// Set the contact type 
@@ -2580,15 +2797,7 @@ public final class ContactsManager {
 		
 		// Add the capabilities
 		newInfo.setCapabilities(capabilities);
-
-		// Save the modifications
-		try {
-			setContactInfo(newInfo, oldInfo);
-		} catch (ContactsManagerException e) {
-			if (logger.isActivated()){
-				logger.error("Could not save the contact modifications",e);
-			}
-		}
+		return newInfo;
 	}
 	
 	/**
@@ -3351,6 +3560,131 @@ public final class ContactsManager {
 		return result;
     }
     
+    /**
+     * Utility to get, in batch, the phone numbers having an entry in the rich address book provider
+     *
+     * @param phoneNumbers Phone numbers in international format
+     * @return Set of phone numbers having an entry in the rich address book provider
+     */
+    public Set<String> getRcsAssociatedNumbers(final Collection<String> phoneNumbers) {
+        Set<String> result = new HashSet<String>();
+        List<String[]> chunks = splitSelectionArgs(phoneNumbers);
+        for (int i = 0; i < chunks.size(); i++) {
+            String[] args = chunks.get(i);
+            Cursor cur = ctx.getContentResolver().query(RichAddressBookData.CONTENT_URI,
+                    new String[]{RichAddressBookData.KEY_CONTACT_NUMBER},
+                    RichAddressBookData.KEY_CONTACT_NUMBER + " IN (" + getSelectionPlaceholders(args.length) + ")",
+                    args,
+                    null);
+            if (cur != null) {
+                while (cur.moveToNext()) {
+                    result.add(cur.getString(0));
+                }
+                cur.close();
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Utility to get, in batch, the raw contacts which are SIM accounts
+     *
+     * @param rawContactIds Raw contact ids
+     * @return Set of raw contact ids associated to a SIM account
+     */
+    public Set<Long> getSimAccountRawContactIds(final Collection<Long> rawContactIds) {
+        Set<Long> result = new HashSet<Long>();
+        List<String[]> chunks = splitSelectionArgs(rawContactIds);
+        for (int i = 0; i < chunks.size(); i++) {
+            String[] args = chunks.get(i);
+            String[] selectionArgs = new String[args.length + 1];
+            selectionArgs[0] = SIM_ACCOUNT_NAME;
+            System.arraycopy(args, 0, selectionArgs, 1, args.length);
+            Cursor cur = ctx.getContentResolver().query(RawContacts.CONTENT_URI,
+                    new String[]{RawContacts._ID},
+                    RawContacts.ACCOUNT_TYPE + "=? AND " + RawContacts._ID + " IN (" + getSelectionPlaceholders(args.length) + ")",
+                    selectionArgs,
+                    null);
+            if (cur != null) {
+                while (cur.moveToNext()) {
+                    result.add(cur.getLong(0));
+                }
+                cur.close();
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Utility to get, in batch, the RCS numbers aggregated to raw contacts
+     *
+     * @param rawContactIds Raw contact ids
+     * @return Map of raw contact id to the set of RCS numbers it is associated with
+     */
+    public Map<Long, Set<String>> getAssociatedRcsNumbers(final Collection<Long> rawContactIds) {
+        Map<Long, Set<String>> result = new HashMap<Long, Set<String>>();
+        List<String[]> chunks = splitSelectionArgs(rawContactIds);
+        for (int i = 0; i < chunks.size(); i++) {
+            String[] args = chunks.get(i);
+            Cursor cur = ctx.getContentResolver().query(AggregationData.CONTENT_URI,
+                    new String[]{AggregationData.KEY_RAW_CONTACT_ID, AggregationData.KEY_RCS_NUMBER},
+                    AggregationData.KEY_RAW_CONTACT_ID + " IN (" + getSelectionPlaceholders(args.length) + ")",
+                    args,
+                    null);
+            if (cur != null) {
+                while (cur.moveToNext()) {
+                    Long rawContactId = cur.getLong(0);
+                    Set<String> numbers = result.get(rawContactId);
+                    if (numbers == null) {
+                        numbers = new HashSet<String>();
+                        result.put(rawContactId, numbers);
+                    }
+                    numbers.add(cur.getString(1));
+                }
+                cur.close();
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Split values into arrays of selection arguments small enough for a single query
+     *
+     * @param values Values
+     * @return List of selection arguments
+     */
+    private static List<String[]> splitSelectionArgs(final Collection<?> values) {
+        List<String[]> chunks = new ArrayList<String[]>();
+        Iterator<?> it = values.iterator();
+        int remaining = values.size();
+        while (remaining > 0) {
+            String[] chunk = new String[Math.min(remaining, MAX_SELECTION_ARGS)];
+            for (int i = 0; i < chunk.length; i++) {
+                chunk[i] = String.valueOf(it.next());
+            }
+            chunks.add(chunk);
+            remaining -= chunk.length;
+        }
+        return chunks;
+    }
+
+    /**
+     * Build the "?" placeholders of an "IN" selection
+     *
+     * @param count Number of arguments
+     * @return Placeholders separated by commas
+     */
+    private static String getSelectionPlaceholders(final int count) {
+        StringBuilder placeholders = new StringBuilder(count * 2);
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                placeholders.append(',');
+            }
+            placeholders.append('?');
+        }
+        return placeholders.toString();
+    }
+
     /**
      * Utility to get access to Android's PHONE_NUMBERS_EQUAL SQL function.
      *
@@ -4221,6 +4555,7 @@ public final class ContactsManager {
     public void cleanRCSEntries() {
         cleanRCSRawContactsInAB();
         cleanEntriesInRichAB();
+        contactInfoCache.invalidateAll();
     }
 
     /**
@@ -4367,8 +4702,29 @@ public final class ContactsManager {
 
         // Delete presence data
         ctx.getContentResolver().delete(RichAddressBookData.CONTENT_URI, null, null);
+        contactInfoCache.invalidateAll();
     }
     
+    /**
+     * Invalidate the cached contact infos
+     * <br>To be called when the address book has been modified outside of this manager
+     */
+    public void invalidateContactInfoCache() {
+        contactInfoCache.invalidateAll();
+        if (logger.isActivated()) {
+            logger.debug("Contact info cache invalidated: " + contactInfoCache);
+        }
+    }
+
+    /**
+     * Returns the contact info cache, for metrics purpose
+     *
+     * @return Cache
+     */
+    public ContactInfoCache getContactInfoCache() {
+        return contactInfoCache;
+    }
+
     /**
      * Get the vCard file associated to a contact
      *
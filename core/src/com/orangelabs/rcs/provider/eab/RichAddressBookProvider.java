@@ -19,11 +19,15 @@
 package com.orangelabs.rcs.provider.eab;
 
 import java.io.FileNotFoundException;
+import java.util.ArrayList;
 
 import android.content.ContentProvider;
+import android.content.ContentProviderOperation;
+import android.content.ContentProviderResult;
 import android.content.ContentUris;
 import android.content.ContentValues;
 import android.content.Context;
+import android.content.OperationApplicationException;
 import android.content.UriMatcher;
 import android.database.Cursor;
 import android.database.SQLException;
@@ -349,6 +353,22 @@ public class RichAddressBookProvider extends ContentProvider {
 		return count;
 	}
 
+	/**
+	 * Apply a batch of operations in a single database transaction
+	 */
+	@Override
+	public ContentProviderResult[] applyBatch(ArrayList<ContentProviderOperation> operations) throws OperationApplicationException {
+		SQLiteDatabase db = openHelper.getWritableDatabase();
+		db.beginTransaction();
+		try {
+			ContentProviderResult[] results = super.applyBatch(operations);
+			db.setTransactionSuccessful();
+			return results;
+		} finally {
+			db.endTransaction();
+		}
+	}
+
 	@Override
 	public ParcelFileDescriptor openFile(Uri uri, String mode) throws FileNotFoundException {
 		if (uriMatcher.match(uri) != CONTACT_ID) {
@@ -54,6 +54,25 @@ public class EventLogData {
 	public static final String KEY_EVENT_SIZE = "size";
 	public static final String KEY_EVENT_TOTAL_SIZE = "total_size";
 	public static final String KEY_EVENT_CHAT_ID = "chat_id";
+	
+	/**
+	 * Key of an event in a page: unique across the sources of the events,
+	 * it orders the events having the same date
+	 */
+	public static final String KEY_EVENT_PAGE_KEY = "page_key";
+	
+	/**
+	 * URI query parameters of a page of events. A page contains at most "limit"
+	 * events, sorted by date then page key. The events are the most recent ones
+	 * older than the "before" date and page key, or the oldest ones more recent
+	 * than the "after" date and page key (then sorted in ascending order).
+	 * Without key, the page contains the most recent events.
+	 */
+	public static final String PARAM_LIMIT = "limit";
+	public static final String PARAM_BEFORE_DATE = "before_date";
+	public static final String PARAM_BEFORE_KEY = "before_key";
+	public static final String PARAM_AFTER_DATE = "after_date";
+	public static final String PARAM_AFTER_KEY = "after_key";
 	
 	/**
 	 * Values representing the direction of the event.
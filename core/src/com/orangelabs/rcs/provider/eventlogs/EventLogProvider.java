@@ -59,6 +59,94 @@ public class EventLogProvider extends ContentProvider {
 	private Logger logger = Logger.getLogger(this.getClass().getName());
 	
 	private SQLiteOpenHelper openHelper;
+
+	/**
+	 * Selection of the spam box entries: spam messages, without the "terminated"
+	 * entries and the group chat entries
+	 */
+	private static final String SPAM_BOX_FILTER = "NOT ((type = "
+			+ EventsLogApi.TYPE_CHAT_SYSTEM_MESSAGE
+			+ ") AND ((status = " + EventsLogApi.STATUS_TERMINATED
+			+ " ) OR (status = "
+			+ EventsLogApi.STATUS_TERMINATED_BY_REMOTE
+			+ ") OR (status = "
+			+ EventsLogApi.STATUS_TERMINATED_BY_USER + ")))"
+			+ " AND NOT ( type = "
+			+ EventsLogApi.TYPE_GROUP_CHAT_SYSTEM_MESSAGE
+			+ " OR type = "
+			+ EventsLogApi.TYPE_INCOMING_GROUP_CHAT_MESSAGE
+			+ " OR type = "
+			+ EventsLogApi.TYPE_OUTGOING_GROUP_CHAT_MESSAGE + " )"
+			+ " AND ( " + RichMessagingData.KEY_IS_SPAM + "="
+			+ EventsLogApi.MESSAGE_IS_SPAM + " )";
+
+	/**
+	 * Additional selection of the one to one chat entries: no "terminated" entry,
+	 * no group chat entry and no spam message
+	 */
+	private static final String ONE_TO_ONE_CHAT_FILTER = " AND NOT ((type = "
+			+ EventsLogApi.TYPE_CHAT_SYSTEM_MESSAGE
+			+ ") AND ((status = " + EventsLogApi.STATUS_TERMINATED
+			+ ") OR (status = "
+			+ EventsLogApi.STATUS_TERMINATED_BY_REMOTE
+			+ ") OR (status = "
+			+ EventsLogApi.STATUS_TERMINATED_BY_USER + ")))"
+			+ " AND NOT ( type = "
+			+ EventsLogApi.TYPE_GROUP_CHAT_SYSTEM_MESSAGE
+			+ " OR type = "
+			+ EventsLogApi.TYPE_INCOMING_GROUP_CHAT_MESSAGE
+			+ " OR type = "
+			+ EventsLogApi.TYPE_OUTGOING_GROUP_CHAT_MESSAGE + " )"
+			+ " AND NOT( " + RichMessagingData.KEY_IS_SPAM
+			+ "=" + EventsLogApi.MESSAGE_IS_SPAM + " )";
+
+	/**
+	 * Additional selection of the group chat entries: no system entry
+	 */
+	private static final String GROUP_CHAT_FILTER = " AND NOT type = "
+			+ EventsLogApi.TYPE_GROUP_CHAT_SYSTEM_MESSAGE;
+
+	/**
+	 * Columns of a page of events
+	 */
+	private static final String[] PAGE_COLUMNS = new String[] {
+			EventLogData.KEY_EVENT_ROW_ID,
+			EventLogData.KEY_EVENT_TYPE,
+			EventLogData.KEY_EVENT_SESSION_ID,
+			EventLogData.KEY_EVENT_DATE,
+			EventLogData.KEY_EVENT_CONTACT,
+			EventLogData.KEY_EVENT_STATUS,
+			EventLogData.KEY_EVENT_DATA,
+			EventLogData.KEY_EVENT_MESSAGE_ID,
+			EventLogData.KEY_EVENT_MIMETYPE,
+			EventLogData.KEY_EVENT_NAME,
+			EventLogData.KEY_EVENT_SIZE,
+			EventLogData.KEY_EVENT_TOTAL_SIZE,
+			EventLogData.KEY_EVENT_IS_SPAM,
+			EventLogData.KEY_EVENT_CHAT_ID,
+			EventLogData.KEY_EVENT_PAGE_KEY
+	};
+
+	/**
+	 * Number of sources of the page keys: the page key of an event is its row ID
+	 * times this number plus the index of its source
+	 */
+	private static final int PAGE_KEY_SOURCES = 8;
+
+	/**
+	 * Sources of the page keys
+	 */
+	private static final int SOURCE_RICH_MESSAGING = 0;
+	private static final int SOURCE_RICH_CALL = 1;
+	private static final int SOURCE_IPCALL = 2;
+	private static final int SOURCE_SMS = 3;
+	private static final int SOURCE_MMS = 4;
+
+	/**
+	 * Alias of the rich messaging table in the query of the sessions
+	 */
+	private static final String SESSION_ALIAS = "e";
+
 	/**
 	 * The uriMatcher that define all cases to be treated. Requests are not made on an unique table in an unique database so we define Uris to implement 
 	 * each cases of filters.
@@ -158,6 +246,13 @@ public class EventLogProvider extends ContentProvider {
 		String ipCallSelectQuery = null;
 		int match = uriMatcher.match(uri);
 
+		if (uri.getQueryParameter(EventLogData.PARAM_LIMIT) != null) {
+			// Keyset paging
+			sortCursor = queryPage(uri, match, selection);
+			sortCursor.setNotificationUri(getContext().getContentResolver(), uri);
+			return sortCursor;
+		}
+
 		switch (match) {
 
 		case EventsLogApi.MODE_SPAM_BOX:
@@ -167,26 +262,8 @@ public class EventLogProvider extends ContentProvider {
 			} else {
 				selection = "";
 			}
-			// Do not take the "terminated" entries
-			extraSelection += "NOT ((type = "
-					+ EventsLogApi.TYPE_CHAT_SYSTEM_MESSAGE
-					+ ") AND ((status = " + EventsLogApi.STATUS_TERMINATED
-					+ " ) OR (status = "
-					+ EventsLogApi.STATUS_TERMINATED_BY_REMOTE
-					+ ") OR (status = "
-					+ EventsLogApi.STATUS_TERMINATED_BY_USER + ")))";
-
-			// Filter the logs where this contact was involved in a group chat
-			// with us
-			extraSelection += " AND NOT ( type = "
-					+ EventsLogApi.TYPE_GROUP_CHAT_SYSTEM_MESSAGE
-					+ " OR type = "
-					+ EventsLogApi.TYPE_INCOMING_GROUP_CHAT_MESSAGE
-					+ " OR type = "
-					+ EventsLogApi.TYPE_OUTGOING_GROUP_CHAT_MESSAGE + " )";
-			// Take only the spam messages
-			extraSelection += " AND ( " + RichMessagingData.KEY_IS_SPAM + "="
-					+ EventsLogApi.MESSAGE_IS_SPAM + " )";
+			// Do not take the "terminated" entries, the group chat entries, take only the spam messages
+			extraSelection += SPAM_BOX_FILTER;
 
 			if (sortOrderOriginal != null && sortOrderOriginal.length() > 0) {
 				sortOrder = sortOrderOriginal;
@@ -204,25 +281,8 @@ public class EventLogProvider extends ContentProvider {
 			break;
 
 		case EventsLogApi.MODE_ONE_TO_ONE_CHAT:
-			// Do not take the "terminated" entries
-			extraSelection = " AND NOT ((type = "
-					+ EventsLogApi.TYPE_CHAT_SYSTEM_MESSAGE
-					+ ") AND ((status = " + EventsLogApi.STATUS_TERMINATED
-					+ ") OR (status = "
-					+ EventsLogApi.STATUS_TERMINATED_BY_REMOTE
-					+ ") OR (status = "
-					+ EventsLogApi.STATUS_TERMINATED_BY_USER + ")))";
-			// Filter the logs where this contact was involved in a group chat
-			// with us
-			extraSelection += " AND NOT ( type = "
-					+ EventsLogApi.TYPE_GROUP_CHAT_SYSTEM_MESSAGE
-					+ " OR type = "
-					+ EventsLogApi.TYPE_INCOMING_GROUP_CHAT_MESSAGE
-					+ " OR type = "
-					+ EventsLogApi.TYPE_OUTGOING_GROUP_CHAT_MESSAGE + " )";
-			// Do not take the spam messages
-			extraSelection += " AND NOT( " + RichMessagingData.KEY_IS_SPAM
-					+ "=" + EventsLogApi.MESSAGE_IS_SPAM + " )";
+			// Do not take the "terminated" entries, the group chat entries and the spam messages
+			extraSelection = ONE_TO_ONE_CHAT_FILTER;
 
 			if (sortOrderOriginal != null) {
 				sortOrder = sortOrderOriginal;
@@ -239,8 +299,7 @@ public class EventLogProvider extends ContentProvider {
 			break;
 
 		case EventsLogApi.MODE_GROUP_CHAT:
-			extraSelection = " AND NOT type = "
-					+ EventsLogApi.TYPE_GROUP_CHAT_SYSTEM_MESSAGE;
+			extraSelection = GROUP_CHAT_FILTER;
 			if (sortOrderOriginal != null)
 				sortOrder = sortOrderOriginal;
 			else
@@ -888,11 +947,245 @@ private static Set<String> columnsPresentInIPCallTable = new HashSet<String>(Arr
 		selection = getThreadIdSelection(selection);
 
 		Cursor smsCursor = getContext().getContentResolver().query(EventLogData.SMS_URI,smsProjection, selection , null, sortOrder);	
-		Cursor mmsCursor = getMMSCursor(selection);
+		Cursor mmsCursor = getMMSCursor(selection, null);
 		Cursor sortCursor = new SortCursor(new Cursor[]{smsCursor,mmsCursor},EventLogData.KEY_EVENT_DATE,SortCursor.TYPE_NUMERIC,false);	
 		return sortCursor;
 	}
 
+	/**
+	 * Query a page of the Android MmsSms table: each table is limited to the page size
+	 * 
+	 * @param selection Numbers selection
+	 * @param ascending Sort order
+	 * @param keyDate Date of the page key or -1
+	 * @param key Page key
+	 * @param limit Page size
+	 * @return Cursor sorted by date then page key
+	 */
+	private Cursor queryMmsSmsPage(String selection, boolean ascending, long keyDate, long key, int limit) {
+		selection = getThreadIdSelection(selection);
+		String direction = ascending ? " ASC" : " DESC";
+		String smsSelection = selection;
+		String mmsSelection = selection;
+		if (keyDate >= 0) {
+			smsSelection += " AND " + buildPageFilter(SOURCE_SMS, KEY_SMS_DATE, BaseColumns._ID, ascending, keyDate, key);
+			// MMS dates are in seconds
+			mmsSelection += " AND " + buildPageFilter(SOURCE_MMS, "date*1000", BaseColumns._ID, ascending, keyDate, key);
+		}
+		String[] projection = Arrays.copyOf(smsProjection, smsProjection.length + 1);
+		projection[smsProjection.length] = buildPageKey(SOURCE_SMS, BaseColumns._ID) + " AS " + EventLogData.KEY_EVENT_PAGE_KEY;
+		Cursor smsCursor = getContext().getContentResolver().query(EventLogData.SMS_URI, projection, smsSelection, null,
+				KEY_SMS_DATE + direction + ", " + BaseColumns._ID + direction + " LIMIT " + limit);
+		Cursor mmsCursor = getMMSCursor(mmsSelection, "date" + direction + ", " + BaseColumns._ID + direction + " LIMIT " + limit);
+		return new SortCursor(new Cursor[]{smsCursor,mmsCursor},EventLogData.KEY_EVENT_DATE,EventLogData.KEY_EVENT_PAGE_KEY,ascending);
+	}
+
+	/**
+	 * Build a cursor on a page of events. Each source query is filtered by the page
+	 * key and limited to the page size, so the cost of a page does not depend on the
+	 * size of the history. The RCS tables are merged by SQLite, the SMS/MMS ones by
+	 * a streaming merge which stops at the page size.
+	 * 
+	 * @param uri Uri with the page parameters
+	 * @param match Mode
+	 * @param selection Numbers selection
+	 * @return Cursor sorted by date then page key
+	 */
+	private Cursor queryPage(Uri uri, int match, String selection) {
+		int limit = Integer.parseInt(uri.getQueryParameter(EventLogData.PARAM_LIMIT));
+		boolean ascending = false;
+		String date = uri.getQueryParameter(EventLogData.PARAM_BEFORE_DATE);
+		String pageKey = uri.getQueryParameter(EventLogData.PARAM_BEFORE_KEY);
+		if (date == null) {
+			date = uri.getQueryParameter(EventLogData.PARAM_AFTER_DATE);
+			pageKey = uri.getQueryParameter(EventLogData.PARAM_AFTER_KEY);
+			ascending = (date != null);
+		}
+		long keyDate = -1;
+		long key = ascending ? Long.MIN_VALUE : Long.MAX_VALUE;
+		if (date != null) {
+			keyDate = Long.parseLong(date);
+			if (pageKey != null) {
+				key = Long.parseLong(pageKey);
+			}
+		}
+		if ((match < EventsLogApi.MODE_NONE) || (match > EventsLogApi.MODE_SPAM_BOX)) {
+			throw new IllegalArgumentException("Unknown URI " + uri);
+		}
+
+		// Limit each RCS source then merge them
+		List<Cursor> cursors = new ArrayList<Cursor>();
+		String query = buildPageQuery(match, selection, ascending, keyDate, key, limit);
+		if (query != null) {
+			SQLiteDatabase db = openHelper.getReadableDatabase();
+			cursors.add(db.rawQuery(query, null));
+		}
+		boolean sms = (match == EventsLogApi.MODE_NONE)
+				|| ((match <= EventsLogApi.MODE_IPCALL_RC_CHAT_FT_SMS) && ((match & EventsLogApi.MODE_SMS) != 0));
+		if (sms) {
+			cursors.add(queryMmsSmsPage(selection, ascending, keyDate, key, limit));
+		}
+		if (cursors.size() == 1 && !sms) {
+			return cursors.get(0);
+		}
+		Cursor merge = new SortCursor(cursors.toArray(new Cursor[cursors.size()]),
+				EventLogData.KEY_EVENT_DATE, EventLogData.KEY_EVENT_PAGE_KEY, ascending);
+		return copyPage(merge, limit);
+	}
+
+	/**
+	 * Build the query of a page of the RCS events of a mode. The page key filter is
+	 * applied to each table so that the (date, row ID) indexes select the range, and
+	 * each table is limited to the page size before the union.
+	 * 
+	 * @param match Mode
+	 * @param selection Numbers selection
+	 * @param ascending Sort order
+	 * @param keyDate Date of the page key or -1
+	 * @param key Page key
+	 * @param limit Page size
+	 * @return Query sorted by date then page key, or null if the mode has no RCS event
+	 */
+	static String buildPageQuery(int match, String selection, boolean ascending, long keyDate, long key, int limit) {
+		String messagingFilter = buildPageFilter(SOURCE_RICH_MESSAGING, RichMessagingData.KEY_TIMESTAMP,
+				RichMessagingData.KEY_ID, ascending, keyDate, key);
+		String richCallFilter = buildPageFilter(SOURCE_RICH_CALL, RichCallData.KEY_TIMESTAMP,
+				RichCallData.KEY_ID, ascending, keyDate, key);
+		String ipCallFilter = buildPageFilter(SOURCE_IPCALL, IPCallData.KEY_TIMESTAMP,
+				IPCallData.KEY_ID, ascending, keyDate, key);
+
+		// Select the sources of the mode
+		List<String> subQueries = new ArrayList<String>();
+		switch (match) {
+		case EventsLogApi.MODE_SPAM_BOX:
+			subQueries.add(limitPageQuery(buildChatQuery(((selection != null && selection.length() > 0) ? selection + " AND " : "")
+					+ SPAM_BOX_FILTER, false, true, messagingFilter), SOURCE_RICH_MESSAGING, ascending, limit));
+			break;
+		case EventsLogApi.MODE_ONE_TO_ONE_CHAT:
+			subQueries.add(limitPageQuery(buildChatQuery(selection + ONE_TO_ONE_CHAT_FILTER, false, false,
+					messagingFilter), SOURCE_RICH_MESSAGING, ascending, limit));
+			break;
+		case EventsLogApi.MODE_GROUP_CHAT:
+			subQueries.add(limitPageQuery(buildChatQuery(selection + GROUP_CHAT_FILTER, false, false,
+					messagingFilter), SOURCE_RICH_MESSAGING, ascending, limit));
+			break;
+		case EventsLogApi.MODE_NONE:
+			subQueries.add(limitPageQuery(buildRichMessagingQuery(selection, false, false, messagingFilter),
+					SOURCE_RICH_MESSAGING, ascending, limit));
+			subQueries.add(limitPageQuery(buildRichCallQuery(selection, richCallFilter),
+					SOURCE_RICH_CALL, ascending, limit));
+			break;
+		default:
+			// The other modes are a combination of flags
+			boolean chat = (match & EventsLogApi.MODE_CHAT) != 0;
+			boolean ft = (match & EventsLogApi.MODE_FT) != 0;
+			if (chat || ft) {
+				subQueries.add(limitPageQuery(buildRichMessagingQuery(selection, !chat, !ft, messagingFilter),
+						SOURCE_RICH_MESSAGING, ascending, limit));
+			}
+			if ((match & EventsLogApi.MODE_RC) != 0) {
+				subQueries.add(limitPageQuery(buildRichCallQuery(selection, richCallFilter),
+						SOURCE_RICH_CALL, ascending, limit));
+			}
+			if ((match & EventsLogApi.MODE_IPCALL) != 0) {
+				subQueries.add(limitPageQuery(buildIPCallQuery(selection, ipCallFilter),
+						SOURCE_IPCALL, ascending, limit));
+			}
+		}
+
+		if (subQueries.isEmpty()) {
+			return null;
+		}
+		String direction = ascending ? " ASC" : " DESC";
+		String order = EventLogData.KEY_EVENT_DATE + direction + ", " + EventLogData.KEY_EVENT_PAGE_KEY + direction;
+		if (subQueries.size() == 1) {
+			return subQueries.get(0) + " ORDER BY " + order;
+		}
+		return new SQLiteQueryBuilder().buildUnionQuery(subQueries.toArray(new String[subQueries.size()]),
+				order, Integer.toString(limit));
+	}
+
+	/**
+	 * Limit the query of a source to the page size then add the page key. Within a
+	 * source the page key follows the row ID, so the rows are read in the order of
+	 * the (date, row ID) index and the read stops at the page size.
+	 * 
+	 * @param subQuery Query of the source
+	 * @param source Source of the page key
+	 * @param ascending Sort order
+	 * @param limit Page size
+	 * @return Query
+	 */
+	private static String limitPageQuery(String subQuery, int source, boolean ascending, int limit) {
+		String direction = ascending ? " ASC" : " DESC";
+		return "SELECT *, " + buildPageKey(source, EventLogData.KEY_EVENT_ROW_ID) + " AS "
+				+ EventLogData.KEY_EVENT_PAGE_KEY + " FROM (SELECT * FROM (" + subQuery + ") ORDER BY "
+				+ EventLogData.KEY_EVENT_DATE + direction + ", " + EventLogData.KEY_EVENT_ROW_ID + direction
+				+ " LIMIT " + limit + ")";
+	}
+
+	/**
+	 * Build the page key expression of a source
+	 * 
+	 * @param source Source
+	 * @param idColumn Row ID column
+	 * @return Expression
+	 */
+	private static String buildPageKey(int source, String idColumn) {
+		return "(" + idColumn + "*" + PAGE_KEY_SOURCES + "+" + source + ")";
+	}
+
+	/**
+	 * Build the selection of the events of a source after the page key. The date
+	 * bound alone lets the (date, row ID) index select the range.
+	 * 
+	 * @param source Source
+	 * @param dateColumn Date column
+	 * @param idColumn Row ID column
+	 * @param ascending Sort order
+	 * @param keyDate Date of the page key or -1
+	 * @param key Page key
+	 * @return Selection or null if there is no page key
+	 */
+	private static String buildPageFilter(int source, String dateColumn, String idColumn, boolean ascending,
+			long keyDate, long key) {
+		if (keyDate < 0) {
+			return null;
+		}
+		String operator = ascending ? ">" : "<";
+		return "(" + dateColumn + operator + "=" + keyDate + " AND (" + dateColumn + operator + keyDate
+				+ " OR " + buildPageKey(source, idColumn) + operator + key + "))";
+	}
+
+	/**
+	 * Copy the first rows of a merged cursor. The sources may have their columns in
+	 * a different order, so the values are copied by column name.
+	 * 
+	 * @param cursor Merged cursor, closed on return
+	 * @param limit Max number of rows
+	 * @return Cursor
+	 */
+	private static Cursor copyPage(Cursor cursor, int limit) {
+		MatrixCursor page = new MatrixCursor(PAGE_COLUMNS, limit);
+		List<String> columns = Arrays.asList(PAGE_COLUMNS);
+		try {
+			while ((page.getCount() < limit) && cursor.moveToNext()) {
+				Object[] row = new Object[PAGE_COLUMNS.length];
+				String[] names = cursor.getColumnNames();
+				for (int i = 0; i < names.length; i++) {
+					int index = columns.indexOf(names[i]);
+					if ((index != -1) && (row[index] == null)) {
+						row[index] = cursor.getString(i);
+					}
+				}
+				page.addRow(row);
+			}
+		} finally {
+			cursor.close();
+		}
+		return page;
+	}
+
 	private String getThreadIdSelection(String selection){
 		/* Unbuild selection */
 		selection = selection.substring(5,selection.length()-1);
@@ -930,9 +1223,10 @@ private static Set<String> columnsPresentInIPCallTable = new HashSet<String>(Arr
 	/**
 	 * Get MMS messages info from MMS tables according to the selection.
 	 * @param selection, selection must be constructed around thread_id parameter. See getThreadIdSelection().
+	 * @param sortOrder Sort order or null
 	 * @return
 	 */
-	private Cursor getMMSCursor(String selection) {
+	private Cursor getMMSCursor(String selection, String sortOrder) {
 		MatrixCursor matrixCursor = new MatrixCursor(new String[]{
 				EventLogData.KEY_EVENT_ROW_ID,
 				EventLogData.KEY_EVENT_DATE,
@@ -942,9 +1236,10 @@ private static Set<String> columnsPresentInIPCallTable = new HashSet<String>(Arr
 				EventLogData.KEY_EVENT_STATUS,
 				EventLogData.KEY_EVENT_CONTACT,
 				EventLogData.KEY_EVENT_TYPE,
-				EventLogData.KEY_EVENT_SESSION_ID});
+				EventLogData.KEY_EVENT_SESSION_ID,
+				EventLogData.KEY_EVENT_PAGE_KEY});
 
-		Cursor curPdu = getContext().getContentResolver().query(EventLogData.MMS_URI, null, selection, null, null);
+		Cursor curPdu = getContext().getContentResolver().query(EventLogData.MMS_URI, null, selection, null, sortOrder);
 		String id = null;
 		int dest;
 		String status = null;
@@ -1012,7 +1307,8 @@ private static Set<String> columnsPresentInIPCallTable = new HashSet<String>(Arr
 					status,
 					PhoneUtils.formatNumberToInternational(address),
 					type,
-					id});
+					id,
+					Long.parseLong(id) * PAGE_KEY_SOURCES + SOURCE_MMS});
 		}
 		curPdu.close();
 		
@@ -1027,7 +1323,20 @@ private static Set<String> columnsPresentInIPCallTable = new HashSet<String>(Arr
 	 * @param fileTransferFiltered True if we do not want file transfer entries
 	 * @return
 	 */
-	private String buildChatQuery(String selection, boolean chatFiltered, boolean fileTransferFiltered){
+	private static String buildChatQuery(String selection, boolean chatFiltered, boolean fileTransferFiltered){
+		return buildChatQuery(selection, chatFiltered, fileTransferFiltered, null);
+	}
+
+	/**
+	 * Build a Sql query for chat
+	 *
+	 * @param selection
+	 * @param chatFiltered True if we do not want chat entries
+	 * @param fileTransferFiltered True if we do not want file transfer entries
+	 * @param pageFilter Page key selection or null
+	 * @return
+	 */
+	private static String buildChatQuery(String selection, boolean chatFiltered, boolean fileTransferFiltered, String pageFilter){
 		
 		String selectionFilter = "";
 		if (chatFiltered){
@@ -1038,6 +1347,9 @@ private static Set<String> columnsPresentInIPCallTable = new HashSet<String>(Arr
 			selectionFilter+=" AND NOT ("+RichMessagingData.KEY_TYPE+"=="+EventsLogApi.TYPE_INCOMING_FILE_TRANSFER
 				+" OR "+RichMessagingData.KEY_TYPE+"==" + EventsLogApi.TYPE_OUTGOING_FILE_TRANSFER+")";
 		}
+		if (pageFilter != null) {
+			selectionFilter+=" AND "+pageFilter;
+		}
 		
 		SQLiteQueryBuilder builder = new SQLiteQueryBuilder();
 		builder.setTables("\""+RichMessagingProvider.TABLE+"\"");
@@ -1064,7 +1376,68 @@ private static Set<String> columnsPresentInIPCallTable = new HashSet<String>(Arr
 	 * @param fileTransferFiltered True if we do not want file transfer entries
 	 * @return
 	 */
-	private String buildRichMessagingQuery(String selection, boolean chatFiltered, boolean fileTransferFiltered){
+	private static String buildRichMessagingQuery(String selection, boolean chatFiltered, boolean fileTransferFiltered){
+		SQLiteQueryBuilder builder = new SQLiteQueryBuilder();
+		builder.setTables("\""+RichMessagingProvider.TABLE+"\"");
+		
+		// Group the result so we have just one row per session
+		String groupBy=EventLogData.KEY_EVENT_SESSION_ID;
+		return builder.buildUnionSubQuery(
+				EventLogData.KEY_EVENT_TYPE, 
+				unionRichMessagingColumns, 
+				columnsPresentInRichMessagingTable, 
+				unionRichMessagingColumns.length, 
+				EventLogData.KEY_EVENT_TYPE, 
+				buildRichMessagingSelection(selection, chatFiltered, fileTransferFiltered), 
+				null, 
+				groupBy, 
+				null);
+	}
+
+	/**
+	 * Build a Sql query to be part of a union query on the rcs Table, for a page
+	 * Get all RichMessaging of type 'type' for the specified Numbers in selection
+	 * If no type is specified, get all RichMessaging.
+	 * @param selection
+	 * @param chatFiltered True if we do not want chat entries
+	 * @param fileTransferFiltered True if we do not want file transfer entries
+	 * @param pageFilter Page key selection or null
+	 * @return
+	 */
+	private static String buildRichMessagingQuery(String selection, boolean chatFiltered, boolean fileTransferFiltered, String pageFilter){
+		String where = buildRichMessagingSelection(selection, chatFiltered, fileTransferFiltered);
+		
+		// Keep just one row per session, its most recent one: the session index finds
+		// it without grouping the whole table, so a page reads only its rows
+		String latest = " AND NOT EXISTS (SELECT 1 FROM \""+RichMessagingProvider.TABLE+"\" WHERE "
+				+ RichMessagingData.KEY_CHAT_SESSION_ID+"="+SESSION_ALIAS+"."+RichMessagingData.KEY_CHAT_SESSION_ID
+				+ " AND ("+RichMessagingData.KEY_TIMESTAMP+">"+SESSION_ALIAS+"."+RichMessagingData.KEY_TIMESTAMP
+				+ " OR ("+RichMessagingData.KEY_TIMESTAMP+"="+SESSION_ALIAS+"."+RichMessagingData.KEY_TIMESTAMP
+				+ " AND "+RichMessagingData.KEY_ID+">"+SESSION_ALIAS+"."+RichMessagingData.KEY_ID+")) AND "
+				+ where + ")";
+		
+		SQLiteQueryBuilder builder = new SQLiteQueryBuilder();
+		builder.setTables("\""+RichMessagingProvider.TABLE+"\" "+SESSION_ALIAS);
+		return builder.buildUnionSubQuery(
+				EventLogData.KEY_EVENT_TYPE, 
+				unionRichMessagingColumns, 
+				columnsPresentInRichMessagingTable, 
+				unionRichMessagingColumns.length, 
+				EventLogData.KEY_EVENT_TYPE, 
+				where + latest + (pageFilter!=null? " AND "+pageFilter : ""), 
+				null, 
+				null, 
+				null);
+	}
+
+	/**
+	 * Build the selection of the RichMessaging entries of the event log
+	 * @param selection
+	 * @param chatFiltered True if we do not want chat entries
+	 * @param fileTransferFiltered True if we do not want file transfer entries
+	 * @return
+	 */
+	private static String buildRichMessagingSelection(String selection, boolean chatFiltered, boolean fileTransferFiltered){
 		// Do not take the "terminated" rows for chat sessions
 		String selectionFilter = " NOT ("+RichMessagingData.KEY_TYPE+">="+EventsLogApi.TYPE_INCOMING_CHAT_MESSAGE + " AND "+
 			RichMessagingData.KEY_TYPE+"<="+EventsLogApi.TYPE_GROUP_CHAT_SYSTEM_MESSAGE+" AND ("+ RichMessagingData.KEY_STATUS+" == "+EventsLogApi.STATUS_TERMINATED +
@@ -1081,22 +1454,8 @@ private static Set<String> columnsPresentInIPCallTable = new HashSet<String>(Arr
 				+" OR "+RichMessagingData.KEY_TYPE+"==" + EventsLogApi.TYPE_OUTGOING_FILE_TRANSFER+")";
 		}
 		
-		SQLiteQueryBuilder builder = new SQLiteQueryBuilder();
-		builder.setTables("\""+RichMessagingProvider.TABLE+"\"");
-		
-		// Group the result so we have just one row per session
-		String groupBy=EventLogData.KEY_EVENT_SESSION_ID;
-		return builder.buildUnionSubQuery(
-				EventLogData.KEY_EVENT_TYPE, 
-				unionRichMessagingColumns, 
-				columnsPresentInRichMessagingTable, 
-				unionRichMessagingColumns.length, 
-				EventLogData.KEY_EVENT_TYPE, 
-				(selection!=null? RichMessagingData.KEY_CONTACT + selection + " AND "+ selectionFilter
-						: selectionFilter), 
-				null, 
-				groupBy, 
-				null);
+		return (selection!=null? RichMessagingData.KEY_CONTACT + selection + " AND "+ selectionFilter
+				: selectionFilter);
 	}
 		
 	/**
@@ -1105,7 +1464,18 @@ private static Set<String> columnsPresentInIPCallTable = new HashSet<String>(Arr
 	 * @param selection
 	 * @return
 	 */
-	private String buildRichCallQuery(String selection){
+	private static String buildRichCallQuery(String selection){
+		return buildRichCallQuery(selection, null);
+	}
+
+	/**
+	 * Build a Sql query to be part of a union query on the rcs Table
+	 * Get all RichCall for the specified Numbers in selection
+	 * @param selection
+	 * @param pageFilter Page key selection or null
+	 * @return
+	 */
+	private static String buildRichCallQuery(String selection, String pageFilter){
 		SQLiteQueryBuilder builder = new SQLiteQueryBuilder();
 		builder.setTables("\""+RichCallProvider.TABLE+"\"");
 		
@@ -1115,7 +1485,7 @@ private static Set<String> columnsPresentInIPCallTable = new HashSet<String>(Arr
 				columnsPresentInRichCallTable, 
 				unionRichCallColumns.length, 
 				"("+Integer.toString(EventsLogApi.TYPE_OUTGOING_RICH_CALL) + "||" + Integer.toString(EventsLogApi.TYPE_INCOMING_RICH_CALL) +")", 
-				(selection!=null?RichCallData.KEY_CONTACT+selection:null), 
+				concatSelection((selection!=null?RichCallData.KEY_CONTACT+selection:null), pageFilter), 
 				null, 
 				null, 
 				null);
@@ -1128,7 +1498,18 @@ private static Set<String> columnsPresentInIPCallTable = new HashSet<String>(Arr
 	 * @param selection
 	 * @return
 	 */
-	private String buildIPCallQuery(String selection){
+	private static String buildIPCallQuery(String selection){
+		return buildIPCallQuery(selection, null);
+	}
+
+	/**
+	 * Build a Sql query to be part of a union query on the rcs Table
+	 * Get all IP calls for the specified Numbers in selection
+	 * @param selection
+	 * @param pageFilter Page key selection or null
+	 * @return
+	 */
+	private static String buildIPCallQuery(String selection, String pageFilter){
 		SQLiteQueryBuilder builder = new SQLiteQueryBuilder();
 		builder.setTables("\""+IPCallProvider.TABLE+"\"");
 		
@@ -1138,11 +1519,28 @@ private static Set<String> columnsPresentInIPCallTable = new HashSet<String>(Arr
 				columnsPresentInIPCallTable, 
 				unionIPCallColumns.length, 
 				"("+Integer.toString(EventsLogApi.TYPE_INCOMING_IPCALL) + "||" + Integer.toString(EventsLogApi.TYPE_OUTGOING_IPCALL)+")", 
-				(selection!=null?IPCallData.KEY_CONTACT+selection:null), 
+				concatSelection((selection!=null?IPCallData.KEY_CONTACT+selection:null), pageFilter), 
 				null, 
 				null, 
 				null);
 	}	
+
+	/**
+	 * Concatenate two selections
+	 * 
+	 * @param selection Selection or null
+	 * @param other Other selection or null
+	 * @return Selection or null
+	 */
+	private static String concatSelection(String selection, String other) {
+		if (selection == null) {
+			return other;
+		}
+		if (other == null) {
+			return selection;
+		}
+		return selection + " AND " + other;
+	}
 	
 	
 	/**
@@ -30,6 +30,7 @@ public class SortCursor extends AbstractCursor {
     private Cursor mCursor; // updated in onMove
     private Cursor[] mCursors;
     private int[] mSortColumns;
+    private int[] mTieColumns;
     private final static int ROWCACHESIZE = 64;
     private int mRowNumCache[] = new int[ROWCACHESIZE];
     private int mCursorCache[] = new int[ROWCACHESIZE];
@@ -56,11 +57,26 @@ public class SortCursor extends AbstractCursor {
     private int mCursorIndex;
 
     public SortCursor(Cursor[] cursors, String sortcolumn, int type, boolean ascending) {
+        this(cursors, sortcolumn, type, null, ascending);
+    }
+
+    /**
+     * Sorts on a numeric column then on a numeric tie-breaker column, so that
+     * the rows having the same value come out in a stable order
+     */
+    public SortCursor(Cursor[] cursors, String sortcolumn, String tiecolumn, boolean ascending) {
+        this(cursors, sortcolumn, TYPE_NUMERIC, tiecolumn, ascending);
+    }
+
+    private SortCursor(Cursor[] cursors, String sortcolumn, int type, String tiecolumn, boolean ascending) {
         mAscending = ascending;
         mCursors = cursors;
         mType = type;
         int length = mCursors.length;
         mSortColumns = new int[length];
+        if (tiecolumn != null) {
+            mTieColumns = new int[length];
+        }
         for (int i = 0; i < length; i++) {
             if (mCursors[i] == null) {
                 continue;
@@ -70,6 +86,9 @@ public class SortCursor extends AbstractCursor {
             mCursors[i].moveToFirst();
             // We don't catch the exception.
             mSortColumns[i] = mCursors[i].getColumnIndexOrThrow(sortcolumn);
+            if (mTieColumns != null) {
+                mTieColumns[i] = mCursors[i].getColumnIndexOrThrow(tiecolumn);
+            }
         }
         mCursor = null;
         if (type == TYPE_STRING) {
@@ -86,14 +105,16 @@ public class SortCursor extends AbstractCursor {
             }
         } else {
             long smallest = (ascending) ? Long.MAX_VALUE : Long.MIN_VALUE;
+            long smallestTie = 0;
             for (int j = 0; j < length; j++) {
                 if (mCursors[j] == null || mCursors[j].isAfterLast()) {
                     continue;
                 }
                 long current = mCursors[j].getLong(mSortColumns[j]);
-                boolean comparison = (ascending) ? (current < smallest) : (current > smallest);
-                if (mCursor == null || comparison) {
+                long currentTie = getTie(j);
+                if (mCursor == null || isBefore(current, currentTie, smallest, smallestTie)) {
                     smallest = current;
+                    smallestTie = currentTie;
                     mCursor = mCursors[j];
                     mCursorIndex = j;
                 }
@@ -194,15 +215,17 @@ public class SortCursor extends AbstractCursor {
         } else {
             for (int i = oldPosition; i <= newPosition; i++) {
                 long smallest = (mAscending) ? Long.MAX_VALUE : Long.MIN_VALUE;
+                long smallestTie = 0;
                 smallestIdx = -1;
                 for (int j = 0; j < length; j++) {
                     if (mCursors[j] == null || mCursors[j].isAfterLast()) {
                         continue;
                     }
                     long current = mCursors[j].getLong(mSortColumns[j]);
-                    boolean comparison = (mAscending) ? current < smallest : current > smallest;
-                    if (smallestIdx < 0 || comparison) {
+                    long currentTie = getTie(j);
+                    if (smallestIdx < 0 || isBefore(current, currentTie, smallest, smallestTie)) {
                         smallest = current;
+                        smallestTie = currentTie;
                         smallestIdx = j;
                     }
                 }
@@ -227,6 +250,20 @@ public class SortCursor extends AbstractCursor {
         return true;
     }
 
+    private long getTie(int cursor) {
+        if (mTieColumns == null) {
+            return 0;
+        }
+        return mCursors[cursor].getLong(mTieColumns[cursor]);
+    }
+
+    private boolean isBefore(long value, long tie, long smallest, long smallestTie) {
+        if (value == smallest) {
+            return (mAscending) ? tie < smallestTie : tie > smallestTie;
+        }
+        return (mAscending) ? value < smallest : value > smallest;
+    }
+
     @Override
     public String getString(int column) {
         return mCursor.getString(column);
@@ -43,6 +43,7 @@ public interface FtHttpColumns extends BaseColumns {
     String MESSAGE_ID = "message_id";
 	String IS_GROUP = "is_group";
 	String CHAT_SESSION_ID = "chat_session_id";
+	String SEGMENTS = "segments";
 	
     String DEFAULT_ORDER = _ID;
 
@@ -236,4 +236,16 @@ public class FtHttpContentValues extends AbstractContentValues {
 		mContentValues.put(FtHttpColumns.CHAT_SESSION_ID, value);
 		return this;
 	}
+
+	/**
+	 * Adds download segments to the set of content values.
+	 * 
+	 * @param value
+	 *            The added {@code value}.
+	 * @return Returns the {@code FthttpContentValues} wrapped by this object.
+	 */
+	public FtHttpContentValues putSegments(String value) {
+		mContentValues.put(FtHttpColumns.SEGMENTS, value);
+		return this;
+	}
 }
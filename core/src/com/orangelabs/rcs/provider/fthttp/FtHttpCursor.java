@@ -147,4 +147,12 @@ public class FtHttpCursor extends AbstractCursor {
 		Integer index = getCachedColumnIndexOrThrow(FtHttpColumns.CHAT_SESSION_ID);
 		return getString(index);
 	}
+
+	/**
+	 * Get the {@code segments} value. Can be {@code null}.
+	 */
+	public String getSegments() {
+		Integer index = getCachedColumnIndexOrThrow(FtHttpColumns.SEGMENTS);
+		return getString(index);
+	}
 }
@@ -70,6 +70,17 @@ public interface FtHttpResumeDao {
 	 */
 	public int delete(FtHttpResume ftHttpResume);
 
+	/**
+	 * Update the segments of a download entry
+	 * 
+	 * @param url
+	 *            the {@code url} value.
+	 * @param segments
+	 *            the {@code segments} value.
+	 * @return number of rows updated
+	 */
+	public int updateSegments(String url, String segments);
+
 	/**
 	 * Delete all entries in fthttp table
 	 * 
@@ -144,6 +144,15 @@ public class FtHttpResumeDaoImpl implements FtHttpResumeDao {
 		return where.delete(cr);
 	}
 
+	@Override
+	public int updateSegments(String url, String segments) {
+		FtHttpSelection where = new FtHttpSelection();
+		where.inUrl(url).and().direction(FtHttpDirection.INCOMING);
+		FtHttpContentValues values = new FtHttpContentValues();
+		values.putSegments(segments);
+		return values.update(cr, where);
+	}
+
 	@Override
 	public FtHttpResumeUpload queryUpload(String tid) {
 		FtHttpSelection where = new FtHttpSelection();
@@ -38,6 +38,11 @@ public final class FtHttpResumeDownload extends FtHttpResume {
 	 */
 	final private String messageId;
 
+	/**
+	 * the download segments
+	 */
+	final private String segments;
+
 	/**
 	 * Creates a FT HTTP resume download data object (immutable)
 	 * 
@@ -87,6 +92,7 @@ public final class FtHttpResumeDownload extends FtHttpResume {
 		super(FtHttpDirection.INCOMING, file, content.getEncoding(), content.getSize(), thumbnail, contact, displayName, chatId, sessionId, chatSessionId, isGroup);
 		this.url = content.getUrl();
 		this.messageId = messageId;
+		this.segments = null;
 		if (url == null || messageId == null)
 			throw new IllegalArgumentException("Invalid argument");
 	}
@@ -101,6 +107,7 @@ public final class FtHttpResumeDownload extends FtHttpResume {
 		super(cursor);
 		this.url = cursor.getInUrl();
 		this.messageId = cursor.getMessageId();
+		this.segments = cursor.getSegments();
 		if (this.url == null || messageId == null)
 			throw new IllegalArgumentException("Null argument");
 	}
@@ -113,6 +120,10 @@ public final class FtHttpResumeDownload extends FtHttpResume {
 		return messageId;
 	}
 
+	public String getSegments() {
+		return segments;
+	}
+
 	@Override
 	public String toString() {
 		return "FtHttpResumeDownload [file=" + getFilename() + ", mimeType=" + getMimetype() + ", size=" + getSize() + ", messageId=" + messageId
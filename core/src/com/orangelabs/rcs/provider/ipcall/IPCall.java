@@ -268,6 +268,6 @@ public class IPCall {
 		}
 		ContentValues values = new ContentValues();
 		values.put(IPCallData.KEY_STATUS, status);
-		cr.update(databaseUri, values, IPCallData.KEY_SESSION_ID + " = " + sessionId, null);
+		cr.update(databaseUri, values, IPCallData.KEY_SESSION_ID + "=?", new String[] { sessionId });
 	}
 }
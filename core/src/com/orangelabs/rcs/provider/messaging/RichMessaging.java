@@ -46,6 +46,8 @@ import com.orangelabs.rcs.service.api.client.messaging.InstantMessage;
 import com.orangelabs.rcs.utils.PhoneUtils;
 import com.orangelabs.rcs.utils.StringUtils;
 import com.orangelabs.rcs.utils.logger.Logger;
+import com.orangelabs.rcs.utils.metrics.Histogram;
+import com.orangelabs.rcs.utils.metrics.Metrics;
 
 /**
  * Rich messaging history. This content provider removes old messages if there is no enough space.
@@ -75,11 +77,66 @@ public class RichMessaging {
 	 */
 	private int maxLogEntries;
 
+	/**
+	 * Selection of the entries of a chat message
+	 */
+	private static final String SELECTION_MESSAGE_ID = RichMessagingData.KEY_MESSAGE_ID + "=?";
+
+	/**
+	 * Selection of the entries of a session
+	 */
+	private static final String SELECTION_SESSION_ID = RichMessagingData.KEY_CHAT_SESSION_ID + "=?";
+
+	/**
+	 * Selection of the entries of a contact
+	 */
+	private static final String SELECTION_CONTACT = RichMessagingData.KEY_CONTACT + "=?";
+
+	/**
+	 * Selection of the entries of a session with a given type
+	 */
+	private static final String SELECTION_SESSION_ID_AND_TYPE = RichMessagingData.KEY_CHAT_SESSION_ID + "=? AND "
+			+ RichMessagingData.KEY_TYPE + "=?";
+
+	/**
+	 * Selection of the entries of a contact at a given date
+	 */
+	private static final String SELECTION_CONTACT_AND_TIMESTAMP = RichMessagingData.KEY_CONTACT + "=? AND "
+			+ RichMessagingData.KEY_TIMESTAMP + "=?";
+
+	/**
+	 * Selection of the system events of a group chat
+	 */
+	private static final String SELECTION_GROUP_CHAT_EVENTS = RichMessagingData.KEY_CHAT_ID + "=? AND "
+			+ RichMessagingData.KEY_TYPE + "=" + EventsLogApi.TYPE_GROUP_CHAT_SYSTEM_MESSAGE;
+
+	/**
+	 * Selection of the entries older than a page key (date, row ID)
+	 */
+	private static final String SELECTION_BEFORE_KEY = "(" + RichMessagingData.KEY_TIMESTAMP + "<? OR ("
+			+ RichMessagingData.KEY_TIMESTAMP + "=? AND " + RichMessagingData.KEY_ID + "<?))";
+
+	/**
+	 * Sort order of a page, from the most recent entry
+	 */
+	private static final String PAGE_SORT_ORDER = RichMessagingData.KEY_TIMESTAMP + " DESC, "
+			+ RichMessagingData.KEY_ID + " DESC";
+
 	/**
 	 * The logger
 	 */
 	private Logger logger = Logger.getLogger(this.getClass().getName());
 
+	/**
+	 * Write-behind queue of the incoming messages and delivery reports
+	 */
+	private RichMessagingWriteQueue writeQueue;
+
+	/**
+	 * Latency of the writes in the messaging history, an insert or a batch
+	 */
+	static final Histogram WRITE_LATENCY = Metrics.histogram("db.richmessaging.write", "us");
+
 	/**
 	 * Create instance
 	 * 
@@ -111,6 +168,22 @@ public class RichMessaging {
 
 		this.cr = ctx.getContentResolver();
 		this.maxLogEntries = RcsSettings.getInstance().getMaxChatLogEntriesPerContact();
+		this.writeQueue = new RichMessagingWriteQueue(this, cr);
+	}
+
+	/**
+	 * Write the pending incoming messages and delivery reports in the database
+	 */
+	public void flush() {
+		writeQueue.flush();
+	}
+
+	/**
+	 * Stop the background writes, the pending incoming messages and delivery
+	 * reports are written in the database
+	 */
+	public void stop() {
+		writeQueue.stop();
 	}
 
 	/**
@@ -329,8 +402,7 @@ public class RichMessaging {
 		if (session.isGroupChat()) {
 			ContentValues values = new ContentValues();
 			values.put(RichMessagingData.KEY_CHAT_REJOIN_ID, session.getImSessionIdentity());
-			cr.update(databaseUri, values, "(" + RichMessagingData.KEY_CHAT_SESSION_ID + " = \"" + session.getSessionID() + "\") AND ("
-					+ RichMessagingData.KEY_TYPE + " =" + type + ")", null);
+			cr.update(databaseUri, values, SELECTION_SESSION_ID_AND_TYPE, new String[] { session.getSessionID(), String.valueOf(type) });
 		}
 	}
 
@@ -397,9 +469,12 @@ public class RichMessaging {
 			status = EventsLogApi.STATUS_REPORT_REQUESTED;
 		}
 		String number = PhoneUtils.extractNumberFromUri(msg.getRemote());
-		addEntry(type, session.getSessionID(), session.getContributionID(), msg.getMessageId(), number,
-				msg.getDisplayName(), msg.getTextMessage(), InstantMessage.MIME_TYPE, number, msg.getTextMessage()
-						.getBytes().length, msg.getDate(), status);
+		List<String> participants = new ArrayList<String>();
+		participants.add(number);
+		ContentValues values = buildEntry(type, session.getSessionID(), session.getContributionID(), msg.getMessageId(),
+				participants, msg.getDisplayName(), msg.getTextMessage(), InstantMessage.MIME_TYPE, number, msg.getTextMessage()
+						.getBytes().length, msg.getDate(), status, false);
+		writeQueue.insert(msg.getMessageId(), values);
 	}
 
 	/**
@@ -532,6 +607,7 @@ public class RichMessaging {
      * @return set of contacts
      */
 	public Set<String> getContactsChatDelivered(String msgId) {
+		writeQueue.flush(msgId);
 		return getContactsChat(msgId, RichMessagingData.KEY_IMDN_DELIVERED_LIST);
 	}
 
@@ -542,6 +618,7 @@ public class RichMessaging {
      * @return set of contacts
      */
 	public Set<String> getContactsChatDisplayed(String msgId) {
+		writeQueue.flush(msgId);
 		return getContactsChat(msgId, RichMessagingData.KEY_IMDN_DISPLAYED_LIST);
 	}
 
@@ -552,9 +629,9 @@ public class RichMessaging {
      * @param columnName the column name to query
      * @return a set of contacts
      */
-	private Set<String> getContactsChat(final String msgId, final String columnName) {
+	Set<String> getContactsChat(final String msgId, final String columnName) {
 		Set<String> contactSet = new HashSet<String>();
-		Cursor cursor = cr.query(databaseUri, new String[] { columnName }, RichMessagingData.KEY_MESSAGE_ID + " =\'" + msgId + "\'", null, null);
+		Cursor cursor = cr.query(databaseUri, new String[] { columnName }, SELECTION_MESSAGE_ID, new String[] { msgId }, null);
 		if (cursor.moveToFirst()) {
 			String contactList = cursor.getString(0);
 			if (contactList != null) {
@@ -575,27 +652,7 @@ public class RichMessaging {
      * @param status Status
      */
 	private void setChatMessageDeliveryStatus(String msgId, int status) {
-		ContentValues values = new ContentValues();
-		values.put(RichMessagingData.KEY_STATUS, status);
-		cr.update(databaseUri, values, RichMessagingData.KEY_MESSAGE_ID + " = \'" + msgId + "\'", null);
-	}
-
-    /**
-     * Set the delivery status and list of contacts for a chat message
-     * 
-     * @param msgId message Id
-     * @param status delivery status
-     * @param contacts set of contacts
-     * @param column column to update with contact list (i.e. a string with ";" delimiter)
-     */
-	private void setChatMessageDeliveryStatus(String msgId, int status, final Set<String> contacts, String column) {
-		ContentValues values = new ContentValues();
-		values.put(RichMessagingData.KEY_STATUS, status);
-		// Build the list of contacts in a string with separator ";"
-		String contactList = StringUtils.join(contacts, ";");
-		values.put(column, contactList);
-		// Update
-		cr.update(databaseUri, values, RichMessagingData.KEY_MESSAGE_ID + " = \'" + msgId + "\'", null);
+		writeQueue.updateStatus(msgId, status);
 	}
 
     /**
@@ -614,24 +671,12 @@ public class RichMessaging {
 		}
 		// Update the contacts in the IMDN displayed and delivered columns
 		switch (status) {
-    		case EventsLogApi.STATUS_DISPLAYED: {
-    			// Query set of contact who displayed chat message
-    			Set<String> contacts = getContactsChatDisplayed(msgId);
-    			// Add current contact to set
-    			contacts.add(contact);
-    			// Update
-    			setChatMessageDeliveryStatus(msgId, status, contacts, RichMessagingData.KEY_IMDN_DISPLAYED_LIST);
-    		}
-			break;
-    		case EventsLogApi.STATUS_DELIVERED: {
-    			// Query set of contact whom chat message is delivered
-    			Set<String> contacts = getContactsChatDelivered(msgId);
-    			// Add current contact to set
-    			contacts.add(contact);
-    			// Update
-    			setChatMessageDeliveryStatus(msgId, status, contacts, RichMessagingData.KEY_IMDN_DELIVERED_LIST);
-    		}
-			break;
+    		case EventsLogApi.STATUS_DISPLAYED:
+    			writeQueue.updateStatus(msgId, status, contact, RichMessagingData.KEY_IMDN_DISPLAYED_LIST);
+    			break;
+    		case EventsLogApi.STATUS_DELIVERED:
+    			writeQueue.updateStatus(msgId, status, contact, RichMessagingData.KEY_IMDN_DELIVERED_LIST);
+    			break;
     		default:
     			setChatMessageDeliveryStatus(msgId, status);
     	}
@@ -704,8 +749,7 @@ public class RichMessaging {
 		ContentValues values = new ContentValues();
 		values.put(RichMessagingData.KEY_CHAT_REJOIN_ID, session.getImSessionIdentity());
 		values.put(RichMessagingData.KEY_CONTACT, participants);
-		cr.update(databaseUri, values, "(" + RichMessagingData.KEY_CHAT_SESSION_ID + " = \"" + session.getSessionID() + "\") AND ("
-				+ RichMessagingData.KEY_TYPE + " =" + type + ")", null);
+		cr.update(databaseUri, values, SELECTION_SESSION_ID_AND_TYPE, new String[] { session.getSessionID(), String.valueOf(type) });
 	}
 
     /**
@@ -714,25 +758,29 @@ public class RichMessaging {
      * @param msgId Message ID
      */
 	public void markChatMessageFailed(String msgId) {
+		writeQueue.flush(msgId);
 		ContentValues values = new ContentValues();
 		values.put(RichMessagingData.KEY_STATUS, EventsLogApi.STATUS_FAILED);
-		cr.update(databaseUri, values, RichMessagingData.KEY_MESSAGE_ID + " = \"" + msgId + "\"", null);
+		cr.update(databaseUri, values, SELECTION_MESSAGE_ID, new String[] { msgId });
 	}
 
     /**
-     * Mark a chat message as read or not
+     * Mark a chat message as read or not. Called from the client applications
+     * through the events log API, so written synchronously: the write-behind
+     * queue is only flushed and stopped in the core process.
      * 
      * @param msgId Message ID
      * @param isRead Read flag
      */
 	public void markChatMessageAsRead(String msgId, boolean isRead) {
+		writeQueue.flush(msgId);
 		ContentValues values = new ContentValues();
 		if (isRead) {
 			values.put(RichMessagingData.KEY_STATUS, EventsLogApi.STATUS_DISPLAYED);
 		} else {
 			values.put(RichMessagingData.KEY_STATUS, EventsLogApi.STATUS_RECEIVED);
 		}
-		cr.update(databaseUri, values, RichMessagingData.KEY_MESSAGE_ID + " = \"" + msgId + "\"", null);
+		cr.update(databaseUri, values, SELECTION_MESSAGE_ID, new String[] { msgId });
 	}
 
     /**
@@ -762,9 +810,12 @@ public class RichMessaging {
 			status = EventsLogApi.STATUS_REPORT_REQUESTED;
 		}
 		String number =  PhoneUtils.extractNumberFromUri(msg.getRemote());
-		addEntry(EventsLogApi.TYPE_INCOMING_CHAT_MESSAGE, SessionIdGenerator.getNewId(), chatId, msg.getMessageId(),
-				number, msg.getDisplayName(), msg.getTextMessage(), InstantMessage.MIME_TYPE, msg.getRemote(), msg
-						.getTextMessage().getBytes().length, msg.getDate(), status);
+		List<String> participants = new ArrayList<String>();
+		participants.add(number);
+		ContentValues values = buildEntry(EventsLogApi.TYPE_INCOMING_CHAT_MESSAGE, SessionIdGenerator.getNewId(), chatId,
+				msg.getMessageId(), participants, msg.getDisplayName(), msg.getTextMessage(), InstantMessage.MIME_TYPE,
+				msg.getRemote(), msg.getTextMessage().getBytes().length, msg.getDate(), status, false);
+		writeQueue.insert(msg.getMessageId(), values);
 	}
 
     /**
@@ -774,20 +825,22 @@ public class RichMessaging {
      * @param isSpam Spam flag
      */
 	public void markChatMessageAsSpam(String msgId, boolean isSpam) {
+		writeQueue.flush(msgId);
 		ContentValues values = new ContentValues();
 		if (isSpam) {
 			values.put(RichMessagingData.KEY_IS_SPAM, EventsLogApi.MESSAGE_IS_SPAM);
 		} else {
 			values.put(RichMessagingData.KEY_IS_SPAM, EventsLogApi.MESSAGE_IS_NOT_SPAM);
 		}
-		cr.update(databaseUri, values, RichMessagingData.KEY_MESSAGE_ID + " = \"" + msgId + "\"" + " AND " + RichMessagingData.KEY_TYPE + " = "
-				+ EventsLogApi.TYPE_INCOMING_CHAT_MESSAGE, null);
+		cr.update(databaseUri, values, SELECTION_MESSAGE_ID + " AND " + RichMessagingData.KEY_TYPE + "="
+				+ EventsLogApi.TYPE_INCOMING_CHAT_MESSAGE, new String[] { msgId });
 	}
 
 	/**
 	 * Delete all spam messages
 	 */
 	public void deleteAllSpams() {
+		writeQueue.flush();
 		Cursor c = cr.query(databaseUri, new String[] { RichMessagingData.KEY_ID }, RichMessagingData.KEY_IS_SPAM + " = \""
 				+ EventsLogApi.MESSAGE_IS_SPAM + "\"", null, null);
 		while (c.moveToNext()) {
@@ -803,8 +856,9 @@ public class RichMessaging {
 	 * @param Message ID
 	 */
 	public void deleteSpamMessage(String msgId) {
-		Cursor c = cr.query(databaseUri, new String[] { RichMessagingData.KEY_ID }, RichMessagingData.KEY_MESSAGE_ID + " = \"" + msgId + "\""
-				+ " AND " + RichMessagingData.KEY_IS_SPAM + " = \"" + EventsLogApi.MESSAGE_IS_SPAM + "\"", null, null);
+		writeQueue.flush(msgId);
+		Cursor c = cr.query(databaseUri, new String[] { RichMessagingData.KEY_ID }, SELECTION_MESSAGE_ID
+				+ " AND " + RichMessagingData.KEY_IS_SPAM + " = \"" + EventsLogApi.MESSAGE_IS_SPAM + "\"", new String[] { msgId }, null);
 		if (c != null) {
 			if (c.moveToFirst()) {
 				long rowId = c.getLong(0);
@@ -823,8 +877,9 @@ public class RichMessaging {
 	 * @param contact Contact
 	 */
 	public void clearSpamMessages(String contact) {
-		int deletedRows = cr.delete(databaseUri, RichMessagingData.KEY_CONTACT + "= \"" + contact + "\"" + " AND " + RichMessagingData.KEY_IS_SPAM
-				+ " = \"" + EventsLogApi.MESSAGE_IS_SPAM + "\"", null);
+		writeQueue.flush();
+		int deletedRows = cr.delete(databaseUri, SELECTION_CONTACT + " AND " + RichMessagingData.KEY_IS_SPAM
+				+ " = \"" + EventsLogApi.MESSAGE_IS_SPAM + "\"", new String[] { contact });
 		if (logger.isActivated()) {
 			logger.debug("Clear spam messages of contact " + contact + ": deleted rows =" + deletedRows);
 		}
@@ -875,6 +930,38 @@ public class RichMessaging {
      */
 	private Uri addEntry(int type, String sessionId, String chatId, String messageId, List<String> contacts, String displayName, String data, String mimeType,
 			String name, long size, Date date, int status, boolean rejectGC ) {
+		// Pending entries are written first, so that the history stays in order
+		writeQueue.flush();
+
+		ContentValues values = buildEntry(type, sessionId, chatId, messageId, contacts, displayName, data, mimeType, name, size, date,
+				status, rejectGC);
+		values.put(RichMessagingData.KEY_NUMBER_MESSAGES, recycler(values.getAsString(RichMessagingData.KEY_CONTACT)) + 1);
+		long startTime = System.nanoTime();
+		Uri uri = cr.insert(databaseUri, values);
+		WRITE_LATENCY.recordMicrosSince(startTime);
+		return uri;
+	}
+
+    /**
+     * Build the values of a new entry, except the number of messages which is
+     * computed when the entry is written
+     * 
+     * @param type Type of entry
+     * @param sessionId Session ID of a chat session or a file transfer session
+     * @param chatId Chat ID of a chat session
+     * @param messageId Message ID of a chat message
+     * @param contacts List of contacts
+     * @param displayName the display name of the remote contact
+     * @param data Content of the entry (an URI for FT or a simple text for IM)
+     * @param mimeType MIME type for a file transfer
+     * @param name Name of the transfered file
+     * @param size Size of the transfered file
+     * @param status Status of the entry
+     * @param rejectGC if true next GC invitation will be rejected
+     * @return Values
+     */
+	private ContentValues buildEntry(int type, String sessionId, String chatId, String messageId, List<String> contacts, String displayName,
+			String data, String mimeType, String name, long size, Date date, int status, boolean rejectGC) {
 		String participants = getParticipants(contacts);
 		if (logger.isActivated()) {
 			logger.debug("Add new entry: type=" + type + ", sessionID=" + sessionId + ", chatID=" + chatId + ", messageID=" + messageId
@@ -892,7 +979,6 @@ public class RichMessaging {
 		values.put(RichMessagingData.KEY_NAME, name);
 		values.put(RichMessagingData.KEY_DATA, data);
 		values.put(RichMessagingData.KEY_STATUS, status);
-		values.put(RichMessagingData.KEY_NUMBER_MESSAGES, recycler(participants) + 1);
 		values.put(RichMessagingData.KEY_IS_SPAM, EventsLogApi.MESSAGE_IS_NOT_SPAM);
 		values.put(RichMessagingData.KEY_REJECT_GC, rejectGC ? 1 : 0);
 		if (date == null) {
@@ -900,9 +986,7 @@ public class RichMessaging {
 		} else {
 			values.put(RichMessagingData.KEY_TIMESTAMP, date.getTime());
 		}
-
-		Uri uri = cr.insert(databaseUri, values);
-		return uri;
+		return values;
 	}
 
     /**
@@ -911,10 +995,14 @@ public class RichMessaging {
      * @param contact Contact
      * @return History size
      */
-	private int recycler(String contact) {
+	int recycler(String contact) {
+		if (contact == null) {
+			return 0;
+		}
+
 		// Get first and last message dates for the contact
 		Cursor extrem = cr.query(databaseUri, new String[] { "min(" + RichMessagingData.KEY_TIMESTAMP + ")",
-				"max(" + RichMessagingData.KEY_TIMESTAMP + ")" }, RichMessagingData.KEY_CONTACT + " = \'" + contact + "\'", null, null);
+				"max(" + RichMessagingData.KEY_TIMESTAMP + ")" }, SELECTION_CONTACT, new String[] { contact }, null);
 		long minDate = -1, maxDate = -1;
 		if (extrem.moveToFirst()) {
 			minDate = extrem.getLong(0);
@@ -931,9 +1019,9 @@ public class RichMessaging {
 		}
 
 		Cursor c = cr.query(databaseUri, new String[] { RichMessagingData.KEY_NUMBER_MESSAGES, RichMessagingData.KEY_CHAT_SESSION_ID,
-				RichMessagingData.KEY_TIMESTAMP }, RichMessagingData.KEY_CONTACT + " = \'" + contact + "\'" + " AND ("
-				+ RichMessagingData.KEY_TIMESTAMP + " = " + minDate + " OR " + RichMessagingData.KEY_TIMESTAMP + " = " + maxDate + ")", null,
-				RichMessagingData.KEY_TIMESTAMP + " ASC");
+				RichMessagingData.KEY_TIMESTAMP }, SELECTION_CONTACT + " AND ("
+				+ RichMessagingData.KEY_TIMESTAMP + "=? OR " + RichMessagingData.KEY_TIMESTAMP + "=?)",
+				new String[] { contact, String.valueOf(minDate), String.valueOf(maxDate) }, RichMessagingData.KEY_TIMESTAMP + " ASC");
 		int numberOfMessagesForContact = 0;
 		long dateForLastMessage = 0;
 		if (c.moveToLast()) {
@@ -967,7 +1055,7 @@ public class RichMessaging {
 				logger.debug("Recycler : deleting entries for (the first) sessionID : " + sessionId + " for the date : "
 						+ new Date(firstDate).toString() + " [" + firstDate + "]");
 			}
-			removedMessages = cr.delete(databaseUri, RichMessagingData.KEY_CHAT_SESSION_ID + " = \'" + sessionId + "\'", null);
+			removedMessages = cr.delete(databaseUri, SELECTION_SESSION_ID, new String[] { sessionId });
 			if (logger.isActivated()) {
 				logger.debug("Recycler : messages removed : " + removedMessages);
 			}
@@ -982,8 +1070,8 @@ public class RichMessaging {
 				logger.debug("Recycler : new number of message after deletion : " + numberOfMessagesForContact);
 			}
 			values.put(RichMessagingData.KEY_NUMBER_MESSAGES, numberOfMessagesForContact);
-			int updatedRows = cr.update(databaseUri, values, RichMessagingData.KEY_CONTACT + " = \'" + contact + "\' AND "
-					+ RichMessagingData.KEY_TIMESTAMP + " = " + dateForLastMessage, null);
+			int updatedRows = cr.update(databaseUri, values, SELECTION_CONTACT_AND_TIMESTAMP,
+					new String[] { contact, String.valueOf(dateForLastMessage) });
 			if (logger.isActivated()) {
 				logger.debug("Recycler : updated rows for the contact (must be 1) : " + updatedRows);
 			}
@@ -1021,8 +1109,7 @@ public class RichMessaging {
      */
 	private Set<String> getContactsFileTransfer(String sessionId, String columnName) {
 		Set<String> contactSet = new HashSet<String>();
-		Cursor cursor = cr.query(databaseUri, new String[] { columnName }, RichMessagingData.KEY_CHAT_SESSION_ID + " =\'" + sessionId + "\'", null,
-				null);
+		Cursor cursor = cr.query(databaseUri, new String[] { columnName }, SELECTION_SESSION_ID, new String[] { sessionId }, null);
 		if (cursor.moveToFirst()) {
 			String contactList = cursor.getString(0);
 			if (contactList != null) {
@@ -1051,7 +1138,7 @@ public class RichMessaging {
 		String contactList = StringUtils.join(contacts, ";");
 		values.put(column, contactList);
 		// Update
-		cr.update(databaseUri, values, RichMessagingData.KEY_CHAT_SESSION_ID + " = " + sessionId, null);
+		cr.update(databaseUri, values, SELECTION_SESSION_ID, new String[] { sessionId });
 	}
 
     /**
@@ -1100,7 +1187,7 @@ public class RichMessaging {
 	private void updateFileTransferStatus(String sessionId, int status) {
 		ContentValues values = new ContentValues();
 		values.put(RichMessagingData.KEY_STATUS, status);
-		cr.update(databaseUri, values, RichMessagingData.KEY_CHAT_SESSION_ID + " = " + sessionId, null);
+		cr.update(databaseUri, values, SELECTION_SESSION_ID, new String[] { sessionId });
 	}
 
     /**
@@ -1114,7 +1201,7 @@ public class RichMessaging {
 		ContentValues values = new ContentValues();
 		values.put(RichMessagingData.KEY_CHAT_ID, chatId);
 		values.put(RichMessagingData.KEY_MESSAGE_ID, msgId);
-		cr.update(databaseUri, values, RichMessagingData.KEY_CHAT_SESSION_ID + " = " + sessionId, null);
+		cr.update(databaseUri, values, SELECTION_SESSION_ID, new String[] { sessionId });
 	}
 
     /**
@@ -1124,12 +1211,13 @@ public class RichMessaging {
      * @return message info
      */
 	public MessageInfo getMessageInfo(String msgId) {
+		writeQueue.flush(msgId);
 		if (logger.isActivated()) {
 			logger.debug("RichMessaging getMessageInfo(" + msgId + ")");
 		}
 		MessageInfo result = null;
 		Cursor cursor = cr.query(databaseUri, new String[] { RichMessagingData.KEY_CONTACT, RichMessagingData.KEY_TYPE,
-				RichMessagingData.KEY_CHAT_SESSION_ID, RichMessagingData.KEY_STATUS}, RichMessagingData.KEY_MESSAGE_ID + "='" + msgId + "'", null,
+				RichMessagingData.KEY_CHAT_SESSION_ID, RichMessagingData.KEY_STATUS}, SELECTION_MESSAGE_ID, new String[] { msgId },
 				RichMessagingData.KEY_TIMESTAMP + " DESC");
 		if (cursor.moveToFirst()) {
 			result = new MessageInfo(msgId, cursor.getString(0), cursor.getInt(1), cursor.getString(2), cursor.getInt(3));
@@ -1148,8 +1236,8 @@ public class RichMessaging {
 	public void updateFileTransferProgress(String sessionId, long size, long totalSize) {
 		ContentValues values = new ContentValues();
 
-		Cursor cursor = cr.query(RichMessagingData.CONTENT_URI, new String[] { RichMessagingData.KEY_SIZE }, RichMessagingData.KEY_CHAT_SESSION_ID
-				+ "='" + sessionId + "'", null, null);
+		Cursor cursor = cr.query(RichMessagingData.CONTENT_URI, new String[] { RichMessagingData.KEY_SIZE }, SELECTION_SESSION_ID,
+				new String[] { sessionId }, null);
 		if (cursor.moveToFirst()) {
 			long downloadedSize = cursor.getLong(cursor.getColumnIndexOrThrow(RichMessagingData.KEY_SIZE));
 			if ((size >= downloadedSize + totalSize / 10) || size == totalSize) {
@@ -1158,7 +1246,7 @@ public class RichMessaging {
 				// This is to avoid too much updates, as the ui refreshes each time
 				values.put(RichMessagingData.KEY_SIZE, size);
 				values.put(RichMessagingData.KEY_STATUS, EventsLogApi.STATUS_IN_PROGRESS);
-				cr.update(databaseUri, values, RichMessagingData.KEY_MESSAGE_ID + " = " + sessionId, null);
+				cr.update(databaseUri, values, SELECTION_MESSAGE_ID, new String[] { sessionId });
 			}
 		}
 		cursor.close();
@@ -1174,7 +1262,7 @@ public class RichMessaging {
 		ContentValues values = new ContentValues();
 		values.put(RichMessagingData.KEY_DATA, url);
 		values.put(RichMessagingData.KEY_STATUS, EventsLogApi.STATUS_TERMINATED);
-		cr.update(databaseUri, values, RichMessagingData.KEY_CHAT_SESSION_ID + " = " + sessionId, null);
+		cr.update(databaseUri, values, SELECTION_SESSION_ID, new String[] { sessionId });
 	}
 
     /**
@@ -1184,8 +1272,9 @@ public class RichMessaging {
      * @param contact Contact
      */
 	public void deleteFileTransferSession(String sessionId, String contact) {
+		writeQueue.flush();
 		// Count entries to be deleted
-		Cursor count = cr.query(databaseUri, null, RichMessagingData.KEY_CHAT_SESSION_ID + " = " + sessionId, null, null);
+		Cursor count = cr.query(databaseUri, null, SELECTION_SESSION_ID, new String[] { sessionId }, null);
 		int toBeDeletedRows = count.getCount();
 		if (logger.isActivated()) {
 			logger.debug("Delete " + toBeDeletedRows + " rows");
@@ -1197,7 +1286,7 @@ public class RichMessaging {
 
 		// Manage recycling
 		Cursor c = cr.query(databaseUri, new String[] { RichMessagingData.KEY_TIMESTAMP, RichMessagingData.KEY_NUMBER_MESSAGES,
-				RichMessagingData.KEY_MESSAGE_ID }, RichMessagingData.KEY_CONTACT + " = \'" + contact + "\'", null, RichMessagingData.KEY_TIMESTAMP
+				RichMessagingData.KEY_MESSAGE_ID }, SELECTION_CONTACT, new String[] { contact }, RichMessagingData.KEY_TIMESTAMP
 				+ " DESC");
 		if (c.moveToFirst()) {
 			long maxDate = c.getLong(0);
@@ -1217,8 +1306,8 @@ public class RichMessaging {
 			 * TODO : If no more message exists after deleting this one for this contact, the update is useless because it will be
 			 * made on the message to be deleted.
 			 */
-			int updatedRows = cr.update(databaseUri, values, RichMessagingData.KEY_TIMESTAMP + " = " + maxDate + " AND "
-					+ RichMessagingData.KEY_CONTACT + " = \'" + contact + "\'", null);
+			int updatedRows = cr.update(databaseUri, values, SELECTION_CONTACT_AND_TIMESTAMP,
+					new String[] { contact, String.valueOf(maxDate) });
 			if (logger.isActivated()) {
 				logger.debug("DeleteFileTransfer : recycling updated rows (should be 1) : " + updatedRows);
 			}
@@ -1226,7 +1315,7 @@ public class RichMessaging {
 		c.close();
 
 		/* Delete entry */
-		int deletedRows = cr.delete(databaseUri, RichMessagingData.KEY_MESSAGE_ID + " = " + sessionId, null);
+		int deletedRows = cr.delete(databaseUri, SELECTION_MESSAGE_ID, new String[] { sessionId });
 		if (logger.isActivated()) {
 			logger.debug("DeleteFileTransfer : deleted rows (should be 1) : " + deletedRows);
 		}
@@ -1238,12 +1327,13 @@ public class RichMessaging {
      * @param contact Contact
      */
 	public void deleteContactHistory(String contact) {
+		writeQueue.flush();
 		String excludeGroupChat = RichMessagingData.KEY_TYPE + "<>" + EventsLogApi.TYPE_GROUP_CHAT_SYSTEM_MESSAGE + " AND "
 				+ RichMessagingData.KEY_TYPE + "<>" + EventsLogApi.TYPE_INCOMING_GROUP_CHAT_MESSAGE + " AND " + RichMessagingData.KEY_TYPE + "<>"
 				+ EventsLogApi.TYPE_OUTGOING_GROUP_CHAT_MESSAGE;
 
 		// Delete entries
-		int deletedRows = cr.delete(databaseUri, RichMessagingData.KEY_CONTACT + " = \'" + contact + "\' AND " + excludeGroupChat, null);
+		int deletedRows = cr.delete(databaseUri, SELECTION_CONTACT + " AND " + excludeGroupChat, new String[] { contact });
 		if (logger.isActivated()) {
 			logger.debug("DeleteSession: deleted rows : " + deletedRows);
 		}
@@ -1255,8 +1345,9 @@ public class RichMessaging {
      * @param chatId chat ID
      */
 	public void deleteGroupChatConversation(String chatId) {
+		writeQueue.flush();
 		// Delete entry
-		int deletedRows = cr.delete(databaseUri, RichMessagingData.KEY_CHAT_ID + "=\"" + chatId + "\"", null);
+		int deletedRows = cr.delete(databaseUri, RichMessagingData.KEY_CHAT_ID + "=?", new String[] { chatId });
 		if (logger.isActivated()) {
 			logger.debug("Delete group chat conversation: " + deletedRows + " rows deleted");
 		}
@@ -1268,8 +1359,9 @@ public class RichMessaging {
 	 * @param sessionId Session ID
 	 */
 	public void deleteChatSession(String sessionId) {
+		writeQueue.flush();
 		// Count entries to be deleted
-		Cursor count = cr.query(databaseUri, null, RichMessagingData.KEY_CHAT_SESSION_ID + " = " + sessionId, null, null);
+		Cursor count = cr.query(databaseUri, null, SELECTION_SESSION_ID, new String[] { sessionId }, null);
 		int toBeDeletedRows = count.getCount();
 
 		String contact = null;
@@ -1293,7 +1385,7 @@ public class RichMessaging {
 		if (!isGroupChat) {
 			// Manage recycling
 			Cursor c = cr.query(databaseUri, new String[] { RichMessagingData.KEY_TIMESTAMP, RichMessagingData.KEY_NUMBER_MESSAGES,
-					RichMessagingData.KEY_CHAT_SESSION_ID }, RichMessagingData.KEY_CONTACT + " = \'" + contact + "\'", null,
+					RichMessagingData.KEY_CHAT_SESSION_ID }, SELECTION_CONTACT, new String[] { contact },
 					RichMessagingData.KEY_TIMESTAMP + " DESC");
 			if (c.moveToFirst()) {
 				long maxDate = c.getLong(0);
@@ -1324,8 +1416,8 @@ public class RichMessaging {
 				 * TODO : If no more session exists after deleting this one for this contact, the update is useless because it will
 				 * be made on the session to be deleted.
 				 */
-				int updatedRows = cr.update(databaseUri, values, RichMessagingData.KEY_TIMESTAMP + " = " + maxDate + " AND "
-						+ RichMessagingData.KEY_CONTACT + " = \'" + contact + "\'", null);
+				int updatedRows = cr.update(databaseUri, values, SELECTION_CONTACT_AND_TIMESTAMP,
+						new String[] { contact, String.valueOf(maxDate) });
 				if (logger.isActivated()) {
 					logger.debug("DeleteSession : recycling updated rows (should be 1) : " + updatedRows);
 				}
@@ -1334,7 +1426,7 @@ public class RichMessaging {
 		}
 
 		// Delete entry
-		int deletedRows = cr.delete(databaseUri, RichMessagingData.KEY_CHAT_SESSION_ID + " = " + sessionId, null);
+		int deletedRows = cr.delete(databaseUri, SELECTION_SESSION_ID, new String[] { sessionId });
 		if (logger.isActivated()) {
 			logger.debug("DeleteSession: deleted rows : " + deletedRows);
 		}
@@ -1346,7 +1438,8 @@ public class RichMessaging {
      * @param contact Contact
      */
 	public void clearHistory(String contact) {
-		int deletedRows = cr.delete(databaseUri, RichMessagingData.KEY_CONTACT + "='" + contact + "'", null);
+		writeQueue.flush();
+		int deletedRows = cr.delete(databaseUri, SELECTION_CONTACT, new String[] { contact });
 		if (logger.isActivated()) {
 			logger.debug("Clear history of contact " + contact + ": deleted rows =" + deletedRows);
 		}
@@ -1358,6 +1451,7 @@ public class RichMessaging {
      * @param rowId Row ID
      */
 	public void deleteEntry(long rowId) {
+		writeQueue.flush();
 		Cursor count = cr.query(Uri.withAppendedPath(databaseUri, "" + rowId), null, null, null, null);
 		if (count.getCount() == 0) {
 			count.close();
@@ -1368,8 +1462,8 @@ public class RichMessaging {
 
 		// Manage recycling
 		Cursor c = cr.query(databaseUri, new String[] { RichMessagingData.KEY_TIMESTAMP, RichMessagingData.KEY_NUMBER_MESSAGES,
-				RichMessagingData.KEY_CHAT_SESSION_ID, RichMessagingData.KEY_DATA }, RichMessagingData.KEY_CONTACT + " = \'" + contactNumber + "\'",
-				null, RichMessagingData.KEY_TIMESTAMP + " DESC");
+				RichMessagingData.KEY_CHAT_SESSION_ID, RichMessagingData.KEY_DATA }, SELECTION_CONTACT,
+				new String[] { contactNumber }, RichMessagingData.KEY_TIMESTAMP + " DESC");
 
 		// Get the first last entry for this contact
 		if (c.moveToFirst()) {
@@ -1409,8 +1503,8 @@ public class RichMessaging {
 			 * TODO : If the first message is the message to be deleted and no more messages are available for the same contact,
 			 * then the update is useless because it will be made on the message to be deleted.
 			 */
-			int updatedRows = cr.update(databaseUri, values, RichMessagingData.KEY_TIMESTAMP + " = " + maxDate + " AND "
-					+ RichMessagingData.KEY_CONTACT + " = \'" + contactNumber + "\'", null);
+			int updatedRows = cr.update(databaseUri, values, SELECTION_CONTACT_AND_TIMESTAMP,
+					new String[] { contactNumber, String.valueOf(maxDate) });
 			if (logger.isActivated()) {
 				logger.debug("DeleteSession : recycling updated rows (should be 1) : " + updatedRows);
 			}
@@ -1432,8 +1526,8 @@ public class RichMessaging {
      * @return Boolean
      */
 	public boolean isSessionTerminated(String sessionId) {
-		Cursor cursor = cr.query(databaseUri, new String[] { RichMessagingData.KEY_STATUS }, RichMessagingData.KEY_CHAT_SESSION_ID + " = "
-				+ sessionId, null, RichMessagingData.KEY_TIMESTAMP + " DESC");
+		Cursor cursor = cr.query(databaseUri, new String[] { RichMessagingData.KEY_STATUS }, SELECTION_SESSION_ID,
+				new String[] { sessionId }, RichMessagingData.KEY_TIMESTAMP + " DESC");
 		if (cursor.moveToFirst()) {
 			int status = cursor.getInt(0);
 			if ((status == EventsLogApi.STATUS_TERMINATED) || (status == EventsLogApi.STATUS_TERMINATED_BY_REMOTE)
@@ -1454,8 +1548,12 @@ public class RichMessaging {
      * @return true if new message
      */
 	public boolean isNewMessage(String chatId, String msgId) {
-		Cursor cursor = cr.query(databaseUri, new String[] { RichMessagingData.KEY_MESSAGE_ID }, "(" + RichMessagingData.KEY_CHAT_ID + " = '"
-				+ chatId + "') AND (" + RichMessagingData.KEY_MESSAGE_ID + " = \"" + msgId + "\")", null, null);
+		if ((chatId == null) || (msgId == null)) {
+			return true;
+		}
+		writeQueue.flush(msgId);
+		Cursor cursor = cr.query(databaseUri, new String[] { RichMessagingData.KEY_MESSAGE_ID }, SELECTION_MESSAGE_ID + " AND "
+				+ RichMessagingData.KEY_CHAT_ID + "=?", new String[] { msgId, chatId }, null);
 		if (cursor.moveToFirst()) {
 			cursor.close();
 			return false;
@@ -1471,10 +1569,11 @@ public class RichMessaging {
      * @return true if the message ID already exists
      */
 	public boolean doesMessageIdAlreadyExist(String msgId) {
+		writeQueue.flush(msgId);
 		Cursor cursor = null;
 		try {
-			cursor = cr.query(databaseUri, new String[] { RichMessagingData.KEY_MESSAGE_ID }, "(" + RichMessagingData.KEY_MESSAGE_ID + " = \""
-					+ msgId + "\")", null, null);
+			cursor = cr.query(databaseUri, new String[] { RichMessagingData.KEY_MESSAGE_ID }, SELECTION_MESSAGE_ID,
+					new String[] { msgId }, null);
 			int messagesNumber = cursor.getCount();
 			return messagesNumber != 0;
 		} catch (Exception e) {
@@ -1485,6 +1584,42 @@ public class RichMessaging {
 		}
 	}
 
+    /**
+     * Get a page of the history. The page contains at most limit entries older than
+     * the given key, from the most recent one: the next page is read with the date
+     * and row ID of the last entry of the page.
+     * 
+     * @param selection Selection of the entries
+     * @param selectionArgs Selection arguments
+     * @param beforeDate Date of the last entry of the previous page or -1 for the first page
+     * @param beforeId Row ID of the last entry of the previous page
+     * @param limit Max number of entries
+     * @return Cursor sorted by descending date and row ID
+     */
+	public Cursor getHistoryPage(String selection, String[] selectionArgs, long beforeDate, long beforeId, int limit) {
+		writeQueue.flush();
+		StringBuffer where = new StringBuffer();
+		List<String> args = new ArrayList<String>();
+		if (selection != null) {
+			where.append("(").append(selection).append(")");
+			if (selectionArgs != null) {
+				args.addAll(Arrays.asList(selectionArgs));
+			}
+		}
+		if (beforeDate >= 0) {
+			if (where.length() > 0) {
+				where.append(" AND ");
+			}
+			where.append(SELECTION_BEFORE_KEY);
+			args.add(String.valueOf(beforeDate));
+			args.add(String.valueOf(beforeDate));
+			args.add(String.valueOf(beforeId));
+		}
+		Uri uri = databaseUri.buildUpon().appendQueryParameter(RichMessagingData.PARAM_LIMIT, String.valueOf(limit)).build();
+		return cr.query(uri, null, (where.length() > 0) ? where.toString() : null, args.toArray(new String[args.size()]),
+				PAGE_SORT_ORDER);
+	}
+
     /**
      * Get all outgoing messages still marked undisplayed for a given contact
      * 
@@ -1492,6 +1627,7 @@ public class RichMessaging {
      * @return list of ids of the undisplayed messages
      */
 	public List<String> getAllOutgoingUndisplayedMessages(String contact) {
+		writeQueue.flush();
 		List<String> msgIds = new ArrayList<String>();
 		Cursor cursor = cr.query(
 				databaseUri,
@@ -1515,9 +1651,9 @@ public class RichMessaging {
      */
 	public String getGroupChatId(String sessionId) {
 		String result = null;
-		Cursor cursor = cr.query(databaseUri, new String[] { RichMessagingData.KEY_CHAT_ID }, "(" + RichMessagingData.KEY_CHAT_SESSION_ID + "='"
-				+ sessionId + "') AND (" + RichMessagingData.KEY_TYPE + "=" + EventsLogApi.TYPE_GROUP_CHAT_SYSTEM_MESSAGE + ") AND ("
-				+ RichMessagingData.KEY_CHAT_ID + " NOT NULL)", null, RichMessagingData.KEY_TIMESTAMP + " DESC");
+		Cursor cursor = cr.query(databaseUri, new String[] { RichMessagingData.KEY_CHAT_ID }, SELECTION_SESSION_ID + " AND "
+				+ RichMessagingData.KEY_TYPE + "=" + EventsLogApi.TYPE_GROUP_CHAT_SYSTEM_MESSAGE + " AND "
+				+ RichMessagingData.KEY_CHAT_ID + " NOT NULL", new String[] { sessionId }, RichMessagingData.KEY_TIMESTAMP + " DESC");
 		if (cursor.moveToFirst()) {
 			result = cursor.getString(0);
 		}
@@ -1533,9 +1669,8 @@ public class RichMessaging {
      */
 	public String getGroupChatRejoinId(String chatId) {
 		String result = null;
-		Cursor cursor = cr.query(databaseUri, new String[] { RichMessagingData.KEY_CHAT_REJOIN_ID }, "(" + RichMessagingData.KEY_CHAT_ID + "='"
-				+ chatId + "') AND (" + RichMessagingData.KEY_TYPE + "=" + EventsLogApi.TYPE_GROUP_CHAT_SYSTEM_MESSAGE + ") AND ("
-				+ RichMessagingData.KEY_CHAT_REJOIN_ID + " NOT NULL)", null, RichMessagingData.KEY_TIMESTAMP + " DESC");
+		Cursor cursor = cr.query(databaseUri, new String[] { RichMessagingData.KEY_CHAT_REJOIN_ID }, SELECTION_GROUP_CHAT_EVENTS + " AND "
+				+ RichMessagingData.KEY_CHAT_REJOIN_ID + " NOT NULL", new String[] { chatId }, RichMessagingData.KEY_TIMESTAMP + " DESC");
 		if (cursor.moveToFirst()) {
 			result = cursor.getString(0);
 		}
@@ -1552,9 +1687,8 @@ public class RichMessaging {
 	public GroupChatInfo getGroupChatInfo(String chatId) {
 		GroupChatInfo result = null;
 		Cursor cursor = cr.query(databaseUri, new String[] { RichMessagingData.KEY_CHAT_SESSION_ID, RichMessagingData.KEY_CHAT_REJOIN_ID,
-				RichMessagingData.KEY_CONTACT, RichMessagingData.KEY_DATA }, "(" + RichMessagingData.KEY_CHAT_ID + "='" + chatId + "') AND ("
-				+ RichMessagingData.KEY_TYPE + "=" + EventsLogApi.TYPE_GROUP_CHAT_SYSTEM_MESSAGE + ") AND ((" + RichMessagingData.KEY_STATUS + "="
-				+ EventsLogApi.EVENT_INITIATED + ") OR (" + RichMessagingData.KEY_STATUS + "=" + EventsLogApi.EVENT_INVITED + "))", null,
+				RichMessagingData.KEY_CONTACT, RichMessagingData.KEY_DATA }, SELECTION_GROUP_CHAT_EVENTS + " AND (" + RichMessagingData.KEY_STATUS + "="
+				+ EventsLogApi.EVENT_INITIATED + " OR " + RichMessagingData.KEY_STATUS + "=" + EventsLogApi.EVENT_INVITED + ")", new String[] { chatId },
 				RichMessagingData.KEY_TIMESTAMP + " DESC");
 
 		if (cursor.moveToFirst()) {
@@ -1573,10 +1707,11 @@ public class RichMessaging {
      * @return the session ID or null if message ID does not exist
      */
 	public String getChatSessionIdForMessageId(String msgId) {
+		writeQueue.flush(msgId);
 		Cursor cursor = null;
 		try {
-			cursor = cr.query(databaseUri, new String[] { RichMessagingData.KEY_CHAT_SESSION_ID }, "(" + RichMessagingData.KEY_MESSAGE_ID + " = \"" + msgId
-					+ "\")", null, null);
+			cursor = cr.query(databaseUri, new String[] { RichMessagingData.KEY_CHAT_SESSION_ID }, SELECTION_MESSAGE_ID,
+					new String[] { msgId }, null);
 			if (cursor.moveToFirst()) {
 				return cursor.getString(0);
 			}
@@ -1596,8 +1731,7 @@ public class RichMessaging {
      */
 	public int getGroupChatStatus(String chatId) {
 		int result = -1;
-		Cursor cursor = cr.query(databaseUri, new String[] { RichMessagingData.KEY_STATUS }, "(" + RichMessagingData.KEY_CHAT_ID + "='" + chatId
-				+ "') AND (" + RichMessagingData.KEY_TYPE + "=" + EventsLogApi.TYPE_GROUP_CHAT_SYSTEM_MESSAGE + ")", null,
+		Cursor cursor = cr.query(databaseUri, new String[] { RichMessagingData.KEY_STATUS }, SELECTION_GROUP_CHAT_EVENTS, new String[] { chatId },
 				RichMessagingData.KEY_TIMESTAMP + " DESC");
 		if (cursor.moveToFirst()) {
 			result = cursor.getInt(0);
@@ -1656,10 +1790,9 @@ public class RichMessaging {
      */
 	public String getGroupChatSubject(String chatId) {
 		String result = null;
-		Cursor cursor = cr.query(databaseUri, new String[] { RichMessagingData.KEY_DATA }, "(" + RichMessagingData.KEY_CHAT_ID + "='" + chatId
-				+ "') AND (" + RichMessagingData.KEY_TYPE + "=" + EventsLogApi.TYPE_GROUP_CHAT_SYSTEM_MESSAGE + ") AND ("
+		Cursor cursor = cr.query(databaseUri, new String[] { RichMessagingData.KEY_DATA }, SELECTION_GROUP_CHAT_EVENTS + " AND ("
 				+ RichMessagingData.KEY_STATUS + "=" + EventsLogApi.EVENT_INITIATED + " OR " + RichMessagingData.KEY_STATUS + "="
-				+ EventsLogApi.EVENT_INVITED + ") AND (" + RichMessagingData.KEY_DATA + "!='')", null, RichMessagingData.KEY_TIMESTAMP + " DESC");
+				+ EventsLogApi.EVENT_INVITED + ") AND (" + RichMessagingData.KEY_DATA + "!='')", new String[] { chatId }, RichMessagingData.KEY_TIMESTAMP + " DESC");
 		if (cursor.moveToFirst()) {
 			result = cursor.getString(0);
 		}
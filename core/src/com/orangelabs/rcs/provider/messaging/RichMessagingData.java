@@ -57,5 +57,8 @@ public class RichMessagingData {
 	
 	// Field for Group Chat: reject next Group Chat
 	public static final String KEY_REJECT_GC = "reject_gc";
+	
+	// URI query parameter: max number of rows returned by a query
+	public static final String PARAM_LIMIT = "limit";
 	
 }
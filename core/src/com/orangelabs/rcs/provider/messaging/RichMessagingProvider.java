@@ -18,12 +18,17 @@
 
 package com.orangelabs.rcs.provider.messaging;
 
+import java.util.ArrayList;
+
 import com.orangelabs.rcs.provider.RichProviderHelper;
 import com.orangelabs.rcs.provider.eventlogs.EventLogData;
 
 import android.content.ContentProvider;
+import android.content.ContentProviderOperation;
+import android.content.ContentProviderResult;
 import android.content.ContentUris;
 import android.content.ContentValues;
+import android.content.OperationApplicationException;
 import android.content.UriMatcher;
 import android.database.Cursor;
 import android.database.SQLException;
@@ -68,6 +73,17 @@ public class RichMessagingProvider extends ContentProvider {
      */
     private SQLiteOpenHelper openHelper;
 
+    /**
+     * Last generated row id
+     */
+    private static int lastId = 0;
+
+    /**
+     * Set while the current thread applies a batch, the change notifications
+     * are then sent once at the end of the batch
+     */
+    private ThreadLocal<Boolean> batchInProgress = new ThreadLocal<Boolean>();
+
 	@Override 
 	public boolean onCreate() {
 		if(RichProviderHelper.getInstance()==null){
@@ -116,7 +132,8 @@ public class RichMessagingProvider extends ContentProvider {
         }
 
         SQLiteDatabase db = openHelper.getReadableDatabase();
-        Cursor c = qb.query(db, projectionIn, selection, selectionArgs, groupBy, null, sort);
+        String limit = uri.getQueryParameter(RichMessagingData.PARAM_LIMIT);
+        Cursor c = qb.query(db, projectionIn, selection, selectionArgs, groupBy, null, sort, limit);
 
 		// Register the contexts ContentResolver to be notified if
 		// the cursor result set changes.
@@ -147,9 +164,7 @@ public class RichMessagingProvider extends ContentProvider {
             default:
                 throw new UnsupportedOperationException("Cannot update URI " + uri);
         }
-        getContext().getContentResolver().notifyChange(uri, null);
-        // Also notify changes to the Event log provider
-        getContext().getContentResolver().notifyChange(EventLogData.CONTENT_URI, null);
+        notifyChange(uri);
         return count;
     }
     
@@ -162,11 +177,7 @@ public class RichMessagingProvider extends ContentProvider {
 	            // Insert the new row, will return the row number if successful
 	        	// Use system clock to generate id : it should not be a common int otherwise it could be the 
 	        	// same as an id present in MmsSms table (and that will create uniqueness problem when doing the tables merge) 
-	        	int id = (int)System.currentTimeMillis();
-	        	if (Integer.signum(id) == -1){
-	        		// If generated id is <0, it is problematic for uris
-	        		id = -id;
-	        	}
+	        	int id = generateId();
 	        	initialValues.put(RichMessagingData.KEY_ID, id);
 	        	initialValues.put(RichMessagingData.KEY_SIZE,0);
 	    		long rowId = db.insert(TABLE, null, initialValues);
@@ -175,9 +186,7 @@ public class RichMessagingProvider extends ContentProvider {
 	        default:
 	    		throw new SQLException("Failed to insert row into " + uri);
         }
-		getContext().getContentResolver().notifyChange(uri, null);
-        // Also notify changes to the Event log provider
-		getContext().getContentResolver().notifyChange(EventLogData.CONTENT_URI, null);
+		notifyChange(uri);
 		return uri;
     }
     
@@ -207,10 +216,57 @@ public class RichMessagingProvider extends ContentProvider {
 	        default:
 	    		throw new SQLException("Failed to delete row " + uri);
         }
-		getContext().getContentResolver().notifyChange(uri, null);
-        // Also notify changes to the Event log provider
-        getContext().getContentResolver().notifyChange(EventLogData.CONTENT_URI, null);
+		notifyChange(uri);
         return count;    
-   }	
-    
+   }
+
+	@Override
+	public ContentProviderResult[] applyBatch(ArrayList<ContentProviderOperation> operations) throws OperationApplicationException {
+		SQLiteDatabase db = openHelper.getWritableDatabase();
+		batchInProgress.set(Boolean.TRUE);
+		db.beginTransaction();
+		try {
+			ContentProviderResult[] results = super.applyBatch(operations);
+			db.setTransactionSuccessful();
+			return results;
+		} finally {
+			db.endTransaction();
+			batchInProgress.set(null);
+			notifyChange(RichMessagingData.CONTENT_URI);
+		}
+	}
+
+	/**
+	 * Notify a change of the history, unless a batch is in progress
+	 * 
+	 * @param uri Modified URI
+	 */
+	private void notifyChange(Uri uri) {
+		if (batchInProgress.get() != null) {
+			return;
+		}
+		getContext().getContentResolver().notifyChange(uri, null);
+		// Also notify changes to the Event log provider
+		getContext().getContentResolver().notifyChange(EventLogData.CONTENT_URI, null);
+	}
+
+	/**
+	 * Generate a row id from the system clock. It should not be a common int otherwise
+	 * it could be the same as an id present in MmsSms table. Two rows inserted in the
+	 * same millisecond (e.g. in a batch) get distinct ids.
+	 * 
+	 * @return Row id
+	 */
+	private static synchronized int generateId() {
+		int id = (int)System.currentTimeMillis();
+		if (Integer.signum(id) == -1){
+			// If generated id is <0, it is problematic for uris
+			id = -id;
+		}
+		if (id <= lastId) {
+			id = lastId + 1;
+		}
+		lastId = id;
+		return id;
+	}
 }
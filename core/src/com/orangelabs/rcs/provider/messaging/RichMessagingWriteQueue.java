@@ -0,0 +1,545 @@
+/*******************************************************************************
+ * Software Name : RCS IMS Stack
+ *
+ * Copyright (C) 2010 France Telecom S.A.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.orangelabs.rcs.provider.messaging;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import android.content.ContentProviderOperation;
+import android.content.ContentResolver;
+import android.content.ContentValues;
+
+import com.orangelabs.rcs.utils.StringUtils;
+import com.orangelabs.rcs.utils.logger.Logger;
+
+/**
+ * Write-behind queue of the chat message and IMDN writes in the messaging history
+ * <br>Incoming messages and delivery status updates are queued by the receiving
+ * thread and written in a single transaction by a background thread, at the
+ * latest {@link #MAX_LATENCY} ms after the first pending write. The status
+ * updates of a same message are coalesced before being written. If the
+ * transaction fails, each write is done separately and the failed ones are
+ * queued again.
+ */
+public class RichMessagingWriteQueue {
+	/**
+	 * Max delay in milliseconds before a pending write is flushed
+	 */
+	private final static long MAX_LATENCY = 100L;
+
+	/**
+	 * Number of pending writes triggering an immediate flush
+	 */
+	private final static int MAX_BATCH_SIZE = 50;
+
+	/**
+	 * Number of pending writes above which the caller flushes the queue itself
+	 */
+	private final static int MAX_PENDING_SIZE = 1000;
+
+	/**
+	 * Max number of attempts to write a message
+	 */
+	private final static int MAX_ATTEMPTS = 3;
+
+	/**
+	 * Pending status update of a message
+	 */
+	private static class PendingStatus {
+		/**
+		 * New status or null if unchanged
+		 */
+		Integer status = null;
+
+		/**
+		 * Contacts to be added in the delivered list
+		 */
+		Set<String> delivered = null;
+
+		/**
+		 * Contacts to be added in the displayed list
+		 */
+		Set<String> displayed = null;
+	}
+
+	/**
+	 * Messaging history
+	 */
+	private RichMessaging messaging;
+
+	/**
+	 * Content resolver
+	 */
+	private ContentResolver cr;
+
+	/**
+	 * Pending inserts indexed by message ID
+	 */
+	private LinkedHashMap<String, ContentValues> pendingInserts = new LinkedHashMap<String, ContentValues>();
+
+	/**
+	 * Pending status updates indexed by message ID
+	 */
+	private LinkedHashMap<String, PendingStatus> pendingUpdates = new LinkedHashMap<String, PendingStatus>();
+
+	/**
+	 * Number of failed attempts indexed by message ID
+	 */
+	private HashMap<String, Integer> failures = new HashMap<String, Integer>();
+
+	/**
+	 * Time of the oldest pending write
+	 */
+	private long firstPendingTime = 0L;
+
+	/**
+	 * Lock serializing the flushes, so that batches are written in order
+	 */
+	private Object flushLock = new Object();
+
+	/**
+	 * Writer thread
+	 */
+	private Thread writer = null;
+
+	/**
+	 * The logger
+	 */
+	private Logger logger = Logger.getLogger(this.getClass().getName());
+
+	/**
+	 * Constructor
+	 *
+	 * @param messaging Messaging history
+	 * @param cr Content resolver
+	 */
+	public RichMessagingWriteQueue(RichMessaging messaging, ContentResolver cr) {
+		this.messaging = messaging;
+		this.cr = cr;
+	}
+
+	/**
+	 * Stop the writer thread and write the pending writes in the database. The
+	 * writer thread is started again by the next write.
+	 */
+	public void stop() {
+		Thread thread;
+		synchronized(this) {
+			thread = writer;
+			writer = null;
+		}
+		if (thread != null) {
+			thread.interrupt();
+		}
+		flush();
+	}
+
+	/**
+	 * Queue the insert of a new message
+	 *
+	 * @param msgId Message ID
+	 * @param values Values of the new entry, except the number of messages
+	 */
+	public void insert(String msgId, ContentValues values) {
+		boolean overflow;
+		synchronized(this) {
+			pendingInserts.put(msgId, values);
+			overflow = enqueued();
+		}
+		if (overflow) {
+			flush();
+		}
+	}
+
+	/**
+	 * Queue the status update of a message
+	 *
+	 * @param msgId Message ID
+	 * @param status Status
+	 */
+	public void updateStatus(String msgId, int status) {
+		boolean overflow;
+		synchronized(this) {
+			getPendingStatus(msgId).status = status;
+			overflow = enqueued();
+		}
+		if (overflow) {
+			flush();
+		}
+	}
+
+	/**
+	 * Queue the status update of a message and the addition of the contact who
+	 * sent the delivery report to the corresponding list
+	 *
+	 * @param msgId Message ID
+	 * @param status Status
+	 * @param contact Contact
+	 * @param column Column of the contact list
+	 */
+	public void updateStatus(String msgId, int status, String contact, String column) {
+		boolean overflow;
+		synchronized(this) {
+			PendingStatus pending = getPendingStatus(msgId);
+			pending.status = status;
+			if (RichMessagingData.KEY_IMDN_DISPLAYED_LIST.equals(column)) {
+				if (pending.displayed == null) {
+					pending.displayed = new LinkedHashSet<String>();
+				}
+				pending.displayed.add(contact);
+			} else {
+				if (pending.delivered == null) {
+					pending.delivered = new LinkedHashSet<String>();
+				}
+				pending.delivered.add(contact);
+			}
+			overflow = enqueued();
+		}
+		if (overflow) {
+			flush();
+		}
+	}
+
+	/**
+	 * Flush the queue if a write is pending for a given message, so that the
+	 * message can be read from the database
+	 *
+	 * @param msgId Message ID
+	 */
+	public void flush(String msgId) {
+		boolean pending;
+		synchronized(this) {
+			pending = pendingInserts.containsKey(msgId) || pendingUpdates.containsKey(msgId);
+		}
+		if (pending) {
+			flush();
+		}
+	}
+
+	/**
+	 * Write all the pending writes in the database
+	 */
+	public void flush() {
+		synchronized(flushLock) {
+			LinkedHashMap<String, ContentValues> inserts;
+			LinkedHashMap<String, PendingStatus> updates;
+			synchronized(this) {
+				if (pendingInserts.isEmpty() && pendingUpdates.isEmpty()) {
+					return;
+				}
+				inserts = pendingInserts;
+				updates = pendingUpdates;
+				pendingInserts = new LinkedHashMap<String, ContentValues>();
+				pendingUpdates = new LinkedHashMap<String, PendingStatus>();
+			}
+			write(inserts, updates);
+		}
+	}
+
+	/**
+	 * Returns the pending status update of a message, created if needed
+	 *
+	 * @param msgId Message ID
+	 * @return Pending status
+	 */
+	private PendingStatus getPendingStatus(String msgId) {
+		PendingStatus pending = pendingUpdates.get(msgId);
+		if (pending == null) {
+			pending = new PendingStatus();
+			pendingUpdates.put(msgId, pending);
+		}
+		return pending;
+	}
+
+	/**
+	 * A write has been queued, wake up the writer thread if needed
+	 *
+	 * @return Returns true if the caller has to flush the queue itself
+	 */
+	private boolean enqueued() {
+		int size = pendingInserts.size() + pendingUpdates.size();
+		if (size == 1) {
+			firstPendingTime = System.currentTimeMillis();
+		}
+		startWriter();
+		if ((size == 1) || (size >= MAX_BATCH_SIZE)) {
+			notifyAll();
+		}
+		return size >= MAX_PENDING_SIZE;
+	}
+
+	/**
+	 * Start the writer thread if needed
+	 */
+	private void startWriter() {
+		if (writer == null) {
+			writer = new Thread("RichMessagingWriter") {
+				public void run() {
+					processQueue();
+				}
+			};
+			writer.setDaemon(true);
+			writer.start();
+		}
+	}
+
+	/**
+	 * Writer thread processing
+	 */
+	private void processQueue() {
+		while (isWriter()) {
+			try {
+				synchronized(this) {
+					while (pendingInserts.isEmpty() && pendingUpdates.isEmpty()) {
+						wait();
+					}
+					long delay = firstPendingTime + MAX_LATENCY - System.currentTimeMillis();
+					while ((delay > 0) && ((pendingInserts.size() + pendingUpdates.size()) < MAX_BATCH_SIZE)) {
+						wait(delay);
+						delay = firstPendingTime + MAX_LATENCY - System.currentTimeMillis();
+					}
+				}
+				flush();
+			} catch(InterruptedException e) {
+				// Nothing to do
+			} catch(Exception e) {
+				if (logger.isActivated()) {
+					logger.error("Can't write the messaging history", e);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Check if the current thread is the running writer thread
+	 *
+	 * @return Boolean
+	 */
+	private synchronized boolean isWriter() {
+		return writer == Thread.currentThread();
+	}
+
+	/**
+	 * Write a batch in a single transaction
+	 *
+	 * @param inserts Inserts
+	 * @param updates Status updates
+	 */
+	private void write(Map<String, ContentValues> inserts, Map<String, PendingStatus> updates) {
+		ArrayList<ContentProviderOperation> ops = new ArrayList<ContentProviderOperation>();
+		LinkedHashMap<String, ContentValues> updateValues = new LinkedHashMap<String, ContentValues>();
+
+		// New messages: the number of messages of a contact is incremented locally
+		// as the previous inserts of the batch are not yet in the database
+		HashMap<String, Integer> numberOfMessages = new HashMap<String, Integer>();
+		for (Iterator<ContentValues> it = inserts.values().iterator(); it.hasNext();) {
+			ContentValues values = it.next();
+			String contact = values.getAsString(RichMessagingData.KEY_CONTACT);
+			Integer number = numberOfMessages.get(contact);
+			if (number == null) {
+				number = messaging.recycler(contact);
+			}
+			number = number + 1;
+			numberOfMessages.put(contact, number);
+			values.put(RichMessagingData.KEY_NUMBER_MESSAGES, number);
+			ops.add(ContentProviderOperation.newInsert(RichMessagingData.CONTENT_URI).withValues(values).build());
+		}
+
+		// Status updates, one per message
+		for (Iterator<Map.Entry<String, PendingStatus>> it = updates.entrySet().iterator(); it.hasNext();) {
+			Map.Entry<String, PendingStatus> entry = it.next();
+			String msgId = entry.getKey();
+			PendingStatus pending = entry.getValue();
+			ContentValues values = new ContentValues();
+			if (pending.status != null) {
+				values.put(RichMessagingData.KEY_STATUS, pending.status);
+			}
+			if (pending.delivered != null) {
+				Set<String> contacts = messaging.getContactsChat(msgId, RichMessagingData.KEY_IMDN_DELIVERED_LIST);
+				contacts.addAll(pending.delivered);
+				values.put(RichMessagingData.KEY_IMDN_DELIVERED_LIST, StringUtils.join(contacts, ";"));
+			}
+			if (pending.displayed != null) {
+				Set<String> contacts = messaging.getContactsChat(msgId, RichMessagingData.KEY_IMDN_DISPLAYED_LIST);
+				contacts.addAll(pending.displayed);
+				values.put(RichMessagingData.KEY_IMDN_DISPLAYED_LIST, StringUtils.join(contacts, ";"));
+			}
+			updateValues.put(msgId, values);
+			ops.add(ContentProviderOperation.newUpdate(RichMessagingData.CONTENT_URI)
+					.withSelection(RichMessagingData.KEY_MESSAGE_ID + "=?", new String[] { msgId })
+					.withValues(values).build());
+		}
+
+		try {
+			long startTime = System.nanoTime();
+			cr.applyBatch(RichMessagingData.CONTENT_URI.getAuthority(), ops);
+			RichMessaging.WRITE_LATENCY.recordMicrosSince(startTime);
+			if (logger.isActivated()) {
+				logger.debug("Messaging history batch written: " + inserts.size() + " inserts, "
+						+ updates.size() + " updates");
+			}
+			succeeded(inserts.keySet());
+			succeeded(updates.keySet());
+		} catch(Exception e) {
+			if (logger.isActivated()) {
+				logger.error("Can't write the messaging history batch, write each operation", e);
+			}
+			writeEach(inserts, updates, updateValues);
+		}
+	}
+
+	/**
+	 * Write each operation of a failed batch separately, the failed operations
+	 * are queued again
+	 *
+	 * @param inserts Inserts
+	 * @param updates Status updates
+	 * @param updateValues Values of the status updates
+	 */
+	private void writeEach(Map<String, ContentValues> inserts, Map<String, PendingStatus> updates,
+			Map<String, ContentValues> updateValues) {
+		LinkedHashMap<String, ContentValues> failedInserts = new LinkedHashMap<String, ContentValues>();
+		LinkedHashMap<String, PendingStatus> failedUpdates = new LinkedHashMap<String, PendingStatus>();
+		for (Iterator<Map.Entry<String, ContentValues>> it = inserts.entrySet().iterator(); it.hasNext();) {
+			Map.Entry<String, ContentValues> entry = it.next();
+			try {
+				cr.insert(RichMessagingData.CONTENT_URI, entry.getValue());
+			} catch(Exception e) {
+				if (logger.isActivated()) {
+					logger.error("Can't insert message " + entry.getKey(), e);
+				}
+				failedInserts.put(entry.getKey(), entry.getValue());
+			}
+		}
+		for (Iterator<Map.Entry<String, ContentValues>> it = updateValues.entrySet().iterator(); it.hasNext();) {
+			Map.Entry<String, ContentValues> entry = it.next();
+			String msgId = entry.getKey();
+			if (failedInserts.containsKey(msgId)) {
+				// The update must follow the insert
+				failedUpdates.put(msgId, updates.get(msgId));
+				continue;
+			}
+			try {
+				cr.update(RichMessagingData.CONTENT_URI, entry.getValue(),
+						RichMessagingData.KEY_MESSAGE_ID + "=?", new String[] { msgId });
+			} catch(Exception e) {
+				if (logger.isActivated()) {
+					logger.error("Can't update message " + msgId, e);
+				}
+				failedUpdates.put(msgId, updates.get(msgId));
+			}
+		}
+		succeeded(inserts.keySet());
+		succeeded(updates.keySet());
+		if (!failedInserts.isEmpty() || !failedUpdates.isEmpty()) {
+			requeue(failedInserts, failedUpdates);
+		}
+	}
+
+	/**
+	 * Forget the failed attempts of the written messages
+	 *
+	 * @param msgIds Message IDs
+	 */
+	private synchronized void succeeded(Set<String> msgIds) {
+		if (!failures.isEmpty()) {
+			failures.keySet().removeAll(msgIds);
+		}
+	}
+
+	/**
+	 * Queue the failed writes again, before the writes queued in the meantime
+	 *
+	 * @param inserts Failed inserts
+	 * @param updates Failed status updates
+	 */
+	private synchronized void requeue(Map<String, ContentValues> inserts, Map<String, PendingStatus> updates) {
+		LinkedHashMap<String, ContentValues> newInserts = new LinkedHashMap<String, ContentValues>();
+		LinkedHashMap<String, PendingStatus> newUpdates = new LinkedHashMap<String, PendingStatus>();
+		HashSet<String> msgIds = new HashSet<String>(inserts.keySet());
+		msgIds.addAll(updates.keySet());
+		for (Iterator<String> it = msgIds.iterator(); it.hasNext();) {
+			String msgId = it.next();
+			Integer count = failures.get(msgId);
+			int attempts = (count == null) ? 1 : count + 1;
+			if (attempts >= MAX_ATTEMPTS) {
+				if (logger.isActivated()) {
+					logger.error("Drop the writes of message " + msgId + " after " + attempts + " attempts");
+				}
+				failures.remove(msgId);
+				inserts.remove(msgId);
+				updates.remove(msgId);
+			} else {
+				failures.put(msgId, attempts);
+			}
+		}
+		newInserts.putAll(inserts);
+		newInserts.putAll(pendingInserts);
+		newUpdates.putAll(updates);
+		for (Iterator<Map.Entry<String, PendingStatus>> it = pendingUpdates.entrySet().iterator(); it.hasNext();) {
+			Map.Entry<String, PendingStatus> entry = it.next();
+			PendingStatus failed = newUpdates.get(entry.getKey());
+			if (failed != null) {
+				merge(failed, entry.getValue());
+			} else {
+				newUpdates.put(entry.getKey(), entry.getValue());
+			}
+		}
+		pendingInserts = newInserts;
+		pendingUpdates = newUpdates;
+		if (!pendingInserts.isEmpty() || !pendingUpdates.isEmpty()) {
+			// Retry after the max latency
+			firstPendingTime = System.currentTimeMillis();
+			startWriter();
+			notifyAll();
+		}
+	}
+
+	/**
+	 * Merge a newer status update of a message into an older one
+	 *
+	 * @param older Older status update
+	 * @param newer Newer status update
+	 */
+	private static void merge(PendingStatus older, PendingStatus newer) {
+		if (newer.status != null) {
+			older.status = newer.status;
+		}
+		if (newer.delivered != null) {
+			if (older.delivered == null) {
+				older.delivered = newer.delivered;
+			} else {
+				older.delivered.addAll(newer.delivered);
+			}
+		}
+		if (newer.displayed != null) {
+			if (older.displayed == null) {
+				older.displayed = newer.displayed;
+			} else {
+				older.displayed.addAll(newer.displayed);
+			}
+		}
+	}
+}
@@ -18,12 +18,20 @@
 
 package com.orangelabs.rcs.provider.settings;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import android.content.ContentProviderOperation;
 import android.content.ContentResolver;
 import android.content.ContentValues;
 import android.content.Context;
+import android.content.OperationApplicationException;
 import android.database.Cursor;
 import android.net.Uri;
 import android.os.Environment;
+import android.os.RemoteException;
 import android.text.TextUtils;
 
 import com.orangelabs.rcs.platform.AndroidFactory;
@@ -52,6 +60,11 @@ public class RcsSettings {
 	 * Database URI
 	 */
 	private Uri databaseUri = RcsSettingsData.CONTENT_URI;
+
+	/**
+	 * The logger
+	 */
+	private static final Logger logger = Logger.getLogger(RcsSettings.class.getSimpleName());
 	
     /**
      * Create instance
@@ -123,6 +136,59 @@ public class RcsSettings {
         cr.update(databaseUri, values, where, null);
 	}
 
+	/**
+	 * Read all the parameters in one query
+	 *
+	 * @return Values indexed by key
+	 */
+	public Map<String, String> readParameters() {
+		Map<String, String> result = new HashMap<String, String>();
+		Cursor c = cr.query(databaseUri, new String[] { RcsSettingsData.KEY_KEY, RcsSettingsData.KEY_VALUE }, null, null, null);
+		if (c != null) {
+			while (c.moveToNext()) {
+				result.put(c.getString(0), c.getString(1));
+			}
+			c.close();
+		}
+		return result;
+	}
+
+	/**
+	 * Write a set of parameters in one transaction. Only the parameters whose
+	 * value differs from the current one are updated.
+	 *
+	 * @param parameters Values indexed by key
+	 * @return Number of parameters updated
+	 * @throws RemoteException
+	 * @throws OperationApplicationException
+	 */
+	public int writeParameters(Map<String, String> parameters) throws RemoteException, OperationApplicationException {
+		Map<String, String> current = readParameters();
+		ArrayList<ContentProviderOperation> ops = new ArrayList<ContentProviderOperation>();
+		for (Iterator<Map.Entry<String, String>> it = parameters.entrySet().iterator(); it.hasNext();) {
+			Map.Entry<String, String> entry = it.next();
+			String key = entry.getKey();
+			String value = entry.getValue();
+			if ((key == null) || (value == null) || value.equals(current.get(key))) {
+				continue;
+			}
+			ContentValues values = new ContentValues();
+			values.put(RcsSettingsData.KEY_VALUE, value);
+			ops.add(ContentProviderOperation.newUpdate(databaseUri)
+					.withSelection(RcsSettingsData.KEY_KEY + "='" + key + "'", null)
+					.withValues(values).build());
+		}
+		if (ops.size() == 0) {
+			return 0;
+		}
+
+		cr.applyBatch(databaseUri.getAuthority(), ops);
+		if (logger.isActivated()) {
+			logger.debug(ops.size() + " of " + parameters.size() + " parameters updated");
+		}
+		return ops.size();
+	}
+
 	/**
      * Insert a parameter
      *
@@ -1894,6 +1960,19 @@ public class RcsSettings {
 		return result;
 	}
 
+    /**
+     * Get resource list URI used to fetch the capabilities of several contacts at once
+     *
+     * @return SIP URI or empty if not supported
+     */
+	public String getCapabilityAnonymousFetchListUri() {
+		String result = "";
+		if (instance != null) {
+			result = readParameter(RcsSettingsData.CAPABILITY_ANONYMOUS_FETCH_LIST_URI);
+		}
+		return result;
+	}
+
     /**
      * Is CS video supported
      *
@@ -2825,4 +2904,34 @@ public class RcsSettings {
         return result;
     }
 
+	/**
+	 * Get the max number of TLS sessions kept for resumption
+	 *
+	 * @return Number of sessions
+	 */
+	public int getTlsSessionCacheSize() {
+		int result = 32;
+		if (instance != null) {
+			try {
+				result = Integer.parseInt(readParameter(RcsSettingsData.TLS_SESSION_CACHE_SIZE));
+			} catch(Exception e) {}
+		}
+		return result;
+	}
+
+	/**
+	 * Get the timeout of a TLS session kept for resumption
+	 *
+	 * @return Timeout in seconds
+	 */
+	public int getTlsSessionTimeout() {
+		int result = 3600;
+		if (instance != null) {
+			try {
+				result = Integer.parseInt(readParameter(RcsSettingsData.TLS_SESSION_TIMEOUT));
+			} catch(Exception e) {}
+		}
+		return result;
+	}
+
 }
@@ -607,6 +607,11 @@ public class RcsSettingsData {
 	 */
 	public static final String CAPABILITY_POLLING_PERIOD = "CapabilityPollingPeriod";
 
+	/**
+	 * Resource list URI used to fetch the capabilities of several contacts at once
+	 */
+	public static final String CAPABILITY_ANONYMOUS_FETCH_LIST_URI = "CapabilityAnonymousFetchListUri";
+
 	/**
 	 * CS video capability
 	 */
@@ -879,4 +884,14 @@ public class RcsSettingsData {
      * Key to enable TCP fallback according to RFC3261 chapter 18.1.1
     */
     public static final String KEY_TCP_FALLBACK = "TcpFallback";
+
+	/**
+	 * Max number of TLS sessions kept for resumption
+	 */
+	public static final String TLS_SESSION_CACHE_SIZE = "TlsSessionCacheSize";
+
+	/**
+	 * Timeout of a TLS session kept for resumption (in seconds)
+	 */
+	public static final String TLS_SESSION_TIMEOUT = "TlsSessionTimeout";
 }
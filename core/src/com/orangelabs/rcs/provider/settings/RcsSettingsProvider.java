@@ -23,8 +23,11 @@ import java.util.ArrayList;
 import javax2.sip.ListeningPoint;
 
 import android.content.ContentProvider;
+import android.content.ContentProviderOperation;
+import android.content.ContentProviderResult;
 import android.content.ContentValues;
 import android.content.Context;
+import android.content.OperationApplicationException;
 import android.content.UriMatcher;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
@@ -64,6 +67,12 @@ public class RcsSettingsProvider extends ContentProvider {
      * Database helper class
      */
     private SQLiteOpenHelper openHelper;
+
+    /**
+     * Set while the current thread applies a batch, the change notification
+     * is then sent once at the end of the batch
+     */
+    private ThreadLocal<Boolean> batchInProgress = new ThreadLocal<Boolean>();
     
     /**
      * Database name
@@ -74,7 +83,7 @@ public class RcsSettingsProvider extends ContentProvider {
      * Helper class for opening, creating and managing database version control
      */
     private static class DatabaseHelper extends SQLiteOpenHelper {
-        private static final int DATABASE_VERSION = 86;
+        private static final int DATABASE_VERSION = 88;
 
         private Context ctx;
 
@@ -200,6 +209,7 @@ public class RcsSettingsProvider extends ContentProvider {
             addParameter(db, RcsSettingsData.CAPABILITY_REFRESH_TIMEOUT, 		"1");
             addParameter(db, RcsSettingsData.CAPABILITY_EXPIRY_TIMEOUT, 		"86400");
             addParameter(db, RcsSettingsData.CAPABILITY_POLLING_PERIOD,			"3600");
+            addParameter(db, RcsSettingsData.CAPABILITY_ANONYMOUS_FETCH_LIST_URI,	"");
             addParameter(db, RcsSettingsData.IM_CAPABILITY_ALWAYS_ON,			RcsSettingsData.TRUE);
             addParameter(db, RcsSettingsData.FT_CAPABILITY_ALWAYS_ON,			RcsSettingsData.FALSE);
             addParameter(db, RcsSettingsData.IM_USE_REPORTS,					RcsSettingsData.TRUE);
@@ -242,6 +252,8 @@ public class RcsSettingsProvider extends ContentProvider {
             addParameter(db, RcsSettingsData.IPCALL_BREAKOUT_LABEL,				"");
             addParameter(db, RcsSettingsData.IPCALL_E2E_VOICECAPABILITYHANDLING,RcsSettingsData.FALSE);
             addParameter(db, RcsSettingsData.KEY_TCP_FALLBACK,					RcsSettingsData.FALSE);
+            addParameter(db, RcsSettingsData.TLS_SESSION_CACHE_SIZE,			"32");
+            addParameter(db, RcsSettingsData.TLS_SESSION_TIMEOUT,				"3600");
             
         }
 
@@ -380,9 +392,37 @@ public class RcsSettingsProvider extends ContentProvider {
             default:
                 throw new UnsupportedOperationException("Cannot update URI " + uri);
         }
-        getContext().getContentResolver().notifyChange(uri, null);
+        notifyChange(uri);
         return count;
     }
+
+	@Override
+	public ContentProviderResult[] applyBatch(ArrayList<ContentProviderOperation> operations) throws OperationApplicationException {
+		SQLiteDatabase db = openHelper.getWritableDatabase();
+		batchInProgress.set(Boolean.TRUE);
+		db.beginTransaction();
+		try {
+			ContentProviderResult[] results = super.applyBatch(operations);
+			db.setTransactionSuccessful();
+			return results;
+		} finally {
+			db.endTransaction();
+			batchInProgress.set(null);
+			notifyChange(RcsSettingsData.CONTENT_URI);
+		}
+	}
+
+	/**
+	 * Notify a change of the settings, unless a batch is in progress
+	 * 
+	 * @param uri Modified URI
+	 */
+	private void notifyChange(Uri uri) {
+		if (batchInProgress.get() != null) {
+			return;
+		}
+		getContext().getContentResolver().notifyChange(uri, null);
+	}
 
     @Override
     public Uri insert(Uri uri, ContentValues initialValues) {
@@ -291,6 +291,6 @@ public class RichCall {
 		}
 		ContentValues values = new ContentValues();
 		values.put(RichCallData.KEY_STATUS, status);
-		cr.update(databaseUri, values, RichCallData.KEY_SESSION_ID + " = " + sessionId, null);
+		cr.update(databaseUri, values, RichCallData.KEY_SESSION_ID + "=?", new String[] { sessionId });
 	}
 }
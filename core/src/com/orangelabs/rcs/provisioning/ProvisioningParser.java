@@ -18,21 +18,25 @@
 
 package com.orangelabs.rcs.provisioning;
 
-import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
 import javax2.sip.ListeningPoint;
 
-import org.w3c.dom.Document;
-import org.w3c.dom.Node;
+import org.xml.sax.Attributes;
+import org.xml.sax.helpers.DefaultHandler;
 
 import com.orangelabs.rcs.provider.settings.RcsSettings;
 import com.orangelabs.rcs.provider.settings.RcsSettingsData;
+import com.orangelabs.rcs.utils.SaxParserPool;
 import com.orangelabs.rcs.utils.logger.Logger;
 
 /**
  * Provisioning parser
+ * <br>The document is read by a SAX parser into a tree of its elements only.
+ * The parameters are collected while parsing and the changed ones are written
+ * into the RCS settings in one transaction at the end of the parsing.
  *
  * @author jexa7410
  */
@@ -57,6 +61,11 @@ public class ProvisioningParser {
      */
     private String content;
 
+    /**
+     * Parameters to be written into the RCS settings, indexed by key
+     */
+    private Map<String, String> parameters = new LinkedHashMap<String, String>();
+
     /**
      * The logger
      */
@@ -98,24 +107,17 @@ public class ProvisioningParser {
             if (logger.isActivated()) {
                 logger.debug("Start the parsing of content");
             }
-            ByteArrayInputStream mInputStream = new ByteArrayInputStream(content.getBytes());
-            DocumentBuilderFactory dfactory = DocumentBuilderFactory.newInstance();
-            DocumentBuilder dbuilder = dfactory.newDocumentBuilder();
-            Document doc = dbuilder.parse(mInputStream);
-            mInputStream.close();
-            mInputStream = null;
-            if (doc == null) {
+            DocumentHandler handler = new DocumentHandler();
+            SaxParserPool.parse(content.getBytes(), handler);
+            Node rootnode = handler.getDocumentElement();
+            if (rootnode == null) {
                 if (logger.isActivated()) {
                     logger.debug("The document is null");
                 }
                 return false;
             }
 
-            if (logger.isActivated()) {
-                logger.debug("Parsed Doc ="+doc);
-            }
-            
-            Node rootnode = doc.getDocumentElement();
+            parameters.clear();
             Node childnode = rootnode.getFirstChild();
             if (childnode == null) {
                 if (logger.isActivated()) {
@@ -185,7 +187,13 @@ public class ProvisioningParser {
 				// We received a single node (the version one) !
 				// This is the case if the version number is negative or in order to extend the validity of the provisioning.
 				// In that case we restore the relevant GSMA release saved before parsing.
-				RcsSettings.getInstance().setGsmaRelease("" + gsmaRelease);
+				writeParameter(RcsSettingsData.KEY_GSMA_RELEASE, "" + gsmaRelease);
+            }
+
+            // Write the changed parameters in one transaction
+            int count = RcsSettings.getInstance().writeParameters(parameters);
+            if (logger.isActivated()) {
+                logger.debug(parameters.size() + " parameters parsed, " + count + " changed");
             }
             return true;
         } catch (Exception e) {
@@ -434,11 +442,11 @@ public class ProvisioningParser {
                 if (usePresence == null) {
                     if ((usePresence = getValueByParamName("usePresence", childnode, TYPE_INT)) != null) {
                         if (usePresence.equals("0")) {
-                            RcsSettings.getInstance().writeParameter(
+                            writeParameter(
                                     RcsSettingsData.CAPABILITY_SOCIAL_PRESENCE,
                                     RcsSettingsData.FALSE);
                         } else {
-                            RcsSettings.getInstance().writeParameter(
+                            writeParameter(
                                     RcsSettingsData.CAPABILITY_SOCIAL_PRESENCE,
                                     RcsSettingsData.TRUE);
                         }
@@ -449,11 +457,11 @@ public class ProvisioningParser {
                 if (presencePrfl == null) {
                     if ((presencePrfl = getValueByParamName("presencePrfl", childnode, TYPE_INT)) != null) {
                         if (presencePrfl.equals("0")) {
-                            RcsSettings.getInstance().writeParameter(
+                            writeParameter(
                                     RcsSettingsData.CAPABILITY_PRESENCE_DISCOVERY,
                                     RcsSettingsData.FALSE);
                         } else {
-                            RcsSettings.getInstance().writeParameter(
+                            writeParameter(
                                     RcsSettingsData.CAPABILITY_PRESENCE_DISCOVERY,
                                     RcsSettingsData.TRUE);
                         }
@@ -464,7 +472,7 @@ public class ProvisioningParser {
                 if (iconMaxSize == null) {
                     if ((iconMaxSize = getValueByParamName("IconMaxSize", childnode, TYPE_INT)) != null) {
         				int kb = Integer.parseInt(iconMaxSize) / 1024;
-                        RcsSettings.getInstance().writeParameter(
+                        writeParameter(
                                 RcsSettingsData.MAX_PHOTO_ICON_SIZE, ""+kb);
                         continue;
                     }
@@ -472,7 +480,7 @@ public class ProvisioningParser {
 
                 if (noteMaxSize == null) {
                     if ((noteMaxSize = getValueByParamName("NoteMaxSize", childnode, TYPE_INT)) != null) {
-                        RcsSettings.getInstance().writeParameter(
+                        writeParameter(
                                 RcsSettingsData.MAX_FREETXT_LENGTH, noteMaxSize);
                         continue;
                     }
@@ -480,7 +488,7 @@ public class ProvisioningParser {
 
                 if (publishTimer == null) {
                     if ((publishTimer = getValueByParamName("PublishTimer", childnode, TYPE_INT)) != null) {
-                        RcsSettings.getInstance().writeParameter(
+                        writeParameter(
                                 RcsSettingsData.PUBLISH_EXPIRE_PERIOD, publishTimer);
                         continue;
                     }
@@ -521,16 +529,16 @@ public class ProvisioningParser {
 			// Node "SERVICES" is mandatory in GSMA release Blackbird and not present in previous one Albatros.
 			// Only if the parsing result contains a SERVICE tree, Blackbird is assumed as release.
 			// This trick is used to detect the GSMA release as provisioned by the network.
-			RcsSettings.getInstance().setGsmaRelease(RcsSettingsData.VALUE_GSMA_REL_BLACKBIRD);
+			writeParameter(RcsSettingsData.KEY_GSMA_RELEASE, RcsSettingsData.VALUE_GSMA_REL_BLACKBIRD);
             do {
 
                 if (chatAuth == null) {
                     if ((chatAuth = getValueByParamName("ChatAuth", childnode, TYPE_INT)) != null) {
                         if (chatAuth.equals("1")) {
-                            RcsSettings.getInstance().writeParameter(
+                            writeParameter(
                                     RcsSettingsData.CAPABILITY_IM_SESSION, RcsSettingsData.TRUE);
                         } else {
-                            RcsSettings.getInstance().writeParameter(
+                            writeParameter(
                                     RcsSettingsData.CAPABILITY_IM_SESSION, RcsSettingsData.FALSE);
                         }
                         continue;
@@ -540,10 +548,10 @@ public class ProvisioningParser {
             	 if (groupChatAuth == null) {
                      if ((groupChatAuth = getValueByParamName("groupChatAuth", childnode, TYPE_INT)) != null) {
                          if (groupChatAuth.equals("1")) {
-                             RcsSettings.getInstance().writeParameter(
+                             writeParameter(
                                      RcsSettingsData.CAPABILITY_IM_GROUP_SESSION, RcsSettingsData.TRUE);
                          } else {
-                             RcsSettings.getInstance().writeParameter(
+                             writeParameter(
                                      RcsSettingsData.CAPABILITY_IM_GROUP_SESSION, RcsSettingsData.FALSE);
                          }
                          continue;
@@ -553,10 +561,10 @@ public class ProvisioningParser {
                 if (ftAuth == null) {
                     if ((ftAuth = getValueByParamName("ftAuth", childnode, TYPE_INT)) != null) {
                         if (ftAuth.equals("1")) {
-                            RcsSettings.getInstance().writeParameter(
+                            writeParameter(
                                     RcsSettingsData.CAPABILITY_FILE_TRANSFER, RcsSettingsData.TRUE);
                         } else {
-                            RcsSettings.getInstance().writeParameter(
+                            writeParameter(
                             		RcsSettingsData.CAPABILITY_FILE_TRANSFER, RcsSettingsData.FALSE);
                         }
                         continue;
@@ -566,10 +574,10 @@ public class ProvisioningParser {
                 if (vsAuth == null) {
                     if ((vsAuth = getValueByParamName("vsAuth", childnode, TYPE_INT)) != null) {
                         if (vsAuth.equals("1")) {
-                            RcsSettings.getInstance().writeParameter(
+                            writeParameter(
                                     RcsSettingsData.CAPABILITY_VIDEO_SHARING, RcsSettingsData.TRUE);
                         } else {
-                            RcsSettings.getInstance().writeParameter(
+                            writeParameter(
                             		RcsSettingsData.CAPABILITY_VIDEO_SHARING, RcsSettingsData.FALSE);
                         }
                         continue;
@@ -579,10 +587,10 @@ public class ProvisioningParser {
                 if (isAuth == null) {
                     if ((isAuth = getValueByParamName("isAuth", childnode, TYPE_INT)) != null) {
                         if (isAuth.equals("1")) {
-                            RcsSettings.getInstance().writeParameter(
+                            writeParameter(
                                     RcsSettingsData.CAPABILITY_IMAGE_SHARING, RcsSettingsData.TRUE);
                         } else {
-                            RcsSettings.getInstance().writeParameter(
+                            writeParameter(
                             		RcsSettingsData.CAPABILITY_IMAGE_SHARING, RcsSettingsData.FALSE);
                         }
                         continue;
@@ -592,10 +600,10 @@ public class ProvisioningParser {
                 if (geolocPushAuth == null) {
                     if ((geolocPushAuth = getValueByParamName("geolocPushAuth", childnode, TYPE_INT)) != null) {
                         if (geolocPushAuth.equals("1")) {
-                            RcsSettings.getInstance().writeParameter(
+                            writeParameter(
                                     RcsSettingsData.CAPABILITY_GEOLOCATION_PUSH, RcsSettingsData.TRUE);
                         } else {
-                            RcsSettings.getInstance().writeParameter(
+                            writeParameter(
                             		RcsSettingsData.CAPABILITY_GEOLOCATION_PUSH, RcsSettingsData.FALSE);
                         }
                         continue;
@@ -605,10 +613,10 @@ public class ProvisioningParser {
                 if (presencePrfl == null) {
                     if ((presencePrfl = getValueByParamName("presencePrfl", childnode, TYPE_INT)) != null) {
                         if (presencePrfl.equals("1")) {
-                            RcsSettings.getInstance().writeParameter(
+                            writeParameter(
                                     RcsSettingsData.CAPABILITY_SOCIAL_PRESENCE, RcsSettingsData.TRUE);
                         } else {
-                            RcsSettings.getInstance().writeParameter(
+                            writeParameter(
                             		RcsSettingsData.CAPABILITY_SOCIAL_PRESENCE, RcsSettingsData.FALSE);
                         }
                         continue;
@@ -622,15 +630,15 @@ public class ProvisioningParser {
                         }
                     	int value =Integer.decode(beIPVoiceCallAuth);
                         if ((value % 16) == 0){
-                        	RcsSettings.getInstance().writeParameter(
+                        	writeParameter(
                                   RcsSettingsData.CAPABILITY_IP_VOICE_CALL, RcsSettingsData.FALSE);
                         }
                         else {
-                        	RcsSettings.getInstance().writeParameter(
+                        	writeParameter(
                                     RcsSettingsData.CAPABILITY_IP_VOICE_CALL, RcsSettingsData.TRUE);
                         }
 
-                        RcsSettings.getInstance().writeParameter(
+                        writeParameter(
                                 RcsSettingsData.BE_IPVOICECALL_AUTH, String.valueOf(value));
                         
                         continue;
@@ -644,15 +652,15 @@ public class ProvisioningParser {
                         }
                         int value =Integer.decode(beIPVoiceCallAuth);
                         if ((value % 16) == 0){
-                        	RcsSettings.getInstance().writeParameter(
+                        	writeParameter(
                                   RcsSettingsData.CAPABILITY_IP_VIDEO_CALL, RcsSettingsData.FALSE);
                         }
                         else {
-                        	RcsSettings.getInstance().writeParameter(
+                        	writeParameter(
                                     RcsSettingsData.CAPABILITY_IP_VIDEO_CALL, RcsSettingsData.TRUE);
                         }
                         
-                      RcsSettings.getInstance().writeParameter(
+                      writeParameter(
                       RcsSettingsData.BE_IPVIDEOCALL_AUTH, String.valueOf(value));
                         
                         continue;
@@ -685,7 +693,7 @@ public class ProvisioningParser {
             do {
                 if (revokeTimer == null) {
                     if ((revokeTimer = getValueByParamName("RevokeTimer", childnode, TYPE_INT)) != null) {
-                        RcsSettings.getInstance().writeParameter(RcsSettingsData.REVOKE_TIMEOUT,
+                        writeParameter(RcsSettingsData.REVOKE_TIMEOUT,
                                 revokeTimer);
                         continue;
                     }
@@ -693,7 +701,7 @@ public class ProvisioningParser {
 
                 if (xcapRootURI == null) {
                     if ((xcapRootURI = getValueByParamName("XCAPRootURI", childnode, TYPE_TXT)) != null) {
-                        RcsSettings.getInstance().writeParameter(RcsSettingsData.XDM_SERVER, xcapRootURI);
+                        writeParameter(RcsSettingsData.XDM_SERVER, xcapRootURI);
                         continue;
                     }
                 }
@@ -701,7 +709,7 @@ public class ProvisioningParser {
                 if (xcapAuthenticationUsername == null) {
                     if ((xcapAuthenticationUsername = getValueByParamName(
                             "XCAPAuthenticationUserName", childnode, TYPE_TXT)) != null) {
-                        RcsSettings.getInstance().writeParameter(
+                        writeParameter(
                                 RcsSettingsData.XDM_LOGIN,
                                 xcapAuthenticationUsername);
                         continue;
@@ -711,7 +719,7 @@ public class ProvisioningParser {
                 if (xcapAuthenticationSecret == null) {
                     if ((xcapAuthenticationSecret = getValueByParamName(
                             "XCAPAuthenticationSecret", childnode, TYPE_TXT)) != null) {
-                        RcsSettings.getInstance().writeParameter(
+                        writeParameter(
                                 RcsSettingsData.XDM_PASSWORD,
                                 xcapAuthenticationSecret);
                         continue;
@@ -741,7 +749,7 @@ public class ProvisioningParser {
             do {
                 if (textMaxLength == null) {
                     if ((textMaxLength = getValueByParamName("TextMaxLength", childnode, TYPE_INT)) != null) {
-                        RcsSettings.getInstance().writeParameter(RcsSettingsData.MAX_GEOLOC_LABEL_LENGTH,
+                        writeParameter(RcsSettingsData.MAX_GEOLOC_LABEL_LENGTH,
                         		textMaxLength);
                         continue;
                     }
@@ -749,7 +757,7 @@ public class ProvisioningParser {
 
                 if (locInfoMaxValidTime == null) {
                     if ((locInfoMaxValidTime = getValueByParamName("LocInfoMaxValidTime", childnode, TYPE_INT)) != null) {
-                        RcsSettings.getInstance().writeParameter(RcsSettingsData.GEOLOC_EXPIRATION_TIME, locInfoMaxValidTime);
+                        writeParameter(RcsSettingsData.GEOLOC_EXPIRATION_TIME, locInfoMaxValidTime);
                         continue;
                     }
                 }
@@ -838,10 +846,10 @@ public class ProvisioningParser {
                 if (messagingUX == null) {
                     if ((messagingUX = getValueByParamName("messagingUX", childnode, TYPE_INT)) != null) {
                         if (messagingUX.equals("1")) {
-                        	RcsSettings.getInstance().writeParameter(
+                        	writeParameter(
                                 RcsSettingsData.CONVERGENT_MESSAGING_UX, RcsSettingsData.TRUE);
                         } else {
-                            RcsSettings.getInstance().writeParameter(
+                            writeParameter(
                         		RcsSettingsData.CONVERGENT_MESSAGING_UX, RcsSettingsData.FALSE);
                         }
                         continue;
@@ -850,7 +858,7 @@ public class ProvisioningParser {
                 
                 if (e2eIPCallLabel == null) {
                     if ((e2eIPCallLabel = getValueByParamName("e2eIPCallLabel", childnode, TYPE_TXT)) != null) {                       
-                        RcsSettings.getInstance().writeParameter(
+                        writeParameter(
                         		RcsSettingsData.IPCALL_E2E_LABEL, e2eIPCallLabel);
                         continue;
                     }
@@ -858,7 +866,7 @@ public class ProvisioningParser {
                 
                 if (breakoutIPCallLabel == null) {
                     if ((breakoutIPCallLabel = getValueByParamName("breakoutIPCallLabel", childnode, TYPE_TXT)) != null) {                       
-                        RcsSettings.getInstance().writeParameter(
+                        writeParameter(
                         		RcsSettingsData.IPCALL_BREAKOUT_LABEL, breakoutIPCallLabel);
                         continue;
                     }
@@ -866,10 +874,10 @@ public class ProvisioningParser {
                 
                 if ((e2eVoiceCapabilityHandling = getValueByParamName(")", childnode, TYPE_INT)) != null) {
                 	if (e2eVoiceCapabilityHandling.equals("0")) {
-                    	RcsSettings.getInstance().writeParameter(
+                    	writeParameter(
                             RcsSettingsData.IPCALL_E2E_VOICECAPABILITYHANDLING, RcsSettingsData.FALSE);
                     } else {
-                        RcsSettings.getInstance().writeParameter(
+                        writeParameter(
                     		RcsSettingsData.IPCALL_E2E_VOICECAPABILITYHANDLING, RcsSettingsData.TRUE);
                     }
                     continue;
@@ -922,11 +930,11 @@ public class ProvisioningParser {
             	if (imCapAlwaysOn == null) {
                     if ((imCapAlwaysOn = getValueByParamName("imCapAlwaysON", childnode, TYPE_INT)) != null) {
                         if (imCapAlwaysOn.equals("0")) {
-                            RcsSettings.getInstance().writeParameter(
+                            writeParameter(
                                     RcsSettingsData.IM_CAPABILITY_ALWAYS_ON,
                                     RcsSettingsData.FALSE);
                         } else {
-                            RcsSettings.getInstance().writeParameter(
+                            writeParameter(
                                     RcsSettingsData.IM_CAPABILITY_ALWAYS_ON,
                                     RcsSettingsData.TRUE);
                         }
@@ -937,11 +945,11 @@ public class ProvisioningParser {
             	if (ftCapAlwaysOn == null) {
                     if ((ftCapAlwaysOn = getValueByParamName("ftCapAlwaysON", childnode, TYPE_INT)) != null) {
                         if (ftCapAlwaysOn.equals("0")) {
-                            RcsSettings.getInstance().writeParameter(
+                            writeParameter(
                                     RcsSettingsData.FT_CAPABILITY_ALWAYS_ON,
                                     RcsSettingsData.FALSE);
                         } else {
-                            RcsSettings.getInstance().writeParameter(
+                            writeParameter(
                                     RcsSettingsData.FT_CAPABILITY_ALWAYS_ON,
                                     RcsSettingsData.TRUE);
                         }
@@ -951,7 +959,7 @@ public class ProvisioningParser {
 
                 if (maxConcurrentSession == null) {
                     if ((maxConcurrentSession = getValueByParamName("MaxConcurrentSession", childnode, TYPE_INT)) != null) {
-                        RcsSettings.getInstance().writeParameter(
+                        writeParameter(
                                 RcsSettingsData.MAX_CHAT_SESSIONS,
                                 maxConcurrentSession);
                         continue;
@@ -961,11 +969,11 @@ public class ProvisioningParser {
                 if (groupChatSF == null) {
                     if ((groupChatSF = getValueByParamName("GroupChatFullStandFwd", childnode, TYPE_INT)) != null) {
                         if (groupChatSF.equals("0")) {
-                            RcsSettings.getInstance().writeParameter(
+                            writeParameter(
                                     RcsSettingsData.CAPABILITY_GROUP_CHAT_SF,
                                     RcsSettingsData.FALSE);
                         } else {
-                            RcsSettings.getInstance().writeParameter(
+                            writeParameter(
                                     RcsSettingsData.CAPABILITY_GROUP_CHAT_SF,
                                     RcsSettingsData.TRUE);
                         }
@@ -976,11 +984,11 @@ public class ProvisioningParser {
                 if (imWarnSF == null) {
                     if ((imWarnSF = getValueByParamName("imWarnSF", childnode, TYPE_INT)) != null) {
                         if (imWarnSF.equals("0")) {
-                            RcsSettings.getInstance().writeParameter(
+                            writeParameter(
                                     RcsSettingsData.WARN_SF_SERVICE,
                                     RcsSettingsData.FALSE);
                         } else {
-                            RcsSettings.getInstance().writeParameter(
+                            writeParameter(
                                     RcsSettingsData.WARN_SF_SERVICE,
                                     RcsSettingsData.TRUE);
                         }
@@ -991,11 +999,11 @@ public class ProvisioningParser {
                 if (autoAcceptFt == null) {
                     if ((autoAcceptFt = getValueByParamName("ftAutAccept", childnode, TYPE_INT)) != null) {
                         if (autoAcceptFt.equals("0")) {
-                            RcsSettings.getInstance().writeParameter(
+                            writeParameter(
                                     RcsSettingsData.AUTO_ACCEPT_FILE_TRANSFER,
                                     RcsSettingsData.FALSE);
                         } else {
-                            RcsSettings.getInstance().writeParameter(
+                            writeParameter(
                                     RcsSettingsData.AUTO_ACCEPT_FILE_TRANSFER,
                                     RcsSettingsData.TRUE);
                         }
@@ -1006,11 +1014,11 @@ public class ProvisioningParser {
                 if (ftSF == null) {
                     if ((ftSF = getValueByParamName("ftStAndFwEnabled", childnode, TYPE_INT)) != null) {
                         if (ftSF.equals("0")) {
-                            RcsSettings.getInstance().writeParameter(
+                            writeParameter(
                                     RcsSettingsData.CAPABILITY_FILE_TRANSFER_SF,
                                     RcsSettingsData.FALSE);
                         } else {
-                            RcsSettings.getInstance().writeParameter(
+                            writeParameter(
                                     RcsSettingsData.CAPABILITY_FILE_TRANSFER_SF,
                                     RcsSettingsData.TRUE);
                         }
@@ -1020,35 +1028,35 @@ public class ProvisioningParser {
 
                 if (ftHttpCsUri == null) {
                     if ((ftHttpCsUri = getValueByParamName("ftHTTPCSURI", childnode, TYPE_TXT)) != null) {
-                        RcsSettings.getInstance().writeParameter(RcsSettingsData.FT_HTTP_SERVER, ftHttpCsUri);
+                        writeParameter(RcsSettingsData.FT_HTTP_SERVER, ftHttpCsUri);
                         continue;
                     }
                 }
 
                 if (ftHttpCsUser == null) {
                     if ((ftHttpCsUser = getValueByParamName("ftHTTPCSUser", childnode, TYPE_TXT)) != null) {
-                        RcsSettings.getInstance().writeParameter(RcsSettingsData.FT_HTTP_LOGIN, ftHttpCsUser);
+                        writeParameter(RcsSettingsData.FT_HTTP_LOGIN, ftHttpCsUser);
                         continue;
                     }
                 }
 
                 if (ftHttpCsPwd == null) {
                     if ((ftHttpCsPwd = getValueByParamName("ftHTTPCSPwd", childnode, TYPE_TXT)) != null) {
-                        RcsSettings.getInstance().writeParameter(RcsSettingsData.FT_HTTP_PASSWORD, ftHttpCsPwd);
+                        writeParameter(RcsSettingsData.FT_HTTP_PASSWORD, ftHttpCsPwd);
                         continue;
                     }
                 }
 
                 if (ftDefaultMech == null) {
                     if ((ftDefaultMech = getValueByParamName("ftDefaultMech", childnode, TYPE_TXT)) != null) {
-                        RcsSettings.getInstance().writeParameter(RcsSettingsData.FT_PROTOCOL, ftDefaultMech);
+                        writeParameter(RcsSettingsData.FT_PROTOCOL, ftDefaultMech);
                         continue;
                     }
                 }
 
                 if (imSessionStart == null) {
                     if ((imSessionStart = getValueByParamName("imSessionStart", childnode, TYPE_INT)) != null) {
-                        RcsSettings.getInstance().writeParameter(RcsSettingsData.IM_SESSION_START,
+                        writeParameter(RcsSettingsData.IM_SESSION_START,
                                 imSessionStart);
                         continue;
                     }
@@ -1056,7 +1064,7 @@ public class ProvisioningParser {
 
                 if (ftWarnSize == null) {
                     if ((ftWarnSize = getValueByParamName("ftWarnSize", childnode, TYPE_INT)) != null) {
-                        RcsSettings.getInstance().writeParameter(
+                        writeParameter(
                                 RcsSettingsData.WARN_FILE_TRANSFER_SIZE, ftWarnSize);
                         continue;
                     }
@@ -1065,10 +1073,10 @@ public class ProvisioningParser {
                 if (chatAuth == null) {
                     if ((chatAuth = getValueByParamName("ChatAuth", childnode, TYPE_INT)) != null) {
                         if (chatAuth.equals("0")) {
-                            RcsSettings.getInstance().writeParameter(
+                            writeParameter(
                                     RcsSettingsData.CAPABILITY_IM_SESSION, RcsSettingsData.FALSE);
                         } else {
-                            RcsSettings.getInstance().writeParameter(
+                            writeParameter(
                                     RcsSettingsData.CAPABILITY_IM_SESSION, RcsSettingsData.TRUE);
                         }
                         continue;
@@ -1078,10 +1086,10 @@ public class ProvisioningParser {
                 if (smsFallBackAuth == null) {
                     if ((smsFallBackAuth = getValueByParamName("SmsFallBackAuth", childnode, TYPE_INT)) != null) {
                         if (smsFallBackAuth.equals("0")) {
-                            RcsSettings.getInstance().writeParameter(
+                            writeParameter(
                                     RcsSettingsData.SMS_FALLBACK_SERVICE, RcsSettingsData.TRUE);
                         } else {
-                            RcsSettings.getInstance().writeParameter(
+                            writeParameter(
                                     RcsSettingsData.SMS_FALLBACK_SERVICE, RcsSettingsData.FALSE);
                         }
                         continue;
@@ -1091,11 +1099,11 @@ public class ProvisioningParser {
                 if (autoAcceptChat == null) {
                     if ((autoAcceptChat = getValueByParamName("AutAccept", childnode, TYPE_INT)) != null) {
                         if (autoAcceptChat.equals("0")) {
-                            RcsSettings.getInstance().writeParameter(
+                            writeParameter(
                                     RcsSettingsData.AUTO_ACCEPT_CHAT,
                                     RcsSettingsData.FALSE);
                         } else {
-                            RcsSettings.getInstance().writeParameter(
+                            writeParameter(
                                     RcsSettingsData.AUTO_ACCEPT_CHAT,
                                     RcsSettingsData.TRUE);
                         }
@@ -1106,11 +1114,11 @@ public class ProvisioningParser {
                 if (autoAcceptGroupChat == null) {
                     if ((autoAcceptGroupChat = getValueByParamName("AutAcceptGroupChat", childnode, TYPE_INT)) != null) {
                         if (autoAcceptGroupChat.equals("0")) {
-                            RcsSettings.getInstance().writeParameter(
+                            writeParameter(
                                     RcsSettingsData.AUTO_ACCEPT_GROUP_CHAT,
                                     RcsSettingsData.FALSE);
                         } else {
-                            RcsSettings.getInstance().writeParameter(
+                            writeParameter(
                                     RcsSettingsData.AUTO_ACCEPT_GROUP_CHAT,
                                     RcsSettingsData.TRUE);
                         }
@@ -1120,7 +1128,7 @@ public class ProvisioningParser {
 
                 if (maxSize1to1 == null) {
                     if ((maxSize1to1 = getValueByParamName("MaxSize1to1", childnode, TYPE_INT)) != null) {
-                        RcsSettings.getInstance().writeParameter(
+                        writeParameter(
                                 RcsSettingsData.MAX_CHAT_MSG_LENGTH, maxSize1to1);
                         continue;
                     }
@@ -1128,7 +1136,7 @@ public class ProvisioningParser {
 
                 if (maxSize1toM == null) {
                     if ((maxSize1toM = getValueByParamName("MaxSize1toM", childnode, TYPE_INT)) != null) {
-                        RcsSettings.getInstance().writeParameter(
+                        writeParameter(
                                 RcsSettingsData.MAX_GROUPCHAT_MSG_LENGTH, maxSize1toM);
                         continue;
                     }
@@ -1136,7 +1144,7 @@ public class ProvisioningParser {
 
                 if (timerIdle == null) {
                     if ((timerIdle = getValueByParamName("TimerIdle", childnode, TYPE_INT)) != null) {
-                        RcsSettings.getInstance().writeParameter(
+                        writeParameter(
                                 RcsSettingsData.CHAT_IDLE_DURATION, timerIdle);
                         continue;
                     }
@@ -1144,7 +1152,7 @@ public class ProvisioningParser {
 
                 if (maxSizeFileTransfer == null) {
                     if ((maxSizeFileTransfer = getValueByParamName("MaxSizeFileTr", childnode, TYPE_INT)) != null) {
-                        RcsSettings.getInstance().writeParameter(
+                        writeParameter(
                                 RcsSettingsData.MAX_FILE_TRANSFER_SIZE, maxSizeFileTransfer);
                         continue;
                     }
@@ -1153,10 +1161,10 @@ public class ProvisioningParser {
                 if (ftThumb == null) {
                     if ((ftThumb = getValueByParamName("ftThumb", childnode, TYPE_INT)) != null) {
                         if (ftThumb.equals("0")) {
-                            RcsSettings.getInstance().writeParameter(
+                            writeParameter(
                                     RcsSettingsData.CAPABILITY_FILE_TRANSFER_THUMBNAIL, RcsSettingsData.FALSE);
                         } else {
-                            RcsSettings.getInstance().writeParameter(
+                            writeParameter(
                                     RcsSettingsData.CAPABILITY_FILE_TRANSFER_THUMBNAIL, RcsSettingsData.TRUE);
                         }
                         continue;
@@ -1165,7 +1173,7 @@ public class ProvisioningParser {
                 
                 if (maxAdhocGroupSize == null) {
                     if ((maxAdhocGroupSize = getValueByParamName("max_adhoc_group_size", childnode, TYPE_INT)) != null) {
-                        RcsSettings.getInstance().writeParameter(
+                        writeParameter(
                                 RcsSettingsData.MAX_CHAT_PARTICIPANTS, maxAdhocGroupSize);
                         continue;
                     }
@@ -1173,7 +1181,7 @@ public class ProvisioningParser {
 
                 if (confFctyUri == null) {
                     if ((confFctyUri = getValueByParamName("conf-fcty-uri", childnode, TYPE_TXT)) != null) {
-                        RcsSettings.getInstance().writeParameter(
+                        writeParameter(
                                 RcsSettingsData.IM_CONF_URI, formatSipUri(confFctyUri));
                         continue;
                     }
@@ -1205,7 +1213,7 @@ public class ProvisioningParser {
             do {
                 if (pollingPeriod == null) {
                     if ((pollingPeriod = getValueByParamName("pollingPeriod", childnode, TYPE_INT)) != null) {
-                        RcsSettings.getInstance().writeParameter(
+                        writeParameter(
                                 RcsSettingsData.CAPABILITY_POLLING_PERIOD, pollingPeriod);
                         continue;
                     }
@@ -1213,7 +1221,7 @@ public class ProvisioningParser {
 
                 if (capInfoExpiry == null) {
                     if ((capInfoExpiry = getValueByParamName("capInfoExpiry", childnode, TYPE_INT)) != null) {
-                        RcsSettings.getInstance().writeParameter(
+                        writeParameter(
                                 RcsSettingsData.CAPABILITY_EXPIRY_TIMEOUT, capInfoExpiry);
                         continue;
                     }
@@ -1222,11 +1230,11 @@ public class ProvisioningParser {
                 if (presenceDiscovery == null) {
                     if ((presenceDiscovery = getValueByParamName("presenceDisc", childnode, TYPE_INT)) != null) {
                         if (presenceDiscovery.equals("0")) {
-                            RcsSettings.getInstance().writeParameter(
+                            writeParameter(
                                     RcsSettingsData.CAPABILITY_PRESENCE_DISCOVERY,
                                     RcsSettingsData.FALSE);
                         } else {
-                            RcsSettings.getInstance().writeParameter(
+                            writeParameter(
                                     RcsSettingsData.CAPABILITY_PRESENCE_DISCOVERY,
                                     RcsSettingsData.TRUE);
                         }
@@ -1267,17 +1275,17 @@ public class ProvisioningParser {
                 if (psSignalling == null) {
                     if ((psSignalling = getValueByParamName("psSignalling", childnode, TYPE_TXT)) != null) {
                         if (psSignalling.equals("SIPoUDP")) {
-	                        RcsSettings.getInstance().writeParameter(
+	                        writeParameter(
 	                        		RcsSettingsData.SIP_DEFAULT_PROTOCOL_FOR_MOBILE,
 	                                ListeningPoint.UDP);
                         } else
                         if (psSignalling.equals("SIPoTCP")) {
-	                        RcsSettings.getInstance().writeParameter(
+	                        writeParameter(
 	                        		RcsSettingsData.SIP_DEFAULT_PROTOCOL_FOR_MOBILE,
 	                                ListeningPoint.TCP);
                         } else
                         if (psSignalling.equals("SIPoTLS")) {
-	                        RcsSettings.getInstance().writeParameter(
+	                        writeParameter(
 	                        		RcsSettingsData.SIP_DEFAULT_PROTOCOL_FOR_MOBILE,
 	                                ListeningPoint.TLS);
                         }
@@ -1288,15 +1296,15 @@ public class ProvisioningParser {
                 if (wifiSignalling == null) {
                     if ((wifiSignalling = getValueByParamName("wifiSignalling", childnode, TYPE_TXT)) != null) {
                         if (wifiSignalling.equals("SIPoUDP")) {
-	                        RcsSettings.getInstance().writeParameter(RcsSettingsData.SIP_DEFAULT_PROTOCOL_FOR_WIFI,
+	                        writeParameter(RcsSettingsData.SIP_DEFAULT_PROTOCOL_FOR_WIFI,
 	                                ListeningPoint.UDP);
                         } else
                         if (wifiSignalling.equals("SIPoTCP")) {
-	                        RcsSettings.getInstance().writeParameter(RcsSettingsData.SIP_DEFAULT_PROTOCOL_FOR_WIFI,
+	                        writeParameter(RcsSettingsData.SIP_DEFAULT_PROTOCOL_FOR_WIFI,
 	                                ListeningPoint.TCP);
                         } else
                         if (wifiSignalling.equals("SIPoTLS")) {
-	                        RcsSettings.getInstance().writeParameter(RcsSettingsData.SIP_DEFAULT_PROTOCOL_FOR_WIFI,
+	                        writeParameter(RcsSettingsData.SIP_DEFAULT_PROTOCOL_FOR_WIFI,
 	                                ListeningPoint.TLS);
                         }
                         continue;
@@ -1306,11 +1314,11 @@ public class ProvisioningParser {
                 if (wifiMedia == null) {
                     if ((wifiMedia = getValueByParamName("wifiMedia", childnode, TYPE_TXT)) != null) {
                         if (wifiMedia.equals("MSRP")) {
-	                        RcsSettings.getInstance().writeParameter(RcsSettingsData.SECURE_MSRP_OVER_WIFI,
+	                        writeParameter(RcsSettingsData.SECURE_MSRP_OVER_WIFI,
 	                        		RcsSettingsData.FALSE);
                         } else
                         if (wifiMedia.equals("MSRPoTLS")) {
-	                        RcsSettings.getInstance().writeParameter(RcsSettingsData.SECURE_MSRP_OVER_WIFI,
+	                        writeParameter(RcsSettingsData.SECURE_MSRP_OVER_WIFI,
 	                        		RcsSettingsData.TRUE);
                         }
                         continue;
@@ -1320,11 +1328,11 @@ public class ProvisioningParser {
                 if (wifiRtMedia == null) {
                     if ((wifiRtMedia = getValueByParamName("wifiRTMedia", childnode, TYPE_TXT)) != null) {
                         if (wifiMedia.equals("RTP")) {
-	                        RcsSettings.getInstance().writeParameter(RcsSettingsData.SECURE_RTP_OVER_WIFI,
+	                        writeParameter(RcsSettingsData.SECURE_RTP_OVER_WIFI,
 	                        		RcsSettingsData.FALSE);
                         } else
                         if (wifiMedia.equals("SRTP")) {
-	                        RcsSettings.getInstance().writeParameter(RcsSettingsData.SECURE_RTP_OVER_WIFI,
+	                        writeParameter(RcsSettingsData.SECURE_RTP_OVER_WIFI,
 	                        		RcsSettingsData.TRUE);
                         }
                         continue;
@@ -1377,7 +1385,7 @@ public class ProvisioningParser {
 
                 if (endUserConfReqId == null) {
                     if ((endUserConfReqId = getValueByParamName("endUserConfReqId", childnode, TYPE_TXT)) != null) {
-                        RcsSettings.getInstance().writeParameter(
+                        writeParameter(
                                 RcsSettingsData.ENDUSER_CONFIRMATION_URI, formatSipUri(endUserConfReqId));
                         continue;
                     }
@@ -1386,9 +1394,9 @@ public class ProvisioningParser {
                 if (deviceID == null) {
                     if ((deviceID = getValueByParamName("deviceID", childnode, TYPE_INT)) != null) {
                     	if (deviceID.equals("0")) {
-                            RcsSettings.getInstance().writeParameter(RcsSettingsData.USE_IMEI_AS_DEVICE_ID, RcsSettingsData.TRUE);
+                            writeParameter(RcsSettingsData.USE_IMEI_AS_DEVICE_ID, RcsSettingsData.TRUE);
                     	} else {
-                            RcsSettings.getInstance().writeParameter(RcsSettingsData.USE_IMEI_AS_DEVICE_ID, RcsSettingsData.FALSE);
+                            writeParameter(RcsSettingsData.USE_IMEI_AS_DEVICE_ID, RcsSettingsData.FALSE);
                     	}
                         continue;
                     }
@@ -1397,9 +1405,9 @@ public class ProvisioningParser {
                 if (beIPCallBreakOut == null) {
                     if ((beIPCallBreakOut = getValueByParamName("beIPCallBreakOut", childnode, TYPE_INT)) != null) {
                     	if (beIPCallBreakOut.equals("1")) {
-                            RcsSettings.getInstance().writeParameter(RcsSettingsData.IPVOICECALL_BREAKOUT, RcsSettingsData.TRUE);
+                            writeParameter(RcsSettingsData.IPVOICECALL_BREAKOUT, RcsSettingsData.TRUE);
                     	} else {
-                            RcsSettings.getInstance().writeParameter(RcsSettingsData.IPVOICECALL_BREAKOUT, RcsSettingsData.FALSE);
+                            writeParameter(RcsSettingsData.IPVOICECALL_BREAKOUT, RcsSettingsData.FALSE);
                     	}
                         continue;
                     }
@@ -1408,9 +1416,9 @@ public class ProvisioningParser {
                 if (beIPCallBreakOutCS == null) {
                     if ((beIPCallBreakOutCS = getValueByParamName("beIPCallBreakOutCS", childnode, TYPE_INT)) != null) {
                     	if (beIPCallBreakOutCS.equals("1")) {
-                            RcsSettings.getInstance().writeParameter(RcsSettingsData.IPVOICECALL_BREAKOUT_CS, RcsSettingsData.TRUE);
+                            writeParameter(RcsSettingsData.IPVOICECALL_BREAKOUT_CS, RcsSettingsData.TRUE);
                     	} else {
-                            RcsSettings.getInstance().writeParameter(RcsSettingsData.IPVOICECALL_BREAKOUT_CS, RcsSettingsData.FALSE);
+                            writeParameter(RcsSettingsData.IPVOICECALL_BREAKOUT_CS, RcsSettingsData.FALSE);
                     	}
                         continue;
                     }
@@ -1419,9 +1427,9 @@ public class ProvisioningParser {
                 if (beIPVideoCallUpgradeFromCS == null) {
                 	if ((beIPVideoCallUpgradeFromCS = getValueByParamName("beIPVideoCallUpgradeFromCS", childnode, TYPE_INT)) != null) {
                     	if (beIPVideoCallUpgradeFromCS.equals("1")) {
-                            RcsSettings.getInstance().writeParameter(RcsSettingsData.IPVIDEOCALL_UPGRADE_FROM_CS, RcsSettingsData.TRUE);
+                            writeParameter(RcsSettingsData.IPVIDEOCALL_UPGRADE_FROM_CS, RcsSettingsData.TRUE);
                     	} else {
-                            RcsSettings.getInstance().writeParameter(RcsSettingsData.IPVIDEOCALL_UPGRADE_FROM_CS, RcsSettingsData.FALSE);
+                            writeParameter(RcsSettingsData.IPVIDEOCALL_UPGRADE_FROM_CS, RcsSettingsData.FALSE);
                     	}
                         continue;
                     }
@@ -1430,9 +1438,9 @@ public class ProvisioningParser {
                 if (beIPVideoCallUpgradeOnCapError == null) {
                 	if ((beIPVideoCallUpgradeOnCapError = getValueByParamName("beIPVideoCallUpgradeOnCapError", childnode, TYPE_INT)) != null) {
                     	if (beIPVideoCallUpgradeOnCapError.equals("1")) {
-                            RcsSettings.getInstance().writeParameter(RcsSettingsData.IPVIDEOCALL_UPGRADE_ON_CAPERROR, RcsSettingsData.TRUE);
+                            writeParameter(RcsSettingsData.IPVIDEOCALL_UPGRADE_ON_CAPERROR, RcsSettingsData.TRUE);
                     	} else {
-                            RcsSettings.getInstance().writeParameter(RcsSettingsData.IPVIDEOCALL_UPGRADE_ON_CAPERROR, RcsSettingsData.FALSE);
+                            writeParameter(RcsSettingsData.IPVIDEOCALL_UPGRADE_ON_CAPERROR, RcsSettingsData.FALSE);
                     	}
                         continue;
                     }
@@ -1441,9 +1449,9 @@ public class ProvisioningParser {
                 if (beIPVideoCallUpgradeAttemptEarly == null) {
                 	if ((beIPVideoCallUpgradeAttemptEarly = getValueByParamName("beIPVideoCallUpgradeAttemptEarly", childnode, TYPE_INT)) != null) {
                     	if (beIPVideoCallUpgradeAttemptEarly.equals("1")) {
-                            RcsSettings.getInstance().writeParameter(RcsSettingsData.IPVIDEOCALL_UPGRADE_ATTEMPT_EARLY, RcsSettingsData.TRUE);
+                            writeParameter(RcsSettingsData.IPVIDEOCALL_UPGRADE_ATTEMPT_EARLY, RcsSettingsData.TRUE);
                     	} else {
-                            RcsSettings.getInstance().writeParameter(RcsSettingsData.IPVIDEOCALL_UPGRADE_ATTEMPT_EARLY, RcsSettingsData.FALSE);
+                            writeParameter(RcsSettingsData.IPVIDEOCALL_UPGRADE_ATTEMPT_EARLY, RcsSettingsData.FALSE);
                     	}
                         continue;
                     }
@@ -1471,7 +1479,7 @@ public class ProvisioningParser {
             do {
                 if (conRef == null) {
                     if ((conRef = getValueByParamName("ConRef", childnode, TYPE_TXT)) != null) {
-                        RcsSettings.getInstance().writeParameter(RcsSettingsData.RCS_APN, conRef);
+                        writeParameter(RcsSettingsData.RCS_APN, conRef);
                         continue;
                     }
                 }
@@ -1496,9 +1504,9 @@ public class ProvisioningParser {
                 if (publicUserIdentity == null) {
                     if ((publicUserIdentity = getValueByParamName("Public_User_Identity", childnode, TYPE_TXT)) != null) {
                     	String username = extractUserNamePart(publicUserIdentity);
-                    	RcsSettings.getInstance().writeParameter(
+                    	writeParameter(
                                 RcsSettingsData.USERPROFILE_IMS_USERNAME, username);
-                        RcsSettings.getInstance().writeParameter(
+                        writeParameter(
                                 RcsSettingsData.USERPROFILE_IMS_DISPLAY_NAME, username);
                         continue;
                     }
@@ -1532,10 +1540,10 @@ public class ProvisioningParser {
                 if (chat == null) {
                     if ((chat = getValueByParamName("Chat", childnode, TYPE_INT)) != null) {
                         if (chat.equals("0")) {
-                            RcsSettings.getInstance().writeParameter(
+                            writeParameter(
                                     RcsSettingsData.CAPABILITY_IM_SESSION, RcsSettingsData.TRUE);
                         } else {
-                            RcsSettings.getInstance().writeParameter(
+                            writeParameter(
                                     RcsSettingsData.CAPABILITY_IM_SESSION, RcsSettingsData.FALSE);
                         }
                         continue;
@@ -1545,10 +1553,10 @@ public class ProvisioningParser {
                 if (fileTranfer == null) {
                     if ((fileTranfer = getValueByParamName("FileTranfer", childnode, TYPE_INT)) != null) {
                         if (fileTranfer.equals("0")) {
-                            RcsSettings.getInstance().writeParameter(
+                            writeParameter(
                                     RcsSettingsData.CAPABILITY_FILE_TRANSFER, RcsSettingsData.TRUE);
                         } else {
-                            RcsSettings.getInstance().writeParameter(
+                            writeParameter(
                             		RcsSettingsData.CAPABILITY_FILE_TRANSFER, RcsSettingsData.FALSE);
                         }
                         continue;
@@ -1558,10 +1566,10 @@ public class ProvisioningParser {
                 if (videoShare == null) {
                     if ((videoShare = getValueByParamName("VideoShare", childnode, TYPE_INT)) != null) {
                         if (videoShare.equals("0")) {
-                            RcsSettings.getInstance().writeParameter(
+                            writeParameter(
                                     RcsSettingsData.CAPABILITY_VIDEO_SHARING, RcsSettingsData.TRUE);
                         } else {
-                            RcsSettings.getInstance().writeParameter(
+                            writeParameter(
                             		RcsSettingsData.CAPABILITY_VIDEO_SHARING, RcsSettingsData.FALSE);
                         }
                         continue;
@@ -1571,10 +1579,10 @@ public class ProvisioningParser {
                 if (imageShare == null) {
                     if ((imageShare = getValueByParamName("ImageShare", childnode, TYPE_INT)) != null) {
                         if (imageShare.equals("0")) {
-                            RcsSettings.getInstance().writeParameter(
+                            writeParameter(
                                     RcsSettingsData.CAPABILITY_IMAGE_SHARING, RcsSettingsData.TRUE);
                         } else {
-                            RcsSettings.getInstance().writeParameter(
+                            writeParameter(
                             		RcsSettingsData.CAPABILITY_IMAGE_SHARING, RcsSettingsData.FALSE);
                         }
                         continue;
@@ -1584,10 +1592,10 @@ public class ProvisioningParser {
                 if (geolocPush == null) {
                     if ((geolocPush = getValueByParamName("GeoLocPush", childnode, TYPE_INT)) != null) {
                         if (geolocPush.equals("0")) {
-                            RcsSettings.getInstance().writeParameter(
+                            writeParameter(
                                     RcsSettingsData.CAPABILITY_GEOLOCATION_PUSH, RcsSettingsData.TRUE);
                         } else {
-                            RcsSettings.getInstance().writeParameter(
+                            writeParameter(
                             		RcsSettingsData.CAPABILITY_GEOLOCATION_PUSH, RcsSettingsData.FALSE);
                         }
                         continue;
@@ -1636,10 +1644,10 @@ public class ProvisioningParser {
                 if (intUrlFmt == null) {
                     if ((intUrlFmt = getValueByParamName("IntUrlFmt", childnode, TYPE_INT)) != null) {
                         if (intUrlFmt.equals("0")) {
-                            RcsSettings.getInstance().writeParameter(
+                            writeParameter(
                                     RcsSettingsData.TEL_URI_FORMAT, RcsSettingsData.TRUE);
                         } else {
-                            RcsSettings.getInstance().writeParameter(
+                            writeParameter(
                                     RcsSettingsData.TEL_URI_FORMAT, RcsSettingsData.FALSE);
                         }
                         continue;
@@ -1649,7 +1657,7 @@ public class ProvisioningParser {
                 if (maxSizeImageShare == null) {
                     if ((maxSizeImageShare = getValueByParamName("MaxSizeImageShare", childnode, TYPE_INT)) != null) {
                     	int kb = Integer.parseInt(maxSizeImageShare) / 1024;
-                        RcsSettings.getInstance().writeParameter(
+                        writeParameter(
                                 RcsSettingsData.MAX_IMAGE_SHARE_SIZE, ""+kb);
                         continue;
                     }
@@ -1657,7 +1665,7 @@ public class ProvisioningParser {
 
                 if (maxTimeVideoShare == null) {
                     if ((maxTimeVideoShare = getValueByParamName("MaxTimeVideoShare", childnode, TYPE_INT)) != null) {
-                        RcsSettings.getInstance().writeParameter(
+                        writeParameter(
                                 RcsSettingsData.MAX_VIDEO_SHARE_DURATION, maxTimeVideoShare);
                         continue;
                     }
@@ -1697,14 +1705,14 @@ public class ProvisioningParser {
                 if (addr == null) {
                     if ((addr = getValueByParamName("Address", childnode, TYPE_TXT)) != null) {
                         String[] address = addr.split(":");
-                        RcsSettings.getInstance().writeParameter(
+                        writeParameter(
                                 RcsSettingsData.IMS_PROXY_ADDR_MOBILE, address[0]);
-                        RcsSettings.getInstance().writeParameter(
+                        writeParameter(
                                 RcsSettingsData.IMS_PROXY_ADDR_WIFI, address[0]);
                         if (address.length > 1) {
-                            RcsSettings.getInstance().writeParameter(
+                            writeParameter(
                                     RcsSettingsData.IMS_PROXY_PORT_MOBILE, address[1]);
-                            RcsSettings.getInstance().writeParameter(
+                            writeParameter(
                                     RcsSettingsData.IMS_PROXY_PORT_WIFI, address[1]);
                         }
                         continue;
@@ -1747,11 +1755,11 @@ public class ProvisioningParser {
                 if (authType == null) {
                     if ((authType = getValueByParamName("AuthType", childnode, TYPE_TXT)) != null) {
                         if (authType.equals("EarlyIMS")) {
-                            RcsSettings.getInstance().writeParameter(
+                            writeParameter(
                                     RcsSettingsData.IMS_AUTHENT_PROCEDURE_MOBILE,
                                     RcsSettingsData.GIBA_AUTHENT);
                         } else {
-                            RcsSettings.getInstance().writeParameter(
+                            writeParameter(
                                     RcsSettingsData.IMS_AUTHENT_PROCEDURE_MOBILE,
                                     RcsSettingsData.DIGEST_AUTHENT);
                         }
@@ -1761,7 +1769,7 @@ public class ProvisioningParser {
 
                 if (realm == null) {
                     if ((realm = getValueByParamName("Realm", childnode, TYPE_TXT)) != null) {
-                        RcsSettings.getInstance().writeParameter(
+                        writeParameter(
                                 RcsSettingsData.USERPROFILE_IMS_REALM, realm);
                         continue;
                     }
@@ -1769,7 +1777,7 @@ public class ProvisioningParser {
 
                 if (userName == null) {
                     if ((userName = getValueByParamName("UserName", childnode, TYPE_TXT)) != null) {
-                        RcsSettings.getInstance().writeParameter(
+                        writeParameter(
                                 RcsSettingsData.USERPROFILE_IMS_PRIVATE_ID,
                                 userName);
                         continue;
@@ -1778,7 +1786,7 @@ public class ProvisioningParser {
 
                 if (userPwd == null) {
                     if ((userPwd = getValueByParamName("UserPwd", childnode, TYPE_TXT)) != null) {
-                        RcsSettings.getInstance().writeParameter(
+                        writeParameter(
                                 RcsSettingsData.USERPROFILE_IMS_PASSWORD, userPwd);
                         continue;
                     }
@@ -1900,7 +1908,7 @@ public class ProvisioningParser {
 
                 if (timert1 == null) {
                     if ((timert1 = getValueByParamName("Timer_T1", childnode, TYPE_INT)) != null) {
-                        RcsSettings.getInstance().writeParameter(RcsSettingsData.SIP_TIMER_T1,
+                        writeParameter(RcsSettingsData.SIP_TIMER_T1,
                                 timert1);
                         continue;
                     }
@@ -1908,7 +1916,7 @@ public class ProvisioningParser {
 
                 if (timert2 == null) {
                     if ((timert2 = getValueByParamName("Timer_T2", childnode, TYPE_INT)) != null) {
-                        RcsSettings.getInstance().writeParameter(RcsSettingsData.SIP_TIMER_T2,
+                        writeParameter(RcsSettingsData.SIP_TIMER_T2,
                                 timert2);
                         continue;
                     }
@@ -1916,7 +1924,7 @@ public class ProvisioningParser {
 
                 if (timert4 == null) {
                     if ((timert4 = getValueByParamName("Timer_T4", childnode, TYPE_INT)) != null) {
-                        RcsSettings.getInstance().writeParameter(RcsSettingsData.SIP_TIMER_T4,
+                        writeParameter(RcsSettingsData.SIP_TIMER_T4,
                                 timert4);
                         continue;
                     }
@@ -1924,7 +1932,7 @@ public class ProvisioningParser {
 
                 if (privateUserIdentity == null) {
                     if ((privateUserIdentity = getValueByParamName("Private_User_Identity", childnode, TYPE_TXT)) != null) {
-                        RcsSettings.getInstance().writeParameter(
+                        writeParameter(
                                 RcsSettingsData.USERPROFILE_IMS_PRIVATE_ID,
                                 privateUserIdentity);
                         continue;
@@ -1933,7 +1941,7 @@ public class ProvisioningParser {
 
                 if (homeDomain == null) {
                     if ((homeDomain = getValueByParamName("Home_network_domain_name", childnode, TYPE_TXT)) != null) {
-                        RcsSettings.getInstance().writeParameter(
+                        writeParameter(
                                 RcsSettingsData.USERPROFILE_IMS_HOME_DOMAIN,
                                 homeDomain);
                         continue;
@@ -1943,10 +1951,10 @@ public class ProvisioningParser {
                 if (keepAliveEnabled == null) {
                     if ((keepAliveEnabled = getValueByParamName("Keep_Alive_Enabled", childnode, TYPE_INT)) != null) {
                         if (keepAliveEnabled.equals("1")) {
-                            RcsSettings.getInstance().writeParameter(
+                            writeParameter(
                                     RcsSettingsData.SIP_KEEP_ALIVE, RcsSettingsData.TRUE);
                         } else {
-                            RcsSettings.getInstance().writeParameter(
+                            writeParameter(
                                     RcsSettingsData.SIP_KEEP_ALIVE, RcsSettingsData.FALSE);
                         }
                         continue;
@@ -1955,7 +1963,7 @@ public class ProvisioningParser {
 
                 if (regRetryBasetime == null) {
                     if ((regRetryBasetime = getValueByParamName("RegRetryBaseTime", childnode, TYPE_INT)) != null) {
-                        RcsSettings.getInstance().writeParameter(
+                        writeParameter(
                                 RcsSettingsData.REGISTER_RETRY_BASE_TIME, regRetryBasetime);
                         continue;
                     }
@@ -1963,7 +1971,7 @@ public class ProvisioningParser {
 
                 if (regRetryMaxtime == null) {
                     if ((regRetryMaxtime = getValueByParamName("RegRetryMaxTime", childnode, TYPE_INT)) != null) {
-                        RcsSettings.getInstance().writeParameter(
+                        writeParameter(
                                 RcsSettingsData.REGISTER_RETRY_MAX_TIME, regRetryMaxtime);
                         continue;
                     }
@@ -2080,4 +2088,128 @@ public class ProvisioningParser {
 			return "";
 		}
     }
+
+    /**
+     * Save a parameter, it is written into the RCS settings at the end of the parsing
+     *
+     * @param key Key
+     * @param value Value
+     */
+    private void writeParameter(String key, String value) {
+        if ((key == null) || (value == null)) {
+            return;
+        }
+        parameters.put(key, value);
+    }
+
+    /**
+     * Element of the provisioning document, with the subset of the DOM node
+     * methods used by the parsing. The attributes are nodes as well.
+     */
+    private static class Node {
+        private String name;
+
+        private String value;
+
+        private Node parent = null;
+
+        private Node firstChild = null;
+
+        private Node lastChild = null;
+
+        private Node nextSibling = null;
+
+        private NodeAttributes attributes = new NodeAttributes();
+
+        public Node(String name, String value) {
+            this.name = name;
+            this.value = value;
+        }
+
+        public String getNodeName() {
+            return name;
+        }
+
+        public String getNodeValue() {
+            return value;
+        }
+
+        public Node getFirstChild() {
+            return firstChild;
+        }
+
+        public Node getNextSibling() {
+            return nextSibling;
+        }
+
+        public NodeAttributes getAttributes() {
+            return attributes;
+        }
+
+        public void appendChild(Node child) {
+            child.parent = this;
+            if (lastChild == null) {
+                firstChild = child;
+            } else {
+                lastChild.nextSibling = child;
+            }
+            lastChild = child;
+        }
+    }
+
+    /**
+     * Attributes of an element
+     */
+    private static class NodeAttributes {
+        private ArrayList<Node> list = new ArrayList<Node>(2);
+
+        public int getLength() {
+            return list.size();
+        }
+
+        public Node getNamedItem(String name) {
+            for (int i = 0; i < list.size(); i++) {
+                Node attr = list.get(i);
+                if (attr.getNodeName().equals(name)) {
+                    return attr;
+                }
+            }
+            return null;
+        }
+
+        public void add(Node attr) {
+            list.add(attr);
+        }
+    }
+
+    /**
+     * SAX handler building the tree of the elements. The text and the
+     * whitespaces between the elements are not kept.
+     */
+    private static class DocumentHandler extends DefaultHandler {
+        private Node root = null;
+
+        private Node current = null;
+
+        public Node getDocumentElement() {
+            return root;
+        }
+
+        public void startElement(String uri, String localName, String qName, Attributes attrs) {
+            Node node = new Node(qName, null);
+            for (int i = 0; i < attrs.getLength(); i++) {
+                node.getAttributes().add(new Node(attrs.getQName(i), attrs.getValue(i)));
+            }
+            if (current == null) {
+                root = node;
+            } else {
+                current.appendChild(node);
+            }
+            current = node;
+        }
+
+        public void endElement(String uri, String localName, String qName) {
+            current = current.parent;
+        }
+    }
 }
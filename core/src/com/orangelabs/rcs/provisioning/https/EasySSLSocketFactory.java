@@ -23,15 +23,16 @@ import java.net.InetSocketAddress;
 import java.net.Socket;
 import java.net.UnknownHostException;
 
-import javax.net.ssl.SSLContext;
 import javax.net.ssl.SSLSocket;
-import javax.net.ssl.TrustManager;
+import javax.net.ssl.SSLSocketFactory;
 
 import org.apache.http.conn.ConnectTimeoutException;
 import org.apache.http.conn.scheme.LayeredSocketFactory;
 import org.apache.http.params.HttpConnectionParams;
 import org.apache.http.params.HttpParams;
 
+import com.orangelabs.rcs.core.ims.security.cert.TlsContextProvider;
+
 /**
  * This socket factory will create ssl socket that accepts self signed
  * certificate
@@ -43,24 +44,12 @@ import org.apache.http.params.HttpParams;
  */
 public class EasySSLSocketFactory implements LayeredSocketFactory {
 
-        private SSLContext sslcontext = null;
-
-        private static SSLContext createEasySSLContext() throws IOException {
-                try {
-                        SSLContext context = SSLContext.getInstance("TLS");
-                        context.init(null, new TrustManager[] { new EasyX509TrustManager(
-                                        null) }, null);
-                        return context;
-                } catch (Exception e) {
-                        throw new IOException(e.getMessage());
-                }
-        }
-
-        private SSLContext getSSLContext() throws IOException {
-                if (this.sslcontext == null) {
-                        this.sslcontext = createEasySSLContext();
-                }
-                return this.sslcontext;
+        /**
+         * Returns the socket factory of the shared context accepting self signed
+         * certificates, so that the TLS sessions are resumed between connections
+         */
+        private SSLSocketFactory getSocketFactory() throws IOException {
+                return TlsContextProvider.getInstance().getSocketFactory(TlsContextProvider.EASY);
         }
 
         /**
@@ -97,7 +86,7 @@ public class EasySSLSocketFactory implements LayeredSocketFactory {
          * @see org.apache.http.conn.scheme.SocketFactory#createSocket()
          */
         public Socket createSocket() throws IOException {
-                return getSSLContext().getSocketFactory().createSocket();
+                return getSocketFactory().createSocket();
         }
 
         /**
@@ -113,7 +102,7 @@ public class EasySSLSocketFactory implements LayeredSocketFactory {
          */
         public Socket createSocket(Socket socket, String host, int port, boolean autoClose)
         throws IOException, UnknownHostException {
-        	return getSSLContext().getSocketFactory().createSocket(socket, host, port, autoClose);
+        	return getSocketFactory().createSocket(socket, host, port, autoClose);
         }
 
         // -------------------------------------------------------------------
@@ -31,26 +31,16 @@ import java.net.UnknownHostException;
 import org.apache.http.Header;
 import org.apache.http.HttpHost;
 import org.apache.http.HttpResponse;
-import org.apache.http.HttpVersion;
 import org.apache.http.client.ClientProtocolException;
 import org.apache.http.client.CookieStore;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.params.CookiePolicy;
 import org.apache.http.client.params.HttpClientParams;
 import org.apache.http.client.protocol.ClientContext;
-import org.apache.http.conn.ClientConnectionManager;
-import org.apache.http.conn.params.ConnManagerPNames;
-import org.apache.http.conn.params.ConnPerRouteBean;
 import org.apache.http.conn.params.ConnRoutePNames;
-import org.apache.http.conn.scheme.PlainSocketFactory;
-import org.apache.http.conn.scheme.Scheme;
-import org.apache.http.conn.scheme.SchemeRegistry;
 import org.apache.http.impl.client.BasicCookieStore;
 import org.apache.http.impl.client.DefaultHttpClient;
-import org.apache.http.impl.conn.SingleClientConnManager;
-import org.apache.http.params.BasicHttpParams;
 import org.apache.http.params.HttpParams;
-import org.apache.http.params.HttpProtocolParams;
 import org.apache.http.protocol.BasicHttpContext;
 import org.apache.http.protocol.HttpContext;
 import org.apache.http.util.EntityUtils;
@@ -65,6 +55,7 @@ import android.os.Environment;
 import android.telephony.TelephonyManager;
 import android.text.TextUtils;
 
+import com.orangelabs.rcs.platform.network.HttpClientPool;
 import com.orangelabs.rcs.provider.settings.RcsSettings;
 import com.orangelabs.rcs.provider.settings.RcsSettingsData;
 import com.orangelabs.rcs.provisioning.ProvisioningFailureReasons;
@@ -488,16 +479,8 @@ public class HttpsProvisioningManager {
 			String imei = tm.getDeviceId();
 	    	tm = null;
 
-	    	// Format HTTP request
-			SchemeRegistry schemeRegistry = new SchemeRegistry();
-			schemeRegistry.register(new Scheme("http", PlainSocketFactory.getSocketFactory(), 80));
-			schemeRegistry.register(new Scheme("https", new EasySSLSocketFactory(), 443));
-
-			HttpParams params = new BasicHttpParams();
-			params.setParameter(ConnManagerPNames.MAX_TOTAL_CONNECTIONS, 30);
-			params.setParameter(ConnManagerPNames.MAX_CONNECTIONS_PER_ROUTE, 
-					new ConnPerRouteBean(30));
-			params.setParameter(HttpProtocolParams.USE_EXPECT_CONTINUE, false);
+	    	// Format HTTP request on the shared connection pool
+			HttpParams params = HttpClientPool.createParams();
             NetworkInfo networkInfo = networkConnection.getConnectionMngr().getActiveNetworkInfo();
 
             if (networkInfo != null) {
@@ -507,13 +490,11 @@ public class HttpsProvisioningManager {
                     params.setParameter(ConnRoutePNames.DEFAULT_PROXY, new HttpHost(proxyHost, proxyPort));
                 }
             }
-			HttpProtocolParams.setVersion(params, HttpVersion.HTTP_1_1);
 
 			// Support broad variety of different cookie types (not just Netscape but RFC 2109 and RFC2965 compliant ones, too)  
 			HttpClientParams.setCookiePolicy(params, CookiePolicy.BROWSER_COMPATIBILITY);
 
-			ClientConnectionManager cm = new SingleClientConnManager(params, schemeRegistry);
-			DefaultHttpClient client = new DefaultHttpClient(cm, params);
+			DefaultHttpClient client = HttpClientPool.getInstance().createHttpClient(params);
 			CookieStore cookieStore = (CookieStore) new BasicCookieStore();
 			HttpContext localContext = new BasicHttpContext();
 			localContext.setAttribute(ClientContext.COOKIE_STORE, cookieStore);
@@ -570,6 +551,7 @@ public class HttpsProvisioningManager {
                 if (result.code == 503) {
                     result.retryAfter = getRetryAfter(response);
                 }
+                HttpClientPool.consume(response);
 				return result;
 			}
 			result.content = new String(EntityUtils.toByteArray(response.getEntity()), "UTF-8");
@@ -639,6 +621,7 @@ public class HttpsProvisioningManager {
                         logger.debug("Second HTTPS request with OTP failed: Invalid one time password (request status code: 511)");
                     }
                 }
+                HttpClientPool.consume(response);
                 return result;
             }
             result.content = new String(EntityUtils.toByteArray(response.getEntity()), "UTF-8");
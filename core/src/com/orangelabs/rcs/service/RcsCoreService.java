@@ -74,6 +74,7 @@ import com.orangelabs.rcs.service.api.client.contacts.ContactInfo;
 import com.orangelabs.rcs.service.api.client.gsma.GsmaUiConnector;
 import com.orangelabs.rcs.service.api.client.ipcall.IIPCallApi;
 import com.orangelabs.rcs.service.api.client.messaging.IMessagingApi;
+import com.orangelabs.rcs.service.api.client.metrics.IMetricsApi;
 import com.orangelabs.rcs.service.api.client.presence.FavoriteLink;
 import com.orangelabs.rcs.service.api.client.presence.Geoloc;
 import com.orangelabs.rcs.service.api.client.presence.IPresenceApi;
@@ -88,6 +89,7 @@ import com.orangelabs.rcs.service.api.server.capability.CapabilityApiService;
 import com.orangelabs.rcs.service.api.server.gsma.GsmaUtils;
 import com.orangelabs.rcs.service.api.server.ipcall.IPCallApiService;
 import com.orangelabs.rcs.service.api.server.messaging.MessagingApiService;
+import com.orangelabs.rcs.service.api.server.metrics.MetricsApiService;
 import com.orangelabs.rcs.service.api.server.presence.PresenceApiService;
 import com.orangelabs.rcs.service.api.server.richcall.RichCallApiService;
 import com.orangelabs.rcs.service.api.server.sip.SipApiService;
@@ -153,6 +155,11 @@ public class RcsCoreService extends Service implements CoreListener {
 	 */
 	private SipApiService sipApi = new SipApiService(); 
 	
+	/**
+	 * Metrics API
+	 */
+	private MetricsApiService metricsApi = new MetricsApiService();
+
     /**
      * Account changed broadcast receiver
      */
@@ -216,6 +223,7 @@ public class RcsCoreService extends Service implements CoreListener {
 		ipcallApi.close();
 		messagingApi.close();
 		sipApi.close();
+		metricsApi.close();
 
         // Stop the core
         Thread t = new Thread() {
@@ -425,6 +433,12 @@ public class RcsCoreService extends Service implements CoreListener {
     			logger.debug("SIP API binding");
     		}
             return sipApi;
+        } else
+        if (IMetricsApi.class.getName().equals(intent.getAction())) {
+    		if (logger.isActivated()) {
+    			logger.debug("Metrics API binding");
+    		}
+            return metricsApi;
         } else {
         	return null;
         }
@@ -299,6 +299,38 @@ public class EventsLogApi extends ClientApi {
 		return ContentUris.withAppendedId(EventLogData.CONTENT_URI, mode);
 	}
 
+	/**
+	 * Get the uri of the first page of the events log, from the most recent event
+	 * 
+	 * @param mode
+	 * @param limit Max number of events
+	 * @return uri
+	 */
+	public Uri getEventLogPageUri(int mode, int limit) {
+		return getEventLogContentProviderUri(mode).buildUpon()
+				.appendQueryParameter(EventLogData.PARAM_LIMIT, Integer.toString(limit))
+				.build();
+	}
+
+	/**
+	 * Get the uri of a page of the events log
+	 * 
+	 * @param mode
+	 * @param limit Max number of events
+	 * @param date Date of the key event
+	 * @param pageKey Page key of the key event (column EventLogData.KEY_EVENT_PAGE_KEY)
+	 * @param before True for the events older than the key (descending order),
+	 *            false for the events more recent than the key (ascending order)
+	 * @return uri
+	 */
+	public Uri getEventLogPageUri(int mode, int limit, long date, long pageKey, boolean before) {
+		return getEventLogContentProviderUri(mode).buildUpon()
+				.appendQueryParameter(EventLogData.PARAM_LIMIT, Integer.toString(limit))
+				.appendQueryParameter(before ? EventLogData.PARAM_BEFORE_DATE : EventLogData.PARAM_AFTER_DATE, Long.toString(date))
+				.appendQueryParameter(before ? EventLogData.PARAM_BEFORE_KEY : EventLogData.PARAM_AFTER_KEY, Long.toString(pageKey))
+				.build();
+	}
+
 	/**
 	 * Get one to one chat log
 	 * 
@@ -447,6 +479,38 @@ public class EventsLogApi extends ClientApi {
 		if (TextUtils.isEmpty(sessionId)) {
     		throw new IllegalArgumentException();
     	}
+		return ctx.getContentResolver().query(
+				RichMessagingData.CONTENT_URI,
+				null,
+				RichMessagingData.KEY_CHAT_SESSION_ID + "='" + sessionId + "'"
+						+ getChatSessionExcludedSelection(), null,
+				RichMessagingData.KEY_TIMESTAMP + " ASC");
+	}
+
+	/**
+	 * Get a page of the given chat session, from the most recent message
+	 * 
+	 * @param sessionId Session ID
+	 * @param beforeDate Date of the last message of the previous page or -1 for the first page
+	 * @param beforeId Row ID of the last message of the previous page
+	 * @param limit Max number of messages
+	 * @return cursor sorted by descending date
+	 */
+	public Cursor getChatSessionPage(String sessionId, long beforeDate, long beforeId, int limit) {
+		if (TextUtils.isEmpty(sessionId)) {
+    		throw new IllegalArgumentException();
+    	}
+		return RichMessaging.getInstance().getHistoryPage(
+				RichMessagingData.KEY_CHAT_SESSION_ID + "=?" + getChatSessionExcludedSelection(),
+				new String[] { sessionId }, beforeDate, beforeId, limit);
+	}
+
+	/**
+	 * Get the selection excluding the terminated entries of a chat session
+	 * 
+	 * @return selection
+	 */
+	private static String getChatSessionExcludedSelection() {
 		// Do not take the chat terminated messages
 		String chatTerminatedExcludedSelection = " AND NOT(("
 				+ RichMessagingData.KEY_TYPE + "==" + TYPE_CHAT_SYSTEM_MESSAGE
@@ -463,12 +527,7 @@ public class EventsLogApi extends ClientApi {
 				+ STATUS_TERMINATED_BY_REMOTE + " OR "
 				+ RichMessagingData.KEY_STATUS + "== "
 				+ STATUS_TERMINATED_BY_USER + "))";
-		return ctx.getContentResolver().query(
-				RichMessagingData.CONTENT_URI,
-				null,
-				RichMessagingData.KEY_CHAT_SESSION_ID + "='" + sessionId + "'"
-						+ chatTerminatedExcludedSelection, null,
-				RichMessagingData.KEY_TIMESTAMP + " ASC");
+		return chatTerminatedExcludedSelection;
 	}
 
 	/**
@@ -481,6 +540,40 @@ public class EventsLogApi extends ClientApi {
 		if (TextUtils.isEmpty(contact)) {
     		throw new IllegalArgumentException();
     	}
+		// take all concerning this contact
+		return ctx.getContentResolver().query(
+				RichMessagingData.CONTENT_URI,
+				null,
+				RichMessagingData.KEY_CONTACT + "='"
+						+ PhoneUtils.formatNumberToInternational(contact) + "'"
+						+ getChatContactExcludedSelection(), null,
+				RichMessagingData.KEY_TIMESTAMP + " ASC");
+	}
+
+	/**
+	 * Get a page of the chat history of the given contact, from the most recent message
+	 * 
+	 * @param contact Contact
+	 * @param beforeDate Date of the last message of the previous page or -1 for the first page
+	 * @param beforeId Row ID of the last message of the previous page
+	 * @param limit Max number of messages
+	 * @return cursor sorted by descending date
+	 */
+	public Cursor getChatContactPage(String contact, long beforeDate, long beforeId, int limit) {
+		if (TextUtils.isEmpty(contact)) {
+    		throw new IllegalArgumentException();
+    	}
+		return RichMessaging.getInstance().getHistoryPage(
+				RichMessagingData.KEY_CONTACT + "=?" + getChatContactExcludedSelection(),
+				new String[] { PhoneUtils.formatNumberToInternational(contact) }, beforeDate, beforeId, limit);
+	}
+
+	/**
+	 * Get the selection excluding the terminated and group chat entries of a contact
+	 * 
+	 * @return selection
+	 */
+	private static String getChatContactExcludedSelection() {
 		// Do not take the chat terminated messages
 		String chatTerminatedExcludedSelection = " AND NOT(("
 				+ RichMessagingData.KEY_TYPE + "==" + TYPE_CHAT_SYSTEM_MESSAGE
@@ -493,15 +586,7 @@ public class EventsLogApi extends ClientApi {
 		chatTerminatedExcludedSelection += " AND NOT("
 				+ RichMessagingData.KEY_TYPE + "=="
 				+ TYPE_GROUP_CHAT_SYSTEM_MESSAGE + ")";
-
-		// take all concerning this contact
-		return ctx.getContentResolver().query(
-				RichMessagingData.CONTENT_URI,
-				null,
-				RichMessagingData.KEY_CONTACT + "='"
-						+ PhoneUtils.formatNumberToInternational(contact) + "'"
-						+ chatTerminatedExcludedSelection, null,
-				RichMessagingData.KEY_TIMESTAMP + " ASC");
+		return chatTerminatedExcludedSelection;
 	}
 
 	/**
@@ -0,0 +1,294 @@
+/*******************************************************************************
+ * Software Name : RCS IMS Stack
+ *
+ * Copyright (C) 2010 France Telecom S.A.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.orangelabs.rcs.service.api.client.metrics;
+
+import android.os.Parcel;
+import android.os.Parcelable;
+
+/**
+ * Value of a metric of the core
+ */
+public class MetricValue implements Parcelable {
+	/**
+	 * Counter
+	 */
+	public static final int TYPE_COUNTER = 0;
+
+	/**
+	 * Gauge
+	 */
+	public static final int TYPE_GAUGE = 1;
+
+	/**
+	 * Histogram
+	 */
+	public static final int TYPE_HISTOGRAM = 2;
+
+	/**
+	 * Name
+	 */
+	private String name;
+
+	/**
+	 * Unit
+	 */
+	private String unit;
+
+	/**
+	 * Type
+	 */
+	private int type;
+
+	/**
+	 * Value of a counter or a gauge, mean of a histogram
+	 */
+	private long value;
+
+	/**
+	 * Number of values of a histogram
+	 */
+	private long count = 0;
+
+	/**
+	 * Lowest value of a histogram
+	 */
+	private long min = 0;
+
+	/**
+	 * Highest value of a histogram
+	 */
+	private long max = 0;
+
+	/**
+	 * Median of a histogram
+	 */
+	private long p50 = 0;
+
+	/**
+	 * 90th percentile of a histogram
+	 */
+	private long p90 = 0;
+
+	/**
+	 * 99th percentile of a histogram
+	 */
+	private long p99 = 0;
+
+	/**
+	 * Constructor of a counter or a gauge
+	 *
+	 * @param name Name
+	 * @param unit Unit
+	 * @param type Type
+	 * @param value Value
+	 */
+	public MetricValue(String name, String unit, int type, long value) {
+		this.name = name;
+		this.unit = unit;
+		this.type = type;
+		this.value = value;
+	}
+
+	/**
+	 * Constructor of a histogram
+	 *
+	 * @param name Name
+	 * @param unit Unit
+	 * @param count Number of values
+	 * @param mean Mean
+	 * @param min Lowest value
+	 * @param max Highest value
+	 * @param p50 Median
+	 * @param p90 90th percentile
+	 * @param p99 99th percentile
+	 */
+	public MetricValue(String name, String unit, long count, long mean, long min, long max, long p50, long p90, long p99) {
+		this(name, unit, TYPE_HISTOGRAM, mean);
+		this.count = count;
+		this.min = min;
+		this.max = max;
+		this.p50 = p50;
+		this.p90 = p90;
+		this.p99 = p99;
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param source Parcelable source
+	 */
+	public MetricValue(Parcel source) {
+		this.name = source.readString();
+		this.unit = source.readString();
+		this.type = source.readInt();
+		this.value = source.readLong();
+		this.count = source.readLong();
+		this.min = source.readLong();
+		this.max = source.readLong();
+		this.p50 = source.readLong();
+		this.p90 = source.readLong();
+		this.p99 = source.readLong();
+	}
+
+	/**
+	 * Describe the kinds of special objects contained in this Parcelable's
+	 * marshalled representation
+	 *
+	 * @return Integer
+	 */
+	public int describeContents() {
+		return 0;
+	}
+
+	/**
+	 * Write parcelable object
+	 *
+	 * @param dest The Parcel in which the object should be written
+	 * @param flags Additional flags about how the object should be written
+	 */
+	public void writeToParcel(Parcel dest, int flags) {
+		dest.writeString(name);
+		dest.writeString(unit);
+		dest.writeInt(type);
+		dest.writeLong(value);
+		dest.writeLong(count);
+		dest.writeLong(min);
+		dest.writeLong(max);
+		dest.writeLong(p50);
+		dest.writeLong(p90);
+		dest.writeLong(p99);
+	}
+
+	/**
+	 * Parcelable creator
+	 */
+	public static final Parcelable.Creator<MetricValue> CREATOR
+			= new Parcelable.Creator<MetricValue>() {
+		public MetricValue createFromParcel(Parcel source) {
+			return new MetricValue(source);
+		}
+
+		public MetricValue[] newArray(int size) {
+			return new MetricValue[size];
+		}
+	};
+
+	/**
+	 * Returns the name
+	 *
+	 * @return Name
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Returns the unit
+	 *
+	 * @return Unit
+	 */
+	public String getUnit() {
+		return unit;
+	}
+
+	/**
+	 * Returns the type
+	 *
+	 * @return Type
+	 */
+	public int getType() {
+		return type;
+	}
+
+	/**
+	 * Returns the value of a counter or a gauge, the mean of a histogram
+	 *
+	 * @return Value
+	 */
+	public long getValue() {
+		return value;
+	}
+
+	/**
+	 * Returns the number of values of a histogram
+	 *
+	 * @return Count
+	 */
+	public long getCount() {
+		return count;
+	}
+
+	/**
+	 * Returns the lowest value of a histogram
+	 *
+	 * @return Value
+	 */
+	public long getMin() {
+		return min;
+	}
+
+	/**
+	 * Returns the highest value of a histogram
+	 *
+	 * @return Value
+	 */
+	public long getMax() {
+		return max;
+	}
+
+	/**
+	 * Returns the median of a histogram
+	 *
+	 * @return Value
+	 */
+	public long getP50() {
+		return p50;
+	}
+
+	/**
+	 * Returns the 90th percentile of a histogram
+	 *
+	 * @return Value
+	 */
+	public long getP90() {
+		return p90;
+	}
+
+	/**
+	 * Returns the 99th percentile of a histogram
+	 *
+	 * @return Value
+	 */
+	public long getP99() {
+		return p99;
+	}
+
+	/**
+	 * Returns a string representation of the object
+	 *
+	 * @return String
+	 */
+	public String toString() {
+		if (type == TYPE_HISTOGRAM) {
+			return name + " count=" + count + " min=" + min + " mean=" + value + " p50=" + p50
+					+ " p90=" + p90 + " p99=" + p99 + " max=" + max + " " + unit;
+		} else {
+			return name + " " + value + " " + unit;
+		}
+	}
+}
@@ -0,0 +1,126 @@
+/*******************************************************************************
+ * Software Name : RCS IMS Stack
+ *
+ * Copyright (C) 2010 France Telecom S.A.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.orangelabs.rcs.service.api.client.metrics;
+
+import java.util.List;
+
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.Intent;
+import android.content.ServiceConnection;
+import android.os.IBinder;
+
+import com.orangelabs.rcs.service.api.client.ClientApi;
+import com.orangelabs.rcs.service.api.client.ClientApiException;
+import com.orangelabs.rcs.service.api.client.CoreServiceNotAvailableException;
+
+/**
+ * Metrics API
+ */
+public class MetricsApi extends ClientApi {
+
+	/**
+	 * Core service API
+	 */
+	private IMetricsApi coreApi = null;
+
+	/**
+     * Constructor
+     *
+     * @param ctx Application context
+     */
+    public MetricsApi(Context ctx) {
+    	super(ctx);
+    }
+
+    /**
+     * Connect API
+     */
+    public void connectApi() {
+    	super.connectApi();
+
+    	ctx.bindService(new Intent(IMetricsApi.class.getName()), apiConnection, 0);
+    }
+
+    /**
+     * Disconnect API
+     */
+    public void disconnectApi() {
+    	super.disconnectApi();
+
+    	try {
+    		ctx.unbindService(apiConnection);
+        } catch (IllegalArgumentException e) {
+        	// Nothing to do
+        }
+    }
+
+	/**
+	 * Core service API connection
+	 */
+	private ServiceConnection apiConnection = new ServiceConnection() {
+        public void onServiceConnected(ComponentName className, IBinder service) {
+            coreApi = IMetricsApi.Stub.asInterface(service);
+
+            // Notify event listener
+            notifyEventApiConnected();
+        }
+
+        public void onServiceDisconnected(ComponentName className) {
+            // Notify event listener
+        	notifyEventApiDisconnected();
+
+        	coreApi = null;
+        }
+    };
+
+	/**
+     * Get the current values of the metrics
+     *
+	 * @return List of metrics sorted by name
+     * @throws ClientApiException
+     */
+    public List<MetricValue> getMetrics() throws ClientApiException {
+    	if (coreApi != null) {
+			try {
+				return coreApi.getMetrics();
+			} catch(Exception e) {
+				throw new ClientApiException(e.getMessage());
+			}
+		} else {
+			throw new CoreServiceNotAvailableException();
+		}
+    }
+
+	/**
+     * Reset the metrics
+     *
+     * @throws ClientApiException
+     */
+    public void resetMetrics() throws ClientApiException {
+    	if (coreApi != null) {
+			try {
+				coreApi.resetMetrics();
+			} catch(Exception e) {
+				throw new ClientApiException(e.getMessage());
+			}
+		} else {
+			throw new CoreServiceNotAvailableException();
+		}
+    }
+}
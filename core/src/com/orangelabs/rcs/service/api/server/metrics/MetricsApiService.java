@@ -0,0 +1,110 @@
+/*******************************************************************************
+ * Software Name : RCS IMS Stack
+ *
+ * Copyright (C) 2010 France Telecom S.A.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.orangelabs.rcs.service.api.server.metrics;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.orangelabs.rcs.service.api.client.metrics.IMetricsApi;
+import com.orangelabs.rcs.service.api.client.metrics.MetricValue;
+import com.orangelabs.rcs.service.api.server.ServerApiException;
+import com.orangelabs.rcs.service.api.server.ServerApiUtils;
+import com.orangelabs.rcs.utils.logger.Logger;
+import com.orangelabs.rcs.utils.metrics.Counter;
+import com.orangelabs.rcs.utils.metrics.Gauge;
+import com.orangelabs.rcs.utils.metrics.Histogram;
+import com.orangelabs.rcs.utils.metrics.Metric;
+import com.orangelabs.rcs.utils.metrics.Metrics;
+
+/**
+ * Metrics API service
+ */
+public class MetricsApiService extends IMetricsApi.Stub {
+	/**
+	 * The logger
+	 */
+	private Logger logger = Logger.getLogger(this.getClass().getName());
+
+	/**
+	 * Constructor
+	 */
+	public MetricsApiService() {
+		if (logger.isActivated()) {
+			logger.info("Metrics API is loaded");
+		}
+	}
+
+	/**
+	 * Close API
+	 */
+	public void close() {
+	}
+
+	/**
+	 * Get the current values of the metrics
+	 *
+	 * @return List of metrics sorted by name
+	 * @throws ServerApiException
+	 */
+	public List<MetricValue> getMetrics() throws ServerApiException {
+		if (logger.isActivated()) {
+			logger.info("Get metrics");
+		}
+
+		// Check permission
+		ServerApiUtils.testPermission();
+
+		List<Metric> metrics = Metrics.getMetrics();
+		List<MetricValue> result = new ArrayList<MetricValue>(metrics.size());
+		for (int i = 0; i < metrics.size(); i++) {
+			Metric metric = metrics.get(i);
+			if (metric instanceof Counter) {
+				result.add(new MetricValue(metric.getName(), metric.getUnit(), MetricValue.TYPE_COUNTER,
+						((Counter)metric).get()));
+			} else
+			if (metric instanceof Gauge) {
+				result.add(new MetricValue(metric.getName(), metric.getUnit(), MetricValue.TYPE_GAUGE,
+						((Gauge)metric).get()));
+			} else
+			if (metric instanceof Histogram) {
+				Histogram.Snapshot snapshot = ((Histogram)metric).getSnapshot();
+				result.add(new MetricValue(metric.getName(), metric.getUnit(), snapshot.getCount(),
+						snapshot.getMean(), snapshot.getMin(), snapshot.getMax(),
+						snapshot.getValueAtPercentile(50.0), snapshot.getValueAtPercentile(90.0),
+						snapshot.getValueAtPercentile(99.0)));
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Reset the metrics
+	 *
+	 * @throws ServerApiException
+	 */
+	public void resetMetrics() throws ServerApiException {
+		if (logger.isActivated()) {
+			logger.info("Reset metrics");
+		}
+
+		// Check permission
+		ServerApiUtils.testPermission();
+
+		Metrics.reset();
+	}
+}
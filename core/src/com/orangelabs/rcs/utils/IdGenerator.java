@@ -18,10 +18,13 @@
 
 package com.orangelabs.rcs.utils;
 
-import java.util.UUID;
+import java.security.SecureRandom;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Unique identifier generator
+ * <br>The identifiers are generated without lock: each thread has its own
+ * secure random generator and its own buffers to encode the identifiers.
  *
  * @author JF. Jestin
  */
@@ -43,10 +46,28 @@ public class IdGenerator {
 	    '4', '5', '6', '7', '8', '9', '+', '_'
 		};
 
+	/**
+	 * Hexadecimal digits
+	 */
+	private final static char[] HEX_TABLE =
+		{
+	    '0', '1', '2', '3', '4', '5', '6', '7',
+	    '8', '9', 'a', 'b', 'c', 'd', 'e', 'f'
+		};
+
 	/**
 	 * The counter which get a new value for each subsequent call of increment()
 	 */
-	private static int cyclicCounter = 0;
+	private final static AtomicInteger cyclicCounter = new AtomicInteger();
+
+	/**
+	 * Generator of each thread
+	 */
+	private final static ThreadLocal<Generator> generators = new ThreadLocal<Generator>() {
+		protected Generator initialValue() {
+			return new Generator();
+		}
+	};
 
 	/**
 	 * How much digits are used for coding the counter, 3 means 3*6 bits,
@@ -65,7 +86,7 @@ public class IdGenerator {
 	private final static int MAX_DIGIT = 7 + N_COUNTERS_CHARS;
 
 	/**
-	 * The central method to increment the cyclic counter, synchronized to achieve
+	 * The central method to increment the cyclic counter, atomic to achieve
 	 * a unique value for each subsequent call<p>
 	 * there is no problem if the counter reaches the maximum counter value,
 	 * defined by N_COUNTERS_CHARS, only the right number of bits are taken into
@@ -73,8 +94,8 @@ public class IdGenerator {
 	 *
 	 * @return The new counter value
 	 */
-	private static synchronized int increment() {
-		return cyclicCounter++;
+	private static int increment() {
+		return cyclicCounter.getAndIncrement();
 	}
 
 	/**
@@ -83,10 +104,9 @@ public class IdGenerator {
 	 * @param time This should be System.currentTimeMillis
 	 * @param counter The counter value, it is coded into N_COUNTERS_CHARS chars, ie for
 	 *        3 chars we have 18 bit and a max. range of 262144
-	 * @result The converted String containing (7 + N_COUNTERS_CHARS) characters
+	 * @param result Buffer receiving the (7 + N_COUNTERS_CHARS) characters
 	 */
-	private static String encode64(long time, int counter) {
-		char[] result = new char[MAX_DIGIT];
+	private static void encode64(long time, int counter, char[] result) {
 		int i, idx;
 
 		for (i = 0; i < 7; i++) {
@@ -100,8 +120,6 @@ public class IdGenerator {
 			counter >>= 6;
 			result[i] = CODE_TABLE[idx];
 		}
-
-		return new String(result);
 	}
 
 	/**
@@ -109,14 +127,16 @@ public class IdGenerator {
 	 *
 	 * @return Unique identifier
 	 */
-	public static synchronized String getIdentifier() {
+	public static String getIdentifier() {
 		long time = System.currentTimeMillis();
 
 		int counter = -1;
 		if (N_COUNTERS_CHARS > 0)
 			counter = increment();
 
-		return encode64(time, counter);
+		char[] buffer = generators.get().buffer;
+		encode64(time, counter, buffer);
+		return new String(buffer, 0, MAX_DIGIT);
 	}
 	
 	/**
@@ -129,8 +149,75 @@ public class IdGenerator {
 	 *         The message ID is a string of 32 characters in the range [a-f0-9] in compliance with RFC 4975
 	 *         </p>
 	 */
-	public static synchronized String generateMessageID() {
-		UUID id = UUID.randomUUID();
-		return Long.toHexString(id.getMostSignificantBits()) + Long.toHexString(id.getLeastSignificantBits());
+	public static String generateMessageID() {
+		return generators.get().nextHexString(16);
+	}
+
+	/**
+	 * Generate a new random transaction ID (eg. for MSRP)
+	 * 
+	 * @return Transaction ID of 16 characters in the range [a-f0-9]
+	 */
+	public static String generateTransactionId() {
+		return generators.get().nextHexString(8);
+	}
+
+	/**
+	 * Encode bytes in hexadecimal
+	 * 
+	 * @param data Bytes
+	 * @param length Number of bytes to be encoded, at most 16
+	 * @return String in the range [a-f0-9]
+	 */
+	public static String toHexString(byte[] data, int length) {
+		return toHexString(data, length, generators.get().buffer);
+	}
+
+	/**
+	 * Encode bytes in hexadecimal
+	 * 
+	 * @param data Bytes
+	 * @param length Number of bytes to be encoded
+	 * @param buffer Buffer of at least 2 * length characters
+	 * @return String in the range [a-f0-9]
+	 */
+	private static String toHexString(byte[] data, int length, char[] buffer) {
+		for (int i = 0; i < length; i++) {
+			buffer[2 * i] = HEX_TABLE[(data[i] >> 4) & 0x0F];
+			buffer[2 * i + 1] = HEX_TABLE[data[i] & 0x0F];
+		}
+		return new String(buffer, 0, 2 * length);
+	}
+
+	/**
+	 * Secure random generator and encoding buffers of a thread. The message
+	 * and transaction IDs can't be predicted from the previous ones.
+	 */
+	private static class Generator {
+		/**
+		 * Encoding buffer
+		 */
+		private final char[] buffer = new char[32];
+
+		/**
+		 * Random bytes
+		 */
+		private final byte[] bytes = new byte[16];
+
+		/**
+		 * Random generator, seeded by the platform
+		 */
+		private final SecureRandom random = new SecureRandom();
+
+		/**
+		 * Returns random bytes encoded in hexadecimal
+		 * 
+		 * @param length Number of random bytes, at most 16
+		 * @return String of 2 * length characters in the range [a-f0-9]
+		 */
+		public String nextHexString(int length) {
+			random.nextBytes(bytes);
+			return toHexString(bytes, length, buffer);
+		}
 	}
 }
@@ -0,0 +1,127 @@
+/*******************************************************************************
+ * Software Name : RCS IMS Stack
+ *
+ * Copyright (C) 2010 France Telecom S.A.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.orangelabs.rcs.utils;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParserFactory;
+
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * Shared SAX parsing of the XML documents
+ * <br>The parser factory is looked up once and each thread keeps its own XML
+ * reader, which is reused from one document to the next. The reader is
+ * configured as the one of a parser created by a default factory, so the
+ * handlers see the same events as with a new parser.
+ */
+public class SaxParserPool {
+	/**
+	 * Parser factory
+	 */
+	private static SAXParserFactory factory = null;
+
+	/**
+	 * Reader of each thread
+	 */
+	private static final ThreadLocal<XMLReader> readers = new ThreadLocal<XMLReader>();
+
+	/**
+	 * Handler set on an idle reader, so that the last handler can be released
+	 */
+	private static final DefaultHandler IDLE_HANDLER = new DefaultHandler();
+
+	/**
+	 * Parse a document
+	 *
+	 * @param input Input source
+	 * @param handler Handler receiving the SAX events
+	 * @throws ParserConfigurationException
+	 * @throws SAXException
+	 * @throws IOException
+	 */
+	public static void parse(InputSource input, DefaultHandler handler) throws ParserConfigurationException, SAXException, IOException {
+		// The reader is removed while in use, so that a nested parse gets its own reader
+		XMLReader reader = readers.get();
+		if (reader == null) {
+			reader = getFactory().newSAXParser().getXMLReader();
+		} else {
+			readers.set(null);
+		}
+
+		reader.setContentHandler(handler);
+		reader.setDTDHandler(handler);
+		reader.setEntityResolver(handler);
+		reader.setErrorHandler(handler);
+		try {
+			reader.parse(input);
+		} finally {
+			reader.setContentHandler(IDLE_HANDLER);
+			reader.setDTDHandler(IDLE_HANDLER);
+			reader.setEntityResolver(IDLE_HANDLER);
+			reader.setErrorHandler(IDLE_HANDLER);
+			readers.set(reader);
+		}
+	}
+
+	/**
+	 * Parse a document
+	 *
+	 * @param data Document
+	 * @param handler Handler receiving the SAX events
+	 * @throws ParserConfigurationException
+	 * @throws SAXException
+	 * @throws IOException
+	 */
+	public static void parse(byte[] data, DefaultHandler handler) throws ParserConfigurationException, SAXException, IOException {
+		parse(data, 0, data.length, handler);
+	}
+
+	/**
+	 * Parse a document contained in a byte array
+	 *
+	 * @param data Data
+	 * @param offset Offset of the document in the data
+	 * @param length Length of the document
+	 * @param handler Handler receiving the SAX events
+	 * @throws ParserConfigurationException
+	 * @throws SAXException
+	 * @throws IOException
+	 */
+	public static void parse(byte[] data, int offset, int length, DefaultHandler handler) throws ParserConfigurationException, SAXException, IOException {
+		parse(new InputSource(new ByteArrayInputStream(data, offset, length)), handler);
+	}
+
+	/**
+	 * Returns the parser factory
+	 *
+	 * @return Factory
+	 */
+	private static synchronized SAXParserFactory getFactory() {
+		if (factory == null) {
+			factory = SAXParserFactory.newInstance();
+		}
+		return factory;
+	}
+}
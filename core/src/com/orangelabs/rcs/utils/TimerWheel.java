@@ -0,0 +1,308 @@
+/*******************************************************************************
+ * Software Name : RCS IMS Stack
+ *
+ * Copyright (C) 2010 France Telecom S.A.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.orangelabs.rcs.utils;
+
+import java.util.ArrayList;
+
+import com.orangelabs.rcs.utils.logger.Logger;
+
+/**
+ * Hashed timer wheel
+ * <br>The timeouts are hashed by their deadline into the slots of a wheel
+ * which is advanced by a single thread at each tick, so scheduling,
+ * rescheduling and cancelling a timeout are done in constant time without
+ * creating any object. A timeout expires at most one tick after its delay.
+ * The thread is started with the first timeout and waits without ticking
+ * while no timeout is scheduled.
+ */
+public class TimerWheel {
+	/**
+	 * Timeout scheduled in a wheel
+	 */
+	public static abstract class Timeout {
+		/**
+		 * Tick of the deadline
+		 */
+		private long deadline;
+
+		/**
+		 * Scheduled flag
+		 */
+		private boolean scheduled = false;
+
+		/**
+		 * Index of the slot
+		 */
+		private int index;
+
+		/**
+		 * Previous timeout of the slot
+		 */
+		private Timeout prev = null;
+
+		/**
+		 * Next timeout of the slot
+		 */
+		private Timeout next = null;
+
+		/**
+		 * Called by the thread of the wheel when the timeout expires
+		 */
+		public abstract void expire();
+	}
+
+	/**
+	 * Duration of a tick in milliseconds
+	 */
+	private final long tickDuration;
+
+	/**
+	 * First timeout of each slot
+	 */
+	private final Timeout[] wheel;
+
+	/**
+	 * Mask giving the slot of a tick
+	 */
+	private final int mask;
+
+	/**
+	 * Name of the thread
+	 */
+	private final String name;
+
+	/**
+	 * Start time in milliseconds on the monotonic clock
+	 */
+	private final long startTime;
+
+	/**
+	 * Last processed tick
+	 */
+	private long tick = 0L;
+
+	/**
+	 * Number of scheduled timeouts
+	 */
+	private int size = 0;
+
+	/**
+	 * Thread of the wheel
+	 */
+	private Thread thread = null;
+
+	/**
+	 * The logger
+	 */
+	private Logger logger = Logger.getLogger(this.getClass().getName());
+
+	/**
+	 * Constructor
+	 *
+	 * @param name Name of the thread
+	 * @param tickDuration Duration of a tick in milliseconds
+	 * @param wheelSize Number of slots, rounded up to a power of two
+	 */
+	public TimerWheel(String name, long tickDuration, int wheelSize) {
+		int slots = 1;
+		while (slots < wheelSize) {
+			slots <<= 1;
+		}
+		this.name = name;
+		this.tickDuration = tickDuration;
+		this.wheel = new Timeout[slots];
+		this.mask = slots - 1;
+		this.startTime = now();
+	}
+
+	/**
+	 * Schedule a timeout, a timeout already scheduled is rescheduled
+	 *
+	 * @param timeout Timeout
+	 * @param delay Delay in milliseconds
+	 */
+	public synchronized void schedule(Timeout timeout, long delay) {
+		if (timeout.scheduled) {
+			unlink(timeout);
+		}
+
+		long elapsed = now() - startTime + delay;
+		long deadline = (elapsed + tickDuration - 1) / tickDuration;
+		if (deadline <= tick) {
+			deadline = tick + 1;
+		}
+		timeout.deadline = deadline;
+		timeout.scheduled = true;
+		timeout.index = (int)(deadline & mask);
+		timeout.prev = null;
+		timeout.next = wheel[timeout.index];
+		if (timeout.next != null) {
+			timeout.next.prev = timeout;
+		}
+		wheel[timeout.index] = timeout;
+		size++;
+
+		if (thread == null) {
+			thread = new Thread(name) {
+				public void run() {
+					processTicks();
+				}
+			};
+			thread.setDaemon(true);
+			thread.start();
+		} else
+		if (size == 1) {
+			notifyAll();
+		}
+	}
+
+	/**
+	 * Cancel a timeout
+	 *
+	 * @param timeout Timeout
+	 * @return Returns true if the timeout was scheduled
+	 */
+	public synchronized boolean cancel(Timeout timeout) {
+		if (!timeout.scheduled) {
+			return false;
+		}
+		unlink(timeout);
+		return true;
+	}
+
+	/**
+	 * Is a timeout scheduled
+	 *
+	 * @param timeout Timeout
+	 * @return Boolean
+	 */
+	public synchronized boolean isScheduled(Timeout timeout) {
+		return timeout.scheduled;
+	}
+
+	/**
+	 * Returns the number of scheduled timeouts
+	 *
+	 * @return Number of timeouts
+	 */
+	public synchronized int size() {
+		return size;
+	}
+
+	/**
+	 * Remove a timeout from its slot
+	 *
+	 * @param timeout Timeout
+	 */
+	private void unlink(Timeout timeout) {
+		if (timeout.prev != null) {
+			timeout.prev.next = timeout.next;
+		} else {
+			wheel[timeout.index] = timeout.next;
+		}
+		if (timeout.next != null) {
+			timeout.next.prev = timeout.prev;
+		}
+		timeout.prev = null;
+		timeout.next = null;
+		timeout.scheduled = false;
+		size--;
+	}
+
+	/**
+	 * Advance the wheel and expire the timeouts
+	 */
+	private void processTicks() {
+		ArrayList<Timeout> expired = new ArrayList<Timeout>();
+		while (true) {
+			synchronized(this) {
+				try {
+					// The tick and the remaining delay come from the same time
+					long elapsed = now() - startTime;
+					long current = elapsed / tickDuration;
+					if (size == 0) {
+						// Nothing to expire until a timeout is scheduled
+						tick = current;
+						wait();
+						continue;
+					}
+					if (current <= tick) {
+						wait(Math.max(1, (tick + 1) * tickDuration - elapsed));
+						continue;
+					}
+
+					// Collect the timeouts of the elapsed ticks, at most one turn of the wheel
+					long last = Math.min(current, tick + wheel.length);
+					while (tick < last) {
+						tick++;
+						collectExpired((int)(tick & mask), current, expired);
+					}
+					tick = current;
+				} catch(InterruptedException e) {
+					// Nothing to do
+				}
+			}
+
+			for(int i=0; i < expired.size(); i++) {
+				Timeout timeout = expired.get(i);
+				if (isScheduled(timeout)) {
+					// Rescheduled in the meantime
+					continue;
+				}
+				try {
+					timeout.expire();
+				} catch(Exception e) {
+					if (logger.isActivated()) {
+						logger.error("Timeout has failed", e);
+					}
+				}
+			}
+			expired.clear();
+		}
+	}
+
+	/**
+	 * Returns the time of the monotonic clock, which is not changed with the
+	 * date of the device
+	 *
+	 * @return Time in milliseconds
+	 */
+	long now() {
+		return System.nanoTime() / 1000000L;
+	}
+
+	/**
+	 * Remove the expired timeouts of a slot
+	 *
+	 * @param index Slot index
+	 * @param current Current tick
+	 * @param expired List receiving the expired timeouts
+	 */
+	private void collectExpired(int index, long current, ArrayList<Timeout> expired) {
+		Timeout timeout = wheel[index];
+		while (timeout != null) {
+			Timeout next = timeout.next;
+			if (timeout.deadline <= current) {
+				unlink(timeout);
+				expired.add(timeout);
+			}
+			timeout = next;
+		}
+	}
+}
@@ -0,0 +1,110 @@
+/*******************************************************************************
+ * Software Name : RCS IMS Stack
+ *
+ * Copyright (C) 2010 France Telecom S.A.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.orangelabs.rcs.utils;
+
+/**
+ * Token bucket rate limiter
+ * <br>Tokens are added at a fixed rate up to the capacity of the bucket,
+ * each operation consumes one token.
+ */
+public class TokenBucket {
+	/**
+	 * Max number of tokens
+	 */
+	private final int capacity;
+
+	/**
+	 * Delay in nanoseconds to add one token
+	 */
+	private final long nanosPerToken;
+
+	/**
+	 * Available tokens
+	 */
+	private int tokens;
+
+	/**
+	 * Time of the last refill in nanoseconds
+	 */
+	private long lastRefill;
+
+	/**
+	 * Constructor
+	 *
+	 * @param capacity Max number of tokens (burst size)
+	 * @param tokensPerSecond Refill rate
+	 */
+	public TokenBucket(int capacity, int tokensPerSecond) {
+		this.capacity = capacity;
+		this.nanosPerToken = 1000000000L / tokensPerSecond;
+		this.tokens = capacity;
+		this.lastRefill = System.nanoTime();
+	}
+
+	/**
+	 * Try to consume a token without waiting
+	 *
+	 * @return Returns true if a token has been consumed
+	 */
+	public synchronized boolean tryAcquire() {
+		refill();
+		if (tokens > 0) {
+			tokens--;
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Consume a token, waiting until one is available
+	 *
+	 * @throws InterruptedException
+	 */
+	public void acquire() throws InterruptedException {
+		while (true) {
+			long delay;
+			synchronized(this) {
+				refill();
+				if (tokens > 0) {
+					tokens--;
+					return;
+				}
+				delay = nanosPerToken - (System.nanoTime() - lastRefill);
+			}
+			if (delay > 0) {
+				Thread.sleep(delay / 1000000L, (int)(delay % 1000000L));
+			}
+		}
+	}
+
+	/**
+	 * Add the tokens earned since the last refill
+	 */
+	private void refill() {
+		long now = System.nanoTime();
+		long earned = (now - lastRefill) / nanosPerToken;
+		if (earned > 0) {
+			tokens = (int)Math.min(capacity, tokens + earned);
+			lastRefill += earned * nanosPerToken;
+			if (tokens == capacity) {
+				lastRefill = now;
+			}
+		}
+	}
+}
@@ -0,0 +1,327 @@
+/*******************************************************************************
+ * Software Name : RCS IMS Stack
+ *
+ * Copyright (C) 2010 France Telecom S.A.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.orangelabs.rcs.utils;
+
+import java.io.UnsupportedEncodingException;
+
+/**
+ * Pull scanner of small XML documents
+ * <br>Only the elements and their text are reported, directly from the UTF-8
+ * bytes. The text of an element is the text preceding its end tag, after the
+ * last child element if any. Documents using comments, CDATA sections, DTD
+ * or entity references are not supported: an exception is raised and the
+ * document has to be parsed by a SAX parser (see {@link SaxParserPool}).
+ */
+public class XmlScanner {
+	/**
+	 * End of the document
+	 */
+	public static final int END_DOCUMENT = 0;
+
+	/**
+	 * Start of an element
+	 */
+	public static final int START_TAG = 1;
+
+	/**
+	 * End of an element
+	 */
+	public static final int END_TAG = 2;
+
+	/**
+	 * Max depth of the elements
+	 */
+	private static final int MAX_DEPTH = 16;
+
+	/**
+	 * Document
+	 */
+	private byte[] data;
+
+	/**
+	 * Current position
+	 */
+	private int pos;
+
+	/**
+	 * End of the document
+	 */
+	private int end;
+
+	/**
+	 * Start of the local name of the current element
+	 */
+	private int nameStart = 0;
+
+	/**
+	 * End of the local name of the current element
+	 */
+	private int nameEnd = 0;
+
+	/**
+	 * Start of the text read since the last tag, or -1 if none
+	 */
+	private int textStart = -1;
+
+	/**
+	 * End of the text read since the last tag
+	 */
+	private int textEnd = -1;
+
+	/**
+	 * End tag of an empty element to be reported
+	 */
+	private boolean pendingEndTag = false;
+
+	/**
+	 * Start positions of the qualified names of the open elements
+	 */
+	private int[] openStarts = new int[MAX_DEPTH];
+
+	/**
+	 * End positions of the qualified names of the open elements
+	 */
+	private int[] openEnds = new int[MAX_DEPTH];
+
+	/**
+	 * Number of open elements
+	 */
+	private int depth = 0;
+
+	/**
+	 * Constructor
+	 *
+	 * @param data Document in UTF-8
+	 */
+	public XmlScanner(byte[] data) {
+		this.data = data;
+		this.pos = 0;
+		this.end = data.length;
+	}
+
+	/**
+	 * Move to the next start or end tag
+	 *
+	 * @return Event type
+	 * @throws Exception if the document is malformed or not supported
+	 */
+	public int next() throws Exception {
+		textStart = -1;
+		textEnd = -1;
+		if (pendingEndTag) {
+			pendingEndTag = false;
+			depth--;
+			return END_TAG;
+		}
+
+		while (pos < end) {
+			if (data[pos] != '<') {
+				readText();
+				continue;
+			}
+			if (pos + 1 >= end) {
+				throw new Exception("Truncated tag");
+			}
+			byte b = data[pos+1];
+			if (b == '?') {
+				// Processing instruction
+				pos = indexOf('>', pos + 2) + 1;
+			} else
+			if (b == '!') {
+				throw new Exception("Comment, CDATA or DTD not supported");
+			} else
+			if (b == '/') {
+				readEndTag();
+				return END_TAG;
+			} else {
+				readStartTag();
+				return START_TAG;
+			}
+		}
+
+		if (depth != 0) {
+			throw new Exception("Unclosed element");
+		}
+		return END_DOCUMENT;
+	}
+
+	/**
+	 * Test the local name of the current element
+	 *
+	 * @param name Name
+	 * @return Boolean
+	 */
+	public boolean isName(String name) {
+		int length = nameEnd - nameStart;
+		if (name.length() != length) {
+			return false;
+		}
+		for(int i=0; i < length; i++) {
+			if (data[nameStart+i] != name.charAt(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the text of the current element, read before its end tag
+	 *
+	 * @return Text
+	 */
+	public String getText() {
+		if (textStart == -1) {
+			return "";
+		}
+		try {
+			return new String(data, textStart, textEnd - textStart, "UTF-8");
+		} catch(UnsupportedEncodingException e) {
+			return new String(data, textStart, textEnd - textStart);
+		}
+	}
+
+	/**
+	 * Read a text segment
+	 *
+	 * @throws Exception
+	 */
+	private void readText() throws Exception {
+		int start = pos;
+		while ((pos < end) && (data[pos] != '<')) {
+			if (data[pos] == '&') {
+				throw new Exception("Entity reference not supported");
+			}
+			pos++;
+		}
+		textStart = start;
+		textEnd = pos;
+	}
+
+	/**
+	 * Read a start tag
+	 *
+	 * @throws Exception
+	 */
+	private void readStartTag() throws Exception {
+		int start = pos + 1;
+		pos = start;
+		while ((pos < end) && ((data[pos] & 0xff) > ' ') && (data[pos] != '/') && (data[pos] != '>')) {
+			pos++;
+		}
+		if (pos == start) {
+			throw new Exception("Missing element name");
+		}
+		setName(start, pos);
+
+		// Skip the attributes
+		byte quote = 0;
+		while (pos < end) {
+			byte b = data[pos];
+			if (quote != 0) {
+				if (b == quote) {
+					quote = 0;
+				}
+			} else
+			if ((b == '"') || (b == '\'')) {
+				quote = b;
+			} else
+			if (b == '>') {
+				break;
+			}
+			pos++;
+		}
+		if (pos >= end) {
+			throw new Exception("Truncated tag");
+		}
+		pendingEndTag = (data[pos-1] == '/');
+		pos++;
+
+		if (depth == MAX_DEPTH) {
+			throw new Exception("Too many nested elements");
+		}
+		openStarts[depth] = start;
+		openEnds[depth] = nameEnd;
+		depth++;
+	}
+
+	/**
+	 * Read an end tag
+	 *
+	 * @throws Exception
+	 */
+	private void readEndTag() throws Exception {
+		int start = pos + 2;
+		int close = indexOf('>', start);
+		int stop = close;
+		while ((stop > start) && (data[stop-1] <= ' ') && (data[stop-1] >= 0)) {
+			stop--;
+		}
+		if (depth == 0) {
+			throw new Exception("Unexpected end tag");
+		}
+
+		// The name must match the one of the last open element
+		depth--;
+		int openStart = openStarts[depth];
+		int length = openEnds[depth] - openStart;
+		if (stop - start != length) {
+			throw new Exception("Mismatched end tag");
+		}
+		for(int i=0; i < length; i++) {
+			if (data[start+i] != data[openStart+i]) {
+				throw new Exception("Mismatched end tag");
+			}
+		}
+		setName(start, stop);
+		pos = close + 1;
+	}
+
+	/**
+	 * Set the local name of the current element from its qualified name
+	 *
+	 * @param start Start of the qualified name
+	 * @param stop End of the qualified name
+	 */
+	private void setName(int start, int stop) {
+		nameStart = start;
+		nameEnd = stop;
+		for(int i=start; i < stop; i++) {
+			if (data[i] == ':') {
+				nameStart = i + 1;
+			}
+		}
+	}
+
+	/**
+	 * Search a byte from a given position
+	 *
+	 * @param b Byte
+	 * @param from Start position
+	 * @return Position
+	 * @throws Exception if not found
+	 */
+	private int indexOf(char b, int from) throws Exception {
+		for(int i=from; i < end; i++) {
+			if (data[i] == b) {
+				return i;
+			}
+		}
+		throw new Exception("Truncated tag");
+	}
+}
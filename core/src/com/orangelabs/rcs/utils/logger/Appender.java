@@ -38,4 +38,29 @@ public abstract class Appender {
 	 * @param trace Trace
 	 */
 	public abstract void printTrace(String classname, int level, String trace);
+
+	/**
+	 * Print a trace with arguments
+	 *
+	 * @param classname Classname
+	 * @param level Trace level
+	 * @param format Trace format, see {@link Logger#format(String, Object[])}
+	 * @param args Arguments
+	 */
+	public void printTrace(String classname, int level, String format, Object[] args) {
+		printTrace(classname, level, Logger.format(format, args));
+	}
+
+	/**
+	 * Print a trace with an exception
+	 *
+	 * @param classname Classname
+	 * @param level Trace level
+	 * @param trace Trace
+	 * @param e Exception
+	 */
+	public void printException(String classname, int level, String trace, Throwable e) {
+		printTrace(classname, level, trace);
+		e.printStackTrace();
+	}
 }
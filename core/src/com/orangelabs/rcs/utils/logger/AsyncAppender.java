@@ -0,0 +1,292 @@
+/*******************************************************************************
+ * Software Name : RCS IMS Stack
+ *
+ * Copyright (C) 2010 France Telecom S.A.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.orangelabs.rcs.utils.logger;
+
+/**
+ * Appender printing the traces from a background thread
+ * <br>The traces are stored in a ring buffer of preallocated entries and the
+ * formatting of the traces with arguments, as well as the printing of the
+ * stack traces of the exceptions, is done by the background thread.
+ * When the buffer is full the debug, info and warning traces are dropped and
+ * counted, while the error and fatal traces are printed by the calling thread.
+ */
+public class AsyncAppender extends Appender {
+	/**
+	 * Default size of the buffer
+	 */
+	public static final int DEFAULT_CAPACITY = 1024;
+
+	/**
+	 * Appenders printing the traces
+	 */
+	private Appender[] appenders;
+
+	/**
+	 * Ring buffer
+	 */
+	private Entry[] buffer;
+
+	/**
+	 * Index of the next entry to be printed
+	 */
+	private long head = 0;
+
+	/**
+	 * Index of the next entry to be stored
+	 */
+	private long tail = 0;
+
+	/**
+	 * Number of traces lost since the start
+	 */
+	private long lostCount = 0;
+
+	/**
+	 * Number of traces lost and not yet reported
+	 */
+	private long unreportedLost = 0;
+
+	/**
+	 * Background thread, started with the first trace
+	 */
+	private Thread thread = null;
+
+	/**
+	 * Constructor
+	 *
+	 * @param appenders Appenders printing the traces
+	 */
+	public AsyncAppender(Appender[] appenders) {
+		this(appenders, DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param appenders Appenders printing the traces
+	 * @param capacity Size of the buffer
+	 */
+	public AsyncAppender(Appender[] appenders, int capacity) {
+		super();
+
+		this.appenders = appenders;
+		this.buffer = new Entry[capacity];
+		for (int i = 0; i < capacity; i++) {
+			buffer[i] = new Entry();
+		}
+	}
+
+	/**
+	 * Print a trace
+	 *
+	 * @param classname Classname
+	 * @param level Trace level
+	 * @param trace Trace
+	 */
+	public void printTrace(String classname, int level, String trace) {
+		store(classname, level, trace, null, null);
+	}
+
+	/**
+	 * Print a trace with arguments
+	 *
+	 * @param classname Classname
+	 * @param level Trace level
+	 * @param format Trace format
+	 * @param args Arguments
+	 */
+	public void printTrace(String classname, int level, String format, Object[] args) {
+		store(classname, level, format, args, null);
+	}
+
+	/**
+	 * Print a trace with an exception
+	 *
+	 * @param classname Classname
+	 * @param level Trace level
+	 * @param trace Trace
+	 * @param e Exception
+	 */
+	public void printException(String classname, int level, String trace, Throwable e) {
+		store(classname, level, trace, null, e);
+	}
+
+	/**
+	 * Store a trace to be printed by the background thread
+	 *
+	 * @param classname Classname
+	 * @param level Trace level
+	 * @param format Trace format
+	 * @param args Arguments or null
+	 * @param e Exception or null
+	 */
+	private void store(String classname, int level, String format, Object[] args, Throwable e) {
+		synchronized(this) {
+			if (tail - head < buffer.length) {
+				Entry entry = buffer[(int)(tail % buffer.length)];
+				entry.classname = classname;
+				entry.level = level;
+				entry.format = format;
+				entry.args = args;
+				entry.exception = e;
+				tail++;
+				if (thread == null) {
+					thread = new Thread(new Runnable() {
+						public void run() {
+							processTraces();
+						}
+					}, "AsyncAppender");
+					thread.setDaemon(true);
+					thread.start();
+				} else
+				if (tail - head == 1) {
+					notifyAll();
+				}
+				return;
+			}
+
+			// The buffer is full
+			if (level < Logger.ERROR_LEVEL) {
+				lostCount++;
+				unreportedLost++;
+				return;
+			}
+		}
+		print(classname, level, format, args, e);
+	}
+
+	/**
+	 * Returns the number of traces lost because the buffer was full
+	 *
+	 * @return Number of traces
+	 */
+	public synchronized long getLostCount() {
+		return lostCount;
+	}
+
+	/**
+	 * Returns the number of traces waiting to be printed
+	 *
+	 * @return Number of traces
+	 */
+	public synchronized int getPendingCount() {
+		return (int)(tail - head);
+	}
+
+	/**
+	 * Wait until the stored traces are printed
+	 *
+	 * @param timeout Timeout in milliseconds
+	 * @return Returns true if all the traces have been printed
+	 */
+	public synchronized boolean flush(long timeout) {
+		long deadline = System.currentTimeMillis() + timeout;
+		while (head < tail) {
+			long delay = deadline - System.currentTimeMillis();
+			if (delay <= 0) {
+				return false;
+			}
+			try {
+				wait(delay);
+			} catch (InterruptedException e) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Print the stored traces, run by the background thread
+	 */
+	private void processTraces() {
+		while (true) {
+			Entry entry;
+			long lost;
+			synchronized(this) {
+				while (head == tail) {
+					try {
+						wait();
+					} catch (InterruptedException e) {
+						// Nothing to do
+					}
+				}
+				entry = buffer[(int)(head % buffer.length)];
+				lost = unreportedLost;
+				unreportedLost = 0;
+			}
+
+			// The entry is not reused before the head is moved
+			if (lost > 0) {
+				print(getClass().getSimpleName(), Logger.WARN_LEVEL, lost + " traces lost", null, null);
+			}
+			print(entry.classname, entry.level, entry.format, entry.args, entry.exception);
+
+			synchronized(this) {
+				entry.classname = null;
+				entry.format = null;
+				entry.args = null;
+				entry.exception = null;
+				head++;
+				if (head == tail) {
+					// Wake up the threads waiting for a flush
+					notifyAll();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Print a trace on each appender
+	 *
+	 * @param classname Classname
+	 * @param level Trace level
+	 * @param format Trace format
+	 * @param args Arguments or null
+	 * @param exception Exception or null
+	 */
+	private void print(String classname, int level, String format, Object[] args, Throwable exception) {
+		String trace = Logger.format(format, args);
+		for (int i = 0; i < appenders.length; i++) {
+			try {
+				if (exception != null) {
+					appenders[i].printException(classname, level, trace, exception);
+				} else {
+					appenders[i].printTrace(classname, level, trace);
+				}
+			} catch (RuntimeException e) {
+				// The other appenders are still used
+			}
+		}
+	}
+
+	/**
+	 * Entry of the ring buffer
+	 */
+	private static class Entry {
+		private String classname;
+
+		private int level;
+
+		private String format;
+
+		private Object[] args;
+
+		private Throwable exception;
+	}
+}
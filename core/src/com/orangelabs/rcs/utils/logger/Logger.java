@@ -72,10 +72,11 @@ public class Logger {
 	public static int traceLevel = DEBUG_LEVEL;
 	
 	/**
-	 * List of appenders
+	 * List of appenders. The traces are printed by a background thread, so
+	 * that the SIP and media threads are not slowed down by the output.
 	 */
 	private static Appender[] appenders = new Appender[] { 
-		new AndroidAppender()
+		new AsyncAppender(new Appender[] { new AndroidAppender() })
 	};
 	
 	/**
@@ -107,12 +108,50 @@ public class Logger {
 	}
 
 	/**
+	 * Is logger activated for a trace level
+	 * 
+	 * @param level Trace level
+	 * @return boolean
+	 */
+	public boolean isActivated(int level) {
+		return (activationFlag == TRACE_ON) && (level >= traceLevel);
+	}
+
+	/**
+	 * Is logger activated for the debug traces
+	 * 
+	 * @return boolean
+	 */
+	public boolean isDebugActivated() {
+		return isActivated(DEBUG_LEVEL);
+	}
+
+	/**
+	 * Is logger activated for the info traces
+	 * 
+	 * @return boolean
+	 */
+	public boolean isInfoActivated() {
+		return isActivated(INFO_LEVEL);
+	}
+
+	/**
 	 * Debug trace
 	 * 
 	 * @param trace Trace
 	 */
 	public void debug(String trace) {
 		printTrace(trace, DEBUG_LEVEL);
+	}
+
+	/**
+	 * Debug trace with arguments. The trace is only formatted if it is printed.
+	 * 
+	 * @param format Trace where each "{}" is replaced by the next argument
+	 * @param args Arguments
+	 */
+	public void debug(String format, Object... args) {
+		printTrace(format, args, DEBUG_LEVEL);
 	}
 
 	/**
@@ -123,6 +162,16 @@ public class Logger {
 	public void info(String trace) {
 		printTrace(trace, INFO_LEVEL);		
 	}
+
+	/**
+	 * Info trace with arguments. The trace is only formatted if it is printed.
+	 * 
+	 * @param format Trace where each "{}" is replaced by the next argument
+	 * @param args Arguments
+	 */
+	public void info(String format, Object... args) {
+		printTrace(format, args, INFO_LEVEL);
+	}
 	
 	/**
 	 * Warning trace
@@ -131,6 +180,16 @@ public class Logger {
 	 */
 	public void warn(String trace) {
 		printTrace(trace, WARN_LEVEL);		
+	}
+
+	/**
+	 * Warning trace with arguments. The trace is only formatted if it is printed.
+	 * 
+	 * @param format Trace where each "{}" is replaced by the next argument
+	 * @param args Arguments
+	 */
+	public void warn(String format, Object... args) {
+		printTrace(format, args, WARN_LEVEL);
 	}
 	
 	/**
@@ -149,8 +208,7 @@ public class Logger {
 	 * @param e Exception
 	 */
 	public void error(String trace, Throwable e) {
-		printTrace(trace, ERROR_LEVEL);
-		e.printStackTrace();
+		printException(trace, e, ERROR_LEVEL);
 	}
 	
 	/**
@@ -169,8 +227,7 @@ public class Logger {
 	 * @param e Exception
 	 */
 	public void fatal(String trace, Throwable e) {
-		printTrace(trace, FATAL_LEVEL);	
-		e.printStackTrace();
+		printException(trace, e, FATAL_LEVEL);
 	}
 
 	/**
@@ -180,11 +237,70 @@ public class Logger {
 	 * @param level Trace level
 	 */
 	private void printTrace(String trace, int level) {
+		Appender[] appenders = Logger.appenders;
 		if ((appenders != null) && (level >= traceLevel)) {
 			for(int i=0; i < appenders.length; i++) {
 				appenders[i].printTrace(classname, level, trace);
 			}
 		}
+	}
+
+	/**
+	 * Print a trace with arguments
+	 * 
+	 * @param format Trace format
+	 * @param args Arguments
+	 * @param level Trace level
+	 */
+	private void printTrace(String format, Object[] args, int level) {
+		Appender[] appenders = Logger.appenders;
+		if ((appenders != null) && isActivated(level)) {
+			for(int i=0; i < appenders.length; i++) {
+				appenders[i].printTrace(classname, level, format, args);
+			}
+		}
+	}
+
+	/**
+	 * Print a trace with an exception
+	 * 
+	 * @param trace Trace
+	 * @param e Exception
+	 * @param level Trace level
+	 */
+	private void printException(String trace, Throwable e, int level) {
+		Appender[] appenders = Logger.appenders;
+		if ((appenders != null) && (level >= traceLevel)) {
+			for(int i=0; i < appenders.length; i++) {
+				appenders[i].printException(classname, level, trace, e);
+			}
+		}
+	}
+
+	/**
+	 * Format a trace, each "{}" of the format is replaced by the next argument
+	 * 
+	 * @param format Trace format
+	 * @param args Arguments
+	 * @return Trace
+	 */
+	public static String format(String format, Object[] args) {
+		if ((format == null) || (args == null) || (args.length == 0)) {
+			return format;
+		}
+		StringBuilder trace = new StringBuilder(format.length() + 16 * args.length);
+		int start = 0;
+		for (int i = 0; i < args.length; i++) {
+			int index = format.indexOf("{}", start);
+			if (index == -1) {
+				break;
+			}
+			trace.append(format, start, index);
+			trace.append(args[i]);
+			start = index + 2;
+		}
+		trace.append(format, start, format.length());
+		return trace.toString();
 	}
 	
 	/**
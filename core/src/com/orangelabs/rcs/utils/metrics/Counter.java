@@ -0,0 +1,101 @@
+/*******************************************************************************
+ * Software Name : RCS IMS Stack
+ *
+ * Copyright (C) 2010 France Telecom S.A.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.orangelabs.rcs.utils.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Striped counter
+ * <br>The count is split in cells selected by the ID of the calling thread,
+ * each cell on its own cache line, so that threads incrementing the counter
+ * at the same time don't contend on a same value. The cells are summed when
+ * the counter is read.
+ */
+public class Counter extends Metric {
+	/**
+	 * Number of longs between two cells, i.e. a cache line of 64 bytes
+	 */
+	private static final int PADDING = 8;
+
+	/**
+	 * Number of cells, a power of two
+	 */
+	private static final int STRIPES;
+	static {
+		int stripes = 1;
+		while (stripes < 2 * Runtime.getRuntime().availableProcessors()) {
+			stripes <<= 1;
+		}
+		STRIPES = stripes;
+	}
+
+	/**
+	 * Cells
+	 */
+	private final AtomicLongArray cells = new AtomicLongArray(STRIPES * PADDING);
+
+	/**
+	 * Constructor
+	 *
+	 * @param name Name
+	 * @param unit Unit of the values
+	 */
+	public Counter(String name, String unit) {
+		super(name, unit);
+	}
+
+	/**
+	 * Increment the counter
+	 */
+	public void inc() {
+		add(1L);
+	}
+
+	/**
+	 * Add a value to the counter
+	 *
+	 * @param value Value
+	 */
+	public void add(long value) {
+		int cell = (int)Thread.currentThread().getId() & (STRIPES - 1);
+		cells.getAndAdd(cell * PADDING, value);
+	}
+
+	/**
+	 * Returns the value of the counter
+	 *
+	 * @return Value
+	 */
+	public long get() {
+		long sum = 0L;
+		for (int i = 0; i < STRIPES; i++) {
+			sum += cells.get(i * PADDING);
+		}
+		return sum;
+	}
+
+	/**
+	 * Reset the counter
+	 */
+	public void reset() {
+		for (int i = 0; i < STRIPES; i++) {
+			cells.set(i * PADDING, 0L);
+		}
+	}
+}
@@ -0,0 +1,76 @@
+/*******************************************************************************
+ * Software Name : RCS IMS Stack
+ *
+ * Copyright (C) 2010 France Telecom S.A.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.orangelabs.rcs.utils.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Gauge, i.e. a current value such as a number of sessions or the last
+ * measured jitter
+ */
+public class Gauge extends Metric {
+	/**
+	 * Value
+	 */
+	private final AtomicLong value = new AtomicLong(0L);
+
+	/**
+	 * Constructor
+	 *
+	 * @param name Name
+	 * @param unit Unit of the values
+	 */
+	public Gauge(String name, String unit) {
+		super(name, unit);
+	}
+
+	/**
+	 * Set the value
+	 *
+	 * @param value Value
+	 */
+	public void set(long value) {
+		this.value.set(value);
+	}
+
+	/**
+	 * Add a value, which may be negative
+	 *
+	 * @param delta Value to add
+	 */
+	public void add(long delta) {
+		value.addAndGet(delta);
+	}
+
+	/**
+	 * Returns the value
+	 *
+	 * @return Value
+	 */
+	public long get() {
+		return value.get();
+	}
+
+	/**
+	 * Reset the gauge
+	 */
+	public void reset() {
+		value.set(0L);
+	}
+}
@@ -0,0 +1,303 @@
+/*******************************************************************************
+ * Software Name : RCS IMS Stack
+ *
+ * Copyright (C) 2010 France Telecom S.A.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.orangelabs.rcs.utils.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histogram of positive values with a bounded relative error
+ * <br>As in a HDR histogram, the values below 64 have their own bucket and
+ * each power of two above is split in 32 buckets, so that a value is counted
+ * with a precision of about 3% in a fixed array of counters: recording a
+ * value is an index computation and an atomic increment, without lock nor
+ * allocation. Values above 2^32 - 1 are counted in the last bucket.
+ */
+public class Histogram extends Metric {
+	/**
+	 * Number of bits of the sub-buckets of a power of two
+	 */
+	private static final int SUB_BUCKET_BITS = 5;
+
+	/**
+	 * Number of sub-buckets of a power of two
+	 */
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+	/**
+	 * Values recorded one by one
+	 */
+	private static final int LINEAR_VALUES = 2 * SUB_BUCKETS;
+
+	/**
+	 * Highest recorded value
+	 */
+	public static final long MAX_VALUE = 0xFFFFFFFFL;
+
+	/**
+	 * Number of buckets
+	 */
+	private static final int BUCKETS = getIndex(MAX_VALUE) + 1;
+
+	/**
+	 * Counts of the buckets
+	 */
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+	/**
+	 * Sum of the values
+	 */
+	private final AtomicLong sum = new AtomicLong(0L);
+
+	/**
+	 * Lowest value
+	 */
+	private final AtomicLong min = new AtomicLong(Long.MAX_VALUE);
+
+	/**
+	 * Highest value
+	 */
+	private final AtomicLong max = new AtomicLong(0L);
+
+	/**
+	 * Constructor
+	 *
+	 * @param name Name
+	 * @param unit Unit of the values
+	 */
+	public Histogram(String name, String unit) {
+		super(name, unit);
+	}
+
+	/**
+	 * Record a value
+	 *
+	 * @param value Value, a negative value is recorded as 0
+	 */
+	public void record(long value) {
+		if (value < 0L) {
+			value = 0L;
+		} else
+		if (value > MAX_VALUE) {
+			value = MAX_VALUE;
+		}
+		counts.incrementAndGet(getIndex(value));
+		sum.addAndGet(value);
+
+		long current;
+		while (value < (current = min.get())) {
+			if (min.compareAndSet(current, value)) {
+				break;
+			}
+		}
+		while (value > (current = max.get())) {
+			if (max.compareAndSet(current, value)) {
+				break;
+			}
+		}
+	}
+
+	/**
+	 * Record the time elapsed since a start time, in milliseconds
+	 *
+	 * @param startTime Start time given by System.nanoTime()
+	 */
+	public void recordMillisSince(long startTime) {
+		record((System.nanoTime() - startTime) / 1000000L);
+	}
+
+	/**
+	 * Record the time elapsed since a start time, in microseconds
+	 *
+	 * @param startTime Start time given by System.nanoTime()
+	 */
+	public void recordMicrosSince(long startTime) {
+		record((System.nanoTime() - startTime) / 1000L);
+	}
+
+	/**
+	 * Returns a snapshot of the recorded values
+	 *
+	 * @return Snapshot
+	 */
+	public Snapshot getSnapshot() {
+		long[] values = new long[BUCKETS];
+		long count = 0L;
+		for (int i = 0; i < BUCKETS; i++) {
+			values[i] = counts.get(i);
+			count += values[i];
+		}
+		return new Snapshot(values, count, sum.get(), (count > 0) ? min.get() : 0L, max.get());
+	}
+
+	/**
+	 * Reset the histogram
+	 */
+	public void reset() {
+		for (int i = 0; i < BUCKETS; i++) {
+			counts.set(i, 0L);
+		}
+		sum.set(0L);
+		min.set(Long.MAX_VALUE);
+		max.set(0L);
+	}
+
+	/**
+	 * Returns the bucket of a value
+	 *
+	 * @param value Value
+	 * @return Index of the bucket
+	 */
+	static int getIndex(long value) {
+		if (value < LINEAR_VALUES) {
+			return (int)value;
+		}
+		int msb = 63 - Long.numberOfLeadingZeros(value);
+		int subBucket = (int)(value >>> (msb - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+		return ((msb - SUB_BUCKET_BITS + 1) << SUB_BUCKET_BITS) + subBucket;
+	}
+
+	/**
+	 * Returns the highest value counted in a bucket
+	 *
+	 * @param index Index of the bucket
+	 * @return Value
+	 */
+	static long getHighestValue(int index) {
+		if (index < LINEAR_VALUES) {
+			return index;
+		}
+		int msb = (index >> SUB_BUCKET_BITS) + SUB_BUCKET_BITS - 1;
+		long subBucket = SUB_BUCKETS + (index & (SUB_BUCKETS - 1));
+		return ((subBucket + 1) << (msb - SUB_BUCKET_BITS)) - 1;
+	}
+
+	/**
+	 * Snapshot of a histogram
+	 */
+	public static class Snapshot {
+		/**
+		 * Counts of the buckets
+		 */
+		private final long[] values;
+
+		/**
+		 * Number of values
+		 */
+		private final long count;
+
+		/**
+		 * Sum of the values
+		 */
+		private final long sum;
+
+		/**
+		 * Lowest value
+		 */
+		private final long min;
+
+		/**
+		 * Highest value
+		 */
+		private final long max;
+
+		/**
+		 * Constructor
+		 *
+		 * @param values Counts of the buckets
+		 * @param count Number of values
+		 * @param sum Sum of the values
+		 * @param min Lowest value
+		 * @param max Highest value
+		 */
+		private Snapshot(long[] values, long count, long sum, long min, long max) {
+			this.values = values;
+			this.count = count;
+			this.sum = sum;
+			this.min = min;
+			this.max = max;
+		}
+
+		/**
+		 * Returns the number of values
+		 *
+		 * @return Count
+		 */
+		public long getCount() {
+			return count;
+		}
+
+		/**
+		 * Returns the sum of the values
+		 *
+		 * @return Sum
+		 */
+		public long getSum() {
+			return sum;
+		}
+
+		/**
+		 * Returns the lowest value
+		 *
+		 * @return Value or 0 if no value has been recorded
+		 */
+		public long getMin() {
+			return min;
+		}
+
+		/**
+		 * Returns the highest value
+		 *
+		 * @return Value or 0 if no value has been recorded
+		 */
+		public long getMax() {
+			return max;
+		}
+
+		/**
+		 * Returns the mean of the values
+		 *
+		 * @return Mean or 0 if no value has been recorded
+		 */
+		public long getMean() {
+			return (count > 0) ? (sum / count) : 0L;
+		}
+
+		/**
+		 * Returns the value below which a percentage of the values are
+		 *
+		 * @param percentile Percentile between 0 and 100
+		 * @return Value, with the precision of the histogram, or 0 if no value has been recorded
+		 */
+		public long getValueAtPercentile(double percentile) {
+			if (count == 0) {
+				return 0L;
+			}
+			long rank = Math.max(1L, (long)Math.ceil(count * Math.min(percentile, 100.0) / 100.0));
+			long total = 0L;
+			for (int i = 0; i < values.length; i++) {
+				total += values[i];
+				if (total >= rank) {
+					return Math.max(min, Math.min(getHighestValue(i), max));
+				}
+			}
+			return max;
+		}
+	}
+}
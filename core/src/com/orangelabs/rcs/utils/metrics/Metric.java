@@ -0,0 +1,68 @@
+/*******************************************************************************
+ * Software Name : RCS IMS Stack
+ *
+ * Copyright (C) 2010 France Telecom S.A.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.orangelabs.rcs.utils.metrics;
+
+/**
+ * Metric of the registry
+ */
+public abstract class Metric {
+	/**
+	 * Name
+	 */
+	private final String name;
+
+	/**
+	 * Unit of the values
+	 */
+	private final String unit;
+
+	/**
+	 * Constructor
+	 *
+	 * @param name Name
+	 * @param unit Unit of the values
+	 */
+	protected Metric(String name, String unit) {
+		this.name = name;
+		this.unit = unit;
+	}
+
+	/**
+	 * Returns the name
+	 *
+	 * @return Name
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Returns the unit of the values
+	 *
+	 * @return Unit
+	 */
+	public String getUnit() {
+		return unit;
+	}
+
+	/**
+	 * Reset the metric
+	 */
+	public abstract void reset();
+}
@@ -0,0 +1,209 @@
+/*******************************************************************************
+ * Software Name : RCS IMS Stack
+ *
+ * Copyright (C) 2010 France Telecom S.A.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.orangelabs.rcs.utils.metrics;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.orangelabs.rcs.utils.logger.Logger;
+
+/**
+ * Registry of the metrics of the stack
+ * <br>A metric is created once, usually in a static field of the measured
+ * class, and is then updated without any lookup. The registry is read by the
+ * metrics API and by a periodic dump in the traces.
+ */
+public class Metrics {
+	/**
+	 * Metrics by name
+	 */
+	private static final ConcurrentHashMap<String, Metric> metrics = new ConcurrentHashMap<String, Metric>();
+
+	/**
+	 * Timer of the periodic dump
+	 */
+	private static Timer dumpTimer = null;
+
+	/**
+	 * The logger
+	 */
+	private static final Logger logger = Logger.getLogger(Metrics.class.getSimpleName());
+
+	/**
+	 * Returns a counter, which is created if needed
+	 *
+	 * @param name Name
+	 * @param unit Unit of the values
+	 * @return Counter
+	 */
+	public static Counter counter(String name, String unit) {
+		Metric metric = metrics.get(name);
+		if (metric == null) {
+			metric = new Counter(name, unit);
+			Metric previous = metrics.putIfAbsent(name, metric);
+			if (previous != null) {
+				metric = previous;
+			}
+		}
+		return (Counter)metric;
+	}
+
+	/**
+	 * Returns a gauge, which is created if needed
+	 *
+	 * @param name Name
+	 * @param unit Unit of the values
+	 * @return Gauge
+	 */
+	public static Gauge gauge(String name, String unit) {
+		Metric metric = metrics.get(name);
+		if (metric == null) {
+			metric = new Gauge(name, unit);
+			Metric previous = metrics.putIfAbsent(name, metric);
+			if (previous != null) {
+				metric = previous;
+			}
+		}
+		return (Gauge)metric;
+	}
+
+	/**
+	 * Returns a histogram, which is created if needed
+	 *
+	 * @param name Name
+	 * @param unit Unit of the values
+	 * @return Histogram
+	 */
+	public static Histogram histogram(String name, String unit) {
+		Metric metric = metrics.get(name);
+		if (metric == null) {
+			metric = new Histogram(name, unit);
+			Metric previous = metrics.putIfAbsent(name, metric);
+			if (previous != null) {
+				metric = previous;
+			}
+		}
+		return (Histogram)metric;
+	}
+
+	/**
+	 * Remove a metric, e.g. a metric of a session which is closed
+	 *
+	 * @param metric Metric
+	 */
+	public static void remove(Metric metric) {
+		metrics.remove(metric.getName(), metric);
+	}
+
+	/**
+	 * Returns the metrics sorted by name
+	 *
+	 * @return List of metrics
+	 */
+	public static List<Metric> getMetrics() {
+		List<Metric> result = new ArrayList<Metric>(metrics.values());
+		Collections.sort(result, new Comparator<Metric>() {
+			public int compare(Metric m1, Metric m2) {
+				return m1.getName().compareTo(m2.getName());
+			}
+		});
+		return result;
+	}
+
+	/**
+	 * Reset all the metrics
+	 */
+	public static void reset() {
+		for (Metric metric : metrics.values()) {
+			metric.reset();
+		}
+	}
+
+	/**
+	 * Returns a line of text describing the current value of a metric
+	 *
+	 * @param metric Metric
+	 * @return Text
+	 */
+	public static String format(Metric metric) {
+		StringBuilder text = new StringBuilder(metric.getName());
+		if (metric instanceof Counter) {
+			text.append(" count=").append(((Counter)metric).get());
+		} else
+		if (metric instanceof Gauge) {
+			text.append(" value=").append(((Gauge)metric).get());
+		} else
+		if (metric instanceof Histogram) {
+			Histogram.Snapshot snapshot = ((Histogram)metric).getSnapshot();
+			text.append(" count=").append(snapshot.getCount())
+				.append(" min=").append(snapshot.getMin())
+				.append(" mean=").append(snapshot.getMean())
+				.append(" p50=").append(snapshot.getValueAtPercentile(50.0))
+				.append(" p90=").append(snapshot.getValueAtPercentile(90.0))
+				.append(" p99=").append(snapshot.getValueAtPercentile(99.0))
+				.append(" max=").append(snapshot.getMax());
+		}
+		return text.append(' ').append(metric.getUnit()).toString();
+	}
+
+	/**
+	 * Dump the metrics in the traces
+	 */
+	public static void dump() {
+		if (!logger.isInfoActivated()) {
+			return;
+		}
+		List<Metric> list = getMetrics();
+		for (int i = 0; i < list.size(); i++) {
+			logger.info(format(list.get(i)));
+		}
+	}
+
+	/**
+	 * Start the periodic dump of the metrics in the traces
+	 *
+	 * @param period Period in milliseconds
+	 */
+	public static synchronized void startDump(long period) {
+		if (dumpTimer != null) {
+			return;
+		}
+		dumpTimer = new Timer("Metrics", true);
+		dumpTimer.schedule(new TimerTask() {
+			public void run() {
+				dump();
+			}
+		}, period, period);
+	}
+
+	/**
+	 * Stop the periodic dump of the metrics
+	 */
+	public static synchronized void stopDump() {
+		if (dumpTimer != null) {
+			dumpTimer.cancel();
+			dumpTimer = null;
+		}
+	}
+}
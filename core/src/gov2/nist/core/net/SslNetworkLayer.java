@@ -25,7 +25,6 @@
 */
 package gov2.nist.core.net;
 
-import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.net.DatagramSocket;
@@ -35,19 +34,14 @@ import java.net.ServerSocket;
 import java.net.Socket;
 import java.net.SocketException;
 import java.security.GeneralSecurityException;
-import java.security.KeyStore;
-import java.security.SecureRandom;
 
-import javax.net.ssl.KeyManager;
-import javax.net.ssl.KeyManagerFactory;
 import javax.net.ssl.SSLContext;
 import javax.net.ssl.SSLServerSocket;
 import javax.net.ssl.SSLServerSocketFactory;
 import javax.net.ssl.SSLSocket;
 import javax.net.ssl.SSLSocketFactory;
-import javax.net.ssl.TrustManagerFactory;
 
-import com.orangelabs.rcs.core.ims.security.cert.KeyStoreManager;
+import com.orangelabs.rcs.core.ims.security.cert.TlsContextProvider;
 
 /**
  * extended implementation of a network layer that allows to define a private java
@@ -64,41 +58,18 @@ public class SslNetworkLayer implements NetworkLayer {
 
     private SSLServerSocketFactory sslServerSocketFactory;
 
+	/**
+	 * The SSL context is the one shared by the RCS stack, built from the
+	 * keystore of the KeyStoreManager which is also the one given in the stack
+	 * properties, so that the TLS sessions are resumed between connections.
+	 */
 	public SslNetworkLayer(String trustStoreFile, String keyStoreFile,
 			char[] keyStorePassword, String keyStoreType)
 			throws GeneralSecurityException, FileNotFoundException, IOException {
-		SSLContext sslContext;
-		sslContext = SSLContext.getInstance("TLS");
-		String algorithm = KeyManagerFactory.getDefaultAlgorithm();
-		TrustManagerFactory tmFactory = TrustManagerFactory
-				.getInstance(algorithm);
-		SecureRandom secureRandom = new SecureRandom();
-		secureRandom.nextInt();
-		KeyManagerFactory kmFactory = null;
-		KeyStore keyStore = null;
-		KeyStore trustStore = null;
-		KeyManager[] km = null;
-		if (KeyStoreManager.isOwnCertificateUsed()) {
-			// use specific keystore with own certificate
-			trustStore = KeyStore.getInstance(keyStoreType);
-			trustStore.load(new FileInputStream(trustStoreFile),
-					keyStorePassword);
-			tmFactory.init(trustStore);
-
-			keyStore = KeyStore.getInstance(keyStoreType);
-			keyStore.load(new FileInputStream(keyStoreFile), keyStorePassword);
-
-			kmFactory = KeyManagerFactory.getInstance(algorithm);
-			kmFactory.init(keyStore, keyStorePassword);
-
-			km = kmFactory.getKeyManagers();
-		} else {
-			// use default keystore with built-in certificates
-			tmFactory.init((KeyStore) null);
-		}
-		sslContext.init(km, tmFactory.getTrustManagers(), secureRandom);
+		TlsContextProvider provider = TlsContextProvider.getInstance();
+		SSLContext sslContext = provider.getContext(TlsContextProvider.TRUSTED);
 		sslServerSocketFactory = sslContext.getServerSocketFactory();
-		sslSocketFactory = sslContext.getSocketFactory();
+		sslSocketFactory = provider.getSocketFactory(TlsContextProvider.TRUSTED);
 	}
 
     public ServerSocket createServerSocket(int port, int backlog,
@@ -0,0 +1,263 @@
+// Copyright (c) 1999-2004 Brian Wellington (bwelling@xbill.org)
+
+package org.xbill.DNS;
+
+import java.io.*;
+import java.net.*;
+import java.util.*;
+
+/**
+ * An implementation of Resolver that sends one query to one server without
+ * blocking a thread per query.  The UDP queries of all the AsyncResolvers
+ * are multiplexed over a single datagram channel served by one thread, and
+ * the listeners are called from that thread, so they should not block.
+ * Truncated responses and queries too large for UDP are sent again over
+ * TCP by a SimpleResolver.  An AsyncResolver can be used wherever a
+ * Resolver is expected, for example by Lookup or ExtendedResolver.
+ * @see Resolver
+ * @see SimpleResolver
+ */
+
+public class AsyncResolver implements Resolver {
+
+private static final short DEFAULT_UDPSIZE = 512;
+
+private static int uniqueID = 0;
+
+private InetSocketAddress address;
+private boolean useTCP, ignoreTruncation;
+private OPTRecord queryOPT;
+private TSIG tsig;
+private long timeoutValue = 10 * 1000;
+private SimpleResolver tcpResolver;
+
+/**
+ * Creates an AsyncResolver that will query the specified host
+ * @exception UnknownHostException Failure occurred while finding the host
+ */
+public
+AsyncResolver(String hostname) throws UnknownHostException {
+	tcpResolver = new SimpleResolver(hostname);
+	tcpResolver.setTCP(true);
+	address = tcpResolver.getAddress();
+}
+
+/**
+ * Creates an AsyncResolver.  The host to query is either found by using
+ * ResolverConfig, or the default host is used.
+ * @see ResolverConfig
+ * @exception UnknownHostException Failure occurred while finding the host
+ */
+public
+AsyncResolver() throws UnknownHostException {
+	this(null);
+}
+
+/**
+ * Creates an ExtendedResolver using an AsyncResolver for each server of
+ * the current ResolverConfig.
+ * @exception UnknownHostException Failure occurred while finding a host
+ */
+public static ExtendedResolver
+newExtendedResolver() throws UnknownHostException {
+	String [] servers = ResolverConfig.getCurrentConfig().servers();
+	Resolver [] res;
+	if (servers != null) {
+		res = new Resolver[servers.length];
+		for (int i = 0; i < servers.length; i++)
+			res[i] = new AsyncResolver(servers[i]);
+	} else
+		res = new Resolver[] {new AsyncResolver()};
+	return new ExtendedResolver(res);
+}
+
+/** Gets the destination address associated with this AsyncResolver. */
+InetSocketAddress
+getAddress() {
+	return address;
+}
+
+public void
+setPort(int port) {
+	address = new InetSocketAddress(address.getAddress(), port);
+	tcpResolver.setPort(port);
+}
+
+/**
+ * Sets the address of the server to communicate with.
+ * @param addr The address of the DNS server
+ */
+public void
+setAddress(InetSocketAddress addr) {
+	address = addr;
+	tcpResolver.setAddress(addr);
+}
+
+public void
+setTCP(boolean flag) {
+	this.useTCP = flag;
+}
+
+public void
+setIgnoreTruncation(boolean flag) {
+	this.ignoreTruncation = flag;
+}
+
+public void
+setEDNS(int level, int payloadSize, int flags, List options) {
+	if (level != 0 && level != -1)
+		throw new IllegalArgumentException("invalid EDNS level - " +
+						   "must be 0 or -1");
+	if (payloadSize == 0)
+		payloadSize = SimpleResolver.DEFAULT_EDNS_PAYLOADSIZE;
+	queryOPT = new OPTRecord(payloadSize, 0, level, flags, options);
+	tcpResolver.setEDNS(level, payloadSize, flags, options);
+}
+
+public void
+setEDNS(int level) {
+	setEDNS(level, 0, 0, null);
+}
+
+public void
+setTSIGKey(TSIG key) {
+	tsig = key;
+	tcpResolver.setTSIGKey(key);
+}
+
+public void
+setTimeout(int secs, int msecs) {
+	timeoutValue = (long)secs * 1000 + msecs;
+	tcpResolver.setTimeout(secs, msecs);
+}
+
+public void
+setTimeout(int secs) {
+	setTimeout(secs, 0);
+}
+
+/**
+ * Sends a message to a single server and waits for a response.  The
+ * calling thread waits, but no other thread is created.
+ * @param query The query to send.
+ * @return The response.
+ * @throws IOException An error occurred while sending or receiving.
+ */
+public Message
+send(Message query) throws IOException {
+	final Object [] result = new Object[1];
+	ResolverListener listener = new ResolverListener() {
+		public void
+		receiveMessage(Object id, Message m) {
+			synchronized (result) {
+				result[0] = m;
+				result.notifyAll();
+			}
+		}
+
+		public void
+		handleException(Object id, Exception e) {
+			synchronized (result) {
+				result[0] = e;
+				result.notifyAll();
+			}
+		}
+	};
+	sendAsync(query, listener);
+	synchronized (result) {
+		while (result[0] == null) {
+			try {
+				result.wait();
+			}
+			catch (InterruptedException e) {
+				throw new InterruptedIOException("DNS query interrupted");
+			}
+		}
+	}
+	if (result[0] instanceof Message)
+		return (Message) result[0];
+	if (result[0] instanceof IOException)
+		throw (IOException) result[0];
+	if (result[0] instanceof RuntimeException)
+		throw (RuntimeException) result[0];
+	throw new IOException(((Exception) result[0]).getMessage());
+}
+
+/**
+ * Asynchronously sends a message to a single server, registering a listener
+ * to receive a callback on success or exception.  Multiple asynchronous
+ * lookups can be performed in parallel.  Since the callback may be invoked
+ * before the function returns, external synchronization is necessary.
+ * @param query The query to send
+ * @param listener The object containing the callbacks.
+ * @return An identifier, which is also a parameter in the callback
+ */
+public Object
+sendAsync(final Message query, final ResolverListener listener) {
+	final Object id;
+	synchronized (AsyncResolver.class) {
+		id = new Integer(uniqueID++);
+	}
+
+	Message q = (Message) query.clone();
+	if (queryOPT != null && q.getOPT() == null)
+		q.addRecord(queryOPT, Section.ADDITIONAL);
+	Record question = q.getQuestion();
+	int udpSize = (q.getOPT() == null) ? DEFAULT_UDPSIZE :
+		      q.getOPT().getPayloadSize();
+	if (useTCP || (question != null && question.getType() == Type.AXFR) ||
+	    q.toWire().length > udpSize)
+	{
+		tcpResolver.sendAsync(query, new Forwarder(id, listener));
+		return id;
+	}
+
+	ResolverListener udpListener = new ResolverListener() {
+		public void
+		receiveMessage(Object tid, Message m) {
+			if (!ignoreTruncation && m.getHeader().getFlag(Flags.TC))
+				tcpResolver.sendAsync(query,
+						      new Forwarder(id, listener));
+			else
+				listener.receiveMessage(id, m);
+		}
+
+		public void
+		handleException(Object tid, Exception e) {
+			listener.handleException(id, e);
+		}
+	};
+	try {
+		NioUDPClient.getInstance().send(id, q, address, tsig,
+						udpListener,
+						System.currentTimeMillis() +
+						timeoutValue);
+	}
+	catch (IOException e) {
+		listener.handleException(id, e);
+	}
+	return id;
+}
+
+/** Calls a listener with the identifier of the original query */
+private static class Forwarder implements ResolverListener {
+	private Object id;
+	private ResolverListener listener;
+
+	Forwarder(Object id, ResolverListener listener) {
+		this.id = id;
+		this.listener = listener;
+	}
+
+	public void
+	receiveMessage(Object tid, Message m) {
+		listener.receiveMessage(id, m);
+	}
+
+	public void
+	handleException(Object tid, Exception e) {
+		listener.handleException(id, e);
+	}
+}
+
+}
@@ -0,0 +1,381 @@
+// Copyright (c) 1999-2004 Brian Wellington (bwelling@xbill.org)
+
+package org.xbill.DNS;
+
+import java.io.*;
+import java.net.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.security.SecureRandom;
+import java.util.*;
+
+/**
+ * A single selector engine multiplexing all the outstanding UDP queries of
+ * the AsyncResolvers over a small pool of datagram channels, each one bound
+ * to a random port and used in turn by the queries.  Each query gets a
+ * random message ID unique among the outstanding queries, which is used
+ * with the channel to match the responses.  Queries are retransmitted with
+ * a doubling interval until
+ * their deadline, and the retransmissions and timeouts are driven by the
+ * select timeout of the single thread, ordered in one priority queue.
+ * @see AsyncResolver
+ */
+
+final class NioUDPClient implements Runnable {
+
+/** Interval before the first retransmission, in milliseconds */
+static final long RETRY_INTERVAL = 1000;
+
+private static final int MAX_PACKET = 65535;
+
+/** Number of channels used in turn by the queries */
+private static final int CHANNELS = 4;
+
+private static final int EPHEMERAL_START = 1024;
+private static final int EPHEMERAL_STOP  = 65535;
+private static final int EPHEMERAL_RANGE = EPHEMERAL_STOP - EPHEMERAL_START;
+
+private static NioUDPClient instance;
+
+private static SecureRandom random = new SecureRandom();
+
+/** Outstanding UDP query */
+static final class Transaction implements Comparable {
+	final Object id;
+	final Message query;
+	final byte [] out;
+	final InetSocketAddress address;
+	final DatagramChannel channel;
+	final TSIG tsig;
+	final ResolverListener listener;
+	final long endTime;
+	long interval = RETRY_INTERVAL;
+	long nextTime;
+
+	Transaction(Object id, Message query, byte [] out,
+		    InetSocketAddress address, DatagramChannel channel,
+		    TSIG tsig, ResolverListener listener, long endTime)
+	{
+		this.id = id;
+		this.query = query;
+		this.out = out;
+		this.address = address;
+		this.channel = channel;
+		this.tsig = tsig;
+		this.listener = listener;
+		this.endTime = endTime;
+	}
+
+	public int
+	compareTo(Object o) {
+		long other = ((Transaction) o).nextTime;
+		return (nextTime < other) ? -1 : ((nextTime == other) ? 0 : 1);
+	}
+}
+
+private Selector selector;
+private DatagramChannel [] channels;
+private int next;
+private Thread thread;
+private final Map pending = new HashMap();
+private final PriorityQueue timers = new PriorityQueue();
+private final ByteBuffer buffer = ByteBuffer.allocate(MAX_PACKET);
+private long sent, received, retransmitted, timedOut;
+
+/** Returns the engine shared by all the AsyncResolvers */
+static synchronized NioUDPClient
+getInstance() {
+	if (instance == null)
+		instance = new NioUDPClient();
+	return instance;
+}
+
+/**
+ * Sends a query.  The message ID of the query is replaced by an ID which
+ * is unique among the outstanding queries, and the query is signed
+ * afterwards if needed.
+ * @param id The identifier passed to the listener
+ * @param query The query
+ * @param address The server address
+ * @param tsig The TSIG key, or null
+ * @param listener The listener
+ * @param endTime The deadline of the query
+ */
+void
+send(Object id, Message query, InetSocketAddress address, TSIG tsig,
+     ResolverListener listener, long endTime) throws IOException
+{
+	Transaction t;
+	Selector s = null;
+	synchronized (this) {
+		open();
+		int qid;
+		do {
+			qid = random.nextInt(0x10000);
+		} while (pending.containsKey(new Integer(qid)));
+		query.getHeader().setID(qid);
+		if (tsig != null)
+			tsig.apply(query, null);
+		byte [] out = query.toWire(Message.MAXLENGTH);
+		DatagramChannel c = channels[next];
+		next = (next + 1) % channels.length;
+		t = new Transaction(id, query, out, address, c, tsig,
+				    listener, endTime);
+		t.nextTime = Math.min(System.currentTimeMillis() +
+				      t.interval, endTime);
+		pending.put(new Integer(qid), t);
+		timers.add(t);
+		if (timers.peek() == t)
+			s = selector;
+	}
+	transmit(t);
+	if (s != null)
+		s.wakeup();
+}
+
+/** Returns the number of outstanding queries */
+synchronized int
+getPendingCount() {
+	return pending.size();
+}
+
+public synchronized String
+toString() {
+	return "NioUDPClient[pending=" + pending.size() + ", sent=" + sent +
+	       ", received=" + received + ", retransmitted=" +
+	       retransmitted + ", timedOut=" + timedOut + "]";
+}
+
+private void
+open() throws IOException {
+	if (channels != null)
+		return;
+	boolean done = false;
+	DatagramChannel [] opened = new DatagramChannel[CHANNELS];
+	selector = Selector.open();
+	try {
+		for (int i = 0; i < opened.length; i++) {
+			opened[i] = DatagramChannel.open();
+			opened[i].configureBlocking(false);
+			bindRandom(opened[i]);
+			opened[i].register(selector, SelectionKey.OP_READ);
+		}
+		done = true;
+	}
+	finally {
+		if (!done) {
+			selector.close();
+			for (int i = 0; i < opened.length; i++)
+				if (opened[i] != null)
+					opened[i].close();
+		}
+	}
+	channels = opened;
+	thread = new Thread(this, "dnsjava NioUDPClient");
+	thread.setDaemon(true);
+	thread.start();
+}
+
+/** Binds a channel to a random port, or to any port if none is free */
+private static void
+bindRandom(DatagramChannel c) throws IOException {
+	for (int i = 0; i < 16; i++) {
+		try {
+			int port = random.nextInt(EPHEMERAL_RANGE) +
+				   EPHEMERAL_START;
+			c.socket().bind(new InetSocketAddress(port));
+			return;
+		}
+		catch (SocketException e) {
+		}
+	}
+	c.socket().bind(new InetSocketAddress(0));
+}
+
+private void
+transmit(Transaction t) {
+	try {
+		boolean open;
+		synchronized (this) {
+			open = (channels != null);
+			sent++;
+		}
+		if (open) {
+			Client.verboseLog("UDP write", t.out);
+			t.channel.send(ByteBuffer.wrap(t.out), t.address);
+		}
+	}
+	catch (IOException e) {
+		// The query is retransmitted or times out
+		if (Options.check("verbose"))
+			System.err.println("UDP send error: " + e);
+	}
+}
+
+public void
+run() {
+	List done = new ArrayList();
+	List retry = new ArrayList();
+	while (true) {
+		long timeout;
+		synchronized (this) {
+			timeout = processTimers(done, retry);
+		}
+		for (int i = 0; i < retry.size(); i++)
+			transmit((Transaction) retry.get(i));
+		retry.clear();
+		for (int i = 0; i < done.size(); i++) {
+			Transaction t = (Transaction) done.get(i);
+			fail(t, new SocketTimeoutException());
+		}
+		done.clear();
+
+		try {
+			if (timeout > 0)
+				selector.select(timeout);
+			else
+				selector.select();
+			Iterator it = selector.selectedKeys().iterator();
+			while (it.hasNext()) {
+				SelectionKey key = (SelectionKey) it.next();
+				it.remove();
+				receive((DatagramChannel) key.channel());
+			}
+		}
+		catch (IOException e) {
+			reset(e);
+			return;
+		}
+	}
+}
+
+/**
+ * Collects the expired queries and the queries to be retransmitted.
+ * @return The delay before the next timer, or 0 if none
+ */
+private long
+processTimers(List done, List retry) {
+	long now = System.currentTimeMillis();
+	Transaction t;
+	while ((t = (Transaction) timers.peek()) != null && t.nextTime <= now) {
+		timers.poll();
+		if (t.nextTime >= t.endTime) {
+			pending.remove(new Integer(t.query.getHeader().getID()));
+			timedOut++;
+			done.add(t);
+		} else {
+			t.interval *= 2;
+			t.nextTime = Math.min(now + t.interval, t.endTime);
+			timers.add(t);
+			retransmitted++;
+			retry.add(t);
+		}
+	}
+	if (t == null)
+		return 0;
+	return Math.max(1, t.nextTime - now);
+}
+
+private void
+receive(DatagramChannel channel) throws IOException {
+	while (true) {
+		buffer.clear();
+		SocketAddress from = channel.receive(buffer);
+		if (from == null)
+			return;
+		byte [] in = new byte[buffer.position()];
+		System.arraycopy(buffer.array(), 0, in, 0, in.length);
+		Client.verboseLog("UDP read", in);
+		if (in.length < Header.LENGTH)
+			continue;
+
+		/*
+		 * Match the response by its ID, source and channel before
+		 * parsing it, so that a response which is not ours is ignored.
+		 */
+		int id = ((in[0] & 0xFF) << 8) + (in[1] & 0xFF);
+		Transaction t;
+		synchronized (this) {
+			t = (Transaction) pending.get(new Integer(id));
+			if (t == null || !t.address.equals(from) ||
+			    t.channel != channel)
+				continue;
+		}
+		Message response;
+		try {
+			response = new Message(in);
+		}
+		catch (IOException e) {
+			if (Options.check("verbose"))
+				System.err.println("Invalid response: " + e);
+			continue;
+		}
+		Record question = response.getQuestion();
+		Record expected = t.query.getQuestion();
+		if (question != null && expected != null &&
+		    (!question.getName().equals(expected.getName()) ||
+		     question.getType() != expected.getType() ||
+		     question.getDClass() != expected.getDClass()))
+			continue;
+		synchronized (this) {
+			if (pending.remove(new Integer(id)) == null)
+				continue;
+			timers.remove(t);
+			received++;
+		}
+		deliver(t, response, in);
+	}
+}
+
+private void
+deliver(Transaction t, Message response, byte [] in) {
+	if (t.tsig != null) {
+		int error = t.tsig.verify(response, in, t.query.getTSIG());
+		if (Options.check("verbose"))
+			System.err.println("TSIG verify: " +
+					   Rcode.TSIGstring(error));
+	}
+	try {
+		t.listener.receiveMessage(t.id, response);
+	}
+	catch (RuntimeException e) {
+		if (Options.check("verbose"))
+			e.printStackTrace();
+	}
+}
+
+private void
+fail(Transaction t, Exception e) {
+	try {
+		t.listener.handleException(t.id, e);
+	}
+	catch (RuntimeException re) {
+		if (Options.check("verbose"))
+			re.printStackTrace();
+	}
+}
+
+/** Fails all the outstanding queries after a channel error */
+private void
+reset(IOException e) {
+	List failed;
+	synchronized (this) {
+		failed = new ArrayList(pending.values());
+		pending.clear();
+		timers.clear();
+		try {
+			for (int i = 0; i < channels.length; i++)
+				channels[i].close();
+			selector.close();
+		}
+		catch (IOException ce) {
+		}
+		channels = null;
+		selector = null;
+		thread = null;
+	}
+	for (int i = 0; i < failed.size(); i++)
+		fail((Transaction) failed.get(i), e);
+}
+
+}
@@ -0,0 +1,119 @@
+package com.orangelabs.rcs.capability;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import android.database.Cursor;
+import android.database.MatrixCursor;
+import android.net.Uri;
+import android.provider.ContactsContract;
+import android.provider.ContactsContract.CommonDataKinds.Phone;
+import android.test.AndroidTestCase;
+import android.test.mock.MockContentProvider;
+import android.test.mock.MockContentResolver;
+
+import com.orangelabs.rcs.core.ims.service.capability.AddressBookSyncEngine;
+import com.orangelabs.rcs.provider.eab.ContactsManager;
+import com.orangelabs.rcs.provider.settings.RcsSettings;
+import com.orangelabs.rcs.utils.PhoneUtils;
+
+public class AddressBookSyncEngineTest extends AndroidTestCase {
+
+	private static final String MY_NUMBER = "+33600000000";
+
+	private List<Object[]> rows = new ArrayList<Object[]>();
+
+	private AddressBookSyncEngine engine;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		RcsSettings.createInstance(getContext());
+		ContactsManager.createInstance(getContext());
+		PhoneUtils.initialize(getContext());
+
+		MockContentResolver resolver = new MockContentResolver();
+		resolver.addProvider(ContactsContract.AUTHORITY, new MockContentProvider() {
+			public Cursor query(Uri uri, String[] projection, String selection, String[] selectionArgs, String sortOrder) {
+				MatrixCursor cursor = new MatrixCursor(projection);
+				for (int i = 0; i < rows.size(); i++) {
+					cursor.addRow(rows.get(i));
+				}
+				return cursor;
+			}
+		});
+		engine = new AddressBookSyncEngine(resolver);
+	}
+
+	private void addRow(long rowId, String number, long rawContactId, int version) {
+		rows.add(new Object[] { rowId, number, rawContactId, version });
+	}
+
+	private void removeRow(long rowId) {
+		for (int i = 0; i < rows.size(); i++) {
+			if (((Long)rows.get(i)[0]).longValue() == rowId) {
+				rows.remove(i);
+				return;
+			}
+		}
+	}
+
+	public void testRowHashDelta() {
+		addRow(1, "+33600000001", 10, 1);
+		addRow(2, "+33600000002", 20, 1);
+		addRow(3, MY_NUMBER, 30, 1);
+		List<String> numbers = engine.synchronize(MY_NUMBER);
+		assertEquals(2, engine.getChangedRows());
+		assertTrue(numbers.contains("+33600000001"));
+		assertTrue(numbers.contains("+33600000002"));
+		assertFalse(numbers.contains(MY_NUMBER));
+
+		// Nothing has changed
+		engine.synchronize(MY_NUMBER);
+		assertEquals(0, engine.getChangedRows());
+
+		// A new version of a row and a new row
+		rows.set(0, new Object[] { 1L, "+33600000011", 10L, 2 });
+		addRow(4, "+33600000004", 40, 1);
+		numbers = engine.synchronize(MY_NUMBER);
+		assertEquals(2, engine.getChangedRows());
+		assertTrue(numbers.contains("+33600000011"));
+		assertTrue(numbers.contains("+33600000004"));
+	}
+
+	public void testReset() {
+		addRow(1, "+33600000001", 10, 1);
+		addRow(2, "+33600000002", 20, 1);
+		engine.synchronize(MY_NUMBER);
+		engine.synchronize(MY_NUMBER);
+		assertEquals(0, engine.getChangedRows());
+
+		// All rows are processed again after a reset
+		engine.reset();
+		assertEquals(0, engine.getChangedRows());
+		engine.synchronize(MY_NUMBER);
+		assertEquals(2, engine.getChangedRows());
+	}
+
+	public void testPendingCarryOver() {
+		addRow(1, "+33600000001", 10, 1);
+		addRow(2, "+33600000002", 20, 1);
+		assertEquals(2, engine.synchronize(MY_NUMBER).size());
+
+		// Numbers without RCS entry are returned again although their rows are unchanged
+		List<String> numbers = engine.synchronize(MY_NUMBER);
+		assertEquals(0, engine.getChangedRows());
+		assertEquals(2, numbers.size());
+
+		// The pending number of a deleted row is dropped
+		removeRow(1);
+		numbers = engine.synchronize(MY_NUMBER);
+		assertEquals(1, numbers.size());
+		assertEquals("+33600000002", numbers.get(0));
+
+		// The old number of a modified row is dropped
+		rows.set(0, new Object[] { 2L, "+33600000022", 20L, 2 });
+		numbers = engine.synchronize(MY_NUMBER);
+		assertEquals(1, numbers.size());
+		assertEquals("+33600000022", numbers.get(0));
+	}
+}
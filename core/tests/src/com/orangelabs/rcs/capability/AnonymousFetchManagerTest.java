@@ -0,0 +1,97 @@
+package com.orangelabs.rcs.capability;
+
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+import com.orangelabs.rcs.core.ims.service.capability.AnonymousFetchManager;
+import com.orangelabs.rcs.service.api.client.capability.Capabilities;
+
+public class AnonymousFetchManagerTest extends TestCase {
+
+	private static final String BOUNDARY = "50UBfW7LSCVLtggUPe5z";
+
+	private static final String CRLF = "\r\n";
+
+	private static String rlmi(String[] contacts) {
+		StringBuffer list = new StringBuffer();
+		list.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>" + CRLF);
+		list.append("<list xmlns=\"urn:ietf:params:xml:ns:rlmi\" uri=\"sip:rcs@domain.com\" version=\"1\" fullState=\"true\">" + CRLF);
+		for (int i = 0; i < contacts.length; i++) {
+			list.append("<resource uri=\"sip:" + contacts[i] + "@domain.com\">");
+			list.append("<instance id=\"" + i + "\" state=\"active\" cid=\"cid" + i + "@domain.com\"/>");
+			list.append("</resource>" + CRLF);
+		}
+		list.append("</list>");
+		return list.toString();
+	}
+
+	private static String pidf(String contact, String feature) {
+		return "<?xml version=\"1.0\" encoding=\"UTF-8\"?>" + CRLF +
+			"<presence xmlns=\"urn:ietf:params:xml:ns:pidf\" xmlns:op=\"urn:oma:xml:prs:pidf:oma-pres\" entity=\"sip:" + contact + "@domain.com\">" + CRLF +
+			"<tuple id=\"t1\"><status><basic>open</basic></status>" +
+			"<op:service-description><op:service-id>" + feature + "</op:service-id><op:version>1.0</op:version></op:service-description>" +
+			"</tuple>" + CRLF +
+			"</presence>";
+	}
+
+	private static String part(String contentType, String content) {
+		return "--" + BOUNDARY + CRLF +
+			"Content-Transfer-Encoding: binary" + CRLF +
+			"Content-Type: " + contentType + CRLF +
+			"Content-Length: " + content.length() + CRLF +
+			CRLF +
+			content + CRLF;
+	}
+
+	public void testListNotification() throws Exception {
+		String content =
+			part("application/rlmi+xml;charset=UTF-8", rlmi(new String[] { "+33600000001", "+33600000002", "+33600000003" })) +
+			part("application/pidf+xml;charset=UTF-8", pidf("+33600000001", "org.openmobilealliance:IM-session")) +
+			part("application/pidf+xml;charset=UTF-8", pidf("+33600000002", "org.openmobilealliance:File-Transfer")) +
+			"--" + BOUNDARY + "--" + CRLF;
+
+		AnonymousFetchManager manager = new AnonymousFetchManager(null);
+		Map<String, Capabilities> result = manager.parseListNotification(content.getBytes("UTF-8"), BOUNDARY);
+		assertEquals(3, result.size());
+
+		Capabilities capabilities = result.get("+33600000001");
+		assertNotNull(capabilities);
+		assertTrue(capabilities.isPresenceDiscoverySupported());
+		assertTrue(capabilities.isImSessionSupported());
+		assertFalse(capabilities.isFileTransferSupported());
+
+		capabilities = result.get("+33600000002");
+		assertNotNull(capabilities);
+		assertTrue(capabilities.isFileTransferSupported());
+		assertFalse(capabilities.isImSessionSupported());
+
+		// Listed in the RLMI part without PIDF part
+		assertTrue(result.containsKey("+33600000003"));
+		assertNull(result.get("+33600000003"));
+	}
+
+	public void testListNotificationWithoutPidf() throws Exception {
+		String content =
+			part("application/rlmi+xml", rlmi(new String[] { "+33600000001", "+33600000002" })) +
+			"--" + BOUNDARY + "--" + CRLF;
+
+		AnonymousFetchManager manager = new AnonymousFetchManager(null);
+		Map<String, Capabilities> result = manager.parseListNotification(content.getBytes("UTF-8"), BOUNDARY);
+		assertEquals(2, result.size());
+		assertNull(result.get("+33600000001"));
+		assertNull(result.get("+33600000002"));
+	}
+
+	public void testInvalidPart() throws Exception {
+		String content =
+			part("application/rlmi+xml", rlmi(new String[] { "+33600000001" })) +
+			part("application/pidf+xml", "<presence") +
+			"--" + BOUNDARY + "--" + CRLF;
+
+		AnonymousFetchManager manager = new AnonymousFetchManager(null);
+		Map<String, Capabilities> result = manager.parseListNotification(content.getBytes("UTF-8"), BOUNDARY);
+		assertEquals(1, result.size());
+		assertNull(result.get("+33600000001"));
+	}
+}
@@ -0,0 +1,190 @@
+package com.orangelabs.rcs.capability;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+
+import com.orangelabs.rcs.core.ims.service.capability.CapabilityRequestScheduler;
+import com.orangelabs.rcs.utils.TokenBucket;
+
+public class CapabilityRequestSchedulerTest extends TestCase {
+
+	private static final long TIMEOUT = 5000;
+
+	/**
+	 * Factory of tasks recording the requested contacts. The tasks of the
+	 * contacts starting with "block" wait until they are released.
+	 */
+	private static class Factory implements CapabilityRequestScheduler.RequestFactory {
+		private List<String> requests = new ArrayList<String>();
+		private CountDownLatch started = new CountDownLatch(1);
+		private CountDownLatch release = new CountDownLatch(1);
+		private AtomicInteger running = new AtomicInteger();
+		private AtomicInteger maxRunning = new AtomicInteger();
+
+		public synchronized Runnable createRequestTask(final String contact) {
+			requests.add(contact);
+			return new Runnable() {
+				public void run() {
+					int count = running.incrementAndGet();
+					synchronized(maxRunning) {
+						if (count > maxRunning.get()) {
+							maxRunning.set(count);
+						}
+					}
+					started.countDown();
+					try {
+						if (contact.startsWith("block")) {
+							release.await(TIMEOUT, TimeUnit.MILLISECONDS);
+						}
+					} catch (InterruptedException e) {
+						// Nothing to do
+					} finally {
+						running.decrementAndGet();
+					}
+				}
+			};
+		}
+
+		public synchronized List<String> getRequests() {
+			return new ArrayList<String>(requests);
+		}
+	}
+
+	private Factory factory = new Factory();
+
+	private CapabilityRequestScheduler scheduler;
+
+	protected void tearDown() throws Exception {
+		if (scheduler != null) {
+			scheduler.stop();
+		}
+		super.tearDown();
+	}
+
+	private void start(int maxThreads, TokenBucket rateLimiter) {
+		scheduler = new CapabilityRequestScheduler(factory, maxThreads, rateLimiter);
+		scheduler.start();
+	}
+
+	private void waitForCompletion(long count) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + TIMEOUT;
+		while (scheduler.getCompletedCount() + scheduler.getDroppedCount() < count) {
+			assertTrue("Requests not completed: " + scheduler, System.currentTimeMillis() < deadline);
+			Thread.sleep(10);
+		}
+	}
+
+	public void testLanePriority() throws Exception {
+		start(1, new TokenBucket(100, 100));
+		assertTrue(scheduler.schedule("block1", false));
+		assertTrue(factory.started.await(TIMEOUT, TimeUnit.MILLISECONDS));
+
+		// Queued while the only slot is busy
+		scheduler.schedule("+33600000001", false);
+		scheduler.schedule("+33600000002", false);
+		scheduler.schedule("+33600000003", true);
+		assertEquals(3, scheduler.getPendingCount());
+
+		factory.release.countDown();
+		waitForCompletion(4);
+		List<String> requests = factory.getRequests();
+		assertEquals("block1", requests.get(0));
+		assertEquals("+33600000003", requests.get(1));
+		assertEquals("+33600000001", requests.get(2));
+		assertEquals("+33600000002", requests.get(3));
+	}
+
+	public void testCoalescing() throws Exception {
+		start(1, new TokenBucket(100, 100));
+		scheduler.schedule("block1", false);
+		assertTrue(factory.started.await(TIMEOUT, TimeUnit.MILLISECONDS));
+
+		// In progress
+		assertTrue(scheduler.schedule("block1", true));
+		// Queued
+		scheduler.schedule("+33600000001", false);
+		assertTrue(scheduler.schedule("+33600000001", false));
+		scheduler.schedule("+33600000002", true);
+		assertTrue(scheduler.schedule("+33600000002", false));
+		assertEquals(3, scheduler.getCoalescedCount());
+		assertEquals(3, scheduler.getScheduledCount());
+		assertEquals(2, scheduler.getPendingCount());
+
+		factory.release.countDown();
+		waitForCompletion(3);
+		assertEquals(3, scheduler.getCompletedCount());
+		assertEquals(3, factory.getRequests().size());
+	}
+
+	public void testPromotion() throws Exception {
+		start(1, new TokenBucket(100, 100));
+		scheduler.schedule("block1", false);
+		assertTrue(factory.started.await(TIMEOUT, TimeUnit.MILLISECONDS));
+
+		scheduler.schedule("+33600000001", false);
+		scheduler.schedule("+33600000002", false);
+		// The user asks for a contact already queued in background
+		scheduler.schedule("+33600000002", true);
+		assertEquals(1, scheduler.getCoalescedCount());
+		assertEquals(2, scheduler.getPendingCount());
+
+		factory.release.countDown();
+		waitForCompletion(3);
+		List<String> requests = factory.getRequests();
+		assertEquals("+33600000002", requests.get(1));
+		assertEquals("+33600000001", requests.get(2));
+	}
+
+	public void testConcurrencyCap() throws Exception {
+		start(3, new TokenBucket(100, 100));
+		for (int i = 0; i < 10; i++) {
+			scheduler.schedule("block" + i, false);
+		}
+		long deadline = System.currentTimeMillis() + TIMEOUT;
+		while (factory.running.get() < 3) {
+			assertTrue(System.currentTimeMillis() < deadline);
+			Thread.sleep(10);
+		}
+		// No other request is dispatched while the slots are busy
+		Thread.sleep(100);
+		assertEquals(3, factory.running.get());
+		assertEquals(7, scheduler.getPendingCount());
+
+		factory.release.countDown();
+		waitForCompletion(10);
+		assertEquals(10, scheduler.getCompletedCount());
+		assertEquals(3, factory.maxRunning.get());
+	}
+
+	public void testRateLimit() throws Exception {
+		// Burst of 2 requests, then 1 request every 100ms
+		start(5, new TokenBucket(2, 10));
+		long start = System.currentTimeMillis();
+		for (int i = 1; i <= 5; i++) {
+			scheduler.schedule("+3360000000" + i, false);
+		}
+		waitForCompletion(5);
+		assertTrue(System.currentTimeMillis() - start >= 250);
+		assertEquals(5, scheduler.getCompletedCount());
+	}
+
+	public void testStopDropsQueuedRequests() throws Exception {
+		start(1, new TokenBucket(100, 100));
+		scheduler.schedule("block1", false);
+		assertTrue(factory.started.await(TIMEOUT, TimeUnit.MILLISECONDS));
+		scheduler.schedule("+33600000001", false);
+		scheduler.schedule("+33600000002", true);
+
+		scheduler.stop();
+		assertEquals(2, scheduler.getDroppedCount());
+		assertEquals(0, scheduler.getPendingCount());
+		assertFalse(scheduler.schedule("+33600000003", true));
+		assertEquals(3, scheduler.getDroppedCount());
+		factory.release.countDown();
+	}
+}
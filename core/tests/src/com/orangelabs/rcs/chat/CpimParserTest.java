@@ -1,9 +1,20 @@
 package com.orangelabs.rcs.chat;
 
+import java.util.Hashtable;
+import java.util.StringTokenizer;
+
 import android.test.AndroidTestCase;
+import android.test.suitebuilder.annotation.LargeTest;
 
+import com.orangelabs.rcs.core.ims.service.im.chat.ChatUtils;
+import com.orangelabs.rcs.core.ims.service.im.chat.cpim.CpimHeader;
 import com.orangelabs.rcs.core.ims.service.im.chat.cpim.CpimMessage;
 import com.orangelabs.rcs.core.ims.service.im.chat.cpim.CpimParser;
+import com.orangelabs.rcs.core.ims.service.im.chat.imdn.ImdnDocument;
+import com.orangelabs.rcs.core.ims.service.im.chat.imdn.ImdnUtils;
+import com.orangelabs.rcs.utils.Benchmark;
+import com.orangelabs.rcs.utils.StringUtils;
+import com.orangelabs.rcs.utils.logger.Logger;
 
 public class CpimParserTest extends AndroidTestCase {
 	/**
@@ -16,6 +27,53 @@ public class CpimParserTest extends AndroidTestCase {
 	 */
 	private static final String DOUBLE_CRLF = CRLF + CRLF;
 
+	private static final String TEXT = "Here is the text of my message: \u00e9t\u00e9 \u20ac";
+
+	private static final String IMDN = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>" + CRLF +
+			"<imdn xmlns=\"urn:ietf:params:xml:ns:imdn\">" + CRLF +
+			"<message-id>Msg1234</message-id>" + CRLF +
+			"<datetime>2013-07-04T10:30:00.000Z</datetime>" + CRLF +
+			"<delivery-notification><status><delivered/></status></delivery-notification>" + CRLF +
+			"</imdn>";
+
+	private static final String[] CORPUS = {
+		"From: MR SANDERS <im:piglet@100akerwood.com>" + CRLF +
+		"To: Depressed Donkey <im:eeyore@100akerwood.com>" + CRLF +
+		"DateTime: 2000-12-13T13:40:00-08:00" + CRLF +
+		"Subject: the weather will be fine today" + CRLF +
+		CRLF +
+		"Content-type: text/plain" + CRLF +
+		"Content-ID: <1234567890@foo.com>" + CRLF +
+		CRLF +
+		TEXT,
+
+		"From: <sip:anonymous@anonymous.invalid>" + CRLF +
+		"To: <sip:anonymous@anonymous.invalid>" + CRLF +
+		"NS: imdn <urn:ietf:params:imdn>" + CRLF +
+		"imdn.Message-ID: Msg1234" + CRLF +
+		"DateTime: 2013-07-04T10:29:59.000Z" + CRLF +
+		"imdn.Disposition-Notification: positive-delivery, display" + CRLF +
+		CRLF +
+		"Content-type: text/plain;charset=utf-8" + CRLF +
+		"Content-length: 41" + CRLF +
+		CRLF +
+		TEXT,
+
+		"From: <sip:+33600000001@domain.com>" + CRLF +
+		"To: <sip:+33600000002@domain.com>" + CRLF +
+		"NS: imdn <urn:ietf:params:imdn>" + CRLF +
+		"imdn.Message-ID: Msg5678" + CRLF +
+		"DateTime: 2013-07-04T10:30:00.000Z" + CRLF +
+		CRLF +
+		"Content-type: message/imdn+xml" + CRLF +
+		"Content-Disposition: notification" + CRLF +
+		"Content-length: " + IMDN.length() + CRLF +
+		CRLF +
+		IMDN
+	};
+
+	private Logger logger = Logger.getLogger(this.getClass().getName());
+
 	protected void setUp() throws Exception {
 		super.setUp();
 	}
@@ -72,4 +130,94 @@ public class CpimParserTest extends AndroidTestCase {
 		}
 	}
 
+	public void testParseCorpus() throws Exception {
+		for(int i=0; i < CORPUS.length; i++) {
+			CpimMessage expected = parseString(CORPUS[i]);
+			CpimMessage msg = new CpimParser(CORPUS[i].getBytes("UTF-8")).getCpimMessage();
+			assertEquals(expected.getContentType(), msg.getContentType());
+			assertEquals(expected.getHeader(CpimMessage.HEADER_FROM), msg.getHeader(CpimMessage.HEADER_FROM));
+			assertEquals(expected.getHeader(ImdnUtils.HEADER_IMDN_MSG_ID), msg.getHeader(ImdnUtils.HEADER_IMDN_MSG_ID));
+			assertEquals(expected.getMessageDate(), msg.getMessageDate());
+			assertEquals(expected.getMessageContent(), msg.getMessageContent());
+			assertEquals(expected.getMessageContent(), new String(msg.getMessageContentBytes(), "UTF-8"));
+		}
+	}
+
+	public void testBadFormat() {
+		Throwable exception = null;
+		try {
+			new CpimParser("From: <sip:user@domain.com>" + CRLF + "Content-type: text/plain" + CRLF);
+		} catch (Exception e) {
+			exception = e;
+		}
+		assertNotNull(exception);
+	}
+
+	public void testWriteDeliveryReport() throws Exception {
+		byte[] cpim = ChatUtils.encodeCpimDeliveryReport("sip:+33600000001@domain.com", "sip:+33600000002@domain.com", IMDN);
+		CpimMessage msg = new CpimParser(cpim).getCpimMessage();
+		assertEquals("<sip:+33600000001@domain.com>", msg.getHeader(CpimMessage.HEADER_FROM));
+		assertEquals(ImdnDocument.MIME_TYPE, msg.getContentType());
+		assertEquals(Integer.toString(IMDN.length()), msg.getContentHeader(CpimMessage.HEADER_CONTENT_LENGTH));
+		assertEquals(IMDN, msg.getMessageContent());
+	}
+
+	public void testWriteMessageWithImdn() throws Exception {
+		String cpim = ChatUtils.buildCpimMessageWithImdn("sip:+33600000001@domain.com", "sip:+33600000002@domain.com",
+				"Msg1234", TEXT, "text/plain");
+		CpimMessage msg = new CpimParser(cpim.getBytes("UTF-8")).getCpimMessage();
+		assertEquals("Msg1234", msg.getHeader(ImdnUtils.HEADER_IMDN_MSG_ID));
+		assertEquals(ImdnDocument.POSITIVE_DELIVERY + ", " + ImdnDocument.DISPLAY,
+				msg.getHeader(ImdnUtils.HEADER_IMDN_DISPO_NOTIF));
+		assertEquals(Integer.toString(TEXT.getBytes("UTF-8").length),
+				msg.getContentHeader(CpimMessage.HEADER_CONTENT_LENGTH));
+		assertEquals(TEXT, msg.getMessageContent());
+	}
+
+	@LargeTest
+	public void testBenchmarkParsing() throws Exception {
+		final byte[][] corpus = new byte[CORPUS.length][];
+		for(int i=0; i < CORPUS.length; i++) {
+			corpus[i] = CORPUS[i].getBytes("UTF-8");
+		}
+		Benchmark benchmark = new Benchmark("CPIM parsing", 10000);
+
+		// String based parsing, as before the byte level parser
+		benchmark.measure("from string", new Benchmark.Task() {
+			public void run(int i) throws Exception {
+				CpimMessage msg = parseString(new String(corpus[i % corpus.length]));
+				msg.getHeader(ImdnUtils.HEADER_IMDN_MSG_ID);
+				msg.getContentType();
+			}
+		});
+
+		// Byte level parsing, the content is not decoded
+		benchmark.measure("from bytes", new Benchmark.Task() {
+			public void run(int i) throws Exception {
+				CpimMessage msg = new CpimParser(corpus[i % corpus.length]).getCpimMessage();
+				msg.getHeader(ImdnUtils.HEADER_IMDN_MSG_ID);
+				msg.getContentType();
+			}
+		});
+		benchmark.log();
+	}
+
+	private static CpimMessage parseString(String data) throws Exception {
+		int end = data.indexOf(CRLF + CRLF);
+		Hashtable<String, String> headers = parseHeaders(data.substring(0, end));
+		int begin = end + 4;
+		end = data.indexOf(CRLF + CRLF, begin);
+		Hashtable<String, String> contentHeaders = parseHeaders(data.substring(begin, end));
+		return new CpimMessage(headers, contentHeaders, StringUtils.decodeUTF8(data.substring(end + 4)));
+	}
+
+	private static Hashtable<String, String> parseHeaders(String block) throws Exception {
+		Hashtable<String, String> headers = new Hashtable<String, String>();
+		StringTokenizer lines = new StringTokenizer(block, CRLF);
+		while(lines.hasMoreTokens()) {
+			CpimHeader hd = CpimHeader.parseHeader(lines.nextToken());
+			headers.put(hd.getName(), hd.getValue());
+		}
+		return headers;
+	}
 }
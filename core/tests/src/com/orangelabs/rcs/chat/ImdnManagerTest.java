@@ -0,0 +1,188 @@
+package com.orangelabs.rcs.chat;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import android.test.AndroidTestCase;
+
+import com.orangelabs.rcs.core.ims.service.im.chat.imdn.ImdnDocument;
+import com.orangelabs.rcs.core.ims.service.im.chat.imdn.ImdnManager;
+import com.orangelabs.rcs.provider.messaging.RichMessaging;
+import com.orangelabs.rcs.provider.settings.RcsSettings;
+import com.orangelabs.rcs.provider.settings.RcsSettingsData;
+
+public class ImdnManagerTest extends AndroidTestCase {
+
+	private static final long TIMEOUT = 5000;
+
+	private static final String ALICE = "sip:+33600000001@domain.com";
+
+	private static final String BOB = "sip:+33600000002@domain.com";
+
+	private TestManager manager;
+
+	private String displayedNotification;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		RcsSettings.createInstance(getContext());
+		RichMessaging.createInstance(getContext());
+		displayedNotification = RcsSettings.getInstance().readParameter(RcsSettingsData.CHAT_DISPLAYED_NOTIFICATION);
+		RcsSettings.getInstance().writeParameter(RcsSettingsData.CHAT_DISPLAYED_NOTIFICATION, "true");
+		manager = new TestManager();
+		manager.start();
+	}
+
+	protected void tearDown() throws Exception {
+		manager.release.countDown();
+		manager.terminate();
+		RcsSettings.getInstance().writeParameter(RcsSettingsData.CHAT_DISPLAYED_NOTIFICATION, displayedNotification);
+		super.tearDown();
+	}
+
+	public void testCoalescing() throws Exception {
+		manager.sendMessageDeliveryStatus(ALICE, "msg1", ImdnDocument.DELIVERY_STATUS_DELIVERED);
+		manager.sendMessageDeliveryStatus(ALICE, "msg1", ImdnDocument.DELIVERY_STATUS_DISPLAYED);
+		manager.sendMessageDeliveryStatus(ALICE, "msg2", ImdnDocument.DELIVERY_STATUS_DISPLAYED);
+		manager.sendMessageDeliveryStatus(ALICE, "msg2", ImdnDocument.DELIVERY_STATUS_DELIVERED);
+		manager.waitForSent(2);
+
+		// Only the last status of a message is sent, a displayed one is not replaced by a delivered one
+		assertEquals(1, manager.sipBatches.size());
+		assertEquals("msg1 displayed, msg2 displayed", manager.sipBatches.get(0));
+		assertEquals(4, manager.getQueuedCount());
+		assertEquals(2, manager.getCoalescedCount());
+		assertEquals(0, manager.getPendingCount());
+	}
+
+	public void testBatching() throws Exception {
+		for(int i=0; i < 5; i++) {
+			manager.sendMessageDeliveryStatus(ALICE, "msgA" + i, ImdnDocument.DELIVERY_STATUS_DELIVERED);
+			manager.sendMessageDeliveryStatus(BOB, "msgB" + i, ImdnDocument.DELIVERY_STATUS_DELIVERED);
+		}
+		manager.waitForSent(10);
+
+		// One batch per contact
+		assertEquals(2, manager.sipBatches.size());
+		assertTrue(manager.sipBatches.contains("msgA0 delivered, msgA1 delivered, msgA2 delivered, msgA3 delivered, msgA4 delivered"));
+		assertTrue(manager.sipBatches.contains("msgB0 delivered, msgB1 delivered, msgB2 delivered, msgB3 delivered, msgB4 delivered"));
+	}
+
+	public void testDeadline() throws Exception {
+		long start = System.currentTimeMillis();
+		manager.sendMessageDeliveryStatus(ALICE, "msg1", ImdnDocument.DELIVERY_STATUS_DELIVERED);
+		assertEquals(1, manager.getPendingCount());
+		manager.waitForSent(1);
+
+		// Sent at the end of the window, not before
+		assertTrue(System.currentTimeMillis() - start >= ImdnManager.BATCH_WINDOW);
+		assertEquals(0, manager.getPendingCount());
+
+		// A notification queued later opens a new window
+		manager.sendMessageDeliveryStatus(ALICE, "msg2", ImdnDocument.DELIVERY_STATUS_DELIVERED);
+		manager.waitForSent(2);
+		assertEquals(2, manager.sipBatches.size());
+	}
+
+	public void testRouting() throws Exception {
+		manager.chatContacts.add(ALICE);
+		manager.sendMessageDeliveryStatus(ALICE, "msg1", ImdnDocument.DELIVERY_STATUS_DELIVERED);
+		manager.sendMessageDeliveryStatus(BOB, "msg2", ImdnDocument.DELIVERY_STATUS_DELIVERED);
+		manager.sendSipMessageDeliveryStatus(ALICE, "msg3", ImdnDocument.DELIVERY_STATUS_DELIVERED);
+		manager.waitForSent(3);
+
+		// MSRP in an established chat session, SIP otherwise or when requested
+		assertEquals(1, manager.msrpStatuses.size());
+		assertEquals("msg1 delivered", manager.msrpStatuses.get(0));
+		assertEquals(2, manager.sipBatches.size());
+		assertTrue(manager.sipBatches.contains("msg2 delivered"));
+		assertTrue(manager.sipBatches.contains("msg3 delivered"));
+
+		// An immediate notification is sent via SIP without waiting for the window
+		long start = System.currentTimeMillis();
+		manager.sendMessageDeliveryStatusImmediately(ALICE, "msg4", ImdnDocument.DELIVERY_STATUS_DELIVERED, null);
+		manager.waitForSent(4);
+		assertTrue(System.currentTimeMillis() - start < ImdnManager.BATCH_WINDOW);
+		assertEquals("msg4 delivered", manager.sipBatches.get(2));
+	}
+
+	public void testCallerNotBlocked() throws Exception {
+		manager.blocked = true;
+
+		// The sending threads and the queue of the pool are full
+		for(int i=0; i < 100; i++) {
+			manager.sendMessageDeliveryStatusImmediately(ALICE, "msg" + i, ImdnDocument.DELIVERY_STATUS_DELIVERED, null);
+		}
+		assertEquals(100, manager.getQueuedCount());
+
+		manager.release.countDown();
+		manager.waitForSent(100);
+		assertFalse(manager.senders.contains(Thread.currentThread()));
+		assertEquals(0, manager.getDroppedCount());
+	}
+
+	/**
+	 * Manager recording the notifications instead of sending them
+	 */
+	private static class TestManager extends ImdnManager {
+		HashSet<String> chatContacts = new HashSet<String>();
+		List<String> msrpStatuses = new ArrayList<String>();
+		List<String> sipBatches = new ArrayList<String>();
+		HashSet<Thread> senders = new HashSet<Thread>();
+		CountDownLatch release = new CountDownLatch(1);
+		volatile boolean blocked = false;
+		private int sent = 0;
+
+		TestManager() {
+			super(null);
+		}
+
+		protected boolean sendMsrpMessageDeliveryStatus(String contact, DeliveryStatus delivery) {
+			if (!chatContacts.contains(contact)) {
+				return false;
+			}
+			synchronized(this) {
+				msrpStatuses.add(delivery.getMsgId() + " " + delivery.getStatus());
+				senders.add(Thread.currentThread());
+				sent++;
+				notifyAll();
+			}
+			return true;
+		}
+
+		protected void sendSipMessageDeliveryStatus(String contact, List<DeliveryStatus> statuses, String remoteInstanceId) {
+			if (blocked) {
+				try {
+					release.await(TIMEOUT, TimeUnit.MILLISECONDS);
+				} catch (InterruptedException e) {
+					// Nothing to do
+				}
+			}
+			StringBuffer batch = new StringBuffer();
+			for(int i=0; i < statuses.size(); i++) {
+				if (i > 0) {
+					batch.append(", ");
+				}
+				batch.append(statuses.get(i).getMsgId()).append(' ').append(statuses.get(i).getStatus());
+			}
+			synchronized(this) {
+				sipBatches.add(batch.toString());
+				senders.add(Thread.currentThread());
+				sent += statuses.size();
+				notifyAll();
+			}
+		}
+
+		synchronized void waitForSent(int count) throws InterruptedException {
+			long deadline = System.currentTimeMillis() + TIMEOUT;
+			while (sent < count) {
+				long delay = deadline - System.currentTimeMillis();
+				assertTrue("Notifications not sent: " + this, delay > 0);
+				wait(delay);
+			}
+		}
+	}
+}
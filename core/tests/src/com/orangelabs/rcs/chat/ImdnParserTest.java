@@ -5,9 +5,11 @@ import java.io.ByteArrayInputStream;
 import org.xml.sax.InputSource;
 
 import android.test.AndroidTestCase;
+import android.test.suitebuilder.annotation.LargeTest;
 
 import com.orangelabs.rcs.core.ims.service.im.chat.imdn.ImdnDocument;
 import com.orangelabs.rcs.core.ims.service.im.chat.imdn.ImdnParser;
+import com.orangelabs.rcs.utils.Benchmark;
 import com.orangelabs.rcs.utils.logger.Logger;
 
 public class ImdnParserTest extends AndroidTestCase {
@@ -72,4 +74,53 @@ public class ImdnParserTest extends AndroidTestCase {
 			e.printStackTrace();
     	}		
 	}
+
+	public void testScannedImdnDocument() throws Exception {
+		String[] statuses = {
+				ImdnDocument.DELIVERY_STATUS_DELIVERED, ImdnDocument.DELIVERY_STATUS_DISPLAYED,
+				ImdnDocument.DELIVERY_STATUS_FAILED, ImdnDocument.DELIVERY_STATUS_ERROR,
+				ImdnDocument.DELIVERY_STATUS_FORBIDDEN
+		};
+		for(int i=0; i < statuses.length; i++) {
+			byte[] xml = buildImdn("Msg" + i, statuses[i]).getBytes();
+			ImdnDocument expected = new ImdnParser(xml).getImdnDocument();
+			ImdnDocument imdn = ImdnParser.parse(xml);
+			assertEquals(expected.getMsgId(), imdn.getMsgId());
+			assertEquals(expected.getStatus(), imdn.getStatus());
+		}
+
+		// Documents not handled by the scanner are parsed by the SAX parser
+		String xml = buildImdn("Msg&amp;1", ImdnDocument.DELIVERY_STATUS_DELIVERED);
+		assertEquals("Msg&1", ImdnParser.parse(xml.getBytes()).getMsgId());
+		xml = xml.replace("<message-id>", "<!-- comment --><message-id>");
+		assertEquals("Msg&1", ImdnParser.parse(xml.getBytes()).getMsgId());
+	}
+
+	@LargeTest
+	public void testBenchmarkImdnParsing() throws Exception {
+		final byte[] xml = buildImdn("34jk324j", ImdnDocument.DELIVERY_STATUS_DISPLAYED).getBytes();
+		Benchmark benchmark = new Benchmark("IMDN parsing", 5000);
+		benchmark.measure("with SAX", new Benchmark.Task() {
+			public void run(int i) throws Exception {
+				new ImdnParser(xml).getImdnDocument();
+			}
+		});
+		benchmark.measure("with the scanner", new Benchmark.Task() {
+			public void run(int i) throws Exception {
+				ImdnParser.parse(xml);
+			}
+		});
+		benchmark.log();
+	}
+
+	private static String buildImdn(String msgId, String status) {
+		return "<?xml version=\"1.0\" encoding=\"UTF-8\"?>" + CRLF +
+				"<imdn xmlns=\"urn:ietf:params:xml:ns:imdn\">" + CRLF +
+				"<message-id>" + msgId + "</message-id>" + CRLF +
+				"<datetime>2008-04-04T12:16:49-05:00</datetime>" + CRLF +
+				"<display-notification>" + CRLF +
+				"<status><" + status + "/></status>" + CRLF +
+				"</display-notification>" + CRLF +
+				"</imdn>";
+	}
 }
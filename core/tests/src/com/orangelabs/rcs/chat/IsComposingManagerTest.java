@@ -0,0 +1,137 @@
+package com.orangelabs.rcs.chat;
+
+import java.util.Hashtable;
+
+import android.test.AndroidTestCase;
+
+import com.orangelabs.rcs.core.ims.service.im.chat.iscomposing.IsComposingManager;
+
+public class IsComposingManagerTest extends AndroidTestCase {
+
+	private static final int PARTICIPANTS = 100;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+	}
+
+	protected void tearDown() throws Exception {
+		super.tearDown();
+	}
+
+	public void testGroupChatExpiration() throws Exception {
+		// Three 100-participant chats, each participant typing repeatedly
+		TestManager[] managers = { new TestManager(), new TestManager(), new TestManager() };
+		for(int round=0; round < 50; round++) {
+			for(int m=0; m < managers.length; m++) {
+				for(int i=0; i < PARTICIPANTS; i++) {
+					managers[m].startExpirationTimer(1, "sip:+3360000" + i + "@domain.com");
+				}
+			}
+		}
+		// Half of the participants send their message
+		for(int m=0; m < managers.length; m++) {
+			for(int i=0; i < PARTICIPANTS; i += 2) {
+				managers[m].receiveIsComposingEvent("sip:+3360000" + i + "@domain.com", false);
+			}
+		}
+
+		Thread.sleep(2500);
+		for(int m=0; m < managers.length; m++) {
+			assertEquals(0, managers[m].getExpirationTimerCount());
+			for(int i=0; i < PARTICIPANTS; i++) {
+				// One idle event per participant: by message or by expiration
+				assertEquals(new Integer(1), managers[m].idleEvents.get("sip:+3360000" + i + "@domain.com"));
+			}
+		}
+	}
+
+	public void testOutgoingThrottling() throws Exception {
+		TestManager manager = new TestManager();
+
+		// Idle state is not sent before an active state
+		assertFalse(manager.isOutgoingStateAllowed(false));
+
+		// A fast typist sends active states on each key
+		assertTrue(manager.isOutgoingStateAllowed(true));
+		for(int i=0; i < 100; i++) {
+			assertFalse(manager.isOutgoingStateAllowed(true));
+		}
+		assertTrue(manager.isOutgoingStateAllowed(false));
+		assertFalse(manager.isOutgoingStateAllowed(false));
+
+		// Active and idle states alternating are limited by the rate limiter
+		int sent = 0;
+		for(int i=0; i < 100; i++) {
+			if (manager.isOutgoingStateAllowed(true)) {
+				sent++;
+			}
+			manager.isOutgoingStateAllowed(false);
+		}
+		assertTrue(sent < 10);
+		assertTrue(manager.getThrottledCount() > 100);
+	}
+
+	public void testResetOnMessage() throws Exception {
+		TestManager manager = new TestManager();
+		assertTrue(manager.isOutgoingStateAllowed(true));
+		assertFalse(manager.isOutgoingStateAllowed(true));
+
+		// A message is sent: no idle state, the next active state is sent again
+		manager.resetOutgoingState();
+		assertFalse(manager.isOutgoingStateAllowed(false));
+		assertTrue(manager.isOutgoingStateAllowed(true));
+
+		// A message is received: the remote still sees our active state, so
+		// the idle state is sent when we stop typing
+		manager.receiveIsComposingEvent("sip:+33600000001@domain.com", false);
+		assertFalse(manager.isOutgoingStateAllowed(true));
+		assertTrue(manager.isOutgoingStateAllowed(false));
+		assertEquals(1, manager.idleEvents.size());
+	}
+
+	public void testRefreshAtExpiration() throws Exception {
+		// One contact refreshed each ms around the expiration of the first
+		// timers: some refreshes happen while their timer is expiring, each
+		// one must keep a running timer whatever the order
+		int contacts = PARTICIPANTS * 10;
+		TestManager manager = new TestManager();
+		for(int i=0; i < contacts; i++) {
+			manager.startExpirationTimer(1, "sip:+3360000" + i + "@domain.com");
+		}
+		long start = System.currentTimeMillis() + 500;
+		for(int i=0; i < contacts; i++) {
+			while (System.currentTimeMillis() < start + i) {
+				Thread.yield();
+			}
+			manager.startExpirationTimer(2, "sip:+3360000" + i + "@domain.com");
+		}
+		assertEquals(contacts, manager.getExpirationTimerCount());
+
+		// The refreshed timers expire: one idle event when the refresh came
+		// first, two when the first timer had already expired
+		Thread.sleep(3000);
+		assertEquals(0, manager.getExpirationTimerCount());
+		for(int i=0; i < contacts; i++) {
+			Integer count = manager.idleEvents.get("sip:+3360000" + i + "@domain.com");
+			assertNotNull(count);
+			assertTrue(count.intValue() <= 2);
+		}
+	}
+
+	private static class TestManager extends IsComposingManager {
+		Hashtable<String, Integer> idleEvents = new Hashtable<String, Integer>();
+
+		TestManager() {
+			super(null);
+		}
+
+		protected void notifyIsComposingEvent(String contact, boolean state) {
+			if (!state) {
+				synchronized(idleEvents) {
+					Integer count = idleEvents.get(contact);
+					idleEvents.put(contact, new Integer((count == null) ? 1 : count.intValue() + 1));
+				}
+			}
+		}
+	}
+}
@@ -5,9 +5,11 @@ import java.io.ByteArrayInputStream;
 import org.xml.sax.InputSource;
 
 import android.test.AndroidTestCase;
+import android.test.suitebuilder.annotation.LargeTest;
 
 import com.orangelabs.rcs.core.ims.service.im.chat.iscomposing.IsComposingInfo;
 import com.orangelabs.rcs.core.ims.service.im.chat.iscomposing.IsComposingParser;
+import com.orangelabs.rcs.utils.Benchmark;
 import com.orangelabs.rcs.utils.DateUtils;
 import com.orangelabs.rcs.utils.logger.Logger;
 
@@ -53,4 +55,37 @@ public class IsComposingParserTest extends AndroidTestCase {
 			e.printStackTrace();
 		}
 	}
+
+	public void testScannedIsComposing() throws Exception {
+		String[] docs = {
+				IsComposingInfo.buildIsComposingInfo(true),
+				IsComposingInfo.buildIsComposingInfo(false)
+		};
+		for(int i=0; i < docs.length; i++) {
+			byte[] xml = docs[i].getBytes();
+			IsComposingInfo expected = new IsComposingParser(xml).getIsComposingInfo();
+			IsComposingInfo info = IsComposingParser.parse(xml);
+			assertEquals(expected.isStateActive(), info.isStateActive());
+			assertEquals(expected.getContentType(), info.getContentType());
+			assertEquals(expected.getLastActiveDate(), info.getLastActiveDate());
+			assertEquals(expected.getRefreshTime(), info.getRefreshTime());
+		}
+	}
+
+	@LargeTest
+	public void testBenchmarkIsComposingParsing() throws Exception {
+		final byte[] xml = IsComposingInfo.buildIsComposingInfo(true).getBytes();
+		Benchmark benchmark = new Benchmark("Is-composing parsing", 5000);
+		benchmark.measure("with SAX", new Benchmark.Task() {
+			public void run(int i) throws Exception {
+				new IsComposingParser(xml).getIsComposingInfo();
+			}
+		});
+		benchmark.measure("with the scanner", new Benchmark.Task() {
+			public void run(int i) throws Exception {
+				IsComposingParser.parse(xml);
+			}
+		});
+		benchmark.log();
+	}
 }
@@ -0,0 +1,113 @@
+package com.orangelabs.rcs.database.eab;
+
+import android.test.AndroidTestCase;
+
+import com.orangelabs.rcs.provider.eab.ContactInfoCache;
+import com.orangelabs.rcs.service.api.client.capability.Capabilities;
+import com.orangelabs.rcs.service.api.client.contacts.ContactInfo;
+import com.orangelabs.rcs.service.api.client.presence.PresenceInfo;
+
+public class ContactInfoCacheTest extends AndroidTestCase {
+
+	private ContactInfo createInfo(String contact) {
+		ContactInfo info = new ContactInfo();
+		info.setContact(contact);
+		info.setRcsStatus(ContactInfo.RCS_ACTIVE);
+		Capabilities capa = new Capabilities();
+		capa.setImSessionSupport(true);
+		capa.addSupportedExtension("MyRcsExtensionTag1");
+		info.setCapabilities(capa);
+		info.setPresenceInfo(new PresenceInfo());
+		return info;
+	}
+
+	public void testHitAndMiss() {
+		ContactInfoCache cache = new ContactInfoCache(10);
+		assertNull(cache.get("+33987654321"));
+		cache.put("+33987654321", createInfo("+33987654321"));
+		ContactInfo info = cache.get("+33987654321");
+		assertNotNull(info);
+		assertEquals(ContactInfo.RCS_ACTIVE, info.getRcsStatus());
+		assertTrue(info.getCapabilities().isImSessionSupported());
+		assertEquals(1, cache.getHitCount());
+		assertEquals(1, cache.getMissCount());
+	}
+
+	public void testReturnedInfoIsACopy() {
+		ContactInfoCache cache = new ContactInfoCache(10);
+		cache.put("+33987654321", createInfo("+33987654321"));
+		ContactInfo info = cache.get("+33987654321");
+		info.getCapabilities().setImSessionSupport(false);
+		info.setRcsStatus(ContactInfo.RCS_BLOCKED);
+		ContactInfo other = cache.get("+33987654321");
+		assertTrue(other.getCapabilities().isImSessionSupported());
+		assertEquals(ContactInfo.RCS_ACTIVE, other.getRcsStatus());
+		assertEquals(1, other.getCapabilities().getSupportedExtensions().size());
+	}
+
+	public void testLruEviction() {
+		ContactInfoCache cache = new ContactInfoCache(2);
+		cache.put("+33600000001", createInfo("+33600000001"));
+		cache.put("+33600000002", createInfo("+33600000002"));
+		// Touch the first entry so that the second one becomes the eldest
+		assertNotNull(cache.get("+33600000001"));
+		cache.put("+33600000003", createInfo("+33600000003"));
+		assertEquals(2, cache.size());
+		assertNull(cache.get("+33600000002"));
+		assertNotNull(cache.get("+33600000001"));
+		assertEquals(1, cache.getEvictionCount());
+	}
+
+	public void testInvalidate() {
+		ContactInfoCache cache = new ContactInfoCache(10);
+		cache.put("+33600000001", createInfo("+33600000001"));
+		cache.put("+33600000002", createInfo("+33600000002"));
+		cache.invalidate("+33600000001");
+		assertNull(cache.get("+33600000001"));
+		cache.invalidateAll();
+		assertEquals(0, cache.size());
+	}
+
+	public void testStaleReadIsNotCached() {
+		ContactInfoCache cache = new ContactInfoCache(10);
+		long version = cache.getVersion("+33600000001");
+		long otherVersion = cache.getVersion("+33600000002");
+		// The contact is updated while it is read
+		cache.invalidate("+33600000001");
+		assertFalse(cache.put("+33600000001", createInfo("+33600000001"), true, version));
+		assertNull(cache.get("+33600000001"));
+		// Other contacts are not affected
+		assertTrue(cache.put("+33600000002", createInfo("+33600000002"), true, otherVersion));
+		assertNotNull(cache.get("+33600000002"));
+		// A read started after the invalidation is cached
+		version = cache.getVersion("+33600000001");
+		assertTrue(cache.put("+33600000001", createInfo("+33600000001"), true, version));
+		assertNotNull(cache.get("+33600000001"));
+	}
+
+	public void testStaleReadAfterInvalidateAll() {
+		ContactInfoCache cache = new ContactInfoCache(10);
+		long version = cache.getVersion("+33600000001");
+		cache.invalidateAll();
+		assertFalse(cache.put("+33600000001", createInfo("+33600000001"), true, version));
+		assertEquals(0, cache.size());
+	}
+
+	public void testUnknownContactTimestamp() throws Exception {
+		ContactInfoCache cache = new ContactInfoCache(10);
+		ContactInfo info = createInfo("+33600000001");
+		info.setRcsStatus(ContactInfo.NO_INFO);
+		info.setRcsStatusTimestamp(System.currentTimeMillis() - 60000);
+		long version = cache.getVersion("+33600000001");
+		assertTrue(cache.put("+33600000001", info, false, version));
+		long now = System.currentTimeMillis();
+		assertTrue(cache.get("+33600000001").getRcsStatusTimestamp() >= now);
+
+		// The timestamp of a contact in the database is kept
+		version = cache.getVersion("+33600000002");
+		info = createInfo("+33600000002");
+		info.setRcsStatusTimestamp(1000);
+		assertTrue(cache.put("+33600000002", info, true, version));
+		assertEquals(1000, cache.get("+33600000002").getRcsStatusTimestamp());
+	}
+}
@@ -0,0 +1,205 @@
+package com.orangelabs.rcs.database.messaging;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.test.AndroidTestCase;
+import android.test.suitebuilder.annotation.LargeTest;
+
+import com.orangelabs.rcs.provider.RichProviderHelper;
+import com.orangelabs.rcs.provider.ipcall.IPCallData;
+import com.orangelabs.rcs.provider.ipcall.IPCallProvider;
+import com.orangelabs.rcs.provider.messaging.RichMessagingData;
+import com.orangelabs.rcs.provider.messaging.RichMessagingProvider;
+import com.orangelabs.rcs.provider.sharing.RichCallData;
+import com.orangelabs.rcs.provider.sharing.RichCallProvider;
+import com.orangelabs.rcs.service.api.client.eventslog.EventsLogApi;
+import com.orangelabs.rcs.utils.Benchmark;
+
+public class RichMessagingIndexTest extends AndroidTestCase {
+
+	private static final int LOOKUPS = 200;
+
+	private static final String SELECTION_MESSAGE_ID = RichMessagingData.KEY_MESSAGE_ID + "=?";
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		RichProviderHelper.createInstance(getContext());
+	}
+
+	private SQLiteDatabase createDatabase(int messages, boolean indexed) {
+		SQLiteDatabase db = SQLiteDatabase.create(null);
+		RichProviderHelper.getInstance().onCreate(db);
+		if (!indexed) {
+			db.execSQL("DROP INDEX " + RichMessagingProvider.TABLE + "_message_id_idx");
+			db.execSQL("DROP INDEX " + RichMessagingProvider.TABLE + "_session_id_idx");
+			db.execSQL("DROP INDEX " + RichMessagingProvider.TABLE + "_chat_id_idx");
+			db.execSQL("DROP INDEX " + RichMessagingProvider.TABLE + "_contact_idx");
+		}
+
+		SQLiteStatement insert = db.compileStatement("INSERT INTO " + RichMessagingProvider.TABLE + " ("
+				+ RichMessagingData.KEY_TYPE + ", " + RichMessagingData.KEY_CHAT_SESSION_ID + ", "
+				+ RichMessagingData.KEY_TIMESTAMP + ", " + RichMessagingData.KEY_CONTACT + ", "
+				+ RichMessagingData.KEY_STATUS + ", " + RichMessagingData.KEY_MESSAGE_ID + ", "
+				+ RichMessagingData.KEY_CHAT_ID + ") VALUES (?, ?, ?, ?, ?, ?, ?)");
+		db.beginTransaction();
+		try {
+			for(int i=0; i < messages; i++) {
+				insert.bindLong(1, EventsLogApi.TYPE_INCOMING_CHAT_MESSAGE);
+				insert.bindString(2, "session" + (i / 50));
+				insert.bindLong(3, i);
+				insert.bindString(4, "+336" + (i % 1000));
+				insert.bindLong(5, EventsLogApi.STATUS_RECEIVED);
+				insert.bindString(6, "msg" + i);
+				insert.bindString(7, "chat" + (i / 50));
+				insert.executeInsert();
+			}
+			db.setTransactionSuccessful();
+		} finally {
+			db.endTransaction();
+			insert.close();
+		}
+		return db;
+	}
+
+	private static String getMessageId(int i, int messages) {
+		return "msg" + ((i * 7919) % messages);
+	}
+
+	private static SQLiteStatement compileStatusUpdate(SQLiteDatabase db) {
+		return db.compileStatement("UPDATE " + RichMessagingProvider.TABLE + " SET "
+				+ RichMessagingData.KEY_STATUS + "=? WHERE " + SELECTION_MESSAGE_ID);
+	}
+
+	private void lookup(SQLiteDatabase db, String messageId) {
+		Cursor cursor = db.query(RichMessagingProvider.TABLE, new String[] { RichMessagingData.KEY_STATUS },
+				SELECTION_MESSAGE_ID, new String[] { messageId }, null, null, null);
+		assertTrue(cursor.moveToFirst());
+		cursor.close();
+	}
+
+	private static void updateStatus(SQLiteStatement update, String messageId) {
+		update.bindLong(1, EventsLogApi.STATUS_DISPLAYED);
+		update.bindString(2, messageId);
+		update.execute();
+	}
+
+	private String getQueryPlan(SQLiteDatabase db, String query, String[] args) {
+		Cursor cursor = db.rawQuery("EXPLAIN QUERY PLAN " + query, args);
+		StringBuffer plan = new StringBuffer();
+		while (cursor.moveToNext()) {
+			plan.append(cursor.getString(cursor.getColumnCount() - 1));
+		}
+		cursor.close();
+		return plan.toString();
+	}
+
+	private void assertIndexUsed(SQLiteDatabase db, String table, String selection, String index) {
+		String plan = getQueryPlan(db, "SELECT * FROM " + table + " WHERE " + selection, new String[] { "1" });
+		assertTrue(plan, plan.indexOf(index) != -1);
+	}
+
+	private void benchmark(final int messages) throws Exception {
+		Benchmark benchmark = new Benchmark(messages + " messages", LOOKUPS);
+		for(int pass=0; pass < 2; pass++) {
+			boolean indexed = (pass == 1);
+			final SQLiteDatabase db = createDatabase(messages, indexed);
+			final SQLiteStatement update = compileStatusUpdate(db);
+			try {
+				benchmark.measure(indexed ? "indexed lookup" : "lookup", new Benchmark.Task() {
+					public void run(int i) {
+						lookup(db, getMessageId(i, messages));
+					}
+				});
+				benchmark.measure(indexed ? "indexed IMDN update" : "IMDN update", new Benchmark.Task() {
+					public void run(int i) {
+						updateStatus(update, getMessageId(i, messages));
+					}
+				});
+			} finally {
+				update.close();
+				db.close();
+			}
+		}
+		benchmark.log();
+	}
+
+	public void testIndexesCreated() {
+		SQLiteDatabase db = createDatabase(10, true);
+		try {
+			assertIndexUsed(db, RichMessagingProvider.TABLE, SELECTION_MESSAGE_ID,
+					RichMessagingProvider.TABLE + "_message_id_idx");
+			assertIndexUsed(db, RichMessagingProvider.TABLE, RichMessagingData.KEY_CHAT_SESSION_ID + "=?",
+					RichMessagingProvider.TABLE + "_session_id_idx");
+			assertIndexUsed(db, RichMessagingProvider.TABLE, RichMessagingData.KEY_CHAT_ID + "=?",
+					RichMessagingProvider.TABLE + "_chat_id_idx");
+			assertIndexUsed(db, RichMessagingProvider.TABLE, RichMessagingData.KEY_CONTACT + "=?",
+					RichMessagingProvider.TABLE + "_contact_idx");
+			assertIndexUsed(db, RichCallProvider.TABLE, RichCallData.KEY_SESSION_ID + "=?",
+					RichCallProvider.TABLE + "_session_id_idx");
+			assertIndexUsed(db, IPCallProvider.TABLE, IPCallData.KEY_SESSION_ID + "=?",
+					IPCallProvider.TABLE + "_session_id_idx");
+
+			// The history of a session is read in order without sorting
+			String plan = getQueryPlan(db, "SELECT * FROM " + RichMessagingProvider.TABLE + " WHERE "
+					+ RichMessagingData.KEY_CHAT_SESSION_ID + "=? ORDER BY " + RichMessagingData.KEY_TIMESTAMP,
+					new String[] { "session0" });
+			assertTrue(plan, plan.indexOf("TEMP B-TREE") == -1);
+		} finally {
+			db.close();
+		}
+	}
+
+	public void testIndexedLookupResults() {
+		SQLiteDatabase db = createDatabase(1000, true);
+		try {
+			for(int i=0; i < 1000; i += 37) {
+				Cursor cursor = db.query(RichMessagingProvider.TABLE, new String[] { RichMessagingData.KEY_TIMESTAMP,
+						RichMessagingData.KEY_CHAT_SESSION_ID }, SELECTION_MESSAGE_ID, new String[] { "msg" + i },
+						null, null, null);
+				assertEquals(1, cursor.getCount());
+				assertTrue(cursor.moveToFirst());
+				assertEquals(i, cursor.getLong(0));
+				assertEquals("session" + (i / 50), cursor.getString(1));
+				cursor.close();
+			}
+
+			// Each IMDN update modifies one distinct message
+			SQLiteStatement update = compileStatusUpdate(db);
+			for(int i=0; i < LOOKUPS; i++) {
+				updateStatus(update, getMessageId(i, 1000));
+			}
+			update.close();
+			Cursor cursor = db.query(RichMessagingProvider.TABLE, new String[] { RichMessagingData.KEY_MESSAGE_ID },
+					RichMessagingData.KEY_STATUS + "=?", new String[] { "" + EventsLogApi.STATUS_DISPLAYED },
+					null, null, null);
+			assertEquals(LOOKUPS, cursor.getCount());
+			cursor.close();
+
+			cursor = db.query(RichMessagingProvider.TABLE, new String[] { RichMessagingData.KEY_MESSAGE_ID },
+					RichMessagingData.KEY_CHAT_SESSION_ID + "=?", new String[] { "session3" },
+					null, null, RichMessagingData.KEY_TIMESTAMP);
+			assertEquals(50, cursor.getCount());
+			assertTrue(cursor.moveToFirst());
+			assertEquals("msg150", cursor.getString(0));
+			cursor.close();
+		} finally {
+			db.close();
+		}
+	}
+
+	@LargeTest
+	public void testBenchmark10k() throws Exception {
+		benchmark(10000);
+	}
+
+	@LargeTest
+	public void testBenchmark100k() throws Exception {
+		benchmark(100000);
+	}
+
+	@LargeTest
+	public void testBenchmark1M() throws Exception {
+		benchmark(1000000);
+	}
+}
@@ -0,0 +1,168 @@
+package com.orangelabs.rcs.database.messaging;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+
+import android.content.ContentProviderOperation;
+import android.content.ContentProviderResult;
+import android.content.ContentValues;
+import android.content.OperationApplicationException;
+import android.net.Uri;
+import android.test.AndroidTestCase;
+import android.test.mock.MockContentProvider;
+import android.test.mock.MockContentResolver;
+
+import com.orangelabs.rcs.provider.messaging.RichMessaging;
+import com.orangelabs.rcs.provider.messaging.RichMessagingData;
+import com.orangelabs.rcs.provider.messaging.RichMessagingWriteQueue;
+import com.orangelabs.rcs.provider.settings.RcsSettings;
+import com.orangelabs.rcs.service.api.client.eventslog.EventsLogApi;
+
+public class RichMessagingWriteQueueTest extends AndroidTestCase {
+
+	private static final String CONTACT_A = "+33600000001";
+
+	private static final String CONTACT_B = "+33600000002";
+
+	/**
+	 * Provider recording the writes
+	 */
+	private static class Provider extends MockContentProvider {
+		private List<String> writes = new ArrayList<String>();
+		private List<ContentValues> values = new ArrayList<ContentValues>();
+		private int batches = 0;
+		private boolean failBatch = false;
+		private String failedMessage = null;
+
+		public synchronized ContentProviderResult[] applyBatch(ArrayList<ContentProviderOperation> operations)
+				throws OperationApplicationException {
+			if (failBatch) {
+				throw new OperationApplicationException("Batch failure");
+			}
+			batches++;
+			ContentProviderResult[] results = new ContentProviderResult[operations.size()];
+			for (int i = 0; i < operations.size(); i++) {
+				results[i] = operations.get(i).apply(this, results, i);
+			}
+			return results;
+		}
+
+		public synchronized Uri insert(Uri uri, ContentValues values) {
+			String msgId = values.getAsString(RichMessagingData.KEY_MESSAGE_ID);
+			if (msgId.equals(failedMessage)) {
+				throw new IllegalStateException("Insert failure");
+			}
+			this.writes.add("insert " + msgId);
+			this.values.add(values);
+			return uri;
+		}
+
+		public synchronized int update(Uri uri, ContentValues values, String selection, String[] selectionArgs) {
+			this.writes.add("update " + selectionArgs[0]);
+			this.values.add(values);
+			return 1;
+		}
+
+		public synchronized List<String> getWrites() {
+			return new ArrayList<String>(writes);
+		}
+
+		public synchronized ContentValues getValues(int index) {
+			return values.get(index);
+		}
+	}
+
+	private Provider provider;
+
+	private RichMessagingWriteQueue queue;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		RcsSettings.createInstance(getContext());
+		RichMessaging.createInstance(getContext());
+
+		provider = new Provider();
+		MockContentResolver resolver = new MockContentResolver();
+		resolver.addProvider(RichMessagingData.CONTENT_URI.getAuthority(), provider);
+		queue = new RichMessagingWriteQueue(RichMessaging.getInstance(), resolver);
+	}
+
+	protected void tearDown() throws Exception {
+		queue.stop();
+		super.tearDown();
+	}
+
+	private ContentValues createMessage(String msgId, String contact) {
+		ContentValues values = new ContentValues();
+		values.put(RichMessagingData.KEY_TYPE, EventsLogApi.TYPE_INCOMING_CHAT_MESSAGE);
+		values.put(RichMessagingData.KEY_MESSAGE_ID, msgId);
+		values.put(RichMessagingData.KEY_CONTACT, contact);
+		values.put(RichMessagingData.KEY_STATUS, EventsLogApi.STATUS_RECEIVED);
+		return values;
+	}
+
+	private static HashSet<String> split(String list) {
+		return new HashSet<String>(Arrays.asList(list.split(";")));
+	}
+
+	public void testFlushOnStop() {
+		queue.insert("msg1", createMessage("msg1", CONTACT_A));
+		queue.insert("msg2", createMessage("msg2", CONTACT_B));
+		queue.updateStatus("msg1", EventsLogApi.STATUS_DISPLAYED);
+
+		// The pending writes are done by the calling thread
+		queue.stop();
+		assertEquals(Arrays.asList("insert msg1", "insert msg2", "update msg1"), provider.getWrites());
+		assertEquals(1, provider.batches);
+	}
+
+	public void testInsertThenUpdate() {
+		queue.updateStatus("msg1", EventsLogApi.STATUS_DELIVERED);
+		queue.insert("msg1", createMessage("msg1", CONTACT_A));
+		queue.insert("msg2", createMessage("msg2", CONTACT_A));
+		queue.flush();
+
+		// The inserts are written first, the number of messages is counted in the batch
+		assertEquals(Arrays.asList("insert msg1", "insert msg2", "update msg1"), provider.getWrites());
+		int first = provider.getValues(0).getAsInteger(RichMessagingData.KEY_NUMBER_MESSAGES);
+		assertEquals(first + 1, provider.getValues(1).getAsInteger(RichMessagingData.KEY_NUMBER_MESSAGES).intValue());
+		assertEquals(EventsLogApi.STATUS_DELIVERED, provider.getValues(2).getAsInteger(RichMessagingData.KEY_STATUS).intValue());
+	}
+
+	public void testStatusCoalescing() {
+		queue.updateStatus("msg1", EventsLogApi.STATUS_DELIVERED, CONTACT_A, RichMessagingData.KEY_IMDN_DELIVERED_LIST);
+		queue.updateStatus("msg1", EventsLogApi.STATUS_DELIVERED, CONTACT_B, RichMessagingData.KEY_IMDN_DELIVERED_LIST);
+		queue.updateStatus("msg1", EventsLogApi.STATUS_DISPLAYED, CONTACT_A, RichMessagingData.KEY_IMDN_DISPLAYED_LIST);
+		queue.updateStatus("msg2", EventsLogApi.STATUS_DELIVERED);
+		queue.updateStatus("msg2", EventsLogApi.STATUS_DISPLAYED);
+		queue.flush();
+
+		// One update per message with the last status and all the contacts
+		assertEquals(Arrays.asList("update msg1", "update msg2"), provider.getWrites());
+		ContentValues values = provider.getValues(0);
+		assertEquals(EventsLogApi.STATUS_DISPLAYED, values.getAsInteger(RichMessagingData.KEY_STATUS).intValue());
+		assertEquals(split(CONTACT_A + ";" + CONTACT_B), split(values.getAsString(RichMessagingData.KEY_IMDN_DELIVERED_LIST)));
+		assertEquals(CONTACT_A, values.getAsString(RichMessagingData.KEY_IMDN_DISPLAYED_LIST));
+		assertEquals(EventsLogApi.STATUS_DISPLAYED, provider.getValues(1).getAsInteger(RichMessagingData.KEY_STATUS).intValue());
+	}
+
+	public void testBatchFailure() {
+		provider.failBatch = true;
+		provider.failedMessage = "msg2";
+		queue.insert("msg1", createMessage("msg1", CONTACT_A));
+		queue.insert("msg2", createMessage("msg2", CONTACT_B));
+		queue.updateStatus("msg2", EventsLogApi.STATUS_DISPLAYED);
+		queue.flush();
+
+		// Each write is done separately, the update of the failed insert is kept
+		assertEquals(Arrays.asList("insert msg1"), provider.getWrites());
+
+		// The failed writes are done again in order
+		provider.failBatch = false;
+		provider.failedMessage = null;
+		queue.flush();
+		assertEquals(Arrays.asList("insert msg1", "insert msg2", "update msg2"), provider.getWrites());
+	}
+}
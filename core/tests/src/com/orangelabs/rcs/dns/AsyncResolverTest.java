@@ -0,0 +1,217 @@
+package com.orangelabs.rcs.dns;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.SocketTimeoutException;
+import java.util.HashSet;
+import java.util.Timer;
+import java.util.TimerTask;
+
+import org.xbill.DNS.ARecord;
+import org.xbill.DNS.AsyncResolver;
+import org.xbill.DNS.DClass;
+import org.xbill.DNS.Flags;
+import org.xbill.DNS.Lookup;
+import org.xbill.DNS.Message;
+import org.xbill.DNS.Name;
+import org.xbill.DNS.Record;
+import org.xbill.DNS.ResolverListener;
+import org.xbill.DNS.Section;
+import org.xbill.DNS.Type;
+
+import android.test.AndroidTestCase;
+
+import com.orangelabs.rcs.utils.logger.Logger;
+
+public class AsyncResolverTest extends AndroidTestCase {
+
+	private static final long DELAY = 100;
+
+	private Logger logger = Logger.getLogger(this.getClass().getName());
+
+	private StubDnsServer server;
+
+	private AsyncResolver resolver;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		server = new StubDnsServer();
+		server.start();
+		resolver = new AsyncResolver("127.0.0.1");
+		resolver.setPort(server.getPort());
+		resolver.setTimeout(5);
+	}
+
+	protected void tearDown() throws Exception {
+		server.close();
+		super.tearDown();
+	}
+
+	public void testLookup() throws Exception {
+		Lookup lookup = new Lookup("host1.test", Type.A);
+		lookup.setResolver(resolver);
+		lookup.setCache(null);
+		Record[] records = lookup.run();
+		assertEquals(Lookup.SUCCESSFUL, lookup.getResult());
+		assertEquals("10.0.0.1", ((ARecord)records[0]).getAddress().getHostAddress());
+	}
+
+	public void testBurst() throws Exception {
+		int count = 200;
+		Listener listener = new Listener();
+		int threads = Thread.activeCount();
+		long start = System.currentTimeMillis();
+		for (int i = 0; i < count; i++) {
+			Record question = Record.newRecord(Name.fromString("host" + i + ".test."), Type.A, DClass.IN);
+			resolver.sendAsync(Message.newQuery(question), listener);
+		}
+		int threadsDuringBurst = Thread.activeCount() - threads;
+		listener.waitFor(count, 5000);
+		long duration = System.currentTimeMillis() - start;
+
+		if (logger.isActivated()) {
+			logger.info(count + " queries answered in " + duration + "ms, " + threadsDuringBurst + " resolver threads");
+		}
+		assertEquals(count, listener.answers);
+		assertEquals(0, listener.errors);
+		assertTrue(listener.mismatches == 0);
+		assertTrue(threadsDuringBurst <= 1);
+
+		// The queries are spread over several source ports
+		assertTrue(server.getSourcePorts() > 1);
+	}
+
+	public void testRetransmission() throws Exception {
+		server.dropFirst = true;
+		Listener listener = new Listener();
+		Record question = Record.newRecord(Name.fromString("host7.test."), Type.A, DClass.IN);
+		resolver.sendAsync(Message.newQuery(question), listener);
+		listener.waitFor(1, 5000);
+		assertEquals(1, listener.answers);
+		assertEquals(0, listener.mismatches);
+	}
+
+	public void testTimeout() throws Exception {
+		server.silent = true;
+		resolver.setTimeout(0, 500);
+		try {
+			resolver.send(Message.newQuery(Record.newRecord(Name.fromString("host1.test."), Type.A, DClass.IN)));
+			fail("Timeout expected");
+		} catch(SocketTimeoutException e) {
+			// Expected
+		}
+	}
+
+	/**
+	 * Listener checking that each response matches its query
+	 */
+	private static class Listener implements ResolverListener {
+		int answers = 0;
+
+		int errors = 0;
+
+		int mismatches = 0;
+
+		public synchronized void receiveMessage(Object id, Message m) {
+			ARecord a = (ARecord)m.getSectionArray(Section.ANSWER)[0];
+			String host = m.getQuestion().getName().getLabelString(0);
+			String expected = "10.0." + (Integer.parseInt(host.substring(4)) / 256) + "." + (Integer.parseInt(host.substring(4)) % 256);
+			if (!a.getAddress().getHostAddress().equals(expected)) {
+				mismatches++;
+			}
+			answers++;
+			notifyAll();
+		}
+
+		public synchronized void handleException(Object id, Exception e) {
+			errors++;
+			notifyAll();
+		}
+
+		public synchronized void waitFor(int count, long timeout) throws InterruptedException {
+			long deadline = System.currentTimeMillis() + timeout;
+			while ((answers + errors < count) && (System.currentTimeMillis() < deadline)) {
+				wait(deadline - System.currentTimeMillis());
+			}
+		}
+	}
+
+	/**
+	 * DNS server answering "hostN.test" after a random delay, so out of order
+	 */
+	private static class StubDnsServer extends Thread {
+		private DatagramSocket socket;
+
+		volatile boolean silent = false;
+
+		volatile boolean dropFirst = false;
+
+		private boolean dropped = false;
+
+		private HashSet<Integer> ports = new HashSet<Integer>();
+
+		private Timer timer = new Timer(true);
+
+		public StubDnsServer() throws IOException {
+			socket = new DatagramSocket(0, InetAddress.getByName("127.0.0.1"));
+			setDaemon(true);
+		}
+
+		public int getPort() {
+			return socket.getLocalPort();
+		}
+
+		public synchronized int getSourcePorts() {
+			return ports.size();
+		}
+
+		public void close() {
+			timer.cancel();
+			socket.close();
+		}
+
+		public void run() {
+			while (true) {
+				try {
+					byte[] buffer = new byte[512];
+					final DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
+					socket.receive(packet);
+					synchronized(this) {
+						ports.add(packet.getPort());
+					}
+					if (silent || (dropFirst && !dropped)) {
+						dropped = true;
+						continue;
+					}
+					final Message query = new Message(packet.getData());
+					timer.schedule(new TimerTask() {
+						public void run() {
+							try {
+								byte[] data = answer(query).toWire();
+								socket.send(new DatagramPacket(data, data.length, packet.getSocketAddress()));
+							} catch(Exception e) {
+								// Closed
+							}
+						}
+					}, DELAY + (long)(Math.random() * DELAY));
+				} catch(IOException e) {
+					return;
+				}
+			}
+		}
+
+		private Message answer(Message query) throws Exception {
+			Message response = new Message(query.getHeader().getID());
+			response.getHeader().setFlag(Flags.QR);
+			response.getHeader().setFlag(Flags.AA);
+			Record question = query.getQuestion();
+			response.addRecord(question, Section.QUESTION);
+			int n = Integer.parseInt(question.getName().getLabelString(0).substring(4));
+			response.addRecord(new ARecord(question.getName(), DClass.IN, 60,
+					InetAddress.getByName("10.0." + (n / 256) + "." + (n % 256))), Section.ANSWER);
+			return response;
+		}
+	}
+}
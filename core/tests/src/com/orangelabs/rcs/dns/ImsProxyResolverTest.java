@@ -0,0 +1,233 @@
+package com.orangelabs.rcs.dns;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+
+import javax2.sip.ListeningPoint;
+
+import org.xbill.DNS.ARecord;
+import org.xbill.DNS.DClass;
+import org.xbill.DNS.Flags;
+import org.xbill.DNS.Message;
+import org.xbill.DNS.NAPTRRecord;
+import org.xbill.DNS.Name;
+import org.xbill.DNS.Rcode;
+import org.xbill.DNS.Record;
+import org.xbill.DNS.SRVRecord;
+import org.xbill.DNS.Section;
+import org.xbill.DNS.SimpleResolver;
+import org.xbill.DNS.Type;
+
+import android.test.AndroidTestCase;
+
+import com.orangelabs.rcs.core.ims.network.ImsProxyResolver;
+
+public class ImsProxyResolverTest extends AndroidTestCase {
+
+	private static final String DOMAIN = "ims.test";
+
+	private static final long DELAY = 100;
+
+	private StubDnsServer server;
+
+	private SimpleResolver resolver;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		server = new StubDnsServer();
+		server.start();
+		resolver = new SimpleResolver("127.0.0.1");
+		resolver.setPort(server.getPort());
+		resolver.setTimeout(2);
+	}
+
+	protected void tearDown() throws Exception {
+		server.close();
+		super.tearDown();
+	}
+
+	public void testParallelQueries() throws Exception {
+		// The NAPTR, SRV and A queries are sent without waiting for each other
+		ImsProxyResolver proxyResolver = new ImsProxyResolver(resolver, false);
+		ImsProxyResolver.Answer answer = proxyResolver.resolve(DOMAIN, 5060, ListeningPoint.TCP);
+		assertEquals("10.0.0.1", answer.ipAddress);
+		assertEquals(5062, answer.port);
+		assertTrue(server.getMaxPending() > 1);
+
+		// Cached answer, no new query
+		int queries = server.getQueryCount();
+		answer = proxyResolver.resolve(DOMAIN, 5060, ListeningPoint.TCP);
+		assertEquals("10.0.0.1", answer.ipAddress);
+		assertEquals(5062, answer.port);
+		assertEquals(queries, server.getQueryCount());
+		assertEquals(1, proxyResolver.getFreshCount());
+		assertEquals(1, proxyResolver.getResolutionCount());
+	}
+
+	public void testStaleWhileRevalidate() throws Exception {
+		server.ttl = 1;
+		ImsProxyResolver proxyResolver = new ImsProxyResolver(resolver, false);
+		assertEquals("10.0.0.1", proxyResolver.resolve(DOMAIN, 5060, ListeningPoint.TCP).ipAddress);
+
+		// The TTL expires and the proxy moves
+		Thread.sleep(1100);
+		server.proxyAddress = "10.0.0.2";
+
+		// The stale answer is returned immediately
+		long start = System.currentTimeMillis();
+		ImsProxyResolver.Answer answer = proxyResolver.resolve(DOMAIN, 5060, ListeningPoint.TCP);
+		assertTrue(System.currentTimeMillis() - start < DELAY);
+		assertEquals("10.0.0.1", answer.ipAddress);
+		assertEquals(1, proxyResolver.getStaleCount());
+
+		// Then refreshed in background
+		long deadline = System.currentTimeMillis() + 2000;
+		while (System.currentTimeMillis() < deadline) {
+			answer = proxyResolver.resolve(DOMAIN, 5060, ListeningPoint.TCP);
+			if (!answer.isExpired()) {
+				break;
+			}
+			Thread.sleep(50);
+		}
+		assertEquals("10.0.0.2", answer.ipAddress);
+		assertEquals(2, proxyResolver.getResolutionCount());
+	}
+
+	public void testInvalidate() throws Exception {
+		ImsProxyResolver proxyResolver = new ImsProxyResolver(resolver, false);
+		assertEquals("10.0.0.1", proxyResolver.resolve(DOMAIN, 5060, ListeningPoint.TCP).ipAddress);
+
+		server.proxyAddress = "10.0.0.3";
+		proxyResolver.invalidate(DOMAIN, 5060, ListeningPoint.TCP);
+		assertEquals("10.0.0.3", proxyResolver.resolve(DOMAIN, 5060, ListeningPoint.TCP).ipAddress);
+	}
+
+	public void testFallbackWithoutNaptr() throws Exception {
+		server.naptr = false;
+		ImsProxyResolver proxyResolver = new ImsProxyResolver(resolver, false);
+		ImsProxyResolver.Answer answer = proxyResolver.resolve(DOMAIN, 5060, ListeningPoint.TCP);
+		assertEquals("10.0.0.1", answer.ipAddress);
+		assertEquals(5062, answer.port);
+
+		// No SRV for UDP: direct A record
+		answer = proxyResolver.resolve(DOMAIN, 5060, ListeningPoint.UDP);
+		assertEquals("10.0.0.9", answer.ipAddress);
+		assertEquals(5060, answer.port);
+	}
+
+	public void testFallbackWithoutSrvTarget() throws Exception {
+		// The SRV target has no address: A record of the proxy with the default port
+		server.proxyAddress = null;
+		ImsProxyResolver proxyResolver = new ImsProxyResolver(resolver, false);
+		ImsProxyResolver.Answer answer = proxyResolver.resolve(DOMAIN, 5060, ListeningPoint.TCP);
+		assertEquals("10.0.0.9", answer.ipAddress);
+		assertEquals(5060, answer.port);
+	}
+
+	/**
+	 * DNS server answering each query after a delay
+	 */
+	private static class StubDnsServer extends Thread {
+		private DatagramSocket socket;
+
+		private int queries = 0;
+
+		private int pending = 0;
+
+		private int maxPending = 0;
+
+		volatile long ttl = 3600;
+
+		volatile boolean naptr = true;
+
+		volatile String proxyAddress = "10.0.0.1";
+
+		public StubDnsServer() throws IOException {
+			socket = new DatagramSocket(0, InetAddress.getByName("127.0.0.1"));
+			setDaemon(true);
+		}
+
+		public int getPort() {
+			return socket.getLocalPort();
+		}
+
+		public synchronized int getQueryCount() {
+			return queries;
+		}
+
+		public synchronized int getMaxPending() {
+			return maxPending;
+		}
+
+		private synchronized void answered() {
+			pending--;
+		}
+
+		public void close() {
+			socket.close();
+		}
+
+		public void run() {
+			while (true) {
+				try {
+					byte[] buffer = new byte[512];
+					final DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
+					socket.receive(packet);
+					synchronized(this) {
+						queries++;
+						pending++;
+						maxPending = Math.max(maxPending, pending);
+					}
+					final Message query = new Message(packet.getData());
+					new Thread() {
+						public void run() {
+							try {
+								Thread.sleep(DELAY);
+								byte[] data = answer(query).toWire();
+								answered();
+								socket.send(new DatagramPacket(data, data.length, packet.getSocketAddress()));
+							} catch(Exception e) {
+								// Closed
+							}
+						}
+					}.start();
+				} catch(IOException e) {
+					return;
+				}
+			}
+		}
+
+		private Message answer(Message query) throws Exception {
+			Message response = new Message(query.getHeader().getID());
+			response.getHeader().setFlag(Flags.QR);
+			response.getHeader().setFlag(Flags.AA);
+			Record question = query.getQuestion();
+			response.addRecord(question, Section.QUESTION);
+
+			Name name = question.getName();
+			Record record = null;
+			if (naptr && (question.getType() == Type.NAPTR) && name.equals(Name.fromString(DOMAIN + "."))) {
+				record = new NAPTRRecord(name, DClass.IN, ttl, 10, 10, "S", "SIP+D2T", "",
+						Name.fromString("_sip._tcp." + DOMAIN + "."));
+			} else
+			if ((question.getType() == Type.SRV) && name.equals(Name.fromString("_sip._tcp." + DOMAIN + "."))) {
+				record = new SRVRecord(name, DClass.IN, ttl, 0, 0, 5062,
+						Name.fromString("pcscf." + DOMAIN + "."));
+			} else
+			if ((question.getType() == Type.A) && name.equals(Name.fromString("pcscf." + DOMAIN + ".")) && (proxyAddress != null)) {
+				record = new ARecord(name, DClass.IN, ttl, InetAddress.getByName(proxyAddress));
+			} else
+			if ((question.getType() == Type.A) && name.equals(Name.fromString(DOMAIN + "."))) {
+				record = new ARecord(name, DClass.IN, ttl, InetAddress.getByName("10.0.0.9"));
+			}
+			if (record != null) {
+				response.addRecord(record, Section.ANSWER);
+			} else {
+				response.getHeader().setRcode(Rcode.NXDOMAIN);
+			}
+			return response;
+		}
+	}
+}
@@ -0,0 +1,151 @@
+package com.orangelabs.rcs.ft;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.impl.client.DefaultHttpClient;
+import org.apache.http.util.EntityUtils;
+
+import android.test.AndroidTestCase;
+
+import com.orangelabs.rcs.platform.network.HttpClientPool;
+import com.orangelabs.rcs.utils.logger.Logger;
+
+public class HttpClientPoolTest extends AndroidTestCase {
+
+	private Logger logger = Logger.getLogger(this.getClass().getName());
+
+	private KeepAliveServer server;
+
+	private HttpClientPool pool;
+
+	private String url;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		server = new KeepAliveServer();
+		server.start();
+		pool = new HttpClientPool();
+		url = "http://127.0.0.1:" + server.getPort() + "/file";
+	}
+
+	protected void tearDown() throws Exception {
+		pool.closeIdleConnections();
+		server.close();
+		super.tearDown();
+	}
+
+	public void testConsecutiveTransfersReuseConnection() throws Exception {
+		// Each transfer session creates its own client
+		for (int i = 0; i < 3; i++) {
+			DefaultHttpClient client = pool.createHttpClient(HttpClientPool.createParams());
+			HttpResponse response = client.execute(new HttpGet(url));
+			assertEquals(200, response.getStatusLine().getStatusCode());
+			assertEquals("hello", EntityUtils.toString(response.getEntity()));
+		}
+
+		if (logger.isActivated()) {
+			logger.info(pool.toString());
+		}
+		assertEquals(1, server.getConnectionCount());
+		assertEquals(1, pool.getConnectionCount());
+		assertEquals(2, pool.getReuseCount());
+	}
+
+	public void testConsumedResponseReleasesConnection() throws Exception {
+		DefaultHttpClient client = pool.createHttpClient(HttpClientPool.createParams());
+		HttpResponse response = client.execute(new HttpGet(url));
+		HttpClientPool.consume(response);
+		response = client.execute(new HttpGet(url));
+		HttpClientPool.consume(response);
+		assertEquals(1, server.getConnectionCount());
+		assertEquals(1, pool.getReuseCount());
+	}
+
+	public void testCloseIdleConnections() throws Exception {
+		DefaultHttpClient client = pool.createHttpClient(HttpClientPool.createParams());
+		HttpClientPool.consume(client.execute(new HttpGet(url)));
+		pool.closeIdleConnections();
+		HttpClientPool.consume(client.execute(new HttpGet(url)));
+		assertEquals(2, server.getConnectionCount());
+		assertEquals(0, pool.getReuseCount());
+	}
+
+	/**
+	 * HTTP server keeping the connections alive
+	 */
+	private static class KeepAliveServer extends Thread {
+		private ServerSocket serverSocket;
+
+		private int connections = 0;
+
+		public KeepAliveServer() throws IOException {
+			serverSocket = new ServerSocket(0, 10, InetAddress.getByName("127.0.0.1"));
+			setDaemon(true);
+		}
+
+		public int getPort() {
+			return serverSocket.getLocalPort();
+		}
+
+		public synchronized int getConnectionCount() {
+			return connections;
+		}
+
+		public void close() throws IOException {
+			serverSocket.close();
+		}
+
+		public void run() {
+			while (true) {
+				try {
+					final Socket socket = serverSocket.accept();
+					synchronized(this) {
+						connections++;
+					}
+					new Thread() {
+						public void run() {
+							serve(socket);
+						}
+					}.start();
+				} catch(IOException e) {
+					return;
+				}
+			}
+		}
+
+		private void serve(Socket socket) {
+			try {
+				BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), "US-ASCII"));
+				OutputStream out = socket.getOutputStream();
+				String line;
+				while ((line = in.readLine()) != null) {
+					if (line.length() > 0) {
+						continue;
+					}
+					out.write(("HTTP/1.1 200 OK\r\n" +
+							"Content-Length: 5\r\n" +
+							"Keep-Alive: timeout=5\r\n" +
+							"\r\n" +
+							"hello").getBytes("US-ASCII"));
+					out.flush();
+				}
+			} catch(IOException e) {
+				// Closed
+			} finally {
+				try {
+					socket.close();
+				} catch(IOException e) {
+					// Nothing to do
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,285 @@
+package com.orangelabs.rcs.ft;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Arrays;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+import com.orangelabs.rcs.core.ims.service.im.filetransfer.http.HttpRangeDownloader;
+
+public class HttpRangeDownloaderTest extends TestCase {
+
+	private static final int FILE_SIZE = 2 * 1024 * 1024;
+
+	// Bandwidth of each connection of the server
+	private static final int BYTES_PER_SECOND = 2 * 1024 * 1024;
+
+	private byte[] data;
+
+	private File file;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		data = new byte[FILE_SIZE];
+		new Random(1).nextBytes(data);
+		file = File.createTempFile("download", ".bin");
+	}
+
+	protected void tearDown() throws Exception {
+		file.delete();
+		super.tearDown();
+	}
+
+	public void testParallelDownload() throws Exception {
+		FileServer server = new FileServer(data, true);
+		server.start();
+		try {
+			// One connection per segment, each one serving its own range
+			HttpRangeDownloader downloader = new HttpRangeDownloader(server.getUrl(), file, FILE_SIZE, null, new Listener());
+			assertTrue(downloader.download());
+			assertTrue(Arrays.equals(data, readFile()));
+			server.waitIdle();
+			assertEquals(HttpRangeDownloader.DEFAULT_MAX_SEGMENTS, server.maxConnections);
+			assertEquals(FILE_SIZE, server.served);
+
+			// A single request when the segments are limited to one
+			server.reset();
+			file.delete();
+			downloader = new HttpRangeDownloader(server.getUrl(), file, FILE_SIZE, null, new Listener());
+			downloader.setMaxSegments(1);
+			assertTrue(downloader.download());
+			assertTrue(Arrays.equals(data, readFile()));
+			server.waitIdle();
+			assertEquals(1, server.maxConnections);
+			assertEquals(FILE_SIZE, server.served);
+		} finally {
+			server.close();
+		}
+	}
+
+	public void testResume() throws Exception {
+		FileServer server = new FileServer(data, true);
+		server.start();
+		try {
+			// Interrupted after a part of the file
+			Listener listener = new Listener();
+			listener.cancelAt = System.currentTimeMillis() + 200;
+			HttpRangeDownloader downloader = new HttpRangeDownloader(server.getUrl(), file, FILE_SIZE, null, listener);
+			assertFalse(downloader.download());
+			String segments = listener.segments;
+			assertNotNull(segments);
+			assertEquals(segments, downloader.getSegments());
+			assertEquals(HttpRangeDownloader.DEFAULT_MAX_SEGMENTS, segments.split(";").length);
+			long downloaded = downloader.getDownloadedSize();
+			assertTrue(downloaded > 0);
+			assertTrue(downloaded < FILE_SIZE);
+
+			// Resumed from the saved segments by a new downloader
+			server.waitIdle();
+			long served = server.served;
+			downloader = new HttpRangeDownloader(server.getUrl(), file, FILE_SIZE, null, new Listener());
+			downloader.setSegments(segments);
+			assertEquals(downloaded, downloader.getDownloadedSize());
+			assertTrue(downloader.download());
+			assertTrue(Arrays.equals(data, readFile()));
+
+			// Only the missing bytes are requested again
+			assertEquals(FILE_SIZE - downloaded, server.served - served);
+		} finally {
+			server.close();
+		}
+	}
+
+	public void testRangeNotSupported() throws Exception {
+		FileServer server = new FileServer(data, false);
+		server.start();
+		try {
+			HttpRangeDownloader downloader = new HttpRangeDownloader(server.getUrl(), file, FILE_SIZE, null, new Listener());
+			assertTrue(downloader.download());
+			assertTrue(Arrays.equals(data, readFile()));
+			assertEquals("0-" + (FILE_SIZE - 1) + "-" + FILE_SIZE, downloader.getSegments());
+		} finally {
+			server.close();
+		}
+	}
+
+	public void testContentRangeMismatch() throws Exception {
+		FileServer server = new FileServer(data, true);
+		server.shiftedRanges = true;
+		server.start();
+		try {
+			// The parts sent from the start of the file are not written at the position of the segments
+			HttpRangeDownloader downloader = new HttpRangeDownloader(server.getUrl(), file, FILE_SIZE, null, new Listener());
+			assertTrue(downloader.download());
+			assertTrue(Arrays.equals(data, readFile()));
+			assertEquals("0-" + (FILE_SIZE - 1) + "-" + FILE_SIZE, downloader.getSegments());
+		} finally {
+			server.close();
+		}
+	}
+
+	public void testInvalidSegments() throws Exception {
+		HttpRangeDownloader downloader = new HttpRangeDownloader("http://127.0.0.1/", file, FILE_SIZE, null, new Listener());
+		downloader.setSegments("0-1000-10;2000-" + (FILE_SIZE - 1) + "-2000");
+		assertNull(downloader.getSegments());
+		downloader.setSegments("0-1000-10;1001-" + (FILE_SIZE - 1) + "-2000");
+		assertEquals(2000 - 1001 + 10, downloader.getDownloadedSize());
+	}
+
+	private byte[] readFile() throws IOException {
+		byte[] result = new byte[(int)file.length()];
+		FileInputStream in = new FileInputStream(file);
+		int offset = 0;
+		while (offset < result.length) {
+			offset += in.read(result, offset, result.length - offset);
+		}
+		in.close();
+		return result;
+	}
+
+	private static class Listener implements HttpRangeDownloader.Listener {
+		long cancelAt = Long.MAX_VALUE;
+		volatile String segments = null;
+
+		public boolean isCancelled() {
+			return System.currentTimeMillis() >= cancelAt;
+		}
+
+		public void onProgress(long currentSize, long totalSize) {
+			// Nothing to do
+		}
+
+		public void onSegmentsUpdated(String value) {
+			segments = value;
+		}
+	}
+
+	/**
+	 * HTTP stand-in server with a throttled bandwidth per connection
+	 */
+	private static class FileServer extends Thread {
+		private ServerSocket socket;
+		private byte[] data;
+		private boolean rangeSupported;
+		volatile boolean shiftedRanges = false;
+		private int connections = 0;
+		volatile int maxConnections = 0;
+		volatile long served = 0;
+
+		FileServer(byte[] data, boolean rangeSupported) throws IOException {
+			this.socket = new ServerSocket(0);
+			this.data = data;
+			this.rangeSupported = rangeSupported;
+		}
+
+		String getUrl() {
+			return "http://127.0.0.1:" + socket.getLocalPort() + "/file";
+		}
+
+		void close() throws IOException {
+			socket.close();
+		}
+
+		public void run() {
+			try {
+				while (true) {
+					final Socket client = socket.accept();
+					new Thread() {
+						public void run() {
+							serve(client);
+						}
+					}.start();
+				}
+			} catch(IOException e) {
+				// Server closed
+			}
+		}
+
+		private synchronized void connected(int delta) {
+			connections += delta;
+			maxConnections = Math.max(maxConnections, connections);
+			notifyAll();
+		}
+
+		synchronized void reset() {
+			maxConnections = connections;
+			served = 0;
+		}
+
+		synchronized void waitIdle() throws InterruptedException {
+			while (connections > 0) {
+				wait();
+			}
+		}
+
+		private synchronized void addServed(int count) {
+			served += count;
+		}
+
+		private void serve(Socket client) {
+			connected(1);
+			try {
+				String request = readHeaders(client.getInputStream());
+				int start = 0;
+				int end = data.length - 1;
+				String response;
+				int index = request.toLowerCase().indexOf("range: bytes=");
+				if (rangeSupported && (index != -1)) {
+					String range = request.substring(index + 13, request.indexOf("\r\n", index));
+					start = Integer.parseInt(range.substring(0, range.indexOf('-')));
+					end = Integer.parseInt(range.substring(range.indexOf('-') + 1));
+					if (shiftedRanges) {
+						// Part of the same length from the start of the file
+						end -= start;
+						start = 0;
+					}
+					response = "HTTP/1.1 206 Partial Content\r\nContent-Range: bytes " + start + "-" + end + "/" + data.length + "\r\n";
+				} else {
+					response = "HTTP/1.1 200 OK\r\n";
+				}
+				response += "Content-Length: " + (end - start + 1) + "\r\nConnection: close\r\n\r\n";
+				OutputStream out = client.getOutputStream();
+				out.write(response.getBytes());
+
+				// 16 KB every 16 KB / BYTES_PER_SECOND seconds
+				int chunk = 16 * 1024;
+				long delay = chunk * 1000L / BYTES_PER_SECOND;
+				for(int position = start; position <= end; position += chunk) {
+					int length = Math.min(chunk, end - position + 1);
+					out.write(data, position, length);
+					out.flush();
+					addServed(length);
+					Thread.sleep(delay);
+				}
+			} catch(Exception e) {
+				// Connection closed by the client
+			} finally {
+				connected(-1);
+				try {
+					client.close();
+				} catch(IOException e) {
+					// Nothing to do
+				}
+			}
+		}
+
+		private String readHeaders(InputStream in) throws IOException {
+			StringBuilder headers = new StringBuilder();
+			while (!headers.toString().endsWith("\r\n\r\n")) {
+				int c = in.read();
+				if (c == -1) {
+					break;
+				}
+				headers.append((char)c);
+			}
+			return headers.toString();
+		}
+	}
+}
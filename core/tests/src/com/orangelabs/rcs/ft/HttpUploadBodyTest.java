@@ -0,0 +1,275 @@
+package com.orangelabs.rcs.ft;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URL;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+import android.test.suitebuilder.annotation.LargeTest;
+
+import com.orangelabs.rcs.core.ims.service.im.filetransfer.http.HttpUploadBody;
+import com.orangelabs.rcs.utils.Benchmark;
+
+public class HttpUploadBodyTest extends TestCase {
+
+	private static final int FILE_SIZE = 4 * 1024 * 1024;
+
+	private File file;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		byte[] data = new byte[FILE_SIZE];
+		new Random(1).nextBytes(data);
+		file = File.createTempFile("upload", ".bin");
+		FileOutputStream out = new FileOutputStream(file);
+		out.write(data);
+		out.close();
+	}
+
+	protected void tearDown() throws Exception {
+		file.delete();
+		super.tearDown();
+	}
+
+	public void testMultipartFraming() throws Exception {
+		byte[] thumbnail = new byte[] { 1, 2, 3 };
+		HttpUploadBody body = new HttpUploadBody("boundary1");
+		body.addPart("tid", null, "text/plain", "1234".getBytes());
+		body.addPart("Thumbnail", "thumb_a.bin", "image/jpeg", thumbnail);
+		body.addFilePart("File", "a.bin", "application/octet-stream", file);
+		body.addClosingBoundary();
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		Progress progress = new Progress();
+		assertTrue(body.writeTo(out, progress));
+		byte[] result = out.toByteArray();
+		assertEquals(body.getContentLength(), result.length);
+
+		String start = new String(result, 0, 300, "ISO-8859-1");
+		assertTrue(start.startsWith("--boundary1\r\n" +
+				"Content-Disposition: form-data; name=\"tid\"\r\n" +
+				"Content-Type: text/plain\r\n" +
+				"Content-Length: 4\r\n\r\n1234\r\n" +
+				"--boundary1\r\n" +
+				"Content-Disposition: form-data; name=\"Thumbnail\"; filename=\"thumb_a.bin\"\r\n"));
+		assertTrue(new String(result, result.length - 15, 15, "ISO-8859-1").endsWith("\r\n--boundary1--"));
+
+		// Progress is reported at a bounded frequency, the last one for the whole file
+		assertEquals(FILE_SIZE, progress.current);
+		assertTrue(progress.count < FILE_SIZE / HttpUploadBody.BUFFER_SIZE);
+	}
+
+	public void testRemainingData() throws Exception {
+		HttpUploadBody body = new HttpUploadBody(null);
+		body.addFile(file, FILE_SIZE - 1000);
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		assertTrue(body.writeTo(out, new Progress()));
+		assertEquals(1000, body.getContentLength());
+		assertEquals(1000, out.size());
+	}
+
+	public void testCancel() throws Exception {
+		HttpUploadBody body = new HttpUploadBody("boundary1");
+		body.addFilePart("File", "a.bin", "application/octet-stream", file);
+		body.addClosingBoundary();
+		Progress progress = new Progress();
+		progress.cancelled = true;
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		assertFalse(body.writeTo(out, progress));
+		assertTrue(out.size() < body.getContentLength());
+	}
+
+	public void testFixedLengthUpload() throws Exception {
+		UploadServer server = new UploadServer();
+		server.start();
+		try {
+			HttpUploadBody body = new HttpUploadBody("boundary1");
+			body.addFilePart("File", "a.bin", "application/octet-stream", file);
+			body.addClosingBoundary();
+			URL url = new URL("http://127.0.0.1:" + server.socket.getLocalPort() + "/");
+			HttpURLConnection connection = (HttpURLConnection)url.openConnection();
+			connection.setDoOutput(true);
+			connection.setRequestMethod("POST");
+			connection.setFixedLengthStreamingMode((int)body.getContentLength());
+			OutputStream out = connection.getOutputStream();
+			assertTrue(body.writeTo(out, new Progress()));
+			out.close();
+			assertEquals(200, connection.getResponseCode());
+			connection.disconnect();
+
+			// The body is streamed with its length, not buffered nor chunked
+			assertFalse(server.chunked);
+			assertEquals(body.getContentLength(), server.contentLength);
+			assertEquals(body.getContentLength(), server.received);
+		} finally {
+			server.socket.close();
+		}
+	}
+
+	@LargeTest
+	public void testBenchmarkUpload() throws Exception {
+		final UploadServer server = new UploadServer();
+		server.start();
+		try {
+			final URL url = new URL("http://127.0.0.1:" + server.socket.getLocalPort() + "/");
+			Benchmark benchmark = new Benchmark("Upload of " + FILE_SIZE + " bytes", 5);
+			benchmark.measure("streamed", new Benchmark.Task() {
+				public void run(int i) throws Exception {
+					HttpUploadBody body = new HttpUploadBody("boundary1");
+					body.addFilePart("File", "a.bin", "application/octet-stream", file);
+					body.addClosingBoundary();
+					HttpURLConnection connection = (HttpURLConnection)url.openConnection();
+					connection.setDoOutput(true);
+					connection.setRequestMethod("POST");
+					connection.setFixedLengthStreamingMode((int)body.getContentLength());
+					OutputStream out = connection.getOutputStream();
+					body.writeTo(out, new Progress());
+					out.close();
+					assertEquals(200, connection.getResponseCode());
+					connection.disconnect();
+					assertEquals(body.getContentLength(), server.received);
+				}
+			});
+			benchmark.measure("with 10 KB chunks", new Benchmark.Task() {
+				public void run(int i) throws Exception {
+					// Previous upload: a new buffer for each chunk, body buffered by the connection
+					HttpURLConnection connection = (HttpURLConnection)url.openConnection();
+					connection.setDoOutput(true);
+					connection.setRequestMethod("POST");
+					DataOutputStream out = new DataOutputStream(connection.getOutputStream());
+					FileInputStream in = new FileInputStream(file);
+					int size = Math.min(in.available(), 10 * 1024);
+					byte[] buffer = new byte[size];
+					int n = in.read(buffer, 0, size);
+					while (n > 0) {
+						out.write(buffer, 0, n);
+						size = Math.min(in.available(), 10 * 1024);
+						buffer = new byte[size];
+						n = in.read(buffer, 0, size);
+					}
+					in.close();
+					out.close();
+					assertEquals(200, connection.getResponseCode());
+					connection.disconnect();
+					assertEquals(FILE_SIZE, server.received);
+				}
+			});
+			benchmark.log();
+		} finally {
+			server.socket.close();
+		}
+	}
+
+	private static class Progress implements HttpUploadBody.Listener {
+		boolean cancelled = false;
+		long current = 0;
+		int count = 0;
+
+		public boolean isCancelled() {
+			return cancelled;
+		}
+
+		public void onProgress(long currentSize, long totalSize) {
+			current = currentSize;
+			count++;
+		}
+	}
+
+	/**
+	 * HTTP stand-in server reading the request body and answering 200 OK
+	 */
+	private static class UploadServer extends Thread {
+		ServerSocket socket;
+		volatile long received = 0;
+		volatile long contentLength = -1;
+		volatile boolean chunked = false;
+
+		UploadServer() throws IOException {
+			socket = new ServerSocket(0);
+		}
+
+		public void run() {
+			try {
+				while (true) {
+					Socket client = socket.accept();
+					InputStream in = client.getInputStream();
+					received = readRequest(in);
+					client.getOutputStream().write("HTTP/1.1 200 OK\r\nContent-Length: 0\r\nConnection: close\r\n\r\n".getBytes());
+					client.close();
+				}
+			} catch(IOException e) {
+				// Server closed
+			}
+		}
+
+		private long readRequest(InputStream in) throws IOException {
+			StringBuilder headers = new StringBuilder();
+			while (!headers.toString().endsWith("\r\n\r\n")) {
+				int c = in.read();
+				if (c == -1) {
+					return 0;
+				}
+				headers.append((char)c);
+			}
+			String lower = headers.toString().toLowerCase();
+			byte[] buffer = new byte[64 * 1024];
+			long count = 0;
+			int index = lower.indexOf("content-length:");
+			chunked = (index == -1);
+			if (index != -1) {
+				long length = Long.parseLong(lower.substring(index + 15, lower.indexOf("\r\n", index)).trim());
+				contentLength = length;
+				while (count < length) {
+					int n = in.read(buffer, 0, (int)Math.min(buffer.length, length - count));
+					if (n == -1) {
+						break;
+					}
+					count += n;
+				}
+			} else {
+				// Chunked body
+				while (true) {
+					String line = readLine(in);
+					int chunkSize = Integer.parseInt(line.trim(), 16);
+					if (chunkSize == 0) {
+						readLine(in);
+						break;
+					}
+					int remaining = chunkSize;
+					while (remaining > 0) {
+						int n = in.read(buffer, 0, Math.min(buffer.length, remaining));
+						if (n == -1) {
+							return count;
+						}
+						remaining -= n;
+					}
+					count += chunkSize;
+					readLine(in);
+				}
+			}
+			return count;
+		}
+
+		private String readLine(InputStream in) throws IOException {
+			StringBuilder line = new StringBuilder();
+			int c;
+			while (((c = in.read()) != -1) && (c != '\n')) {
+				if (c != '\r') {
+					line.append((char)c);
+				}
+			}
+			return line.toString();
+		}
+	}
+}
@@ -0,0 +1,310 @@
+package com.orangelabs.rcs.presence;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Hashtable;
+
+import android.test.AndroidTestCase;
+
+import com.orangelabs.rcs.core.ims.protocol.http.HttpGetRequest;
+import com.orangelabs.rcs.core.ims.protocol.http.HttpPutRequest;
+import com.orangelabs.rcs.core.ims.protocol.http.HttpRequest;
+import com.orangelabs.rcs.core.ims.protocol.http.HttpResponse;
+import com.orangelabs.rcs.core.ims.service.presence.xdm.XcapClient;
+import com.orangelabs.rcs.platform.network.NetworkFactory;
+import com.orangelabs.rcs.utils.logger.Logger;
+
+public class XcapClientTest extends AndroidTestCase {
+
+	private static final String USER = "sip%3A%2B33600000000%40ims.test";
+
+	private static final String DIRECTORY = "/org.openmobilealliance.xcap-directory/users/" + USER + "/directory.xml";
+
+	private static final String LISTS = "/resource-lists/users/" + USER + "/index/~~/resource-lists/list%5B@name=%22";
+
+	private static final String[] INITIAL_DOCUMENTS = {
+		LISTS + "rcs%22%5D",
+		LISTS + "rcs_blockedcontacts%22%5D",
+		LISTS + "rcs_revokedcontacts%22%5D"
+	};
+
+	private Logger logger = Logger.getLogger(this.getClass().getName());
+
+	private StubXdmServer server;
+
+	private String serverAddr;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		NetworkFactory.loadFactory("com.orangelabs.rcs.platform.network.AndroidNetworkFactory");
+		server = new StubXdmServer();
+		server.start();
+		serverAddr = "http://127.0.0.1:" + server.getPort() + "/services";
+		server.putDocument(DIRECTORY, "<xcap-directory/>");
+		for (int i = 0; i < INITIAL_DOCUMENTS.length; i++) {
+			server.putDocument(INITIAL_DOCUMENTS[i], "<list name=\"" + i + "\"/>");
+		}
+	}
+
+	protected void tearDown() throws Exception {
+		server.close();
+		super.tearDown();
+	}
+
+	public void testFewerRoundTrips() throws Exception {
+		// One connection and one authentication challenge per request, as done before
+		for (int i = 0; i < INITIAL_DOCUMENTS.length + 1; i++) {
+			String url = (i == 0) ? DIRECTORY : INITIAL_DOCUMENTS[i - 1];
+			XcapClient client = createClient();
+			assertEquals(200, client.send(new HttpGetRequest(url), null).getResponseCode());
+			client.close();
+		}
+		int oldConnections = server.getConnectionCount();
+		int oldRequests = server.getRequestCount();
+		server.resetCounters();
+
+		// Persistent connection, then the initial documents pipelined
+		XcapClient client = createClient();
+		assertEquals(200, client.send(new HttpGetRequest(DIRECTORY), null).getResponseCode());
+		HttpRequest[] requests = new HttpRequest[INITIAL_DOCUMENTS.length];
+		for (int i = 0; i < requests.length; i++) {
+			requests[i] = new HttpGetRequest(INITIAL_DOCUMENTS[i]);
+		}
+		HttpResponse[] responses = client.send(requests, new String[requests.length]);
+		for (int i = 0; i < responses.length; i++) {
+			assertEquals(200, responses[i].getResponseCode());
+			assertEquals("<list name=\"" + i + "\"/>", new String(responses[i].getContent(), "UTF-8"));
+		}
+		client.close();
+
+		if (logger.isActivated()) {
+			logger.info("Before: " + oldConnections + " connections, " + oldRequests + " requests; after: " +
+					server.getConnectionCount() + " connections, " + server.getRequestCount() + " requests, " +
+					client.toString());
+		}
+		assertEquals(4, oldConnections);
+		assertEquals(8, oldRequests);
+		assertEquals(1, server.getConnectionCount());
+		assertEquals(5, server.getRequestCount());
+		assertEquals(3, client.getRoundTripCount());
+	}
+
+	public void testConditionalGet() throws Exception {
+		XcapClient client = createClient();
+		HttpResponse response = client.send(new HttpGetRequest(INITIAL_DOCUMENTS[0]), null);
+		assertEquals(200, response.getResponseCode());
+		String etag = response.getHeader("etag");
+		assertNotNull(etag);
+		etag = etag.substring(1, etag.length() - 1);
+
+		// Not modified
+		response = client.send(new HttpGetRequest(INITIAL_DOCUMENTS[0]), etag);
+		assertEquals(304, response.getResponseCode());
+		assertNull(response.getContent());
+
+		// Modified by a PUT with the etag
+		response = client.send(new HttpPutRequest(INITIAL_DOCUMENTS[0], "<list/>", "application/xcap-el+xml"), etag);
+		assertEquals(200, response.getResponseCode());
+		response = client.send(new HttpGetRequest(INITIAL_DOCUMENTS[0]), etag);
+		assertEquals(200, response.getResponseCode());
+		assertEquals("<list/>", new String(response.getContent(), "UTF-8"));
+		assertEquals(1, client.getConnectionCount());
+		client.close();
+	}
+
+	public void testReconnectWhenServerClosesConnection() throws Exception {
+		XcapClient client = createClient();
+		assertEquals(200, client.send(new HttpGetRequest(DIRECTORY), null).getResponseCode());
+
+		// The server drops the idle connection
+		server.dropConnections();
+		assertEquals(200, client.send(new HttpGetRequest(INITIAL_DOCUMENTS[0]), null).getResponseCode());
+		assertEquals(2, client.getConnectionCount());
+		client.close();
+	}
+
+	public void testPipelineWithConnectionClose() throws Exception {
+		server.closeAfter = 2;
+		XcapClient client = createClient();
+		HttpRequest[] requests = new HttpRequest[INITIAL_DOCUMENTS.length];
+		for (int i = 0; i < requests.length; i++) {
+			requests[i] = new HttpGetRequest(INITIAL_DOCUMENTS[i]);
+		}
+		HttpResponse[] responses = client.send(requests, new String[requests.length]);
+		for (int i = 0; i < responses.length; i++) {
+			assertEquals(200, responses[i].getResponseCode());
+		}
+		client.close();
+	}
+
+	private XcapClient createClient() {
+		return new XcapClient(serverAddr, "user", "password", "sip:+33600000000@ims.test");
+	}
+
+	/**
+	 * XDM server stand-in: documents with etags, digest challenge of the
+	 * requests without credentials, pipelined requests
+	 */
+	private static class StubXdmServer extends Thread {
+		private ServerSocket serverSocket;
+
+		private Hashtable<String, String> documents = new Hashtable<String, String>();
+
+		private Hashtable<String, Integer> versions = new Hashtable<String, Integer>();
+
+		private Hashtable<Socket, Socket> sockets = new Hashtable<Socket, Socket>();
+
+		private int connections = 0;
+
+		private int requests = 0;
+
+		volatile int closeAfter = -1;
+
+		public StubXdmServer() throws IOException {
+			serverSocket = new ServerSocket(0, 10, InetAddress.getByName("127.0.0.1"));
+			setDaemon(true);
+		}
+
+		public int getPort() {
+			return serverSocket.getLocalPort();
+		}
+
+		public synchronized void putDocument(String url, String content) {
+			documents.put("/services" + url, content);
+			Integer version = versions.get("/services" + url);
+			versions.put("/services" + url, (version == null) ? 1 : version + 1);
+		}
+
+		public synchronized int getConnectionCount() {
+			return connections;
+		}
+
+		public synchronized int getRequestCount() {
+			return requests;
+		}
+
+		public synchronized void resetCounters() {
+			connections = 0;
+			requests = 0;
+		}
+
+		public void dropConnections() throws IOException {
+			for (Socket socket : sockets.keySet()) {
+				socket.close();
+			}
+		}
+
+		public void close() throws IOException {
+			serverSocket.close();
+			dropConnections();
+		}
+
+		public void run() {
+			while (true) {
+				try {
+					final Socket socket = serverSocket.accept();
+					synchronized(this) {
+						connections++;
+					}
+					sockets.put(socket, socket);
+					new Thread() {
+						public void run() {
+							serve(socket);
+						}
+					}.start();
+				} catch(IOException e) {
+					return;
+				}
+			}
+		}
+
+		private void serve(Socket socket) {
+			try {
+				InputStream in = new BufferedInputStream(socket.getInputStream());
+				OutputStream out = socket.getOutputStream();
+				int served = 0;
+				String line;
+				while ((line = readLine(in)) != null) {
+					String[] requestLine = line.split(" ");
+					Hashtable<String, String> headers = new Hashtable<String, String>();
+					while ((line = readLine(in)).length() > 0) {
+						int index = line.indexOf(':');
+						headers.put(line.substring(0, index).trim().toLowerCase(), line.substring(index + 1).trim());
+					}
+					int length = Integer.parseInt(headers.get("content-length"));
+					byte[] body = new byte[length];
+					for (int pos = 0; pos < length; ) {
+						pos += in.read(body, pos, length - pos);
+					}
+					synchronized(this) {
+						requests++;
+					}
+					served++;
+					boolean close = (served == closeAfter);
+					out.write(answer(requestLine[0], requestLine[1], headers, new String(body, "UTF-8"), close).getBytes("UTF-8"));
+					out.flush();
+					if (close) {
+						break;
+					}
+				}
+			} catch(IOException e) {
+				// Closed
+			} finally {
+				sockets.remove(socket);
+				try {
+					socket.close();
+				} catch(IOException e) {
+					// Nothing to do
+				}
+			}
+		}
+
+		private synchronized String answer(String method, String url, Hashtable<String, String> headers,
+				String body, boolean close) {
+			String connection = close ? "Connection: close\r\n" : "";
+			String auth = headers.get("authorization");
+			if ((auth == null) || !auth.startsWith("Digest")) {
+				return "HTTP/1.1 401 Unauthorized\r\n" +
+						"WWW-Authenticate: Digest realm=\"ims.test\", nonce=\"abcdef\", qop=\"auth\"\r\n" +
+						connection +
+						"Content-Length: 0\r\n\r\n";
+			}
+			String content = documents.get(url);
+			String etag = (content != null) ? "\"v" + versions.get(url) + "\"" : null;
+			if (method.equals("PUT")) {
+				String ifMatch = headers.get("if-match");
+				if ((ifMatch != null) && !ifMatch.equals(etag)) {
+					return "HTTP/1.1 412 Precondition Failed\r\n" + connection + "Content-Length: 0\r\n\r\n";
+				}
+				putDocument(url.substring("/services".length()), body);
+				return "HTTP/1.1 200 OK\r\nETag: \"v" + versions.get(url) + "\"\r\n" + connection +
+						"Content-Length: 0\r\n\r\n";
+			}
+			if (content == null) {
+				return "HTTP/1.1 404 Not Found\r\n" + connection + "Content-Length: 0\r\n\r\n";
+			}
+			if (etag.equals(headers.get("if-none-match"))) {
+				return "HTTP/1.1 304 Not Modified\r\nETag: " + etag + "\r\n" + connection + "\r\n";
+			}
+			return "HTTP/1.1 200 OK\r\nETag: " + etag + "\r\n" + connection +
+					"Content-Type: application/xml\r\nContent-Length: " + content.length() + "\r\n\r\n" + content;
+		}
+
+		private String readLine(InputStream in) throws IOException {
+			StringBuilder line = new StringBuilder();
+			int ch;
+			while ((ch = in.read()) != -1) {
+				if (ch == '\n') {
+					return line.toString().trim();
+				}
+				line.append((char)ch);
+			}
+			return (line.length() > 0) ? line.toString() : null;
+		}
+	}
+}
@@ -0,0 +1,236 @@
+package com.orangelabs.rcs.provider.eventlogs;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.MatrixCursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.test.AndroidTestCase;
+
+import com.orangelabs.rcs.provider.RichProviderHelper;
+import com.orangelabs.rcs.provider.ipcall.IPCallData;
+import com.orangelabs.rcs.provider.ipcall.IPCallProvider;
+import com.orangelabs.rcs.provider.messaging.RichMessagingData;
+import com.orangelabs.rcs.provider.messaging.RichMessagingProvider;
+import com.orangelabs.rcs.provider.sharing.RichCallData;
+import com.orangelabs.rcs.provider.sharing.RichCallProvider;
+import com.orangelabs.rcs.service.api.client.eventslog.EventsLogApi;
+
+public class EventLogPageTest extends AndroidTestCase {
+
+	private static final int MODE = EventsLogApi.MODE_IPCALL_RC_CHAT_FT;
+
+	private SQLiteDatabase db;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		RichProviderHelper.createInstance(getContext());
+		db = SQLiteDatabase.create(null);
+		RichProviderHelper.getInstance().onCreate(db);
+	}
+
+	protected void tearDown() throws Exception {
+		db.close();
+		super.tearDown();
+	}
+
+	private void addMessage(String sessionId, long date) {
+		ContentValues values = new ContentValues();
+		values.put(RichMessagingData.KEY_TYPE, EventsLogApi.TYPE_INCOMING_CHAT_MESSAGE);
+		values.put(RichMessagingData.KEY_CHAT_SESSION_ID, sessionId);
+		values.put(RichMessagingData.KEY_TIMESTAMP, date);
+		values.put(RichMessagingData.KEY_CONTACT, "+33600000000");
+		values.put(RichMessagingData.KEY_STATUS, EventsLogApi.STATUS_RECEIVED);
+		values.put(RichMessagingData.KEY_IS_SPAM, 0);
+		db.insert(RichMessagingProvider.TABLE, null, values);
+	}
+
+	private void addRichCall(long date) {
+		ContentValues values = new ContentValues();
+		values.put(RichCallData.KEY_CONTACT, "+33600000000");
+		values.put(RichCallData.KEY_DESTINATION, 1);
+		values.put(RichCallData.KEY_TIMESTAMP, date);
+		values.put(RichCallData.KEY_STATUS, EventsLogApi.STATUS_TERMINATED);
+		db.insert(RichCallProvider.TABLE, null, values);
+	}
+
+	private void addIPCall(long date) {
+		ContentValues values = new ContentValues();
+		values.put(IPCallData.KEY_CONTACT, "+33600000000");
+		values.put(IPCallData.KEY_EVENT_TYPE, EventsLogApi.TYPE_INCOMING_IPCALL);
+		values.put(IPCallData.KEY_TIMESTAMP, date);
+		values.put(IPCallData.KEY_STATUS, EventsLogApi.STATUS_TERMINATED);
+		db.insert(IPCallProvider.TABLE, null, values);
+	}
+
+	/**
+	 * Adds 3 events per date in each table, dates 1 to 5
+	 */
+	private void addEventsWithTies() {
+		for (int date = 1; date <= 5; date++) {
+			for (int i = 0; i < 3; i++) {
+				addMessage("session" + date + "-" + i, date);
+				addRichCall(date);
+				addIPCall(date);
+			}
+		}
+	}
+
+	private List<long[]> readPage(boolean ascending, long keyDate, long key, int limit) {
+		String query = EventLogProvider.buildPageQuery(MODE, null, ascending, keyDate, key, limit);
+		Cursor cursor = db.rawQuery(query, null);
+		List<long[]> page = new ArrayList<long[]>();
+		try {
+			int date = cursor.getColumnIndexOrThrow(EventLogData.KEY_EVENT_DATE);
+			int pageKey = cursor.getColumnIndexOrThrow(EventLogData.KEY_EVENT_PAGE_KEY);
+			while (cursor.moveToNext()) {
+				page.add(new long[] { cursor.getLong(date), cursor.getLong(pageKey) });
+			}
+		} finally {
+			cursor.close();
+		}
+		return page;
+	}
+
+	private List<long[]> readAllPages(boolean ascending, int limit) {
+		List<long[]> events = new ArrayList<long[]>();
+		long keyDate = ascending ? 0 : -1;
+		long key = ascending ? Long.MIN_VALUE : Long.MAX_VALUE;
+		while (true) {
+			List<long[]> page = readPage(ascending, keyDate, key, limit);
+			assertTrue(page.size() <= limit);
+			events.addAll(page);
+			if (page.size() < limit) {
+				return events;
+			}
+			long[] last = page.get(page.size() - 1);
+			keyDate = last[0];
+			key = last[1];
+		}
+	}
+
+	private static void assertSorted(List<long[]> events, boolean ascending) {
+		for (int i = 1; i < events.size(); i++) {
+			long[] previous = events.get(i - 1);
+			long[] current = events.get(i);
+			int order = (previous[0] != current[0]) ? (previous[0] < current[0] ? -1 : 1)
+					: (previous[1] < current[1] ? -1 : (previous[1] == current[1] ? 0 : 1));
+			assertEquals("Event " + i, ascending ? -1 : 1, order);
+		}
+	}
+
+	private static void assertSameEvents(List<long[]> expected, List<long[]> events) {
+		assertEquals(expected.size(), events.size());
+		for (int i = 0; i < expected.size(); i++) {
+			assertEquals(expected.get(i)[0], events.get(i)[0]);
+			assertEquals(expected.get(i)[1], events.get(i)[1]);
+		}
+	}
+
+	public void testTiesAcrossSources() {
+		addEventsWithTies();
+		List<long[]> all = readPage(false, -1, 0, 1000);
+		assertEquals(45, all.size());
+		assertSorted(all, false);
+
+		// Every event is read once whatever the page size, in both directions
+		for (int limit = 1; limit <= 8; limit++) {
+			assertSameEvents(all, readAllPages(false, limit));
+			List<long[]> ascending = readAllPages(true, limit);
+			assertSorted(ascending, true);
+			assertEquals(all.size(), ascending.size());
+			for (int i = 0; i < all.size(); i++) {
+				assertEquals(all.get(i)[1], ascending.get(ascending.size() - 1 - i)[1]);
+			}
+		}
+	}
+
+	public void testPageBoundaries() {
+		addEventsWithTies();
+		List<long[]> all = readPage(false, -1, 0, 1000);
+
+		// A page ends in the middle of the events of a date
+		List<long[]> first = readPage(false, -1, 0, 4);
+		assertSameEvents(all.subList(0, 4), first);
+		assertEquals(5, first.get(3)[0]);
+		assertSameEvents(all.subList(4, 8), readPage(false, 5, first.get(3)[1], 4));
+
+		// A page has exactly the remaining events, the next one is empty
+		long[] last = all.get(all.size() - 1);
+		long[] beforeLast = all.get(all.size() - 4);
+		assertSameEvents(all.subList(all.size() - 3, all.size()), readPage(false, beforeLast[0], beforeLast[1], 3));
+		assertEquals(0, readPage(false, last[0], last[1], 3).size());
+
+		// The lowest key of a date skips all its events, the highest one takes them
+		assertSameEvents(all.subList(9, 18), readPage(false, 5, Long.MIN_VALUE, 9));
+		assertSameEvents(all.subList(9, 18), readPage(false, 4, Long.MAX_VALUE, 9));
+	}
+
+	public void testEmptyPage() {
+		assertEquals(0, readPage(false, -1, 0, 10).size());
+		assertEquals(0, readPage(true, 0, Long.MIN_VALUE, 10).size());
+
+		addEventsWithTies();
+		assertEquals(0, readPage(false, 1, Long.MIN_VALUE, 10).size());
+		assertEquals(0, readPage(true, 6, Long.MIN_VALUE, 10).size());
+
+		// No RCS source
+		assertNull(EventLogProvider.buildPageQuery(EventsLogApi.MODE_SMS, null, false, -1, 0, 10));
+	}
+
+	public void testLatestRowOfSession() {
+		addMessage("session", 1);
+		addMessage("session", 3);
+		addMessage("session", 3);
+		addMessage("other", 2);
+
+		List<long[]> page = readPage(false, -1, 0, 10);
+		assertEquals(2, page.size());
+		assertEquals(3, page.get(0)[0]);
+		assertEquals(3 * 8, page.get(0)[1]);
+		assertEquals(2, page.get(1)[0]);
+
+		// The session is not read again by the next pages
+		assertEquals(1, readPage(false, 3, page.get(0)[1], 10).size());
+	}
+
+	public void testPageQueryPlan() {
+		addEventsWithTies();
+		String query = EventLogProvider.buildPageQuery(MODE, null, false, 3, 16, 10);
+		Cursor cursor = db.rawQuery("EXPLAIN QUERY PLAN " + query, null);
+		StringBuffer plan = new StringBuffer();
+		while (cursor.moveToNext()) {
+			plan.append(cursor.getString(cursor.getColumnCount() - 1)).append('\n');
+		}
+		cursor.close();
+		assertTrue(plan.toString(), plan.indexOf(RichMessagingProvider.TABLE + "_date_idx") != -1);
+		assertTrue(plan.toString(), plan.indexOf(RichCallProvider.TABLE + "_date_idx") != -1);
+		assertTrue(plan.toString(), plan.indexOf(IPCallProvider.TABLE + "_date_idx") != -1);
+		assertTrue(plan.toString(), plan.indexOf(RichMessagingProvider.TABLE + "_session_id_idx") != -1);
+		assertTrue(plan.toString(), plan.indexOf("GROUP BY") == -1);
+	}
+
+	public void testMergeTies() {
+		String[] columns = new String[] { EventLogData.KEY_EVENT_DATE, EventLogData.KEY_EVENT_PAGE_KEY };
+		MatrixCursor sms = new MatrixCursor(columns);
+		sms.addRow(new Object[] { 2L, 19L });
+		sms.addRow(new Object[] { 2L, 3L });
+		sms.addRow(new Object[] { 1L, 11L });
+		MatrixCursor rcs = new MatrixCursor(columns);
+		rcs.addRow(new Object[] { 2L, 16L });
+		rcs.addRow(new Object[] { 1L, 17L });
+		rcs.addRow(new Object[] { 1L, 8L });
+
+		Cursor merge = new SortCursor(new Cursor[] { rcs, sms }, EventLogData.KEY_EVENT_DATE,
+				EventLogData.KEY_EVENT_PAGE_KEY, false);
+		long[] expected = new long[] { 19, 16, 3, 17, 11, 8 };
+		for (int i = 0; i < expected.length; i++) {
+			assertTrue(merge.moveToNext());
+			assertEquals(expected[i], merge.getLong(1));
+		}
+		assertFalse(merge.moveToNext());
+		merge.close();
+	}
+}
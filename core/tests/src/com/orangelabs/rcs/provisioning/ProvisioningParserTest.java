@@ -0,0 +1,118 @@
+package com.orangelabs.rcs.provisioning;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.util.Map;
+
+import android.test.AndroidTestCase;
+import android.test.suitebuilder.annotation.LargeTest;
+
+import com.orangelabs.rcs.provider.settings.RcsSettings;
+import com.orangelabs.rcs.provider.settings.RcsSettingsData;
+import com.orangelabs.rcs.utils.Benchmark;
+
+public class ProvisioningParserTest extends AndroidTestCase {
+
+	private static final String TEMPLATE = "template-ota_config-generic.xml";
+
+	private static final int LOOPS = 10;
+
+	private String content;
+
+	private Map<String, String> snapshot;
+
+	private int gsmaRelease;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		RcsSettings.createInstance(getContext());
+		snapshot = RcsSettings.getInstance().readParameters();
+		gsmaRelease = RcsSettings.getInstance().getGsmaRelease();
+		content = readAsset(TEMPLATE);
+	}
+
+	protected void tearDown() throws Exception {
+		RcsSettings.getInstance().writeParameters(snapshot);
+		super.tearDown();
+	}
+
+	public void testParse() {
+		RcsSettings.getInstance().writeParameter(RcsSettingsData.SIP_TIMER_T1, "1000");
+		RcsSettings.getInstance().setGsmaRelease(RcsSettingsData.VALUE_GSMA_REL_ALBATROS);
+		ProvisioningParser parser = new ProvisioningParser(content);
+		assertTrue(parser.parse(gsmaRelease));
+		assertEquals("1", parser.getProvisioningInfo().getVersion());
+		assertEquals(604800, parser.getProvisioningInfo().getValidity());
+		assertEquals("2000", RcsSettings.getInstance().readParameter(RcsSettingsData.SIP_TIMER_T1));
+		assertEquals("domain", RcsSettings.getInstance().readParameter(RcsSettingsData.USERPROFILE_IMS_HOME_DOMAIN));
+		assertEquals(RcsSettingsData.VALUE_GSMA_REL_BLACKBIRD, RcsSettings.getInstance().readParameter(RcsSettingsData.KEY_GSMA_RELEASE));
+	}
+
+	public void testBadDocument() {
+		RcsSettings.getInstance().writeParameter(RcsSettingsData.SIP_TIMER_T1, "1000");
+		ProvisioningParser parser = new ProvisioningParser(content.substring(0, content.length() / 2));
+		assertFalse(parser.parse(gsmaRelease));
+		// Nothing is written when the document can't be parsed
+		assertEquals("1000", RcsSettings.getInstance().readParameter(RcsSettingsData.SIP_TIMER_T1));
+	}
+
+	public void testWriteChangedParameters() throws Exception {
+		assertTrue(new ProvisioningParser(content).parse(gsmaRelease));
+		Map<String, String> parameters = RcsSettings.getInstance().readParameters();
+		assertEquals(0, RcsSettings.getInstance().writeParameters(parameters));
+
+		parameters.put(RcsSettingsData.SIP_TIMER_T1, "3000");
+		assertEquals(1, RcsSettings.getInstance().writeParameters(parameters));
+		assertEquals("3000", RcsSettings.getInstance().readParameter(RcsSettingsData.SIP_TIMER_T1));
+	}
+
+	@LargeTest
+	public void testBenchmarkApply() throws Exception {
+		int parms = 0;
+		for (int i = content.indexOf("<parm "); i != -1; i = content.indexOf("<parm ", i + 1)) {
+			parms++;
+		}
+		final int count = parms;
+		final Map<String, String> parameters = RcsSettings.getInstance().readParameters();
+		final String[] keys = parameters.keySet().toArray(new String[0]);
+
+		Benchmark benchmark = new Benchmark(count + " provisioning parameters", LOOPS);
+		// One update per parameter, as each parameter was written by the parser
+		benchmark.measure("one update per parameter", new Benchmark.Task() {
+			public void run(int i) {
+				for (int j = 0; (j < count) && (j < keys.length); j++) {
+					RcsSettings.getInstance().writeParameter(keys[j], parameters.get(keys[j]));
+				}
+			}
+		});
+		// Parsing and writing of the changed parameters, from the stored settings
+		benchmark.measure("restore, parse and apply", new Benchmark.Task() {
+			public void run(int i) throws Exception {
+				RcsSettings.getInstance().writeParameters(snapshot);
+				assertTrue(new ProvisioningParser(content).parse(gsmaRelease));
+			}
+		});
+		// Parsing with unchanged settings
+		benchmark.measure("parse and apply unchanged settings", new Benchmark.Task() {
+			public void run(int i) {
+				assertTrue(new ProvisioningParser(content).parse(gsmaRelease));
+			}
+		});
+		benchmark.log();
+	}
+
+	private String readAsset(String name) throws Exception {
+		InputStream input = getContext().createPackageContext("com.orangelabs.rcs.tests", 0).getAssets().open(name);
+		try {
+			ByteArrayOutputStream output = new ByteArrayOutputStream();
+			byte[] buffer = new byte[4096];
+			int n;
+			while ((n = input.read(buffer)) != -1) {
+				output.write(buffer, 0, n);
+			}
+			return new String(output.toByteArray(), "UTF-8");
+		} finally {
+			input.close();
+		}
+	}
+}
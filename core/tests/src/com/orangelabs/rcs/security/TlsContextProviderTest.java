@@ -0,0 +1,210 @@
+package com.orangelabs.rcs.security;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.security.KeyStore;
+
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLServerSocket;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.TrustManager;
+
+import android.test.AndroidTestCase;
+
+import com.orangelabs.rcs.core.ims.security.cert.TlsContextProvider;
+import com.orangelabs.rcs.utils.Base64;
+import com.orangelabs.rcs.utils.logger.Logger;
+
+public class TlsContextProviderTest extends AndroidTestCase {
+
+	/**
+	 * PKCS12 keystore of the server, self-signed certificate for CN=localhost
+	 */
+	private static final String SERVER_KEYSTORE =
+			"MIIJawIBAzCCCSQGCSqGSIb3DQEHAaCCCRUEggkRMIIJDTCCBWkGCSqGSIb3DQEHAaCCBVoEggVWMIIFUjCCBU4GCyqGSIb3" +
+			"DQEMCgECoIIE+zCCBPcwKQYKKoZIhvcNAQwBAzAbBBSib6MTSwAzXM13OVU0b6U4yUiImgIDAMNQBIIEyAjp3xR+T47K7J1P" +
+			"FUCBkzJpYGhBIATCJQxxzJKPQ/laGdGC/quGOOLENQjDnEt6zMn8yDtZO/JAgL3k9sJ+55hv+fhShL1k40O1IfLh9y4ntjzX" +
+			"OxUbn7x1r5J0565lpfK79t8U6bEtFX9rAO80eG91Lay+TwxvejrATSnqExvC903Z1SA8DZ2jh7pWpbIyt1P54mJLUiRQAP3h" +
+			"2ckaLkHtUiRnLlXuJtP+VPZy8ajFNTa2z0JxKzQTjBePR6SAf/PKzpP2v3CL2zmLDCsd7XruUlaJk0uCWZoR5w2V12NGi2h4" +
+			"o4Ex1Hujek8R45GhX29y8gDhrEUwaNe+Ng+DmTxLhVPn5lfzY0F4Uma5tKFBcW2gLDm+Z2viuyvemZ8TWNT5oVb99xe1TV5Y" +
+			"2G6HzJIARNVADVF0UZLrercUMczpos7fqfDUm93Z2bhxX/X+13wW2LotFCOy9OBsYPdEbqJmtZ07zTFG+jrbjRD9LX1yvx65" +
+			"YZ2OanRJBZrlo6wR6hKns5i5gmuE2SdSQqxza6m8u9cXf3glxirMCJO0NcQLLn1ahmkTHXZj5267vBRpHUlIlbQv3bXEsBAJ" +
+			"Y/uMfoEGps0So4dcf8x11aTuZ0HL0TXr5Pyy1y6Nlri4bPqRmt1YKkA7S/3q/ym9Bc9gz2auH3uslYEHkf7nxjod0gJj5qn0" +
+			"OT4CKjDp5AAdb2eI7BTDira1pklzaU5cT9+iiTJfKBJ08o/IDjp/AbUwXAXYJB2bN0CxUF7c0PpbLULrb1BmxBV0rTAqExme" +
+			"TdbK/omjTKlIFHxVhgGLUKPwexUS5IU99Ggzy+F7hk+/+Nq0U+YyV3DMezl0M8PKIYRDDLaSvQ73l2bd3v/XVShk0ZIb3uQW" +
+			"WXDxwxflbvwDJYinOAptqQCgWjt2cLN0ykaqJS3QUqGpivZaf/kgX98diuzfejFMYStTdXv0zSw+Y/eSWtVlyXCk3PWBZqAJ" +
+			"EWs1rEYLaxI03YPsCpEOZCibLG0J+oMjgLtaMVcAsnq11J6HcMw3k87Yk3Ty69+8BhJeWczORT+TsU60Pr2GIvHSAhU+wD0p" +
+			"h+YM0subEZ5cyqz74D1tu/nSOU4GQWK2UJUr4ohJ4eiMYlYkksoWa4zOpFRtYdde231/kxl09TnH9BmNC7It/zzB/7ZVQFg8" +
+			"+n4hJcTsBgiz0Z3C6eBjLBx1UFya0R2wrcJGL8tpiJ+nU9LkefsmZZFQN9UJWT8Mvuc2rNizJ0oMSYu8BZWAk3uqhPkivUQO" +
+			"4GLs5WJdoMnrCH1wM8sN/PQhmJWiqee4FuZdqL//xjOlyOoAjJIXqAeVLOtTYE73Uyzmli/mFLkxArXEsCKO4UiQl64EWoVT" +
+			"7EiFlsFw8zbazdMm0OoDGDUWu4xAQSP/olhhGgRasgubV4LN4yN8qTfMztBk6P1byd4GZEKCU7j3iZX3qEeQGiHW2UxGwM7s" +
+			"o9AvnKF3up1RACdV2h8HU4BLA7XLZDzaKTDffOObaPpT4JQVHVgCGcFfVsG0QU4LGLJsTYKwLhwz4qmgyqxY+R+/tDiIoJjI" +
+			"Gv1O5WiP1gZT2tQ8qTa3vFNV7mUPd2Mon9x+fZa42n3cLpMni6LwIlOu3Q8Ws/Qqud2S8+Jwlw8XcUcP4zFAMBsGCSqGSIb3" +
+			"DQEJFDEOHgwAcwBlAHIAdgBlAHIwIQYJKoZIhvcNAQkVMRQEElRpbWUgMTc5MjM2MjE2NDQ1MDCCA5wGCSqGSIb3DQEHBqCC" +
+			"A40wggOJAgEAMIIDggYJKoZIhvcNAQcBMCkGCiqGSIb3DQEMAQYwGwQU+RjtpV1K6hRhtjJAOlNHxThQITICAwDDUICCA0jX" +
+			"QST0+k8isQYOACctJvZbu5B2veEVJCnJ60Zs1qUYSW0M1TeUNeTpppioFxv/ErYjoty3H+ZluUx6RnWRPrZcgDdq6IBvARs7" +
+			"qo7okFDdNeBqBQKusFMbaz6rqZL57leKiIIoyZHDSLEjpa3d9jhDwf15q5aDpNbaT7VnEm6RpMMPc+5mhalgWWObK8xAgOs1" +
+			"5CQmI54Zf2D8hcg/mZm7hZmlksih1mNzkfisPkrHRJJElouegkwXJfY2DtKSA93AQacznt+8RqHsmZqeTpC/E4wTE20IGaC+" +
+			"yGS2uWX9I2gio1W7W5zCZV3zmq7cPLo+pkkg7NXhMF0ocrDosKJKC6NFv0ZMyMpYcPA426Kxcz3AmuvmXGw0OIxHtgeDUJx6" +
+			"zKQAxFboCCLY2z2dsmv3Q8EKaZw0213kWTMeyf5NBWPiPZggJAf9Qex0JE8Ppz8rr364RFBA8H8G0F/cen1DIZn4cPXbxATV" +
+			"ojc09h7Br1SWl16bI/Q7Q+ydZh+rw0nmVRacrpruQyLZZy4dJk/8xpg/BRHWXrFbavUec0xr222hrIIF1rRoh+CEQRCDY/q5" +
+			"pePeh3NnFm2pqnhclac0sPkrDqmO268dZgmSk7UsxCpd/wZqf0hXlnYHaT8AQPBDQtyzuHv0BgI0h3Bbn+46kA7eMZOl6l0N" +
+			"9SiDGIMkHAnO6ThxgAELwmlTECcCYBvZ5pIyJJ8MSptShs1dXReSQnSZ2a8KAFbHwpOcPmVFu2uqYSUxuJ4k8O+0/4qLXasK" +
+			"aRyeEjacD0ccYBdrmQtfastg0sT3CmYGSqQnWPogIC9iwv62zSSgq6U86ZbksWtuKgE+i9ZWXgruz61LyFsDekEx318vOIaJ" +
+			"iRh/UEkCpjtRniefLjb7QlFrdR+FwqJPEMbwju53f519JcBRY6rzRWTqRNNQ0zsdV6r468BIFeUP1F/QVKDGWblDwIgQ81OI" +
+			"AvJsPZ3xO3C5qWoKQ4xTlDdEwIXG2418KhHD78mgbCYqaf92cNAaNdMsqBR3otnxWlCCppxTjDXofHZoY/mF/+lW0R+isg/f" +
+			"aaxt/iAzWiMId4OL11WkEScOq9O1u5TxXeFr4tyTDoS9/+vIOKUyYXtLF7N8ZVMwPjAhMAkGBSsOAwIaBQAEFCiZUqEzzmyj" +
+			"Tnr19G8GM55SeVNFBBTrHXrveqG6msvf5kt6/YHLXOTutAIDAYag";
+
+	private static final String SERVER_PASSWORD = "password";
+
+	private Logger logger = Logger.getLogger(this.getClass().getName());
+
+	private TlsEchoServer server;
+
+	private TlsContextProvider provider;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		server = new TlsEchoServer();
+		server.start();
+		provider = new TlsContextProvider();
+		provider.setContext(TlsContextProvider.TRUST_ALL, createClientContext());
+		provider.setSessionCache(10, 60);
+	}
+
+	protected void tearDown() throws Exception {
+		server.close();
+		super.tearDown();
+	}
+
+	public void testResumedHandshakes() throws Exception {
+		int count = 5;
+		long[] durations = new long[count];
+		for (int i = 0; i < count; i++) {
+			long start = System.currentTimeMillis();
+			echo("message " + i);
+			durations[i] = System.currentTimeMillis() - start;
+		}
+		waitForHandshakes(count);
+
+		if (logger.isActivated()) {
+			logger.info("Full handshake exchange " + durations[0] + "ms, resumed " + durations[count - 1] +
+					"ms, " + provider.toString());
+		}
+		assertEquals(count, provider.getHandshakeCount());
+		assertEquals(count - 1, provider.getResumedHandshakeCount());
+	}
+
+	public void testResetDropsSessions() throws Exception {
+		echo("first");
+		provider.reset();
+		provider.setContext(TlsContextProvider.TRUST_ALL, createClientContext());
+		echo("second");
+		waitForHandshakes(2);
+		assertEquals(0, provider.getResumedHandshakeCount());
+	}
+
+	public void testSessionTimeout() throws Exception {
+		provider.setSessionCache(10, 1);
+		echo("first");
+		Thread.sleep(2100);
+		echo("second");
+		waitForHandshakes(2);
+		assertEquals(0, provider.getResumedHandshakeCount());
+	}
+
+	private void echo(String message) throws Exception {
+		Socket socket = provider.getSocketFactory(TlsContextProvider.TRUST_ALL).createSocket(
+				InetAddress.getByName("127.0.0.1"), server.getPort());
+		try {
+			OutputStream out = socket.getOutputStream();
+			out.write((message + "\n").getBytes("UTF-8"));
+			out.flush();
+			BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), "UTF-8"));
+			assertEquals(message, in.readLine());
+		} finally {
+			socket.close();
+		}
+	}
+
+	private void waitForHandshakes(int count) throws InterruptedException {
+		// The handshake listeners are called asynchronously
+		long deadline = System.currentTimeMillis() + 2000;
+		while ((provider.getHandshakeCount() < count) && (System.currentTimeMillis() < deadline)) {
+			Thread.sleep(10);
+		}
+	}
+
+	private SSLContext createClientContext() throws Exception {
+		SSLContext context = SSLContext.getInstance("TLS");
+		context.init(null, new TrustManager[] { new TlsContextProvider.AllTrustManager() }, null);
+		return context;
+	}
+
+	/**
+	 * TLS server echoing each line, TLS 1.2 only so that the sessions are resumed by ID
+	 */
+	private static class TlsEchoServer extends Thread {
+		private SSLServerSocket serverSocket;
+
+		public TlsEchoServer() throws Exception {
+			KeyStore keyStore = KeyStore.getInstance("PKCS12");
+			keyStore.load(new ByteArrayInputStream(Base64.decodeBase64(SERVER_KEYSTORE.getBytes("UTF-8"))),
+					SERVER_PASSWORD.toCharArray());
+			KeyManagerFactory kmFactory = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+			kmFactory.init(keyStore, SERVER_PASSWORD.toCharArray());
+			SSLContext context = SSLContext.getInstance("TLS");
+			context.init(kmFactory.getKeyManagers(), null, null);
+			serverSocket = (SSLServerSocket)context.getServerSocketFactory().createServerSocket(0, 10,
+					InetAddress.getByName("127.0.0.1"));
+			serverSocket.setEnabledProtocols(new String[] { "TLSv1.2" });
+			setDaemon(true);
+		}
+
+		public int getPort() {
+			return serverSocket.getLocalPort();
+		}
+
+		public void close() throws IOException {
+			serverSocket.close();
+		}
+
+		public void run() {
+			while (true) {
+				try {
+					final SSLSocket socket = (SSLSocket)serverSocket.accept();
+					new Thread() {
+						public void run() {
+							try {
+								BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), "UTF-8"));
+								OutputStream out = socket.getOutputStream();
+								String line;
+								while ((line = in.readLine()) != null) {
+									out.write((line + "\n").getBytes("UTF-8"));
+									out.flush();
+								}
+							} catch(IOException e) {
+								// Closed
+							} finally {
+								try {
+									socket.close();
+								} catch(IOException e) {
+									// Nothing to do
+								}
+							}
+						}
+					}.start();
+				} catch(IOException e) {
+					return;
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,145 @@
+package com.orangelabs.rcs.sip;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import android.test.suitebuilder.annotation.LargeTest;
+
+import com.orangelabs.rcs.core.ims.protocol.capture.CaptureFile;
+import com.orangelabs.rcs.core.ims.protocol.capture.MessageCapture;
+import com.orangelabs.rcs.utils.Benchmark;
+
+public class MessageCaptureTest extends TestCase {
+
+	private static final int LOOPS = 10000;
+
+	private static final String CRLF = "\r\n";
+
+	private static final String REGISTER = "REGISTER sip:domain.com SIP/2.0" + CRLF +
+			"Via: SIP/2.0/UDP 10.0.0.1:5060;branch=z9hG4bK6b3d2f01;rport" + CRLF +
+			"From: <sip:+33123456789@domain.com>;tag=1234" + CRLF +
+			"To: <sip:+33123456789@domain.com>" + CRLF +
+			"Call-ID: a84b4c76e66710@10.0.0.1" + CRLF +
+			"CSeq: 1 REGISTER" + CRLF +
+			"Content-Length: 0" + CRLF + CRLF;
+
+	private static final String MSRP = "MSRP d93kswow SEND" + CRLF +
+			"To-Path: msrp://10.0.0.2:2855/iau39soe2843z;tcp" + CRLF +
+			"From-Path: msrp://10.0.0.1:2855/9di4eae923wzd;tcp" + CRLF +
+			"Message-ID: 12339sdqwer" + CRLF +
+			"Byte-Range: 1-16/16" + CRLF +
+			"Content-Type: text/plain" + CRLF + CRLF +
+			"Hi, I'm Alice!]]>" + CRLF +
+			"-------d93kswow$" + CRLF;
+
+	private String path;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		path = new File(System.getProperty("java.io.tmpdir"), "capture-test.cap").getPath();
+		deleteFiles();
+	}
+
+	protected void tearDown() throws Exception {
+		MessageCapture.stop();
+		deleteFiles();
+		super.tearDown();
+	}
+
+	public void testWriteAndRead() throws Exception {
+		CaptureFile file = new CaptureFile(path, 64 * 1024, 2);
+		file.write(CaptureFile.PROTOCOL_SIP, CaptureFile.DIRECTION_SENT, 1000, REGISTER.getBytes(), 0, REGISTER.length());
+		file.write(CaptureFile.PROTOCOL_MSRP, CaptureFile.DIRECTION_RECEIVED, 2000, MSRP.getBytes(), 0, MSRP.length());
+		assertEquals(2, file.getRecordCount());
+
+		// Records are readable before the file is closed
+		List<CaptureFile.Record> records = CaptureFile.read(new String[] { path });
+		assertEquals(2, records.size());
+		file.close();
+
+		CaptureFile.Record record = records.get(0);
+		assertEquals(1000, record.timestamp);
+		assertEquals(CaptureFile.PROTOCOL_SIP, record.protocol);
+		assertEquals(CaptureFile.DIRECTION_SENT, record.direction);
+		assertEquals(REGISTER, new String(record.data));
+		assertEquals(MSRP, new String(records.get(1).data));
+	}
+
+	public void testRotation() throws Exception {
+		byte[] data = REGISTER.getBytes();
+		CaptureFile file = new CaptureFile(path, 4096, 3);
+		for (int i = 0; i < 100; i++) {
+			file.write(CaptureFile.PROTOCOL_SIP, CaptureFile.DIRECTION_SENT, i, data, 0, data.length);
+		}
+		file.close();
+		assertTrue(new File(CaptureFile.getFileName(path, 2)).exists());
+		assertFalse(new File(CaptureFile.getFileName(path, 3)).exists());
+
+		// Only the last files are kept, the records are sorted by timestamp
+		List<CaptureFile.Record> records = CaptureFile.read(new String[] {
+				path, CaptureFile.getFileName(path, 1), CaptureFile.getFileName(path, 2) });
+		assertTrue(records.size() < 100);
+		for (int i = 0; i < records.size(); i++) {
+			assertEquals(100 - records.size() + i, records.get(i).timestamp);
+		}
+	}
+
+	public void testCapture() throws Exception {
+		MessageCapture.start(path);
+		assertTrue(MessageCapture.isStarted());
+		MessageCapture.capture(CaptureFile.PROTOCOL_SIP, CaptureFile.DIRECTION_SENT, REGISTER.getBytes());
+		MessageCapture.capture(CaptureFile.PROTOCOL_MSRP, CaptureFile.DIRECTION_RECEIVED, MSRP.getBytes());
+		MessageCapture.stop();
+		assertFalse(MessageCapture.isStarted());
+
+		// Nothing is captured once stopped
+		MessageCapture.capture(CaptureFile.PROTOCOL_SIP, CaptureFile.DIRECTION_SENT, REGISTER.getBytes());
+
+		List<CaptureFile.Record> records = CaptureFile.read(new String[] { path });
+		assertEquals(2, records.size());
+		assertEquals(CaptureFile.PROTOCOL_SIP, records.get(0).protocol);
+		assertEquals(REGISTER, new String(records.get(0).data));
+		assertEquals(CaptureFile.PROTOCOL_MSRP, records.get(1).protocol);
+		assertEquals(CaptureFile.DIRECTION_RECEIVED, records.get(1).direction);
+		assertEquals(MSRP, new String(records.get(1).data));
+	}
+
+	@LargeTest
+	public void testBenchmarkCapture() throws Exception {
+		final byte[] data = REGISTER.getBytes();
+		Benchmark benchmark = new Benchmark("Message trace", LOOPS);
+
+		// Previous text traces
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		benchmark.measure("in text", new Benchmark.Task() {
+			public void run(int i) throws Exception {
+				String trace = ">>> Send SIP REGISTER" + CRLF +
+						"--------------------------------------------------------------------------------" + CRLF +
+						new String(data) + CRLF +
+						"--------------------------------------------------------------------------------";
+				out.write(trace.getBytes());
+			}
+		});
+
+		MessageCapture.start(path);
+		try {
+			benchmark.measure("captured", new Benchmark.Task() {
+				public void run(int i) {
+					MessageCapture.capture(CaptureFile.PROTOCOL_SIP, CaptureFile.DIRECTION_SENT, data);
+				}
+			});
+		} finally {
+			MessageCapture.stop();
+		}
+		benchmark.log();
+	}
+
+	private void deleteFiles() {
+		for (int i = 0; i < CaptureFile.DEFAULT_MAX_FILES; i++) {
+			new File(CaptureFile.getFileName(path, i)).delete();
+		}
+	}
+}
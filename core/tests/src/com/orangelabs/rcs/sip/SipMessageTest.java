@@ -0,0 +1,105 @@
+package com.orangelabs.rcs.sip;
+
+import gov2.nist.javax2.sip.header.HeaderFactoryImpl;
+import gov2.nist.javax2.sip.message.SIPRequest;
+import gov2.nist.javax2.sip.parser.StringMsgParser;
+
+import java.util.ArrayList;
+
+import android.test.AndroidTestCase;
+import android.test.suitebuilder.annotation.LargeTest;
+
+import com.orangelabs.rcs.core.ims.protocol.sip.SipRequest;
+import com.orangelabs.rcs.utils.Benchmark;
+
+public class SipMessageTest extends AndroidTestCase {
+
+	private static final String CRLF = "\r\n";
+
+	private static final String SDP = "v=0" + CRLF +
+			"o=- 3600492772 3600492772 IN IP4 10.29.67.37" + CRLF +
+			"s=-" + CRLF +
+			"c=IN IP4 10.29.67.37" + CRLF +
+			"t=0 0" + CRLF +
+			"m=message 20000 TCP/MSRP *" + CRLF +
+			"a=path:msrp://10.29.67.37:20000/1391503972255;tcp" + CRLF +
+			"a=accept-types:message/cpim application/im-iscomposing+xml" + CRLF +
+			"a=sendrecv" + CRLF;
+
+	private static final String INVITE = "INVITE sip:+33600000001@domain.com SIP/2.0" + CRLF +
+			"Via: SIP/2.0/UDP 10.29.67.38:5060;branch=z9hG4bK776asdhds" + CRLF +
+			"Max-Forwards: 70" + CRLF +
+			"To: <sip:+33600000001@domain.com>" + CRLF +
+			"From: <sip:+33600000002@domain.com>;tag=1928301774" + CRLF +
+			"Call-ID: a84b4c76e66710@10.29.67.38" + CRLF +
+			"CSeq: 1 INVITE" + CRLF +
+			"Contact: <sip:+33600000002@10.29.67.38:5060>;+g.oma.sip-im;+sip.instance=\"<urn:gsma:imei:35000000-000000-0>\"" + CRLF +
+			"Accept-Contact: *;+g.oma.sip-im;+g.3gpp.iari-ref=\"urn%3Aurn-7%3A3gpp-application.ims.iari.rcse.ft\"" + CRLF +
+			"Content-Type: application/sdp" + CRLF +
+			"Content-Length: " + SDP.length() + CRLF +
+			CRLF +
+			SDP;
+
+	private SipRequest parseInvite() throws Exception {
+		StringMsgParser parser = new StringMsgParser();
+		return new SipRequest((SIPRequest)parser.parseSIPMessage(INVITE));
+	}
+
+	public void testFeatureTags() throws Exception {
+		SipRequest invite = parseInvite();
+		ArrayList<String> tags = invite.getFeatureTags();
+		assertTrue(tags.contains("+g.oma.sip-im"));
+		assertTrue(invite.isFeatureTagPresent("urn-7%3A3gpp-application.ims.iari.rcse.ft"));
+		assertFalse(invite.isFeatureTagPresent("+g.3gpp.cs-voice"));
+
+		// The returned list is a copy
+		tags.clear();
+		assertTrue(invite.getFeatureTags().contains("+g.oma.sip-im"));
+	}
+
+	public void testContentInvalidation() throws Exception {
+		SipRequest invite = parseInvite();
+		assertEquals(SDP, invite.getContent());
+		assertEquals(SDP, invite.getSdpContent());
+		assertSame(invite.getContent(), invite.getContent());
+
+		// Replace the content in the stack message
+		String text = "hello";
+		invite.getStackMessage().setContent(text, new HeaderFactoryImpl().createContentTypeHeader("text", "plain"));
+		assertEquals(text, invite.getContent());
+		assertNull(invite.getSdpContent());
+	}
+
+	@LargeTest
+	public void testBenchmarkInviteHandling() throws Exception {
+		final String[] tags = {
+				"+g.oma.sip-im", "urn-7%3A3gpp-application.ims.iari.rcse.ft",
+				"+g.3gpp.cs-voice", "urn-7%3A3gpp-application.ims.iari.gsma-is"
+		};
+		Benchmark benchmark = new Benchmark("INVITE handling", 1000);
+
+		// Each lookup extracts the values again, as before caching
+		benchmark.measure("without cache", new Benchmark.Task() {
+			public void run(int i) throws Exception {
+				SipRequest invite = parseInvite();
+				for(int j=0; j < tags.length; j++) {
+					invite.invalidateCache();
+					invite.isFeatureTagPresent(tags[j]);
+					invite.getSdpContent();
+				}
+			}
+		});
+
+		// Lookups on the same message use the cached values
+		benchmark.measure("with cache", new Benchmark.Task() {
+			public void run(int i) throws Exception {
+				SipRequest invite = parseInvite();
+				for(int j=0; j < tags.length; j++) {
+					invite.isFeatureTagPresent(tags[j]);
+					invite.getSdpContent();
+				}
+			}
+		});
+		benchmark.log();
+	}
+}
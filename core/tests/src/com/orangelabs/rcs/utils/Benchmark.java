@@ -0,0 +1,75 @@
+package com.orangelabs.rcs.utils;
+
+import com.orangelabs.rcs.utils.logger.Logger;
+
+/**
+ * Micro benchmark shared by the tests: each task is warmed up then timed, and
+ * the mean costs are logged together. A benchmark asserts nothing, the
+ * behaviour of the timed code is checked by the other tests.
+ */
+public class Benchmark {
+	/**
+	 * Timed task
+	 */
+	public interface Task {
+		/**
+		 * Run one iteration
+		 *
+		 * @param i Iteration number
+		 * @throws Exception
+		 */
+		void run(int i) throws Exception;
+	}
+
+	private static Logger logger = Logger.getLogger(Benchmark.class.getName());
+
+	private final String name;
+
+	private final int iterations;
+
+	private final StringBuffer costs = new StringBuffer();
+
+	/**
+	 * Constructor
+	 *
+	 * @param name Name of the benchmark
+	 * @param iterations Number of timed iterations of each task
+	 */
+	public Benchmark(String name, int iterations) {
+		this.name = name;
+		this.iterations = iterations;
+	}
+
+	/**
+	 * Time a task
+	 *
+	 * @param label Label of the task
+	 * @param task Task
+	 * @return Mean cost of an iteration in ns
+	 * @throws Exception
+	 */
+	public long measure(String label, Task task) throws Exception {
+		for(int i=0; i < iterations / 10 + 1; i++) {
+			task.run(i);
+		}
+		long start = System.nanoTime();
+		for(int i=0; i < iterations; i++) {
+			task.run(i);
+		}
+		long cost = (System.nanoTime() - start) / iterations;
+		if (costs.length() > 0) {
+			costs.append(", ");
+		}
+		costs.append(cost).append(" ns ").append(label);
+		return cost;
+	}
+
+	/**
+	 * Log the mean costs of the timed tasks
+	 */
+	public void log() {
+		if (logger.isActivated()) {
+			logger.info(name + ": " + costs);
+		}
+	}
+}
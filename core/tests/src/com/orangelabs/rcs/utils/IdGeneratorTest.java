@@ -0,0 +1,110 @@
+package com.orangelabs.rcs.utils;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+
+import junit.framework.TestCase;
+
+import android.test.suitebuilder.annotation.LargeTest;
+
+public class IdGeneratorTest extends TestCase {
+
+	private static final int THREADS = 8;
+
+	private static final int LOOPS = 20000;
+
+	public void testFormat() {
+		assertTrue(IdGenerator.generateMessageID().matches("[a-f0-9]{32}"));
+		assertTrue(IdGenerator.generateTransactionId().matches("[a-f0-9]{16}"));
+		assertTrue(IdGenerator.getIdentifier().matches("[A-Za-z0-9+_]{10}"));
+		assertEquals("00ff7f80", IdGenerator.toHexString(new byte[] { 0, -1, 127, -128, 1 }, 4));
+	}
+
+	public void testUniqueness() throws Exception {
+		final Set<String> ids = newSet();
+		final Set<String> identifiers = newSet();
+		run(new Runnable() {
+			public void run() {
+				for (int i = 0; i < LOOPS; i++) {
+					ids.add(IdGenerator.generateMessageID());
+					identifiers.add(IdGenerator.getIdentifier());
+				}
+			}
+		});
+		assertEquals(THREADS * LOOPS, ids.size());
+		assertEquals(THREADS * LOOPS, identifiers.size());
+	}
+
+	@LargeTest
+	public void testBenchmarkContendedGeneration() throws Exception {
+		// Each iteration runs the generations of all the threads
+		Benchmark benchmark = new Benchmark(THREADS + " threads generating " + LOOPS + " IDs", 5);
+		benchmark.measure("message IDs with a lock", new Benchmark.Task() {
+			public void run(int i) throws Exception {
+				// Previous generation, under the class lock
+				final Object lock = new Object();
+				IdGeneratorTest.run(new Runnable() {
+					public void run() {
+						for (int j = 0; j < LOOPS; j++) {
+							synchronized(lock) {
+								UUID id = UUID.randomUUID();
+								String msgId = Long.toHexString(id.getMostSignificantBits()) + Long.toHexString(id.getLeastSignificantBits());
+							}
+						}
+					}
+				});
+			}
+		});
+		benchmark.measure("message IDs", new Benchmark.Task() {
+			public void run(int i) throws Exception {
+				IdGeneratorTest.run(new Runnable() {
+					public void run() {
+						for (int j = 0; j < LOOPS; j++) {
+							IdGenerator.generateMessageID();
+						}
+					}
+				});
+			}
+		});
+		benchmark.measure("identifiers", new Benchmark.Task() {
+			public void run(int i) throws Exception {
+				IdGeneratorTest.run(new Runnable() {
+					public void run() {
+						for (int j = 0; j < LOOPS; j++) {
+							IdGenerator.getIdentifier();
+						}
+					}
+				});
+			}
+		});
+		benchmark.log();
+	}
+
+	private static Set<String> newSet() {
+		return Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+	}
+
+	private static void run(final Runnable task) throws InterruptedException {
+		final CountDownLatch start = new CountDownLatch(1);
+		final CountDownLatch end = new CountDownLatch(THREADS);
+		for (int i = 0; i < THREADS; i++) {
+			new Thread() {
+				public void run() {
+					try {
+						start.await();
+						task.run();
+					} catch (InterruptedException e) {
+						// Nothing to do
+					} finally {
+						end.countDown();
+					}
+				}
+			}.start();
+		}
+		start.countDown();
+		end.await();
+	}
+}
@@ -0,0 +1,257 @@
+package com.orangelabs.rcs.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import android.test.suitebuilder.annotation.LargeTest;
+
+import com.orangelabs.rcs.utils.logger.Appender;
+import com.orangelabs.rcs.utils.logger.AsyncAppender;
+import com.orangelabs.rcs.utils.logger.Logger;
+
+public class LoggerTest extends TestCase {
+
+	private static final int LOOPS = 100000;
+
+	private Appender[] appenders;
+
+	private boolean activationFlag;
+
+	private int traceLevel;
+
+	private Logger logger = Logger.getLogger(this.getClass().getName());
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		appenders = Logger.getAppenders();
+		activationFlag = Logger.activationFlag;
+		traceLevel = Logger.traceLevel;
+	}
+
+	protected void tearDown() throws Exception {
+		Logger.setAppenders(appenders);
+		Logger.activationFlag = activationFlag;
+		Logger.traceLevel = traceLevel;
+		super.tearDown();
+	}
+
+	public void testFormat() {
+		assertEquals("a=1, b=x", Logger.format("a={}, b={}", new Object[] { 1, "x" }));
+		assertEquals("a=1, b={}", Logger.format("a={}, b={}", new Object[] { 1 }));
+		assertEquals("a=null", Logger.format("a={}", new Object[] { null }));
+		assertEquals("no argument", Logger.format("no argument", null));
+	}
+
+	public void testLevelGuards() {
+		Logger.activationFlag = Logger.TRACE_ON;
+		Logger.traceLevel = Logger.INFO_LEVEL;
+		assertTrue(logger.isActivated());
+		assertFalse(logger.isDebugActivated());
+		assertTrue(logger.isInfoActivated());
+		assertTrue(logger.isActivated(Logger.ERROR_LEVEL));
+
+		CountingAppender counter = new CountingAppender();
+		Logger.setAppenders(new Appender[] { counter });
+		logger.debug("value={}", 1);
+		logger.info("value={}", 2);
+		assertEquals(1, counter.traces.size());
+		assertEquals("value=2", counter.traces.get(0));
+
+		Logger.activationFlag = Logger.TRACE_OFF;
+		assertFalse(logger.isInfoActivated());
+		logger.info("value={}", 3);
+		assertEquals(1, counter.traces.size());
+	}
+
+	public void testAsyncAppender() {
+		CountingAppender counter = new CountingAppender();
+		AsyncAppender appender = new AsyncAppender(new Appender[] { counter });
+		Logger.setAppenders(new Appender[] { appender });
+		Logger.activationFlag = Logger.TRACE_ON;
+		Logger.traceLevel = Logger.DEBUG_LEVEL;
+		for (int i = 0; i < 100; i++) {
+			logger.debug("trace {}", i);
+		}
+		assertTrue(appender.flush(5000));
+		assertEquals(100, counter.traces.size());
+		assertEquals("trace 99", counter.traces.get(99));
+		assertEquals(0, appender.getLostCount());
+	}
+
+	public void testAsyncException() {
+		CountingAppender counter = new CountingAppender();
+		AsyncAppender appender = new AsyncAppender(new Appender[] { counter });
+		Logger.setAppenders(new Appender[] { appender });
+		Logger.activationFlag = Logger.TRACE_ON;
+		Logger.traceLevel = Logger.DEBUG_LEVEL;
+		Exception e = new Exception("failure");
+		logger.error("Request has failed", e);
+		assertTrue(appender.flush(5000));
+
+		// The exception is printed with its trace by the background thread
+		assertEquals(1, counter.traces.size());
+		assertEquals("Request has failed", counter.traces.get(0));
+		assertSame(e, counter.exception);
+		assertNotSame(Thread.currentThread(), counter.exceptionThread);
+	}
+
+	public void testLostTraces() throws Exception {
+		BlockingAppender blocking = new BlockingAppender();
+		AsyncAppender appender = new AsyncAppender(new Appender[] { blocking }, 16);
+		appender.printTrace("test", Logger.DEBUG_LEVEL, "trace 0");
+		blocking.waitFor(1);
+		for (int i = 1; i < 100; i++) {
+			appender.printTrace("test", Logger.DEBUG_LEVEL, "trace " + i);
+		}
+		// The error traces are not lost, they are printed by the caller
+		appender.printTrace("test", Logger.ERROR_LEVEL, "error");
+		assertEquals(84, appender.getLostCount());
+		assertEquals(16, appender.getPendingCount());
+		assertEquals(2, blocking.traces.size());
+
+		blocking.release();
+		assertTrue(appender.flush(5000));
+		// Stored traces, error and lost traces warning
+		assertEquals(18, blocking.traces.size());
+		assertEquals("84 traces lost", blocking.traces.get(2));
+	}
+
+	@LargeTest
+	public void testBenchmarkHotPath() throws Exception {
+		final String value = "sip:+33123456789@domain";
+		CountingAppender counter = new CountingAppender();
+		Logger.setAppenders(new Appender[] { counter });
+		Logger.activationFlag = Logger.TRACE_ON;
+		Logger.traceLevel = Logger.INFO_LEVEL;
+
+		Benchmark filtered = new Benchmark("Debug trace filtered", LOOPS);
+		filtered.measure("with the global guard", new Benchmark.Task() {
+			public void run(int i) {
+				if (logger.isActivated()) {
+					logger.debug("Send request " + i + " to " + value);
+				}
+			}
+		});
+		filtered.measure("with the level guard", new Benchmark.Task() {
+			public void run(int i) {
+				if (logger.isDebugActivated()) {
+					logger.debug("Send request " + i + " to " + value);
+				}
+			}
+		});
+		filtered.measure("with arguments", new Benchmark.Task() {
+			public void run(int i) {
+				logger.debug("Send request {} to {}", i, value);
+			}
+		});
+		Logger.activationFlag = Logger.TRACE_OFF;
+		filtered.measure("with tracing off", new Benchmark.Task() {
+			public void run(int i) {
+				if (logger.isDebugActivated()) {
+					logger.debug("Send request " + i + " to " + value);
+				}
+			}
+		});
+		assertEquals(0, counter.traces.size());
+
+		// Tracing on, printed by the caller or by the background thread
+		Logger.activationFlag = Logger.TRACE_ON;
+		Logger.traceLevel = Logger.DEBUG_LEVEL;
+		SlowAppender slow = new SlowAppender();
+		Benchmark printed = new Benchmark("Debug trace printed", 1000);
+		Logger.setAppenders(new Appender[] { slow });
+		printed.measure("by the caller", new Benchmark.Task() {
+			public void run(int i) {
+				logger.debug("Send request {} to {}", i, value);
+			}
+		});
+		int total = slow.getCount();
+		AsyncAppender async = new AsyncAppender(new Appender[] { slow });
+		Logger.setAppenders(new Appender[] { async });
+		printed.measure("by the background thread", new Benchmark.Task() {
+			public void run(int i) {
+				logger.debug("Send request {} to {}", i, value);
+			}
+		});
+		assertTrue(async.flush(10000));
+		Logger.setAppenders(appenders);
+		filtered.log();
+		printed.log();
+
+		// Each trace is printed or counted as lost
+		assertEquals(2 * total, slow.getCount() + async.getLostCount());
+	}
+
+	private static class CountingAppender extends Appender {
+		List<String> traces = new ArrayList<String>();
+
+		Throwable exception = null;
+
+		Thread exceptionThread = null;
+
+		public synchronized void printTrace(String classname, int level, String trace) {
+			traces.add(trace);
+		}
+
+		public synchronized void printException(String classname, int level, String trace, Throwable e) {
+			traces.add(trace);
+			exception = e;
+			exceptionThread = Thread.currentThread();
+		}
+	}
+
+	private static class BlockingAppender extends Appender {
+		List<String> traces = new ArrayList<String>();
+
+		private boolean blocked = true;
+
+		public void printTrace(String classname, int level, String trace) {
+			synchronized(this) {
+				traces.add(trace);
+				if (level >= Logger.ERROR_LEVEL) {
+					return;
+				}
+				while (blocked) {
+					try {
+						wait();
+					} catch (InterruptedException e) {
+						return;
+					}
+				}
+			}
+		}
+
+		public synchronized void waitFor(int count) throws InterruptedException {
+			while (traces.size() < count) {
+				wait(100);
+			}
+		}
+
+		public synchronized void release() {
+			blocked = false;
+			notifyAll();
+		}
+	}
+
+	private static class SlowAppender extends Appender {
+		private int count = 0;
+
+		public void printTrace(String classname, int level, String trace) {
+			long end = System.nanoTime() + 20000;
+			while (System.nanoTime() < end) {
+				// Output time
+			}
+			if (level == Logger.DEBUG_LEVEL) {
+				synchronized(this) {
+					count++;
+				}
+			}
+		}
+
+		synchronized int getCount() {
+			return count;
+		}
+	}
+}
@@ -0,0 +1,171 @@
+package com.orangelabs.rcs.utils;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+import junit.framework.TestCase;
+
+import android.test.suitebuilder.annotation.LargeTest;
+
+import com.orangelabs.rcs.utils.metrics.Counter;
+import com.orangelabs.rcs.utils.metrics.Gauge;
+import com.orangelabs.rcs.utils.metrics.Histogram;
+import com.orangelabs.rcs.utils.metrics.Metrics;
+
+public class MetricsTest extends TestCase {
+
+	private static final int THREADS = 8;
+
+	private static final int LOOPS = 1000000;
+
+	public void testRegistry() {
+		Counter counter = Metrics.counter("test.counter", "events");
+		assertSame(counter, Metrics.counter("test.counter", "events"));
+		counter.inc();
+		counter.add(41);
+		assertEquals(42, counter.get());
+
+		Gauge gauge = Metrics.gauge("test.gauge", "sessions");
+		gauge.set(3);
+		gauge.add(-1);
+		assertEquals(2, gauge.get());
+		assertEquals("test.gauge value=2 sessions", Metrics.format(gauge));
+		assertTrue(Metrics.getMetrics().contains(counter));
+
+		// The metrics of the stack are left untouched
+		counter.reset();
+		gauge.reset();
+		assertEquals(0, counter.get());
+		assertEquals(0, gauge.get());
+		Metrics.remove(counter);
+		Metrics.remove(gauge);
+	}
+
+	public void testRemove() {
+		Gauge gauge = Metrics.gauge("test.remove", "bytes");
+		assertTrue(Metrics.getMetrics().contains(gauge));
+		Metrics.remove(gauge);
+		assertFalse(Metrics.getMetrics().contains(gauge));
+
+		// A new metric is created with the same name
+		Gauge other = Metrics.gauge("test.remove", "bytes");
+		assertNotSame(gauge, other);
+		Metrics.remove(gauge);
+		assertTrue(Metrics.getMetrics().contains(other));
+		Metrics.remove(other);
+	}
+
+	public void testHistogram() {
+		Histogram histogram = new Histogram("test.histogram", "ms");
+		for (int i = 1; i <= 1000; i++) {
+			histogram.record(i);
+		}
+		Histogram.Snapshot snapshot = histogram.getSnapshot();
+		assertEquals(1000, snapshot.getCount());
+		assertEquals(1, snapshot.getMin());
+		assertEquals(1000, snapshot.getMax());
+		assertEquals(500, snapshot.getMean());
+		assertEquals(1000, snapshot.getValueAtPercentile(100.0));
+
+		// Values are counted with a relative error below 1/32
+		assertPrecision(500, snapshot.getValueAtPercentile(50.0));
+		assertPrecision(900, snapshot.getValueAtPercentile(90.0));
+		assertPrecision(990, snapshot.getValueAtPercentile(99.0));
+
+		histogram.record(-5);
+		histogram.record(Long.MAX_VALUE);
+		snapshot = histogram.getSnapshot();
+		assertEquals(0, snapshot.getMin());
+		assertEquals(Histogram.MAX_VALUE, snapshot.getMax());
+
+		histogram.reset();
+		assertEquals(0, histogram.getSnapshot().getCount());
+		assertEquals(0, histogram.getSnapshot().getValueAtPercentile(50.0));
+	}
+
+	public void testConcurrentRecording() throws Exception {
+		final Counter counter = new Counter("test.concurrent", "events");
+		final Histogram histogram = new Histogram("test.concurrent", "us");
+		run(new Runnable() {
+			public void run() {
+				for (int i = 0; i < LOOPS / 10; i++) {
+					counter.inc();
+					histogram.record(i & 1023);
+				}
+			}
+		});
+		assertEquals(THREADS * LOOPS / 10, counter.get());
+		assertEquals(THREADS * LOOPS / 10, histogram.getSnapshot().getCount());
+	}
+
+	@LargeTest
+	public void testBenchmarkRecording() throws Exception {
+		final Counter counter = new Counter("test.cost", "events");
+		final Histogram histogram = new Histogram("test.cost", "us");
+		final AtomicLong shared = new AtomicLong();
+
+		Benchmark benchmark = new Benchmark("Metrics recording", LOOPS);
+		benchmark.measure("histogram record", new Benchmark.Task() {
+			public void run(int i) {
+				histogram.record(i & 0xFFFF);
+			}
+		});
+		benchmark.measure("counter increment", new Benchmark.Task() {
+			public void run(int i) {
+				counter.inc();
+			}
+		});
+		benchmark.log();
+
+		// Each iteration runs the increments of all the threads
+		benchmark = new Benchmark(THREADS + " threads incrementing " + (LOOPS / 10) + " times", 10);
+		benchmark.measure("with a shared counter", new Benchmark.Task() {
+			public void run(int i) throws Exception {
+				MetricsTest.run(new Runnable() {
+					public void run() {
+						for (int j = 0; j < LOOPS / 10; j++) {
+							shared.incrementAndGet();
+						}
+					}
+				});
+			}
+		});
+		benchmark.measure("with a striped counter", new Benchmark.Task() {
+			public void run(int i) throws Exception {
+				MetricsTest.run(new Runnable() {
+					public void run() {
+						for (int j = 0; j < LOOPS / 10; j++) {
+							counter.inc();
+						}
+					}
+				});
+			}
+		});
+		benchmark.log();
+	}
+
+	private static void assertPrecision(long expected, long value) {
+		assertTrue(value + " is not close to " + expected, Math.abs(value - expected) <= expected / 32 + 1);
+	}
+
+	private static void run(final Runnable task) throws InterruptedException {
+		final CountDownLatch start = new CountDownLatch(1);
+		final CountDownLatch end = new CountDownLatch(THREADS);
+		for (int i = 0; i < THREADS; i++) {
+			new Thread() {
+				public void run() {
+					try {
+						start.await();
+						task.run();
+					} catch (InterruptedException e) {
+						// Nothing to do
+					} finally {
+						end.countDown();
+					}
+				}
+			}.start();
+		}
+		start.countDown();
+		end.await();
+	}
+}
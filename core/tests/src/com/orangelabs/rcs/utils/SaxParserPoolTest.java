@@ -0,0 +1,103 @@
+package com.orangelabs.rcs.utils;
+
+import java.io.ByteArrayInputStream;
+
+import javax.xml.parsers.SAXParserFactory;
+
+import org.xml.sax.InputSource;
+import org.xml.sax.helpers.DefaultHandler;
+
+import android.test.AndroidTestCase;
+import android.test.suitebuilder.annotation.LargeTest;
+
+import com.orangelabs.rcs.core.ims.service.im.chat.imdn.ImdnDocument;
+import com.orangelabs.rcs.core.ims.service.im.chat.imdn.ImdnParser;
+import com.orangelabs.rcs.core.ims.service.im.chat.iscomposing.IsComposingInfo;
+import com.orangelabs.rcs.core.ims.service.im.chat.iscomposing.IsComposingParser;
+
+public class SaxParserPoolTest extends AndroidTestCase {
+
+	private static final String IMDN = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>" +
+			"<imdn xmlns=\"urn:ietf:params:xml:ns:imdn\">" +
+			"<message-id>34jk324j</message-id>" +
+			"<datetime>2008-04-04T12:16:49-05:00</datetime>" +
+			"<display-notification><status><displayed/></status></display-notification>" +
+			"</imdn>";
+
+	private static final String IS_COMPOSING = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>" +
+			"<isComposing xmlns=\"urn:ietf:params:xml:ns:im-isComposing\" xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\" " +
+			"xsi:schemaLocation=\"urn:ietf:params:xml:ns:im-composing iscomposing.xsd\">" +
+			"<state>active</state>" +
+			"<lastactive>2008-12-13T13:40:00Z</lastactive>" +
+			"<contenttype>text/plain</contenttype><refresh>60</refresh></isComposing>";
+
+	protected void setUp() throws Exception {
+		super.setUp();
+	}
+
+	protected void tearDown() throws Exception {
+		super.tearDown();
+	}
+
+	public void testReaderReuse() throws Exception {
+		for(int i=0; i < 3; i++) {
+			ImdnDocument imdn = new ImdnParser(IMDN.getBytes()).getImdnDocument();
+			assertEquals("34jk324j", imdn.getMsgId());
+			assertEquals(ImdnDocument.DELIVERY_STATUS_DISPLAYED, imdn.getStatus());
+
+			IsComposingInfo info = new IsComposingParser(IS_COMPOSING.getBytes()).getIsComposingInfo();
+			assertTrue(info.isStateActive());
+			assertEquals(60, info.getRefreshTime());
+		}
+	}
+
+	public void testMalformedDocument() throws Exception {
+		try {
+			new ImdnParser("<imdn><message-id>".getBytes());
+			fail("Malformed document parsed");
+		} catch(Exception e) {
+			// Expected
+		}
+
+		// The reader can still be used after an error
+		assertEquals("34jk324j", new ImdnParser(IMDN.getBytes()).getImdnDocument().getMsgId());
+	}
+
+	public void testNestedParsing() throws Exception {
+		final ImdnDocument[] nested = new ImdnDocument[1];
+		SaxParserPool.parse(IS_COMPOSING.getBytes(), new DefaultHandler() {
+			public void endDocument() {
+				try {
+					nested[0] = new ImdnParser(IMDN.getBytes()).getImdnDocument();
+				} catch(Exception e) {
+					// Checked below
+				}
+			}
+		});
+		assertNotNull(nested[0]);
+		assertEquals("34jk324j", nested[0].getMsgId());
+	}
+
+	@LargeTest
+	public void testBenchmarkParsing() throws Exception {
+		final byte[][] payloads = { IMDN.getBytes(), IS_COMPOSING.getBytes() };
+		final DefaultHandler handler = new DefaultHandler();
+		Benchmark benchmark = new Benchmark("IMDN/is-composing parsing", 2000);
+
+		// New factory and parser for each document, as before the pool
+		benchmark.measure("with a new parser", new Benchmark.Task() {
+			public void run(int i) throws Exception {
+				SAXParserFactory.newInstance().newSAXParser().parse(
+						new InputSource(new ByteArrayInputStream(payloads[i % payloads.length])), handler);
+			}
+		});
+
+		// Reader of the pool
+		benchmark.measure("with a pooled reader", new Benchmark.Task() {
+			public void run(int i) throws Exception {
+				SaxParserPool.parse(payloads[i % payloads.length], handler);
+			}
+		});
+		benchmark.log();
+	}
+}
@@ -0,0 +1,84 @@
+package com.orangelabs.rcs.utils;
+
+import junit.framework.TestCase;
+
+public class TimerWheelTest extends TestCase {
+
+	private static final long TICK = 10;
+
+	public void testExpiration() throws Exception {
+		TimerWheel wheel = new TimerWheel("TimerWheelTest", TICK, 64);
+		CountingTimeout timeout = new CountingTimeout();
+		long start = System.currentTimeMillis();
+		wheel.schedule(timeout, 50);
+		assertTrue(timeout.await(2000));
+		assertTrue(System.currentTimeMillis() - start >= 50);
+		assertEquals(0, wheel.size());
+	}
+
+	public void testCancel() throws Exception {
+		TimerWheel wheel = new TimerWheel("TimerWheelTest", TICK, 64);
+		CountingTimeout timeout = new CountingTimeout();
+		wheel.schedule(timeout, 20);
+		assertTrue(wheel.cancel(timeout));
+		assertFalse(wheel.cancel(timeout));
+		assertFalse(timeout.await(100));
+	}
+
+	public void testTickBoundary() throws Exception {
+		// Each read of the clock advances it by one ms, so the clock crosses
+		// a tick boundary between two reads at every phase of a tick
+		SteppedWheel wheel = new SteppedWheel();
+		CountingTimeout[] timeouts = new CountingTimeout[(int)TICK * 3];
+		for(int i=0; i < timeouts.length; i++) {
+			timeouts[i] = new CountingTimeout();
+			wheel.schedule(timeouts[i], i % TICK);
+		}
+		for(int i=0; i < timeouts.length; i++) {
+			assertTrue("Timeout " + i + " has not expired", timeouts[i].await(2000));
+		}
+		assertEquals(0, wheel.size());
+
+		// The wheel thread is still alive for the next timeouts
+		CountingTimeout timeout = new CountingTimeout();
+		wheel.schedule(timeout, TICK);
+		assertTrue(timeout.await(2000));
+	}
+
+	/**
+	 * Wheel with a clock advanced at each read
+	 */
+	private static class SteppedWheel extends TimerWheel {
+		private long time;
+
+		SteppedWheel() {
+			super("TimerWheelTest", TICK, 64);
+		}
+
+		long now() {
+			// Called with the lock of the wheel
+			return time++;
+		}
+	}
+
+	private static class CountingTimeout extends TimerWheel.Timeout {
+		private int count = 0;
+
+		public synchronized void expire() {
+			count++;
+			notifyAll();
+		}
+
+		synchronized boolean await(long timeout) throws InterruptedException {
+			long end = System.currentTimeMillis() + timeout;
+			while (count == 0) {
+				long delay = end - System.currentTimeMillis();
+				if (delay <= 0) {
+					return false;
+				}
+				wait(delay);
+			}
+			return true;
+		}
+	}
+}
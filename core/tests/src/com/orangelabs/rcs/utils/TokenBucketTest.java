@@ -0,0 +1,46 @@
+package com.orangelabs.rcs.utils;
+
+import junit.framework.TestCase;
+
+public class TokenBucketTest extends TestCase {
+
+	public void testBurst() {
+		TokenBucket bucket = new TokenBucket(3, 1);
+		assertTrue(bucket.tryAcquire());
+		assertTrue(bucket.tryAcquire());
+		assertTrue(bucket.tryAcquire());
+		assertFalse(bucket.tryAcquire());
+	}
+
+	public void testRefill() throws Exception {
+		TokenBucket bucket = new TokenBucket(1, 20);
+		assertTrue(bucket.tryAcquire());
+		assertFalse(bucket.tryAcquire());
+
+		// One token every 50ms
+		Thread.sleep(100);
+		assertTrue(bucket.tryAcquire());
+	}
+
+	public void testRefillIsCapped() throws Exception {
+		TokenBucket bucket = new TokenBucket(2, 100);
+		assertTrue(bucket.tryAcquire());
+		assertTrue(bucket.tryAcquire());
+
+		// Much more than 2 tokens earned, only 2 are kept
+		Thread.sleep(100);
+		assertTrue(bucket.tryAcquire());
+		assertTrue(bucket.tryAcquire());
+		assertFalse(bucket.tryAcquire());
+	}
+
+	public void testAcquireWaits() throws Exception {
+		TokenBucket bucket = new TokenBucket(1, 10);
+		bucket.acquire();
+		long start = System.currentTimeMillis();
+		bucket.acquire();
+		long elapsed = System.currentTimeMillis() - start;
+		assertTrue("Waited " + elapsed + "ms", elapsed >= 50);
+		assertFalse(bucket.tryAcquire());
+	}
+}
@@ -1,11 +1,28 @@
 @echo off
+setlocal enabledelayedexpansion
 
 set LOCAL_LOG=.\sip.txt
-set REMOTE_LOG=/sdcard/sip.txt
+set LOCAL_CAPTURE=.\sip.cap
+set REMOTE_CAPTURE=/sdcard/sip.cap
+set CORE_CLASSES=..\core\bin\classes
+set CONVERTER=com.orangelabs.rcs.siplog.CaptureConverter
+rem Number of files of a capture, see CaptureFile.DEFAULT_MAX_FILES
+set MAX_FILES=4
 
 del %LOCAL_LOG%
+del %LOCAL_CAPTURE%*
 
-adb pull %REMOTE_LOG% .
+set /a LAST_FILE=%MAX_FILES% - 1
+set CAPTURE_FILES=
+for /L %%i in (%LAST_FILE%,-1,1) do (
+	adb pull %REMOTE_CAPTURE%.%%i .
+	set CAPTURE_FILES=!CAPTURE_FILES! %LOCAL_CAPTURE%.%%i
+)
+adb pull %REMOTE_CAPTURE% .
+
+if not exist bin mkdir bin
+javac -cp %CORE_CLASSES% -d bin src\com\orangelabs\rcs\siplog\CaptureConverter.java
+java -cp bin;%CORE_CLASSES% %CONVERTER% -text %LOCAL_LOG% %CAPTURE_FILES% %LOCAL_CAPTURE%
 
 traceviewer %LOCAL_LOG%
 
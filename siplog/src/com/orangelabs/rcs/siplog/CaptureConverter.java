@@ -0,0 +1,305 @@
+/*******************************************************************************
+ * Software Name : RCS IMS Stack
+ *
+ * Copyright (C) 2010 France Telecom S.A.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.orangelabs.rcs.siplog;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.orangelabs.rcs.core.ims.protocol.capture.CaptureFile;
+import com.orangelabs.rcs.core.ims.protocol.capture.CaptureFile.Record;
+
+/**
+ * Converter of the capture files to a pcap file or to the text format of the
+ * trace viewer
+ * <br>It is run on a desktop with the classes of the core, see logs.bat:
+ * <pre>java -cp bin;..\core\bin\classes com.orangelabs.rcs.siplog.CaptureConverter -text sip.txt sip.cap.1 sip.cap</pre>
+ * In the pcap file, each message is a UDP datagram between 10.0.0.1 (the
+ * terminal) and 10.0.0.2, on port 5060 for SIP and 2855 for MSRP.
+ */
+public class CaptureConverter {
+	/**
+	 * Link type of raw IP packets
+	 */
+	public static final int LINKTYPE_RAW = 101;
+
+	/**
+	 * SIP port
+	 */
+	public static final int SIP_PORT = 5060;
+
+	/**
+	 * MSRP port
+	 */
+	public static final int MSRP_PORT = 2855;
+
+	/**
+	 * Max size of a message in the pcap file
+	 */
+	private static final int MAX_PAYLOAD = 65535 - 28;
+
+	/**
+	 * Local address, 10.0.0.1
+	 */
+	private static final int LOCAL_ADDRESS = 0x0A000001;
+
+	/**
+	 * Remote address, 10.0.0.2
+	 */
+	private static final int REMOTE_ADDRESS = 0x0A000002;
+
+	/**
+	 * Write records in pcap format
+	 *
+	 * @param records Records
+	 * @param out Output stream
+	 * @throws IOException
+	 */
+	public static void writePcap(List<Record> records, OutputStream out) throws IOException {
+		DataOutputStream output = new DataOutputStream(new BufferedOutputStream(out));
+
+		// Global header
+		output.writeInt(0xa1b2c3d4);
+		output.writeShort(2);
+		output.writeShort(4);
+		output.writeInt(0);
+		output.writeInt(0);
+		output.writeInt(65535);
+		output.writeInt(LINKTYPE_RAW);
+
+		byte[] header = new byte[28];
+		for (int i = 0; i < records.size(); i++) {
+			Record record = records.get(i);
+			int length = Math.min(record.data.length, MAX_PAYLOAD);
+			boolean sent = (record.direction == CaptureFile.DIRECTION_SENT);
+			int port = (record.protocol == CaptureFile.PROTOCOL_MSRP) ? MSRP_PORT : SIP_PORT;
+
+			// Packet header
+			output.writeInt((int)(record.timestamp / 1000));
+			output.writeInt((int)(record.timestamp % 1000) * 1000);
+			output.writeInt(28 + length);
+			output.writeInt(28 + length);
+
+			// IPv4 header
+			setShort(header, 0, 0x4500);
+			setShort(header, 2, 28 + length);
+			setShort(header, 4, i);
+			setShort(header, 6, 0x4000);
+			setShort(header, 8, 0x4011);
+			setShort(header, 10, 0);
+			setInt(header, 12, sent ? LOCAL_ADDRESS : REMOTE_ADDRESS);
+			setInt(header, 16, sent ? REMOTE_ADDRESS : LOCAL_ADDRESS);
+			setShort(header, 10, checksum(header, 0, 20));
+
+			// UDP header
+			setShort(header, 20, port);
+			setShort(header, 22, port);
+			setShort(header, 24, 8 + length);
+			setShort(header, 26, 0);
+
+			output.write(header);
+			output.write(record.data, 0, length);
+		}
+		output.flush();
+	}
+
+	/**
+	 * Write records in the text format of the trace viewer
+	 *
+	 * @param records Records
+	 * @param out Output
+	 * @throws IOException
+	 */
+	public static void writeText(List<Record> records, Writer out) throws IOException {
+		Writer output = new BufferedWriter(out);
+		output.write("<!-- Use the  Trace Viewer in src/tools/tracesviewer to view this  trace  \n"
+				+ "Converted from a RCS capture file \n-->\n");
+		output.write("<description\n logDescription=\"RCS\"\n name=\"RCS\"\n auxInfo=\"null\"/>\n \n");
+		for (int i = 0; i < records.size(); i++) {
+			Record record = records.get(i);
+			String message = new String(record.data, "ISO-8859-1");
+			boolean sent = (record.direction == CaptureFile.DIRECTION_SENT);
+			int index = message.indexOf("\r\n");
+			String firstLine = (index != -1) ? message.substring(0, index) : message;
+			String callId;
+			String transactionId;
+			if (record.protocol == CaptureFile.PROTOCOL_MSRP) {
+				// MSRP <transaction-id> <method or status>
+				String[] tags = firstLine.split(" ");
+				transactionId = (tags.length > 1) ? tags[1] : "";
+				callId = "MSRP";
+			} else {
+				callId = getHeader(message, "Call-ID", "i");
+				transactionId = getBranch(getHeader(message, "Via", "v"));
+			}
+
+			output.write("<message\nfrom=\"" + (sent ? "local" : "remote")
+					+ "\" \nto=\"" + (sent ? "remote" : "local")
+					+ "\" \ntime=\"" + record.timestamp
+					+ "\"\nisSender=\"" + sent
+					+ "\" \ntransactionId=\"" + escape(transactionId)
+					+ "\" \ncallId=\"" + escape(callId)
+					+ "\" \nfirstLine=\"" + escape(firstLine.trim()) + "\" \n>\n");
+			output.write("<![CDATA[");
+			output.write(message.replace("]]>", "]]]]><![CDATA[>"));
+			output.write("]]>\n</message>\n");
+		}
+		output.flush();
+	}
+
+	/**
+	 * Convert capture files
+	 *
+	 * @param args -pcap or -text, output file and capture files
+	 */
+	public static void main(String[] args) {
+		if ((args.length < 3) || !(args[0].equals("-pcap") || args[0].equals("-text"))) {
+			System.err.println("Usage: CaptureConverter -pcap|-text <output file> <capture file>...");
+			System.exit(1);
+		}
+		// The rotated files may not exist yet
+		List<String> paths = new ArrayList<String>();
+		for (int i = 2; i < args.length; i++) {
+			if (new File(args[i]).exists()) {
+				paths.add(args[i]);
+			}
+		}
+		try {
+			List<Record> records = CaptureFile.read(paths.toArray(new String[paths.size()]));
+			OutputStream out = new FileOutputStream(args[1]);
+			try {
+				if (args[0].equals("-pcap")) {
+					writePcap(records, out);
+				} else {
+					writeText(records, new OutputStreamWriter(out, "ISO-8859-1"));
+				}
+			} finally {
+				out.close();
+			}
+			System.out.println(records.size() + " messages written in " + args[1]);
+		} catch (IOException e) {
+			System.err.println("Conversion has failed: " + e.getMessage());
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * Returns the value of the first occurence of a header
+	 *
+	 * @param message Message
+	 * @param name Header name
+	 * @param compactName Header compact name
+	 * @return Value or empty string
+	 */
+	private static String getHeader(String message, String name, String compactName) {
+		int end = message.indexOf("\r\n\r\n");
+		String[] lines = ((end != -1) ? message.substring(0, end) : message).split("\r\n");
+		for (int i = 1; i < lines.length; i++) {
+			int index = lines[i].indexOf(':');
+			if (index != -1) {
+				String header = lines[i].substring(0, index).trim();
+				if (header.equalsIgnoreCase(name) || header.equalsIgnoreCase(compactName)) {
+					return lines[i].substring(index + 1).trim();
+				}
+			}
+		}
+		return "";
+	}
+
+	/**
+	 * Returns the branch parameter of a Via header, in lower case as the
+	 * transaction IDs of the stack
+	 *
+	 * @param via Via header value
+	 * @return Branch or empty string
+	 */
+	private static String getBranch(String via) {
+		int index = via.toLowerCase().indexOf("branch=");
+		if (index == -1) {
+			return "";
+		}
+		String branch = via.substring(index + 7);
+		int end = branch.indexOf(';');
+		if (end == -1) {
+			end = branch.indexOf(',');
+		}
+		return ((end != -1) ? branch.substring(0, end) : branch).trim().toLowerCase();
+	}
+
+	/**
+	 * Escape an attribute value
+	 *
+	 * @param value Value
+	 * @return Escaped value
+	 */
+	private static String escape(String value) {
+		return value.replace("&", "&amp;").replace("<", "&lt;").replace("\"", "&quot;");
+	}
+
+	/**
+	 * Set a 16 bits value in network order
+	 *
+	 * @param data Data
+	 * @param offset Offset
+	 * @param value Value
+	 */
+	private static void setShort(byte[] data, int offset, int value) {
+		data[offset] = (byte)(value >> 8);
+		data[offset + 1] = (byte)value;
+	}
+
+	/**
+	 * Set a 32 bits value in network order
+	 *
+	 * @param data Data
+	 * @param offset Offset
+	 * @param value Value
+	 */
+	private static void setInt(byte[] data, int offset, int value) {
+		setShort(data, offset, value >> 16);
+		setShort(data, offset + 2, value);
+	}
+
+	/**
+	 * Compute the checksum of an IP header
+	 *
+	 * @param data Data
+	 * @param offset Offset of the header
+	 * @param length Length of the header
+	 * @return Checksum
+	 */
+	private static int checksum(byte[] data, int offset, int length) {
+		int sum = 0;
+		for (int i = offset; i < offset + length; i += 2) {
+			sum += ((data[i] & 0xFF) << 8) | (data[i + 1] & 0xFF);
+		}
+		while ((sum >> 16) != 0) {
+			sum = (sum & 0xFFFF) + (sum >> 16);
+		}
+		return ~sum & 0xFFFF;
+	}
+}